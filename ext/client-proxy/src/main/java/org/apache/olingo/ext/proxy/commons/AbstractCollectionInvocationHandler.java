@@ -66,6 +66,11 @@ public abstract class AbstractCollectionInvocationHandler<T extends Serializable
 
   private boolean changed = false;
 
+  /**
+   * Entity owning this collection as property value, if any.
+   */
+  private EntityInvocationHandler entityHandler;
+
   public AbstractCollectionInvocationHandler(
           final AbstractService<?> service,
           final Collection<T> items,
@@ -81,6 +86,21 @@ public abstract class AbstractCollectionInvocationHandler<T extends Serializable
     this.baseURI = this.uri == null ? null : this.uri.build();
   }
 
+  /**
+   * Sets the entity owning this collection as property value; the entity is notified as modified as soon as
+   * the collection is changed in place.
+   *
+   * @param entityHandler owning entity.
+   */
+  public void setEntityHandler(final EntityInvocationHandler entityHandler) {
+    this.entityHandler = entityHandler;
+  }
+
+  private void markChanged() {
+    changed = true;
+    service.getContext().entityContext().markModified(entityHandler);
+  }
+
   public Future<Collection<T>> executeAsync() {
     return service.getClient().getConfiguration().getExecutor().submit(new Callable<Collection<T>>() {
       @Override
@@ -174,7 +194,7 @@ public abstract class AbstractCollectionInvocationHandler<T extends Serializable
         service.getContext().entityContext().attachNew(handler);
       }
     }
-    changed = true;
+    markChanged();
     return items.add(element);
   }
 
@@ -186,7 +206,7 @@ public abstract class AbstractCollectionInvocationHandler<T extends Serializable
         return false;
       }
 
-      changed = true;
+      markChanged();
       return referenceItems.add(id.toASCIIString());
     }
 
@@ -233,6 +253,7 @@ public abstract class AbstractCollectionInvocationHandler<T extends Serializable
 
   @Override
   public boolean remove(final Object object) {
+    markChanged();
     return items.remove(object);
   }
 
@@ -243,22 +264,25 @@ public abstract class AbstractCollectionInvocationHandler<T extends Serializable
 
   @Override
   public boolean addAll(final Collection<? extends T> collection) {
-    changed = true;
+    markChanged();
     return items.addAll(collection);
   }
 
   @Override
   public boolean removeAll(final Collection<?> collection) {
+    markChanged();
     return items.removeAll(collection);
   }
 
   @Override
   public boolean retainAll(final Collection<?> collection) {
+    markChanged();
     return items.retainAll(collection);
   }
 
   @Override
   public void clear() {
+    markChanged();
     items.clear();
   }
 
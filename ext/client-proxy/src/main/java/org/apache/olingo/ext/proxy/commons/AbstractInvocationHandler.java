@@ -24,7 +24,6 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.lang.reflect.UndeclaredThrowableException;
 import java.net.URI;
-import java.util.Arrays;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
@@ -39,12 +38,12 @@ import org.apache.olingo.ext.proxy.AbstractService;
 import org.apache.olingo.ext.proxy.api.ComplexType;
 import org.apache.olingo.ext.proxy.api.EntityType;
 import org.apache.olingo.ext.proxy.api.annotations.EntitySet;
-import org.apache.olingo.ext.proxy.api.annotations.Namespace;
 import org.apache.olingo.ext.proxy.api.annotations.Singleton;
 import org.apache.olingo.ext.proxy.context.AttachedEntityStatus;
 import org.apache.olingo.ext.proxy.context.Context;
 import org.apache.olingo.ext.proxy.context.EntityContext;
 import org.apache.olingo.ext.proxy.utils.CoreUtils;
+import org.apache.olingo.ext.proxy.utils.TypeMetadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -70,23 +69,18 @@ abstract class AbstractInvocationHandler implements InvocationHandler {
   }
 
   protected boolean isSelfMethod(final Method method, final Object[] args) {
-    final Method[] selfMethods = getClass().getMethods();
-
-    boolean result = false;
-
-    for (int i = 0; i < selfMethods.length && !result; i++) {
-      result = method.getName().equals(selfMethods[i].getName())
-          && Arrays.equals(method.getParameterTypes(), selfMethods[i].getParameterTypes());
-    }
-
-    return result;
+    return TypeMetadata.getInstance(getClass()).getMethodWithSameSignature(method) != null;
   }
 
   protected Object invokeSelfMethod(final Method method, final Object[] args)
       throws Throwable {
+    final Method self = TypeMetadata.getInstance(getClass()).getMethodWithSameSignature(method);
+    if (self == null) {
+      throw new NoSuchMethodException(method.getName());
+    }
     //Try as per https://amitstechblog.wordpress.com/2011/07/24/java-proxies-and-undeclaredthrowableexception/
     try {
-      return getClass().getMethod(method.getName(), method.getParameterTypes()).invoke(this, args);
+      return self.invoke(this, args);
     } catch (UndeclaredThrowableException e) {
       throw e.getCause();
     }
@@ -148,10 +142,9 @@ abstract class AbstractInvocationHandler implements InvocationHandler {
       throw new IllegalStateException("Entity base URI not available");
     }
 
-    final String name = handler.getUUID().getType().
-        getAnnotation(org.apache.olingo.ext.proxy.api.annotations.EntityType.class).name();
-
-    final String namespace = handler.getUUID().getType().getAnnotation(Namespace.class).value();
+    final TypeMetadata metadata = TypeMetadata.getInstance(handler.getUUID().getType());
+    final String name = metadata.getEntityType().name();
+    final String namespace = metadata.getNamespace();
 
     final ODataEntity template;
 
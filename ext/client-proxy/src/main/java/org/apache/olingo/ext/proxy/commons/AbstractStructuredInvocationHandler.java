@@ -19,7 +19,6 @@
 package org.apache.olingo.ext.proxy.commons;
 
 import java.io.InputStream;
-import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
@@ -56,8 +55,6 @@ import org.apache.olingo.ext.proxy.api.ComplexCollection;
 import org.apache.olingo.ext.proxy.api.EdmStreamValue;
 import org.apache.olingo.ext.proxy.api.EntityCollection;
 import org.apache.olingo.ext.proxy.api.PrimitiveCollection;
-import org.apache.olingo.ext.proxy.api.annotations.ComplexType;
-import org.apache.olingo.ext.proxy.api.annotations.Namespace;
 import org.apache.olingo.ext.proxy.api.annotations.NavigationProperty;
 import org.apache.olingo.ext.proxy.api.annotations.Property;
 import org.apache.olingo.ext.proxy.context.AttachedEntityStatus;
@@ -66,6 +63,7 @@ import org.apache.olingo.ext.proxy.context.EntityUUID;
 import org.apache.olingo.ext.proxy.utils.ClassUtils;
 import org.apache.olingo.ext.proxy.utils.CoreUtils;
 import org.apache.olingo.ext.proxy.utils.ProxyUtils;
+import org.apache.olingo.ext.proxy.utils.TypeMetadata;
 
 public abstract class AbstractStructuredInvocationHandler extends AbstractInvocationHandler {
 
@@ -75,6 +73,8 @@ public abstract class AbstractStructuredInvocationHandler extends AbstractInvoca
 
   protected final Class<?> typeRef;
 
+  private TypeMetadata typeMetadata;
+
   protected EntityInvocationHandler entityHandler;
 
   protected Object internal;
@@ -157,41 +157,41 @@ public abstract class AbstractStructuredInvocationHandler extends AbstractInvoca
 
   @Override
   public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
-  	if (method.getName().startsWith("get")) {  
-  		// Here need check "get"/"set" first for better get-/set- performance because
-  		// the below if-statements are really time-consuming, even twice slower than "get" body.
+    final String methodName = method.getName();
+    if (methodName.startsWith("get")) {
+      // Here need check "get"/"set" first for better get-/set- performance because
+      // the below if-statements are really time-consuming, even twice slower than "get" body.
 
-  		// Assumption: for each getter will always exist a setter and viceversa.
+      // Assumption: for each getter will always exist a setter and viceversa.
       // get method annotation and check if it exists as expected
 
       final Object res;
-      final Method getter = typeRef.getMethod(method.getName());
+      final TypeMetadata.Accessor accessor = getAccessor(methodName);
 
-      final Property property = ClassUtils.getAnnotation(Property.class, getter);
+      final Property property = accessor.getProperty();
       if (property == null) {
-        final NavigationProperty navProp = ClassUtils.getAnnotation(NavigationProperty.class, getter);
+        final NavigationProperty navProp = accessor.getNavigationProperty();
         if (navProp == null) {
-          throw new UnsupportedOperationException("Unsupported method " + method.getName());
+          throw new UnsupportedOperationException("Unsupported method " + methodName);
         } else {
           // if the getter refers to a navigation property ... navigate and follow link if necessary
-          res = getNavigationPropertyValue(navProp, getter);
+          res = getNavigationPropertyValue(navProp, accessor.getGetter());
         }
       } else {
         // if the getter refers to a property .... get property from wrapped entity
-        res = getPropertyValue(property.name(), getter.getGenericReturnType());
+        res = getPropertyValue(property.name(), accessor.getGenericType());
       }
 
       return res;
-    } else if (method.getName().startsWith("set")) {
+    } else if (methodName.startsWith("set")) {
       // get the corresponding getter method (see assumption above)
-      final String getterName = method.getName().replaceFirst("set", "get");
-      final Method getter = typeRef.getMethod(getterName);
+      final TypeMetadata.Accessor accessor = getAccessor(methodName);
 
-      final Property property = ClassUtils.getAnnotation(Property.class, getter);
+      final Property property = accessor.getProperty();
       if (property == null) {
-        final NavigationProperty navProp = ClassUtils.getAnnotation(NavigationProperty.class, getter);
+        final NavigationProperty navProp = accessor.getNavigationProperty();
         if (navProp == null) {
-          throw new UnsupportedOperationException("Unsupported method " + method.getName());
+          throw new UnsupportedOperationException("Unsupported method " + methodName);
         } else {
           // if the getter refers to a navigation property ... 
           if (ArrayUtils.isEmpty(args) || args.length != 1) {
@@ -242,6 +242,26 @@ public abstract class AbstractStructuredInvocationHandler extends AbstractInvoca
     }
   }
 
+  /**
+   * Gets the metadata of the proxied type, looking it up only once per handler.
+   *
+   * @return metadata of the proxied type
+   */
+  protected TypeMetadata getTypeMetadata() {
+    if (typeMetadata == null) {
+      typeMetadata = TypeMetadata.getInstance(typeRef);
+    }
+    return typeMetadata;
+  }
+
+  private TypeMetadata.Accessor getAccessor(final String methodName) throws NoSuchMethodException {
+    final TypeMetadata.Accessor accessor = getTypeMetadata().getAccessor(methodName);
+    if (accessor == null) {
+      throw new NoSuchMethodException(typeRef.getName() + "." + methodName);
+    }
+    return accessor;
+  }
+
   public void delete(final String name) {
     if (baseURI != null) {
       getContext().entityContext().addFurtherDeletes(
@@ -311,7 +331,7 @@ public abstract class AbstractStructuredInvocationHandler extends AbstractInvoca
         } else {
           final ODataProperty property = getInternalProperty(name);
 
-          if (ref != null && ClassUtils.getTypeClass(type).isAnnotationPresent(ComplexType.class)) {
+          if (ref != null && TypeMetadata.getInstance(ref).getComplexType() != null) {
             res = getComplex(
                     name,
                     property == null || property.hasNullValue() ? null : property.getValue(),
@@ -353,6 +373,7 @@ public abstract class AbstractStructuredInvocationHandler extends AbstractInvoca
             res = Proxy.newProxyInstance(
                     Thread.currentThread().getContextClassLoader(),
                     new Class<?>[] {ref}, collectionHandler);
+            collectionHandler.setEntityHandler(getEntityHandler());
 
           } else if (ref != null && PrimitiveCollection.class.isAssignableFrom(ref)) {
             PrimitiveCollectionInvocationHandler collectionHandler;
@@ -378,6 +399,7 @@ public abstract class AbstractStructuredInvocationHandler extends AbstractInvoca
             res = Proxy.newProxyInstance(
                     Thread.currentThread().getContextClassLoader(),
                     new Class<?>[] {PrimitiveCollection.class}, collectionHandler);
+            collectionHandler.setEntityHandler(getEntityHandler());
           } else {
             res = property == null || property.hasNullValue()
                     ? null
@@ -434,6 +456,7 @@ public abstract class AbstractStructuredInvocationHandler extends AbstractInvoca
 
     streamedPropertyCache.remove(property.name());
     streamedPropertyChanges.put(property.name(), input.load());
+    getContext().entityContext().markModified(getEntityHandler());
   }
 
   protected abstract Object getNavigationPropertyValue(final NavigationProperty property, final Method getter);
@@ -495,7 +518,7 @@ public abstract class AbstractStructuredInvocationHandler extends AbstractInvoca
 
         if (handler == null) {
           final ODataEntity entity = getClient().getObjectFactory().newEntity(new FullQualifiedName(
-                  collItemType.getAnnotation(Namespace.class).value(), ClassUtils.getEntityTypeName(collItemType)));
+                  ClassUtils.getNamespace(collItemType), ClassUtils.getEntityTypeName(collItemType)));
 
           handler = EntityInvocationHandler.getInstance(
                   entity,
@@ -531,17 +554,9 @@ public abstract class AbstractStructuredInvocationHandler extends AbstractInvoca
 
   public Collection<String> readAdditionalPropertyNames() {
     final Set<String> res = new HashSet<String>(propertyChanges.keySet());
-    final Set<String> propertyNames = new HashSet<String>();
-    for (Method method : typeRef.getMethods()) {
-      final Annotation ann = method.getAnnotation(Property.class);
-      if (ann != null) {
-        final String property = ((Property) ann).name();
-        propertyNames.add(property);
-
-        // maybe someone could add a normal attribute to the additional set
-        res.remove(property);
-      }
-    }
+    final Set<String> propertyNames = getTypeMetadata().getPropertyNames();
+    // maybe someone could add a normal attribute to the additional set
+    res.removeAll(propertyNames);
 
     for (ODataProperty property : getInternalProperties()) {
       if (!propertyNames.contains(property.getName())) {
@@ -580,6 +595,8 @@ public abstract class AbstractStructuredInvocationHandler extends AbstractInvoca
     if (linkCache.containsKey(navProp)) {
       linkCache.remove(navProp);
     }
+
+    getContext().entityContext().markModified(getEntityHandler());
   }
 
   protected void updatePropertiesTag(final int checkpoint) {
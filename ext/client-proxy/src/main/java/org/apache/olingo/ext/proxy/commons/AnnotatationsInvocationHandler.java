@@ -21,6 +21,7 @@ package org.apache.olingo.ext.proxy.commons;
 import org.apache.olingo.ext.proxy.api.annotations.AnnotationsForNavigationProperty;
 import org.apache.olingo.ext.proxy.api.annotations.AnnotationsForProperty;
 import org.apache.olingo.ext.proxy.utils.ClassUtils;
+import org.apache.olingo.ext.proxy.utils.TypeMetadata;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
@@ -58,7 +59,12 @@ public class AnnotatationsInvocationHandler extends AbstractInvocationHandler {
     if (isSelfMethod(method, args)) {
       return invokeSelfMethod(method, args);
     } else if (method.getName().startsWith("get") && method.getName().endsWith("Annotations")) {
-      final Method getter = proxy.getClass().getInterfaces()[0].getMethod(method.getName());
+      final TypeMetadata.Accessor accessor =
+              TypeMetadata.getInstance(proxy.getClass().getInterfaces()[0]).getAccessor(method.getName());
+      if (accessor == null) {
+        throw new NoSuchMethodException(method.getName());
+      }
+      final Method getter = accessor.getGetter();
 
       String propName = null;
       String navPropName = null;
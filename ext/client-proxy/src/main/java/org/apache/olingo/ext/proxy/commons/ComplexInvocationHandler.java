@@ -36,6 +36,7 @@ import org.apache.olingo.ext.proxy.AbstractService;
 import org.apache.olingo.ext.proxy.api.annotations.ComplexType;
 import org.apache.olingo.ext.proxy.api.annotations.NavigationProperty;
 import org.apache.olingo.ext.proxy.utils.ClassUtils;
+import org.apache.olingo.ext.proxy.utils.TypeMetadata;
 
 public class ComplexInvocationHandler extends AbstractStructuredInvocationHandler {
 
@@ -50,7 +51,7 @@ public class ComplexInvocationHandler extends AbstractStructuredInvocationHandle
       complexTypeRef = typeRef;
     }
 
-    final ComplexType annotation = complexTypeRef.getAnnotation(ComplexType.class);
+    final ComplexType annotation = TypeMetadata.getInstance(complexTypeRef).getComplexType();
     if (annotation == null) {
       throw new IllegalArgumentException("Invalid complex type " + complexTypeRef);
     }
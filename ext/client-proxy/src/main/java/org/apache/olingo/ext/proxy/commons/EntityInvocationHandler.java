@@ -43,13 +43,13 @@ import org.apache.olingo.ext.proxy.AbstractService;
 import org.apache.olingo.ext.proxy.api.AbstractTerm;
 import org.apache.olingo.ext.proxy.api.Annotatable;
 import org.apache.olingo.ext.proxy.api.EdmStreamValue;
-import org.apache.olingo.ext.proxy.api.annotations.EntityType;
 import org.apache.olingo.ext.proxy.api.annotations.Namespace;
 import org.apache.olingo.ext.proxy.api.annotations.NavigationProperty;
 import org.apache.olingo.ext.proxy.api.annotations.Term;
 import org.apache.olingo.ext.proxy.context.AttachedEntityStatus;
 import org.apache.olingo.ext.proxy.context.EntityUUID;
 import org.apache.olingo.ext.proxy.utils.CoreUtils;
+import org.apache.olingo.ext.proxy.utils.TypeMetadata;
 
 public class EntityInvocationHandler extends AbstractStructuredInvocationHandler implements Annotatable {
 
@@ -125,11 +125,11 @@ public class EntityInvocationHandler extends AbstractStructuredInvocationHandler
 
     super(typeRef, service);
 
-    final String name = typeRef.getAnnotation(org.apache.olingo.ext.proxy.api.annotations.EntityType.class).name();
-    final String namespace = typeRef.getAnnotation(Namespace.class).value();
+    final TypeMetadata metadata = getTypeMetadata();
 
-    this.internal = service.getClient().getObjectFactory().newEntity(new FullQualifiedName(namespace, name));
-    ODataEntity.class.cast(this.internal).setMediaEntity(typeRef.getAnnotation(EntityType.class).hasStream());
+    this.internal = service.getClient().getObjectFactory().newEntity(
+        new FullQualifiedName(metadata.getNamespace(), metadata.getEntityType().name()));
+    ODataEntity.class.cast(this.internal).setMediaEntity(metadata.hasStream());
 
     this.uuid = new EntityUUID(null, typeRef, null);
   }
@@ -141,11 +141,11 @@ public class EntityInvocationHandler extends AbstractStructuredInvocationHandler
 
     super(typeRef, service);
 
-    final String name = typeRef.getAnnotation(org.apache.olingo.ext.proxy.api.annotations.EntityType.class).name();
-    final String namespace = typeRef.getAnnotation(Namespace.class).value();
+    final TypeMetadata metadata = getTypeMetadata();
 
-    this.internal = service.getClient().getObjectFactory().newEntity(new FullQualifiedName(namespace, name));
-    ODataEntity.class.cast(this.internal).setMediaEntity(typeRef.getAnnotation(EntityType.class).hasStream());
+    this.internal = service.getClient().getObjectFactory().newEntity(
+        new FullQualifiedName(metadata.getNamespace(), metadata.getEntityType().name()));
+    ODataEntity.class.cast(this.internal).setMediaEntity(metadata.hasStream());
 
     this.baseURI = entityURI;
     this.uri = entityURI == null ? null : getClient().newURIBuilder(baseURI.toASCIIString());
@@ -170,7 +170,7 @@ public class EntityInvocationHandler extends AbstractStructuredInvocationHandler
     }
 
     this.internal = entity;
-    getEntity().setMediaEntity(typeRef.getAnnotation(EntityType.class).hasStream());
+    getEntity().setMediaEntity(getTypeMetadata().hasStream());
 
     this.uuid = new EntityUUID(entitySetURI, typeRef, null);
   }
@@ -202,14 +202,14 @@ public class EntityInvocationHandler extends AbstractStructuredInvocationHandler
     }
 
     this.internal = entity;
-    getEntity().setMediaEntity(typeRef.getAnnotation(EntityType.class).hasStream());
+    getEntity().setMediaEntity(getTypeMetadata().hasStream());
 
     this.uuid = new EntityUUID(entitySetURI, typeRef, key);
   }
 
   public void setEntity(final ODataEntity entity) {
     this.internal = entity;
-    getEntity().setMediaEntity(typeRef.getAnnotation(EntityType.class).hasStream());
+    getEntity().setMediaEntity(getTypeMetadata().hasStream());
 
     final Object key = CoreUtils.getKey(getClient(), this, typeRef, entity);
 
@@ -309,7 +309,7 @@ public class EntityInvocationHandler extends AbstractStructuredInvocationHandler
   }
 
   public void uploadStream(final EdmStreamValue stream) {
-    if (typeRef.getAnnotation(EntityType.class).hasStream()) {
+    if (getTypeMetadata().hasStream()) {
       if (this.stream != null) {
         this.stream.close();
       }
@@ -328,7 +328,7 @@ public class EntityInvocationHandler extends AbstractStructuredInvocationHandler
         : getEntity().getMediaContentSource();
 
     if (this.stream == null
-        && typeRef.getAnnotation(EntityType.class).hasStream()
+        && getTypeMetadata().hasStream()
         && contentSource != null) {
 
       final ODataMediaRequest retrieveReq =
@@ -27,6 +27,17 @@ public class Context {
 
   }
 
+  /**
+   * Constructor.
+   *
+   * @param mode how unchanged entities are held by the entity context.
+   * @param maxSize maximum number of unchanged entities held; <tt>0</tt> means unbounded.
+   * @see EntityContext
+   */
+  public Context(final EntityContextMode mode, final int maxSize) {
+    this.entities = new EntityContext(mode, maxSize);
+  }
+
   public EntityContext entityContext() {
     return entities;
   }
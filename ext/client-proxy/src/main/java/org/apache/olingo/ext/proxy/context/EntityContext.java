@@ -18,6 +18,10 @@
  */
 package org.apache.olingo.ext.proxy.context;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 import java.net.URI;
 import org.apache.olingo.ext.proxy.commons.EntityInvocationHandler;
 
@@ -27,9 +31,18 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Entity context.
+ * <br/>
+ * By default all attached entities are strongly held until detached. When configured with a
+ * {@link EntityContextMode} other than <tt>STRONG</tt> or with a maximum size, unchanged entities (<tt>ATTACHED</tt>)
+ * with a not null key are kept in an identity map made of weak or soft references with LRU eviction; any other status,
+ * as well as any modification notified through {@link #markModified(EntityInvocationHandler)}, keeps the entity
+ * strongly held until the next flush.
+ * <br/>
+ * All methods are thread-safe.
  */
 public class EntityContext implements Iterable<AttachedEntity> {
 
@@ -49,12 +62,81 @@ public class EntityContext implements Iterable<AttachedEntity> {
   private final Map<EntityInvocationHandler, AttachedEntityStatus> allAttachedEntities =
           new LinkedHashMap<EntityInvocationHandler, AttachedEntityStatus>();
 
+  /**
+   * Unchanged entities with not null key, when the identity map is enabled.
+   * <br/>
+   * Access order is maintained, in order to evict the least recently used entities first. Entities without key are
+   * never stored here, since their temporary UUIDs are not guaranteed to be unique.
+   */
+  private final LinkedHashMap<EntityUUID, EntityReference> unchangedEntities =
+          new LinkedHashMap<EntityUUID, EntityReference>(16, 0.75f, true);
+
+  private final ReferenceQueue<EntityInvocationHandler> collectedEntities =
+          new ReferenceQueue<EntityInvocationHandler>();
+
   /**
    * Deletes to be performed excluding entities.
    * <br/>
    * Attachment order will be maintained.
    */
-  private final List<URI> furtherDeletes = new ArrayList<URI>();
+  private final List<URI> furtherDeletes = new CopyOnWriteArrayList<URI>();
+
+  private EntityContextMode mode;
+
+  private int maxSize;
+
+  private long hits;
+
+  private long misses;
+
+  private long evictions;
+
+  private long collected;
+
+  public EntityContext() {
+    this(EntityContextMode.STRONG, 0);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param mode how unchanged entities are held.
+   * @param maxSize maximum number of unchanged entities held; <tt>0</tt> means unbounded.
+   */
+  public EntityContext(final EntityContextMode mode, final int maxSize) {
+    checkConfiguration(mode, maxSize);
+    this.mode = mode;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Changes how unchanged entities are held; entities currently attached are kept.
+   *
+   * @param mode how unchanged entities are held.
+   * @param maxSize maximum number of unchanged entities held; <tt>0</tt> means unbounded.
+   */
+  public synchronized void configure(final EntityContextMode mode, final int maxSize) {
+    checkConfiguration(mode, maxSize);
+
+    final List<AttachedEntity> attached = snapshot();
+    clearEntities();
+
+    this.mode = mode;
+    this.maxSize = maxSize;
+
+    for (AttachedEntity entity : attached) {
+      put(entity.getEntity(), entity.getStatus());
+    }
+    evict();
+  }
+
+  public synchronized EntityContextMode getMode() {
+    return mode;
+  }
+
+  public synchronized int getMaxSize() {
+    return maxSize;
+  }
 
   /**
    * Attaches an entity with status <tt>NEW</tt>.
@@ -64,7 +146,7 @@ public class EntityContext implements Iterable<AttachedEntity> {
    * @see AttachedEntityStatus
    * @param entity entity to be attached.
    */
-  public void attachNew(final EntityInvocationHandler entity) {
+  public synchronized void attachNew(final EntityInvocationHandler entity) {
     if (allAttachedEntities.containsKey(entity)) {
       throw new IllegalStateException("An entity with the same key has already been attached");
     }
@@ -79,7 +161,7 @@ public class EntityContext implements Iterable<AttachedEntity> {
    * @see AttachedEntityStatus
    * @param entity entity to be attached.
    */
-  public void attach(final EntityInvocationHandler entity) {
+  public synchronized void attach(final EntityInvocationHandler entity) {
     attach(entity, AttachedEntityStatus.ATTACHED);
   }
 
@@ -92,7 +174,7 @@ public class EntityContext implements Iterable<AttachedEntity> {
    * @param entity entity to be attached.
    * @param status status.
    */
-  public void attach(final EntityInvocationHandler entity, final AttachedEntityStatus status) {
+  public synchronized void attach(final EntityInvocationHandler entity, final AttachedEntityStatus status) {
     attach(entity, status, false);
   }
 
@@ -105,17 +187,16 @@ public class EntityContext implements Iterable<AttachedEntity> {
    * @param status status.
    * @param force force attach.
    */
-  public void attach(final EntityInvocationHandler entity, final AttachedEntityStatus status, final boolean force) {
+  public synchronized void attach(final EntityInvocationHandler entity, final AttachedEntityStatus status,
+          final boolean force) {
+
     if (isAttached(entity)) {
       throw new IllegalStateException("An entity with the same profile has already been attached");
     }
 
     if (force || entity.getUUID().getEntitySetURI() != null) {
-      allAttachedEntities.put(entity, status);
-
-      if (entity.getUUID().getKey() != null) {
-        searchableEntities.put(entity.getUUID(), entity);
-      }
+      put(entity, status);
+      evict();
     }
   }
 
@@ -124,9 +205,10 @@ public class EntityContext implements Iterable<AttachedEntity> {
    *
    * @param entity entity to be detached.
    */
-  public void detach(final EntityInvocationHandler entity) {
+  public synchronized void detach(final EntityInvocationHandler entity) {
     searchableEntities.remove(entity.getUUID());
     allAttachedEntities.remove(entity);
+    release(unchangedEntities.remove(entity.getUUID()));
   }
 
   /**
@@ -134,9 +216,8 @@ public class EntityContext implements Iterable<AttachedEntity> {
    * <br/>
    * Use this method to clears the entity context.
    */
-  public void detachAll() {
-    allAttachedEntities.clear();
-    searchableEntities.clear();
+  public synchronized void detachAll() {
+    clearEntities();
     furtherDeletes.clear();
   }
 
@@ -146,8 +227,20 @@ public class EntityContext implements Iterable<AttachedEntity> {
    * @param uuid entity key.
    * @return retrieved entity.
    */
-  public EntityInvocationHandler getEntity(final EntityUUID uuid) {
-    return searchableEntities.get(uuid);
+  public synchronized EntityInvocationHandler getEntity(final EntityUUID uuid) {
+    expunge();
+
+    EntityInvocationHandler entity = searchableEntities.get(uuid);
+    if (entity == null) {
+      entity = getUnchanged(uuid);
+    }
+
+    if (entity == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return entity;
   }
 
   /**
@@ -156,12 +249,12 @@ public class EntityContext implements Iterable<AttachedEntity> {
    * @param entity entity to be retrieved.
    * @return attached entity status.
    */
-  public AttachedEntityStatus getStatus(final EntityInvocationHandler entity) {
+  public synchronized AttachedEntityStatus getStatus(final EntityInvocationHandler entity) {
     if (!isAttached(entity)) {
       throw new IllegalStateException("Entity is not in the context");
     }
 
-    return allAttachedEntities.get(entity);
+    return getAttachedStatus(entity);
   }
 
   /**
@@ -170,12 +263,12 @@ public class EntityContext implements Iterable<AttachedEntity> {
    * @param entity attached entity to be modified.
    * @param status new status.
    */
-  public void setStatus(final EntityInvocationHandler entity, final AttachedEntityStatus status) {
+  public synchronized void setStatus(final EntityInvocationHandler entity, final AttachedEntityStatus status) {
     if (!isAttached(entity)) {
       throw new IllegalStateException("Entity is not in the context");
     }
 
-    final AttachedEntityStatus current = allAttachedEntities.get(entity);
+    final AttachedEntityStatus current = getAttachedStatus(entity);
 
     // Previously deleted object cannot be modified anymore.
     if (current == AttachedEntityStatus.DELETED) {
@@ -190,7 +283,32 @@ public class EntityContext implements Iterable<AttachedEntity> {
             || (status == AttachedEntityStatus.CHANGED && current == AttachedEntityStatus.ATTACHED)
             || (status == AttachedEntityStatus.CHANGED && current == AttachedEntityStatus.LINKED)
             || (status == AttachedEntityStatus.DELETED)) {
-      allAttachedEntities.put(entity, status);
+
+      // from now on the entity must be strongly held until flush
+      release(unchangedEntities.remove(entity.getUUID()));
+      hold(entity, status);
+    }
+  }
+
+  /**
+   * Notifies that an attached entity is being modified without any status change (e.g. a link added to an
+   * <tt>ATTACHED</tt> entity, or a collection property value changed in place).
+   * <br/>
+   * If the entity is currently held by the identity map, from now on it is strongly held until the next flush, so
+   * that the garbage collector cannot discard its pending changes.
+   *
+   * @param entity modified entity.
+   */
+  public synchronized void markModified(final EntityInvocationHandler entity) {
+    if (entity == null || allAttachedEntities.containsKey(entity)) {
+      return;
+    }
+
+    final EntityReference reference = unchangedEntities.get(entity.getUUID());
+    if (reference != null && reference.get() == entity) {
+      unchangedEntities.remove(entity.getUUID());
+      release(reference);
+      hold(entity, AttachedEntityStatus.ATTACHED);
     }
   }
 
@@ -200,10 +318,11 @@ public class EntityContext implements Iterable<AttachedEntity> {
    * @param entity entity.
    * @return <tt>true</tt> if is attached; <tt>false</tt> otherwise.
    */
-  public boolean isAttached(final EntityInvocationHandler entity) {
+  public synchronized boolean isAttached(final EntityInvocationHandler entity) {
     return entity == null // avoid attach for null entities (coming from complexes created from container ...)
             || allAttachedEntities.containsKey(entity)
-            || (entity.getUUID().getKey() != null && searchableEntities.containsKey(entity.getUUID()));
+            || (entity.getUUID().getKey() != null && searchableEntities.containsKey(entity.getUUID()))
+            || getUnchanged(entity.getUUID()) != null;
   }
 
   /**
@@ -212,12 +331,8 @@ public class EntityContext implements Iterable<AttachedEntity> {
    * @return attached entities iterator.
    */
   @Override
-  public Iterator<AttachedEntity> iterator() {
-    final List<AttachedEntity> res = new ArrayList<AttachedEntity>();
-    for (Map.Entry<EntityInvocationHandler, AttachedEntityStatus> entity : allAttachedEntities.entrySet()) {
-      res.add(new AttachedEntity(entity.getKey(), entity.getValue()));
-    }
-    return res.iterator();
+  public synchronized Iterator<AttachedEntity> iterator() {
+    return snapshot().iterator();
   }
 
   public List<URI> getFurtherDeletes() {
@@ -227,4 +342,230 @@ public class EntityContext implements Iterable<AttachedEntity> {
   public void addFurtherDeletes(final URI uri) {
     furtherDeletes.add(uri);
   }
+
+  /**
+   * Gets identity map statistics.
+   *
+   * @return statistics snapshot.
+   */
+  public synchronized EntityContextStatistics getStatistics() {
+    expunge();
+    return new EntityContextStatistics(hits, misses, evictions, collected,
+            allAttachedEntities.size() + unchangedEntities.size());
+  }
+
+  private static void checkConfiguration(final EntityContextMode mode, final int maxSize) {
+    if (mode == null) {
+      throw new IllegalArgumentException("Entity context mode must not be null");
+    }
+    if (maxSize < 0) {
+      throw new IllegalArgumentException("Invalid entity context maximum size: " + maxSize);
+    }
+  }
+
+  private boolean isIdentityMapEnabled() {
+    return mode != EntityContextMode.STRONG || maxSize > 0;
+  }
+
+  private void put(final EntityInvocationHandler entity, final AttachedEntityStatus status) {
+    if (status == AttachedEntityStatus.ATTACHED && isIdentityMapEnabled() && entity.getUUID().getKey() != null) {
+      expunge();
+      release(unchangedEntities.put(entity.getUUID(), newReference(entity)));
+    } else {
+      hold(entity, status);
+    }
+  }
+
+  private void hold(final EntityInvocationHandler entity, final AttachedEntityStatus status) {
+    allAttachedEntities.put(entity, status);
+
+    if (entity.getUUID().getKey() != null) {
+      searchableEntities.put(entity.getUUID(), entity);
+    }
+  }
+
+  private AttachedEntityStatus getAttachedStatus(final EntityInvocationHandler entity) {
+    final AttachedEntityStatus status = allAttachedEntities.get(entity);
+    return status == null && entity != null && getUnchanged(entity.getUUID()) != null
+            ? AttachedEntityStatus.ATTACHED
+            : status;
+  }
+
+  private EntityInvocationHandler getUnchanged(final EntityUUID uuid) {
+    final EntityReference reference = unchangedEntities.get(uuid);
+    if (reference == null) {
+      return null;
+    }
+
+    final EntityInvocationHandler entity = reference.get();
+    if (entity == null) {
+      // collected but not enqueued yet
+      unchangedEntities.remove(uuid);
+      collected++;
+    }
+    return entity;
+  }
+
+  private EntityReference newReference(final EntityInvocationHandler entity) {
+    switch (mode) {
+    case SOFT:
+      return new SoftEntityReference(entity, collectedEntities);
+
+    case WEAK:
+      return new WeakEntityReference(entity, collectedEntities);
+
+    default:
+      return new StrongEntityReference(entity);
+    }
+  }
+
+  /**
+   * Removes least recently used unchanged entities exceeding the maximum size.
+   * <br/>
+   * Entities modified without any status change are kept, as they must be processed by the next flush.
+   */
+  private void evict() {
+    if (maxSize <= 0) {
+      return;
+    }
+
+    final Iterator<EntityReference> iter = unchangedEntities.values().iterator();
+    while (unchangedEntities.size() > maxSize && iter.hasNext()) {
+      final EntityReference reference = iter.next();
+      iter.remove();
+
+      final EntityInvocationHandler entity = reference.get();
+      release(reference);
+      if (entity == null) {
+        collected++;
+      } else if (entity.isChanged()) {
+        hold(entity, AttachedEntityStatus.ATTACHED);
+      } else {
+        evictions++;
+      }
+    }
+  }
+
+  /**
+   * Removes unchanged entities released by the garbage collector.
+   */
+  private void expunge() {
+    Reference<? extends EntityInvocationHandler> reference;
+    while ((reference = collectedEntities.poll()) != null) {
+      final EntityUUID uuid = ((EntityReference) reference).getUUID();
+      if (unchangedEntities.get(uuid) == reference) {
+        unchangedEntities.remove(uuid);
+        collected++;
+      }
+    }
+  }
+
+  /**
+   * Clears a reference removed from the identity map, so that it won't be enqueued anymore.
+   */
+  private void release(final EntityReference reference) {
+    if (reference != null) {
+      reference.clear();
+    }
+  }
+
+  private List<AttachedEntity> snapshot() {
+    expunge();
+
+    final List<AttachedEntity> res = new ArrayList<AttachedEntity>();
+    for (Map.Entry<EntityInvocationHandler, AttachedEntityStatus> entity : allAttachedEntities.entrySet()) {
+      res.add(new AttachedEntity(entity.getKey(), entity.getValue()));
+    }
+    for (EntityReference reference : unchangedEntities.values()) {
+      final EntityInvocationHandler entity = reference.get();
+      if (entity != null) {
+        res.add(new AttachedEntity(entity, AttachedEntityStatus.ATTACHED));
+      }
+    }
+    return res;
+  }
+
+  private void clearEntities() {
+    allAttachedEntities.clear();
+    searchableEntities.clear();
+    for (EntityReference reference : unchangedEntities.values()) {
+      release(reference);
+    }
+    unchangedEntities.clear();
+    while (collectedEntities.poll() != null) {
+      // drain references enqueued before clearing
+    }
+  }
+
+  private interface EntityReference {
+
+    EntityInvocationHandler get();
+
+    EntityUUID getUUID();
+
+    void clear();
+  }
+
+  private static final class StrongEntityReference implements EntityReference {
+
+    private EntityInvocationHandler entity;
+
+    private final EntityUUID uuid;
+
+    StrongEntityReference(final EntityInvocationHandler entity) {
+      this.entity = entity;
+      this.uuid = entity.getUUID();
+    }
+
+    @Override
+    public EntityInvocationHandler get() {
+      return entity;
+    }
+
+    @Override
+    public EntityUUID getUUID() {
+      return uuid;
+    }
+
+    @Override
+    public void clear() {
+      entity = null;
+    }
+  }
+
+  private static final class WeakEntityReference extends WeakReference<EntityInvocationHandler>
+          implements EntityReference {
+
+    private final EntityUUID uuid;
+
+    WeakEntityReference(final EntityInvocationHandler entity,
+            final ReferenceQueue<EntityInvocationHandler> queue) {
+
+      super(entity, queue);
+      this.uuid = entity.getUUID();
+    }
+
+    @Override
+    public EntityUUID getUUID() {
+      return uuid;
+    }
+  }
+
+  private static final class SoftEntityReference extends SoftReference<EntityInvocationHandler>
+          implements EntityReference {
+
+    private final EntityUUID uuid;
+
+    SoftEntityReference(final EntityInvocationHandler entity,
+            final ReferenceQueue<EntityInvocationHandler> queue) {
+
+      super(entity, queue);
+      this.uuid = entity.getUUID();
+    }
+
+    @Override
+    public EntityUUID getUUID() {
+      return uuid;
+    }
+  }
 }
@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.ext.proxy.context;
+
+/**
+ * How the entity context holds entities that have been loaded but not modified (<tt>ATTACHED</tt>).
+ * <br/>
+ * Entities with any other status are always strongly held until the next flush.
+ */
+public enum EntityContextMode {
+
+  /**
+   * Strong references: entities are kept until detached (default).
+   */
+  STRONG,
+  /**
+   * Soft references: entities are released when the JVM is running low on memory.
+   */
+  SOFT,
+  /**
+   * Weak references: entities are released as soon as the application does not reference them anymore.
+   */
+  WEAK
+
+}
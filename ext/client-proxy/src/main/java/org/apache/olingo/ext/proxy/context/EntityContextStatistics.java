@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.ext.proxy.context;
+
+/**
+ * Snapshot of the entity context identity map statistics.
+ */
+public class EntityContextStatistics {
+
+  private final long hits;
+
+  private final long misses;
+
+  private final long evictions;
+
+  private final long collected;
+
+  private final int size;
+
+  public EntityContextStatistics(final long hits, final long misses, final long evictions, final long collected,
+          final int size) {
+
+    this.hits = hits;
+    this.misses = misses;
+    this.evictions = evictions;
+    this.collected = collected;
+    this.size = size;
+  }
+
+  /**
+   * @return number of key lookups that found an attached entity.
+   */
+  public long getHits() {
+    return hits;
+  }
+
+  /**
+   * @return number of key lookups that did not find an attached entity.
+   */
+  public long getMisses() {
+    return misses;
+  }
+
+  /**
+   * @return hit ratio, between 0 and 1.
+   */
+  public double getHitRatio() {
+    final long lookups = hits + misses;
+    return lookups == 0 ? 0 : (double) hits / lookups;
+  }
+
+  /**
+   * @return number of unchanged entities removed because the maximum size was exceeded.
+   */
+  public long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * @return number of unchanged entities released by the garbage collector.
+   */
+  public long getCollected() {
+    return collected;
+  }
+
+  /**
+   * @return number of entities currently held by the context.
+   */
+  public int getSize() {
+    return size;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "[hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+            + ", collected=" + collected + ", size=" + size + "]";
+  }
+}
@@ -18,13 +18,8 @@
  */
 package org.apache.olingo.ext.proxy.utils;
 
-import org.apache.olingo.ext.proxy.api.annotations.CompoundKey;
 import org.apache.olingo.ext.proxy.api.annotations.EntityType;
-import org.apache.olingo.ext.proxy.api.annotations.Key;
-import org.apache.olingo.ext.proxy.api.annotations.KeyRef;
 import org.apache.olingo.ext.proxy.api.annotations.Namespace;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.AccessibleObject;
@@ -35,15 +30,10 @@ import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
-import java.util.HashSet;
-import java.util.Set;
 
 public final class ClassUtils {
 
-  /**
-   * Logger.
-   */
-  private static final Logger LOG = LoggerFactory.getLogger(ClassUtils.class);
+  private static volatile Void voidInstance;
 
   private ClassUtils() {
     // Empty private constructor for static utility classes
@@ -78,23 +68,8 @@ public final class ClassUtils {
 
   public static Method findGetterByAnnotatedName(
           final Class<?> clazz, final Class<? extends Annotation> ann, final String name) {
-    final Method[] methods = clazz.getMethods();
-
-    Method result = null;
-    for (int i = 0; i < methods.length && result == null; i++) {
-      final Annotation annotation = methods[i].getAnnotation(ann);
-      try {
-        if ((annotation != null)
-                && methods[i].getName().startsWith("get") // Assumption: getter is always prefixed by 'get' word 
-                && name.equals(ann.getMethod("name").invoke(annotation))) {
-          result = methods[i];
-        }
-      } catch (Exception e) {
-        LOG.warn("Error retrieving value annotation name for {}.{}", clazz.getName(), methods[i].getName());
-      }
-    }
 
-    return result;
+    return TypeMetadata.getInstance(clazz).getGetterByAnnotatedName(ann, name);
   }
 
   public static <ANN extends Annotation> ANN getAnnotation(final Class<ANN> reference, final AccessibleObject obj) {
@@ -103,32 +78,20 @@ public final class ClassUtils {
   }
 
   public static Class<?> getCompoundKeyRef(final Class<?> entityTypeRef) {
-    if (entityTypeRef.getAnnotation(EntityType.class) == null) {
+    final TypeMetadata metadata = TypeMetadata.getInstance(entityTypeRef);
+    if (metadata.getEntityType() == null) {
       throw new IllegalArgumentException("Invalid annotation for entity type " + entityTypeRef);
     }
 
-    final Annotation ann = entityTypeRef.getAnnotation(KeyRef.class);
-
-    return ann == null || ((KeyRef) ann).value().getAnnotation(CompoundKey.class) == null
-            ? null
-            : ((KeyRef) ann).value();
+    return metadata.getCompoundKeyRef();
   }
 
   public static Class<?> getKeyRef(final Class<?> entityTypeRef) {
     Class<?> res = getCompoundKeyRef(entityTypeRef);
 
     if (res == null) {
-      final Set<Method> keyGetters = new HashSet<Method>();
-
-      for (Method method : entityTypeRef.getDeclaredMethods()) {
-        if (method.getName().startsWith("get") && method.getAnnotation(Key.class) != null) {
-          keyGetters.add(method);
-        }
-      }
-
-      if (keyGetters.size() == 1) {
-        res = keyGetters.iterator().next().getReturnType();
-      } else {
+      res = TypeMetadata.getInstance(entityTypeRef).getSingleKeyRef();
+      if (res == null) {
         throw new IllegalStateException(entityTypeRef.getSimpleName() + "'s key reference not found");
       }
     }
@@ -137,30 +100,35 @@ public final class ClassUtils {
   }
 
   public static String getEntityTypeName(final Class<?> ref) {
-    final Annotation annotation = ref.getAnnotation(EntityType.class);
-    if (!(annotation instanceof EntityType)) {
+    final EntityType annotation = TypeMetadata.getInstance(ref).getEntityType();
+    if (annotation == null) {
       throw new IllegalArgumentException(ref.getPackage().getName()
               + " is not annotated as @" + EntityType.class.getSimpleName());
     }
-    return ((EntityType) annotation).name();
+    return annotation.name();
   }
 
   public static String getNamespace(final Class<?> ref) {
-    final Annotation annotation = ref.getAnnotation(Namespace.class);
-    if (!(annotation instanceof Namespace)) {
+    final String namespace = TypeMetadata.getInstance(ref).getNamespace();
+    if (namespace == null) {
       throw new IllegalArgumentException(ref.getName()
               + " is not annotated as @" + Namespace.class.getSimpleName());
     }
-    return ((Namespace) annotation).value();
+    return namespace;
   }
 
   public static Void returnVoid()
           throws NoSuchMethodException, InstantiationException, IllegalAccessException,
           IllegalArgumentException, InvocationTargetException {
 
-    final Constructor<Void> voidConstructor = Void.class.getDeclaredConstructor();
-    voidConstructor.setAccessible(true);
-    return voidConstructor.newInstance();
+    Void result = voidInstance;
+    if (result == null) {
+      final Constructor<Void> voidConstructor = Void.class.getDeclaredConstructor();
+      voidConstructor.setAccessible(true);
+      result = voidConstructor.newInstance();
+      voidInstance = result;
+    }
+    return result;
   }
 
   public static Type[] getTypeArguments(final Type type) {
@@ -33,8 +33,6 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.TreeSet;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.olingo.client.api.EdmEnabledODataClient;
@@ -62,11 +60,8 @@ import org.apache.olingo.ext.proxy.AbstractService;
 import org.apache.olingo.ext.proxy.api.AbstractTerm;
 import org.apache.olingo.ext.proxy.api.ComplexCollection;
 import org.apache.olingo.ext.proxy.api.EntityCollection;
-import org.apache.olingo.ext.proxy.api.annotations.ComplexType;
-import org.apache.olingo.ext.proxy.api.annotations.CompoundKey;
 import org.apache.olingo.ext.proxy.api.annotations.CompoundKeyElement;
 import org.apache.olingo.ext.proxy.api.annotations.EnumType;
-import org.apache.olingo.ext.proxy.api.annotations.Key;
 import org.apache.olingo.ext.proxy.api.annotations.Namespace;
 import org.apache.olingo.ext.proxy.api.annotations.NavigationProperty;
 import org.apache.olingo.ext.proxy.api.annotations.Property;
@@ -248,9 +243,9 @@ public final class CoreUtils {
           EntityCollection.class, ComplexCollection.class, Collection.class));
       return edmTypeInfo.setTypeExpression("Collection(" + type.getFullQualifiedName() + ")").build();
     } else if (obj instanceof Proxy) {
-      final Class<?> typeRef = obj.getClass().getInterfaces()[0];
-      final String ns = typeRef.getAnnotation(Namespace.class).value();
-      final String name = typeRef.getAnnotation(ComplexType.class).name();
+      final TypeMetadata metadata = TypeMetadata.getInstance(obj.getClass().getInterfaces()[0]);
+      final String ns = metadata.getNamespace();
+      final String name = metadata.getComplexType().name();
       return edmTypeInfo.setTypeExpression(new FullQualifiedName(ns, name).toString()).build();
     } else if (obj.getClass().getAnnotation(EnumType.class) != null) {
       final Class<?> typeRef = obj.getClass();
@@ -358,21 +353,21 @@ public final class CoreUtils {
       throws NoSuchMethodException, IllegalAccessException, IllegalArgumentException, InvocationTargetException {
 
     // Assumption: setter is always prefixed by 'set' word
-    final String setterName = getter.getName().replaceFirst("get", "set");
-    bean.getClass().getMethod(setterName, getter.getReturnType()).invoke(bean, value);
+    final Method setter = TypeMetadata.getInstance(bean.getClass()).getSetter(getter);
+    if (setter == null) {
+      throw new NoSuchMethodException(getter.getName().replaceFirst("get", "set"));
+    }
+    setter.invoke(bean, value);
   }
 
   private static Class<?> getPropertyClass(final Class<?> entityClass, final String propertyName) {
-    Class<?> propertyClass = null;
-    try {
-      final Method getter = entityClass.getMethod("get" + StringUtils.capitalize(propertyName));
-      if (getter != null) {
-        propertyClass = getter.getReturnType();
-      }
-    } catch (Exception e) {
-      LOG.error("Could not determine the Java type of {}", propertyName, e);
+    final TypeMetadata.Accessor accessor =
+        TypeMetadata.getInstance(entityClass).getAccessor("get" + StringUtils.capitalize(propertyName));
+    if (accessor == null) {
+      LOG.error("Could not determine the Java type of {}", propertyName);
+      return null;
     }
-    return propertyClass;
+    return accessor.getType();
   }
 
   public static URIBuilder buildEditLink(
@@ -389,7 +384,7 @@ public final class CoreUtils {
         ? client.newURIBuilder(entitySetURI)
         : client.newURIBuilder();
 
-    if (key.getClass().getAnnotation(CompoundKey.class) == null) {
+    if (!TypeMetadata.getInstance(key.getClass()).isCompoundKey()) {
       LOG.debug("Append key segment '{}'", key);
       uriBuilder.appendKeySegment(key);
     } else {
@@ -401,15 +396,8 @@ public final class CoreUtils {
   }
 
   public static Map<String, Object> getCompoundKey(final Object key) {
-    final Set<CompoundKeyElementWrapper> elements = new TreeSet<CompoundKeyElementWrapper>();
-
-    for (Method method : key.getClass().getMethods()) {
-      final Annotation annotation = method.getAnnotation(CompoundKeyElement.class);
-      if (annotation instanceof CompoundKeyElement) {
-        elements.add(new CompoundKeyElementWrapper(
-            ((CompoundKeyElement) annotation).name(), method, ((CompoundKeyElement) annotation).position()));
-      }
-    }
+    final List<CompoundKeyElementWrapper> elements =
+        TypeMetadata.getInstance(key.getClass()).getCompoundKeyElements();
 
     final LinkedHashMap<String, Object> map = new LinkedHashMap<String, Object>();
 
@@ -635,15 +623,7 @@ public final class CoreUtils {
   }
 
   private static String firstValidEntityKey(final Class<?> entityTypeRef) {
-    for (Method method : entityTypeRef.getDeclaredMethods()) {
-      if (method.getAnnotation(Key.class) != null) {
-        final Annotation ann = method.getAnnotation(Property.class);
-        if (ann != null) {
-          return ((Property) ann).name();
-        }
-      }
-    }
-    return null;
+    return TypeMetadata.getInstance(entityTypeRef).getKeyPropertyName();
   }
 
   public static URI getMediaEditLink(final String name, final ODataEntity entity) {
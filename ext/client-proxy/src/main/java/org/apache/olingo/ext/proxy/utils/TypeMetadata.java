@@ -0,0 +1,483 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.ext.proxy.utils;
+
+import java.lang.annotation.Annotation;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.olingo.ext.proxy.api.annotations.ComplexType;
+import org.apache.olingo.ext.proxy.api.annotations.CompoundKey;
+import org.apache.olingo.ext.proxy.api.annotations.CompoundKeyElement;
+import org.apache.olingo.ext.proxy.api.annotations.EntityType;
+import org.apache.olingo.ext.proxy.api.annotations.Key;
+import org.apache.olingo.ext.proxy.api.annotations.KeyRef;
+import org.apache.olingo.ext.proxy.api.annotations.Namespace;
+import org.apache.olingo.ext.proxy.api.annotations.NavigationProperty;
+import org.apache.olingo.ext.proxy.api.annotations.Property;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reflection metadata of a type used through the proxy layer (entity type, complex type, compound key or invocation
+ * handler class), resolved once and shared by all invocation handlers.
+ * <br/>
+ * Instances are immutable once built, except for lazily populated lookup tables which are backed by concurrent maps:
+ * they can be freely shared among threads. Only type-level annotations are read at construction time; accessors,
+ * properties and key information are collected on first request, so that checking e.g. whether a property type is a
+ * complex type does not scan its methods.
+ * <br/>
+ * The registry holds types weakly and metadata softly: metadata is kept across garbage collections, but it does not
+ * prevent the class loader of generated proxy interfaces from being unloaded once memory runs short. Invocation
+ * handlers keep the metadata of their own type, so that looking it up is needed only once per handler; lookups of
+ * registered types do not lock.
+ */
+public final class TypeMetadata {
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(TypeMetadata.class);
+
+  /**
+   * Values are held through soft references, since each metadata strongly references its own type.
+   */
+  private static final ConcurrentMap<TypeKey, Reference<TypeMetadata>> REGISTRY =
+          new ConcurrentHashMap<TypeKey, Reference<TypeMetadata>>();
+
+  /**
+   * Keys of the registry whose types have been collected.
+   */
+  private static final ReferenceQueue<Class<?>> COLLECTED_TYPES = new ReferenceQueue<Class<?>>();
+
+  /**
+   * Placeholder for negative lookups, since concurrent maps do not accept <tt>null</tt> values.
+   */
+  private static final Method NO_METHOD;
+
+  static {
+    try {
+      NO_METHOD = Object.class.getMethod("toString");
+    } catch (NoSuchMethodException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  /**
+   * Describes a getter / setter pair bound to a structural or navigation property.
+   */
+  public static final class Accessor {
+
+    private final Method getter;
+
+    private final Type genericType;
+
+    private final Property property;
+
+    private final NavigationProperty navigationProperty;
+
+    private Accessor(final Method getter) {
+      this.getter = getter;
+      this.genericType = getter.getGenericReturnType();
+      this.property = getter.getAnnotation(Property.class);
+      this.navigationProperty = getter.getAnnotation(NavigationProperty.class);
+    }
+
+    public Method getGetter() {
+      return getter;
+    }
+
+    public Class<?> getType() {
+      return getter.getReturnType();
+    }
+
+    public Type getGenericType() {
+      return genericType;
+    }
+
+    /**
+     * @return property annotation, or <tt>null</tt> if the getter is not bound to a structural property
+     */
+    public Property getProperty() {
+      return property;
+    }
+
+    /**
+     * @return navigation property annotation, or <tt>null</tt> if the getter is not bound to a navigation property
+     */
+    public NavigationProperty getNavigationProperty() {
+      return navigationProperty;
+    }
+  }
+
+  /**
+   * Method-level metadata, collected on first request.
+   */
+  private static final class Members {
+
+    /**
+     * Accessors by getter <i>and</i> setter method name.
+     */
+    private final Map<String, Accessor> accessors;
+
+    /**
+     * Accessors by annotated property name.
+     */
+    private final Map<String, Accessor> properties;
+
+    private final Set<String> propertyNames;
+
+    private final List<CompoundKeyElementWrapper> compoundKeyElements;
+
+    private final String keyPropertyName;
+
+    private final Class<?> keyGetterType;
+
+    private final int keyGetterCount;
+
+    private Members(final Class<?> ref) {
+      final Map<String, Accessor> accessorMap = new HashMap<String, Accessor>();
+      final Map<String, Accessor> propertyMap = new HashMap<String, Accessor>();
+      final Set<String> names = new LinkedHashSet<String>();
+      final Set<CompoundKeyElementWrapper> keyElements = new TreeSet<CompoundKeyElementWrapper>();
+
+      for (Method method : ref.getMethods()) {
+        final String name = method.getName();
+        // Assumption: getter is always prefixed by 'get' word and its setter by 'set'
+        if (name.startsWith("get") && method.getParameterTypes().length == 0) {
+          final Accessor accessor = new Accessor(method);
+          accessorMap.put(name, accessor);
+          accessorMap.put("set" + name.substring(3), accessor);
+
+          if (accessor.getProperty() != null) {
+            names.add(accessor.getProperty().name());
+            propertyMap.put(accessor.getProperty().name(), accessor);
+          }
+        }
+
+        final CompoundKeyElement keyElement = method.getAnnotation(CompoundKeyElement.class);
+        if (keyElement != null) {
+          keyElements.add(new CompoundKeyElementWrapper(keyElement.name(), method, keyElement.position()));
+        }
+      }
+
+      String keyName = null;
+      Class<?> keyType = null;
+      int keyCount = 0;
+      for (Method method : ref.getDeclaredMethods()) {
+        if (method.getAnnotation(Key.class) != null) {
+          final Property property = method.getAnnotation(Property.class);
+          if (keyName == null && property != null) {
+            keyName = property.name();
+          }
+          if (method.getName().startsWith("get")) {
+            keyType = method.getReturnType();
+            keyCount++;
+          }
+        }
+      }
+
+      this.keyPropertyName = keyName;
+      this.keyGetterType = keyType;
+      this.keyGetterCount = keyCount;
+      this.accessors = Collections.unmodifiableMap(accessorMap);
+      this.properties = Collections.unmodifiableMap(propertyMap);
+      this.propertyNames = Collections.unmodifiableSet(names);
+      this.compoundKeyElements =
+              Collections.unmodifiableList(new ArrayList<CompoundKeyElementWrapper>(keyElements));
+
+      LOG.debug("Reflection metadata built for {}", ref.getName());
+    }
+  }
+
+  private final Class<?> ref;
+
+  private final EntityType entityType;
+
+  private final ComplexType complexType;
+
+  private final String namespace;
+
+  private final boolean compoundKey;
+
+  private final Class<?> compoundKeyRef;
+
+  private volatile Members members;
+
+  private final ConcurrentMap<Class<? extends Annotation>, Map<String, Method>> gettersByAnnotatedName =
+          new ConcurrentHashMap<Class<? extends Annotation>, Map<String, Method>>();
+
+  private final ConcurrentMap<Method, Method> sameSignatureMethods = new ConcurrentHashMap<Method, Method>();
+
+  private final ConcurrentMap<String, Method> setters = new ConcurrentHashMap<String, Method>();
+
+  /**
+   * Gets (building it at first request) the metadata for the given type.
+   *
+   * @param ref type reference
+   * @return metadata for the given type
+   */
+  public static TypeMetadata getInstance(final Class<?> ref) {
+    final TypeKey key = new TypeKey(ref, null);
+    TypeMetadata metadata = get(key);
+    if (metadata == null) {
+      synchronized (REGISTRY) {
+        metadata = get(key);
+        if (metadata == null) {
+          for (Reference<?> collected = COLLECTED_TYPES.poll(); collected != null;
+                  collected = COLLECTED_TYPES.poll()) {
+            REGISTRY.remove(collected);
+          }
+
+          metadata = new TypeMetadata(ref);
+          REGISTRY.put(new TypeKey(ref, COLLECTED_TYPES), new SoftReference<TypeMetadata>(metadata));
+        }
+      }
+    }
+    return metadata;
+  }
+
+  private static TypeMetadata get(final TypeKey key) {
+    final Reference<TypeMetadata> cached = REGISTRY.get(key);
+    return cached == null ? null : cached.get();
+  }
+
+  /**
+   * Key of the registry, holding its type weakly and comparing types by identity.
+   */
+  private static final class TypeKey extends WeakReference<Class<?>> {
+
+    private final int hash;
+
+    private TypeKey(final Class<?> ref, final ReferenceQueue<Class<?>> queue) {
+      super(ref, queue);
+      this.hash = System.identityHashCode(ref);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      final Class<?> ref = get();
+      return obj instanceof TypeKey && ref != null && ref == ((TypeKey) obj).get();
+    }
+  }
+
+  private TypeMetadata(final Class<?> ref) {
+    this.ref = ref;
+    this.entityType = ref.getAnnotation(EntityType.class);
+    this.complexType = ref.getAnnotation(ComplexType.class);
+
+    final Namespace ns = ref.getAnnotation(Namespace.class);
+    this.namespace = ns == null ? null : ns.value();
+
+    this.compoundKey = ref.getAnnotation(CompoundKey.class) != null;
+
+    final KeyRef keyRef = ref.getAnnotation(KeyRef.class);
+    this.compoundKeyRef =
+            entityType == null || keyRef == null || keyRef.value().getAnnotation(CompoundKey.class) == null
+            ? null
+            : keyRef.value();
+  }
+
+  private Members getMembers() {
+    Members result = members;
+    if (result == null) {
+      // concurrent first requests may build it twice: both results are equivalent
+      result = new Members(ref);
+      members = result;
+    }
+    return result;
+  }
+
+  public Class<?> getRef() {
+    return ref;
+  }
+
+  /**
+   * @return entity type annotation, or <tt>null</tt> if the type is not an entity type
+   */
+  public EntityType getEntityType() {
+    return entityType;
+  }
+
+  /**
+   * @return complex type annotation, or <tt>null</tt> if the type is not a complex type
+   */
+  public ComplexType getComplexType() {
+    return complexType;
+  }
+
+  /**
+   * @return namespace, or <tt>null</tt> if the type is not annotated with {@link Namespace}
+   */
+  public String getNamespace() {
+    return namespace;
+  }
+
+  public boolean hasStream() {
+    return entityType != null && entityType.hasStream();
+  }
+
+  /**
+   * @return whether the type is annotated as {@link CompoundKey}
+   */
+  public boolean isCompoundKey() {
+    return compoundKey;
+  }
+
+  /**
+   * @return compound key class, or <tt>null</tt> if the type is not an entity type with compound key
+   */
+  public Class<?> getCompoundKeyRef() {
+    return compoundKeyRef;
+  }
+
+  /**
+   * @return key type in case of single key; <tt>null</tt> if no or more than one key getters are declared
+   */
+  public Class<?> getSingleKeyRef() {
+    final Members result = getMembers();
+    return result.keyGetterCount == 1 ? result.keyGetterType : null;
+  }
+
+  /**
+   * @return name of the first declared key property, or <tt>null</tt> if none is found
+   */
+  public String getKeyPropertyName() {
+    return getMembers().keyPropertyName;
+  }
+
+  /**
+   * Gets the accessor for the given getter or setter method name.
+   *
+   * @param methodName getter or setter method name
+   * @return accessor, or <tt>null</tt> if no such getter exists
+   */
+  public Accessor getAccessor(final String methodName) {
+    return getMembers().accessors.get(methodName);
+  }
+
+  /**
+   * Gets the accessor of the given annotated {@link Property}.
+   *
+   * @param name property name
+   * @return accessor, or <tt>null</tt> if no such property exists
+   */
+  public Accessor getPropertyAccessor(final String name) {
+    return getMembers().properties.get(name);
+  }
+
+  public Set<String> getPropertyNames() {
+    return getMembers().propertyNames;
+  }
+
+  public List<CompoundKeyElementWrapper> getCompoundKeyElements() {
+    return getMembers().compoundKeyElements;
+  }
+
+  /**
+   * Finds the getter annotated with the given annotation and carrying the given name.
+   *
+   * @param ann annotation class, must provide a <tt>name()</tt> attribute
+   * @param name annotated name
+   * @return getter, or <tt>null</tt> if not found
+   */
+  public Method getGetterByAnnotatedName(final Class<? extends Annotation> ann, final String name) {
+    Map<String, Method> getters = gettersByAnnotatedName.get(ann);
+    if (getters == null) {
+      final Map<String, Method> built = new HashMap<String, Method>();
+      for (Method method : ref.getMethods()) {
+        final Annotation annotation = method.getAnnotation(ann);
+        // Assumption: getter is always prefixed by 'get' word
+        if (annotation != null && method.getName().startsWith("get")) {
+          try {
+            final Object annotatedName = ann.getMethod("name").invoke(annotation);
+            if (!built.containsKey(annotatedName)) {
+              built.put((String) annotatedName, method);
+            }
+          } catch (Exception e) {
+            LOG.warn("Error retrieving value annotation name for {}.{}", ref.getName(), method.getName());
+          }
+        }
+      }
+      getters = Collections.unmodifiableMap(built);
+      gettersByAnnotatedName.putIfAbsent(ann, getters);
+    }
+    return getters.get(name);
+  }
+
+  /**
+   * Finds the public method of this type with same name and parameter types of the given one.
+   *
+   * @param method method (usually from a proxied interface)
+   * @return method, or <tt>null</tt> if not found
+   */
+  public Method getMethodWithSameSignature(final Method method) {
+    Method result = sameSignatureMethods.get(method);
+    if (result == null) {
+      try {
+        result = ref.getMethod(method.getName(), method.getParameterTypes());
+      } catch (NoSuchMethodException e) {
+        result = NO_METHOD;
+      }
+      sameSignatureMethods.putIfAbsent(method, result);
+    }
+    return result == NO_METHOD ? null : result;
+  }
+
+  /**
+   * Finds the setter corresponding to the given getter (see assumption above).
+   *
+   * @param getter getter
+   * @return setter, or <tt>null</tt> if not found
+   */
+  public Method getSetter(final Method getter) {
+    Method result = setters.get(getter.getName());
+    if (result == null) {
+      try {
+        result = ref.getMethod("set" + getter.getName().substring(3), getter.getReturnType());
+      } catch (NoSuchMethodException e) {
+        result = NO_METHOD;
+      }
+      setters.putIfAbsent(getter.getName(), result);
+    }
+    return result == NO_METHOD ? null : result;
+  }
+}
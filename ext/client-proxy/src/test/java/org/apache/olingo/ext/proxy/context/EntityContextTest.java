@@ -0,0 +1,300 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.ext.proxy.context;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.olingo.client.api.EdmEnabledODataClient;
+import org.apache.olingo.commons.api.domain.ODataEntity;
+import org.apache.olingo.commons.api.edm.FullQualifiedName;
+import org.apache.olingo.commons.api.edm.constants.ODataServiceVersion;
+import org.apache.olingo.ext.proxy.AbstractService;
+import org.apache.olingo.ext.proxy.api.AbstractTerm;
+import org.apache.olingo.ext.proxy.api.EntityType;
+import org.apache.olingo.ext.proxy.api.annotations.Namespace;
+import org.apache.olingo.ext.proxy.commons.EntityInvocationHandler;
+import org.apache.olingo.ext.proxy.commons.PrimitiveCollectionInvocationHandler;
+import org.junit.Test;
+
+public class EntityContextTest {
+
+  private static final URI ENTITY_SET = URI.create("http://localhost/Service/Customers");
+
+  @Namespace("Test")
+  @org.apache.olingo.ext.proxy.api.annotations.EntityType(name = "Customer")
+  public interface Customer extends EntityType<Customer> {
+  }
+
+  private static final class TestService extends AbstractService<EdmEnabledODataClient> {
+
+    TestService() {
+      super("", null, ODataServiceVersion.V40, "http://localhost/Service", false);
+    }
+
+    @Override
+    public Class<?> getEntityTypeClass(final String name) {
+      return null;
+    }
+
+    @Override
+    public Class<?> getComplexTypeClass(final String name) {
+      return null;
+    }
+
+    @Override
+    public Class<?> getEnumTypeClass(final String name) {
+      return null;
+    }
+
+    @Override
+    public Class<? extends AbstractTerm> getTermClass(final String name) {
+      return null;
+    }
+  }
+
+  private final TestService service = new TestService();
+
+  private EntityInvocationHandler newEntity(final Integer key) {
+    final ODataEntity entity = service.getClient().getObjectFactory().newEntity(new FullQualifiedName("Test.Customer"));
+    if (key == null) {
+      return EntityInvocationHandler.getInstance(entity, ENTITY_SET, null, Customer.class, service);
+    }
+
+    final EntityInvocationHandler handler = EntityInvocationHandler.getInstance(
+            entity, ENTITY_SET, URI.create(ENTITY_SET + "(" + key + ")"), Customer.class, service);
+    handler.updateUUID(ENTITY_SET, Customer.class, key);
+    return handler;
+  }
+
+  private static void collect(final WeakReference<?> reference) throws InterruptedException {
+    for (int i = 0; i < 50 && reference.get() != null; i++) {
+      System.gc();
+      Thread.sleep(20);
+    }
+  }
+
+  private static List<EntityInvocationHandler> entities(final EntityContext context) {
+    final List<EntityInvocationHandler> result = new ArrayList<EntityInvocationHandler>();
+    for (AttachedEntity attached : context) {
+      result.add(attached.getEntity());
+    }
+    return result;
+  }
+
+  @Test
+  public void strongByDefault() throws Exception {
+    final EntityContext context = new EntityContext();
+    EntityInvocationHandler entity = newEntity(1);
+    final EntityUUID uuid = entity.getUUID();
+    context.attach(entity);
+
+    final WeakReference<EntityInvocationHandler> reference = new WeakReference<EntityInvocationHandler>(entity);
+    entity = null;
+    collect(reference);
+
+    assertNotNull(reference.get());
+    assertSame(reference.get(), context.getEntity(uuid));
+  }
+
+  @Test
+  public void weakModeReleasesUnchangedEntities() throws Exception {
+    final EntityContext context = new EntityContext(EntityContextMode.WEAK, 0);
+    EntityInvocationHandler entity = newEntity(1);
+    final EntityUUID uuid = entity.getUUID();
+    context.attach(entity);
+    assertSame(entity, context.getEntity(uuid));
+    assertEquals(AttachedEntityStatus.ATTACHED, context.getStatus(entity));
+
+    final WeakReference<EntityInvocationHandler> reference = new WeakReference<EntityInvocationHandler>(entity);
+    entity = null;
+    collect(reference);
+
+    assertNull(reference.get());
+    assertNull(context.getEntity(uuid));
+    assertEquals(0, context.getStatistics().getSize());
+    assertEquals(1, context.getStatistics().getCollected());
+  }
+
+  @Test
+  public void weakModeKeepsChangedEntities() throws Exception {
+    final EntityContext context = new EntityContext(EntityContextMode.WEAK, 0);
+    EntityInvocationHandler entity = newEntity(1);
+    final EntityUUID uuid = entity.getUUID();
+    context.attach(entity);
+    context.setStatus(entity, AttachedEntityStatus.CHANGED);
+
+    final WeakReference<EntityInvocationHandler> reference = new WeakReference<EntityInvocationHandler>(entity);
+    entity = null;
+    collect(reference);
+
+    assertNotNull(reference.get());
+    assertEquals(AttachedEntityStatus.CHANGED, context.getStatus(context.getEntity(uuid)));
+  }
+
+  @Test
+  public void weakModeKeepsEntitiesModifiedWithoutStatusChange() throws Exception {
+    final EntityContext context = new EntityContext(EntityContextMode.WEAK, 0);
+    EntityInvocationHandler entity = newEntity(1);
+    final EntityUUID uuid = entity.getUUID();
+    context.attach(entity);
+    context.markModified(entity);
+    assertEquals(AttachedEntityStatus.ATTACHED, context.getStatus(entity));
+
+    final WeakReference<EntityInvocationHandler> reference = new WeakReference<EntityInvocationHandler>(entity);
+    entity = null;
+    collect(reference);
+
+    assertNotNull(reference.get());
+    assertSame(reference.get(), context.getEntity(uuid));
+    assertEquals(AttachedEntityStatus.ATTACHED, context.getStatus(reference.get()));
+    assertTrue(entities(context).contains(reference.get()));
+  }
+
+  @Test
+  public void weakModeKeepsEntitiesOnlyAfterCollectionChanges() throws Exception {
+    final EntityContext context = service.getContext().entityContext();
+    context.configure(EntityContextMode.WEAK, 0);
+
+    EntityInvocationHandler read = newEntity(1);
+    context.attach(read);
+    PrimitiveCollectionInvocationHandler<String> readCollection = newCollection(read);
+    assertFalse(readCollection.contains("value"));
+    assertEquals(0, readCollection.size());
+
+    EntityInvocationHandler changed = newEntity(2);
+    context.attach(changed);
+    PrimitiveCollectionInvocationHandler<String> changedCollection = newCollection(changed);
+    changedCollection.add("value");
+
+    final WeakReference<EntityInvocationHandler> readReference = new WeakReference<EntityInvocationHandler>(read);
+    final WeakReference<EntityInvocationHandler> changedReference =
+            new WeakReference<EntityInvocationHandler>(changed);
+    read = null;
+    readCollection = null;
+    changed = null;
+    changedCollection = null;
+    collect(readReference);
+    collect(changedReference);
+
+    assertNull(readReference.get());
+    assertNotNull(changedReference.get());
+    assertTrue(entities(context).contains(changedReference.get()));
+  }
+
+  private PrimitiveCollectionInvocationHandler<String> newCollection(final EntityInvocationHandler entity) {
+    final PrimitiveCollectionInvocationHandler<String> collection =
+            new PrimitiveCollectionInvocationHandler<String>(service, new ArrayList<String>(), String.class, null);
+    collection.setEntityHandler(entity);
+    return collection;
+  }
+
+  @Test
+  public void markModifiedIgnoresEntitiesNotAttached() {
+    final EntityContext context = new EntityContext(EntityContextMode.WEAK, 0);
+    final EntityInvocationHandler entity = newEntity(1);
+    context.markModified(entity);
+    context.markModified(null);
+
+    assertFalse(context.isAttached(entity));
+  }
+
+  @Test
+  public void keylessEntitiesAreStronglyHeld() throws Exception {
+    final EntityContext context = new EntityContext(EntityContextMode.WEAK, 0);
+    EntityInvocationHandler first = newEntity(null);
+    EntityInvocationHandler second = newEntity(null);
+    context.attach(first, AttachedEntityStatus.ATTACHED, true);
+    context.attach(second, AttachedEntityStatus.ATTACHED, true);
+
+    final WeakReference<EntityInvocationHandler> firstRef = new WeakReference<EntityInvocationHandler>(first);
+    final WeakReference<EntityInvocationHandler> secondRef = new WeakReference<EntityInvocationHandler>(second);
+    first = null;
+    second = null;
+    collect(firstRef);
+
+    assertNotNull(firstRef.get());
+    assertNotNull(secondRef.get());
+    assertEquals(2, entities(context).size());
+    assertEquals(AttachedEntityStatus.ATTACHED, context.getStatus(firstRef.get()));
+    assertEquals(AttachedEntityStatus.ATTACHED, context.getStatus(secondRef.get()));
+  }
+
+  @Test
+  public void maxSizeEvictsLeastRecentlyUsed() {
+    final EntityContext context = new EntityContext(EntityContextMode.STRONG, 2);
+    final EntityInvocationHandler first = newEntity(1);
+    final EntityInvocationHandler second = newEntity(2);
+    final EntityInvocationHandler third = newEntity(3);
+    context.attach(first);
+    context.attach(second);
+    // touch the first one, so that the second one becomes the least recently used
+    assertSame(first, context.getEntity(first.getUUID()));
+    context.attach(third);
+
+    assertSame(first, context.getEntity(first.getUUID()));
+    assertNull(context.getEntity(second.getUUID()));
+    assertSame(third, context.getEntity(third.getUUID()));
+
+    final EntityContextStatistics statistics = context.getStatistics();
+    assertEquals(1, statistics.getEvictions());
+    assertEquals(2, statistics.getSize());
+    assertEquals(3, statistics.getHits());
+    assertEquals(1, statistics.getMisses());
+  }
+
+  @Test
+  public void maxSizeKeepsModifiedEntities() {
+    final EntityContext context = new EntityContext(EntityContextMode.STRONG, 1);
+    final EntityInvocationHandler first = newEntity(1);
+    final EntityInvocationHandler second = newEntity(2);
+    context.attach(first);
+    context.markModified(first);
+    context.attach(second);
+
+    assertSame(first, context.getEntity(first.getUUID()));
+    assertSame(second, context.getEntity(second.getUUID()));
+    assertEquals(0, context.getStatistics().getEvictions());
+  }
+
+  @Test
+  public void configureKeepsAttachedEntities() {
+    final EntityContext context = new EntityContext();
+    final EntityInvocationHandler unchanged = newEntity(1);
+    final EntityInvocationHandler changed = newEntity(2);
+    context.attach(unchanged);
+    context.attach(changed, AttachedEntityStatus.CHANGED);
+
+    context.configure(EntityContextMode.SOFT, 10);
+    assertEquals(EntityContextMode.SOFT, context.getMode());
+    assertEquals(10, context.getMaxSize());
+    assertSame(unchanged, context.getEntity(unchanged.getUUID()));
+    assertEquals(AttachedEntityStatus.ATTACHED, context.getStatus(unchanged));
+    assertEquals(AttachedEntityStatus.CHANGED, context.getStatus(changed));
+  }
+}
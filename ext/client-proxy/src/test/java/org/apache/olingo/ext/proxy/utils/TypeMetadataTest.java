@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.ext.proxy.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.olingo.ext.proxy.api.annotations.ComplexType;
+import org.apache.olingo.ext.proxy.api.annotations.CompoundKey;
+import org.apache.olingo.ext.proxy.api.annotations.CompoundKeyElement;
+import org.apache.olingo.ext.proxy.api.annotations.EntityType;
+import org.apache.olingo.ext.proxy.api.annotations.Key;
+import org.apache.olingo.ext.proxy.api.annotations.KeyRef;
+import org.apache.olingo.ext.proxy.api.annotations.Namespace;
+import org.apache.olingo.ext.proxy.api.annotations.NavigationProperty;
+import org.apache.olingo.ext.proxy.api.annotations.Property;
+import org.junit.Test;
+
+public class TypeMetadataTest {
+
+  @Namespace("Test")
+  @EntityType(name = "Customer", hasStream = true)
+  public interface Customer {
+
+    @Key
+    @Property(name = "Id", type = "Edm.Int32")
+    Integer getId();
+
+    void setId(Integer id);
+
+    @Property(name = "Name", type = "Edm.String")
+    String getName();
+
+    void setName(String name);
+
+    @Property(name = "Address", type = "Test.Address")
+    Address getAddress();
+
+    @NavigationProperty(name = "Orders", type = "Test.Order", targetSchema = "Test", targetContainer = "Container",
+            targetEntitySet = "Orders")
+    List<Object> getOrders();
+  }
+
+  @Namespace("Test")
+  @ComplexType(name = "Address")
+  public interface Address {
+
+    @Property(name = "City", type = "Edm.String")
+    String getCity();
+  }
+
+  @CompoundKey
+  public static class OrderKey {
+
+    @CompoundKeyElement(name = "Number", position = 1)
+    public Integer getNumber() {
+      return null;
+    }
+
+    @CompoundKeyElement(name = "Year", position = 0)
+    public Integer getYear() {
+      return null;
+    }
+  }
+
+  @Namespace("Test")
+  @EntityType(name = "Order")
+  @KeyRef(OrderKey.class)
+  public interface Order {
+
+    @Key
+    @Property(name = "Year", type = "Edm.Int32")
+    Integer getYear();
+
+    @Key
+    @Property(name = "Number", type = "Edm.Int32")
+    Integer getNumber();
+  }
+
+  @Test
+  public void typeAnnotations() {
+    final TypeMetadata customer = TypeMetadata.getInstance(Customer.class);
+    assertSame(Customer.class, customer.getRef());
+    assertEquals("Customer", customer.getEntityType().name());
+    assertNull(customer.getComplexType());
+    assertEquals("Test", customer.getNamespace());
+    assertTrue(customer.hasStream());
+    assertFalse(customer.isCompoundKey());
+    assertNull(customer.getCompoundKeyRef());
+
+    final TypeMetadata address = TypeMetadata.getInstance(Address.class);
+    assertNull(address.getEntityType());
+    assertEquals("Address", address.getComplexType().name());
+    assertFalse(address.hasStream());
+
+    final TypeMetadata string = TypeMetadata.getInstance(String.class);
+    assertNull(string.getEntityType());
+    assertNull(string.getComplexType());
+    assertNull(string.getNamespace());
+  }
+
+  @Test
+  public void accessors() {
+    final TypeMetadata customer = TypeMetadata.getInstance(Customer.class);
+
+    final TypeMetadata.Accessor name = customer.getAccessor("getName");
+    assertNotNull(name);
+    assertSame(name, customer.getAccessor("setName"));
+    assertSame(name, customer.getPropertyAccessor("Name"));
+    assertSame(String.class, name.getType());
+    assertEquals("Edm.String", name.getProperty().type());
+    assertNull(name.getNavigationProperty());
+
+    final TypeMetadata.Accessor orders = customer.getAccessor("getOrders");
+    assertNull(orders.getProperty());
+    assertEquals("Orders", orders.getNavigationProperty().name());
+    assertNull(customer.getPropertyAccessor("Orders"));
+    assertNull(customer.getAccessor("getUnknown"));
+
+    assertEquals(3, customer.getPropertyNames().size());
+    assertTrue(customer.getPropertyNames().containsAll(Arrays.asList("Id", "Name", "Address")));
+
+    assertEquals("getOrders",
+            customer.getGetterByAnnotatedName(NavigationProperty.class, "Orders").getName());
+    assertNull(customer.getGetterByAnnotatedName(Property.class, "Orders"));
+  }
+
+  @Test
+  public void methodLookups() throws Exception {
+    final TypeMetadata customer = TypeMetadata.getInstance(Customer.class);
+
+    assertEquals("setName", customer.getSetter(Customer.class.getMethod("getName")).getName());
+    assertNull(customer.getSetter(Customer.class.getMethod("getAddress")));
+    // negative lookups are cached as well
+    assertNull(customer.getSetter(Customer.class.getMethod("getAddress")));
+
+    assertEquals(Customer.class.getMethod("getName"),
+            customer.getMethodWithSameSignature(Customer.class.getMethod("getName")));
+    assertNull(customer.getMethodWithSameSignature(Address.class.getMethod("getCity")));
+  }
+
+  @Test
+  public void keys() {
+    final TypeMetadata customer = TypeMetadata.getInstance(Customer.class);
+    assertEquals("Id", customer.getKeyPropertyName());
+    assertSame(Integer.class, customer.getSingleKeyRef());
+
+    final TypeMetadata order = TypeMetadata.getInstance(Order.class);
+    assertSame(OrderKey.class, order.getCompoundKeyRef());
+    assertNull(order.getSingleKeyRef());
+
+    final TypeMetadata orderKey = TypeMetadata.getInstance(OrderKey.class);
+    assertTrue(orderKey.isCompoundKey());
+    final List<String> elements = new ArrayList<String>();
+    for (CompoundKeyElementWrapper element : orderKey.getCompoundKeyElements()) {
+      elements.add(element.getName());
+    }
+    assertEquals(Arrays.asList("Year", "Number"), elements);
+  }
+
+  @Test
+  public void sharedInstance() {
+    assertSame(TypeMetadata.getInstance(Customer.class), TypeMetadata.getInstance(Customer.class));
+  }
+
+  @Test
+  public void annotationsOnlyDoNotScanMethods() throws Exception {
+    final Field members = TypeMetadata.class.getDeclaredField("members");
+    members.setAccessible(true);
+
+    final TypeMetadata address = TypeMetadata.getInstance(Address.class);
+    address.getComplexType();
+    address.getNamespace();
+    final TypeMetadata metadata = TypeMetadata.getInstance(Integer.class);
+    assertNull(metadata.getComplexType());
+    assertNull(members.get(metadata));
+
+    metadata.getPropertyNames();
+    assertNotNull(members.get(metadata));
+  }
+
+  @Test
+  public void keptAcrossGarbageCollections() throws Exception {
+    final WeakReference<TypeMetadata> metadataRef =
+            new WeakReference<TypeMetadata>(TypeMetadata.getInstance(Customer.class));
+    System.gc();
+    Thread.sleep(20);
+    assertSame(TypeMetadata.getInstance(Customer.class), metadataRef.get());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void doesNotPinClassLoader() throws Exception {
+    ClassLoader loader = new URLClassLoader(new URL[0], getClass().getClassLoader());
+    Class<?> proxyClass = Proxy.getProxyClass(loader, Customer.class);
+    assertSame(loader, proxyClass.getClassLoader());
+    assertNotNull(TypeMetadata.getInstance(proxyClass).getAccessor("getName"));
+
+    final WeakReference<ClassLoader> loaderRef = new WeakReference<ClassLoader>(loader);
+    loader = null;
+    proxyClass = null;
+
+    // soft references are cleared under memory pressure before an OutOfMemoryError is thrown
+    final Field registry = TypeMetadata.class.getDeclaredField("REGISTRY");
+    registry.setAccessible(true);
+    for (Reference<?> metadataRef : ((Map<?, ? extends Reference<?>>) registry.get(null)).values()) {
+      metadataRef.clear();
+    }
+
+    for (int i = 0; i < 50 && loaderRef.get() != null; i++) {
+      System.gc();
+      Thread.sleep(20);
+    }
+    assertNull(loaderRef.get());
+  }
+}
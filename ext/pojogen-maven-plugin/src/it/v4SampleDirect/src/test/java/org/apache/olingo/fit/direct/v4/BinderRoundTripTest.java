@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.fit.direct.v4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.apache.olingo.commons.api.domain.ODataEntity;
+import org.apache.olingo.commons.api.domain.ODataObjectFactory;
+import org.apache.olingo.commons.core.domain.ODataObjectFactoryImpl;
+import org.apache.olingo.fit.direct.v4.staticservice.microsoft.test.odata.services.odatawcfservice.types.HomeAddress;
+import org.apache.olingo.fit.direct.v4.staticservice.microsoft.test.odata.services.odatawcfservice.types.Person;
+import org.apache.olingo.fit.direct.v4.staticservice.microsoft.test.odata.services.odatawcfservice.types.PersonBinder;
+import org.junit.Test;
+
+public class BinderRoundTripTest {
+
+  private final ODataObjectFactory factory = new ODataObjectFactoryImpl();
+
+  @Test
+  public void complexCollectionAndNullValues() {
+    final HomeAddress address = new HomeAddress();
+    address.setStreet("1 Microsoft Way");
+    address.setCity("Redmond");
+    address.setPostalCode("98052");
+    address.setFamilyName("Cats");
+
+    final Person person = new Person();
+    person.setPersonID(1);
+    person.setFirstName("Bob");
+    person.setLastName("Cat");
+    person.setMiddleName(null);
+    person.setHomeAddress(address);
+    person.setNumbers(Arrays.asList("111-111-1111", "222-222-2222"));
+    person.setEmails(null);
+
+    final ODataEntity entity = PersonBinder.toODataEntity(factory, person);
+    assertTrue(entity.getProperty("MiddleName").hasNullValue());
+    assertTrue(entity.getProperty("Emails").hasNullValue());
+    assertTrue(entity.getProperty("Home").hasNullValue());
+    assertTrue(entity.getProperty("HomeAddress").hasComplexValue());
+    assertTrue(entity.getProperty("Numbers").hasCollectionValue());
+
+    final Person read = PersonBinder.toPojo(entity);
+    assertEquals(Integer.valueOf(1), read.getPersonID());
+    assertEquals("Bob", read.getFirstName());
+    assertEquals("Cat", read.getLastName());
+    assertNull(read.getMiddleName());
+    assertNull(read.getHome());
+    assertNull(read.getEmails());
+    assertNull(read.getParent());
+    assertEquals(Arrays.asList("111-111-1111", "222-222-2222"), read.getNumbers());
+
+    assertTrue(read.getHomeAddress() instanceof HomeAddress);
+    final HomeAddress readAddress = (HomeAddress) read.getHomeAddress();
+    assertEquals("1 Microsoft Way", readAddress.getStreet());
+    assertEquals("Redmond", readAddress.getCity());
+    assertEquals("98052", readAddress.getPostalCode());
+    assertEquals("Cats", readAddress.getFamilyName());
+  }
+
+  @Test
+  public void nullComplexValue() {
+    final Person person = new Person();
+    person.setPersonID(2);
+    person.setHomeAddress(null);
+    person.setNumbers(null);
+
+    final ODataEntity entity = PersonBinder.toODataEntity(factory, person);
+    assertTrue(entity.getProperty("HomeAddress").hasNullValue());
+    assertTrue(entity.getProperty("Numbers").hasNullValue());
+
+    final Person read = PersonBinder.toPojo(entity);
+    assertEquals(Integer.valueOf(2), read.getPersonID());
+    assertNull(read.getHomeAddress());
+    assertNull(read.getNumbers());
+  }
+}
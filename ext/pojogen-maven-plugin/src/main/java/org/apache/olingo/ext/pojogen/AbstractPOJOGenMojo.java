@@ -54,6 +54,7 @@ import org.apache.olingo.commons.api.edm.EdmEntitySet;
 import org.apache.olingo.commons.api.edm.EdmEntityType;
 import org.apache.olingo.commons.api.edm.EdmEnumType;
 import org.apache.olingo.commons.api.edm.EdmSchema;
+import org.apache.olingo.commons.api.edm.EdmStructuredType;
 import org.apache.olingo.commons.api.edm.EdmTerm;
 import org.apache.olingo.commons.api.format.ODataFormat;
 import org.apache.velocity.Template;
@@ -88,6 +89,17 @@ public abstract class AbstractPOJOGenMojo extends AbstractMojo {
   @Parameter(property = "basePackage", required = false)
   protected String basePackage;
 
+  /**
+   * Generation mode: <tt>proxy</tt> (default) generates interfaces to be used through the client proxy; <tt>direct</tt>
+   * generates plain Java classes and reflection-free binders from / to OData entities and complex values.
+   */
+  @Parameter(property = "generationMode", defaultValue = PROXY_MODE, required = false)
+  protected String generationMode = PROXY_MODE;
+
+  protected static final String PROXY_MODE = "proxy";
+
+  protected static final String DIRECT_MODE = "direct";
+
   protected final Set<String> namespaces = new HashSet<String>();
 
   protected static String TOOL_DIR = "ojc-plugin";
@@ -231,6 +243,50 @@ public abstract class AbstractPOJOGenMojo extends AbstractMojo {
     return new ImmutableTriple<XMLMetadata, String, Edm>(metadata, metadataETag, edm);
   }
 
+  /**
+   * Generates plain Java classes (with no dependency on dynamic proxies) for enum, complex and entity types, each
+   * structured type coming with its own binder.
+   *
+   * @param edm service metadata
+   * @throws MojoExecutionException in case of generation errors
+   */
+  protected void generateDirect(final Edm edm) throws MojoExecutionException {
+    final Map<String, Object> objs = new HashMap<String, Object>();
+
+    for (EdmSchema schema : edm.getSchemas()) {
+      createUtility(edm, schema, basePackage);
+
+      final String schemaPath = utility.getNamespace().toLowerCase().replace('.', File.separatorChar);
+      final String pkg = StringUtils.isBlank(basePackage)
+              ? utility.getNamespace().toLowerCase()
+              : basePackage + "." + utility.getNamespace().toLowerCase();
+
+      final File typesBaseDir = mkPkgDir(schemaPath + "/types");
+      final String typesPkg = pkg + ".types";
+      parseObj(typesBaseDir, typesPkg, "package-info", "package-info.java");
+
+      for (EdmEnumType enumType : schema.getEnumTypes()) {
+        objs.clear();
+        objs.put("enumType", enumType);
+        parseObj(typesBaseDir, typesPkg, "enumType", utility.capitalize(enumType.getName()) + ".java", objs);
+      }
+
+      final List<EdmStructuredType> structuredTypes = new ArrayList<EdmStructuredType>(schema.getComplexTypes());
+      structuredTypes.addAll(schema.getEntityTypes());
+
+      for (EdmStructuredType structuredType : structuredTypes) {
+        final String className = utility.capitalize(structuredType.getName());
+
+        objs.clear();
+        objs.put("structuredType", structuredType);
+        objs.put("isEntity", structuredType instanceof EdmEntityType);
+
+        parseObj(typesBaseDir, typesPkg, "directType", className + ".java", objs);
+        parseObj(typesBaseDir, typesPkg, "directBinder", className + "Binder.java", objs);
+      }
+    }
+  }
+
   @Override
   public void execute() throws MojoExecutionException, MojoFailureException {
     if (new File(outputDirectory + File.separator + TOOL_DIR).exists()) {
@@ -241,9 +297,19 @@ public abstract class AbstractPOJOGenMojo extends AbstractMojo {
     Velocity.addProperty(Velocity.RESOURCE_LOADER, "class");
     Velocity.addProperty("class.resource.loader.class", ClasspathResourceLoader.class.getName());
 
+    final boolean direct = DIRECT_MODE.equalsIgnoreCase(generationMode);
+    if (!direct && !PROXY_MODE.equalsIgnoreCase(generationMode)) {
+      throw new MojoExecutionException("Invalid generation mode '" + generationMode + "'");
+    }
+
     try {
       final Triple<XMLMetadata, String, Edm> metadata = getMetadata();
 
+      if (direct) {
+        generateDirect(metadata.getRight());
+        return;
+      }
+
       for (EdmSchema schema : metadata.getRight().getSchemas()) {
         namespaces.add(schema.getNamespace().toLowerCase());
       }
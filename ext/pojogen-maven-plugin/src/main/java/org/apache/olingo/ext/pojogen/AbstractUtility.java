@@ -182,6 +182,18 @@ public abstract class AbstractUtility {
     return false;
   }
 
+  public boolean isPropertyAlreadyDeclared(final EdmStructuredType type, final EdmProperty property) {
+    EdmStructuredType basetype = type.getBaseType();
+    while (basetype != null) {
+      if (basetype.getProperty(property.getName()) != null) {
+        return true;
+      } else {
+        basetype = basetype.getBaseType();
+      }
+    }
+    return false;
+  }
+
   public String getContainedEntitySet(final EdmNavigationProperty navProp) {
     return (StringUtils.isBlank(basePackage)
             ? new StringBuilder() : new StringBuilder().append(basePackage).append('.')).
@@ -349,6 +361,45 @@ public abstract class AbstractUtility {
     return res.toString();
   }
 
+  /**
+   * Java type used by the direct (non-proxy) generation mode: collections are plain lists.
+   *
+   * @param type EDM type
+   * @param collection whether a collection of the given type is expected
+   * @return Java type
+   */
+  public String getDirectJavaType(final EdmType type, final boolean collection) {
+    final String itemType = getJavaType(type);
+    return collection ? "java.util.List<" + itemType + ">" : itemType;
+  }
+
+  /**
+   * Gets all the entity or complex types directly or indirectly derived from the given one, the most derived first.
+   *
+   * @param type entity or complex type
+   * @return full qualified names of derived types
+   */
+  public List<String> getDescendants(final EdmStructuredType type) {
+    final List<String> descendants = new ArrayList<String>();
+    populateDescendants(type.getFullQualifiedName(), descendants);
+    Collections.reverse(descendants);
+    return descendants;
+  }
+
+  private void populateDescendants(final FullQualifiedName base, final List<String> descendants) {
+    for (EdmSchema _schema : edm.getSchemas()) {
+      final List<EdmStructuredType> types = new ArrayList<EdmStructuredType>(_schema.getEntityTypes());
+      types.addAll(_schema.getComplexTypes());
+
+      for (EdmStructuredType type : types) {
+        if (type.getBaseType() != null && base.equals(type.getBaseType().getFullQualifiedName())) {
+          descendants.add(type.getFullQualifiedName().toString());
+          populateDescendants(type.getFullQualifiedName(), descendants);
+        }
+      }
+    }
+  }
+
   public EdmTypeInfo getEdmType(final EdmEntitySet entitySet) {
     return getEdmTypeInfo(entitySet.getEntityType().getFullQualifiedName().toString());
   }
@@ -24,8 +24,8 @@ import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CodingErrorAction;
 
-import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.apache.olingo.commons.api.Constants;
 import org.apache.olingo.commons.core.serialization.AtomDeserializer;
@@ -39,12 +39,12 @@ public class FITAtomDeserializer extends AtomDeserializer {
   }
 
   @Override
-  protected XMLEventReader getReader(final InputStream input) throws XMLStreamException {
+  protected XMLStreamReader getReader(final InputStream input) throws XMLStreamException {
     final CharsetDecoder decoder = ENCODING.newDecoder();
     decoder.onMalformedInput(CodingErrorAction.IGNORE);
     decoder.onUnmappableCharacter(CodingErrorAction.IGNORE);
 
-    return FACTORY.createXMLEventReader(new InputStreamReader(input, decoder));
+    return FACTORY.createXMLStreamReader(new InputStreamReader(input, decoder));
   }
 
 }
@@ -19,6 +19,8 @@
 package org.apache.olingo.fit.tecsvc.client;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.net.URI;
@@ -211,18 +213,21 @@ public class SystemQueryOptionITCase extends AbstractBaseTestITCase {
         .execute();
 
     // Check initial next link format
+    final String prefix = "http://localhost:9080/odata-server-tecsvc/odata.svc/ESServerSidePaging?%24skiptoken=";
     URI nextLink = response.getBody().getNext();
-    assertEquals("http://localhost:9080/odata-server-tecsvc/odata.svc/ESServerSidePaging?%24skiptoken=1", nextLink
-        .toASCIIString());
+    assertTrue(nextLink.toASCIIString().startsWith(prefix));
+    final String token = nextLink.toASCIIString().substring(prefix.length());
+    assertTrue(token.matches("[A-Za-z0-9_-]+"));
 
     // Check subsequent next links
     response = client.getRetrieveRequestFactory()
         .getEntitySetRequest(nextLink)
         .execute();
+    assertEquals("11", response.getBody().getEntities().get(0).getProperty(PROPERTY_INT16).getValue().toString());
 
     nextLink = response.getBody().getNext();
-    assertEquals("http://localhost:9080/odata-server-tecsvc/odata.svc/ESServerSidePaging?%24skiptoken=2", nextLink
-        .toASCIIString());
+    assertTrue(nextLink.toASCIIString().startsWith(prefix));
+    assertFalse(token.equals(nextLink.toASCIIString().substring(prefix.length())));
   }
 
   @Test
@@ -238,28 +243,49 @@ public class SystemQueryOptionITCase extends AbstractBaseTestITCase {
         .execute();
 
     // Check initial next link format
+    final String prefix =
+        "http://localhost:9080/odata-server-tecsvc/odata.svc/ESServerSidePaging?%24count=true&%24skiptoken=";
     URI nextLink = response.getBody().getNext();
-    assertEquals("http://localhost:9080/odata-server-tecsvc/odata.svc/ESServerSidePaging?%24count=true&%24skiptoken=1",
-        nextLink.toASCIIString());
-    
-    int token = 1;
+    assertTrue(nextLink.toASCIIString().startsWith(prefix));
+
+    int pages = 1;
+    int id = 11;
     while (nextLink != null) {
-      token++;
+      pages++;
 
       // Check subsequent next links
       response = client.getRetrieveRequestFactory()
           .getEntitySetRequest(nextLink)
           .execute();
+      assertEquals(Integer.valueOf(503), response.getBody().getCount());
+      assertEquals(new Integer(id).toString(),
+          response.getBody().getEntities().get(0).getProperty(PROPERTY_INT16).getValue().toString());
+      id += response.getBody().getEntities().size();
 
       nextLink = response.getBody().getNext();
-      if(nextLink != null) {
-      assertEquals(
-          "http://localhost:9080/odata-server-tecsvc/odata.svc/ESServerSidePaging?%24count=true&%24skiptoken=" + token,
-          nextLink.toASCIIString());
+      if (nextLink != null) {
+        assertTrue(nextLink.toASCIIString().startsWith(prefix));
       }
     }
-    
-    assertEquals(50 + 1, token);
+
+    assertEquals(50 + 1, pages);
+    assertEquals(503 + 1, id);
+  }
+
+  @Test
+  public void testInvalidSkipToken() {
+    ODataClient client = getClient();
+    URI uri = client.newURIBuilder(SERVICE_URI)
+        .appendEntitySetSegment(ES_SERVER_SIDE_PAGING)
+        .addQueryOption(QueryOption.SKIPTOKEN, "1")
+        .build();
+
+    try {
+      client.getRetrieveRequestFactory().getEntitySetRequest(uri).execute();
+      fail();
+    } catch (ODataClientErrorException e) {
+      assertEquals(HttpStatusCode.BAD_REQUEST.getStatusCode(), e.getStatusLine().getStatusCode());
+    }
   }
 
   @Test
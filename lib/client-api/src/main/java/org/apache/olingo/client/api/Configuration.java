@@ -21,6 +21,7 @@ package org.apache.olingo.client.api;
 import java.util.concurrent.ExecutorService;
 
 import org.apache.olingo.client.api.http.HttpClientFactory;
+import org.apache.olingo.client.api.http.HttpResponseCache;
 import org.apache.olingo.client.api.http.HttpUriRequestFactory;
 import org.apache.olingo.commons.api.format.ContentType;
 import org.apache.olingo.commons.api.format.ODataFormat;
@@ -129,6 +130,20 @@ public interface Configuration {
    */
   void setHttpUriRequestFactory(HttpUriRequestFactory factory);
 
+  /**
+   * Gets the HTTP response cache used by entity, entity set and metadata requests.
+   *
+   * @return configured HTTP response cache; <tt>null</tt> (default) if caching is disabled.
+   */
+  HttpResponseCache getHttpResponseCache();
+
+  /**
+   * Sets the HTTP response cache used by entity, entity set and metadata requests.
+   *
+   * @param cache HTTP response cache; <tt>null</tt> to disable caching.
+   */
+  void setHttpResponseCache(HttpResponseCache cache);
+
   /**
    * Gets whether <tt>PUT</tt>, <tt>MERGE</tt>, <tt>PATCH</tt>, <tt>DELETE</tt> HTTP methods need to be translated to
    * <tt>POST</tt> with additional <tt>X-HTTTP-Method</tt> header.
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.client.api.http;
+
+/**
+ * Store for HTTP responses, used by retrieve requests when set via
+ * {@link org.apache.olingo.client.api.Configuration#setHttpResponseCache(HttpResponseCache)}.
+ * <br/>
+ * Entries are keyed by request URI and <tt>Accept</tt> header; implementations must be thread-safe.
+ */
+public interface HttpResponseCache {
+
+  /**
+   * Gets the cached response for the given key.
+   *
+   * @param key cache key.
+   * @return cached response, or <tt>null</tt> if none available.
+   */
+  HttpResponseCacheEntry get(String key);
+
+  /**
+   * Stores (or replaces) the cached response for the given key.
+   *
+   * @param key cache key.
+   * @param entry response to be cached.
+   */
+  void put(String key, HttpResponseCacheEntry entry);
+
+  /**
+   * Removes the cached response for the given key, if any.
+   *
+   * @param key cache key.
+   */
+  void remove(String key);
+
+  /**
+   * Removes all cached responses.
+   */
+  void clear();
+
+  /**
+   * Gets the maximum size of a response body that can be cached.
+   *
+   * @return maximum size in bytes.
+   */
+  long getMaxEntrySize();
+
+  /**
+   * Gets cache usage statistics.
+   *
+   * @return cache usage statistics.
+   */
+  HttpResponseCacheStatistics getStatistics();
+}
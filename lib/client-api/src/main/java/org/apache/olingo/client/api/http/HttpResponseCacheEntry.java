@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.client.api.http;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Cached HTTP response: status line, headers and fully read body, with freshness information.
+ */
+public class HttpResponseCacheEntry implements Serializable {
+
+  private static final long serialVersionUID = -2457185264069412377L;
+
+  private final int statusCode;
+
+  private final String reasonPhrase;
+
+  private final List<String[]> headers;
+
+  private final byte[] body;
+
+  private final String etag;
+
+  private final long storedAt;
+
+  private final long expiresAt;
+
+  /**
+   * Constructor.
+   *
+   * @param statusCode response status code.
+   * @param reasonPhrase response reason phrase.
+   * @param headers response headers, as name / value pairs.
+   * @param body response body.
+   * @param etag entity tag to be used for revalidation, if any.
+   * @param storedAt time (milliseconds) when the response was received or last revalidated.
+   * @param expiresAt time (milliseconds) until which the response can be used without revalidation.
+   */
+  public HttpResponseCacheEntry(final int statusCode, final String reasonPhrase, final List<String[]> headers,
+      final byte[] body, final String etag, final long storedAt, final long expiresAt) {
+
+    this.statusCode = statusCode;
+    this.reasonPhrase = reasonPhrase;
+    this.headers = Collections.unmodifiableList(new ArrayList<String[]>(headers));
+    this.body = body;
+    this.etag = etag;
+    this.storedAt = storedAt;
+    this.expiresAt = expiresAt;
+  }
+
+  public int getStatusCode() {
+    return statusCode;
+  }
+
+  public String getReasonPhrase() {
+    return reasonPhrase;
+  }
+
+  public List<String[]> getHeaders() {
+    return headers;
+  }
+
+  public byte[] getBody() {
+    return body;
+  }
+
+  public String getETag() {
+    return etag;
+  }
+
+  public long getStoredAt() {
+    return storedAt;
+  }
+
+  public long getExpiresAt() {
+    return expiresAt;
+  }
+
+  /**
+   * Checks whether this response can be used without revalidation.
+   *
+   * @param now current time in milliseconds.
+   * @return <tt>true</tt> if still fresh; <tt>false</tt> otherwise.
+   */
+  public boolean isFresh(final long now) {
+    return now < expiresAt;
+  }
+}
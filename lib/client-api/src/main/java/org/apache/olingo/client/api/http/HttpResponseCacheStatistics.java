@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.client.api.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe HTTP response cache usage counters.
+ */
+public class HttpResponseCacheStatistics {
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong revalidations = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  private final AtomicLong evictions = new AtomicLong();
+
+  /**
+   * Records a request served from the cache without contacting the server.
+   */
+  public void recordHit() {
+    hits.incrementAndGet();
+  }
+
+  /**
+   * Records a request served from the cache after the server answered <tt>304 Not Modified</tt>.
+   */
+  public void recordRevalidation() {
+    revalidations.incrementAndGet();
+  }
+
+  /**
+   * Records a request for which the full response had to be fetched from the server.
+   */
+  public void recordMiss() {
+    misses.incrementAndGet();
+  }
+
+  /**
+   * Records a cached response removed to make room for others.
+   */
+  public void recordEviction() {
+    evictions.incrementAndGet();
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getRevalidations() {
+    return revalidations.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  /**
+   * Gets the ratio of requests whose body was served from the cache (with or without revalidation).
+   *
+   * @return hit ratio, between 0 and 1.
+   */
+  public double getHitRatio() {
+    final long served = getHits() + getRevalidations();
+    final long total = served + getMisses();
+    return total == 0 ? 0 : (double) served / total;
+  }
+
+  /**
+   * Resets all counters.
+   */
+  public void reset() {
+    hits.set(0);
+    revalidations.set(0);
+    misses.set(0);
+    evictions.set(0);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "[hits=" + getHits() + ", revalidations=" + getRevalidations()
+        + ", misses=" + getMisses() + ", evictions=" + getEvictions() + "]";
+  }
+}
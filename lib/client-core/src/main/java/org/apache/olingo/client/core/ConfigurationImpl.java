@@ -25,6 +25,7 @@ import java.util.concurrent.Executors;
 
 import org.apache.olingo.client.api.Configuration;
 import org.apache.olingo.client.api.http.HttpClientFactory;
+import org.apache.olingo.client.api.http.HttpResponseCache;
 import org.apache.olingo.client.api.http.HttpUriRequestFactory;
 import org.apache.olingo.client.core.http.DefaultHttpClientFactory;
 import org.apache.olingo.client.core.http.DefaultHttpUriRequestFactory;
@@ -45,6 +46,8 @@ public class ConfigurationImpl implements Configuration {
 
   private static final String HTTP_URI_REQUEST_FACTORY = "httpUriRequestFactory";
 
+  private static final String HTTP_RESPONSE_CACHE = "httpResponseCache";
+
   private static final String USE_XHTTP_METHOD = "useHTTPMethod";
 
   private static final String KEY_AS_SEGMENT = "keyAsSegment";
@@ -151,6 +154,16 @@ public class ConfigurationImpl implements Configuration {
     setProperty(HTTP_URI_REQUEST_FACTORY, factory);
   }
 
+  @Override
+  public HttpResponseCache getHttpResponseCache() {
+    return (HttpResponseCache) getProperty(HTTP_RESPONSE_CACHE, null);
+  }
+
+  @Override
+  public void setHttpResponseCache(final HttpResponseCache cache) {
+    setProperty(HTTP_RESPONSE_CACHE, cache);
+  }
+
   @Override
   public boolean isUseXHTTPMethod() {
     return (Boolean) getProperty(USE_XHTTP_METHOD, false);
@@ -18,31 +18,117 @@
  */
 package org.apache.olingo.client.core;
 
+import java.io.File;
+import java.io.IOException;
+
 import org.apache.olingo.client.api.EdmEnabledODataClient;
 import org.apache.olingo.client.api.communication.request.invoke.EdmEnabledInvokeRequestFactory;
 import org.apache.olingo.client.api.communication.request.retrieve.EdmMetadataRequest;
+import org.apache.olingo.client.api.communication.request.retrieve.ODataRawRequest;
+import org.apache.olingo.client.api.communication.response.ODataRawResponse;
 import org.apache.olingo.client.api.communication.response.ODataRetrieveResponse;
 import org.apache.olingo.client.api.uri.URIBuilder;
 import org.apache.olingo.client.core.communication.request.invoke.EdmEnabledInvokeRequestFactoryImpl;
+import org.apache.olingo.client.core.edm.MetadataSnapshot;
 import org.apache.olingo.client.core.uri.URIBuilderImpl;
 import org.apache.olingo.commons.api.edm.Edm;
+import org.apache.olingo.commons.api.format.ODataFormat;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class EdmEnabledODataClientImpl extends ODataClientImpl implements EdmEnabledODataClient {
 
+  private static final Logger LOG = LoggerFactory.getLogger(EdmEnabledODataClientImpl.class);
+
   private final String serviceRoot;
 
   private Edm edm;
 
   private String metadataETag;
 
+  private final File metadataSnapshot;
+
+  /**
+   * Snapshot loaded without knowing the service's current metadata ETag, to be revalidated on first use.
+   */
+  private MetadataSnapshot unverifiedSnapshot;
+
   private EdmEnabledInvokeRequestFactory edmEnabledInvokeRequestFactory;
 
   public EdmEnabledODataClientImpl(final String serviceRoot, final Edm edm, final String metadataETag) {
+    this(serviceRoot, edm, metadataETag, null);
+  }
+
+  /**
+   * Constructor.
+   * <br/>
+   * When no Edm is given, metadata are read from the given snapshot file, if present and matching the given ETag; if
+   * no ETag is given, the snapshot is revalidated on first use through a conditional <tt>$metadata</tt> request
+   * (<tt>If-None-Match</tt>). The snapshot file is (re)written whenever metadata are fetched from the service.
+   *
+   * @param serviceRoot service root.
+   * @param edm Edm, if already available.
+   * @param metadataETag current metadata ETag of the service; <tt>null</tt> if unknown.
+   * @param metadataSnapshot metadata snapshot file; <tt>null</tt> if not used.
+   * @see MetadataSnapshot
+   */
+  public EdmEnabledODataClientImpl(final String serviceRoot, final Edm edm, final String metadataETag,
+          final File metadataSnapshot) {
+
     super();
 
     this.serviceRoot = serviceRoot;
     this.edm = edm;
     this.metadataETag = metadataETag;
+    this.metadataSnapshot = metadataSnapshot;
+
+    if (edm == null && metadataSnapshot != null) {
+      final MetadataSnapshot snapshot = MetadataSnapshot.load(metadataSnapshot);
+      if (snapshot != null) {
+        if (metadataETag == null) {
+          this.unverifiedSnapshot = snapshot;
+        } else if (snapshot.isValid(metadataETag)) {
+          useSnapshot(snapshot);
+        }
+      }
+    }
+  }
+
+  private void useSnapshot(final MetadataSnapshot snapshot) {
+    this.edm = getReader().readMetadata(snapshot.getXMLMetadata().getSchemaByNsOrAlias());
+    this.metadataETag = snapshot.getMetadataETag();
+  }
+
+  /**
+   * Checks whether the service metadata have not changed since the given snapshot was taken.
+   *
+   * @param snapshot metadata snapshot.
+   * @return <tt>true</tt> if the service answered <tt>304 Not Modified</tt> to a conditional <tt>$metadata</tt>
+   * request; <tt>false</tt> otherwise, including when the snapshot has no ETag or the request failed.
+   */
+  private boolean isNotModified(final MetadataSnapshot snapshot) {
+    if (snapshot.getMetadataETag() == null) {
+      return false;
+    }
+
+    final ODataRawRequest request = getRetrieveRequestFactory().getRawRequest(
+            newURIBuilder(serviceRoot).appendMetadataSegment().build());
+    request.setFormat(ODataFormat.XML.getContentType().toContentTypeString());
+    request.setIfNoneMatch(snapshot.getMetadataETag());
+
+    ODataRawResponse response = null;
+    try {
+      response = request.execute();
+      return response.getStatusCode() == HttpStatusCode.NOT_MODIFIED.getStatusCode();
+    } catch (RuntimeException e) {
+      LOG.warn("Could not revalidate metadata snapshot " + metadataSnapshot, e);
+      return false;
+    } finally {
+      if (response != null) {
+        response.close();
+      }
+    }
   }
 
   @Override
@@ -53,11 +139,27 @@ public class EdmEnabledODataClientImpl extends ODataClientImpl implements EdmEna
   @Override
   public Edm getEdm(final String metadataETag) {
     synchronized (this) {
+      if (unverifiedSnapshot != null) {
+        final MetadataSnapshot snapshot = unverifiedSnapshot;
+        unverifiedSnapshot = null;
+        if (metadataETag == null ? isNotModified(snapshot) : snapshot.isValid(metadataETag)) {
+          useSnapshot(snapshot);
+        }
+      }
+
       if (this.edm == null || (metadataETag != null && !metadataETag.equals(this.metadataETag))) {
         final EdmMetadataRequest metadataReq = getRetrieveRequestFactory().getMetadataRequest(serviceRoot);
         final ODataRetrieveResponse<Edm> metadataRes = metadataReq.execute();
         this.metadataETag = metadataRes.getETag();
         this.edm = metadataRes.getBody();
+
+        if (metadataSnapshot != null) {
+          try {
+            new MetadataSnapshot(metadataReq.getXMLMetadata(), this.metadataETag).save(metadataSnapshot);
+          } catch (IOException e) {
+            LOG.warn("Could not write metadata snapshot " + metadataSnapshot, e);
+          }
+        }
       }
     }
     return this.edm;
@@ -18,6 +18,8 @@
  */
 package org.apache.olingo.client.core;
 
+import java.io.File;
+
 import org.apache.olingo.client.api.EdmEnabledODataClient;
 import org.apache.olingo.client.api.ODataClient;
 import org.apache.olingo.commons.api.edm.Edm;
@@ -42,6 +44,25 @@ public final class ODataClientFactory {
     return instance;
   }
 
+  /**
+   * Gets an Edm enabled client whose metadata are read from (and stored into) the given snapshot file, instead of
+   * being fetched and parsed from the service at each start.
+   * <br/>
+   * Metadata are fetched again (and the snapshot rewritten) when {@link EdmEnabledODataClient#getEdm(String)} is
+   * invoked with a different metadata ETag.
+   *
+   * @param serviceRoot service root.
+   * @param metadataSnapshot metadata snapshot file.
+   * @return Edm enabled client.
+   * @see org.apache.olingo.client.core.edm.MetadataSnapshot
+   */
+  public static EdmEnabledODataClient getEdmEnabledClient(final String serviceRoot, final File metadataSnapshot) {
+    final EdmEnabledODataClient instance =
+            new EdmEnabledODataClientImpl(serviceRoot, null, null, metadataSnapshot);
+    instance.getConfiguration().setDefaultPubFormat(ODataFormat.JSON);
+    return instance;
+  }
+
   private ODataClientFactory() {
     // empty constructory for static utility class
   }
@@ -40,6 +40,9 @@ import org.apache.olingo.client.api.communication.request.ODataRequest;
 import org.apache.olingo.client.api.communication.request.ODataStreamer;
 import org.apache.olingo.client.api.communication.response.ODataResponse;
 import org.apache.olingo.client.api.http.HttpClientException;
+import org.apache.olingo.client.api.http.HttpResponseCache;
+import org.apache.olingo.client.api.http.HttpResponseCacheEntry;
+import org.apache.olingo.client.core.http.HttpResponseCacheUtils;
 import org.apache.olingo.commons.api.ODataRuntimeException;
 import org.apache.olingo.commons.api.format.ODataFormat;
 import org.apache.olingo.commons.api.http.HttpMethod;
@@ -296,6 +299,23 @@ public abstract class AbstractODataRequest extends AbstractRequest implements OD
       request.addHeader(key, odataHeaders.getHeader(key));
     }
 
+    // Serve from or revalidate against the HTTP response cache, if configured
+    final HttpResponseCache cache = method == HttpMethod.GET && isCacheable()
+            && StringUtils.isBlank(getIfMatch()) && StringUtils.isBlank(getIfNoneMatch())
+            ? odataClient.getConfiguration().getHttpResponseCache()
+            : null;
+    final String cacheKey = cache == null ? null : HttpResponseCacheUtils.getKey(request.getURI(), getAccept());
+    final HttpResponseCacheEntry cached = cache == null ? null : cache.get(cacheKey);
+    if (cached != null) {
+      if (cached.isFresh(System.currentTimeMillis())) {
+        cache.getStatistics().recordHit();
+        return HttpResponseCacheUtils.toHttpResponse(cached);
+      }
+      if (cached.getETag() != null) {
+        request.addHeader(HeaderName.ifNoneMatch.toString(), cached.getETag());
+      }
+    }
+
     if (LOG.isDebugEnabled()) {
       for (Header header : request.getAllHeaders()) {
         LOG.debug("HTTP header being sent: " + header);
@@ -319,7 +339,17 @@ public abstract class AbstractODataRequest extends AbstractRequest implements OD
       throw e;
     }
 
-    return response;
+    return cache == null ? response : HttpResponseCacheUtils.process(cache, cacheKey, cached, response);
+  }
+
+  /**
+   * Whether responses to this request can be served from the HTTP response cache, when configured.
+   *
+   * @return <tt>false</tt> by default.
+   * @see org.apache.olingo.client.api.Configuration#getHttpResponseCache()
+   */
+  protected boolean isCacheable() {
+    return false;
   }
 
   /**
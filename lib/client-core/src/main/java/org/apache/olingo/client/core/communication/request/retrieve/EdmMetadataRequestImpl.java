@@ -19,9 +19,11 @@
 package org.apache.olingo.client.core.communication.request.retrieve;
 
 import java.net.URI;
+import java.util.Collection;
 
 import org.apache.http.client.HttpClient;
 import org.apache.olingo.client.api.ODataClient;
+import org.apache.olingo.client.api.communication.header.HeaderName;
 import org.apache.olingo.client.api.communication.request.retrieve.EdmMetadataRequest;
 import org.apache.olingo.client.api.communication.response.ODataRetrieveResponse;
 import org.apache.olingo.client.api.edm.xml.XMLMetadata;
@@ -90,6 +92,21 @@ class EdmMetadataRequestImpl extends AbstractMetadataRequestImpl<Edm> implements
       return xmlMetadataResponse.getStatusMessage();
     }
 
+    @Override
+    public Collection<String> getHeaderNames() {
+      return xmlMetadataResponse.getHeaderNames();
+    }
+
+    @Override
+    public Collection<String> getHeader(final String name) {
+      return xmlMetadataResponse.getHeader(name);
+    }
+
+    @Override
+    public Collection<String> getHeader(final HeaderName name) {
+      return xmlMetadataResponse.getHeader(name);
+    }
+
     public XMLMetadata getXMLMetadata() {
       if (metadata == null) {
         try {
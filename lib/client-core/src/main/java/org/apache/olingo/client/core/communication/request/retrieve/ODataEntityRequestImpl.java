@@ -52,6 +52,11 @@ public class ODataEntityRequestImpl<E extends ODataEntity>
     return odataClient.getConfiguration().getDefaultPubFormat();
   }
 
+  @Override
+  protected boolean isCacheable() {
+    return true;
+  }
+
   @Override
   public ODataRetrieveResponse<E> execute() {
     return new ODataEntityResponseImpl(odataClient, httpClient, doExecute());
@@ -56,6 +56,11 @@ public class ODataEntitySetRequestImpl<ES extends ODataEntitySet>
     return odataClient.getConfiguration().getDefaultPubFormat();
   }
 
+  @Override
+  protected boolean isCacheable() {
+    return true;
+  }
+
   @Override
   public ODataRetrieveResponse<ES> execute() {
     final HttpResponse res = doExecute();
@@ -19,8 +19,11 @@
 package org.apache.olingo.client.core.communication.request.retrieve;
 
 import java.net.URI;
+import java.util.Collection;
+import java.util.HashSet;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpUriRequest;
@@ -148,6 +151,11 @@ public class XMLMetadataRequestImpl
       }
     }
 
+    @Override
+    protected boolean isCacheable() {
+      return true;
+    }
+
     @Override
     public ODataRetrieveResponse<XMLMetadata> execute() {
       httpResponse = doExecute();
@@ -183,6 +191,16 @@ public class XMLMetadataRequestImpl
       statusCode = res.getStatusLine().getStatusCode();
       statusMessage = res.getStatusLine().getReasonPhrase();
 
+      // keep headers (ETag among them) of the root metadata document
+      for (Header header : res.getAllHeaders()) {
+        Collection<String> headerValues = headers.get(header.getName());
+        if (headerValues == null) {
+          headerValues = new HashSet<String>();
+          headers.put(header.getName(), headerValues);
+        }
+        headerValues.add(header.getValue());
+      }
+
       hasBeenInitialized = true;
     }
 
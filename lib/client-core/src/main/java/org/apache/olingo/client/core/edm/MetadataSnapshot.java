@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.client.core.edm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.olingo.client.api.edm.xml.XMLMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pre-parsed metadata document, which can be stored into and loaded back from a compact binary (gzipped, serialized)
+ * form, so that clients don't need to fetch and parse <tt>$metadata</tt> at each start.
+ * <br/>
+ * The metadata ETag is stored alongside, so that a snapshot can be checked against the service's current one.
+ */
+public final class MetadataSnapshot {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MetadataSnapshot.class);
+
+  private static final int MAGIC = 0x4F444D53;
+
+  private static final int VERSION = 1;
+
+  private final XMLMetadata metadata;
+
+  private final String metadataETag;
+
+  public MetadataSnapshot(final XMLMetadata metadata, final String metadataETag) {
+    this.metadata = metadata;
+    this.metadataETag = metadataETag;
+  }
+
+  public XMLMetadata getXMLMetadata() {
+    return metadata;
+  }
+
+  public String getMetadataETag() {
+    return metadataETag;
+  }
+
+  /**
+   * Checks whether this snapshot matches the given metadata ETag.
+   *
+   * @param currentETag current metadata ETag of the service; <tt>null</tt> if unknown.
+   * @return <tt>true</tt> if the given ETag equals to the snapshot's one; <tt>false</tt> if it differs or is unknown,
+   * in which case the snapshot must be revalidated against the service before being trusted.
+   */
+  public boolean isValid(final String currentETag) {
+    return currentETag != null && currentETag.equals(metadataETag);
+  }
+
+  /**
+   * Writes this snapshot to the given stream, which is not closed.
+   *
+   * @param output output stream.
+   * @throws IOException if writing fails.
+   */
+  public void write(final OutputStream output) throws IOException {
+    final DataOutputStream header = new DataOutputStream(output);
+    header.writeInt(MAGIC);
+    header.writeInt(VERSION);
+    header.writeBoolean(metadataETag != null);
+    if (metadataETag != null) {
+      header.writeUTF(metadataETag);
+    }
+    header.flush();
+
+    final GZIPOutputStream gzos = new GZIPOutputStream(output);
+    final ObjectOutputStream oos = new ObjectOutputStream(gzos);
+    oos.writeObject(metadata);
+    oos.flush();
+    gzos.finish();
+  }
+
+  /**
+   * Reads a snapshot from the given stream, which is not closed.
+   *
+   * @param input input stream.
+   * @return read snapshot.
+   * @throws IOException if the stream does not contain a valid snapshot.
+   */
+  public static MetadataSnapshot read(final InputStream input) throws IOException {
+    final DataInputStream header = new DataInputStream(input);
+    if (header.readInt() != MAGIC || header.readInt() != VERSION) {
+      throw new IOException("Not a metadata snapshot, or unsupported version");
+    }
+    final String metadataETag = header.readBoolean() ? header.readUTF() : null;
+
+    final ObjectInputStream ois = new ObjectInputStream(new GZIPInputStream(input));
+    try {
+      return new MetadataSnapshot((XMLMetadata) ois.readObject(), metadataETag);
+    } catch (ClassNotFoundException e) {
+      throw new IOException("Incompatible metadata snapshot", e);
+    } catch (ClassCastException e) {
+      throw new IOException("Incompatible metadata snapshot", e);
+    }
+  }
+
+  /**
+   * Stores this snapshot into the given file, replacing it atomically where supported.
+   *
+   * @param file target file.
+   * @throws IOException if writing fails.
+   */
+  public void save(final File file) throws IOException {
+    final File temp = new File(file.getPath() + ".tmp");
+    OutputStream output = null;
+    try {
+      output = new BufferedOutputStream(new FileOutputStream(temp));
+      write(output);
+      output.close();
+      output = null;
+
+      if (file.exists() && !file.delete() || !temp.renameTo(file)) {
+        throw new IOException("Cannot replace " + file);
+      }
+    } finally {
+      IOUtils.closeQuietly(output);
+      if (temp.exists() && !temp.delete()) {
+        LOG.debug("Could not delete {}", temp);
+      }
+    }
+  }
+
+  /**
+   * Loads a snapshot from the given file.
+   *
+   * @param file snapshot file.
+   * @return loaded snapshot, or <tt>null</tt> if the file does not exist or cannot be read.
+   */
+  public static MetadataSnapshot load(final File file) {
+    if (!file.isFile()) {
+      return null;
+    }
+
+    InputStream input = null;
+    try {
+      input = new BufferedInputStream(new FileInputStream(file));
+      return read(input);
+    } catch (IOException e) {
+      LOG.warn("Ignoring unreadable metadata snapshot " + file, e);
+      return null;
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.client.core.http;
+
+import org.apache.olingo.client.api.http.HttpResponseCache;
+import org.apache.olingo.client.api.http.HttpResponseCacheStatistics;
+
+/**
+ * Base class for HTTP response caches, holding statistics and maximum entry size.
+ */
+public abstract class AbstractHttpResponseCache implements HttpResponseCache {
+
+  /**
+   * Default maximum size of a cacheable response body: 1 MB.
+   */
+  public static final long DEFAULT_MAX_ENTRY_SIZE = 1024 * 1024;
+
+  private final HttpResponseCacheStatistics statistics = new HttpResponseCacheStatistics();
+
+  private final long maxEntrySize;
+
+  protected AbstractHttpResponseCache(final long maxEntrySize) {
+    if (maxEntrySize <= 0) {
+      throw new IllegalArgumentException("Invalid maximum entry size: " + maxEntrySize);
+    }
+    this.maxEntrySize = maxEntrySize;
+  }
+
+  @Override
+  public long getMaxEntrySize() {
+    return maxEntrySize;
+  }
+
+  @Override
+  public HttpResponseCacheStatistics getStatistics() {
+    return statistics;
+  }
+}
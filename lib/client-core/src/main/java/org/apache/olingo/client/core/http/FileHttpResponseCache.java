@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.client.core.http;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.olingo.client.api.http.HttpResponseCacheEntry;
+import org.apache.olingo.commons.api.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * On-disk HTTP response cache: each response is serialized into its own file under the given directory, whose total
+ * size is bounded by evicting the least recently used files.
+ */
+public class FileHttpResponseCache extends AbstractHttpResponseCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FileHttpResponseCache.class);
+
+  private static final String SUFFIX = ".cache";
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final File directory;
+
+  private final long maxSize;
+
+  /**
+   * Constructor.
+   *
+   * @param directory directory where cached responses are stored; created if not existing.
+   * @param maxSize maximum total size in bytes of cached responses.
+   */
+  public FileHttpResponseCache(final File directory, final long maxSize) {
+    this(directory, maxSize, Math.min(maxSize, DEFAULT_MAX_ENTRY_SIZE));
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param directory directory where cached responses are stored; created if not existing.
+   * @param maxSize maximum total size in bytes of cached responses.
+   * @param maxEntrySize maximum size in bytes of a single cached response body.
+   */
+  public FileHttpResponseCache(final File directory, final long maxSize, final long maxEntrySize) {
+    super(maxEntrySize);
+    if (maxSize < maxEntrySize) {
+      throw new IllegalArgumentException("Maximum size cannot be less than maximum entry size");
+    }
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IllegalArgumentException("Cannot create cache directory " + directory);
+    }
+    this.directory = directory;
+    this.maxSize = maxSize;
+  }
+
+  @Override
+  public synchronized HttpResponseCacheEntry get(final String key) {
+    final File file = getFile(key);
+    if (!file.isFile()) {
+      return null;
+    }
+
+    ObjectInputStream ois = null;
+    try {
+      ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+      final String storedKey = ois.readUTF();
+      final HttpResponseCacheEntry entry = storedKey.equals(key) ? (HttpResponseCacheEntry) ois.readObject() : null;
+      if (entry != null && !file.setLastModified(System.currentTimeMillis())) {
+        LOG.debug("Could not touch cached response {}", file);
+      }
+      return entry;
+    } catch (Exception e) {
+      LOG.warn("Discarding unreadable cached response " + file, e);
+      IOUtils.closeQuietly(ois);
+      ois = null;
+      delete(file);
+      return null;
+    } finally {
+      IOUtils.closeQuietly(ois);
+    }
+  }
+
+  @Override
+  public synchronized void put(final String key, final HttpResponseCacheEntry entry) {
+    final File file = getFile(key);
+    if (entry.getBody().length > getMaxEntrySize()) {
+      delete(file);
+      return;
+    }
+
+    final File temp = new File(directory, file.getName() + ".tmp");
+    ObjectOutputStream oos = null;
+    try {
+      oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+      oos.writeUTF(key);
+      oos.writeObject(entry);
+      oos.close();
+      oos = null;
+
+      delete(file);
+      if (!temp.renameTo(file)) {
+        throw new IOException("Cannot rename " + temp + " to " + file);
+      }
+    } catch (IOException e) {
+      LOG.warn("Could not cache response for " + key, e);
+      delete(temp);
+      return;
+    } finally {
+      IOUtils.closeQuietly(oos);
+    }
+
+    evict(file);
+  }
+
+  @Override
+  public synchronized void remove(final String key) {
+    delete(getFile(key));
+  }
+
+  @Override
+  public synchronized void clear() {
+    for (File file : listFiles()) {
+      delete(file);
+    }
+  }
+
+  public File getDirectory() {
+    return directory;
+  }
+
+  private void evict(final File justStored) {
+    final File[] files = listFiles();
+
+    long size = 0;
+    for (File file : files) {
+      size += file.length();
+    }
+    if (size <= maxSize) {
+      return;
+    }
+
+    Arrays.sort(files, new Comparator<File>() {
+      @Override
+      public int compare(final File file1, final File file2) {
+        final long diff = file1.lastModified() - file2.lastModified();
+        return diff < 0 ? -1 : diff > 0 ? 1 : 0;
+      }
+    });
+    for (int i = 0; i < files.length && size > maxSize; i++) {
+      if (!files[i].equals(justStored)) {
+        size -= files[i].length();
+        delete(files[i]);
+        getStatistics().recordEviction();
+      }
+    }
+  }
+
+  private File[] listFiles() {
+    final File[] files = directory.listFiles();
+    if (files == null) {
+      return new File[0];
+    }
+
+    int count = 0;
+    for (File file : files) {
+      if (file.getName().endsWith(SUFFIX)) {
+        files[count++] = file;
+      }
+    }
+    return Arrays.copyOf(files, count);
+  }
+
+  private File getFile(final String key) {
+    try {
+      final byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(Constants.UTF8));
+      final StringBuilder name = new StringBuilder(digest.length * 2 + SUFFIX.length());
+      for (byte b : digest) {
+        name.append(HEX[(b >> 4) & 0x0F]).append(HEX[b & 0x0F]);
+      }
+      return new File(directory, name.append(SUFFIX).toString());
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void delete(final File file) {
+    if (file.exists() && !file.delete()) {
+      LOG.warn("Could not delete cached response {}", file);
+    }
+  }
+}
@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.client.core.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.cookie.DateParseException;
+import org.apache.http.impl.cookie.DateUtils;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.apache.olingo.client.api.http.HttpClientException;
+import org.apache.olingo.client.api.http.HttpResponseCache;
+import org.apache.olingo.client.api.http.HttpResponseCacheEntry;
+
+/**
+ * Helper methods for storing HTTP responses into an {@link HttpResponseCache} and serving them back, following
+ * <tt>Cache-Control</tt>, <tt>Expires</tt> and <tt>ETag</tt> response headers.
+ */
+public final class HttpResponseCacheUtils {
+
+  private HttpResponseCacheUtils() {
+    // Empty private constructor for static utility classes
+  }
+
+  /**
+   * Builds the cache key for a request.
+   *
+   * @param uri request URI.
+   * @param accept request <tt>Accept</tt> header.
+   * @return cache key.
+   */
+  public static String getKey(final URI uri, final String accept) {
+    return uri.toASCIIString() + '\n' + accept;
+  }
+
+  /**
+   * Builds an HTTP response out of a cached one.
+   *
+   * @param entry cached response.
+   * @return HTTP response, whose entity is the cached body.
+   */
+  public static HttpResponse toHttpResponse(final HttpResponseCacheEntry entry) {
+    final BasicHttpResponse response =
+        new BasicHttpResponse(HttpVersion.HTTP_1_1, entry.getStatusCode(), entry.getReasonPhrase());
+    for (String[] header : entry.getHeaders()) {
+      response.addHeader(header[0], header[1]);
+    }
+    response.setEntity(new ByteArrayEntity(entry.getBody()));
+    return response;
+  }
+
+  /**
+   * Processes a response received from the server for a cacheable request.
+   *
+   * @param cache cache.
+   * @param key cache key of the request.
+   * @param cached response previously cached for the request (possibly <tt>null</tt>), whose ETag was sent within
+   * <tt>If-None-Match</tt>.
+   * @param response response received from the server.
+   * @return response to be returned to the caller: the cached one on <tt>304 Not Modified</tt>, a buffered copy of
+   * the received one if it has been stored, the received one otherwise.
+   */
+  public static HttpResponse process(final HttpResponseCache cache, final String key,
+      final HttpResponseCacheEntry cached, final HttpResponse response) {
+
+    final long now = System.currentTimeMillis();
+    final int statusCode = response.getStatusLine().getStatusCode();
+
+    if (statusCode == HttpStatus.SC_NOT_MODIFIED && cached != null) {
+      EntityUtils.consumeQuietly(response.getEntity());
+      cache.getStatistics().recordRevalidation();
+
+      final Long expiresAt = getExpiresAt(response, now);
+      final String etag = getHeaderValue(response, HttpHeaders.ETAG);
+      final HttpResponseCacheEntry refreshed = new HttpResponseCacheEntry(
+          cached.getStatusCode(), cached.getReasonPhrase(), cached.getHeaders(), cached.getBody(),
+          etag == null ? cached.getETag() : etag,
+          now, expiresAt == null ? now : expiresAt);
+      cache.put(key, refreshed);
+      return toHttpResponse(refreshed);
+    }
+
+    cache.getStatistics().recordMiss();
+
+    final Long expiresAt = getExpiresAt(response, now);
+    final String etag = getHeaderValue(response, HttpHeaders.ETAG);
+    final HttpEntity entity = response.getEntity();
+    if (statusCode != HttpStatus.SC_OK || entity == null || expiresAt == null
+        || (expiresAt <= now && etag == null)
+        || "*".equals(getHeaderValue(response, HttpHeaders.VARY))
+        || (entity.getContentLength() > cache.getMaxEntrySize())) {
+
+      if (statusCode == HttpStatus.SC_OK) {
+        // stale content must not be served anymore
+        cache.remove(key);
+      }
+      return response;
+    }
+
+    try {
+      final InputStream content = entity.getContent();
+      final ByteArrayOutputStream body = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[8192];
+      int read;
+      while (body.size() <= cache.getMaxEntrySize() && (read = content.read(buffer)) != -1) {
+        body.write(buffer, 0, read);
+      }
+
+      if (body.size() > cache.getMaxEntrySize()) {
+        // too large: give back what was read followed by the rest of the stream
+        cache.remove(key);
+        response.setEntity(new InputStreamEntity(
+            new SequenceInputStream(new ByteArrayInputStream(body.toByteArray()), content), -1,
+            org.apache.http.entity.ContentType.get(entity)));
+        return response;
+      }
+      content.close();
+
+      final List<String[]> headers = new ArrayList<String[]>();
+      for (Header header : response.getAllHeaders()) {
+        if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(header.getName())
+            && !HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(header.getName())
+            && !HttpHeaders.TRANSFER_ENCODING.equalsIgnoreCase(header.getName())) {
+
+          headers.add(new String[] { header.getName(), header.getValue() });
+        }
+      }
+
+      final HttpResponseCacheEntry entry = new HttpResponseCacheEntry(
+          statusCode, response.getStatusLine().getReasonPhrase(), headers, body.toByteArray(), etag, now, expiresAt);
+      cache.put(key, entry);
+      return toHttpResponse(entry);
+    } catch (IOException e) {
+      throw new HttpClientException(e);
+    }
+  }
+
+  /**
+   * Computes until when a response can be used without revalidation.
+   *
+   * @return expiration time, <tt>now</tt> if revalidation is always needed, <tt>null</tt> if the response must not
+   * be stored.
+   */
+  private static Long getExpiresAt(final HttpResponse response, final long now) {
+    Long maxAge = null;
+    for (Header header : response.getHeaders(HttpHeaders.CACHE_CONTROL)) {
+      for (HeaderElement element : header.getElements()) {
+        if ("no-store".equalsIgnoreCase(element.getName())) {
+          return null;
+        } else if ("no-cache".equalsIgnoreCase(element.getName())) {
+          maxAge = 0L;
+        } else if ("max-age".equalsIgnoreCase(element.getName()) && maxAge == null) {
+          try {
+            maxAge = Math.max(0L, Long.parseLong(element.getValue()));
+          } catch (NumberFormatException e) {
+            maxAge = 0L;
+          }
+        }
+      }
+    }
+    if (maxAge != null) {
+      return now + maxAge * 1000;
+    }
+
+    final String expires = getHeaderValue(response, HttpHeaders.EXPIRES);
+    if (expires != null) {
+      try {
+        final Date expiresDate = DateUtils.parseDate(expires);
+        return Math.max(now, expiresDate.getTime());
+      } catch (DateParseException e) {
+        return now;
+      }
+    }
+
+    return now;
+  }
+
+  private static String getHeaderValue(final HttpResponse response, final String name) {
+    final Header header = response.getFirstHeader(name);
+    return header == null ? null : header.getValue();
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.client.core.http;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.olingo.client.api.http.HttpResponseCacheEntry;
+
+/**
+ * In-memory HTTP response cache, bounded by number of entries and total body size, with LRU eviction.
+ */
+public class InMemoryHttpResponseCache extends AbstractHttpResponseCache {
+
+  private final int maxEntries;
+
+  private final long maxSize;
+
+  private final LinkedHashMap<String, HttpResponseCacheEntry> entries =
+          new LinkedHashMap<String, HttpResponseCacheEntry>(16, 0.75f, true);
+
+  private long size = 0;
+
+  /**
+   * Constructor.
+   *
+   * @param maxEntries maximum number of cached responses.
+   * @param maxSize maximum total size in bytes of cached response bodies.
+   */
+  public InMemoryHttpResponseCache(final int maxEntries, final long maxSize) {
+    this(maxEntries, maxSize, Math.min(maxSize, DEFAULT_MAX_ENTRY_SIZE));
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param maxEntries maximum number of cached responses.
+   * @param maxSize maximum total size in bytes of cached response bodies.
+   * @param maxEntrySize maximum size in bytes of a single cached response body.
+   */
+  public InMemoryHttpResponseCache(final int maxEntries, final long maxSize, final long maxEntrySize) {
+    super(maxEntrySize);
+    if (maxEntries <= 0) {
+      throw new IllegalArgumentException("Invalid maximum number of entries: " + maxEntries);
+    }
+    if (maxSize < maxEntrySize) {
+      throw new IllegalArgumentException("Maximum size cannot be less than maximum entry size");
+    }
+    this.maxEntries = maxEntries;
+    this.maxSize = maxSize;
+  }
+
+  @Override
+  public synchronized HttpResponseCacheEntry get(final String key) {
+    return entries.get(key);
+  }
+
+  @Override
+  public synchronized void put(final String key, final HttpResponseCacheEntry entry) {
+    if (entry.getBody().length > getMaxEntrySize()) {
+      remove(key);
+      return;
+    }
+
+    final HttpResponseCacheEntry previous = entries.put(key, entry);
+    if (previous != null) {
+      size -= previous.getBody().length;
+    }
+    size += entry.getBody().length;
+
+    final Iterator<Map.Entry<String, HttpResponseCacheEntry>> iter = entries.entrySet().iterator();
+    while ((entries.size() > maxEntries || size > maxSize) && iter.hasNext()) {
+      final Map.Entry<String, HttpResponseCacheEntry> eldest = iter.next();
+      if (eldest.getValue() != entry) {
+        size -= eldest.getValue().getBody().length;
+        iter.remove();
+        getStatistics().recordEviction();
+      }
+    }
+  }
+
+  @Override
+  public synchronized void remove(final String key) {
+    final HttpResponseCacheEntry removed = entries.remove(key);
+    if (removed != null) {
+      size -= removed.getBody().length;
+    }
+  }
+
+  @Override
+  public synchronized void clear() {
+    entries.clear();
+    size = 0;
+  }
+
+  /**
+   * @return number of cached responses.
+   */
+  public synchronized int getEntryCount() {
+    return entries.size();
+  }
+
+  /**
+   * @return total size in bytes of cached response bodies.
+   */
+  public synchronized long getSize() {
+    return size;
+  }
+}
@@ -90,25 +90,15 @@ public class ClientODataDeserializerImpl implements ClientODataDeserializer {
     return deserializer.toError(input);
   }
 
+  /**
+   * Gets the mapper used to parse metadata documents.
+   * <br/>
+   * A single instance is shared, as building and configuring it is expensive while using it is thread-safe.
+   *
+   * @return XML mapper.
+   */
   protected XmlMapper getXmlMapper() {
-    final XmlMapper xmlMapper = new XmlMapper(
-        new XmlFactory(new InputFactoryImpl(), new OutputFactoryImpl()), new JacksonXmlModule());
-
-    xmlMapper.setInjectableValues(new InjectableValues.Std().addValue(Boolean.class, Boolean.FALSE));
-
-    xmlMapper.addHandler(new DeserializationProblemHandler() {
-      @Override
-      public boolean handleUnknownProperty(final DeserializationContext ctxt, final JsonParser jp,
-          final com.fasterxml.jackson.databind.JsonDeserializer<?> deserializer,
-          final Object beanOrClass, final String propertyName)
-          throws IOException, JsonProcessingException {
-
-        // skip any unknown property
-        ctxt.getParser().skipChildren();
-        return true;
-      }
-    });
-    return xmlMapper;
+    return XmlMapperHolder.INSTANCE;
   }
 
   @Override
@@ -139,4 +129,30 @@ public class ClientODataDeserializerImpl implements ClientODataDeserializer {
       throw new ODataDeserializerException(e);
     }
   }
+
+  private static final class XmlMapperHolder {
+
+    private static final XmlMapper INSTANCE = newXmlMapper();
+
+    private static XmlMapper newXmlMapper() {
+      final XmlMapper xmlMapper = new XmlMapper(
+          new XmlFactory(new InputFactoryImpl(), new OutputFactoryImpl()), new JacksonXmlModule());
+
+      xmlMapper.setInjectableValues(new InjectableValues.Std().addValue(Boolean.class, Boolean.FALSE));
+
+      xmlMapper.addHandler(new DeserializationProblemHandler() {
+        @Override
+        public boolean handleUnknownProperty(final DeserializationContext ctxt, final JsonParser jp,
+            final com.fasterxml.jackson.databind.JsonDeserializer<?> deserializer,
+            final Object beanOrClass, final String propertyName)
+            throws IOException, JsonProcessingException {
+
+          // skip any unknown property
+          ctxt.getParser().skipChildren();
+          return true;
+        }
+      });
+      return xmlMapper;
+    }
+  }
 }
@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.client.core.edm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.olingo.client.api.EdmEnabledODataClient;
+import org.apache.olingo.client.api.ODataClient;
+import org.apache.olingo.client.api.edm.xml.XMLMetadata;
+import org.apache.olingo.client.core.AbstractTest;
+import org.apache.olingo.client.core.EdmEnabledODataClientImpl;
+import org.apache.olingo.client.core.ODataClientFactory;
+import org.apache.olingo.commons.api.edm.Edm;
+import org.apache.olingo.commons.api.edm.FullQualifiedName;
+import org.apache.olingo.commons.api.format.ODataFormat;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class MetadataSnapshotTest extends AbstractTest {
+
+  @Override
+  protected ODataClient getClient() {
+    return v4Client;
+  }
+
+  private XMLMetadata parse() {
+    return getClient().getDeserializer(ODataFormat.XML).toMetadata(
+        getClass().getResourceAsStream("/org/apache/olingo/client/core/v4/metadata.xml"));
+  }
+
+  @Test
+  public void roundTrip() throws IOException {
+    final XMLMetadata metadata = parse();
+
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    new MetadataSnapshot(metadata, "W/\"1\"").write(output);
+
+    final MetadataSnapshot snapshot = MetadataSnapshot.read(new ByteArrayInputStream(output.toByteArray()));
+    assertEquals("W/\"1\"", snapshot.getMetadataETag());
+    assertFalse(snapshot.isValid(null));
+    assertTrue(snapshot.isValid("W/\"1\""));
+    assertFalse(snapshot.isValid("W/\"2\""));
+    assertEquals(metadata.getSchemas().size(), snapshot.getXMLMetadata().getSchemas().size());
+
+    final Edm edm = getClient().getReader().readMetadata(snapshot.getXMLMetadata().getSchemaByNsOrAlias());
+    assertNotNull(edm.getEntityType(new FullQualifiedName("Microsoft.Exchange.Services.OData.Model", "User")));
+  }
+
+  @Test(expected = IOException.class)
+  public void invalid() throws IOException {
+    MetadataSnapshot.read(new ByteArrayInputStream("<edmx:Edmx/>".getBytes()));
+  }
+
+  @Test
+  public void file() throws IOException {
+    final File file = File.createTempFile("metadata", ".snapshot");
+    try {
+      new MetadataSnapshot(parse(), null).save(file);
+
+      final MetadataSnapshot snapshot = MetadataSnapshot.load(file);
+      assertNotNull(snapshot);
+      assertNull(snapshot.getMetadataETag());
+
+      FileUtils.writeStringToFile(file, "garbage");
+      assertNull(MetadataSnapshot.load(file));
+    } finally {
+      FileUtils.deleteQuietly(file);
+    }
+    assertNull(MetadataSnapshot.load(file));
+  }
+
+  /**
+   * Serves <tt>$metadata</tt> with the given ETag, honoring <tt>If-None-Match</tt>; records the conditions received.
+   */
+  private static HttpServer metadataServer(final String etag, final List<String> conditions) throws IOException {
+    final HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/Service/$metadata", new HttpHandler() {
+
+      @Override
+      public void handle(final HttpExchange exchange) throws IOException {
+        final String condition = exchange.getRequestHeaders().getFirst("If-None-Match");
+        conditions.add(condition);
+
+        exchange.getResponseHeaders().add("ETag", etag);
+        if (etag.equals(condition)) {
+          exchange.sendResponseHeaders(304, -1);
+        } else {
+          final InputStream metadata =
+              getClass().getResourceAsStream("/org/apache/olingo/client/core/v4/metadata.xml");
+          final byte[] body = IOUtils.toByteArray(metadata);
+          metadata.close();
+          exchange.getResponseHeaders().add("Content-Type", "application/xml");
+          exchange.sendResponseHeaders(200, body.length);
+          final OutputStream output = exchange.getResponseBody();
+          output.write(body);
+          output.close();
+        }
+        exchange.close();
+      }
+    });
+    server.start();
+    return server;
+  }
+
+  private static String serviceRoot(final HttpServer server) {
+    return "http://localhost:" + server.getAddress().getPort() + "/Service";
+  }
+
+  @Test
+  public void revalidatedWhenETagUnknown() throws IOException {
+    final File file = File.createTempFile("metadata", ".snapshot");
+    final List<String> conditions = new ArrayList<String>();
+    final HttpServer server = metadataServer("W/\"1\"", conditions);
+    try {
+      new MetadataSnapshot(parse(), "W/\"1\"").save(file);
+
+      final EdmEnabledODataClient client = ODataClientFactory.getEdmEnabledClient(serviceRoot(server), file);
+      assertTrue(conditions.isEmpty());
+
+      final Edm edm = client.getCachedEdm();
+      assertNotNull(edm.getEntityType(new FullQualifiedName("Microsoft.Exchange.Services.OData.Model", "User")));
+      // one conditional request, answered with 304
+      assertEquals(1, conditions.size());
+      assertEquals("W/\"1\"", conditions.get(0));
+
+      assertEquals(edm, client.getCachedEdm());
+      assertEquals(1, conditions.size());
+    } finally {
+      server.stop(0);
+      FileUtils.deleteQuietly(file);
+    }
+  }
+
+  @Test
+  public void replacedWhenStale() throws IOException {
+    final File file = File.createTempFile("metadata", ".snapshot");
+    final List<String> conditions = new ArrayList<String>();
+    final HttpServer server = metadataServer("W/\"2\"", conditions);
+    try {
+      new MetadataSnapshot(parse(), "W/\"1\"").save(file);
+
+      final EdmEnabledODataClient client = ODataClientFactory.getEdmEnabledClient(serviceRoot(server), file);
+      final Edm edm = client.getCachedEdm();
+      assertNotNull(edm.getEntityType(new FullQualifiedName("Microsoft.Exchange.Services.OData.Model", "User")));
+
+      // conditional request first, then full request
+      assertEquals(2, conditions.size());
+      assertEquals("W/\"1\"", conditions.get(0));
+      assertNull(conditions.get(1));
+
+      assertEquals("W/\"2\"", MetadataSnapshot.load(file).getMetadataETag());
+    } finally {
+      server.stop(0);
+      FileUtils.deleteQuietly(file);
+    }
+  }
+
+  @Test
+  public void trustedWhenETagMatches() throws IOException {
+    final File file = File.createTempFile("metadata", ".snapshot");
+    final List<String> conditions = new ArrayList<String>();
+    final HttpServer server = metadataServer("W/\"1\"", conditions);
+    try {
+      new MetadataSnapshot(parse(), "W/\"1\"").save(file);
+
+      final EdmEnabledODataClient client =
+          new EdmEnabledODataClientImpl(serviceRoot(server), null, "W/\"1\"", file);
+      assertNotNull(client.getCachedEdm());
+      assertTrue(conditions.isEmpty());
+    } finally {
+      server.stop(0);
+      FileUtils.deleteQuietly(file);
+    }
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.client.core.http;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.apache.olingo.client.api.http.HttpResponseCache;
+import org.apache.olingo.client.api.http.HttpResponseCacheEntry;
+import org.junit.Test;
+
+public class HttpResponseCacheTest {
+
+  private static final String KEY = HttpResponseCacheUtils.getKey(URI.create("http://host/service/People"),
+      "application/json");
+
+  private static HttpResponse response(final int statusCode, final String body, final String... headers) {
+    final BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, statusCode, null);
+    for (int i = 0; i < headers.length; i += 2) {
+      response.addHeader(headers[i], headers[i + 1]);
+    }
+    if (body != null) {
+      response.setEntity(new ByteArrayEntity(body.getBytes()));
+    }
+    return response;
+  }
+
+  private static HttpResponseCacheEntry entry(final int size) {
+    return new HttpResponseCacheEntry(200, "OK", Collections.<String[]> emptyList(), new byte[size], null, 0, 0);
+  }
+
+  @Test
+  public void storeFreshResponse() throws Exception {
+    final HttpResponseCache cache = new InMemoryHttpResponseCache(10, 1024);
+
+    final HttpResponse res = HttpResponseCacheUtils.process(cache, KEY, null,
+        response(200, "{}", "Cache-Control", "max-age=60", "ETag", "W/\"1\""));
+    assertEquals("{}", EntityUtils.toString(res.getEntity()));
+
+    final HttpResponseCacheEntry cached = cache.get(KEY);
+    assertNotNull(cached);
+    assertTrue(cached.isFresh(System.currentTimeMillis()));
+    assertEquals("W/\"1\"", cached.getETag());
+    assertEquals(1, cache.getStatistics().getMisses());
+  }
+
+  @Test
+  public void doNotStore() throws Exception {
+    final HttpResponseCache cache = new InMemoryHttpResponseCache(10, 1024);
+
+    HttpResponseCacheUtils.process(cache, KEY, null, response(200, "{}", "Cache-Control", "no-store", "ETag", "1"));
+    assertNull(cache.get(KEY));
+
+    // neither freshness information nor validator
+    HttpResponseCacheUtils.process(cache, KEY, null, response(200, "{}"));
+    assertNull(cache.get(KEY));
+
+    HttpResponseCacheUtils.process(cache, KEY, null, response(404, "{}", "Cache-Control", "max-age=60"));
+    assertNull(cache.get(KEY));
+  }
+
+  @Test
+  public void revalidate() throws Exception {
+    final HttpResponseCache cache = new InMemoryHttpResponseCache(10, 1024);
+
+    HttpResponseCacheUtils.process(cache, KEY, null, response(200, "{}", "Cache-Control", "no-cache", "ETag", "1"));
+    final HttpResponseCacheEntry cached = cache.get(KEY);
+    assertNotNull(cached);
+    assertEquals("1", cached.getETag());
+
+    final HttpResponse res = HttpResponseCacheUtils.process(cache, KEY, cached,
+        response(304, null, "Cache-Control", "max-age=60"));
+    assertEquals(200, res.getStatusLine().getStatusCode());
+    assertEquals("{}", EntityUtils.toString(res.getEntity()));
+    assertTrue(cache.get(KEY).isFresh(System.currentTimeMillis()));
+    assertEquals("1", cache.get(KEY).getETag());
+
+    assertEquals(1, cache.getStatistics().getRevalidations());
+    assertEquals(0.5, cache.getStatistics().getHitRatio(), 0);
+  }
+
+  @Test
+  public void tooLarge() throws Exception {
+    final HttpResponseCache cache = new InMemoryHttpResponseCache(10, 1024, 4);
+
+    final HttpResponse res = HttpResponseCacheUtils.process(cache, KEY, null,
+        response(200, "0123456789", "Cache-Control", "max-age=60"));
+    assertEquals("0123456789", EntityUtils.toString(res.getEntity()));
+    assertNull(cache.get(KEY));
+  }
+
+  @Test
+  public void lruEviction() {
+    final InMemoryHttpResponseCache cache = new InMemoryHttpResponseCache(2, 100, 50);
+    cache.put("a", entry(10));
+    cache.put("b", entry(10));
+    cache.get("a");
+    cache.put("c", entry(10));
+
+    assertNotNull(cache.get("a"));
+    assertNull(cache.get("b"));
+    assertNotNull(cache.get("c"));
+    assertEquals(1, cache.getStatistics().getEvictions());
+
+    cache.put("d", entry(50));
+    cache.put("e", entry(50));
+    assertEquals(100, cache.getSize());
+    assertEquals(2, cache.getEntryCount());
+  }
+
+  @Test
+  public void fileCache() throws Exception {
+    final File directory = new File(System.getProperty("java.io.tmpdir"), "olingo-cache-" + System.nanoTime());
+    try {
+      final FileHttpResponseCache cache = new FileHttpResponseCache(directory, 1024);
+      final HttpResponseCacheEntry entry = new HttpResponseCacheEntry(200, "OK",
+          Collections.singletonList(new String[] { "Content-Type", "application/json" }),
+          "{}".getBytes(), "1", 0, 0);
+      cache.put(KEY, entry);
+
+      final HttpResponseCacheEntry read = new FileHttpResponseCache(directory, 1024).get(KEY);
+      assertNotNull(read);
+      assertArrayEquals(entry.getBody(), read.getBody());
+      assertEquals("application/json", read.getHeaders().get(0)[1]);
+      assertNull(cache.get("other"));
+
+      cache.clear();
+      assertNull(cache.get(KEY));
+      assertSame(directory, cache.getDirectory());
+    } finally {
+      FileUtils.deleteQuietly(directory);
+    }
+  }
+}
@@ -20,7 +20,9 @@ package org.apache.olingo.commons.core.serialization;
 
 import javax.xml.XMLConstants;
 import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
 
 import org.apache.commons.lang3.StringUtils;
@@ -94,4 +96,55 @@ abstract class AbstractAtomDealer {
     writer.writeNamespace(Constants.PREFIX_GML, Constants.NS_GML);
     writer.writeNamespace(Constants.PREFIX_GEORSS, Constants.NS_GEORSS);
   }
+
+  /**
+   * Checks whether the current element of the given cursor has the given name, without allocating a {@link QName}.
+   */
+  static boolean matches(final XMLStreamReader reader, final QName name) {
+    return name.getLocalPart().equals(reader.getLocalName())
+        && name.getNamespaceURI().equals(StringUtils.defaultString(reader.getNamespaceURI()));
+  }
+
+  /**
+   * Looks up the value of the given attribute of the current element of the given cursor.
+   * @return the attribute value or <code>null</code> if the attribute is not present
+   */
+  static String attribute(final XMLStreamReader reader, final QName name) {
+    for (int i = 0; i < reader.getAttributeCount(); i++) {
+      if (name.getLocalPart().equals(reader.getAttributeLocalName(i))
+          && name.getNamespaceURI().equals(StringUtils.defaultString(reader.getAttributeNamespace(i)))) {
+        return reader.getAttributeValue(i);
+      }
+    }
+    return null;
+  }
+
+  static boolean isCharacters(final int event) {
+    return event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+        || event == XMLStreamConstants.SPACE;
+  }
+
+  /**
+   * Consumes the rest of the current element, starting from the current event of the given cursor
+   * and leaving the cursor on the end tag of the element.
+   */
+  static void skipToEnd(final XMLStreamReader reader) throws XMLStreamException {
+    int depth = 0;
+    for (int event = reader.getEventType(); depth > 0 || event != XMLStreamConstants.END_ELEMENT;
+        event = reader.next()) {
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+  }
+
+  /**
+   * Consumes the element whose start tag is the current event of the given cursor.
+   */
+  static void skipElement(final XMLStreamReader reader) throws XMLStreamException {
+    reader.next();
+    skipToEnd(reader);
+  }
 }
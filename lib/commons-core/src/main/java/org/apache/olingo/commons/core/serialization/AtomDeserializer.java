@@ -25,14 +25,14 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.namespace.QName;
-import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.Attribute;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.XMLStreamReader;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.olingo.commons.api.Constants;
@@ -64,139 +64,174 @@ import org.apache.olingo.commons.core.edm.provider.EdmTypeInfo;
 
 import com.fasterxml.aalto.stax.InputFactoryImpl;
 
+/**
+ * Atom deserializer working on an XML cursor ({@link XMLStreamReader}) instead of XML events, so that no
+ * object is allocated per XML node.
+ * <br/>Every private reading method expects the cursor on the start tag of its element (or, for element content,
+ * on the first content event) and leaves it on the matching end tag.
+ */
 public class AtomDeserializer extends AbstractAtomDealer implements ODataDeserializer {
 
   protected static final XMLInputFactory FACTORY = new InputFactoryImpl();
 
+  private static final QName REL_QNAME = new QName(Constants.ATTR_REL);
+  private static final QName TITLE_QNAME = new QName(Constants.ATTR_TITLE);
+  private static final QName HREF_QNAME = new QName(Constants.ATTR_HREF);
+  private static final QName TYPE_QNAME = new QName(Constants.ATTR_TYPE);
+  private static final QName TERM_QNAME = new QName(Constants.ATOM_ATTR_TERM);
+  private static final QName SRC_QNAME = new QName(Constants.ATOM_ATTR_SRC);
+  private static final QName METADATA_QNAME = new QName(Constants.ATTR_METADATA);
+  private static final QName TARGET_QNAME = new QName(Constants.ATTR_TARGET);
+  private static final QName REF_QNAME = new QName(Constants.ATTR_REF);
+  private static final QName SOURCE_QNAME = new QName(Constants.ATTR_SOURCE);
+  private static final QName RELATIONSHIP_QNAME = new QName(Constants.ATTR_RELATIONSHIP);
+
+  private static final String APPLICATION_XML = ContentType.APPLICATION_XML.toContentTypeString();
+
+  /** Upper bound for the number of distinct type expressions whose parsed form is kept. */
+  private static final int MAX_CACHED_TYPES = 256;
+
   private final AtomGeoValueDeserializer geoDeserializer;
 
-  protected XMLEventReader getReader(final InputStream input) throws XMLStreamException {
-    return FACTORY.createXMLEventReader(input);
+  private final ConcurrentMap<String, EdmTypeInfo> typeInfos = new ConcurrentHashMap<String, EdmTypeInfo>();
+
+  protected XMLStreamReader getReader(final InputStream input) throws XMLStreamException {
+    return FACTORY.createXMLStreamReader(input);
   }
 
   public AtomDeserializer() {
     geoDeserializer = new AtomGeoValueDeserializer();
   }
 
-  private Object fromPrimitive(final XMLEventReader reader, final StartElement start,
-      final EdmTypeInfo typeInfo) throws XMLStreamException, EdmPrimitiveTypeException {
-
-    Object value = null;
-
-    boolean foundEndProperty = false;
-    while (reader.hasNext() && !foundEndProperty) {
-      final XMLEvent event = reader.nextEvent();
-
-      if (event.isStartElement() && typeInfo != null && typeInfo.getPrimitiveTypeKind().isGeospatial()) {
-        final EdmPrimitiveTypeKind geoType =
-            EdmPrimitiveTypeKind.valueOfFQN(typeInfo.getFullQualifiedName().toString());
-        value = geoDeserializer.deserialize(reader, event.asStartElement(), geoType);
+  private EdmTypeInfo getTypeInfo(final String typeExpression) {
+    EdmTypeInfo typeInfo = typeInfos.get(typeExpression);
+    if (typeInfo == null) {
+      typeInfo = new EdmTypeInfo.Builder().setTypeExpression(typeExpression).build();
+      if (typeInfos.size() < MAX_CACHED_TYPES) {
+        typeInfos.putIfAbsent(typeExpression, typeInfo);
       }
+    }
+    return typeInfo;
+  }
 
-      if (event.isCharacters() && !event.asCharacters().isWhiteSpace()
-          && (typeInfo == null || !typeInfo.getPrimitiveTypeKind().isGeospatial())) {
-
-        final String stringValue = event.asCharacters().getData();
-        value = typeInfo == null ? stringValue : // TODO: add facets
-            ((EdmPrimitiveType) typeInfo.getType()).valueOfString(stringValue, true, null,
-                Constants.DEFAULT_PRECISION, Constants.DEFAULT_SCALE, true,
-                ((EdmPrimitiveType) typeInfo.getType()).getDefaultType());
+  /**
+   * Reads the text content of the current element, starting from its first content event.
+   * As with nested markup only the last non-blank text is kept, text chunks are joined up to the next tag.
+   * @return the text or <code>null</code> if the element contains only whitespace
+   */
+  private String text(final XMLStreamReader reader) throws XMLStreamException {
+    String text = null;
+    String chunk = null;
+    boolean blank = true;
+    int depth = 0;
+    for (int event = reader.getEventType(); depth > 0 || event != XMLStreamConstants.END_ELEMENT;
+        event = reader.next()) {
+      if (isCharacters(event)) {
+        chunk = chunk == null ? reader.getText() : chunk + reader.getText();
+        blank = blank && reader.isWhiteSpace();
+      } else if (event == XMLStreamConstants.START_ELEMENT || event == XMLStreamConstants.END_ELEMENT) {
+        if (!blank) {
+          text = chunk;
+        }
+        chunk = null;
+        blank = true;
+        depth += event == XMLStreamConstants.START_ELEMENT ? 1 : -1;
       }
+    }
+    return blank ? text : chunk;
+  }
 
-      if (event.isEndElement() && start.getName().equals(event.asEndElement().getName())) {
-        foundEndProperty = true;
+  private Object fromPrimitive(final XMLStreamReader reader, final EdmTypeInfo typeInfo)
+      throws XMLStreamException, EdmPrimitiveTypeException {
+
+    if (typeInfo != null && typeInfo.getPrimitiveTypeKind().isGeospatial()) {
+      final EdmPrimitiveTypeKind geoType =
+          EdmPrimitiveTypeKind.valueOfFQN(typeInfo.getFullQualifiedName().toString());
+      Object value = null;
+      for (int event = reader.getEventType(); event != XMLStreamConstants.END_ELEMENT; event = reader.next()) {
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          value = geoDeserializer.deserialize(reader, geoType);
+        }
       }
+      return value;
     }
 
-    return value;
+    final String stringValue = text(reader);
+    return stringValue == null || typeInfo == null ? stringValue : // TODO: add facets
+        ((EdmPrimitiveType) typeInfo.getType()).valueOfString(stringValue, true, null,
+            Constants.DEFAULT_PRECISION, Constants.DEFAULT_SCALE, true,
+            ((EdmPrimitiveType) typeInfo.getType()).getDefaultType());
   }
 
-  private Object fromComplexOrEnum(final XMLEventReader reader, final StartElement start)
+  private Link link(final XMLStreamReader reader) {
+    final Link link = new Link();
+    link.setRel(attribute(reader, REL_QNAME));
+    link.setTitle(attribute(reader, TITLE_QNAME));
+    link.setHref(attribute(reader, HREF_QNAME));
+    link.setType(attribute(reader, TYPE_QNAME));
+    return link;
+  }
+
+  private Object fromComplexOrEnum(final XMLStreamReader reader)
       throws XMLStreamException, EdmPrimitiveTypeException {
 
     Object value = null;
 
-    boolean foundEndProperty = false;
-    while (reader.hasNext() && !foundEndProperty) {
-      final XMLEvent event = reader.nextEvent();
-
-      if (event.isStartElement()) {
+    for (int event = reader.getEventType(); event != XMLStreamConstants.END_ELEMENT; event = reader.next()) {
+      if (event == XMLStreamConstants.START_ELEMENT) {
         if (value == null) {
           value = new ComplexValue();
         }
 
-        if (Constants.QNAME_ATOM_ELEM_LINK.equals(event.asStartElement().getName())) {
-          final Link link = new Link();
-          final Attribute rel = event.asStartElement().getAttributeByName(QName.valueOf(Constants.ATTR_REL));
-          if (rel != null) {
-            link.setRel(rel.getValue());
-          }
-          final Attribute title = event.asStartElement().getAttributeByName(QName.valueOf(Constants.ATTR_TITLE));
-          if (title != null) {
-            link.setTitle(title.getValue());
-          }
-          final Attribute href = event.asStartElement().getAttributeByName(QName.valueOf(Constants.ATTR_HREF));
-          if (href != null) {
-            link.setHref(href.getValue());
-          }
-          final Attribute type = event.asStartElement().getAttributeByName(QName.valueOf(Constants.ATTR_TYPE));
-          if (type != null) {
-            link.setType(type.getValue());
-          }
+        if (matches(reader, Constants.QNAME_ATOM_ELEM_LINK)) {
+          final Link link = link(reader);
 
           if (link.getRel().startsWith(Constants.NS_NAVIGATION_LINK_REL)) {
 
             ((ComplexValue) value).getNavigationLinks().add(link);
-            inline(reader, event.asStartElement(), link);
-          } else if (link.getRel().startsWith(Constants.NS_ASSOCIATION_LINK_REL)) {
+            inline(reader, link);
+          } else {
+            if (link.getRel().startsWith(Constants.NS_ASSOCIATION_LINK_REL)) {
 
-            ((Valuable) value).asComplex().getAssociationLinks().add(link);
+              ((Valuable) value).asComplex().getAssociationLinks().add(link);
+            }
+            skipElement(reader);
           }
         } else {
-          ((ComplexValue) value).getValue().add(property(reader, event.asStartElement()));
+          ((ComplexValue) value).getValue().add(property(reader));
         }
-      }
-
-      if (event.isCharacters() && !event.asCharacters().isWhiteSpace()) {
-        value = event.asCharacters().getData();
-      }
-
-      if (event.isEndElement() && start.getName().equals(event.asEndElement().getName())) {
-        foundEndProperty = true;
+      } else if (isCharacters(event) && !reader.isWhiteSpace()) {
+        value = value instanceof String ? value + reader.getText() : reader.getText();
       }
     }
 
     return value;
   }
 
-  private void fromCollection(final Valuable valuable, final XMLEventReader reader, final StartElement start,
-      final EdmTypeInfo typeInfo) throws XMLStreamException, EdmPrimitiveTypeException {
+  private void fromCollection(final Valuable valuable, final XMLStreamReader reader, final EdmTypeInfo typeInfo)
+      throws XMLStreamException, EdmPrimitiveTypeException {
 
     List<Object> values = new ArrayList<Object>();
     ValueType valueType = ValueType.COLLECTION_PRIMITIVE;
 
-    final EdmTypeInfo type = typeInfo == null ? null :
-        new EdmTypeInfo.Builder().setTypeExpression(typeInfo.getFullQualifiedName().toString()).build();
+    final EdmTypeInfo type = typeInfo == null ? null : getTypeInfo(typeInfo.getFullQualifiedName().toString());
 
-    boolean foundEndProperty = false;
-    while (reader.hasNext() && !foundEndProperty) {
-      final XMLEvent event = reader.nextEvent();
-
-      if (event.isStartElement()) {
+    for (int event = reader.getEventType(); event != XMLStreamConstants.END_ELEMENT; event = reader.next()) {
+      if (event == XMLStreamConstants.START_ELEMENT) {
         switch (guessPropertyType(reader, typeInfo)) {
         case COMPLEX:
-          final Object complexValue = fromComplexOrEnum(reader, event.asStartElement());
+          final Object complexValue = fromComplexOrEnum(reader);
           valueType = ValueType.COLLECTION_COMPLEX;
           values.add(complexValue);
           break;
 
         case ENUM:
           valueType = ValueType.COLLECTION_ENUM;
-          values.add(fromComplexOrEnum(reader, event.asStartElement()));
+          values.add(fromComplexOrEnum(reader));
           break;
 
         case PRIMITIVE:
-          final Object value = fromPrimitive(reader, event.asStartElement(), type);
+          final Object value = fromPrimitive(reader, type);
           valueType = value instanceof Geospatial ?
               ValueType.COLLECTION_GEOSPATIAL : ValueType.COLLECTION_PRIMITIVE;
           values.add(value);
@@ -204,100 +239,95 @@ public class AtomDeserializer extends AbstractAtomDealer implements ODataDeseria
 
         default:
           // do not add null or empty values
+          skipToEnd(reader);
         }
       }
-
-      if (event.isEndElement() && start.getName().equals(event.asEndElement().getName())) {
-        foundEndProperty = true;
-      }
     }
     valuable.setValue(valueType, values);
   }
 
-  private ODataPropertyType guessPropertyType(final XMLEventReader reader, final EdmTypeInfo typeInfo)
+  /**
+   * Guesses the type of the value of the current element by moving the cursor from the start tag
+   * to the first content event which is not whitespace.
+   */
+  private ODataPropertyType guessPropertyType(final XMLStreamReader reader, final EdmTypeInfo typeInfo)
       throws XMLStreamException {
 
-    XMLEvent child = null;
-    while (reader.hasNext() && child == null) {
-      final XMLEvent event = reader.peek();
-      if (event.isCharacters() && event.asCharacters().isWhiteSpace()) {
-        reader.nextEvent();
-      } else {
-        child = event;
-      }
+    int event = reader.next();
+    while (reader.hasNext()
+        && (isCharacters(event) && reader.isWhiteSpace()
+            || event == XMLStreamConstants.COMMENT || event == XMLStreamConstants.PROCESSING_INSTRUCTION)) {
+      event = reader.next();
     }
 
     final ODataPropertyType type;
-    if (child == null) {
-      type = typeInfo == null || typeInfo.isPrimitiveType() ? ODataPropertyType.PRIMITIVE : ODataPropertyType.ENUM;
-    } else {
-      if (child.isStartElement()) {
-        if (Constants.NS_GML.equals(child.asStartElement().getName().getNamespaceURI())) {
-          type = ODataPropertyType.PRIMITIVE;
-        } else if (elementQName.equals(child.asStartElement().getName())) {
-          type = ODataPropertyType.COLLECTION;
-        } else {
-          type = ODataPropertyType.COMPLEX;
-        }
-      } else if (child.isCharacters()) {
-        type = typeInfo == null || typeInfo.isPrimitiveType()
-            ? ODataPropertyType.PRIMITIVE
-            : ODataPropertyType.ENUM;
+    if (event == XMLStreamConstants.START_ELEMENT) {
+      if (Constants.NS_GML.equals(reader.getNamespaceURI())) {
+        type = ODataPropertyType.PRIMITIVE;
+      } else if (matches(reader, elementQName)) {
+        type = ODataPropertyType.COLLECTION;
       } else {
-        type = ODataPropertyType.EMPTY;
+        type = ODataPropertyType.COMPLEX;
       }
+    } else if (event == XMLStreamConstants.END_ELEMENT) {
+      type = ODataPropertyType.EMPTY;
+    } else {
+      type = typeInfo == null || typeInfo.isPrimitiveType()
+          ? ODataPropertyType.PRIMITIVE
+          : ODataPropertyType.ENUM;
     }
 
     return type;
   }
 
-  private Property property(final XMLEventReader reader, final StartElement start)
-      throws XMLStreamException, EdmPrimitiveTypeException {
-
+  private Property property(final XMLStreamReader reader) throws XMLStreamException, EdmPrimitiveTypeException {
     final Property property = new Property();
 
-    if (propertyValueQName.equals(start.getName())) {
+    if (matches(reader, propertyValueQName)) {
       // retrieve name from context
-      final Attribute context = start.getAttributeByName(contextQName);
+      final String context = attribute(reader, contextQName);
       if (context != null) {
-        property.setName(StringUtils.substringAfterLast(context.getValue(), "/"));
+        property.setName(StringUtils.substringAfterLast(context, "/"));
       }
     } else {
-      property.setName(start.getName().getLocalPart());
+      property.setName(reader.getLocalName());
     }
 
-    valuable(property, reader, start);
+    valuable(property, reader);
 
     return property;
   }
 
-  private void valuable(final Valuable valuable, final XMLEventReader reader, final StartElement start)
+  private void valuable(final Valuable valuable, final XMLStreamReader reader)
       throws XMLStreamException, EdmPrimitiveTypeException {
 
-    final Attribute nullAttr = start.getAttributeByName(nullQName);
+    final String nullAttr = attribute(reader, nullQName);
 
-    final Attribute typeAttr = start.getAttributeByName(typeQName);
-    final String typeAttrValue = typeAttr == null ? null : typeAttr.getValue();
+    final String typeAttrValue = attribute(reader, typeQName);
 
-    final EdmTypeInfo typeInfo = StringUtils.isBlank(typeAttrValue) ? null :
-        new EdmTypeInfo.Builder().setTypeExpression(typeAttrValue).build();
+    final EdmTypeInfo typeInfo = StringUtils.isBlank(typeAttrValue) ? null : getTypeInfo(typeAttrValue);
 
     if (typeInfo != null) {
       valuable.setType(typeInfo.internal());
     }
 
-    final ODataPropertyType propType = typeInfo == null ? guessPropertyType(reader, typeInfo) :
-        typeInfo.isCollection() ? ODataPropertyType.COLLECTION :
-            typeInfo.isPrimitiveType() ? ODataPropertyType.PRIMITIVE : ODataPropertyType.COMPLEX;
+    final ODataPropertyType propType;
+    if (typeInfo == null) {
+      propType = guessPropertyType(reader, typeInfo);
+    } else {
+      propType = typeInfo.isCollection() ? ODataPropertyType.COLLECTION :
+          typeInfo.isPrimitiveType() ? ODataPropertyType.PRIMITIVE : ODataPropertyType.COMPLEX;
+      reader.next();
+    }
 
     if (nullAttr == null) {
       switch (propType) {
       case COLLECTION:
-        fromCollection(valuable, reader, start, typeInfo);
+        fromCollection(valuable, reader, typeInfo);
         break;
 
       case COMPLEX:
-        final Object complexValue = fromComplexOrEnum(reader, start);
+        final Object complexValue = fromComplexOrEnum(reader);
         valuable.setValue(complexValue instanceof ComplexValue ? ValueType.COMPLEX : ValueType.ENUM,
             complexValue);
         break;
@@ -307,15 +337,17 @@ public class AtomDeserializer extends AbstractAtomDealer implements ODataDeseria
         if (typeInfo == null) {
           valuable.setType(EdmPrimitiveTypeKind.String.getFullQualifiedName().toString());
         }
-        final Object value = fromPrimitive(reader, start, typeInfo);
+        final Object value = fromPrimitive(reader, typeInfo);
         valuable.setValue(value instanceof Geospatial ? ValueType.GEOSPATIAL : ValueType.PRIMITIVE, value);
         break;
 
       case EMPTY:
       default:
+        skipToEnd(reader);
         valuable.setValue(ValueType.PRIMITIVE, StringUtils.EMPTY);
       }
     } else {
+      skipToEnd(reader);
       valuable.setValue(propType == ODataPropertyType.PRIMITIVE ? ValueType.PRIMITIVE :
           propType == ODataPropertyType.ENUM ? ValueType.ENUM :
               propType == ODataPropertyType.COMPLEX ? ValueType.COMPLEX :
@@ -327,9 +359,11 @@ public class AtomDeserializer extends AbstractAtomDealer implements ODataDeseria
   @Override
   public ResWrap<Property> toProperty(final InputStream input) throws ODataDeserializerException {
     try {
-      final XMLEventReader reader = getReader(input);
-      final StartElement start = skipBeforeFirstStartElement(reader);
-      return getContainer(start, property(reader, start));
+      final XMLStreamReader reader = getReader(input);
+      skipBeforeFirstStartElement(reader);
+      final String contextURL = attribute(reader, contextQName);
+      final String metadataETag = attribute(reader, metadataEtagQName);
+      return getContainer(contextURL, metadataETag, property(reader));
     } catch (XMLStreamException e) {
       throw new ODataDeserializerException(e);
     } catch (final EdmPrimitiveTypeException e) {
@@ -337,373 +371,319 @@ public class AtomDeserializer extends AbstractAtomDealer implements ODataDeseria
     }
   }
 
-  private StartElement skipBeforeFirstStartElement(final XMLEventReader reader) throws XMLStreamException {
-    StartElement startEvent = null;
-    while (reader.hasNext() && startEvent == null) {
-      final XMLEvent event = reader.nextEvent();
-      if (event.isStartElement()) {
-        startEvent = event.asStartElement();
+  private void skipBeforeFirstStartElement(final XMLStreamReader reader) throws XMLStreamException {
+    while (reader.hasNext()) {
+      if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+        return;
       }
     }
-    if (startEvent == null) {
-      throw new IllegalArgumentException("Cannot find any XML start element");
-    }
-
-    return startEvent;
+    throw new IllegalArgumentException("Cannot find any XML start element");
   }
 
-  private void common(final XMLEventReader reader, final StartElement start,
-      final AbstractODataObject object, final String key) throws XMLStreamException {
-
-    boolean foundEndElement = false;
-    while (reader.hasNext() && !foundEndElement) {
-      final XMLEvent event = reader.nextEvent();
-
-      if (event.isCharacters() && !event.asCharacters().isWhiteSpace()) {
-        try {
-          object.setCommonProperty(key, event.asCharacters().getData());
-        } catch (ParseException e) {
-          throw new XMLStreamException("While parsing Atom entry or feed common elements", e);
-        }
-      }
+  private void common(final XMLStreamReader reader, final AbstractODataObject object, final String key)
+      throws XMLStreamException {
 
-      if (event.isEndElement() && start.getName().equals(event.asEndElement().getName())) {
-        foundEndElement = true;
+    reader.next();
+    final String value = text(reader);
+    if (value != null) {
+      try {
+        object.setCommonProperty(key, value);
+      } catch (ParseException e) {
+        throw new XMLStreamException("While parsing Atom entry or feed common elements", e);
       }
     }
   }
 
-  private void inline(final XMLEventReader reader, final StartElement start, final Link link)
+  private void inline(final XMLStreamReader reader, final Link link)
       throws XMLStreamException, EdmPrimitiveTypeException {
 
-    boolean foundEndElement = false;
-    while (reader.hasNext() && !foundEndElement) {
-      final XMLEvent event = reader.nextEvent();
-
-      if (event.isStartElement()) {
-        if (inlineQName.equals(event.asStartElement().getName())) {
-          StartElement inline = getStartElement(reader);
-          if (inline != null) {
-            if (Constants.QNAME_ATOM_ELEM_ENTRY.equals(inline.getName())) {
-              link.setInlineEntity(entity(reader, inline));
-            }
-            if (Constants.QNAME_ATOM_ELEM_FEED.equals(inline.getName())) {
-              link.setInlineEntitySet(entitySet(reader, inline));
+    for (int event = reader.next(); event != XMLStreamConstants.END_ELEMENT; event = reader.next()) {
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        if (matches(reader, inlineQName)) {
+          for (int inline = reader.next(); inline != XMLStreamConstants.END_ELEMENT; inline = reader.next()) {
+            if (inline == XMLStreamConstants.START_ELEMENT) {
+              if (matches(reader, Constants.QNAME_ATOM_ELEM_ENTRY)) {
+                link.setInlineEntity(entity(reader));
+              } else if (matches(reader, Constants.QNAME_ATOM_ELEM_FEED)) {
+                link.setInlineEntitySet(entitySet(reader, null));
+              } else {
+                skipElement(reader);
+              }
             }
           }
-        } else if (annotationQName.equals(event.asStartElement().getName())) {
-          link.getAnnotations().add(annotation(reader, event.asStartElement()));
+        } else if (matches(reader, annotationQName)) {
+          link.getAnnotations().add(annotation(reader));
+        } else {
+          skipElement(reader);
         }
       }
-
-      if (event.isEndElement() && start.getName().equals(event.asEndElement().getName())) {
-        foundEndElement = true;
-      }
-    }
-  }
-
-  private StartElement getStartElement(XMLEventReader reader) throws XMLStreamException {
-    while (reader.hasNext()) {
-      final XMLEvent innerEvent = reader.peek();
-      if (innerEvent.isCharacters() && innerEvent.asCharacters().isWhiteSpace()) {
-        reader.nextEvent();
-      } else if (innerEvent.isStartElement()) {
-        return innerEvent.asStartElement();
-      } else if (innerEvent.isEndElement() && inlineQName.equals(innerEvent.asEndElement().getName())) {
-        return null;
-      }
     }
-    return null;
   }
 
   public ResWrap<Delta> delta(final InputStream input)
       throws XMLStreamException, EdmPrimitiveTypeException {
-    final XMLEventReader reader = getReader(input);
-    final StartElement start = skipBeforeFirstStartElement(reader);
-    return getContainer(start, delta(reader, start));
+    final XMLStreamReader reader = getReader(input);
+    skipBeforeFirstStartElement(reader);
+    final String contextURL = attribute(reader, contextQName);
+    final String metadataETag = attribute(reader, metadataEtagQName);
+    return getContainer(contextURL, metadataETag, delta(reader));
   }
 
-  private Delta delta(final XMLEventReader reader, final StartElement start)
-      throws XMLStreamException, EdmPrimitiveTypeException {
-    if (!Constants.QNAME_ATOM_ELEM_FEED.equals(start.getName())) {
+  private Delta delta(final XMLStreamReader reader) throws XMLStreamException, EdmPrimitiveTypeException {
+    if (!matches(reader, Constants.QNAME_ATOM_ELEM_FEED)) {
       return null;
     }
     final Delta delta = new Delta();
-    final Attribute xmlBase = start.getAttributeByName(Constants.QNAME_ATTR_XML_BASE);
+    final String xmlBase = attribute(reader, Constants.QNAME_ATTR_XML_BASE);
     if (xmlBase != null) {
-      delta.setBaseURI(xmlBase.getValue());
+      delta.setBaseURI(xmlBase);
     }
 
-    boolean foundEndFeed = false;
-    while (reader.hasNext() && !foundEndFeed) {
-      final XMLEvent event = reader.nextEvent();
-      if (event.isStartElement()) {
-        if (countQName.equals(event.asStartElement().getName())) {
-          count(reader, event.asStartElement(), delta);
-        } else if (Constants.QNAME_ATOM_ELEM_ID.equals(event.asStartElement().getName())) {
-          common(reader, event.asStartElement(), delta, "id");
-        } else if (Constants.QNAME_ATOM_ELEM_TITLE.equals(event.asStartElement().getName())) {
-          common(reader, event.asStartElement(), delta, "title");
-        } else if (Constants.QNAME_ATOM_ELEM_SUMMARY.equals(event.asStartElement().getName())) {
-          common(reader, event.asStartElement(), delta, "summary");
-        } else if (Constants.QNAME_ATOM_ELEM_UPDATED.equals(event.asStartElement().getName())) {
-          common(reader, event.asStartElement(), delta, "updated");
-        } else if (Constants.QNAME_ATOM_ELEM_LINK.equals(event.asStartElement().getName())) {
-          final Attribute rel = event.asStartElement().getAttributeByName(QName.valueOf(Constants.ATTR_REL));
-          if (rel != null) {
-            if (Constants.NEXT_LINK_REL.equals(rel.getValue())) {
-              final Attribute href = event.asStartElement().getAttributeByName(QName.valueOf(Constants.ATTR_HREF));
-              if (href != null) {
-                delta.setNext(URI.create(href.getValue()));
-              }
-            }
-            if (Constants.NS_DELTA_LINK_REL.equals(rel.getValue())) {
-              final Attribute href = event.asStartElement().getAttributeByName(QName.valueOf(Constants.ATTR_HREF));
-              if (href != null) {
-                delta.setDeltaLink(URI.create(href.getValue()));
-              }
-            }
+    for (int event = reader.next(); event != XMLStreamConstants.END_ELEMENT; event = reader.next()) {
+      if (event != XMLStreamConstants.START_ELEMENT) {
+        continue;
+      }
+      if (matches(reader, countQName)) {
+        count(reader, delta);
+      } else if (matches(reader, Constants.QNAME_ATOM_ELEM_ID)) {
+        common(reader, delta, "id");
+      } else if (matches(reader, Constants.QNAME_ATOM_ELEM_TITLE)) {
+        common(reader, delta, "title");
+      } else if (matches(reader, Constants.QNAME_ATOM_ELEM_SUMMARY)) {
+        common(reader, delta, "summary");
+      } else if (matches(reader, Constants.QNAME_ATOM_ELEM_UPDATED)) {
+        common(reader, delta, "updated");
+      } else if (matches(reader, Constants.QNAME_ATOM_ELEM_LINK)) {
+        final String rel = attribute(reader, REL_QNAME);
+        final String href = attribute(reader, HREF_QNAME);
+        if (href != null) {
+          if (Constants.NEXT_LINK_REL.equals(rel)) {
+            delta.setNext(URI.create(href));
           }
-        } else if (Constants.QNAME_ATOM_ELEM_ENTRY.equals(event.asStartElement().getName())) {
-          delta.getEntities().add(entity(reader, event.asStartElement()));
-        } else if (deletedEntryQName.equals(event.asStartElement().getName())) {
-          final DeletedEntity deletedEntity = new DeletedEntity();
-
-          final Attribute ref = event.asStartElement().getAttributeByName(QName.valueOf(Constants.ATTR_REF));
-          if (ref != null) {
-            deletedEntity.setId(URI.create(ref.getValue()));
+          if (Constants.NS_DELTA_LINK_REL.equals(rel)) {
+            delta.setDeltaLink(URI.create(href));
           }
-          final Attribute reason = event.asStartElement().getAttributeByName(reasonQName);
-          if (reason != null) {
-            deletedEntity.setReason(Reason.valueOf(reason.getValue()));
-          }
-
-          delta.getDeletedEntities().add(deletedEntity);
-        } else if (linkQName.equals(event.asStartElement().getName())
-            || deletedLinkQName.equals(event.asStartElement().getName())) {
-
-          final DeltaLink link = new DeltaLink();
+        }
+        skipElement(reader);
+      } else if (matches(reader, Constants.QNAME_ATOM_ELEM_ENTRY)) {
+        delta.getEntities().add(entity(reader));
+      } else if (matches(reader, deletedEntryQName)) {
+        final DeletedEntity deletedEntity = new DeletedEntity();
+
+        final String ref = attribute(reader, REF_QNAME);
+        if (ref != null) {
+          deletedEntity.setId(URI.create(ref));
+        }
+        final String reason = attribute(reader, reasonQName);
+        if (reason != null) {
+          deletedEntity.setReason(Reason.valueOf(reason));
+        }
 
-          final Attribute source = event.asStartElement().getAttributeByName(QName.valueOf(Constants.ATTR_SOURCE));
-          if (source != null) {
-            link.setSource(URI.create(source.getValue()));
-          }
-          final Attribute relationship =
-              event.asStartElement().getAttributeByName(QName.valueOf(Constants.ATTR_RELATIONSHIP));
-          if (relationship != null) {
-            link.setRelationship(relationship.getValue());
-          }
-          final Attribute target = event.asStartElement().getAttributeByName(QName.valueOf(Constants.ATTR_TARGET));
-          if (target != null) {
-            link.setTarget(URI.create(target.getValue()));
-          }
+        delta.getDeletedEntities().add(deletedEntity);
+        skipElement(reader);
+      } else if (matches(reader, linkQName) || matches(reader, deletedLinkQName)) {
+        final DeltaLink link = new DeltaLink();
 
-          if (linkQName.equals(event.asStartElement().getName())) {
-            delta.getAddedLinks().add(link);
-          } else {
-            delta.getDeletedLinks().add(link);
-          }
+        final String source = attribute(reader, SOURCE_QNAME);
+        if (source != null) {
+          link.setSource(URI.create(source));
+        }
+        link.setRelationship(attribute(reader, RELATIONSHIP_QNAME));
+        final String target = attribute(reader, TARGET_QNAME);
+        if (target != null) {
+          link.setTarget(URI.create(target));
         }
-      }
 
-      if (event.isEndElement() && start.getName().equals(event.asEndElement().getName())) {
-        foundEndFeed = true;
+        if (matches(reader, linkQName)) {
+          delta.getAddedLinks().add(link);
+        } else {
+          delta.getDeletedLinks().add(link);
+        }
+        skipElement(reader);
+      } else {
+        skipElement(reader);
       }
     }
 
     return delta;
   }
 
-  private void properties(final XMLEventReader reader, final StartElement start, final Entity entity)
+  private void properties(final XMLStreamReader reader, final Entity entity)
       throws XMLStreamException, EdmPrimitiveTypeException {
 
     final Map<String, List<Annotation>> annotations = new HashMap<String, List<Annotation>>();
 
-    boolean foundEndProperties = false;
-    while (reader.hasNext() && !foundEndProperties) {
-      final XMLEvent event = reader.nextEvent();
-
-      if (event.isStartElement()) {
-        if (annotationQName.equals(event.asStartElement().getName())) {
-          final String target = event.asStartElement().
-              getAttributeByName(QName.valueOf(Constants.ATTR_TARGET)).getValue();
+    for (int event = reader.next(); event != XMLStreamConstants.END_ELEMENT; event = reader.next()) {
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        if (matches(reader, annotationQName)) {
+          final String target = attribute(reader, TARGET_QNAME);
           if (!annotations.containsKey(target)) {
             annotations.put(target, new ArrayList<Annotation>());
           }
-          annotations.get(target).add(annotation(reader, event.asStartElement()));
+          annotations.get(target).add(annotation(reader));
         } else {
-          entity.getProperties().add(property(reader, event.asStartElement()));
+          entity.getProperties().add(property(reader));
         }
       }
-
-      if (event.isEndElement() && start.getName().equals(event.asEndElement().getName())) {
-        foundEndProperties = true;
-      }
     }
 
-    for (Property property : entity.getProperties()) {
-      if (annotations.containsKey(property.getName())) {
-        property.getAnnotations().addAll(annotations.get(property.getName()));
+    if (!annotations.isEmpty()) {
+      for (Property property : entity.getProperties()) {
+        if (annotations.containsKey(property.getName())) {
+          property.getAnnotations().addAll(annotations.get(property.getName()));
+        }
       }
     }
   }
 
-  private Annotation annotation(final XMLEventReader reader, final StartElement start)
+  private Annotation annotation(final XMLStreamReader reader)
       throws XMLStreamException, EdmPrimitiveTypeException {
 
     final Annotation annotation = new Annotation();
 
-    annotation.setTerm(start.getAttributeByName(QName.valueOf(Constants.ATOM_ATTR_TERM)).getValue());
-    valuable(annotation, reader, start);
+    annotation.setTerm(attribute(reader, TERM_QNAME));
+    valuable(annotation, reader);
 
     return annotation;
   }
 
-  private Entity entityRef(final StartElement start) throws XMLStreamException {
+  private Entity entityRef(final XMLStreamReader reader) throws XMLStreamException {
     final Entity entity = new Entity();
 
-    final Attribute entityRefId = start.getAttributeByName(Constants.QNAME_ATOM_ATTR_ID);
+    final String entityRefId = attribute(reader, Constants.QNAME_ATOM_ATTR_ID);
     if (entityRefId != null) {
-      entity.setId(URI.create(entityRefId.getValue()));
+      entity.setId(URI.create(entityRefId));
     }
+    skipElement(reader);
 
     return entity;
   }
 
-  private Entity entity(final XMLEventReader reader, final StartElement start)
-      throws XMLStreamException, EdmPrimitiveTypeException {
+  private Entity entity(final XMLStreamReader reader) throws XMLStreamException, EdmPrimitiveTypeException {
     final Entity entity;
-    if (entryRefQName.equals(start.getName())) {
-      entity = entityRef(start);
-    } else if (Constants.QNAME_ATOM_ELEM_ENTRY.equals(start.getName())) {
+    if (matches(reader, entryRefQName)) {
+      entity = entityRef(reader);
+    } else if (matches(reader, Constants.QNAME_ATOM_ELEM_ENTRY)) {
       entity = new Entity();
-      final Attribute xmlBase = start.getAttributeByName(Constants.QNAME_ATTR_XML_BASE);
+      final String xmlBase = attribute(reader, Constants.QNAME_ATTR_XML_BASE);
       if (xmlBase != null) {
-        entity.setBaseURI(xmlBase.getValue());
+        entity.setBaseURI(xmlBase);
       }
 
-      final Attribute etag = start.getAttributeByName(etagQName);
+      final String etag = attribute(reader, etagQName);
       if (etag != null) {
-        entity.setETag(etag.getValue());
+        entity.setETag(etag);
       }
 
-      boolean foundEndEntry = false;
-      while (reader.hasNext() && !foundEndEntry) {
-        final XMLEvent event = reader.nextEvent();
-
-        if (event.isStartElement()) {
-          if (Constants.QNAME_ATOM_ELEM_ID.equals(event.asStartElement().getName())) {
-            common(reader, event.asStartElement(), entity, "id");
-          } else if (Constants.QNAME_ATOM_ELEM_TITLE.equals(event.asStartElement().getName())) {
-            common(reader, event.asStartElement(), entity, "title");
-          } else if (Constants.QNAME_ATOM_ELEM_SUMMARY.equals(event.asStartElement().getName())) {
-            common(reader, event.asStartElement(), entity, "summary");
-          } else if (Constants.QNAME_ATOM_ELEM_UPDATED.equals(event.asStartElement().getName())) {
-            common(reader, event.asStartElement(), entity, "updated");
-          } else if (Constants.QNAME_ATOM_ELEM_CATEGORY.equals(event.asStartElement().getName())) {
-            final Attribute term = event.asStartElement().getAttributeByName(QName.valueOf(Constants.ATOM_ATTR_TERM));
-            if (term != null) {
-              entity.setType(new EdmTypeInfo.Builder().setTypeExpression(term.getValue()).build().internal());
-            }
-          } else if (Constants.QNAME_ATOM_ELEM_LINK.equals(event.asStartElement().getName())) {
-            final Link link = new Link();
-            final Attribute rel = event.asStartElement().getAttributeByName(QName.valueOf(Constants.ATTR_REL));
-            if (rel != null) {
-              link.setRel(rel.getValue());
-            }
-            final Attribute title = event.asStartElement().getAttributeByName(QName.valueOf(Constants.ATTR_TITLE));
-            if (title != null) {
-              link.setTitle(title.getValue());
-            }
-            final Attribute href = event.asStartElement().getAttributeByName(QName.valueOf(Constants.ATTR_HREF));
-            if (href != null) {
-              link.setHref(href.getValue());
-            }
-            final Attribute type = event.asStartElement().getAttributeByName(QName.valueOf(Constants.ATTR_TYPE));
-            if (type != null) {
-              link.setType(type.getValue());
-            }
-
-            if (Constants.SELF_LINK_REL.equals(link.getRel())) {
-              entity.setSelfLink(link);
-            } else if (Constants.EDIT_LINK_REL.equals(link.getRel())) {
-              entity.setEditLink(link);
-            } else if (Constants.EDITMEDIA_LINK_REL.equals(link.getRel())) {
-              final Attribute mediaETag = event.asStartElement().getAttributeByName(etagQName);
-              if (mediaETag != null) {
-                entity.setMediaETag(mediaETag.getValue());
-              }
-            } else if (link.getRel().startsWith(Constants.NS_NAVIGATION_LINK_REL)) {
-
-              entity.getNavigationLinks().add(link);
-              inline(reader, event.asStartElement(), link);
-            } else if (link.getRel().startsWith(Constants.NS_ASSOCIATION_LINK_REL)) {
+      for (int event = reader.next(); event != XMLStreamConstants.END_ELEMENT; event = reader.next()) {
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          entry(reader, entity);
+        }
+      }
+    } else {
+      skipElement(reader);
+      entity = null;
+    }
 
-              entity.getAssociationLinks().add(link);
-            } else if (link.getRel().startsWith(Constants.NS_MEDIA_EDIT_LINK_REL)) {
+    return entity;
+  }
 
-              final Attribute metag = event.asStartElement().getAttributeByName(etagQName);
-              if (metag != null) {
-                link.setMediaETag(metag.getValue());
-              }
-              entity.getMediaEditLinks().add(link);
-            }
-          } else if (actionQName.equals(event.asStartElement().getName())) {
-            final ODataOperation operation = new ODataOperation();
-            final Attribute metadata =
-                event.asStartElement().getAttributeByName(QName.valueOf(Constants.ATTR_METADATA));
-            if (metadata != null) {
-              operation.setMetadataAnchor(metadata.getValue());
-            }
-            final Attribute title = event.asStartElement().getAttributeByName(QName.valueOf(Constants.ATTR_TITLE));
-            if (title != null) {
-              operation.setTitle(title.getValue());
-            }
-            final Attribute target = event.asStartElement().getAttributeByName(QName.valueOf(Constants.ATTR_TARGET));
-            if (target != null) {
-              operation.setTarget(URI.create(target.getValue()));
-            }
+  /**
+   * Reads one child element of an Atom entry into the given entity.
+   */
+  private void entry(final XMLStreamReader reader, final Entity entity)
+      throws XMLStreamException, EdmPrimitiveTypeException {
 
-            entity.getOperations().add(operation);
-          } else if (Constants.QNAME_ATOM_ELEM_CONTENT.equals(event.asStartElement().getName())) {
-            final Attribute type = event.asStartElement().getAttributeByName(QName.valueOf(Constants.ATTR_TYPE));
-            if (type == null || ContentType.APPLICATION_XML.toContentTypeString().equals(type.getValue())) {
-              properties(reader, skipBeforeFirstStartElement(reader), entity);
-            } else {
-              entity.setMediaContentType(type.getValue());
-              final Attribute src = event.asStartElement().getAttributeByName(QName.valueOf(Constants.ATOM_ATTR_SRC));
-              if (src != null) {
-                entity.setMediaContentSource(URI.create(src.getValue()));
-              }
-            }
-          } else if (propertiesQName.equals(event.asStartElement().getName())) {
-            properties(reader, event.asStartElement(), entity);
-          } else if (annotationQName.equals(event.asStartElement().getName())) {
-            entity.getAnnotations().add(annotation(reader, event.asStartElement()));
+    if (matches(reader, Constants.QNAME_ATOM_ELEM_ID)) {
+      common(reader, entity, "id");
+    } else if (matches(reader, Constants.QNAME_ATOM_ELEM_TITLE)) {
+      common(reader, entity, "title");
+    } else if (matches(reader, Constants.QNAME_ATOM_ELEM_SUMMARY)) {
+      common(reader, entity, "summary");
+    } else if (matches(reader, Constants.QNAME_ATOM_ELEM_UPDATED)) {
+      common(reader, entity, "updated");
+    } else if (matches(reader, Constants.QNAME_ATOM_ELEM_CATEGORY)) {
+      final String term = attribute(reader, TERM_QNAME);
+      if (term != null) {
+        entity.setType(getTypeInfo(term).internal());
+      }
+      skipElement(reader);
+    } else if (matches(reader, Constants.QNAME_ATOM_ELEM_LINK)) {
+      final Link link = link(reader);
+
+      if (link.getRel().startsWith(Constants.NS_NAVIGATION_LINK_REL)) {
+        entity.getNavigationLinks().add(link);
+        inline(reader, link);
+        return;
+      }
+
+      if (Constants.SELF_LINK_REL.equals(link.getRel())) {
+        entity.setSelfLink(link);
+      } else if (Constants.EDIT_LINK_REL.equals(link.getRel())) {
+        entity.setEditLink(link);
+      } else if (Constants.EDITMEDIA_LINK_REL.equals(link.getRel())) {
+        final String mediaETag = attribute(reader, etagQName);
+        if (mediaETag != null) {
+          entity.setMediaETag(mediaETag);
+        }
+      } else if (link.getRel().startsWith(Constants.NS_ASSOCIATION_LINK_REL)) {
+        entity.getAssociationLinks().add(link);
+      } else if (link.getRel().startsWith(Constants.NS_MEDIA_EDIT_LINK_REL)) {
+        final String metag = attribute(reader, etagQName);
+        if (metag != null) {
+          link.setMediaETag(metag);
+        }
+        entity.getMediaEditLinks().add(link);
+      }
+      skipElement(reader);
+    } else if (matches(reader, actionQName)) {
+      final ODataOperation operation = new ODataOperation();
+      operation.setMetadataAnchor(attribute(reader, METADATA_QNAME));
+      operation.setTitle(attribute(reader, TITLE_QNAME));
+      final String target = attribute(reader, TARGET_QNAME);
+      if (target != null) {
+        operation.setTarget(URI.create(target));
+      }
+
+      entity.getOperations().add(operation);
+      skipElement(reader);
+    } else if (matches(reader, Constants.QNAME_ATOM_ELEM_CONTENT)) {
+      final String type = attribute(reader, TYPE_QNAME);
+      if (type == null || APPLICATION_XML.equals(type)) {
+        for (int event = reader.next(); event != XMLStreamConstants.END_ELEMENT; event = reader.next()) {
+          if (event == XMLStreamConstants.START_ELEMENT) {
+            properties(reader, entity);
           }
         }
-
-        if (event.isEndElement() && start.getName().equals(event.asEndElement().getName())) {
-          foundEndEntry = true;
+      } else {
+        entity.setMediaContentType(type);
+        final String src = attribute(reader, SRC_QNAME);
+        if (src != null) {
+          entity.setMediaContentSource(URI.create(src));
         }
+        skipElement(reader);
       }
+    } else if (matches(reader, propertiesQName)) {
+      properties(reader, entity);
+    } else if (matches(reader, annotationQName)) {
+      entity.getAnnotations().add(annotation(reader));
     } else {
-      entity = null;
+      skipElement(reader);
     }
-
-    return entity;
   }
 
   @Override
   public ResWrap<Entity> toEntity(final InputStream input) throws ODataDeserializerException {
     try {
-      final XMLEventReader reader = getReader(input);
-      final StartElement start = skipBeforeFirstStartElement(reader);
-      final Entity entity = entity(reader, start);
+      final XMLStreamReader reader = getReader(input);
+      skipBeforeFirstStartElement(reader);
+      final String contextURL = attribute(reader, contextQName);
+      final String metadataETag = attribute(reader, metadataEtagQName);
+      final Entity entity = entity(reader);
       if (entity == null) {
         throw new ODataDeserializerException("No entity found!");
       } else {
-        return getContainer(start, entity);
+        return getContainer(contextURL, metadataETag, entity);
       }
     } catch (XMLStreamException e) {
       throw new ODataDeserializerException(e);
@@ -712,75 +692,68 @@ public class AtomDeserializer extends AbstractAtomDealer implements ODataDeseria
     }
   }
 
-  private void count(final XMLEventReader reader, final StartElement start, final EntityCollection entitySet)
-      throws XMLStreamException {
-
-    boolean foundEndElement = false;
-    while (reader.hasNext() && !foundEndElement) {
-      final XMLEvent event = reader.nextEvent();
-
-      if (event.isCharacters() && !event.asCharacters().isWhiteSpace()) {
-        entitySet.setCount(Integer.valueOf(event.asCharacters().getData()));
-      }
-
-      if (event.isEndElement() && start.getName().equals(event.asEndElement().getName())) {
-        foundEndElement = true;
-      }
+  private void count(final XMLStreamReader reader, final EntityCollection entitySet) throws XMLStreamException {
+    reader.next();
+    final String count = text(reader);
+    if (count != null) {
+      entitySet.setCount(Integer.valueOf(count));
     }
   }
 
-  private EntityCollection entitySet(final XMLEventReader reader, final StartElement start)
+  /**
+   * Reads an Atom feed.
+   * @param handler if not <code>null</code>, receives the top-level entries instead of the returned collection
+   * @return the feed, or <code>null</code> if the current element is not a feed
+   */
+  private EntityCollection entitySet(final XMLStreamReader reader, final AtomEntryHandler handler)
       throws XMLStreamException, EdmPrimitiveTypeException {
-    if (!Constants.QNAME_ATOM_ELEM_FEED.equals(start.getName())) {
+    if (!matches(reader, Constants.QNAME_ATOM_ELEM_FEED)) {
+      skipElement(reader);
       return null;
     }
     final EntityCollection entitySet = new EntityCollection();
-    final Attribute xmlBase = start.getAttributeByName(Constants.QNAME_ATTR_XML_BASE);
+    final String xmlBase = attribute(reader, Constants.QNAME_ATTR_XML_BASE);
     if (xmlBase != null) {
-      entitySet.setBaseURI(xmlBase.getValue());
+      entitySet.setBaseURI(xmlBase);
     }
 
-    boolean foundEndFeed = false;
-    while (reader.hasNext() && !foundEndFeed) {
-      final XMLEvent event = reader.nextEvent();
-      if (event.isStartElement()) {
-        if (countQName.equals(event.asStartElement().getName())) {
-          count(reader, event.asStartElement(), entitySet);
-        } else if (Constants.QNAME_ATOM_ELEM_ID.equals(event.asStartElement().getName())) {
-          common(reader, event.asStartElement(), entitySet, "id");
-        } else if (Constants.QNAME_ATOM_ELEM_TITLE.equals(event.asStartElement().getName())) {
-          common(reader, event.asStartElement(), entitySet, "title");
-        } else if (Constants.QNAME_ATOM_ELEM_SUMMARY.equals(event.asStartElement().getName())) {
-          common(reader, event.asStartElement(), entitySet, "summary");
-        } else if (Constants.QNAME_ATOM_ELEM_UPDATED.equals(event.asStartElement().getName())) {
-          common(reader, event.asStartElement(), entitySet, "updated");
-        } else if (Constants.QNAME_ATOM_ELEM_LINK.equals(event.asStartElement().getName())) {
-          final Attribute rel = event.asStartElement().getAttributeByName(QName.valueOf(Constants.ATTR_REL));
-          if (rel != null) {
-            if (Constants.NEXT_LINK_REL.equals(rel.getValue())) {
-              final Attribute href = event.asStartElement().getAttributeByName(QName.valueOf(Constants.ATTR_HREF));
-              if (href != null) {
-                entitySet.setNext(URI.create(href.getValue()));
-              }
-            }
-            if (Constants.NS_DELTA_LINK_REL.equals(rel.getValue())) {
-              final Attribute href = event.asStartElement().getAttributeByName(QName.valueOf(Constants.ATTR_HREF));
-              if (href != null) {
-                entitySet.setDeltaLink(URI.create(href.getValue()));
-              }
-            }
+    for (int event = reader.next(); event != XMLStreamConstants.END_ELEMENT; event = reader.next()) {
+      if (event != XMLStreamConstants.START_ELEMENT) {
+        continue;
+      }
+      if (matches(reader, countQName)) {
+        count(reader, entitySet);
+      } else if (matches(reader, Constants.QNAME_ATOM_ELEM_ID)) {
+        common(reader, entitySet, "id");
+      } else if (matches(reader, Constants.QNAME_ATOM_ELEM_TITLE)) {
+        common(reader, entitySet, "title");
+      } else if (matches(reader, Constants.QNAME_ATOM_ELEM_SUMMARY)) {
+        common(reader, entitySet, "summary");
+      } else if (matches(reader, Constants.QNAME_ATOM_ELEM_UPDATED)) {
+        common(reader, entitySet, "updated");
+      } else if (matches(reader, Constants.QNAME_ATOM_ELEM_LINK)) {
+        final String rel = attribute(reader, REL_QNAME);
+        final String href = attribute(reader, HREF_QNAME);
+        if (href != null) {
+          if (Constants.NEXT_LINK_REL.equals(rel)) {
+            entitySet.setNext(URI.create(href));
+          }
+          if (Constants.NS_DELTA_LINK_REL.equals(rel)) {
+            entitySet.setDeltaLink(URI.create(href));
           }
-        } else if (Constants.QNAME_ATOM_ELEM_ENTRY.equals(event.asStartElement().getName())) {
-          entitySet.getEntities().add(entity(reader, event.asStartElement()));
-        } else if (entryRefQName.equals(event.asStartElement().getName())) {
-          entitySet.getEntities().add(entityRef(event.asStartElement()));
-        } else if (annotationQName.equals(event.asStartElement().getName())) {
-          entitySet.getAnnotations().add(annotation(reader, event.asStartElement()));
         }
-      }
-
-      if (event.isEndElement() && start.getName().equals(event.asEndElement().getName())) {
-        foundEndFeed = true;
+        skipElement(reader);
+      } else if (matches(reader, Constants.QNAME_ATOM_ELEM_ENTRY) || matches(reader, entryRefQName)) {
+        final Entity entity = entity(reader);
+        if (handler == null) {
+          entitySet.getEntities().add(entity);
+        } else if (!handler.handle(entity)) {
+          break;
+        }
+      } else if (matches(reader, annotationQName)) {
+        entitySet.getAnnotations().add(annotation(reader));
+      } else {
+        skipElement(reader);
       }
     }
 
@@ -789,10 +762,28 @@ public class AtomDeserializer extends AbstractAtomDealer implements ODataDeseria
 
   @Override
   public ResWrap<EntityCollection> toEntitySet(final InputStream input) throws ODataDeserializerException {
+    return toEntitySet(input, null);
+  }
+
+  /**
+   * Reads an Atom feed entry by entry: each top-level entry is passed to the given handler as soon as it
+   * has been read, and is not kept in the returned collection. This allows to consume large feeds without
+   * holding all entities in memory.
+   * <br/>Feed-level information (count, next link, delta link, annotations) is returned as read so far:
+   * if the handler stops the reading early, elements after the last handled entry are not available.
+   * @param input stream containing an Atom feed
+   * @param handler receives the entries; if <code>null</code>, the entries are collected as usual
+   * @return the feed without its entries
+   * @throws ODataDeserializerException if the input cannot be read
+   */
+  public ResWrap<EntityCollection> toEntitySet(final InputStream input, final AtomEntryHandler handler)
+      throws ODataDeserializerException {
     try {
-      final XMLEventReader reader = getReader(input);
-      final StartElement start = skipBeforeFirstStartElement(reader);
-      return getContainer(start, entitySet(reader, start));
+      final XMLStreamReader reader = getReader(input);
+      skipBeforeFirstStartElement(reader);
+      final String contextURL = attribute(reader, contextQName);
+      final String metadataETag = attribute(reader, metadataEtagQName);
+      return getContainer(contextURL, metadataETag, entitySet(reader, handler));
     } catch (XMLStreamException e) {
       throw new ODataDeserializerException(e);
     } catch (final EdmPrimitiveTypeException e) {
@@ -800,50 +791,26 @@ public class AtomDeserializer extends AbstractAtomDealer implements ODataDeseria
     }
   }
 
-  private ODataError error(final XMLEventReader reader, final StartElement start) throws XMLStreamException {
+  private ODataError error(final XMLStreamReader reader) throws XMLStreamException {
     final ODataError error = new ODataError();
 
-    boolean setCode = false;
-    boolean codeSet = false;
-    boolean setMessage = false;
-    boolean messageSet = false;
-    boolean setTarget = false;
-    boolean targetSet = false;
-
-    boolean foundEndElement = false;
-    while (reader.hasNext() && !foundEndElement) {
-      final XMLEvent event = reader.nextEvent();
-
-      if (event.isStartElement()) {
-        if (errorCodeQName.equals(event.asStartElement().getName())) {
-          setCode = true;
-        } else if (errorMessageQName.equals(event.asStartElement().getName())) {
-          setMessage = true;
-        } else if (errorTargetQName.equals(event.asStartElement().getName())) {
-          setTarget = true;
-        }
-      }
-
-      if (event.isCharacters() && !event.asCharacters().isWhiteSpace()) {
-        if (setCode && !codeSet) {
-          error.setCode(event.asCharacters().getData());
-          setCode = false;
-          codeSet = true;
-        }
-        if (setMessage && !messageSet) {
-          error.setMessage(event.asCharacters().getData());
-          setMessage = false;
-          messageSet = true;
-        }
-        if (setTarget && !targetSet) {
-          error.setTarget(event.asCharacters().getData());
-          setTarget = false;
-          targetSet = true;
+    int depth = 0;
+    for (int event = reader.next(); depth > 0 || event != XMLStreamConstants.END_ELEMENT; event = reader.next()) {
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        if (error.getCode() == null && matches(reader, errorCodeQName)) {
+          reader.next();
+          error.setCode(text(reader));
+        } else if (error.getMessage() == null && matches(reader, errorMessageQName)) {
+          reader.next();
+          error.setMessage(text(reader));
+        } else if (error.getTarget() == null && matches(reader, errorTargetQName)) {
+          reader.next();
+          error.setTarget(text(reader));
+        } else {
+          depth++;
         }
-      }
-
-      if (event.isEndElement() && start.getName().equals(event.asEndElement().getName())) {
-        foundEndElement = true;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
       }
     }
 
@@ -853,21 +820,15 @@ public class AtomDeserializer extends AbstractAtomDealer implements ODataDeseria
   @Override
   public ODataError toError(final InputStream input) throws ODataDeserializerException {
     try {
-      final XMLEventReader reader = getReader(input);
-      final StartElement start = skipBeforeFirstStartElement(reader);
-      return error(reader, start);
+      final XMLStreamReader reader = getReader(input);
+      skipBeforeFirstStartElement(reader);
+      return error(reader);
     } catch (XMLStreamException e) {
       throw new ODataDeserializerException(e);
     }
   }
 
-  private <T> ResWrap<T> getContainer(final StartElement start, final T object) {
-    final Attribute context = start.getAttributeByName(contextQName);
-    final Attribute metadataETag = start.getAttributeByName(metadataEtagQName);
-
-    return new ResWrap<T>(
-        context == null ? null : URI.create(context.getValue()),
-        metadataETag == null ? null : metadataETag.getValue(),
-        object);
+  private <T> ResWrap<T> getContainer(final String contextURL, final String metadataETag, final T object) {
+    return new ResWrap<T>(contextURL == null ? null : URI.create(contextURL), metadataETag, object);
   }
 }
@@ -0,0 +1,36 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.commons.core.serialization;
+
+import org.apache.olingo.commons.api.data.Entity;
+
+/**
+ * Receives the entries of an Atom feed one at a time while the feed is being read,
+ * so that large feeds can be consumed without materializing all entities.
+ * @see AtomDeserializer#toEntitySet(java.io.InputStream, AtomEntryHandler)
+ */
+public interface AtomEntryHandler {
+
+  /**
+   * Handles one top-level entry of the feed; entities expanded inline into the entry are part of it.
+   * @param entity the entity read from the entry
+   * @return <code>true</code> to continue reading the feed, <code>false</code> to stop
+   */
+  boolean handle(Entity entity);
+}
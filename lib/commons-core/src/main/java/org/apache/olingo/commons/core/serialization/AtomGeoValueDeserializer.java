@@ -34,45 +34,61 @@ import org.apache.olingo.commons.api.edm.geo.Polygon;
 import org.apache.olingo.commons.api.edm.geo.SRID;
 import org.apache.olingo.commons.core.edm.primitivetype.EdmDouble;
 
-import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.Attribute;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.XMLStreamReader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+/**
+ * Reads GML values from an XML cursor; every method expects the cursor on the start tag of the value element
+ * and leaves it on the matching end tag.
+ */
 class AtomGeoValueDeserializer {
 
-  private List<Point> points(final XMLEventReader reader, final StartElement start,
-      final EdmPrimitiveTypeKind type, final SRID srid) throws XMLStreamException {
+  private Point point(final String coordinates, final EdmPrimitiveTypeKind type, final SRID srid)
+      throws XMLStreamException {
+
+    final String[] pointInfo = coordinates.split(" ");
+
+    final Point point = new Point(GeoUtils.getDimension(type), srid);
+    try {
+      point.setX(EdmDouble.getInstance().valueOfString(pointInfo[0], null, null,
+          Constants.DEFAULT_PRECISION, Constants.DEFAULT_SCALE, null, Double.class));
+      point.setY(EdmDouble.getInstance().valueOfString(pointInfo[1], null, null,
+          Constants.DEFAULT_PRECISION, Constants.DEFAULT_SCALE, null, Double.class));
+    } catch (EdmPrimitiveTypeException e) {
+      throw new XMLStreamException("While deserializing point coordinates as double", e);
+    }
+    return point;
+  }
+
+  private List<Point> points(final XMLStreamReader reader, final EdmPrimitiveTypeKind type, final SRID srid)
+      throws XMLStreamException {
 
     final List<Point> result = new ArrayList<Point>();
 
-    boolean foundEndProperty = false;
-    while (reader.hasNext() && !foundEndProperty) {
-      final XMLEvent event = reader.nextEvent();
-
-      if (event.isCharacters() && !event.asCharacters().isWhiteSpace()) {
-        final String[] pointInfo = event.asCharacters().getData().split(" ");
-
-        final Point point = new Point(GeoUtils.getDimension(type), srid);
-        try {
-          point.setX(EdmDouble.getInstance().valueOfString(pointInfo[0], null, null,
-              Constants.DEFAULT_PRECISION, Constants.DEFAULT_SCALE, null, Double.class));
-          point.setY(EdmDouble.getInstance().valueOfString(pointInfo[1], null, null,
-              Constants.DEFAULT_PRECISION, Constants.DEFAULT_SCALE, null, Double.class));
-        } catch (EdmPrimitiveTypeException e) {
-          throw new XMLStreamException("While deserializing point coordinates as double", e);
+    // text can be reported in several chunks: a point is complete at the next element boundary
+    String text = null;
+    boolean blank = true;
+    int depth = 0;
+    for (int event = reader.next(); depth > 0 || event != XMLStreamConstants.END_ELEMENT; event = reader.next()) {
+      if (AbstractAtomDealer.isCharacters(event)) {
+        text = text == null ? reader.getText() : text + reader.getText();
+        blank = blank && reader.isWhiteSpace();
+      } else if (event == XMLStreamConstants.START_ELEMENT || event == XMLStreamConstants.END_ELEMENT) {
+        if (!blank) {
+          result.add(point(text, type, srid));
         }
-        result.add(point);
-      }
-
-      if (event.isEndElement() && start.getName().equals(event.asEndElement().getName())) {
-        foundEndProperty = true;
+        text = null;
+        blank = true;
+        depth += event == XMLStreamConstants.START_ELEMENT ? 1 : -1;
       }
     }
+    if (!blank) {
+      result.add(point(text, type, srid));
+    }
 
     // handles bad input, e.g. things like <gml:pos/>
     if (result.isEmpty()) {
@@ -82,142 +98,132 @@ class AtomGeoValueDeserializer {
     return result;
   }
 
-  private MultiPoint multipoint(final XMLEventReader reader, final StartElement start,
-      final EdmPrimitiveTypeKind type, final SRID srid) throws XMLStreamException {
+  private MultiPoint multipoint(final XMLStreamReader reader, final EdmPrimitiveTypeKind type, final SRID srid)
+      throws XMLStreamException {
 
     List<Point> points = Collections.<Point> emptyList();
 
-    boolean foundEndProperty = false;
-    while (reader.hasNext() && !foundEndProperty) {
-      final XMLEvent event = reader.nextEvent();
-
-      if (event.isStartElement() && event.asStartElement().getName().equals(Constants.QNAME_POINTMEMBERS)) {
-        points = points(reader, event.asStartElement(), type, null);
-      }
-
-      if (event.isEndElement() && start.getName().equals(event.asEndElement().getName())) {
-        foundEndProperty = true;
+    int depth = 0;
+    for (int event = reader.next(); depth > 0 || event != XMLStreamConstants.END_ELEMENT; event = reader.next()) {
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        if (AbstractAtomDealer.matches(reader, Constants.QNAME_POINTMEMBERS)) {
+          points = points(reader, type, null);
+        } else {
+          depth++;
+        }
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
       }
     }
 
     return new MultiPoint(GeoUtils.getDimension(type), srid, points);
   }
 
-  private LineString lineString(final XMLEventReader reader, final StartElement start,
-      final EdmPrimitiveTypeKind type, final SRID srid) throws XMLStreamException {
+  private LineString lineString(final XMLStreamReader reader, final EdmPrimitiveTypeKind type, final SRID srid)
+      throws XMLStreamException {
 
-    return new LineString(GeoUtils.getDimension(type), srid, points(reader, start, type, null));
+    return new LineString(GeoUtils.getDimension(type), srid, points(reader, type, null));
   }
 
-  private Polygon polygon(final XMLEventReader reader, final StartElement start,
-      final EdmPrimitiveTypeKind type, final SRID srid) throws XMLStreamException {
+  private Polygon polygon(final XMLStreamReader reader, final EdmPrimitiveTypeKind type, final SRID srid)
+      throws XMLStreamException {
 
     List<Point> extPoints = null;
     List<Point> intPoints = null;
 
-    boolean foundEndProperty = false;
-    while (reader.hasNext() && !foundEndProperty) {
-      final XMLEvent event = reader.nextEvent();
-
-      if (event.isStartElement()) {
-        if (event.asStartElement().getName().equals(Constants.QNAME_POLYGON_EXTERIOR)) {
-          extPoints = points(reader, event.asStartElement(), type, null);
-        }
-        if (event.asStartElement().getName().equals(Constants.QNAME_POLYGON_INTERIOR)) {
-          intPoints = points(reader, event.asStartElement(), type, null);
+    int depth = 0;
+    for (int event = reader.next(); depth > 0 || event != XMLStreamConstants.END_ELEMENT; event = reader.next()) {
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        if (AbstractAtomDealer.matches(reader, Constants.QNAME_POLYGON_EXTERIOR)) {
+          extPoints = points(reader, type, null);
+        } else if (AbstractAtomDealer.matches(reader, Constants.QNAME_POLYGON_INTERIOR)) {
+          intPoints = points(reader, type, null);
+        } else {
+          depth++;
         }
-      }
-
-      if (event.isEndElement() && start.getName().equals(event.asEndElement().getName())) {
-        foundEndProperty = true;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
       }
     }
 
     return new Polygon(GeoUtils.getDimension(type), srid, intPoints, extPoints);
   }
 
-  private MultiLineString multiLineString(final XMLEventReader reader, final StartElement start,
-      final EdmPrimitiveTypeKind type, final SRID srid) throws XMLStreamException {
+  private MultiLineString multiLineString(final XMLStreamReader reader, final EdmPrimitiveTypeKind type,
+      final SRID srid) throws XMLStreamException {
 
     final List<LineString> lineStrings = new ArrayList<LineString>();
 
-    boolean foundEndProperty = false;
-    while (reader.hasNext() && !foundEndProperty) {
-      final XMLEvent event = reader.nextEvent();
-
-      if (event.isStartElement() && event.asStartElement().getName().equals(Constants.QNAME_LINESTRING)) {
-        lineStrings.add(lineString(reader, event.asStartElement(), type, null));
-      }
-
-      if (event.isEndElement() && start.getName().equals(event.asEndElement().getName())) {
-        foundEndProperty = true;
+    int depth = 0;
+    for (int event = reader.next(); depth > 0 || event != XMLStreamConstants.END_ELEMENT; event = reader.next()) {
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        if (AbstractAtomDealer.matches(reader, Constants.QNAME_LINESTRING)) {
+          lineStrings.add(lineString(reader, type, null));
+        } else {
+          depth++;
+        }
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
       }
     }
 
     return new MultiLineString(GeoUtils.getDimension(type), srid, lineStrings);
   }
 
-  private MultiPolygon multiPolygon(final XMLEventReader reader, final StartElement start,
-      final EdmPrimitiveTypeKind type, final SRID srid) throws XMLStreamException {
+  private MultiPolygon multiPolygon(final XMLStreamReader reader, final EdmPrimitiveTypeKind type,
+      final SRID srid) throws XMLStreamException {
 
     final List<Polygon> polygons = new ArrayList<Polygon>();
 
-    boolean foundEndProperty = false;
-    while (reader.hasNext() && !foundEndProperty) {
-      final XMLEvent event = reader.nextEvent();
-
-      if (event.isStartElement() && event.asStartElement().getName().equals(Constants.QNAME_POLYGON)) {
-        polygons.add(polygon(reader, event.asStartElement(), type, null));
-      }
-
-      if (event.isEndElement() && start.getName().equals(event.asEndElement().getName())) {
-        foundEndProperty = true;
+    int depth = 0;
+    for (int event = reader.next(); depth > 0 || event != XMLStreamConstants.END_ELEMENT; event = reader.next()) {
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        if (AbstractAtomDealer.matches(reader, Constants.QNAME_POLYGON)) {
+          polygons.add(polygon(reader, type, null));
+        } else {
+          depth++;
+        }
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
       }
     }
 
     return new MultiPolygon(GeoUtils.getDimension(type), srid, polygons);
   }
 
-  private GeospatialCollection collection(final XMLEventReader reader, final StartElement start,
-      final EdmPrimitiveTypeKind type, final SRID srid) throws XMLStreamException {
+  private GeospatialCollection collection(final XMLStreamReader reader, final EdmPrimitiveTypeKind type,
+      final SRID srid) throws XMLStreamException {
 
     final List<Geospatial> geospatials = new ArrayList<Geospatial>();
 
-    boolean foundEndCollection = false;
-    while (reader.hasNext() && !foundEndCollection) {
-      final XMLEvent event = reader.nextEvent();
-
-      if (event.isStartElement() && event.asStartElement().getName().equals(Constants.QNAME_GEOMEMBERS)) {
-        boolean foundEndMembers = false;
-        while (reader.hasNext() && !foundEndMembers) {
-          final XMLEvent subevent = reader.nextEvent();
-
-          if (subevent.isStartElement()) {
-            geospatials.add(deserialize(reader, subevent.asStartElement(),
-                GeoUtils.getType(GeoUtils.getDimension(type), subevent.asStartElement().getName().getLocalPart())));
-          }
-
-          if (subevent.isEndElement() && Constants.QNAME_GEOMEMBERS.equals(subevent.asEndElement().getName())) {
-            foundEndMembers = true;
+    int depth = 0;
+    for (int event = reader.next(); depth > 0 || event != XMLStreamConstants.END_ELEMENT; event = reader.next()) {
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        if (AbstractAtomDealer.matches(reader, Constants.QNAME_GEOMEMBERS)) {
+          for (int member = reader.next(); member != XMLStreamConstants.END_ELEMENT; member = reader.next()) {
+            if (member == XMLStreamConstants.START_ELEMENT) {
+              geospatials.add(deserialize(reader,
+                  GeoUtils.getType(GeoUtils.getDimension(type), reader.getLocalName())));
+            }
           }
+        } else {
+          depth++;
         }
-      }
-
-      if (event.isEndElement() && start.getName().equals(event.asEndElement().getName())) {
-        foundEndCollection = true;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
       }
     }
 
     return new GeospatialCollection(GeoUtils.getDimension(type), srid, geospatials);
   }
 
-  public Geospatial deserialize(final XMLEventReader reader, final StartElement start,
-      final EdmPrimitiveTypeKind type) throws XMLStreamException {
+  public Geospatial deserialize(final XMLStreamReader reader, final EdmPrimitiveTypeKind type)
+      throws XMLStreamException {
 
     SRID srid = null;
-    final Attribute srsName = start.getAttributeByName(Constants.QNAME_ATTR_SRSNAME);
+    final String srsName = AbstractAtomDealer.attribute(reader, Constants.QNAME_ATTR_SRSNAME);
     if (srsName != null) {
-      srid = SRID.valueOf(StringUtils.substringAfterLast(srsName.getValue(), "/"));
+      srid = SRID.valueOf(StringUtils.substringAfterLast(srsName, "/"));
     }
 
     Geospatial value;
@@ -225,40 +231,41 @@ class AtomGeoValueDeserializer {
     switch (type) {
     case GeographyPoint:
     case GeometryPoint:
-      value = points(reader, start, type, srid).get(0);
+      value = points(reader, type, srid).get(0);
       break;
 
     case GeographyMultiPoint:
     case GeometryMultiPoint:
-      value = multipoint(reader, start, type, srid);
+      value = multipoint(reader, type, srid);
       break;
 
     case GeographyLineString:
     case GeometryLineString:
-      value = lineString(reader, start, type, srid);
+      value = lineString(reader, type, srid);
       break;
 
     case GeographyMultiLineString:
     case GeometryMultiLineString:
-      value = multiLineString(reader, start, type, srid);
+      value = multiLineString(reader, type, srid);
       break;
 
     case GeographyPolygon:
     case GeometryPolygon:
-      value = polygon(reader, start, type, srid);
+      value = polygon(reader, type, srid);
       break;
 
     case GeographyMultiPolygon:
     case GeometryMultiPolygon:
-      value = multiPolygon(reader, start, type, srid);
+      value = multiPolygon(reader, type, srid);
       break;
 
     case GeographyCollection:
     case GeometryCollection:
-      value = collection(reader, start, type, srid);
+      value = collection(reader, type, srid);
       break;
 
     default:
+      AbstractAtomDealer.skipElement(reader);
       value = null;
     }
 
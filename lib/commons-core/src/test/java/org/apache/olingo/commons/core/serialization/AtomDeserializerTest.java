@@ -21,13 +21,19 @@ package org.apache.olingo.commons.core.serialization;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.olingo.commons.api.data.Entity;
 import org.apache.olingo.commons.api.data.EntityCollection;
 import org.apache.olingo.commons.api.data.ResWrap;
+import org.apache.olingo.commons.api.data.ValueType;
+import org.apache.olingo.commons.api.edm.geo.Point;
 import org.junit.Test;
 
 public class AtomDeserializerTest {
@@ -325,4 +331,89 @@ public class AtomDeserializerTest {
     assertNotNull(inlineEntitySet);
     assertEquals(1, inlineEntitySet.getEntities().size());
   }
+
+  private static final String FEED = ""
+      + "<feed xmlns=\"http://www.w3.org/2005/Atom\" "
+      + "xmlns:d=\"http://docs.oasis-open.org/odata/ns/data\" "
+      + "xmlns:m=\"http://docs.oasis-open.org/odata/ns/metadata\" "
+      + "xmlns:gml=\"http://www.opengis.net/gml\" "
+      + "m:context=\"$metadata#ESTwoPrim\">"
+      + "<m:count>3</m:count>"
+      + "<id>http://host/service/ESTwoPrim</id>"
+      + "<entry><id>ESTwoPrim(1)</id><category term=\"#Namespace.ETTwoPrim\"/>"
+      + "<author><name/></author>"
+      + "<content type=\"application/xml\"><m:properties>"
+      + "<d:PropertyInt16 m:type=\"Int16\">1</d:PropertyInt16>"
+      + "<d:PropertyString><![CDATA[first]]> &amp; second</d:PropertyString>"
+      + "<d:Location m:type=\"GeographyPoint\"><gml:Point><gml:pos>47.5 -122.25</gml:pos></gml:Point></d:Location>"
+      + "</m:properties></content></entry>"
+      + "<entry><id>ESTwoPrim(2)</id><content type=\"application/xml\"><m:properties>"
+      + "<d:PropertyInt16 m:type=\"Int16\">2</d:PropertyInt16>"
+      + "<d:PropertyString m:null=\"true\"/>"
+      + "</m:properties></content></entry>"
+      + "<entry><id>ESTwoPrim(3)</id><content type=\"application/xml\"><m:properties>"
+      + "<d:PropertyInt16 m:type=\"Int16\">3</d:PropertyInt16>"
+      + "</m:properties></content></entry>"
+      + "<link rel=\"next\" href=\"ESTwoPrim?$skiptoken=3\"/>"
+      + "</feed>";
+
+  @Test
+  public void feed() throws Exception {
+    final ResWrap<EntityCollection> feed =
+        new AtomDeserializer().toEntitySet(new ByteArrayInputStream(FEED.getBytes("UTF-8")));
+
+    assertEquals(URI.create("$metadata#ESTwoPrim"), feed.getContextURL());
+    final EntityCollection entitySet = feed.getPayload();
+    assertEquals(Integer.valueOf(3), entitySet.getCount());
+    assertEquals(URI.create("ESTwoPrim?$skiptoken=3"), entitySet.getNext());
+    assertEquals(3, entitySet.getEntities().size());
+
+    final Entity first = entitySet.getEntities().get(0);
+    assertEquals("Namespace.ETTwoPrim", first.getType());
+    assertEquals(Short.valueOf((short) 1), first.getProperty("PropertyInt16").getValue());
+    assertEquals("first & second", first.getProperty("PropertyString").getValue());
+    assertEquals(ValueType.GEOSPATIAL, first.getProperty("Location").getValueType());
+    assertEquals(47.5, ((Point) first.getProperty("Location").getValue()).getX(), 0);
+    assertEquals(-122.25, ((Point) first.getProperty("Location").getValue()).getY(), 0);
+
+    assertTrue(entitySet.getEntities().get(1).getProperty("PropertyString").isNull());
+  }
+
+  @Test
+  public void feedEntryByEntry() throws Exception {
+    final List<Entity> entities = new ArrayList<Entity>();
+    final ResWrap<EntityCollection> feed = new AtomDeserializer().toEntitySet(
+        new ByteArrayInputStream(FEED.getBytes("UTF-8")),
+        new AtomEntryHandler() {
+          @Override
+          public boolean handle(final Entity entity) {
+            entities.add(entity);
+            return true;
+          }
+        });
+
+    assertEquals(3, entities.size());
+    assertEquals(Short.valueOf((short) 3), entities.get(2).getProperty("PropertyInt16").getValue());
+    assertTrue(feed.getPayload().getEntities().isEmpty());
+    assertEquals(Integer.valueOf(3), feed.getPayload().getCount());
+    assertEquals(URI.create("ESTwoPrim?$skiptoken=3"), feed.getPayload().getNext());
+  }
+
+  @Test
+  public void feedEntryByEntryStopped() throws Exception {
+    final List<Entity> entities = new ArrayList<Entity>();
+    final ResWrap<EntityCollection> feed = new AtomDeserializer().toEntitySet(
+        new ByteArrayInputStream(FEED.getBytes("UTF-8")),
+        new AtomEntryHandler() {
+          @Override
+          public boolean handle(final Entity entity) {
+            entities.add(entity);
+            return entities.size() < 2;
+          }
+        });
+
+    assertEquals(2, entities.size());
+    assertEquals(Integer.valueOf(3), feed.getPayload().getCount());
+    assertNull(feed.getPayload().getNext());
+  }
 }
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.api;
+
+/**
+ * <p>Processes requests which prefer asynchronous processing (<code>Prefer: respond-async</code>)
+ * in the background.</p>
+ * <p>Such requests are answered immediately with <code>202 Accepted</code> and the URL of a status monitor
+ * resource; polling the monitor returns <code>202 Accepted</code> as long as the request is running, and the
+ * final response, enclosed as <code>application/http</code>, once it has finished.
+ * Deleting the monitor cancels the request or discards its result.</p>
+ * <p>Instances are thread-safe and meant to be shared by all handlers of a service, since the monitor is
+ * usually polled through a different handler than the one which has accepted the request.
+ * If the maximum number of requests is reached, further requests are processed synchronously.</p>
+ * @see OData#createAsyncRequestManager(int, int, long)
+ * @see ODataHttpHandler#register(AsyncRequestManager)
+ */
+public interface AsyncRequestManager {
+
+  /**
+   * Gets the number of accepted requests which have not finished yet.
+   */
+  int getPendingCount();
+
+  /**
+   * Gets the number of finished requests whose results have neither been retrieved nor expired yet.
+   */
+  int getCompletedCount();
+
+  /**
+   * Stops accepting requests, cancels the running ones, and discards all results not retrieved yet.
+   */
+  void shutdown();
+}
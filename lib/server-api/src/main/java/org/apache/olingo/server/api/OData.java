@@ -29,6 +29,10 @@ import org.apache.olingo.server.api.deserializer.DeserializerException;
 import org.apache.olingo.server.api.deserializer.FixedFormatDeserializer;
 import org.apache.olingo.server.api.deserializer.ODataDeserializer;
 import org.apache.olingo.server.api.edmx.EdmxReference;
+import org.apache.olingo.server.api.etag.ETagHelper;
+import org.apache.olingo.server.api.metrics.RequestMetricsHistogram;
+import org.apache.olingo.server.api.paging.PagingHelper;
+import org.apache.olingo.server.api.search.SearchIndex;
 import org.apache.olingo.server.api.serializer.FixedFormatSerializer;
 import org.apache.olingo.server.api.serializer.ODataSerializer;
 import org.apache.olingo.server.api.serializer.SerializerException;
@@ -87,6 +91,18 @@ public abstract class OData {
    */
   public abstract ODataHttpHandler createHandler(ServiceMetadata serviceMetadata);
 
+  /**
+   * Creates a manager for processing requests asynchronously if the client prefers so.
+   * The manager should be created once per service and registered at each handler.
+   *
+   * @param maxThreads - maximum number of requests processed concurrently
+   * @param maxRequests - maximum number of requests pending or with results not retrieved yet
+   * @param resultTimeToLive - time in milliseconds after which a result not retrieved is discarded
+   * @see ODataHttpHandler#register(AsyncRequestManager)
+   */
+  public abstract AsyncRequestManager createAsyncRequestManager(int maxThreads, int maxRequests,
+      long resultTimeToLive);
+
   /**
    * Creates a metadata object for this service.
    *
@@ -101,6 +117,36 @@ public abstract class OData {
    */
   public abstract UriHelper createUriHelper();
 
+  /**
+   * Creates a new entity-tag helper object for computing and comparing entity tags.
+   * It can be used in Processor and {@link org.apache.olingo.server.api.etag.ETagProvider ETagProvider}
+   * implementations.
+   */
+  public abstract ETagHelper createETagHelper();
+
+  /**
+   * Creates request metrics that keep histograms of the durations of the request-processing phases in memory.
+   * The metrics should be created once per service and registered at each handler.
+   * @see ODataHttpHandler#register(org.apache.olingo.server.api.metrics.RequestMetrics)
+   */
+  public abstract RequestMetricsHistogram createRequestMetricsHistogram();
+
+  /**
+   * Creates a full-text index for evaluating the system query option $search on the entities of an entity set.
+   * The index should be created once per entity set and kept up to date by the data provider.
+   *
+   * @param propertyNames names of the primitive string properties of the entities whose values are indexed
+   */
+  public abstract SearchIndex createSearchIndex(List<String> propertyNames);
+
+  /**
+   * Creates a helper for server-driven paging with keyset skip tokens.
+   * The helper can be kept for the lifetime of the service.
+   *
+   * @param secret the key the skip tokens are signed with; all instances of a service must use the same key
+   */
+  public abstract PagingHelper createPagingHelper(byte[] secret);
+
   /**
    * Creates a new deserializer object for reading content in the specified format.
    * Deserializer are used in Processor implementations.
@@ -18,6 +18,8 @@
  */
 package org.apache.olingo.server.api;
 
+import org.apache.olingo.server.api.etag.ETagProvider;
+import org.apache.olingo.server.api.metrics.RequestMetrics;
 import org.apache.olingo.server.api.processor.Processor;
 import org.apache.olingo.server.api.serializer.CustomContentTypeSupport;
 
@@ -39,6 +41,18 @@ public interface ODataHttpHandler {
    */
   void process(HttpServletRequest request, HttpServletResponse response);
 
+  /**
+   * <p>Processes an OData request asynchronously (requires a Servlet 3.1 container
+   * and a servlet or filter with asynchronous support enabled).</p>
+   * <p>Processing is the same as in {@link #process(HttpServletRequest, HttpServletResponse)}
+   * but, if the processor defers the response (see {@link ODataResponse#defer()}),
+   * the calling thread returns immediately, and the response body is written
+   * with non-blocking I/O once completed.</p>
+   * @param request - must be a HTTP OData request
+   * @param response - HTTP OData response
+   */
+  void processAsync(HttpServletRequest request, HttpServletResponse response);
+
   /**
    * <p>Registers additional custom processor implementations for handling OData requests.</p>
    * <p>If request processing requires a processor that is not registered then a
@@ -53,10 +67,47 @@ public interface ODataHttpHandler {
    */
   void register(CustomContentTypeSupport customContentTypeSupport);
 
+  /**
+   * Registers a manager for processing requests asynchronously if the client prefers so.
+   * If no manager is registered, the preference is ignored.
+   * @param asyncRequestManager a manager created by {@link OData#createAsyncRequestManager(int, int, long)}
+   * @throws IllegalArgumentException if the manager has not been created by the same library implementation
+   * @see AsyncRequestManager
+   */
+  void register(AsyncRequestManager asyncRequestManager);
+
+  /**
+   * Registers a provider of entity tags; with it, conditional requests are answered with
+   * "not modified" or "precondition failed" without calling a processor.
+   * @see ETagProvider
+   */
+  void register(ETagProvider eTagProvider);
+
+  /**
+   * Registers metrics that receive the durations of URI parsing, URI validation, content negotiation,
+   * processing, serialization, and writing the response for each request.
+   * @see RequestMetrics
+   */
+  void register(RequestMetrics metrics);
+
   /**
    * Sets the split parameter which is used for service resolution.
    * @param split the number of path segments reserved for service resolution; default is 0
    */
   void setSplit(int split);
 
+  /**
+   * <p>Enables compression of response bodies, with the content coding (gzip or deflate)
+   * negotiated from the <code>Accept-Encoding</code> request header.
+   * Bodies are compressed while they are written; only textual formats (JSON, XML, multipart, text)
+   * are compressed. Compressed variants of the metadata document are kept, assuming that the metadata document
+   * does not change, and are sent for subsequent metadata requests with the same request headers.</p>
+   * <p>Request bodies are decompressed according to their <code>Content-Encoding</code> header
+   * whether response compression is enabled or not.</p>
+   * @param level the compression level, from 1 (best speed) to 9 (best compression),
+   *              0 for no compression, or -1 for the default level
+   * @param minimumSize response bodies with less bytes are sent uncompressed
+   */
+  void setCompression(int level, int minimumSize);
+
 }
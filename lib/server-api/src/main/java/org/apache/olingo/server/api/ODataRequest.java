@@ -20,7 +20,11 @@ package org.apache.olingo.server.api;
 
 import org.apache.olingo.commons.api.http.HttpMethod;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -113,6 +117,27 @@ public class ODataRequest {
     this.body = body;
   }
 
+  /**
+   * Transfers the body of the request into a file channel, e.g., for storing uploaded media,
+   * without copying it through byte arrays on the Java heap.
+   * @param target   the channel
+   * @param position the position in the channel where the body is written;
+   *                 it must not exceed the size of the channel
+   * @return the number of bytes transferred
+   */
+  public long transferBody(final FileChannel target, final long position) throws IOException {
+    if (body == null) {
+      return 0;
+    }
+    final ReadableByteChannel source = Channels.newChannel(body);
+    long transferred = 0;
+    long n;
+    while ((n = target.transferFrom(source, position + transferred, Long.MAX_VALUE)) > 0) {
+      transferred += n;
+    }
+    return transferred;
+  }
+
   /**
    * Gets the query part of the request URI.
    * @return the undecoded query options, e.g., "<code>$format=json,$top=10</code>"
@@ -18,7 +18,10 @@
  */
 package org.apache.olingo.server.api;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -33,7 +36,10 @@ public class ODataResponse {
   private int statusCode = HttpStatusCode.INTERNAL_SERVER_ERROR.getStatusCode();
   private Map<String, String> headers = new HashMap<String, String>();
   private InputStream content;
-
+  private FileChannel contentChannel;
+  private long contentPosition;
+  private long contentLength;
+  private ODataResponseCompletion completion;
 
   /**
    * Sets the status code.
@@ -74,6 +80,25 @@ public class ODataResponse {
    */
   public void setContent(final InputStream content) {
     this.content = content;
+    contentChannel = null;
+  }
+
+  /**
+   * <p>Sets the content (body) as a region of a file channel, e.g., for media resources.</p>
+   * <p>The region is transferred to the client directly from the channel, without copying it
+   * through the Java heap, together with its <code>Content-Length</code>;
+   * byte ranges requested with a <code>Range</code> header are answered with partial content.
+   * {@link #getContent()} returns a stream over the region, for consumers which need one.
+   * The channel is closed when the content has been written.</p>
+   * @param channel  the channel
+   * @param position the position of the region in the channel
+   * @param length   the length of the region in bytes
+   */
+  public void setContent(final FileChannel channel, final long position, final long length) {
+    content = new ChannelRegionInputStream(channel, position, length);
+    contentChannel = channel;
+    contentPosition = position;
+    contentLength = length;
   }
 
   /**
@@ -84,4 +109,96 @@ public class ODataResponse {
     return content;
   }
 
+  /**
+   * Gets the file channel of the content (body).
+   * @return the channel or <code>null</code> if the content has not been set as a channel region
+   * @see #setContent(FileChannel, long, long)
+   */
+  public FileChannel getContentChannel() {
+    return contentChannel;
+  }
+
+  /**
+   * Gets the position of the content (body) in its file channel.
+   * @see #setContent(FileChannel, long, long)
+   */
+  public long getContentPosition() {
+    return contentPosition;
+  }
+
+  /**
+   * Gets the length of the content (body) in its file channel.
+   * @see #setContent(FileChannel, long, long)
+   */
+  public long getContentLength() {
+    return contentLength;
+  }
+
+  /**
+   * <p>Defers the completion of this response: status code, headers, and content
+   * can be set after the processor has returned, until
+   * {@link ODataResponseCompletion#complete()} is called on the returned handle.</p>
+   * <p>Calling this method more than once returns the same handle.</p>
+   * @return the completion handle
+   */
+  public synchronized ODataResponseCompletion defer() {
+    if (completion == null) {
+      completion = new ODataResponseCompletion();
+    }
+    return completion;
+  }
+
+  /**
+   * Gets the completion handle of a deferred response.
+   * @return the completion handle, or <code>null</code> if this response has not been deferred
+   * @see #defer()
+   */
+  public synchronized ODataResponseCompletion getCompletion() {
+    return completion;
+  }
+
+  /** Reads a region of a file channel with positional reads, leaving the channel's own position alone. */
+  private static class ChannelRegionInputStream extends InputStream {
+
+    private final FileChannel channel;
+    private long position;
+    private final long end;
+
+    private ChannelRegionInputStream(final FileChannel channel, final long position, final long length) {
+      this.channel = channel;
+      this.position = position;
+      end = position + length;
+    }
+
+    @Override
+    public int read() throws IOException {
+      final byte[] b = new byte[1];
+      return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (position >= end) {
+        return -1;
+      }
+      final int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+      if (n > 0) {
+        position += n;
+      }
+      return n;
+    }
+
+    @Override
+    public int available() {
+      return (int) Math.min(Integer.MAX_VALUE, end - position);
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
 }
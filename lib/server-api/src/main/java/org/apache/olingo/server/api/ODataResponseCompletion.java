@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.api;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Completion handle of a deferred {@link ODataResponse}.</p>
+ * <p>A processor which cannot fill the response before returning (e.g. because it waits for a remote store)
+ * calls {@link ODataResponse#defer()} and returns immediately; later, possibly from another thread, it fills the
+ * response and calls {@link #complete()}, or {@link #fail(Exception)} if an error occurred.
+ * The library then writes the response, without holding a container thread in the meantime when requests are
+ * processed through {@link ODataHttpHandler#processAsync(javax.servlet.http.HttpServletRequest,
+ * javax.servlet.http.HttpServletResponse)}.</p>
+ */
+public class ODataResponseCompletion {
+
+  /**
+   * Callback notified when the response has been completed.
+   */
+  public interface Listener {
+
+    /**
+     * Called once the response has been completed.
+     * @param failure the failure, or <code>null</code> if the response has been completed successfully
+     */
+    void completed(Exception failure);
+  }
+
+  private final List<Listener> listeners = new ArrayList<Listener>();
+  private boolean done;
+  private Exception failure;
+
+  /**
+   * Marks the response as successfully completed.
+   * @throws IllegalStateException if already completed
+   */
+  public void complete() {
+    finish(null);
+  }
+
+  /**
+   * Marks the response as failed; an error response will be sent instead.
+   * @param failure the failure
+   * @throws IllegalStateException if already completed
+   */
+  public void fail(final Exception failure) {
+    finish(failure == null ? new NullPointerException("failure") : failure);
+  }
+
+  /**
+   * Whether the response has been completed, successfully or not.
+   */
+  public synchronized boolean isDone() {
+    return done;
+  }
+
+  /**
+   * Gets the failure the response has been completed with.
+   * @return the failure, or <code>null</code> if not completed or completed successfully
+   */
+  public synchronized Exception getFailure() {
+    return failure;
+  }
+
+  /**
+   * Registers a listener; if the response has already been completed, the listener is notified immediately.
+   * @param listener the listener
+   */
+  public void addListener(final Listener listener) {
+    final boolean notifyNow;
+    final Exception result;
+    synchronized (this) {
+      notifyNow = done;
+      result = failure;
+      if (!done) {
+        listeners.add(listener);
+      }
+    }
+    if (notifyNow) {
+      listener.completed(result);
+    }
+  }
+
+  /**
+   * Blocks until the response has been completed.
+   * @throws InterruptedException if the current thread has been interrupted while waiting
+   */
+  public synchronized void await() throws InterruptedException {
+    while (!done) {
+      wait();
+    }
+  }
+
+  private void finish(final Exception result) {
+    final List<Listener> toNotify;
+    synchronized (this) {
+      if (done) {
+        throw new IllegalStateException("Response has already been completed.");
+      }
+      done = true;
+      failure = result;
+      toNotify = new ArrayList<Listener>(listeners);
+      listeners.clear();
+      notifyAll();
+    }
+    for (final Listener listener : toNotify) {
+      listener.completed(result);
+    }
+  }
+}
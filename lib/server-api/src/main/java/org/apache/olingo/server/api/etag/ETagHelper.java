@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.api.etag;
+
+import java.util.Collection;
+
+import org.apache.olingo.commons.api.data.EntityCollection;
+
+/**
+ * Used for entity-tag-related tasks.
+ * It can be used in Processor and {@link ETagProvider} implementations.
+ */
+public interface ETagHelper {
+
+  /**
+   * Creates a weak entity tag from an opaque value, e.g., a version number.
+   * @param value the value; it must not contain double quotes
+   * @return the entity tag, e.g., <code>W/"42"</code>
+   */
+  String createWeakETag(String value);
+
+  /**
+   * Creates a weak entity tag for a collection from the entity tags of its members.
+   * The result changes whenever a member is added, removed, re-ordered, or its entity tag changes.
+   * @param memberETags the entity tags of the members in their order
+   * @return the entity tag
+   */
+  String createWeakETag(Collection<String> memberETags);
+
+  /**
+   * Creates a weak entity tag for an entity collection from the entity tags of its entities
+   * (see {@link #createWeakETag(Collection)}).
+   * @param entityCollection the entity collection
+   * @return the entity tag or <code>null</code> if an entity has no entity tag
+   */
+  String createWeakETag(EntityCollection entityCollection);
+
+  /**
+   * Checks whether an entity tag matches the value of an <code>If-Match</code> or
+   * <code>If-None-Match</code> header, i.e., whether it is in the comma-separated list of entity tags
+   * or the value is <code>*</code>.
+   * Entity tags are compared weakly, i.e., regardless of their <code>W/</code> prefix,
+   * as OData services commonly use weak entity tags also for modifying requests.
+   * @param eTag           the current entity tag; <code>null</code> never matches
+   * @param conditionValue the header value
+   * @return whether the entity tag matches
+   */
+  boolean matches(String eTag, String conditionValue);
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.api.etag;
+
+import java.util.Date;
+import java.util.List;
+
+import org.apache.olingo.commons.api.edm.EdmEntitySet;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.UriParameter;
+
+/**
+ * <p>Provides the current entity tags and modification dates of entities and entity sets,
+ * so that conditional requests (<code>If-Match</code>, <code>If-None-Match</code>,
+ * <code>If-Modified-Since</code>, <code>If-Unmodified-Since</code>) can be evaluated
+ * before a processor is called.</p>
+ * <p>Lookups are expected to be cheap, e.g., reading a version column or counter,
+ * without loading and certainly without serializing the entity.
+ * If the preconditions are not met, the request is answered with
+ * <code>304 Not Modified</code> (for GET requests) or <code>412 Precondition Failed</code>
+ * and the processor is not called at all.</p>
+ * <p>Preconditions are evaluated for requests to entities addressed with key predicates
+ * directly in an entity set, including their properties, property values, media values and references,
+ * and for GET requests to entity sets (including <code>$count</code>).
+ * GET requests with <code>$expand</code>, or with navigation in <code>$filter</code> or <code>$orderby</code>,
+ * depend on related entities not covered by these entity tags and are therefore excluded.
+ * All other requests are passed to the processor unchanged.</p>
+ * @see ETagHelper
+ * @see org.apache.olingo.server.api.ODataHttpHandler#register(ETagProvider)
+ */
+public interface ETagProvider {
+
+  /**
+   * Gets the current entity tag of an entity or, if no keys are given, of a whole entity set.
+   * @param entitySet the entity set
+   * @param keys      the key predicates of the entity, or an empty list for the entity set
+   * @return the entity tag including quotes, e.g., <code>W/"42"</code>,
+   *         or <code>null</code> if the entity does not exist or no entity tag is available
+   */
+  String getETag(EdmEntitySet entitySet, List<UriParameter> keys) throws ODataApplicationException;
+
+  /**
+   * Gets the date of the last modification of an entity or, if no keys are given, of a whole entity set.
+   * @param entitySet the entity set
+   * @param keys      the key predicates of the entity, or an empty list for the entity set
+   * @return the date or <code>null</code> if the entity does not exist or the date is not available
+   */
+  Date getLastModified(EdmEntitySet entitySet, List<UriParameter> keys) throws ODataApplicationException;
+}
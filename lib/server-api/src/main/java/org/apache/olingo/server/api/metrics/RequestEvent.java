@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.api.metrics;
+
+import org.apache.olingo.commons.api.http.HttpMethod;
+import org.apache.olingo.server.api.uri.UriInfoKind;
+import org.apache.olingo.server.api.uri.UriResourceKind;
+
+/**
+ * A completed phase of processing a request.
+ */
+public final class RequestEvent {
+
+  private final RequestPhase phase;
+  private final HttpMethod method;
+  private final UriInfoKind kind;
+  private final UriResourceKind resourceKind;
+  private final String entitySetName;
+  private final long durationNanos;
+  private final long bytes;
+
+  /**
+   * Creates an event.
+   * @param phase         the phase
+   * @param method        the request method, or <code>null</code> if not known
+   * @param kind          the kind of the request URI, or <code>null</code> if not known (yet)
+   * @param resourceKind  the kind of the last resource-path segment, or <code>null</code>
+   * @param entitySetName the name of the entity set at the start of the resource path, or <code>null</code>
+   * @param durationNanos the duration of the phase in nanoseconds
+   * @param bytes         the number of bytes written in the phase, or -1 if not applicable
+   */
+  public RequestEvent(final RequestPhase phase, final HttpMethod method, final UriInfoKind kind,
+      final UriResourceKind resourceKind, final String entitySetName, final long durationNanos, final long bytes) {
+    this.phase = phase;
+    this.method = method;
+    this.kind = kind;
+    this.resourceKind = resourceKind;
+    this.entitySetName = entitySetName;
+    this.durationNanos = durationNanos;
+    this.bytes = bytes;
+  }
+
+  public RequestPhase getPhase() {
+    return phase;
+  }
+
+  public HttpMethod getMethod() {
+    return method;
+  }
+
+  public UriInfoKind getKind() {
+    return kind;
+  }
+
+  public UriResourceKind getResourceKind() {
+    return resourceKind;
+  }
+
+  public String getEntitySetName() {
+    return entitySetName;
+  }
+
+  public long getDurationNanos() {
+    return durationNanos;
+  }
+
+  public long getBytes() {
+    return bytes;
+  }
+
+  @Override
+  public String toString() {
+    return phase + " " + method + " " + kind
+        + (resourceKind == null ? "" : " " + resourceKind)
+        + (entitySetName == null ? "" : " " + entitySetName)
+        + ": " + durationNanos + " ns"
+        + (bytes < 0 ? "" : ", " + bytes + " bytes");
+  }
+}
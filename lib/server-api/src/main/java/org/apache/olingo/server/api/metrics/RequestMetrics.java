@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.api.metrics;
+
+/**
+ * <p>Receives the durations of the phases of processing OData requests,
+ * e.g., to find out whether latency comes from URI parsing, content negotiation,
+ * the processor, serialization, or writing the response.</p>
+ * <p>Implementations are called synchronously on the request thread, possibly for many requests
+ * concurrently; they must be thread-safe and should return quickly.</p>
+ * @see org.apache.olingo.server.api.ODataHttpHandler#register(RequestMetrics)
+ * @see org.apache.olingo.server.api.OData#createRequestMetricsHistogram()
+ */
+public interface RequestMetrics {
+
+  /**
+   * Records a completed phase of processing a request.
+   * @param event the phase, its duration, and what has been requested
+   */
+  void record(RequestEvent event);
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.api.metrics;
+
+/**
+ * <p>Request metrics kept in memory as histograms of the phase durations,
+ * per phase and per phase and entity set.</p>
+ * <p>Durations are kept in buckets with a relative width of at most 12.5 percent,
+ * so percentiles are accurate to that extent.</p>
+ * @see org.apache.olingo.server.api.OData#createRequestMetricsHistogram()
+ */
+public interface RequestMetricsHistogram extends RequestMetrics {
+
+  /**
+   * Gets the histogram of a phase for all requests.
+   * @param phase the phase
+   */
+  Histogram getHistogram(RequestPhase phase);
+
+  /**
+   * Gets the histogram of a phase for the requests to an entity set.
+   * @param phase         the phase
+   * @param entitySetName the name of the entity set at the start of the resource path
+   * @return the histogram; empty if no such requests have been recorded
+   */
+  Histogram getHistogram(RequestPhase phase, String entitySetName);
+
+  /**
+   * Discards all recorded events.
+   */
+  void reset();
+
+  /**
+   * Histogram of the durations of one phase.
+   */
+  interface Histogram {
+
+    /** Returns the number of recorded events. */
+    long getCount();
+
+    /** Returns the sum of all durations in nanoseconds. */
+    long getTotalNanos();
+
+    /** Returns the longest duration in nanoseconds, or 0 if no event has been recorded. */
+    long getMaxNanos();
+
+    /** Returns the sum of the bytes written in the recorded events. */
+    long getBytes();
+
+    /**
+     * Returns a duration percentile.
+     * @param percentile the percentile, between 0 and 100
+     * @return the upper bound in nanoseconds of the bucket containing the percentile,
+     *         or 0 if no event has been recorded
+     */
+    long getPercentileNanos(double percentile);
+  }
+}
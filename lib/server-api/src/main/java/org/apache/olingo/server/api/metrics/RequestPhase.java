@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.api.metrics;
+
+/**
+ * Phases of processing an OData request that are reported to {@link RequestMetrics}.
+ * Processing includes content negotiation and serialization done by the processor,
+ * so these phases are reported within the processing phase.
+ */
+public enum RequestPhase {
+  /** Parsing the request URI */
+  URI_PARSING,
+  /** Validating the parsed URI against the request method */
+  URI_VALIDATION,
+  /** Negotiating the content type of the request or the response */
+  CONTENT_NEGOTIATION,
+  /** Dispatching the request to a processor and processing it there */
+  PROCESSING,
+  /** Serializing content with a serializer created by the processor */
+  SERIALIZATION,
+  /** Writing the response body to the client */
+  OUTPUT
+}
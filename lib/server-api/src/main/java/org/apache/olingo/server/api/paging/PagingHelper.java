@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.api.paging;
+
+import java.net.URI;
+import java.util.List;
+
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.ODataRequest;
+
+/**
+ * <p>Support for server-driven paging with keyset skip tokens.</p>
+ * <p>A keyset skip token contains the sort key of the last entity on a page, i.e., the values of the
+ * order-by expressions followed by the key-property values. The next page starts directly after that
+ * sort key, so it is not necessary to skip the entities of all previous pages. The token is opaque
+ * for clients and signed, so clients cannot forge tokens.</p>
+ * @see org.apache.olingo.server.api.OData#createPagingHelper(byte[])
+ */
+public interface PagingHelper {
+
+  /** Name of the preference clients use to request a maximum page size. */
+  String PREFERENCE_MAX_PAGE_SIZE = "odata.maxpagesize";
+
+  /**
+   * Gets the maximum page size the client prefers.
+   * @param request the OData request
+   * @return the positive value of the preference <code>odata.maxpagesize</code>, or <code>null</code>
+   *         if the request has no valid such preference
+   */
+  Integer getPreferredMaxPageSize(ODataRequest request);
+
+  /**
+   * Creates a skip token for a sort key.
+   * Supported values are <code>null</code>, booleans, numbers, strings, UUIDs, calendars, timestamps,
+   * and byte arrays.
+   * @param sortKey the sort key of the last entity on the current page
+   * @return the opaque, URL-safe skip token
+   */
+  String createSkipToken(List<?> sortKey);
+
+  /**
+   * Parses a skip token and checks its signature.
+   * @param skipToken the skip token as created by {@link #createSkipToken(List)}
+   * @return the sort key
+   * @throws ODataApplicationException with status code 400 if the skip token is invalid
+   */
+  List<Object> parseSkipToken(String skipToken) throws ODataApplicationException;
+
+  /**
+   * Creates the next link for a request, i.e., its URI with the skip token replaced by the given one.
+   * All other query options are kept as they have been sent.
+   * @param request   the OData request
+   * @param skipToken the skip token for the next page
+   */
+  URI createNextLink(ODataRequest request, String skipToken);
+}
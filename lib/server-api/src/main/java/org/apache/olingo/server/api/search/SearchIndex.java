@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.api.search;
+
+import java.util.List;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchExpression;
+
+/**
+ * <p>Full-text index over string properties of the entities of one entity set,
+ * for evaluating the system query option $search.</p>
+ * <p>Property values are split into case-insensitive words; a search word matches an entity if one of its
+ * indexed property values contains that word, a search phrase matches if they contain its words in sequence.</p>
+ * <p>Entities are identified by object identity. The data provider has to keep the index up to date,
+ * i.e., index each entity when it is created or its indexed properties have been changed,
+ * and remove it when it is deleted.</p>
+ * @see org.apache.olingo.server.api.OData#createSearchIndex(List)
+ */
+public interface SearchIndex {
+
+  /**
+   * Adds an entity to the index or, if it is already indexed, updates its index entries.
+   * @param entity the entity
+   */
+  void index(Entity entity);
+
+  /**
+   * Removes an entity from the index; does nothing if it is not indexed.
+   * @param entity the entity
+   */
+  void remove(Entity entity);
+
+  /**
+   * Removes all entities from the index.
+   */
+  void clear();
+
+  /** Returns the number of indexed entities. */
+  int size();
+
+  /**
+   * Gets the indexed entities matching a search expression.
+   * @param expression the search expression
+   * @return the matching entities in the order in which they have been indexed first
+   */
+  List<Entity> search(SearchExpression expression);
+
+  /**
+   * Removes the entities not matching a search expression from an entity collection.
+   * Entities that are not indexed do not match.
+   * @param entitySet  the entity collection; its order is preserved
+   * @param expression the search expression
+   */
+  void filter(EntityCollection entitySet, SearchExpression expression);
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ODataResponseCompletionTest {
+
+  private static class RecordingListener implements ODataResponseCompletion.Listener {
+    private final List<Exception> calls = new ArrayList<Exception>();
+
+    @Override
+    public void completed(final Exception failure) {
+      calls.add(failure);
+    }
+  }
+
+  @Test
+  public void notDeferred() {
+    assertNull(new ODataResponse().getCompletion());
+  }
+
+  @Test
+  public void defer() {
+    final ODataResponse response = new ODataResponse();
+    final ODataResponseCompletion completion = response.defer();
+    assertSame(completion, response.defer());
+    assertSame(completion, response.getCompletion());
+    assertFalse(completion.isDone());
+  }
+
+  @Test
+  public void listenerBeforeAndAfterCompletion() {
+    final ODataResponseCompletion completion = new ODataResponse().defer();
+    final RecordingListener before = new RecordingListener();
+    completion.addListener(before);
+    assertTrue(before.calls.isEmpty());
+
+    completion.complete();
+    assertTrue(completion.isDone());
+    assertEquals(1, before.calls.size());
+    assertNull(before.calls.get(0));
+
+    final RecordingListener after = new RecordingListener();
+    completion.addListener(after);
+    assertEquals(1, after.calls.size());
+  }
+
+  @Test
+  public void failure() throws Exception {
+    final ODataResponseCompletion completion = new ODataResponse().defer();
+    final Exception failure = new Exception("remote store unavailable");
+    new Thread(new Runnable() {
+      @Override
+      public void run() {
+        completion.fail(failure);
+      }
+    }).start();
+
+    completion.await();
+    assertSame(failure, completion.getFailure());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void completeTwice() {
+    final ODataResponseCompletion completion = new ODataResponse().defer();
+    completion.complete();
+    completion.complete();
+  }
+}
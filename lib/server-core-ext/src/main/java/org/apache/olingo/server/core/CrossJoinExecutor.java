@@ -0,0 +1,522 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.edm.EdmPrimitiveType;
+import org.apache.olingo.commons.api.edm.EdmPrimitiveTypeException;
+import org.apache.olingo.commons.api.edm.EdmProperty;
+import org.apache.olingo.commons.api.edm.EdmType;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.UriResource;
+import org.apache.olingo.server.api.uri.UriResourceEntitySet;
+import org.apache.olingo.server.api.uri.UriResourcePrimitiveProperty;
+import org.apache.olingo.server.api.uri.queryoption.FilterOption;
+import org.apache.olingo.server.api.uri.queryoption.expression.Binary;
+import org.apache.olingo.server.api.uri.queryoption.expression.BinaryOperatorKind;
+import org.apache.olingo.server.api.uri.queryoption.expression.Expression;
+import org.apache.olingo.server.api.uri.queryoption.expression.Literal;
+import org.apache.olingo.server.api.uri.queryoption.expression.Member;
+import org.apache.olingo.server.api.uri.queryoption.expression.Unary;
+import org.apache.olingo.server.api.uri.queryoption.expression.UnaryOperatorKind;
+
+/**
+ * Evaluates a $crossjoin of entity sets with hash joins instead of filtering the cartesian product.
+ * <p>The conjuncts of the $filter expression (the operands of top-level <code>and</code> operators) are analyzed:
+ * <ul>
+ * <li><code>A/p eq B/q</code> comparing primitive properties of two different entity sets is an equi-join
+ * predicate; the entity sets are joined by building a hash table on the smaller side and streaming the
+ * larger side through it,</li>
+ * <li>conjuncts referring to a single entity set are applied to the entities of that set before joining,</li>
+ * <li>all other conjuncts are applied to the joined tuples as soon as all entity sets they refer to are joined.
+ * </li></ul>
+ * The entity sets are joined starting with the smallest one, preferring entity sets connected to the
+ * already joined ones by equi-join predicates; entity sets without such a connection are joined as cartesian
+ * product.</p>
+ * <p>Members must be of the form <code>EntitySet/PrimitiveProperty</code>; the expressions may consist of
+ * members, literals, the comparison operators, <code>and</code>, <code>or</code>, and <code>not</code>.
+ * Other expressions are rejected with status code 501 (Not Implemented).</p>
+ */
+public class CrossJoinExecutor {
+  private final List<String> entitySetNames;
+  private final List<JoinCondition> joinConditions = new ArrayList<JoinCondition>();
+  private final List<Predicate> predicates = new ArrayList<Predicate>();
+  private final Map<Literal, Object> literalValues = new IdentityHashMap<Literal, Object>();
+
+  public CrossJoinExecutor(List<String> entitySetNames, FilterOption filterOption)
+      throws ODataApplicationException {
+    this.entitySetNames = entitySetNames;
+    if (filterOption != null && filterOption.getExpression() != null) {
+      List<Expression> conjuncts = new ArrayList<Expression>();
+      collectConjuncts(filterOption.getExpression(), conjuncts);
+      for (Expression conjunct : conjuncts) {
+        JoinCondition joinCondition = getJoinCondition(conjunct);
+        if (joinCondition == null) {
+          BitSet entitySets = new BitSet(entitySetNames.size());
+          analyze(conjunct, entitySets);
+          predicates.add(new Predicate(conjunct, entitySets));
+        } else {
+          joinConditions.add(joinCondition);
+        }
+      }
+    }
+  }
+
+  /**
+   * Joins the entities of the entity sets.
+   * @param entitySets the entities by entity-set name
+   * @return the tuples of entities fulfilling the filter, as maps from entity-set name to entity
+   * in the order of the entity-set names of the cross join
+   */
+  public List<Map<String, Entity>> execute(Map<String, EntityCollection> entitySets)
+      throws ODataApplicationException {
+    final int size = entitySetNames.size();
+    Entity[] emptyTuple = new Entity[size];
+    for (Predicate predicate : predicates) {
+      if (predicate.entitySets.isEmpty() && !isTrue(evaluate(predicate.expression, emptyTuple))) {
+        return new ArrayList<Map<String, Entity>>();
+      }
+    }
+
+    // Apply the predicates that refer to a single entity set to that entity set.
+    List<List<Entity>> candidates = new ArrayList<List<Entity>>(size);
+    for (int index = 0; index < size; index++) {
+      final EntityCollection entitySet = entitySets.get(entitySetNames.get(index));
+      List<Entity> entities = new ArrayList<Entity>();
+      if (entitySet != null) {
+        for (Entity entity : entitySet.getEntities()) {
+          Entity[] tuple = new Entity[size];
+          tuple[index] = entity;
+          if (matches(tuple, index, true)) {
+            entities.add(entity);
+          }
+        }
+      }
+      candidates.add(entities);
+    }
+
+    BitSet joined = new BitSet(size);
+    List<Entity[]> tuples = null;
+    for (int step = 0; step < size; step++) {
+      final int next = getNextEntitySet(joined, candidates);
+      final List<JoinCondition> conditions = getJoinConditions(joined, next);
+      if (tuples == null) {
+        tuples = new ArrayList<Entity[]>(candidates.get(next).size());
+        for (Entity entity : candidates.get(next)) {
+          Entity[] tuple = new Entity[size];
+          tuple[next] = entity;
+          tuples.add(tuple);
+        }
+      } else if (conditions.isEmpty()) {
+        tuples = product(tuples, next, candidates.get(next));
+      } else {
+        tuples = hashJoin(tuples, next, candidates.get(next), conditions);
+      }
+      joined.set(next);
+
+      // Apply the predicates that refer to several entity sets as soon as all of them are joined.
+      List<Entity[]> matchingTuples = new ArrayList<Entity[]>(tuples.size());
+      for (Entity[] tuple : tuples) {
+        if (matches(tuple, next, false, joined)) {
+          matchingTuples.add(tuple);
+        }
+      }
+      tuples = matchingTuples;
+    }
+
+    List<Map<String, Entity>> result = new ArrayList<Map<String, Entity>>(tuples == null ? 0 : tuples.size());
+    if (tuples != null) {
+      for (Entity[] tuple : tuples) {
+        Map<String, Entity> entities = new LinkedHashMap<String, Entity>();
+        for (int index = 0; index < size; index++) {
+          entities.put(entitySetNames.get(index), tuple[index]);
+        }
+        result.add(entities);
+      }
+    }
+    return result;
+  }
+
+  private boolean matches(Entity[] tuple, int entitySet, boolean single) throws ODataApplicationException {
+    return matches(tuple, entitySet, single, null);
+  }
+
+  /**
+   * Evaluates the predicates that refer to the given entity set and, if <code>single</code> is set,
+   * to no other entity set or else to other entity sets which are all joined already.
+   */
+  private boolean matches(Entity[] tuple, int entitySet, boolean single, BitSet joined)
+      throws ODataApplicationException {
+    for (Predicate predicate : predicates) {
+      final BitSet entitySets = predicate.entitySets;
+      if (entitySets.get(entitySet) && (single ? entitySets.cardinality() == 1 :
+          entitySets.cardinality() > 1 && isSubset(entitySets, joined))
+          && !isTrue(evaluate(predicate.expression, tuple))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isSubset(BitSet subset, BitSet set) {
+    BitSet remaining = (BitSet) subset.clone();
+    remaining.andNot(set);
+    return remaining.isEmpty();
+  }
+
+  /**
+   * Chooses the entity set to join next: the smallest one connected by a join condition to the joined
+   * entity sets or, if there is none, the smallest one not joined yet.
+   */
+  private int getNextEntitySet(BitSet joined, List<List<Entity>> candidates) {
+    int next = -1;
+    boolean connected = false;
+    for (int index = 0; index < candidates.size(); index++) {
+      if (!joined.get(index)) {
+        final boolean isConnected = !getJoinConditions(joined, index).isEmpty();
+        if (next < 0 || isConnected && !connected
+            || isConnected == connected && candidates.get(index).size() < candidates.get(next).size()) {
+          next = index;
+          connected = isConnected;
+        }
+      }
+    }
+    return next;
+  }
+
+  /** Gets the join conditions between the joined entity sets and the given one, oriented towards the latter. */
+  private List<JoinCondition> getJoinConditions(BitSet joined, int entitySet) {
+    List<JoinCondition> conditions = new ArrayList<JoinCondition>();
+    for (JoinCondition condition : joinConditions) {
+      if (condition.right.entitySet == entitySet && joined.get(condition.left.entitySet)) {
+        conditions.add(condition);
+      } else if (condition.left.entitySet == entitySet && joined.get(condition.right.entitySet)) {
+        conditions.add(new JoinCondition(condition.right, condition.left));
+      }
+    }
+    return conditions;
+  }
+
+  private List<Entity[]> product(List<Entity[]> tuples, int entitySet, List<Entity> entities) {
+    List<Entity[]> result = new ArrayList<Entity[]>(tuples.size() * entities.size());
+    for (Entity[] tuple : tuples) {
+      for (Entity entity : entities) {
+        result.add(combine(tuple, entitySet, entity));
+      }
+    }
+    return result;
+  }
+
+  /** Joins the tuples with the entities, building the hash table on the smaller input. */
+  private List<Entity[]> hashJoin(List<Entity[]> tuples, int entitySet, List<Entity> entities,
+      List<JoinCondition> conditions) {
+    List<Entity[]> result = new ArrayList<Entity[]>();
+    if (tuples.size() <= entities.size()) {
+      Map<List<Object>, List<Entity[]>> table = new HashMap<List<Object>, List<Entity[]>>();
+      for (Entity[] tuple : tuples) {
+        final List<Object> key = getKey(tuple, conditions, true);
+        List<Entity[]> matches = table.get(key);
+        if (matches == null) {
+          matches = new ArrayList<Entity[]>();
+          table.put(key, matches);
+        }
+        matches.add(tuple);
+      }
+      Entity[] probe = new Entity[entitySetNames.size()];
+      for (Entity entity : entities) {
+        probe[entitySet] = entity;
+        final List<Entity[]> matches = table.get(getKey(probe, conditions, false));
+        if (matches != null) {
+          for (Entity[] tuple : matches) {
+            result.add(combine(tuple, entitySet, entity));
+          }
+        }
+      }
+    } else {
+      Map<List<Object>, List<Entity>> table = new HashMap<List<Object>, List<Entity>>();
+      Entity[] build = new Entity[entitySetNames.size()];
+      for (Entity entity : entities) {
+        build[entitySet] = entity;
+        final List<Object> key = getKey(build, conditions, false);
+        List<Entity> matches = table.get(key);
+        if (matches == null) {
+          matches = new ArrayList<Entity>();
+          table.put(key, matches);
+        }
+        matches.add(entity);
+      }
+      for (Entity[] tuple : tuples) {
+        final List<Entity> matches = table.get(getKey(tuple, conditions, true));
+        if (matches != null) {
+          for (Entity entity : matches) {
+            result.add(combine(tuple, entitySet, entity));
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  private List<Object> getKey(Entity[] tuple, List<JoinCondition> conditions, boolean left) {
+    List<Object> key = new ArrayList<Object>(conditions.size());
+    for (JoinCondition condition : conditions) {
+      key.add(normalize(getValue(tuple, left ? condition.left : condition.right)));
+    }
+    return key;
+  }
+
+  private static Entity[] combine(Entity[] tuple, int entitySet, Entity entity) {
+    Entity[] result = Arrays.copyOf(tuple, tuple.length);
+    result[entitySet] = entity;
+    return result;
+  }
+
+  private static void collectConjuncts(Expression expression, List<Expression> conjuncts) {
+    if (expression instanceof Binary && ((Binary) expression).getOperator() == BinaryOperatorKind.AND) {
+      collectConjuncts(((Binary) expression).getLeftOperand(), conjuncts);
+      collectConjuncts(((Binary) expression).getRightOperand(), conjuncts);
+    } else {
+      conjuncts.add(expression);
+    }
+  }
+
+  private JoinCondition getJoinCondition(Expression expression) throws ODataApplicationException {
+    if (expression instanceof Binary && ((Binary) expression).getOperator() == BinaryOperatorKind.EQ
+        && ((Binary) expression).getLeftOperand() instanceof Member
+        && ((Binary) expression).getRightOperand() instanceof Member) {
+      final PropertyReference left = getPropertyReference((Member) ((Binary) expression).getLeftOperand());
+      final PropertyReference right = getPropertyReference((Member) ((Binary) expression).getRightOperand());
+      if (left.entitySet != right.entitySet) {
+        return new JoinCondition(left, right);
+      }
+    }
+    return null;
+  }
+
+  /** Checks the expression, collects the entity sets it refers to, and converts its literals. */
+  private void analyze(Expression expression, BitSet entitySets) throws ODataApplicationException {
+    if (expression instanceof Binary) {
+      final Binary binary = (Binary) expression;
+      if (!isSupported(binary.getOperator())) {
+        throw notImplemented("Operator '" + binary.getOperator() + "'");
+      }
+      analyze(binary.getLeftOperand(), entitySets);
+      analyze(binary.getRightOperand(), entitySets);
+      convertLiteral(binary.getLeftOperand(), binary.getRightOperand());
+      convertLiteral(binary.getRightOperand(), binary.getLeftOperand());
+    } else if (expression instanceof Unary) {
+      if (((Unary) expression).getOperator() != UnaryOperatorKind.NOT) {
+        throw notImplemented("Operator '" + ((Unary) expression).getOperator() + "'");
+      }
+      analyze(((Unary) expression).getOperand(), entitySets);
+    } else if (expression instanceof Member) {
+      entitySets.set(getPropertyReference((Member) expression).entitySet);
+    } else if (expression instanceof Literal) {
+      convertLiteral(expression, null);
+    } else {
+      throw notImplemented("Expression '" + expression + "'");
+    }
+  }
+
+  private static boolean isSupported(BinaryOperatorKind operator) {
+    return operator == BinaryOperatorKind.AND || operator == BinaryOperatorKind.OR
+        || operator == BinaryOperatorKind.EQ || operator == BinaryOperatorKind.NE
+        || operator == BinaryOperatorKind.LT || operator == BinaryOperatorKind.LE
+        || operator == BinaryOperatorKind.GT || operator == BinaryOperatorKind.GE;
+  }
+
+  /**
+   * Converts a literal into a value, using the type of the property it is compared to, if any,
+   * or else the type of the literal.
+   */
+  private void convertLiteral(Expression expression, Expression other) throws ODataApplicationException {
+    if (!(expression instanceof Literal)) {
+      return;
+    }
+    final Literal literal = (Literal) expression;
+    if (other instanceof Member) {
+      final EdmProperty property = getPropertyReference((Member) other).property;
+      final EdmPrimitiveType type = (EdmPrimitiveType) property.getType();
+      literalValues.put(literal, parseLiteral(literal, type, property.isNullable(), property.getMaxLength(),
+          property.getPrecision(), property.getScale(), property.isUnicode()));
+    } else if (!literalValues.containsKey(literal)) {
+      final EdmType type = literal.getType();
+      if (type != null && !(type instanceof EdmPrimitiveType)) {
+        throw notImplemented("Literal '" + literal.getText() + "'");
+      }
+      literalValues.put(literal, type == null ? null :
+          parseLiteral(literal, (EdmPrimitiveType) type, null, null, null, null, null));
+    }
+  }
+
+  private static Object parseLiteral(Literal literal, EdmPrimitiveType type, Boolean isNullable,
+      Integer maxLength, Integer precision, Integer scale, Boolean isUnicode) throws ODataApplicationException {
+    if ("null".equals(literal.getText())) {
+      return null;
+    }
+    try {
+      return type.valueOfString(type.fromUriLiteral(literal.getText()),
+          isNullable, maxLength, precision, scale, isUnicode, type.getDefaultType());
+    } catch (EdmPrimitiveTypeException e) {
+      throw new ODataApplicationException("Invalid literal '" + literal.getText() + "'.",
+          HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ROOT);
+    }
+  }
+
+  private PropertyReference getPropertyReference(Member member) throws ODataApplicationException {
+    final List<UriResource> parts = member.getResourcePath().getUriResourceParts();
+    if (member.getStartTypeFilter() == null && parts.size() == 2
+        && parts.get(0) instanceof UriResourceEntitySet
+        && parts.get(1) instanceof UriResourcePrimitiveProperty
+        && !((UriResourcePrimitiveProperty) parts.get(1)).isCollection()) {
+      final int entitySet = entitySetNames.indexOf(((UriResourceEntitySet) parts.get(0)).getEntitySet().getName());
+      if (entitySet >= 0) {
+        return new PropertyReference(entitySet, ((UriResourcePrimitiveProperty) parts.get(1)).getProperty());
+      }
+    }
+    throw notImplemented("Member '" + member.getResourcePath().getUriResourceParts() + "'");
+  }
+
+  private static ODataApplicationException notImplemented(String what) {
+    return new ODataApplicationException(what + " is not supported in cross joins.",
+        HttpStatusCode.NOT_IMPLEMENTED.getStatusCode(), Locale.ROOT);
+  }
+
+  private Object evaluate(Expression expression, Entity[] tuple) throws ODataApplicationException {
+    if (expression instanceof Binary) {
+      final Binary binary = (Binary) expression;
+      final BinaryOperatorKind operator = binary.getOperator();
+      final Object left = evaluate(binary.getLeftOperand(), tuple);
+      if (operator == BinaryOperatorKind.AND && !isTrue(left)) {
+        return false;
+      } else if (operator == BinaryOperatorKind.OR && isTrue(left)) {
+        return true;
+      }
+      final Object right = evaluate(binary.getRightOperand(), tuple);
+      return operator == BinaryOperatorKind.AND || operator == BinaryOperatorKind.OR ?
+          isTrue(right) :
+          compare(operator, normalize(left), normalize(right));
+    } else if (expression instanceof Unary) {
+      return !isTrue(evaluate(((Unary) expression).getOperand(), tuple));
+    } else if (expression instanceof Member) {
+      return getValue(tuple, getPropertyReference((Member) expression));
+    } else {
+      return literalValues.get(expression);
+    }
+  }
+
+  private static boolean isTrue(Object value) {
+    return Boolean.TRUE.equals(value);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static boolean compare(BinaryOperatorKind operator, Object left, Object right) {
+    if (operator == BinaryOperatorKind.EQ) {
+      return left == null ? right == null : left.equals(right);
+    } else if (operator == BinaryOperatorKind.NE) {
+      return left == null ? right != null : !left.equals(right);
+    } else if (left == null || right == null || left.getClass() != right.getClass()
+        || !(left instanceof Comparable)) {
+      return false;
+    }
+    final int comparison = ((Comparable<Object>) left).compareTo(right);
+    return operator == BinaryOperatorKind.LT ? comparison < 0 :
+        operator == BinaryOperatorKind.LE ? comparison <= 0 :
+        operator == BinaryOperatorKind.GT ? comparison > 0 :
+        comparison >= 0;
+  }
+
+  private static Object getValue(Entity[] tuple, PropertyReference reference) {
+    final Property property = tuple[reference.entitySet].getProperty(reference.property.getName());
+    return property == null ? null : property.getValue();
+  }
+
+  /**
+   * Normalizes a value so that equal values of different Java types are equal:
+   * numbers are converted to decimals without trailing zeros, dates and times to their milliseconds.
+   */
+  private static Object normalize(Object value) {
+    if (value instanceof BigDecimal || value instanceof BigInteger || value instanceof Byte
+        || value instanceof Short || value instanceof Integer || value instanceof Long
+        || value instanceof Float && !((Float) value).isNaN() && !((Float) value).isInfinite()
+        || value instanceof Double && !((Double) value).isNaN() && !((Double) value).isInfinite()) {
+      final BigDecimal decimal = value instanceof BigDecimal ? (BigDecimal) value :
+          value instanceof BigInteger ? new BigDecimal((BigInteger) value) :
+          value instanceof Float || value instanceof Double ? new BigDecimal(value.toString()) :
+          BigDecimal.valueOf(((Number) value).longValue());
+      return decimal.signum() == 0 ? BigDecimal.ZERO : decimal.stripTrailingZeros();
+    } else if (value instanceof Calendar) {
+      return ((Calendar) value).getTimeInMillis();
+    } else if (value instanceof Date) {
+      return ((Date) value).getTime();
+    } else if (value instanceof byte[]) {
+      return ByteBuffer.wrap((byte[]) value);
+    } else {
+      return value;
+    }
+  }
+
+  private static class PropertyReference {
+    private final int entitySet;
+    private final EdmProperty property;
+
+    private PropertyReference(int entitySet, EdmProperty property) {
+      this.entitySet = entitySet;
+      this.property = property;
+    }
+  }
+
+  private static class JoinCondition {
+    private final PropertyReference left;
+    private final PropertyReference right;
+
+    private JoinCondition(PropertyReference left, PropertyReference right) {
+      this.left = left;
+      this.right = right;
+    }
+  }
+
+  private static class Predicate {
+    private final Expression expression;
+    private final BitSet entitySets;
+
+    private Predicate(Expression expression, BitSet entitySets) {
+      this.expression = expression;
+      this.entitySets = entitySets;
+    }
+  }
+}
@@ -30,6 +30,7 @@ import org.apache.olingo.server.api.ODataRequest;
 import org.apache.olingo.server.api.ODataResponse;
 import org.apache.olingo.server.api.ODataTranslatedException;
 import org.apache.olingo.server.api.ServiceMetadata;
+import org.apache.olingo.server.api.etag.ETagProvider;
 import org.apache.olingo.server.api.processor.Processor;
 import org.apache.olingo.server.api.serializer.CustomContentTypeSupport;
 import org.apache.olingo.server.api.serializer.SerializerException;
@@ -40,6 +41,7 @@ public class OData4HttpHandler extends ODataHttpHandlerImpl {
   private final ServiceMetadata serviceMetadata;
   private final OData odata;
   private CustomContentTypeSupport customContentTypeSupport;
+  private ETagProvider eTagProvider;
 
 
   public OData4HttpHandler(OData odata, ServiceMetadata serviceMetadata) {
@@ -61,7 +63,7 @@ public class OData4HttpHandler extends ODataHttpHandlerImpl {
       validateODataVersion(request, response);
 
       ServiceDispatcher dispatcher = new ServiceDispatcher(this.odata, this.serviceMetadata,
-          handler, this.customContentTypeSupport);
+          handler, this.customContentTypeSupport, this.eTagProvider);
       dispatcher.execute(request, response);
 
     } catch (Exception e) {
@@ -69,7 +71,16 @@ public class OData4HttpHandler extends ODataHttpHandlerImpl {
           this.customContentTypeSupport);
       handler.handleException(e, request, response);
     }
-    convertToHttp(httpResponse, response);
+    convertToHttp(httpRequest, httpResponse, response);
+  }
+
+  /**
+   * Service handlers complete their responses before returning, so there is nothing to wait for:
+   * requests are processed as in {@link #process(HttpServletRequest, HttpServletResponse)}.
+   */
+  @Override
+  public void processAsync(final HttpServletRequest httpRequest, final HttpServletResponse httpResponse) {
+    process(httpRequest, httpResponse);
   }
 
 
@@ -78,7 +89,7 @@ public class OData4HttpHandler extends ODataHttpHandlerImpl {
     try {
       ODataRequest odRequest = new ODataRequest();
 
-      odRequest.setBody(httpRequest.getInputStream());
+      odRequest.setBody(extractBody(httpRequest));
       extractHeaders(odRequest, httpRequest);
       extractMethod(odRequest, httpRequest);
       extractUri(odRequest, httpRequest, split);
@@ -120,4 +131,9 @@ public class OData4HttpHandler extends ODataHttpHandlerImpl {
   public void register(final CustomContentTypeSupport customContentTypeSupport) {
     this.customContentTypeSupport = customContentTypeSupport;
   }
+
+  @Override
+  public void register(final ETagProvider eTagProvider) {
+    this.eTagProvider = eTagProvider;
+  }
 }
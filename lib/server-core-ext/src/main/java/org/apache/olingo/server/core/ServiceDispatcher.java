@@ -30,11 +30,13 @@ import org.apache.olingo.server.api.ODataRequest;
 import org.apache.olingo.server.api.ODataResponse;
 import org.apache.olingo.server.api.ODataTranslatedException;
 import org.apache.olingo.server.api.ServiceMetadata;
+import org.apache.olingo.server.api.etag.ETagProvider;
 import org.apache.olingo.server.api.serializer.CustomContentTypeSupport;
 import org.apache.olingo.server.api.uri.UriInfo;
 import org.apache.olingo.server.api.uri.UriInfoBatch;
 import org.apache.olingo.server.api.uri.UriInfoCrossjoin;
 import org.apache.olingo.server.api.uri.UriInfoEntityId;
+import org.apache.olingo.server.api.uri.UriInfoKind;
 import org.apache.olingo.server.api.uri.UriInfoMetadata;
 import org.apache.olingo.server.api.uri.UriInfoService;
 import org.apache.olingo.server.api.uri.UriResourceAction;
@@ -62,15 +64,22 @@ public class ServiceDispatcher extends RequestURLHierarchyVisitor {
   protected ServiceMetadata metadata;
   protected ServiceHandler handler;
   protected CustomContentTypeSupport customContentSupport;
+  protected ETagProvider eTagProvider;
   private String idOption;
   protected ServiceRequest request;
 
   public ServiceDispatcher(OData odata, ServiceMetadata metadata, ServiceHandler handler,
       CustomContentTypeSupport customContentSupport) {
+    this(odata, metadata, handler, customContentSupport, null);
+  }
+
+  public ServiceDispatcher(OData odata, ServiceMetadata metadata, ServiceHandler handler,
+      CustomContentTypeSupport customContentSupport, ETagProvider eTagProvider) {
     this.odata = odata;
     this.metadata = metadata;
     this.handler = handler;
     this.customContentSupport = customContentSupport;
+    this.eTagProvider = eTagProvider;
   }
 
   public void execute(ODataRequest odRequest, ODataResponse odResponse)
@@ -81,6 +90,12 @@ public class ServiceDispatcher extends RequestURLHierarchyVisitor {
 
     new UriValidator().validate(uriInfo, odRequest.getMethod());
 
+    // answer conditional requests without calling the service handler if possible
+    if (this.eTagProvider != null && uriInfo.getKind() == UriInfoKind.resource
+        && Preconditions.evaluate(this.eTagProvider, odRequest, uriInfo, odResponse)) {
+      return;
+    }
+
     visit(uriInfo);
 
     // this should cover for any unsupported calls until they are implemented
@@ -258,7 +258,8 @@ public interface ServiceHandler extends Processor {
   void rollback(String txnId) throws ODataTranslatedException, ODataApplicationException;;
 
   /**
-   * This is not complete, more URL parsing changes required. Cross join between two entities.
+   * Cross join between entity sets. The tuples can be computed with a {@link CrossJoinExecutor}
+   * and written with a {@link org.apache.olingo.server.core.responses.CrossJoinResponse}.
    * @param dataRequest
    * @param entitySetNames
    * @param response
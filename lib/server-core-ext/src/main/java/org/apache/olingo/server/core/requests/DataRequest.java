@@ -26,7 +26,6 @@ import java.net.URISyntaxException;
 import java.util.LinkedList;
 import java.util.List;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.olingo.commons.api.data.ContextURL;
 import org.apache.olingo.commons.api.data.ContextURL.Suffix;
 import org.apache.olingo.commons.api.data.Entity;
@@ -80,6 +79,7 @@ import org.apache.olingo.server.core.responses.NoContentResponse;
 import org.apache.olingo.server.core.responses.PrimitiveValueResponse;
 import org.apache.olingo.server.core.responses.PropertyResponse;
 import org.apache.olingo.server.core.responses.StreamResponse;
+import org.apache.olingo.server.core.serializer.utils.BufferPool;
 import org.apache.olingo.server.core.uri.parser.UriParserSemanticException;
 
 public class DataRequest extends ServiceRequest {
@@ -693,7 +693,7 @@ public class DataRequest extends ServiceRequest {
 
     @Override
     public ContextURL getContextURL(OData odata) throws SerializerException {
-      ContextURL.Builder builder = ContextURL.with().asCollection();
+      ContextURL.Builder builder = ContextURL.with().asCollection().entitySetOrSingletonOrType("Edm.ComplexType");
       return builder.build();
     }
   }
@@ -708,20 +708,12 @@ public class DataRequest extends ServiceRequest {
   private Object getRawValueFromClient(
       EdmProperty edmProperty) throws DeserializerException {
     ByteArrayOutputStream bos = new ByteArrayOutputStream(1024);
-    byte[] buffer = new byte[1024];
-    int read = 0;
-    do {
-      try {
-        read = IOUtils.read(getODataRequest().getBody(), buffer, 0, 1024);
-        bos.write(buffer, 0, read);
-        if (read < 1024) {
-          break;
-        }
-      } catch (IOException e) {
-        new DeserializerException("Error reading raw value",
-            SerializerException.MessageKeys.IO_EXCEPTION);
-      }
-    } while (true);
+    try {
+      BufferPool.getDefault().copy(getODataRequest().getBody(), bos);
+    } catch (IOException e) {
+      throw new DeserializerException("Error reading raw value", e,
+          SerializerException.MessageKeys.IO_EXCEPTION);
+    }
     return bos.toByteArray(); 
   }  
 
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.responses;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.olingo.commons.api.Constants;
+import org.apache.olingo.commons.api.data.ContextURL;
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.edm.EdmEntitySet;
+import org.apache.olingo.commons.api.format.ODataFormat;
+import org.apache.olingo.server.api.ServiceMetadata;
+import org.apache.olingo.server.api.serializer.SerializerException;
+import org.apache.olingo.server.api.serializer.SerializerResult;
+import org.apache.olingo.server.api.uri.UriHelper;
+import org.apache.olingo.server.api.uri.UriResource;
+import org.apache.olingo.server.api.uri.UriResourceEntitySet;
+import org.apache.olingo.server.api.uri.queryoption.ExpandItem;
+import org.apache.olingo.server.api.uri.queryoption.ExpandOption;
+import org.apache.olingo.server.core.serializer.SerializerResultImpl;
+import org.apache.olingo.server.core.serializer.json.ODataJsonSerializer;
+import org.apache.olingo.server.core.serializer.utils.CircleStreamBuffer;
+import org.apache.olingo.server.core.serializer.utils.ContextURLBuilder;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Writes the result of a cross join as collection of complex instances with one property per entity set.
+ * Entity sets named in $expand are written as entities with the $select and $expand options of their
+ * expand item; the other entity sets are written as navigation links, unless no metadata is requested.
+ */
+class CrossJoinJsonSerializer extends ODataJsonSerializer {
+  private final ODataFormat format;
+  private final UriHelper uriHelper;
+
+  CrossJoinJsonSerializer(ODataFormat format, UriHelper uriHelper) {
+    super(format);
+    this.format = format;
+    this.uriHelper = uriHelper;
+  }
+
+  SerializerResult crossJoin(ServiceMetadata metadata, List<EdmEntitySet> entitySets,
+      List<Map<String, Entity>> tuples, ContextURL contextURL, ExpandOption expand) throws SerializerException {
+    CircleStreamBuffer buffer = new CircleStreamBuffer();
+    try {
+      JsonGenerator json = new JsonFactory().createGenerator(buffer.getOutputStream());
+      json.writeStartObject();
+      if (contextURL != null && format != ODataFormat.JSON_NO_METADATA) {
+        json.writeStringField(Constants.JSON_CONTEXT, ContextURLBuilder.create(contextURL).toASCIIString());
+      }
+      json.writeFieldName(Constants.VALUE);
+      json.writeStartArray();
+      for (Map<String, Entity> tuple : tuples) {
+        json.writeStartObject();
+        for (EdmEntitySet entitySet : entitySets) {
+          final Entity entity = tuple.get(entitySet.getName());
+          final ExpandItem expandItem = getExpandItem(expand, entitySet.getName());
+          if (expandItem != null) {
+            if (expandItem.isRef() || expandItem.getLevelsOption() != null) {
+              throw new SerializerException("Expand options $ref and $levels are not supported.",
+                  SerializerException.MessageKeys.NOT_IMPLEMENTED);
+            }
+            json.writeFieldName(entitySet.getName());
+            writeEntity(metadata, entitySet.getEntityType(), entity, null,
+                expandItem.getExpandOption(), expandItem.getSelectOption(), false, json);
+          } else if (format != ODataFormat.JSON_NO_METADATA) {
+            json.writeStringField(entitySet.getName() + Constants.JSON_NAVIGATION_LINK,
+                uriHelper.buildCanonicalURL(entitySet, entity));
+          }
+        }
+        json.writeEndObject();
+      }
+      json.writeEndArray();
+      json.close();
+    } catch (final IOException e) {
+      throw new SerializerException("An I/O exception occurred.", e,
+          SerializerException.MessageKeys.IO_EXCEPTION);
+    }
+    return SerializerResultImpl.with().content(buffer.getInputStream()).build();
+  }
+
+  /** Gets the expand item for an entity set; the options of a star item are empty. */
+  private static ExpandItem getExpandItem(ExpandOption expand, String entitySetName) {
+    if (expand != null) {
+      for (ExpandItem item : expand.getExpandItems()) {
+        if (item.isStar()) {
+          return item;
+        }
+        final List<UriResource> parts = item.getResourcePath() == null ? null :
+            item.getResourcePath().getUriResourceParts();
+        if (parts != null && !parts.isEmpty() && parts.get(0) instanceof UriResourceEntitySet
+            && ((UriResourceEntitySet) parts.get(0)).getEntitySet().getName().equals(entitySetName)) {
+          return item;
+        }
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.responses;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.olingo.commons.api.data.ContextURL;
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.edm.EdmEntitySet;
+import org.apache.olingo.commons.api.format.ContentType;
+import org.apache.olingo.commons.api.format.ODataFormat;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.ODataResponse;
+import org.apache.olingo.server.api.ODataServerError;
+import org.apache.olingo.server.api.ODataTranslatedException;
+import org.apache.olingo.server.api.ServiceMetadata;
+import org.apache.olingo.server.api.serializer.SerializerException;
+import org.apache.olingo.server.api.uri.queryoption.ExpandOption;
+import org.apache.olingo.server.core.ContentNegotiatorException;
+import org.apache.olingo.server.core.ServiceRequest;
+
+/**
+ * Response to a $crossjoin request; the tuples are typically computed by a
+ * {@link org.apache.olingo.server.core.CrossJoinExecutor}.
+ */
+public class CrossJoinResponse extends ServiceResponse {
+  private final CrossJoinJsonSerializer serializer;
+  private final ContextURL contextURL;
+  private final ExpandOption expand;
+  private final ContentType responseContentType;
+
+  private CrossJoinResponse(ServiceMetadata metadata, ODataResponse response, CrossJoinJsonSerializer serializer,
+      ContextURL contextURL, ExpandOption expand, ContentType responseContentType,
+      Map<String, String> preferences) {
+    super(metadata, response, preferences);
+    this.serializer = serializer;
+    this.contextURL = contextURL;
+    this.expand = expand;
+    this.responseContentType = responseContentType;
+  }
+
+  public static CrossJoinResponse getInstance(ServiceRequest request, ContextURL contextURL,
+      ODataResponse response) throws ContentNegotiatorException, SerializerException {
+    final ODataFormat format = ODataFormat.fromContentType(request.getResponseContentType());
+    if (format != ODataFormat.JSON && format != ODataFormat.JSON_NO_METADATA
+        && format != ODataFormat.JSON_FULL_METADATA) {
+      throw new SerializerException("Cross joins not implemented for format " + format,
+          SerializerException.MessageKeys.NOT_IMPLEMENTED);
+    }
+    return new CrossJoinResponse(request.getServiceMetaData(), response,
+        new CrossJoinJsonSerializer(format, request.getOdata().createUriHelper()), contextURL,
+        request.getUriInfo().getExpandOption(), request.getResponseContentType(), request.getPreferences());
+  }
+
+  /**
+   * Writes the tuples of a cross join.
+   * @param entitySets the joined entity sets, in the order of the $crossjoin request
+   * @param tuples     the entities of each tuple by entity-set name
+   */
+  public void writeCrossJoin(List<EdmEntitySet> entitySets, List<Map<String, Entity>> tuples)
+      throws SerializerException {
+    assert (!isClosed());
+
+    this.response.setContent(this.serializer.crossJoin(this.metadata, entitySets, tuples, this.contextURL,
+        this.expand).getContent());
+    writeOK(this.responseContentType.toContentTypeString());
+    close();
+  }
+
+  @Override
+  public void accepts(ServiceResponseVisior visitor) throws ODataTranslatedException,
+      ODataApplicationException {
+    visitor.visit(this);
+  }
+
+  public void writeError(ODataServerError error) {
+    try {
+      writeContent(this.serializer.error(error).getContent(), error.getStatusCode(), true);
+    } catch (SerializerException e) {
+      writeServerError(true);
+    }
+  }
+}
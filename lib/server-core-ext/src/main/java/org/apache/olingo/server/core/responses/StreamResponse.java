@@ -19,7 +19,9 @@
 package org.apache.olingo.server.core.responses;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.util.Collections;
 
 import org.apache.olingo.commons.api.format.ContentType;
@@ -46,6 +48,17 @@ public class StreamResponse extends ServiceResponse {
     close();
   }
 
+  /**
+   * Writes the complete content of a file channel; the channel is transferred to the client
+   * without copying it through an input stream, and byte ranges of it can be requested.
+   * The channel is closed after the response has been written.
+   */
+  public void writeChannelResponse(FileChannel streamContent, ContentType contentType) throws IOException {
+    this.response.setContent(streamContent, 0, streamContent.size());
+    writeOK(contentType.toContentTypeString());
+    close();
+  }
+
   @Override
   public void accepts(ServiceResponseVisior visitor) throws ODataTranslatedException,
       ODataApplicationException {
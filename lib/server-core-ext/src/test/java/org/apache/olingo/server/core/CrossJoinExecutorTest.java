@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.data.ValueType;
+import org.apache.olingo.commons.api.edm.EdmEntitySet;
+import org.apache.olingo.commons.api.edm.EdmPrimitiveTypeKind;
+import org.apache.olingo.commons.api.edm.EdmProperty;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.commons.core.edm.primitivetype.EdmPrimitiveTypeFactory;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.UriInfoKind;
+import org.apache.olingo.server.api.uri.queryoption.expression.BinaryOperatorKind;
+import org.apache.olingo.server.core.uri.UriInfoImpl;
+import org.apache.olingo.server.core.uri.UriResourceEntitySetImpl;
+import org.apache.olingo.server.core.uri.UriResourcePrimitivePropertyImpl;
+import org.apache.olingo.server.core.uri.queryoption.FilterOptionImpl;
+import org.apache.olingo.server.core.uri.queryoption.expression.BinaryImpl;
+import org.apache.olingo.server.core.uri.queryoption.expression.ExpressionImpl;
+import org.apache.olingo.server.core.uri.queryoption.expression.LiteralImpl;
+import org.apache.olingo.server.core.uri.queryoption.expression.MemberImpl;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class CrossJoinExecutorTest {
+  private static final List<String> ENTITY_SETS = Arrays.asList("Products", "Sales");
+
+  private final Map<String, EntityCollection> data = new HashMap<String, EntityCollection>();
+
+  public CrossJoinExecutorTest() {
+    data.put("Products", collection(
+        entity("ID", 1, "Name", "Pen"), entity("ID", 2, "Name", "Ink"), entity("ID", 3, "Name", "Pad")));
+    data.put("Sales", collection(
+        entity("ProductID", 1L, "Amount", 10), entity("ProductID", 1L, "Amount", 20),
+        entity("ProductID", 3L, "Amount", 30), entity("ProductID", 4L, "Amount", 40)));
+  }
+
+  @Test
+  public void cartesianProduct() throws Exception {
+    final List<Map<String, Entity>> result = new CrossJoinExecutor(ENTITY_SETS, null).execute(data);
+    assertEquals(12, result.size());
+    assertEquals(ENTITY_SETS, Arrays.asList(result.get(0).keySet().toArray()));
+  }
+
+  @Test
+  public void hashJoin() throws Exception {
+    final List<Map<String, Entity>> result = new CrossJoinExecutor(ENTITY_SETS,
+        filter(binary(member("Products", "ID"), BinaryOperatorKind.EQ, member("Sales", "ProductID"))))
+        .execute(data);
+    assertEquals(3, result.size());
+    for (Map<String, Entity> tuple : result) {
+      assertEquals(tuple.get("Products").getProperty("ID").getValue(),
+          ((Long) tuple.get("Sales").getProperty("ProductID").getValue()).intValue());
+    }
+    assertSame(data.get("Products").getEntities().get(0), result.get(0).get("Products"));
+  }
+
+  @Test
+  public void joinWithPredicates() throws Exception {
+    final BinaryImpl join = binary(member("Sales", "ProductID"), BinaryOperatorKind.EQ, member("Products", "ID"));
+    final BinaryImpl amount = binary(member("Sales", "Amount"), BinaryOperatorKind.GT, literal("15"));
+    List<Map<String, Entity>> result = new CrossJoinExecutor(ENTITY_SETS,
+        filter(binary(join, BinaryOperatorKind.AND, amount))).execute(data);
+    assertEquals(2, result.size());
+
+    result = new CrossJoinExecutor(ENTITY_SETS,
+        filter(binary(member("Products", "ID"), BinaryOperatorKind.NE, member("Sales", "ProductID"))))
+        .execute(data);
+    assertEquals(9, result.size());
+
+    result = new CrossJoinExecutor(ENTITY_SETS,
+        filter(binary(binary(member("Products", "Name"), BinaryOperatorKind.EQ, literal("'Pad'")),
+            BinaryOperatorKind.OR, amount)))
+        .execute(data);
+    assertEquals(10, result.size());
+  }
+
+  @Test
+  public void unsupportedExpression() throws Exception {
+    try {
+      new CrossJoinExecutor(ENTITY_SETS,
+          filter(binary(binary(member("Sales", "Amount"), BinaryOperatorKind.ADD, literal("1")),
+              BinaryOperatorKind.GT, literal("15"))));
+      fail("Expected an ODataApplicationException");
+    } catch (ODataApplicationException e) {
+      assertEquals(HttpStatusCode.NOT_IMPLEMENTED.getStatusCode(), e.getStatusCode());
+    }
+  }
+
+  private static EntityCollection collection(Entity... entities) {
+    EntityCollection collection = new EntityCollection();
+    collection.getEntities().addAll(Arrays.asList(entities));
+    return collection;
+  }
+
+  private static Entity entity(String name1, Object value1, String name2, Object value2) {
+    return new Entity()
+        .addProperty(new Property(null, name1, ValueType.PRIMITIVE, value1))
+        .addProperty(new Property(null, name2, ValueType.PRIMITIVE, value2));
+  }
+
+  private static FilterOptionImpl filter(ExpressionImpl expression) {
+    return new FilterOptionImpl().setExpression(expression);
+  }
+
+  private static BinaryImpl binary(ExpressionImpl left, BinaryOperatorKind operator, ExpressionImpl right) {
+    BinaryImpl binary = new BinaryImpl();
+    binary.setOperator(operator);
+    binary.setLeftOperand(left);
+    binary.setRightOperand(right);
+    return binary;
+  }
+
+  private static LiteralImpl literal(String text) {
+    return new LiteralImpl().setText(text);
+  }
+
+  private static MemberImpl member(String entitySetName, String propertyName) {
+    EdmEntitySet entitySet = Mockito.mock(EdmEntitySet.class);
+    Mockito.when(entitySet.getName()).thenReturn(entitySetName);
+    EdmProperty property = Mockito.mock(EdmProperty.class);
+    Mockito.when(property.getName()).thenReturn(propertyName);
+    Mockito.when(property.getType()).thenReturn(EdmPrimitiveTypeFactory.getInstance(
+        propertyName.equals("Name") ? EdmPrimitiveTypeKind.String : EdmPrimitiveTypeKind.Int32));
+    Mockito.when(property.isNullable()).thenReturn(true);
+
+    MemberImpl member = new MemberImpl();
+    member.setResourcePath(new UriInfoImpl().setKind(UriInfoKind.resource)
+        .addResourcePart(new UriResourceEntitySetImpl().setEntitSet(entitySet))
+        .addResourcePart(new UriResourcePrimitivePropertyImpl().setProperty(property)));
+    return member;
+  }
+}
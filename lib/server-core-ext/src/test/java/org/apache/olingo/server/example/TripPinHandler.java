@@ -22,8 +22,11 @@ import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Random;
 
 import org.apache.olingo.commons.api.data.Entity;
@@ -46,6 +49,7 @@ import org.apache.olingo.server.api.ODataTranslatedException;
 import org.apache.olingo.server.api.ServiceMetadata;
 import org.apache.olingo.server.api.uri.UriParameter;
 import org.apache.olingo.server.api.uri.UriResourceNavigation;
+import org.apache.olingo.server.core.CrossJoinExecutor;
 import org.apache.olingo.server.core.ServiceHandler;
 import org.apache.olingo.server.core.requests.ActionRequest;
 import org.apache.olingo.server.core.requests.DataRequest;
@@ -54,6 +58,7 @@ import org.apache.olingo.server.core.requests.MediaRequest;
 import org.apache.olingo.server.core.requests.MetadataRequest;
 import org.apache.olingo.server.core.requests.ServiceDocumentRequest;
 import org.apache.olingo.server.core.responses.CountResponse;
+import org.apache.olingo.server.core.responses.CrossJoinResponse;
 import org.apache.olingo.server.core.responses.EntityResponse;
 import org.apache.olingo.server.core.responses.EntitySetResponse;
 import org.apache.olingo.server.core.responses.MetadataResponse;
@@ -541,7 +546,17 @@ public class TripPinHandler implements ServiceHandler {
   }
 
   @Override
-  public void crossJoin(DataRequest dataRequest, List<String> entitySetNames, ODataResponse response) {
-    response.setStatusCode(200);
+  public void crossJoin(DataRequest dataRequest, List<String> entitySetNames, ODataResponse response)
+      throws ODataTranslatedException, ODataApplicationException {
+    List<EdmEntitySet> entitySets = new ArrayList<EdmEntitySet>();
+    Map<String, EntityCollection> data = new HashMap<String, EntityCollection>();
+    for (String entitySetName : entitySetNames) {
+      entitySets.add(this.serviceMetadata.getEdm().getEntityContainer(null).getEntitySet(entitySetName));
+      data.put(entitySetName, this.dataModel.getEntitySet(entitySetName));
+    }
+    CrossJoinExecutor executor = new CrossJoinExecutor(entitySetNames,
+        dataRequest.getUriInfo().getFilterOption());
+    CrossJoinResponse.getInstance(dataRequest, dataRequest.getContextURL(this.odata), response)
+        .writeCrossJoin(entitySets, executor.execute(data));
   }
 }
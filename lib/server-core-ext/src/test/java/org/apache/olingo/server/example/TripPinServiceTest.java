@@ -730,6 +730,43 @@ public class TripPinServiceTest {
   public void testCrossJoin() throws Exception {
     String editUrl = baseURL + "/$crossjoin(People,Airlines)";
     HttpResponse response = httpGET(editUrl, 200);
+    JsonNode node = getJSONNode(response);
+    assertEquals("$metadata#Collection(Edm.ComplexType)", node.get("@odata.context").asText());
+    assertTrue(node.get("value").size() > 0);
+    assertTrue(node.get("value").get(0).has("People@odata.navigationLink"));
+    assertTrue(node.get("value").get(0).has("Airlines@odata.navigationLink"));
+  }
+
+  @Test
+  public void testCrossJoinWithJoinCondition() throws Exception {
+    // no person has the name of an airline, so one is created
+    String payload = "{\n" +
+        "         \"UserName\":\"emiratesflyer\",\n" +
+        "         \"FirstName\":\"Emirates\",\n" +
+        "         \"LastName\":\"Flyer\",\n" +
+        "         \"Emails\":[],\n" +
+        "         \"AddressInfo\":[],\n" +
+        "         \"Gender\":\"1\",\n" +
+        "         \"Concurrency\":635585295719432047\n" +
+        "}";
+    HttpPost postRequest = new HttpPost(baseURL + "/People");
+    postRequest.setEntity(new StringEntity(payload, ContentType.APPLICATION_JSON));
+    postRequest.addHeader("Prefer", "return=minimal");
+    HttpResponse response = httpSend(postRequest, 204);
+    String location = getHeader(response, "Location");
+    EntityUtils.consumeQuietly(response.getEntity());
+
+    String query = "People/FirstName eq Airlines/Name";
+    response = httpGET(baseURL + "/$crossjoin(People,Airlines)?$filter=" + Encoder.encode(query), 200);
+    JsonNode node = getJSONNode(response);
+    assertEquals(1, node.get("value").size());
+    assertTrue(node.get("value").get(0).get("People@odata.navigationLink").asText()
+        .endsWith("People('emiratesflyer')"));
+    assertTrue(node.get("value").get(0).get("Airlines@odata.navigationLink").asText()
+        .endsWith("Airlines('EK')"));
+
+    HttpDelete deleteRequest = new HttpDelete(location);
+    response = httpSend(deleteRequest, 204);
     EntityUtils.consumeQuietly(response.getEntity());
   }
 }
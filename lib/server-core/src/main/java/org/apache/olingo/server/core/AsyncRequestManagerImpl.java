@@ -0,0 +1,429 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.olingo.commons.api.ODataRuntimeException;
+import org.apache.olingo.commons.api.edm.constants.ODataServiceVersion;
+import org.apache.olingo.commons.api.http.HttpContentType;
+import org.apache.olingo.commons.api.http.HttpHeader;
+import org.apache.olingo.commons.api.http.HttpMethod;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.AsyncRequestManager;
+import org.apache.olingo.server.api.ODataRequest;
+import org.apache.olingo.server.api.ODataResponse;
+import org.apache.olingo.server.api.serializer.SerializerException;
+import org.apache.olingo.server.core.deserializer.batch.BatchParserCommon;
+import org.apache.olingo.server.core.serializer.utils.BufferPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Processes requests which prefer asynchronous processing in a bounded thread pool.</p>
+ * <p>The final responses are spooled, in memory or, above a threshold, to a temporary file, and kept until
+ * they are retrieved through their status monitor, deleted, or expired; expired results are purged whenever
+ * the manager is accessed.</p>
+ */
+public class AsyncRequestManagerImpl implements AsyncRequestManager {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AsyncRequestManagerImpl.class);
+
+  /** Path of the status monitor resources, relative to the service root. */
+  static final String MONITOR_PATH = "/$async/";
+
+  static final String RESPOND_ASYNC = "respond-async";
+  /** Suggested polling interval in seconds. */
+  static final int RETRY_AFTER = 1;
+
+  private static final int BUFFER_SIZE = 4096;
+  private static final int SPOOL_THRESHOLD = 1024 * 1024;
+  private static final String CRLF = "\r\n";
+  private static final String CHARSET = "UTF-8";
+
+  private final Map<String, Job> jobs = new LinkedHashMap<String, Job>();
+  private final ThreadPoolExecutor executor;
+  private final int maxRequests;
+  private final long resultTimeToLive;
+  private boolean shutdown = false;
+
+  public AsyncRequestManagerImpl(final int maxThreads, final int maxRequests, final long resultTimeToLive) {
+    if (maxThreads < 1 || maxRequests < 1 || resultTimeToLive < 0) {
+      throw new IllegalArgumentException("Invalid limits: " + maxThreads + " threads, "
+          + maxRequests + " requests, time to live " + resultTimeToLive);
+    }
+    this.maxRequests = maxRequests;
+    this.resultTimeToLive = resultTimeToLive;
+    executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(maxRequests), new WorkerThreadFactory());
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Handles the request if it addresses a status monitor or prefers asynchronous processing.
+   * @param handler the handler which processes the request in the background
+   * @return the response, or <code>null</code> if the request has to be processed synchronously
+   */
+  public ODataResponse handle(final ODataHandler handler, final ODataRequest request)
+      throws ODataHandlerException, SerializerException {
+    final String path = request.getRawODataPath();
+    if (path != null && path.startsWith(MONITOR_PATH)) {
+      return processMonitorRequest(request, path.substring(MONITOR_PATH.length()));
+    }
+    return isRespondAsyncPreferred(request) ? submit(handler, request) : null;
+  }
+
+  @Override
+  public synchronized int getPendingCount() {
+    int count = 0;
+    for (final Job job : jobs.values()) {
+      if (job.result == null) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public synchronized int getCompletedCount() {
+    purgeExpired();
+    return jobs.size() - getPendingCount();
+  }
+
+  @Override
+  public void shutdown() {
+    synchronized (this) {
+      shutdown = true;
+      for (final Job job : jobs.values()) {
+        if (job.result != null) {
+          job.result.discard();
+        }
+      }
+      jobs.clear();
+    }
+    executor.shutdownNow();
+  }
+
+  static boolean isRespondAsyncPreferred(final ODataRequest request) {
+    final List<String> values = request.getHeaders(HttpHeader.PREFER);
+    if (values != null) {
+      for (final String value : values) {
+        for (final String preference : value.split(",")) {
+          if (RESPOND_ASYNC.equalsIgnoreCase(preference.split("[=;]", 2)[0].trim())) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  private ODataResponse submit(final ODataHandler handler, final ODataRequest request) throws SerializerException {
+    final Job job = reserve();
+    if (job == null) {
+      return null;
+    }
+    try {
+      // The container recycles the request stream as soon as the synchronous part of the request is over.
+      request.setBody(new ByteArrayInputStream(readBody(request.getBody())));
+      job.future = executor.submit(new Runnable() {
+        @Override
+        public void run() {
+          complete(job, execute(handler, request));
+        }
+      });
+    } catch (final IOException e) {
+      release(job);
+      throw new SerializerException("An I/O exception occurred.", e, SerializerException.MessageKeys.IO_EXCEPTION);
+    } catch (final RejectedExecutionException e) {
+      release(job);
+      return null;
+    }
+
+    final ODataResponse response = new ODataResponse();
+    response.setStatusCode(HttpStatusCode.ACCEPTED.getStatusCode());
+    response.setHeader(HttpHeader.ODATA_VERSION, ODataServiceVersion.V40.toString());
+    response.setHeader(HttpHeader.PREFERENCE_APPLIED, RESPOND_ASYNC);
+    response.setHeader(HttpHeader.LOCATION, request.getRawBaseUri() + MONITOR_PATH + job.id);
+    response.setHeader(HttpHeader.RETRY_AFTER, String.valueOf(RETRY_AFTER));
+    return response;
+  }
+
+  private ODataResponse processMonitorRequest(final ODataRequest request, final String id)
+      throws ODataHandlerException {
+    final HttpMethod method = request.getMethod();
+    if (method != HttpMethod.GET && method != HttpMethod.DELETE) {
+      throw new ODataHandlerException("HTTP method not allowed for status monitor: " + method,
+          ODataHandlerException.MessageKeys.HTTP_METHOD_NOT_ALLOWED, String.valueOf(method));
+    }
+
+    Job job;
+    Result result;
+    synchronized (this) {
+      purgeExpired();
+      job = jobs.get(id);
+      if (job == null) {
+        throw new ODataHandlerException("No asynchronous request for monitor " + id,
+            ODataHandlerException.MessageKeys.ASYNC_REQUEST_NOT_FOUND, id);
+      }
+      result = job.result;
+      if (result != null || method == HttpMethod.DELETE) {
+        jobs.remove(id);
+      }
+    }
+
+    final ODataResponse response = new ODataResponse();
+    response.setHeader(HttpHeader.ODATA_VERSION, ODataServiceVersion.V40.toString());
+    if (method == HttpMethod.DELETE) {
+      if (result == null) {
+        job.cancel();
+      } else {
+        result.discard();
+      }
+      response.setStatusCode(HttpStatusCode.NO_CONTENT.getStatusCode());
+    } else if (result == null) {
+      response.setStatusCode(HttpStatusCode.ACCEPTED.getStatusCode());
+      response.setHeader(HttpHeader.LOCATION, request.getRawBaseUri() + MONITOR_PATH + id);
+      response.setHeader(HttpHeader.RETRY_AFTER, String.valueOf(RETRY_AFTER));
+    } else {
+      try {
+        response.setContent(result.open());
+      } catch (final IOException e) {
+        result.discard();
+        throw new ODataRuntimeException(e);
+      }
+      response.setStatusCode(HttpStatusCode.OK.getStatusCode());
+      response.setHeader(HttpHeader.CONTENT_TYPE, HttpContentType.APPLICATION_HTTP);
+      response.setHeader(BatchParserCommon.HTTP_CONTENT_TRANSFER_ENCODING, BatchParserCommon.BINARY_ENCODING);
+    }
+    return response;
+  }
+
+  private synchronized Job reserve() {
+    purgeExpired();
+    if (shutdown || jobs.size() >= maxRequests) {
+      return null;
+    }
+    final Job job = new Job(UUID.randomUUID().toString());
+    jobs.put(job.id, job);
+    return job;
+  }
+
+  private synchronized void release(final Job job) {
+    jobs.remove(job.id);
+  }
+
+  private void complete(final Job job, final Result result) {
+    synchronized (this) {
+      if (jobs.get(job.id) == job) {
+        job.result = result;
+        job.expiresAt = System.currentTimeMillis() + resultTimeToLive;
+        return;
+      }
+    }
+    // The request has been cancelled in the meantime.
+    result.discard();
+  }
+
+  private void purgeExpired() {
+    final long now = System.currentTimeMillis();
+    for (final Iterator<Entry<String, Job>> iterator = jobs.entrySet().iterator(); iterator.hasNext();) {
+      final Job job = iterator.next().getValue();
+      if (job.result != null && job.expiresAt <= now) {
+        iterator.remove();
+        job.result.discard();
+      }
+    }
+  }
+
+  private Result execute(final ODataHandler handler, final ODataRequest request) {
+    ODataResponse response;
+    try {
+      response = handler.awaitCompletion(request, handler.process(request));
+    } catch (final RuntimeException e) {
+      response = handler.handleFailure(request, e);
+    }
+    try {
+      return Result.spool(response);
+    } catch (final IOException e) {
+      LOG.error(e.getMessage(), e);
+      final ODataResponse error = new ODataResponse();
+      error.setStatusCode(HttpStatusCode.INTERNAL_SERVER_ERROR.getStatusCode());
+      return new Result(Result.createHead(error, 0), new byte[0], null);
+    }
+  }
+
+  private static byte[] readBody(final InputStream body) throws IOException {
+    if (body == null) {
+      return new byte[0];
+    }
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BufferPool.getDefault().copy(body, out);
+    return out.toByteArray();
+  }
+
+  /** An accepted request; guarded by the manager's lock except for its future. */
+  private static final class Job {
+    private final String id;
+    private volatile Future<?> future;
+    private Result result;
+    private long expiresAt;
+
+    private Job(final String id) {
+      this.id = id;
+    }
+
+    private void cancel() {
+      final Future<?> f = future;
+      if (f != null) {
+        f.cancel(true);
+      }
+    }
+  }
+
+  /** A spooled final response in the format of an HTTP response message. */
+  private static final class Result {
+    private final byte[] head;
+    private final byte[] content;
+    private final File file;
+
+    private Result(final byte[] head, final byte[] content, final File file) {
+      this.head = head;
+      this.content = content;
+      this.file = file;
+    }
+
+    static Result spool(final ODataResponse response) throws IOException {
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      OutputStream out = buffer;
+      File file = null;
+      long length = 0;
+      final InputStream input = response.getContent();
+      final ByteBuffer pooled = BufferPool.getDefault().acquire(BUFFER_SIZE);
+      try {
+        if (input != null) {
+          final byte[] bytes = pooled.array();
+          int n;
+          while ((n = input.read(bytes)) != -1) {
+            if (file == null && length + n > SPOOL_THRESHOLD) {
+              file = File.createTempFile("olingo-async", ".tmp");
+              out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+              buffer.writeTo(out);
+              buffer = null;
+            }
+            out.write(bytes, 0, n);
+            length += n;
+          }
+        }
+        out.close();
+      } catch (final IOException e) {
+        if (file != null) {
+          ODataHttpHandlerImpl.closeStream(out);
+          deleteFile(file);
+        }
+        throw e;
+      } finally {
+        ODataHttpHandlerImpl.closeStream(input);
+        BufferPool.getDefault().release(pooled);
+      }
+      return new Result(createHead(response, length), buffer == null ? null : buffer.toByteArray(), file);
+    }
+
+    private static byte[] createHead(final ODataResponse response, final long contentLength) {
+      final HttpStatusCode statusCode = HttpStatusCode.fromStatusCode(response.getStatusCode());
+      final StringBuilder head = new StringBuilder("HTTP/1.1 ")
+          .append(response.getStatusCode()).append(' ')
+          .append(statusCode == null ? "" : statusCode.getInfo()).append(CRLF);
+      for (final Entry<String, String> header : response.getHeaders().entrySet()) {
+        if (!HttpHeader.CONTENT_LENGTH.equalsIgnoreCase(header.getKey())) {
+          head.append(header.getKey()).append(": ").append(header.getValue()).append(CRLF);
+        }
+      }
+      head.append(HttpHeader.CONTENT_LENGTH).append(": ").append(contentLength).append(CRLF)
+          .append(CRLF);
+      try {
+        return head.toString().getBytes(CHARSET);
+      } catch (final UnsupportedEncodingException e) {
+        throw new ODataRuntimeException(e);
+      }
+    }
+
+    /** Opens the response message; a temporary file is deleted when the returned stream is closed. */
+    InputStream open() throws IOException {
+      final InputStream body = file == null ? new ByteArrayInputStream(content) : new FileInputStream(file) {
+        @Override
+        public void close() throws IOException {
+          try {
+            super.close();
+          } finally {
+            deleteFile(file);
+          }
+        }
+      };
+      return new SequenceInputStream(new ByteArrayInputStream(head), body);
+    }
+
+    void discard() {
+      if (file != null) {
+        deleteFile(file);
+      }
+    }
+
+    private static void deleteFile(final File file) {
+      if (!file.delete() && file.exists()) {
+        LOG.warn("Could not delete temporary file " + file);
+      }
+    }
+  }
+
+  private static final class WorkerThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(final Runnable runnable) {
+      final Thread thread = new Thread(runnable, "olingo-async-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DeflaterOutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.olingo.commons.api.ODataRuntimeException;
+import org.apache.olingo.commons.api.http.HttpHeader;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.ODataRequest;
+import org.apache.olingo.server.api.ODataResponse;
+import org.apache.olingo.server.api.ODataResponseCompletion;
+import org.apache.olingo.server.api.ODataServerError;
+import org.apache.olingo.server.api.metrics.RequestPhase;
+import org.apache.olingo.server.core.serializer.utils.BufferPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes an OData response within a Servlet asynchronous context, once the response has been completed,
+ * using non-blocking output.
+ */
+class AsyncResponseWriter implements ODataResponseCompletion.Listener, WriteListener, AsyncListener {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AsyncResponseWriter.class);
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private final ODataHandler handler;
+  private final ODataRequest request;
+  private final RequestContext context;
+  private final ODataResponse response;
+  private final AsyncContext asyncContext;
+  private final ContentCompression compression;
+  private final AtomicBoolean writing = new AtomicBoolean(false);
+
+  // taken from the pool while the content is written, and released when the asynchronous context completes
+  private ByteBuffer buffer;
+  private InputStream input;
+  private ServletOutputStream output;
+  // with compression, the compressed bytes are collected and written in one go as soon as the output is ready
+  private ByteArrayOutputStream compressed;
+  private DeflaterOutputStream compressor;
+  private boolean inputFinished;
+  private long start;
+  private long written;
+
+  AsyncResponseWriter(final ODataHandler handler, final ODataRequest request, final RequestContext context,
+      final ODataResponse response, final AsyncContext asyncContext, final ContentCompression compression) {
+    this.handler = handler;
+    this.request = request;
+    this.context = context;
+    this.response = response;
+    this.asyncContext = asyncContext;
+    this.compression = compression;
+  }
+
+  /**
+   * Writes the response now if it is complete, or as soon as the processor completes it.
+   */
+  void start() {
+    asyncContext.addListener(this);
+    final ODataResponseCompletion completion = response.getCompletion();
+    if (completion == null) {
+      completed(null);
+    } else {
+      completion.addListener(this);
+    }
+  }
+
+  @Override
+  public void completed(final Exception failure) {
+    write(failure == null ? response : handler.handleFailure(request, context, failure));
+  }
+
+  private void write(final ODataResponse odResponse) {
+    // the response is written only once: either when completed or when timed out
+    if (!writing.compareAndSet(false, true)) {
+      return;
+    }
+
+    final HttpServletResponse httpResponse = (HttpServletResponse) asyncContext.getResponse();
+    final HttpServletRequest httpRequest = (HttpServletRequest) asyncContext.getRequest();
+    start = context.startTiming();
+    try {
+      // file-channel content is streamed through its (possibly range-restricted) input-stream view
+      ByteRanges.apply(httpRequest.getMethod(), httpRequest.getHeader(HttpHeader.RANGE),
+          httpRequest.getHeader(HttpHeader.IF_RANGE), odResponse);
+      final String encoding = compression == null ? null : compression.select(
+          httpRequest.getHeader(HttpHeader.ACCEPT_ENCODING), odResponse);
+      ODataHttpHandlerImpl.convertStatusAndHeaders(httpResponse, odResponse, encoding);
+
+      input = odResponse.getContent();
+      if (input == null) {
+        context.record(RequestPhase.OUTPUT, start, 0);
+        asyncContext.complete();
+      } else {
+        if (encoding != null) {
+          compressed = new ByteArrayOutputStream(BUFFER_SIZE);
+          compressor = compression.compress(compressed, encoding);
+        }
+        buffer = BufferPool.getDefault().acquire(BUFFER_SIZE);
+        output = httpResponse.getOutputStream();
+        output.setWriteListener(this);
+      }
+    } catch (final IOException e) {
+      onError(e);
+    }
+  }
+
+  @Override
+  public void onWritePossible() throws IOException {
+    while (output.isReady()) {
+      if (compressed != null && compressed.size() > 0) {
+        compressed.writeTo(output);
+        compressed.reset();
+      } else if (inputFinished) {
+        ODataHttpHandlerImpl.closeStream(input);
+        context.record(RequestPhase.OUTPUT, start, written);
+        asyncContext.complete();
+        return;
+      } else {
+        final byte[] bytes = buffer.array();
+        final int n = input.read(bytes);
+        if (n == -1) {
+          inputFinished = true;
+          if (compressor != null) {
+            // writes the rest of the compressed data
+            compressor.close();
+          }
+        } else if (compressor == null) {
+          output.write(bytes, 0, n);
+          written += n;
+        } else {
+          compressor.write(bytes, 0, n);
+          written += n;
+        }
+      }
+    }
+  }
+
+  @Override
+  public void onError(final Throwable t) {
+    LOG.error(t.getMessage(), t);
+    ODataHttpHandlerImpl.closeStream(input);
+    asyncContext.complete();
+  }
+
+  @Override
+  public void onTimeout(final AsyncEvent event) throws IOException {
+    final ODataServerError serverError = ODataExceptionHelper.createServerErrorObject(
+        new ODataRuntimeException("The response has not been completed in time."));
+    serverError.setStatusCode(HttpStatusCode.SERVICE_UNAVAILABLE.getStatusCode());
+    final ODataResponse timeoutResponse = new ODataResponse();
+    handler.handleException(request, timeoutResponse, serverError, context);
+    write(timeoutResponse);
+  }
+
+  @Override
+  public void onError(final AsyncEvent event) throws IOException {
+    ODataHttpHandlerImpl.closeStream(input);
+  }
+
+  @Override
+  public void onComplete(final AsyncEvent event) throws IOException {
+    if (buffer != null) {
+      BufferPool.getDefault().release(buffer);
+      buffer = null;
+    }
+  }
+
+  @Override
+  public void onStartAsync(final AsyncEvent event) throws IOException {
+    // nothing to do
+  }
+}
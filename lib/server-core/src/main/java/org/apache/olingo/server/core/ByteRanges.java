@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core;
+
+import java.nio.channels.FileChannel;
+
+import org.apache.olingo.commons.api.http.HttpHeader;
+import org.apache.olingo.commons.api.http.HttpMethod;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.ODataResponse;
+
+/**
+ * Answers requests for a byte range (<code>Range</code> and <code>If-Range</code> headers)
+ * of responses whose content is a file-channel region.
+ * Only a single range is supported; requests for several ranges get the complete content,
+ * as permitted by RFC 7233.
+ */
+final class ByteRanges {
+
+  private static final String BYTES_UNIT = "bytes";
+
+  private ByteRanges() {}
+
+  /**
+   * Restricts the channel content of a successful GET response to the requested byte range,
+   * and sets the headers describing the content.
+   * @param method  the request method
+   * @param range   the value of the <code>Range</code> request header or <code>null</code>
+   * @param ifRange the value of the <code>If-Range</code> request header or <code>null</code>
+   * @param response the response; its content is replaced by the range
+   */
+  static void apply(final String method, final String range, final String ifRange, final ODataResponse response) {
+    final FileChannel channel = response.getContentChannel();
+    if (channel == null || response.getStatusCode() != HttpStatusCode.OK.getStatusCode()) {
+      return;
+    }
+    response.setHeader(HttpHeader.ACCEPT_RANGES, BYTES_UNIT);
+    final long length = response.getContentLength();
+    final long[] bounds = range != null && HttpMethod.GET.name().equals(method)
+        && (ifRange == null || isCurrent(ifRange.trim(), response)) ?
+        parse(range.trim(), length) :
+        null;
+
+    if (bounds == null) {
+      response.setHeader(HttpHeader.CONTENT_LENGTH, Long.toString(length));
+    } else if (bounds.length == 0) {
+      response.setStatusCode(HttpStatusCode.REQUESTED_RANGE_NOT_SATISFIABLE.getStatusCode());
+      response.setHeader(HttpHeader.CONTENT_RANGE, BYTES_UNIT + " */" + length);
+      response.setHeader(HttpHeader.CONTENT_LENGTH, "0");
+      ODataHttpHandlerImpl.closeStream(channel);
+      response.setContent(null);
+    } else {
+      response.setStatusCode(HttpStatusCode.PARTIAL_CONTENT.getStatusCode());
+      response.setHeader(HttpHeader.CONTENT_RANGE, BYTES_UNIT + ' ' + bounds[0] + '-' + bounds[1] + '/' + length);
+      response.setHeader(HttpHeader.CONTENT_LENGTH, Long.toString(bounds[1] - bounds[0] + 1));
+      response.setContent(channel, response.getContentPosition() + bounds[0], bounds[1] - bounds[0] + 1);
+    }
+  }
+
+  /**
+   * Checks whether the validator in the <code>If-Range</code> header is the current one.
+   * Entity tags are compared strongly; dates must be the same as in the <code>Last-Modified</code> header.
+   */
+  private static boolean isCurrent(final String ifRange, final ODataResponse response) {
+    final String validator = ifRange.startsWith("\"") ?
+        response.getHeaders().get(HttpHeader.ETAG) :
+        response.getHeaders().get(HttpHeader.LAST_MODIFIED);
+    return !ifRange.startsWith("W/") && ifRange.equals(validator);
+  }
+
+  /**
+   * Parses a range specification against the content length.
+   * @return the first and last byte position, an empty array if the range is not satisfiable,
+   *         or <code>null</code> if the specification is invalid or not supported and has to be ignored
+   */
+  private static long[] parse(final String range, final long length) {
+    if (!range.startsWith(BYTES_UNIT + '=') || range.indexOf(',') >= 0) {
+      return null;
+    }
+    final String spec = range.substring(BYTES_UNIT.length() + 1).trim();
+    final int dash = spec.indexOf('-');
+    if (dash < 0) {
+      return null;
+    }
+    try {
+      long first;
+      long last;
+      if (dash == 0) {
+        // suffix range: the last n bytes
+        final long suffixLength = Long.parseLong(spec.substring(1).trim());
+        if (suffixLength <= 0) {
+          return suffixLength == 0 ? new long[0] : null;
+        }
+        first = Math.max(0, length - suffixLength);
+        last = length - 1;
+      } else {
+        first = Long.parseLong(spec.substring(0, dash).trim());
+        final String lastSpec = spec.substring(dash + 1).trim();
+        last = lastSpec.isEmpty() ? length - 1 : Math.min(Long.parseLong(lastSpec), length - 1);
+        if (first < 0 || !lastSpec.isEmpty() && Long.parseLong(lastSpec) < first) {
+          return null;
+        }
+      }
+      return first >= length ? new long[0] : new long[] { first, last };
+    } catch (final NumberFormatException e) {
+      return null;
+    }
+  }
+}
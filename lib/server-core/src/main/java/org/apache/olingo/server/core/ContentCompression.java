@@ -0,0 +1,348 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.olingo.commons.api.http.HttpHeader;
+import org.apache.olingo.commons.api.http.HttpMethod;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.ODataRequest;
+import org.apache.olingo.server.api.ODataResponse;
+
+/**
+ * Content codings (RFC 7231, section 3.1.2.1) of request and response bodies.
+ * <p>Request bodies compressed with gzip or deflate are decompressed while they are read.
+ * Response bodies are compressed while they are written, with the content coding negotiated from the
+ * <code>Accept-Encoding</code> request header; the compressed variants of the metadata document are kept,
+ * so that subsequent metadata requests are answered without processing or compressing again.</p>
+ */
+final class ContentCompression {
+
+  static final String GZIP = "gzip";
+  static final String DEFLATE = "deflate";
+  private static final String X_GZIP = "x-gzip";
+  private static final String IDENTITY = "identity";
+  private static final String ANY = "*";
+
+  private static final String METADATA_PATH = "/$metadata";
+  private static final int MAX_METADATA_VARIANTS = 16;
+  private static final int BUFFER_SIZE = 8192;
+
+  private final int level;
+  private final int minimumSize;
+  private final ConcurrentMap<String, MetadataVariant> metadataVariants =
+      new ConcurrentHashMap<String, MetadataVariant>();
+
+  /**
+   * @param level the compression level, from 0 (no compression) to 9 (best compression),
+   *              or -1 for the default level of {@link Deflater}
+   * @param minimumSize response bodies with less bytes are not compressed
+   */
+  ContentCompression(final int level, final int minimumSize) {
+    if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+      throw new IllegalArgumentException("Invalid compression level " + level);
+    }
+    this.level = level;
+    this.minimumSize = minimumSize;
+  }
+
+  /**
+   * Wraps the given request body according to the content codings in the given
+   * <code>Content-Encoding</code> request header.
+   * @throws ODataHandlerException if a content coding is not supported
+   */
+  static InputStream decode(final InputStream body, final String contentEncoding)
+      throws IOException, ODataHandlerException {
+    if (contentEncoding == null) {
+      return body;
+    }
+    InputStream decoded = body;
+    // codings are listed in the order in which they have been applied
+    final String[] codings = contentEncoding.split(",");
+    for (int i = codings.length - 1; i >= 0; i--) {
+      final String coding = codings[i].trim().toLowerCase(Locale.ENGLISH);
+      if (GZIP.equals(coding) || X_GZIP.equals(coding)) {
+        decoded = new GZIPInputStream(decoded, BUFFER_SIZE);
+      } else if (DEFLATE.equals(coding)) {
+        decoded = new InflaterInputStream(decoded);
+      } else if (!IDENTITY.equals(coding) && coding.length() > 0) {
+        throw new ODataHandlerException("Unsupported content encoding: " + contentEncoding,
+            ODataHandlerException.MessageKeys.UNSUPPORTED_CONTENT_ENCODING, contentEncoding);
+      }
+    }
+    return decoded;
+  }
+
+  /**
+   * Selects the response content coding from the given <code>Accept-Encoding</code> request header.
+   * @return {@link #GZIP}, {@link #DEFLATE}, or <code>null</code> if the response must not be compressed
+   */
+  static String negotiate(final String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return null;
+    }
+    float gzip = -1;
+    float deflate = -1;
+    float any = -1;
+    for (final String element : acceptEncoding.split(",")) {
+      final String[] parts = element.split(";");
+      final String coding = parts[0].trim().toLowerCase(Locale.ENGLISH);
+      float quality = 1;
+      for (int i = 1; i < parts.length; i++) {
+        final String parameter = parts[i].trim();
+        if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+          try {
+            quality = Float.parseFloat(parameter.substring(2).trim());
+          } catch (final NumberFormatException e) {
+            quality = 0;
+          }
+        }
+      }
+      if (GZIP.equals(coding) || X_GZIP.equals(coding)) {
+        gzip = quality;
+      } else if (DEFLATE.equals(coding)) {
+        deflate = quality;
+      } else if (ANY.equals(coding)) {
+        any = quality;
+      }
+    }
+    // the wildcard stands for all codings not listed explicitly
+    if (gzip < 0) {
+      gzip = any;
+    }
+    if (deflate < 0) {
+      deflate = any;
+    }
+    return gzip <= 0 && deflate <= 0 ? null : gzip >= deflate ? GZIP : DEFLATE;
+  }
+
+  /**
+   * Selects the content coding for the given response.
+   * Compressible responses get a <code>Vary</code> header, whether they are compressed or not.
+   * To find out whether the response body reaches the minimum size, its beginning is read ahead,
+   * so the content of the response may be replaced by an equivalent stream.
+   * @param acceptEncoding the <code>Accept-Encoding</code> request header
+   * @return the content coding to apply or <code>null</code>
+   */
+  String select(final String acceptEncoding, final ODataResponse response) throws IOException {
+    if (!isCompressible(response)) {
+      return null;
+    }
+    addVary(response);
+    final String encoding = negotiate(acceptEncoding);
+    return encoding != null && reachesMinimumSize(response) ? encoding : null;
+  }
+
+  /**
+   * Wraps the given output stream into a stream compressing with the given content coding.
+   * Closing the returned stream writes the end of the compressed data and closes the given stream.
+   */
+  DeflaterOutputStream compress(final OutputStream output, final String encoding) throws IOException {
+    if (GZIP.equals(encoding)) {
+      return new GZIPOutputStream(output, BUFFER_SIZE) {
+        {
+          def.setLevel(level);
+        }
+      };
+    } else {
+      return new DeflaterOutputStream(output, new Deflater(level), BUFFER_SIZE) {
+        @Override
+        public void close() throws IOException {
+          try {
+            super.close();
+          } finally {
+            def.end();
+          }
+        }
+      };
+    }
+  }
+
+  /**
+   * Returns a kept compressed variant of the metadata document, if the given request is a metadata request
+   * for which such a variant has been kept.
+   * @return the response or <code>null</code>
+   */
+  ODataResponse getMetadataVariant(final ODataRequest request) {
+    final String key = getMetadataVariantKey(request);
+    final MetadataVariant variant = key == null ? null : metadataVariants.get(key);
+    return variant == null ? null : variant.toResponse();
+  }
+
+  /**
+   * Compresses and keeps the given response if it is a successful, compressible response to a
+   * metadata request whose client accepts compressed responses.
+   * @return the compressed variant of the response, or the response itself if it is not kept
+   */
+  ODataResponse keepMetadataVariant(final ODataRequest request, final ODataResponse response) throws IOException {
+    final String key = getMetadataVariantKey(request);
+    if (key == null || response.getStatusCode() != HttpStatusCode.OK.getStatusCode()
+        || response.getCompletion() != null || !isCompressible(response)
+        || metadataVariants.size() >= MAX_METADATA_VARIANTS) {
+      return response;
+    }
+
+    final String encoding = negotiate(request.getHeader(HttpHeader.ACCEPT_ENCODING));
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    final InputStream content = response.getContent();
+    final OutputStream output = compress(buffer, encoding);
+    try {
+      ODataHttpHandlerImpl.copy(content, output);
+    } finally {
+      ODataHttpHandlerImpl.closeStream(output);
+      ODataHttpHandlerImpl.closeStream(content);
+    }
+
+    addVary(response);
+    final Map<String, String> headers = new HashMap<String, String>();
+    for (final Entry<String, String> header : response.getHeaders().entrySet()) {
+      if (!HttpHeader.CONTENT_LENGTH.equalsIgnoreCase(header.getKey())) {
+        headers.put(header.getKey(), header.getValue());
+      }
+    }
+    headers.put(HttpHeader.CONTENT_ENCODING, encoding);
+    headers.put(HttpHeader.CONTENT_LENGTH, Integer.toString(buffer.size()));
+
+    final MetadataVariant variant = new MetadataVariant(Collections.unmodifiableMap(headers), buffer.toByteArray());
+    final MetadataVariant existing = metadataVariants.putIfAbsent(key, variant);
+    return (existing == null ? variant : existing).toResponse();
+  }
+
+  /**
+   * Gets the key of the metadata variant for the given request, made of the request headers
+   * the metadata response depends on.
+   * @return the key, or <code>null</code> if the request is not a metadata request
+   *         or its client does not accept compressed responses
+   */
+  private String getMetadataVariantKey(final ODataRequest request) {
+    if (request == null || request.getMethod() != HttpMethod.GET
+        || !METADATA_PATH.equals(request.getRawODataPath())) {
+      return null;
+    }
+    final String encoding = negotiate(request.getHeader(HttpHeader.ACCEPT_ENCODING));
+    return encoding == null ? null :
+        encoding + '\n'
+            + request.getHeader(HttpHeader.ACCEPT) + '\n'
+            + request.getHeader(HttpHeader.ACCEPT_CHARSET) + '\n'
+            + request.getHeader(HttpHeader.ODATA_MAX_VERSION) + '\n'
+            + request.getRawQueryPath();
+  }
+
+  private boolean isCompressible(final ODataResponse response) {
+    final int status = response.getStatusCode();
+    // channel content is transferred as it is, possibly in byte ranges
+    if (response.getContent() == null || response.getContentChannel() != null
+        || status == HttpStatusCode.NO_CONTENT.getStatusCode()
+        || status == HttpStatusCode.NOT_MODIFIED.getStatusCode()
+        || status == HttpStatusCode.PARTIAL_CONTENT.getStatusCode()
+        || getHeader(response, HttpHeader.CONTENT_ENCODING) != null) {
+      return false;
+    }
+    final String contentType = getHeader(response, HttpHeader.CONTENT_TYPE);
+    if (contentType == null) {
+      return false;
+    }
+    // media resources in binary formats are usually compressed already
+    final String type = contentType.toLowerCase(Locale.ENGLISH);
+    return type.startsWith("text/") || type.startsWith("multipart/")
+        || type.startsWith("application/")
+        && (type.contains("json") || type.contains("xml") || type.startsWith("application/http"));
+  }
+
+  /**
+   * Reads ahead the beginning of the response content, up to the minimum size.
+   * The content of the response is replaced by a stream returning the same bytes.
+   */
+  private boolean reachesMinimumSize(final ODataResponse response) throws IOException {
+    if (minimumSize <= 0) {
+      return true;
+    }
+    final InputStream content = response.getContent();
+    final byte[] start = new byte[minimumSize];
+    int length = 0;
+    int n = 0;
+    while (length < minimumSize && (n = content.read(start, length, minimumSize - length)) != -1) {
+      length += n;
+    }
+    if (n == -1) {
+      ODataHttpHandlerImpl.closeStream(content);
+      response.setContent(new ByteArrayInputStream(start, 0, length));
+      return false;
+    } else {
+      response.setContent(new SequenceInputStream(new ByteArrayInputStream(start), content));
+      return true;
+    }
+  }
+
+  private static void addVary(final ODataResponse response) {
+    final String vary = getHeader(response, HttpHeader.VARY);
+    if (vary == null) {
+      response.setHeader(HttpHeader.VARY, HttpHeader.ACCEPT_ENCODING);
+    } else if (!vary.toLowerCase(Locale.ENGLISH).contains(HttpHeader.ACCEPT_ENCODING.toLowerCase(Locale.ENGLISH))) {
+      response.setHeader(HttpHeader.VARY, vary + ", " + HttpHeader.ACCEPT_ENCODING);
+    }
+  }
+
+  private static String getHeader(final ODataResponse response, final String name) {
+    for (final Entry<String, String> header : response.getHeaders().entrySet()) {
+      if (name.equalsIgnoreCase(header.getKey())) {
+        return header.getValue();
+      }
+    }
+    return null;
+  }
+
+  private static final class MetadataVariant {
+    private final Map<String, String> headers;
+    private final byte[] content;
+
+    private MetadataVariant(final Map<String, String> headers, final byte[] content) {
+      this.headers = headers;
+      this.content = content;
+    }
+
+    private ODataResponse toResponse() {
+      final ODataResponse response = new ODataResponse();
+      response.setStatusCode(HttpStatusCode.OK.getStatusCode());
+      for (final Entry<String, String> header : headers.entrySet()) {
+        response.setHeader(header.getKey(), header.getValue());
+      }
+      response.setContent(new ByteArrayInputStream(content));
+      return response;
+    }
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.edm.Edm;
+import org.apache.olingo.commons.api.edm.EdmComplexType;
+import org.apache.olingo.commons.api.edm.EdmEntityType;
+import org.apache.olingo.commons.api.edm.EdmPrimitiveType;
+import org.apache.olingo.server.api.ODataServerError;
+import org.apache.olingo.server.api.ServiceMetadata;
+import org.apache.olingo.server.api.metrics.RequestPhase;
+import org.apache.olingo.server.api.serializer.ComplexSerializerOptions;
+import org.apache.olingo.server.api.serializer.EntityCollectionSerializerOptions;
+import org.apache.olingo.server.api.serializer.EntitySerializerOptions;
+import org.apache.olingo.server.api.serializer.ODataSerializer;
+import org.apache.olingo.server.api.serializer.PrimitiveSerializerOptions;
+import org.apache.olingo.server.api.serializer.SerializerException;
+import org.apache.olingo.server.api.serializer.SerializerResult;
+
+/**
+ * Serializer created for processors if request metrics are registered.
+ * It delegates to the serializer of the application's OData instance and records the duration of each call
+ * as serialization phase of the request it is created for.
+ */
+class MeteredSerializer implements ODataSerializer {
+
+  private final ODataSerializer serializer;
+  private final RequestContext context;
+
+  MeteredSerializer(final ODataSerializer serializer, final RequestContext context) {
+    this.serializer = serializer;
+    this.context = context;
+  }
+
+  @Override
+  public SerializerResult serviceDocument(final Edm edm, final String serviceRoot) throws SerializerException {
+    final long start = context.startTiming();
+    final SerializerResult result = serializer.serviceDocument(edm, serviceRoot);
+    context.record(RequestPhase.SERIALIZATION, start, -1);
+    return result;
+  }
+
+  @Override
+  public SerializerResult metadataDocument(final ServiceMetadata serviceMetadata) throws SerializerException {
+    final long start = context.startTiming();
+    final SerializerResult result = serializer.metadataDocument(serviceMetadata);
+    context.record(RequestPhase.SERIALIZATION, start, -1);
+    return result;
+  }
+
+  @Override
+  public SerializerResult error(final ODataServerError error) throws SerializerException {
+    final long start = context.startTiming();
+    final SerializerResult result = serializer.error(error);
+    context.record(RequestPhase.SERIALIZATION, start, -1);
+    return result;
+  }
+
+  @Override
+  public SerializerResult entityCollection(final ServiceMetadata metadata, final EdmEntityType entityType,
+      final EntityCollection entitySet, final EntityCollectionSerializerOptions options)
+      throws SerializerException {
+    final long start = context.startTiming();
+    final SerializerResult result = serializer.entityCollection(metadata, entityType, entitySet, options);
+    context.record(RequestPhase.SERIALIZATION, start, -1);
+    return result;
+  }
+
+  @Override
+  public SerializerResult entity(final ServiceMetadata metadata, final EdmEntityType entityType,
+      final Entity entity, final EntitySerializerOptions options) throws SerializerException {
+    final long start = context.startTiming();
+    final SerializerResult result = serializer.entity(metadata, entityType, entity, options);
+    context.record(RequestPhase.SERIALIZATION, start, -1);
+    return result;
+  }
+
+  @Override
+  public SerializerResult primitive(final EdmPrimitiveType type, final Property property,
+      final PrimitiveSerializerOptions options) throws SerializerException {
+    final long start = context.startTiming();
+    final SerializerResult result = serializer.primitive(type, property, options);
+    context.record(RequestPhase.SERIALIZATION, start, -1);
+    return result;
+  }
+
+  @Override
+  public SerializerResult complex(final ServiceMetadata metadata, final EdmComplexType type,
+      final Property property, final ComplexSerializerOptions options) throws SerializerException {
+    final long start = context.startTiming();
+    final SerializerResult result = serializer.complex(metadata, type, property, options);
+    context.record(RequestPhase.SERIALIZATION, start, -1);
+    return result;
+  }
+
+  @Override
+  public SerializerResult primitiveCollection(final EdmPrimitiveType type, final Property property,
+      final PrimitiveSerializerOptions options) throws SerializerException {
+    final long start = context.startTiming();
+    final SerializerResult result = serializer.primitiveCollection(type, property, options);
+    context.record(RequestPhase.SERIALIZATION, start, -1);
+    return result;
+  }
+
+  @Override
+  public SerializerResult complexCollection(final ServiceMetadata metadata, final EdmComplexType type,
+      final Property property, final ComplexSerializerOptions options) throws SerializerException {
+    final long start = context.startTiming();
+    final SerializerResult result = serializer.complexCollection(metadata, type, property, options);
+    context.record(RequestPhase.SERIALIZATION, start, -1);
+    return result;
+  }
+}
@@ -83,6 +83,12 @@ public class ODataExceptionHelper {
       serverError.setStatusCode(HttpStatusCode.BAD_REQUEST.getStatusCode());
     } else if (ODataHandlerException.MessageKeys.HTTP_METHOD_NOT_ALLOWED.equals(e.getMessageKey())) {
       serverError.setStatusCode(HttpStatusCode.METHOD_NOT_ALLOWED.getStatusCode());
+    } else if (ODataHandlerException.MessageKeys.ASYNC_REQUEST_NOT_FOUND.equals(e.getMessageKey())) {
+      serverError.setStatusCode(HttpStatusCode.NOT_FOUND.getStatusCode());
+    } else if (ODataHandlerException.MessageKeys.UNSUPPORTED_CONTENT_ENCODING.equals(e.getMessageKey())) {
+      serverError.setStatusCode(HttpStatusCode.UNSUPPORTED_MEDIA_TYPE.getStatusCode());
+    } else if (ODataHandlerException.MessageKeys.PRECONDITION_FAILED.equals(e.getMessageKey())) {
+      serverError.setStatusCode(HttpStatusCode.PRECONDITION_FAILED.getStatusCode());
     }
 
     return serverError;
@@ -38,9 +38,14 @@ import org.apache.olingo.server.api.OData;
 import org.apache.olingo.server.api.ODataApplicationException;
 import org.apache.olingo.server.api.ODataRequest;
 import org.apache.olingo.server.api.ODataResponse;
+import org.apache.olingo.server.api.ODataResponseCompletion;
 import org.apache.olingo.server.api.ODataServerError;
+import org.apache.olingo.server.api.ODataTranslatedException;
 import org.apache.olingo.server.api.ServiceMetadata;
 import org.apache.olingo.server.api.deserializer.DeserializerException;
+import org.apache.olingo.server.api.etag.ETagProvider;
+import org.apache.olingo.server.api.metrics.RequestMetrics;
+import org.apache.olingo.server.api.metrics.RequestPhase;
 import org.apache.olingo.server.api.processor.ActionComplexCollectionProcessor;
 import org.apache.olingo.server.api.processor.ActionComplexProcessor;
 import org.apache.olingo.server.api.processor.ActionEntityCollectionProcessor;
@@ -78,6 +83,7 @@ import org.apache.olingo.server.api.uri.UriResourceFunction;
 import org.apache.olingo.server.api.uri.UriResourceNavigation;
 import org.apache.olingo.server.api.uri.UriResourcePartTyped;
 import org.apache.olingo.server.api.uri.UriResourcePrimitiveProperty;
+import org.apache.olingo.server.api.uri.queryoption.FormatOption;
 import org.apache.olingo.server.api.uri.UriResourceProperty;
 import org.apache.olingo.server.core.batchhandler.BatchHandler;
 import org.apache.olingo.server.core.uri.parser.Parser;
@@ -93,8 +99,8 @@ public class ODataHandler {
   private final ServiceMetadata serviceMetadata;
   private List<Processor> processors = new LinkedList<Processor>();
   private CustomContentTypeSupport customContentTypeSupport = null;
-
-  private UriInfo uriInfo;
+  private ETagProvider eTagProvider = null;
+  private RequestMetrics metrics = null;
 
   public ODataHandler(final OData server, final ServiceMetadata serviceMetadata) {
     odata = server;
@@ -105,60 +111,133 @@ public class ODataHandler {
   }
 
   public ODataResponse process(final ODataRequest request) {
+    return process(request, createContext(request));
+  }
+
+  /**
+   * Creates the context of a request; it must be created before the request is processed
+   * and can then be used for the request's metrics until its response has been written.
+   */
+  RequestContext createContext(final ODataRequest request) {
+    return new RequestContext(request, metrics);
+  }
+
+  ODataResponse process(final ODataRequest request, final RequestContext context) {
     ODataResponse response = new ODataResponse();
+    final RequestContext previous = context.enter();
     try {
 
-      processInternal(request, response);
+      processInternal(request, response, context);
 
     } catch (final UriValidationException e) {
       ODataServerError serverError = ODataExceptionHelper.createServerErrorObject(e, null);
-      handleException(request, response, serverError);
+      handleException(request, response, serverError, context);
     } catch (final UriParserSemanticException e) {
       ODataServerError serverError = ODataExceptionHelper.createServerErrorObject(e, null);
-      handleException(request, response, serverError);
+      handleException(request, response, serverError, context);
     } catch (final UriParserSyntaxException e) {
       ODataServerError serverError = ODataExceptionHelper.createServerErrorObject(e, null);
-      handleException(request, response, serverError);
+      handleException(request, response, serverError, context);
     } catch (final UriParserException e) {
       ODataServerError serverError = ODataExceptionHelper.createServerErrorObject(e, null);
-      handleException(request, response, serverError);
+      handleException(request, response, serverError, context);
     } catch (ContentNegotiatorException e) {
       ODataServerError serverError = ODataExceptionHelper.createServerErrorObject(e, null);
-      handleException(request, response, serverError);
+      handleException(request, response, serverError, context);
     } catch (SerializerException e) {
       ODataServerError serverError = ODataExceptionHelper.createServerErrorObject(e, null);
-      handleException(request, response, serverError);
+      handleException(request, response, serverError, context);
     } catch (DeserializerException e) {
       ODataServerError serverError = ODataExceptionHelper.createServerErrorObject(e, null);
-      handleException(request, response, serverError);
+      handleException(request, response, serverError, context);
     } catch (ODataHandlerException e) {
       ODataServerError serverError = ODataExceptionHelper.createServerErrorObject(e, null);
-      handleException(request, response, serverError);
+      handleException(request, response, serverError, context);
     } catch (ODataApplicationException e) {
       ODataServerError serverError = ODataExceptionHelper.createServerErrorObject(e);
-      handleException(request, response, serverError);
+      handleException(request, response, serverError, context);
     } catch (Exception e) {
       ODataServerError serverError = ODataExceptionHelper.createServerErrorObject(e);
-      handleException(request, response, serverError);
+      handleException(request, response, serverError, context);
+    } finally {
+      RequestContext.leave(previous);
     }
     return response;
   }
 
-  private void processInternal(final ODataRequest request, final ODataResponse response)
+  /**
+   * Waits until a response deferred by a processor has been completed.
+   * @return the given response, or an error response if the processor has failed to complete it
+   * @see ODataResponse#defer()
+   */
+  public ODataResponse awaitCompletion(final ODataRequest request, final ODataResponse response) {
+    return awaitCompletion(request, response, createContext(request));
+  }
+
+  ODataResponse awaitCompletion(final ODataRequest request, final ODataResponse response,
+      final RequestContext context) {
+    final ODataResponseCompletion completion = response.getCompletion();
+    if (completion == null) {
+      return response;
+    }
+    try {
+      completion.await();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return handleFailure(request, context, e);
+    }
+    return completion.getFailure() == null ? response : handleFailure(request, context, completion.getFailure());
+  }
+
+  /**
+   * Creates the error response for a deferred response whose processor has failed.
+   */
+  public ODataResponse handleFailure(final ODataRequest request, final Exception e) {
+    return handleFailure(request, createContext(request), e);
+  }
+
+  ODataResponse handleFailure(final ODataRequest request, final RequestContext context, final Exception e) {
+    ODataServerError serverError;
+    if (e instanceof ODataApplicationException) {
+      serverError = ODataExceptionHelper.createServerErrorObject((ODataApplicationException) e);
+    } else if (e instanceof SerializerException) {
+      serverError = ODataExceptionHelper.createServerErrorObject((SerializerException) e, null);
+    } else if (e instanceof DeserializerException) {
+      serverError = ODataExceptionHelper.createServerErrorObject((DeserializerException) e, null);
+    } else if (e instanceof ODataHandlerException) {
+      serverError = ODataExceptionHelper.createServerErrorObject((ODataHandlerException) e, null);
+    } else if (e instanceof ODataTranslatedException) {
+      serverError = ODataExceptionHelper.createServerErrorObject((ODataTranslatedException) e, null);
+    } else {
+      serverError = ODataExceptionHelper.createServerErrorObject(e);
+    }
+    final ODataResponse response = new ODataResponse();
+    handleException(request, response, serverError, context);
+    return response;
+  }
+
+  private void processInternal(final ODataRequest request, final ODataResponse response,
+      final RequestContext context)
       throws ODataHandlerException, UriParserException, UriValidationException, ContentNegotiatorException,
       ODataApplicationException, SerializerException, DeserializerException {
     validateODataVersion(request, response);
+    final HttpMethod method = request.getMethod();
 
-    uriInfo = new Parser().parseUri(request.getRawODataPath(), request.getRawQueryPath(), null,
+    long start = context.startTiming();
+    final UriInfo uriInfo = new Parser().parseUri(request.getRawODataPath(), request.getRawQueryPath(), null,
         serviceMetadata.getEdm());
+    context.setUriInfo(uriInfo);
+    context.record(RequestPhase.URI_PARSING, start, -1);
 
-    final HttpMethod method = request.getMethod();
+    start = context.startTiming();
     new UriValidator().validate(uriInfo, method);
+    context.record(RequestPhase.URI_VALIDATION, start, -1);
 
+    start = context.startTiming();
     switch (uriInfo.getKind()) {
     case metadata:
       checkMethod(method, HttpMethod.GET);
-      final ContentType requestedContentType = ContentNegotiator.doContentNegotiation(uriInfo.getFormatOption(),
+      final ContentType requestedContentType = doContentNegotiation(context, uriInfo.getFormatOption(),
           request, customContentTypeSupport, RepresentationType.METADATA);
       selectProcessor(MetadataProcessor.class)
           .readMetadata(request, response, uriInfo, requestedContentType);
@@ -170,7 +249,7 @@ public class ODataHandler {
         selectProcessor(RedirectProcessor.class)
             .redirect(request, response);
       } else {
-        final ContentType serviceContentType = ContentNegotiator.doContentNegotiation(uriInfo.getFormatOption(),
+        final ContentType serviceContentType = doContentNegotiation(context, uriInfo.getFormatOption(),
             request, customContentTypeSupport, RepresentationType.SERVICE);
         selectProcessor(ServiceDocumentProcessor.class)
             .readServiceDocument(request, response, uriInfo, serviceContentType);
@@ -178,7 +257,9 @@ public class ODataHandler {
       break;
 
     case resource:
-      handleResourceDispatching(request, response);
+      if (eTagProvider == null || !Preconditions.evaluate(eTagProvider, request, uriInfo, response)) {
+        handleResourceDispatching(request, response, context);
+      }
       break;
 
     case batch:
@@ -191,11 +272,17 @@ public class ODataHandler {
       throw new ODataHandlerException("not implemented",
           ODataHandlerException.MessageKeys.FUNCTIONALITY_NOT_IMPLEMENTED);
     }
+    context.record(RequestPhase.PROCESSING, start, -1);
   }
 
   public void handleException(final ODataRequest request, final ODataResponse response,
       final ODataServerError serverError) {
+    handleException(request, response, serverError, createContext(request));
+  }
 
+  void handleException(final ODataRequest request, final ODataResponse response,
+      final ODataServerError serverError, final RequestContext context) {
+    final UriInfo uriInfo = context.getUriInfo();
     ErrorProcessor exceptionProcessor;
     try {
       exceptionProcessor = selectProcessor(ErrorProcessor.class);
@@ -205,60 +292,67 @@ public class ODataHandler {
     }
     ContentType requestedContentType;
     try {
-      requestedContentType = ContentNegotiator.doContentNegotiation(
+      requestedContentType = doContentNegotiation(context,
           uriInfo == null ? null : uriInfo.getFormatOption(), request, customContentTypeSupport,
           RepresentationType.ERROR);
     } catch (final ContentNegotiatorException e) {
       requestedContentType = ODataFormat.JSON.getContentType();
     }
-    exceptionProcessor.processError(request, response, serverError, requestedContentType);
+    final RequestContext previous = context.enter();
+    try {
+      exceptionProcessor.processError(request, response, serverError, requestedContentType);
+    } finally {
+      RequestContext.leave(previous);
+    }
   }
 
-  private void handleResourceDispatching(final ODataRequest request, final ODataResponse response)
+  private void handleResourceDispatching(final ODataRequest request, final ODataResponse response,
+      final RequestContext context)
       throws ODataHandlerException, ContentNegotiatorException, ODataApplicationException,
       SerializerException, DeserializerException {
 
+    final UriInfo uriInfo = context.getUriInfo();
     final int lastPathSegmentIndex = uriInfo.getUriResourceParts().size() - 1;
     final UriResource lastPathSegment = uriInfo.getUriResourceParts().get(lastPathSegmentIndex);
 
     switch (lastPathSegment.getKind()) {
     case action:
       checkMethod(request.getMethod(), HttpMethod.POST);
-      handleActionDispatching(request, response, (UriResourceAction) lastPathSegment);
+      handleActionDispatching(request, response, context, (UriResourceAction) lastPathSegment);
       break;
 
     case function:
       checkMethod(request.getMethod(), HttpMethod.GET);
-      handleFunctionDispatching(request, response, (UriResourceFunction) lastPathSegment);
+      handleFunctionDispatching(request, response, context, (UriResourceFunction) lastPathSegment);
       break;
 
     case entitySet:
     case navigationProperty:
-      handleEntityDispatching(request, response,
+      handleEntityDispatching(request, response, context,
           ((UriResourcePartTyped) lastPathSegment).isCollection(), isMedia(lastPathSegment));
       break;
 
     case count:
       checkMethod(request.getMethod(), HttpMethod.GET);
-      handleCountDispatching(request, response, lastPathSegmentIndex);
+      handleCountDispatching(request, response, context, lastPathSegmentIndex);
       break;
 
     case primitiveProperty:
-      handlePrimitiveDispatching(request, response,
+      handlePrimitiveDispatching(request, response, context,
           ((UriResourceProperty) lastPathSegment).isCollection());
       break;
 
     case complexProperty:
-      handleComplexDispatching(request, response,
+      handleComplexDispatching(request, response, context,
           ((UriResourceProperty) lastPathSegment).isCollection());
       break;
 
     case value:
-      handleValueDispatching(request, response, lastPathSegmentIndex);
+      handleValueDispatching(request, response, context, lastPathSegmentIndex);
       break;
 
     case ref:
-      handleReferenceDispatching(request, response, lastPathSegmentIndex);
+      handleReferenceDispatching(request, response, context, lastPathSegmentIndex);
       break;
 
     default:
@@ -268,7 +362,7 @@ public class ODataHandler {
   }
 
   private void handleFunctionDispatching(final ODataRequest request, final ODataResponse response,
-      final UriResourceFunction uriResourceFunction)
+      final RequestContext context, final UriResourceFunction uriResourceFunction)
       throws ODataHandlerException, ContentNegotiatorException, ODataApplicationException,
       SerializerException, DeserializerException {
     EdmFunction function = uriResourceFunction.getFunction();
@@ -278,15 +372,15 @@ public class ODataHandler {
     final EdmReturnType returnType = function.getReturnType();
     switch (returnType.getType().getKind()) {
     case ENTITY:
-      handleEntityDispatching(request, response,
+      handleEntityDispatching(request, response, context,
           returnType.isCollection() && uriResourceFunction.getKeyPredicates().isEmpty(),
           false);
       break;
     case PRIMITIVE:
-      handlePrimitiveDispatching(request, response, returnType.isCollection());
+      handlePrimitiveDispatching(request, response, context, returnType.isCollection());
       break;
     case COMPLEX:
-      handleComplexDispatching(request, response, returnType.isCollection());
+      handleComplexDispatching(request, response, context, returnType.isCollection());
       break;
     default:
       throw new ODataHandlerException("not implemented",
@@ -295,9 +389,10 @@ public class ODataHandler {
   }
 
   private void handleActionDispatching(final ODataRequest request, final ODataResponse response,
-      final UriResourceAction uriResourceAction)
+      final RequestContext context, final UriResourceAction uriResourceAction)
       throws ODataHandlerException, ContentNegotiatorException, ODataApplicationException,
       SerializerException, DeserializerException {
+    final UriInfo uriInfo = context.getUriInfo();
     final EdmAction action = uriResourceAction.getAction();
     final EdmReturnType returnType = action.getReturnType();
     final ContentType requestFormat = ContentType.parse(request.getHeader(HttpHeader.CONTENT_TYPE));
@@ -311,7 +406,7 @@ public class ODataHandler {
       ContentType responseFormat = null;
       switch (returnType.getType().getKind()) {
       case ENTITY:
-        responseFormat = ContentNegotiator.doContentNegotiation(uriInfo.getFormatOption(),
+        responseFormat = doContentNegotiation(context, uriInfo.getFormatOption(),
             request, customContentTypeSupport,
             isCollection ? RepresentationType.COLLECTION_ENTITY : RepresentationType.ENTITY);
         if (isCollection) {
@@ -324,7 +419,7 @@ public class ODataHandler {
         break;
 
       case PRIMITIVE:
-        responseFormat = ContentNegotiator.doContentNegotiation(uriInfo.getFormatOption(),
+        responseFormat = doContentNegotiation(context, uriInfo.getFormatOption(),
             request, customContentTypeSupport,
             isCollection ? RepresentationType.COLLECTION_PRIMITIVE : RepresentationType.PRIMITIVE);
         if (isCollection) {
@@ -337,7 +432,7 @@ public class ODataHandler {
         break;
 
       case COMPLEX:
-        responseFormat = ContentNegotiator.doContentNegotiation(uriInfo.getFormatOption(),
+        responseFormat = doContentNegotiation(context, uriInfo.getFormatOption(),
             request, customContentTypeSupport,
             isCollection ? RepresentationType.COLLECTION_COMPLEX : RepresentationType.COMPLEX);
         if (isCollection) {
@@ -357,13 +452,14 @@ public class ODataHandler {
   }
 
   private void handleReferenceDispatching(final ODataRequest request, final ODataResponse response,
-      final int lastPathSegmentIndex)
+      final RequestContext context, final int lastPathSegmentIndex)
       throws ODataHandlerException, ContentNegotiatorException, ODataApplicationException,
       SerializerException, DeserializerException {
+    final UriInfo uriInfo = context.getUriInfo();
     final HttpMethod method = request.getMethod();
     if (((UriResourcePartTyped) uriInfo.getUriResourceParts().get(lastPathSegmentIndex - 1)).isCollection()) {
       if (method == HttpMethod.GET) {
-        final ContentType responseFormat = ContentNegotiator.doContentNegotiation(uriInfo.getFormatOption(),
+        final ContentType responseFormat = doContentNegotiation(context, uriInfo.getFormatOption(),
             request, customContentTypeSupport, RepresentationType.COLLECTION_REFERENCE);
         selectProcessor(ReferenceCollectionProcessor.class)
             .readReferenceCollection(request, response, uriInfo, responseFormat);
@@ -378,7 +474,7 @@ public class ODataHandler {
       }
     } else {
       if (method == HttpMethod.GET) {
-        final ContentType responseFormat = ContentNegotiator.doContentNegotiation(uriInfo.getFormatOption(),
+        final ContentType responseFormat = doContentNegotiation(context, uriInfo.getFormatOption(),
             request, customContentTypeSupport, RepresentationType.REFERENCE);
         selectProcessor(ReferenceProcessor.class).readReference(request, response, uriInfo, responseFormat);
       } else if (method == HttpMethod.PUT || method == HttpMethod.PATCH) {
@@ -397,9 +493,10 @@ public class ODataHandler {
   }
 
   private void handleValueDispatching(final ODataRequest request, final ODataResponse response,
-      final int lastPathSegmentIndex)
+      final RequestContext context, final int lastPathSegmentIndex)
       throws ODataHandlerException, ContentNegotiatorException, ODataApplicationException,
       SerializerException, DeserializerException {
+    final UriInfo uriInfo = context.getUriInfo();
     final HttpMethod method = request.getMethod();
     final UriResource resource = uriInfo.getUriResourceParts().get(lastPathSegmentIndex - 1);
     if (resource instanceof UriResourceProperty
@@ -411,7 +508,7 @@ public class ODataHandler {
           type == EdmPrimitiveTypeFactory.getInstance(EdmPrimitiveTypeKind.Binary) ?
               RepresentationType.BINARY : RepresentationType.VALUE;
       if (method == HttpMethod.GET) {
-        final ContentType requestedContentType = ContentNegotiator.doContentNegotiation(uriInfo.getFormatOption(),
+        final ContentType requestedContentType = doContentNegotiation(context, uriInfo.getFormatOption(),
             request, customContentTypeSupport, valueRepresentationType);
 
         selectProcessor(PrimitiveValueProcessor.class)
@@ -419,7 +516,7 @@ public class ODataHandler {
       } else if (method == HttpMethod.PUT && resource instanceof UriResourceProperty) {
         final ContentType requestFormat = ContentType.parse(request.getHeader(HttpHeader.CONTENT_TYPE));
         checkContentTypeSupport(requestFormat, valueRepresentationType);
-        final ContentType responseFormat = ContentNegotiator.doContentNegotiation(uriInfo.getFormatOption(),
+        final ContentType responseFormat = doContentNegotiation(context, uriInfo.getFormatOption(),
             request, customContentTypeSupport, valueRepresentationType);
         selectProcessor(PrimitiveValueProcessor.class)
             .updatePrimitive(request, response, uriInfo, requestFormat, responseFormat);
@@ -431,13 +528,13 @@ public class ODataHandler {
       }
     } else {
       if (method == HttpMethod.GET) {
-        final ContentType requestedContentType = ContentNegotiator.doContentNegotiation(uriInfo.getFormatOption(),
+        final ContentType requestedContentType = doContentNegotiation(context, uriInfo.getFormatOption(),
             request, customContentTypeSupport, RepresentationType.MEDIA);
         selectProcessor(MediaEntityProcessor.class)
             .readMediaEntity(request, response, uriInfo, requestedContentType);
       } else if (method == HttpMethod.PUT && resource instanceof UriResourceEntitySet) {
         final ContentType requestFormat = ContentType.parse(request.getHeader(HttpHeader.CONTENT_TYPE));
-        final ContentType responseFormat = ContentNegotiator.doContentNegotiation(uriInfo.getFormatOption(),
+        final ContentType responseFormat = doContentNegotiation(context, uriInfo.getFormatOption(),
             request, customContentTypeSupport, RepresentationType.ENTITY);
         selectProcessor(MediaEntityProcessor.class)
             .updateMediaEntity(request, response, uriInfo, requestFormat, responseFormat);
@@ -451,14 +548,15 @@ public class ODataHandler {
   }
 
   private void handleComplexDispatching(final ODataRequest request, final ODataResponse response,
-      final boolean isCollection)
+      final RequestContext context, final boolean isCollection)
       throws ODataHandlerException, ContentNegotiatorException, ODataApplicationException,
       SerializerException, DeserializerException {
+    final UriInfo uriInfo = context.getUriInfo();
     final HttpMethod method = request.getMethod();
     final RepresentationType complexRepresentationType = isCollection ?
         RepresentationType.COLLECTION_COMPLEX : RepresentationType.COMPLEX;
     if (method == HttpMethod.GET) {
-      final ContentType requestedContentType = ContentNegotiator.doContentNegotiation(uriInfo.getFormatOption(),
+      final ContentType requestedContentType = doContentNegotiation(context, uriInfo.getFormatOption(),
           request, customContentTypeSupport, complexRepresentationType);
       if (isCollection) {
         selectProcessor(ComplexCollectionProcessor.class)
@@ -470,7 +568,7 @@ public class ODataHandler {
     } else if (method == HttpMethod.PUT || method == HttpMethod.PATCH) {
       final ContentType requestFormat = ContentType.parse(request.getHeader(HttpHeader.CONTENT_TYPE));
       checkContentTypeSupport(requestFormat, complexRepresentationType);
-      final ContentType responseFormat = ContentNegotiator.doContentNegotiation(uriInfo.getFormatOption(),
+      final ContentType responseFormat = doContentNegotiation(context, uriInfo.getFormatOption(),
           request, customContentTypeSupport, complexRepresentationType);
       if (isCollection) {
         selectProcessor(ComplexCollectionProcessor.class)
@@ -494,14 +592,15 @@ public class ODataHandler {
   }
 
   private void handlePrimitiveDispatching(final ODataRequest request, final ODataResponse response,
-      final boolean isCollection)
+      final RequestContext context, final boolean isCollection)
       throws ODataHandlerException, ContentNegotiatorException, ODataApplicationException,
       SerializerException, DeserializerException {
+    final UriInfo uriInfo = context.getUriInfo();
     final HttpMethod method = request.getMethod();
     final RepresentationType representationType = isCollection ?
         RepresentationType.COLLECTION_PRIMITIVE : RepresentationType.PRIMITIVE;
     if (method == HttpMethod.GET) {
-      final ContentType requestedContentType = ContentNegotiator.doContentNegotiation(uriInfo.getFormatOption(),
+      final ContentType requestedContentType = doContentNegotiation(context, uriInfo.getFormatOption(),
           request, customContentTypeSupport, representationType);
       if (isCollection) {
         selectProcessor(PrimitiveCollectionProcessor.class)
@@ -513,7 +612,7 @@ public class ODataHandler {
     } else if (method == HttpMethod.PUT || method == HttpMethod.PATCH) {
       final ContentType requestFormat = ContentType.parse(request.getHeader(HttpHeader.CONTENT_TYPE));
       checkContentTypeSupport(requestFormat, representationType);
-      final ContentType responseFormat = ContentNegotiator.doContentNegotiation(uriInfo.getFormatOption(),
+      final ContentType responseFormat = doContentNegotiation(context, uriInfo.getFormatOption(),
           request, customContentTypeSupport, representationType);
       if (isCollection) {
         selectProcessor(PrimitiveCollectionProcessor.class)
@@ -537,8 +636,9 @@ public class ODataHandler {
   }
 
   private void handleCountDispatching(final ODataRequest request, final ODataResponse response,
-      final int lastPathSegmentIndex)
+      final RequestContext context, final int lastPathSegmentIndex)
       throws ODataHandlerException, ODataApplicationException, SerializerException {
+    final UriInfo uriInfo = context.getUriInfo();
     final HttpMethod method = request.getMethod();
     if (method == HttpMethod.GET) {
       final UriResource resource = uriInfo.getUriResourceParts().get(lastPathSegmentIndex - 1);
@@ -564,19 +664,20 @@ public class ODataHandler {
   }
 
   private void handleEntityDispatching(final ODataRequest request, final ODataResponse response,
-      final boolean isCollection, final boolean isMedia)
+      final RequestContext context, final boolean isCollection, final boolean isMedia)
       throws ODataHandlerException, ContentNegotiatorException, ODataApplicationException,
       SerializerException, DeserializerException {
+    final UriInfo uriInfo = context.getUriInfo();
     final HttpMethod method = request.getMethod();
     if (isCollection) {
       if (method == HttpMethod.GET) {
-        final ContentType requestedContentType = ContentNegotiator.doContentNegotiation(uriInfo.getFormatOption(),
+        final ContentType requestedContentType = doContentNegotiation(context, uriInfo.getFormatOption(),
             request, customContentTypeSupport, RepresentationType.COLLECTION_ENTITY);
         selectProcessor(EntityCollectionProcessor.class)
             .readEntityCollection(request, response, uriInfo, requestedContentType);
       } else if (method == HttpMethod.POST) {
         final ContentType requestFormat = ContentType.parse(request.getHeader(HttpHeader.CONTENT_TYPE));
-        final ContentType responseFormat = ContentNegotiator.doContentNegotiation(uriInfo.getFormatOption(),
+        final ContentType responseFormat = doContentNegotiation(context, uriInfo.getFormatOption(),
             request, customContentTypeSupport, RepresentationType.ENTITY);
         if (isMedia) {
           selectProcessor(MediaEntityProcessor.class)
@@ -592,14 +693,14 @@ public class ODataHandler {
       }
     } else {
       if (method == HttpMethod.GET) {
-        final ContentType requestedContentType = ContentNegotiator.doContentNegotiation(uriInfo.getFormatOption(),
+        final ContentType requestedContentType = doContentNegotiation(context, uriInfo.getFormatOption(),
             request, customContentTypeSupport, RepresentationType.ENTITY);
         selectProcessor(EntityProcessor.class)
             .readEntity(request, response, uriInfo, requestedContentType);
       } else if (method == HttpMethod.PUT || method == HttpMethod.PATCH) {
         final ContentType requestFormat = ContentType.parse(request.getHeader(HttpHeader.CONTENT_TYPE));
         checkContentTypeSupport(requestFormat, RepresentationType.ENTITY);
-        final ContentType responseFormat = ContentNegotiator.doContentNegotiation(uriInfo.getFormatOption(),
+        final ContentType responseFormat = doContentNegotiation(context, uriInfo.getFormatOption(),
             request, customContentTypeSupport, RepresentationType.ENTITY);
         selectProcessor(EntityProcessor.class)
             .updateEntity(request, response, uriInfo, requestFormat, responseFormat);
@@ -621,6 +722,16 @@ public class ODataHandler {
     }
   }
 
+  private ContentType doContentNegotiation(final RequestContext context, final FormatOption formatOption,
+      final ODataRequest request, final CustomContentTypeSupport customContentTypeSupport,
+      final RepresentationType representationType) throws ContentNegotiatorException {
+    final long start = context.startTiming();
+    final ContentType contentType = ContentNegotiator.doContentNegotiation(formatOption, request,
+        customContentTypeSupport, representationType);
+    context.record(RequestPhase.CONTENT_NEGOTIATION, start, -1);
+    return contentType;
+  }
+
   private void checkContentTypeSupport(ContentType requestFormat, RepresentationType representationType)
       throws ODataHandlerException, ContentNegotiatorException {
     ContentNegotiator.checkSupport(requestFormat, customContentTypeSupport, representationType);
@@ -649,7 +760,6 @@ public class ODataHandler {
   private <T extends Processor> T selectProcessor(final Class<T> cls) throws ODataHandlerException {
     for (final Processor processor : processors) {
       if (cls.isAssignableFrom(processor.getClass())) {
-        processor.init(odata, serviceMetadata);
         return cls.cast(processor);
       }
     }
@@ -658,10 +768,19 @@ public class ODataHandler {
   }
 
   public void register(final Processor processor) {
+    processor.init(odata, serviceMetadata);
     processors.add(0, processor);
   }
 
   public void register(final CustomContentTypeSupport customContentTypeSupport) {
     this.customContentTypeSupport = customContentTypeSupport;
   }
+
+  public void register(final ETagProvider eTagProvider) {
+    this.eTagProvider = eTagProvider;
+  }
+
+  public void register(final RequestMetrics metrics) {
+    this.metrics = metrics;
+  }
 }
@@ -31,7 +31,10 @@ public class ODataHandlerException extends ODataTranslatedException {
     /** parameter: processor interface */ PROCESSOR_NOT_IMPLEMENTED,
     /** no parameter */ FUNCTIONALITY_NOT_IMPLEMENTED,
     /** parameter: content type */ UNSUPPORTED_CONTENT_TYPE,
-    /** parameter: version */ ODATA_VERSION_NOT_SUPPORTED;
+    /** parameter: version */ ODATA_VERSION_NOT_SUPPORTED,
+    /** parameter: monitor id */ ASYNC_REQUEST_NOT_FOUND,
+    /** parameter: content encoding */ UNSUPPORTED_CONTENT_ENCODING,
+    /** parameter: HTTP header */ PRECONDITION_FAILED;
 
     @Override
     public String getKey() {
@@ -22,17 +22,22 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Map.Entry;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.olingo.commons.api.ODataRuntimeException;
 import org.apache.olingo.commons.api.http.HttpHeader;
 import org.apache.olingo.commons.api.http.HttpMethod;
+import org.apache.olingo.server.api.AsyncRequestManager;
 import org.apache.olingo.server.api.OData;
 import org.apache.olingo.server.api.ODataHttpHandler;
 import org.apache.olingo.server.api.ODataRequest;
@@ -40,9 +45,13 @@ import org.apache.olingo.server.api.ODataResponse;
 import org.apache.olingo.server.api.ODataServerError;
 import org.apache.olingo.server.api.ODataTranslatedException;
 import org.apache.olingo.server.api.ServiceMetadata;
+import org.apache.olingo.server.api.etag.ETagProvider;
+import org.apache.olingo.server.api.metrics.RequestMetrics;
+import org.apache.olingo.server.api.metrics.RequestPhase;
 import org.apache.olingo.server.api.processor.Processor;
 import org.apache.olingo.server.api.serializer.CustomContentTypeSupport;
 import org.apache.olingo.server.api.serializer.SerializerException;
+import org.apache.olingo.server.core.serializer.utils.BufferPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,6 +60,8 @@ public class ODataHttpHandlerImpl implements ODataHttpHandler {
   private static final Logger LOG = LoggerFactory.getLogger(ODataHttpHandlerImpl.class);
 
   private ODataHandler handler;
+  private AsyncRequestManagerImpl asyncRequestManager;
+  private ContentCompression compression;
   private int split = 0;
 
   public ODataHttpHandlerImpl(final OData odata, final ServiceMetadata serviceMetadata) {
@@ -59,18 +70,65 @@ public class ODataHttpHandlerImpl implements ODataHttpHandler {
 
   @Override
   public void process(final HttpServletRequest request, final HttpServletResponse response) {
-    ODataRequest odRequest = null;
+    final ODataRequest odRequest = new ODataRequest();
+    final RequestContext context = handler.createContext(odRequest);
     ODataResponse odResponse;
     try {
-      odRequest = new ODataRequest();
-          fillODataRequest(odRequest, request, split);
-      odResponse = handler.process(odRequest);
+      fillODataRequest(odRequest, request, split);
+      odResponse = handleUpfront(odRequest);
+      if (odResponse == null) {
+        odResponse = handler.awaitCompletion(odRequest, handler.process(odRequest, context), context);
+      }
       // ALL future methods after process must not throw exceptions!
     } catch (Exception e) {
       odResponse = handleException(odRequest, e);
     }
 
-    convertToHttp(response, odResponse);
+    convertToHttp(request, response, keepMetadataVariant(odRequest, odResponse), context);
+  }
+
+  @Override
+  public void processAsync(final HttpServletRequest request, final HttpServletResponse response) {
+    final AsyncContext asyncContext = request.startAsync();
+    final ODataRequest odRequest = new ODataRequest();
+    final RequestContext context = handler.createContext(odRequest);
+    ODataResponse odResponse;
+    try {
+      fillODataRequest(odRequest, request, split);
+      odResponse = handleUpfront(odRequest);
+      if (odResponse == null) {
+        odResponse = handler.process(odRequest, context);
+      }
+    } catch (Exception e) {
+      odResponse = handleException(odRequest, e);
+    }
+
+    new AsyncResponseWriter(handler, odRequest, context, odResponse, asyncContext, compression).start();
+  }
+
+  /**
+   * Answers the request without processing it, either from a kept metadata variant
+   * or with the status monitor of a request processed asynchronously.
+   * @return the response or <code>null</code> if the request has to be processed
+   */
+  private ODataResponse handleUpfront(final ODataRequest odRequest) throws ODataTranslatedException {
+    ODataResponse odResponse = compression == null ? null : compression.getMetadataVariant(odRequest);
+    if (odResponse == null && asyncRequestManager != null) {
+      odResponse = asyncRequestManager.handle(handler, odRequest);
+    }
+    return odResponse;
+  }
+
+  private ODataResponse keepMetadataVariant(final ODataRequest odRequest, final ODataResponse odResponse) {
+    if (compression != null) {
+      try {
+        return compression.keepMetadataVariant(odRequest, odResponse);
+      } catch (final IOException e) {
+        LOG.error(e.getMessage(), e);
+        return handleException(odRequest, e);
+      }
+    }
+    return odResponse;
   }
 
   @Override
@@ -78,6 +136,11 @@ public class ODataHttpHandlerImpl implements ODataHttpHandler {
     this.split = split;
   }
 
+  @Override
+  public void setCompression(final int level, final int minimumSize) {
+    compression = new ContentCompression(level, minimumSize);
+  }
+
   private ODataResponse handleException(ODataRequest odRequest, Exception e) {
     ODataResponse resp = new ODataResponse();
     ODataServerError serverError;
@@ -92,11 +155,70 @@ public class ODataHttpHandlerImpl implements ODataHttpHandler {
     return resp;
   }
 
-  static void convertToHttp(final HttpServletResponse response, final ODataResponse odResponse) {
-    response.setStatus(odResponse.getStatusCode());
+  /**
+   * Writes the response, compressed if the client accepts that and compression has been enabled,
+   * or restricted to the requested byte range if its content is a file-channel region.
+   * The output phase is recorded with the number of content bytes (before compression).
+   */
+  void convertToHttp(final HttpServletRequest request, final HttpServletResponse response,
+      final ODataResponse odResponse) {
+    convertToHttp(request, response, odResponse, handler.createContext(null));
+  }
 
-    for (Entry<String, String> entry : odResponse.getHeaders().entrySet()) {
-      response.setHeader(entry.getKey(), entry.getValue());
+  private void convertToHttp(final HttpServletRequest request, final HttpServletResponse response,
+      final ODataResponse odResponse, final RequestContext context) {
+    final long start = context.startTiming();
+    ByteRanges.apply(request.getMethod(), request.getHeader(HttpHeader.RANGE),
+        request.getHeader(HttpHeader.IF_RANGE), odResponse);
+    String encoding = null;
+    if (compression != null) {
+      try {
+        encoding = compression.select(request.getHeader(HttpHeader.ACCEPT_ENCODING), odResponse);
+      } catch (final IOException e) {
+        LOG.error(e.getMessage(), e);
+        throw new ODataRuntimeException(e);
+      }
+    }
+    if (encoding == null) {
+      context.record(RequestPhase.OUTPUT, start, convertToHttp(response, odResponse));
+      return;
+    }
+
+    convertStatusAndHeaders(response, odResponse, encoding);
+    final InputStream input = odResponse.getContent();
+    OutputStream output = null;
+    long bytes = 0;
+    try {
+      output = compression.compress(response.getOutputStream(), encoding);
+      bytes = copy(input, output);
+    } catch (IOException e) {
+      LOG.error(e.getMessage(), e);
+      throw new ODataRuntimeException(e);
+    } finally {
+      closeStream(output);
+      closeStream(input);
+    }
+    context.record(RequestPhase.OUTPUT, start, bytes);
+  }
+
+  /**
+   * Writes status, headers, and content of the response.
+   * @return the number of content bytes written
+   */
+  static long convertToHttp(final HttpServletResponse response, final ODataResponse odResponse) {
+    convertStatusAndHeaders(response, odResponse);
+
+    if (odResponse.getContentChannel() != null) {
+      final FileChannel channel = odResponse.getContentChannel();
+      try {
+        return transfer(channel, odResponse.getContentPosition(), odResponse.getContentLength(),
+            response.getOutputStream());
+      } catch (IOException e) {
+        LOG.error(e.getMessage(), e);
+        throw new ODataRuntimeException(e);
+      } finally {
+        closeStream(channel);
+      }
     }
 
     InputStream input = odResponse.getContent();
@@ -104,11 +226,7 @@ public class ODataHttpHandlerImpl implements ODataHttpHandler {
       OutputStream output = null;
       try {
         output = response.getOutputStream();
-        byte[] buffer = new byte[1024];
-        int n;
-        while (-1 != (n = input.read(buffer))) {
-          output.write(buffer, 0, n);
-        }
+        return copy(input, output);
       } catch (IOException e) {
         LOG.error(e.getMessage(), e);
         throw new ODataRuntimeException(e);
@@ -117,9 +235,58 @@ public class ODataHttpHandlerImpl implements ODataHttpHandler {
         closeStream(input);
       }
     }
+    return 0;
   }
 
-  private static void closeStream(Closeable closeable) {
+  static long copy(final InputStream input, final OutputStream output) throws IOException {
+    return BufferPool.getDefault().copy(input, output);
+  }
+
+  /**
+   * Transfers a region of a file channel to an output stream with the channel's own transfer mechanism.
+   * The Servlet API gives no access to the underlying socket, so this is as close to a zero-copy transfer
+   * as possible: there is no intermediate input stream and no per-response buffer.
+   * @return the number of bytes transferred
+   */
+  static long transfer(final FileChannel channel, final long position, final long count, final OutputStream output)
+      throws IOException {
+    final WritableByteChannel target = Channels.newChannel(output);
+    long transferred = 0;
+    while (transferred < count) {
+      final long n = channel.transferTo(position + transferred, count - transferred, target);
+      if (n <= 0) {
+        // the channel has been truncated in the meantime
+        break;
+      }
+      transferred += n;
+    }
+    output.flush();
+    return transferred;
+  }
+
+  static void convertStatusAndHeaders(final HttpServletResponse response, final ODataResponse odResponse) {
+    convertStatusAndHeaders(response, odResponse, null);
+  }
+
+  /**
+   * Sets status and headers; if the content is going to be compressed with the given content coding,
+   * the content length is left out since it is not known in advance.
+   */
+  static void convertStatusAndHeaders(final HttpServletResponse response, final ODataResponse odResponse,
+      final String contentEncoding) {
+    response.setStatus(odResponse.getStatusCode());
+
+    for (Entry<String, String> entry : odResponse.getHeaders().entrySet()) {
+      if (contentEncoding == null || !HttpHeader.CONTENT_LENGTH.equalsIgnoreCase(entry.getKey())) {
+        response.setHeader(entry.getKey(), entry.getValue());
+      }
+    }
+    if (contentEncoding != null) {
+      response.setHeader(HttpHeader.CONTENT_ENCODING, contentEncoding);
+    }
+  }
+
+  static void closeStream(Closeable closeable) {
     if(closeable != null) {
       try {
         closeable.close();
@@ -132,7 +299,7 @@ public class ODataHttpHandlerImpl implements ODataHttpHandler {
   private ODataRequest fillODataRequest(ODataRequest odRequest, final HttpServletRequest httpRequest, final int split)
       throws ODataTranslatedException {
     try {
-      odRequest.setBody(httpRequest.getInputStream());
+      odRequest.setBody(extractBody(httpRequest));
       extractHeaders(odRequest, httpRequest);
       extractUri(odRequest, httpRequest, split);
       extractMethod(odRequest, httpRequest);
@@ -144,6 +311,13 @@ public class ODataHttpHandlerImpl implements ODataHttpHandler {
     }
   }
 
+  /**
+   * Gets the request body, decompressed according to the <code>Content-Encoding</code> request header.
+   */
+  static InputStream extractBody(final HttpServletRequest httpRequest) throws IOException, ODataHandlerException {
+    return ContentCompression.decode(httpRequest.getInputStream(), httpRequest.getHeader(HttpHeader.CONTENT_ENCODING));
+  }
+
   static void extractMethod(final ODataRequest odRequest, final HttpServletRequest httpRequest)
       throws ODataTranslatedException {
     try {
@@ -241,4 +415,31 @@ public class ODataHttpHandlerImpl implements ODataHttpHandler {
   public void register(final CustomContentTypeSupport customContentTypeSupport) {
     handler.register(customContentTypeSupport);
   }
+
+  @Override
+  public void register(final AsyncRequestManager asyncRequestManager) {
+    if (asyncRequestManager != null && !(asyncRequestManager instanceof AsyncRequestManagerImpl)) {
+      throw new IllegalArgumentException("Unsupported asynchronous request manager "
+          + asyncRequestManager.getClass().getName() + "; use OData#createAsyncRequestManager to create one.");
+    }
+    register((AsyncRequestManagerImpl) asyncRequestManager);
+  }
+
+  /**
+   * Registers a manager for processing requests asynchronously if the client prefers so.
+   * @param asyncRequestManager the manager, or <code>null</code> to process all requests synchronously
+   */
+  public void register(final AsyncRequestManagerImpl asyncRequestManager) {
+    this.asyncRequestManager = asyncRequestManager;
+  }
+
+  @Override
+  public void register(final ETagProvider eTagProvider) {
+    handler.register(eTagProvider);
+  }
+
+  @Override
+  public void register(final RequestMetrics metrics) {
+    handler.register(metrics);
+  }
 }
@@ -25,6 +25,7 @@ import org.apache.olingo.commons.api.edm.EdmPrimitiveTypeKind;
 import org.apache.olingo.commons.api.edm.provider.EdmProvider;
 import org.apache.olingo.commons.api.format.ODataFormat;
 import org.apache.olingo.commons.core.edm.primitivetype.EdmPrimitiveTypeFactory;
+import org.apache.olingo.server.api.AsyncRequestManager;
 import org.apache.olingo.server.api.OData;
 import org.apache.olingo.server.api.ODataHttpHandler;
 import org.apache.olingo.server.api.ServiceMetadata;
@@ -32,12 +33,20 @@ import org.apache.olingo.server.api.deserializer.DeserializerException;
 import org.apache.olingo.server.api.deserializer.FixedFormatDeserializer;
 import org.apache.olingo.server.api.deserializer.ODataDeserializer;
 import org.apache.olingo.server.api.edmx.EdmxReference;
+import org.apache.olingo.server.api.etag.ETagHelper;
+import org.apache.olingo.server.api.metrics.RequestMetricsHistogram;
+import org.apache.olingo.server.api.paging.PagingHelper;
+import org.apache.olingo.server.api.search.SearchIndex;
 import org.apache.olingo.server.api.serializer.FixedFormatSerializer;
 import org.apache.olingo.server.api.serializer.ODataSerializer;
 import org.apache.olingo.server.api.serializer.SerializerException;
 import org.apache.olingo.server.api.uri.UriHelper;
 import org.apache.olingo.server.core.deserializer.FixedFormatDeserializerImpl;
 import org.apache.olingo.server.core.deserializer.json.ODataJsonDeserializer;
+import org.apache.olingo.server.core.etag.ETagHelperImpl;
+import org.apache.olingo.server.core.metrics.RequestMetricsHistogramImpl;
+import org.apache.olingo.server.core.paging.PagingHelperImpl;
+import org.apache.olingo.server.core.search.SearchIndexImpl;
 import org.apache.olingo.server.core.serializer.FixedFormatSerializerImpl;
 import org.apache.olingo.server.core.serializer.json.ODataJsonSerializer;
 import org.apache.olingo.server.core.serializer.xml.ODataXmlSerializerImpl;
@@ -55,6 +64,7 @@ public class ODataImpl extends OData {
       serializer = new ODataJsonSerializer(format);
       break;
     case XML:
+    case ATOM:
       serializer = new ODataXmlSerializerImpl();
       break;
     default:
@@ -62,7 +72,9 @@ public class ODataImpl extends OData {
           SerializerException.MessageKeys.UNSUPPORTED_FORMAT, format.toString());
     }
 
-    return serializer;
+    // serializers created while a request with metrics is processed record their calls for it
+    final RequestContext context = RequestContext.current();
+    return context == null ? serializer : new MeteredSerializer(serializer, context);
   }
 
   @Override
@@ -75,6 +87,12 @@ public class ODataImpl extends OData {
     return new ODataHttpHandlerImpl(this, edm);
   }
 
+  @Override
+  public AsyncRequestManager createAsyncRequestManager(final int maxThreads, final int maxRequests,
+      final long resultTimeToLive) {
+    return new AsyncRequestManagerImpl(maxThreads, maxRequests, resultTimeToLive);
+  }
+
   @Override
   public ServiceMetadata createServiceMetadata(EdmProvider edmProvider, List<EdmxReference> references) {
     return new ServiceMetadataImpl(edmProvider, references);
@@ -90,6 +108,26 @@ public class ODataImpl extends OData {
     return new UriHelperImpl();
   }
 
+  @Override
+  public ETagHelper createETagHelper() {
+    return new ETagHelperImpl();
+  }
+
+  @Override
+  public RequestMetricsHistogram createRequestMetricsHistogram() {
+    return new RequestMetricsHistogramImpl();
+  }
+
+  @Override
+  public SearchIndex createSearchIndex(final List<String> propertyNames) {
+    return new SearchIndexImpl(propertyNames);
+  }
+
+  @Override
+  public PagingHelper createPagingHelper(final byte[] secret) {
+    return new PagingHelperImpl(secret);
+  }
+
   @Override
   public ODataDeserializer createDeserializer(ODataFormat format) throws DeserializerException {
     ODataDeserializer serializer;
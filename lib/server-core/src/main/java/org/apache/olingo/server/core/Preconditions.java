@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.apache.olingo.commons.api.edm.EdmEntitySet;
+import org.apache.olingo.commons.api.http.HttpHeader;
+import org.apache.olingo.commons.api.http.HttpMethod;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.ODataRequest;
+import org.apache.olingo.server.api.ODataResponse;
+import org.apache.olingo.server.api.etag.ETagHelper;
+import org.apache.olingo.server.api.etag.ETagProvider;
+import org.apache.olingo.server.api.uri.UriInfo;
+import org.apache.olingo.server.api.uri.UriParameter;
+import org.apache.olingo.server.api.uri.UriResource;
+import org.apache.olingo.server.api.uri.UriResourceEntitySet;
+import org.apache.olingo.server.api.uri.UriResourceLambdaAll;
+import org.apache.olingo.server.api.uri.UriResourceLambdaAny;
+import org.apache.olingo.server.api.uri.UriResourceNavigation;
+import org.apache.olingo.server.api.uri.queryoption.ExpandOption;
+import org.apache.olingo.server.api.uri.queryoption.FilterOption;
+import org.apache.olingo.server.api.uri.queryoption.OrderByItem;
+import org.apache.olingo.server.api.uri.queryoption.OrderByOption;
+import org.apache.olingo.server.api.uri.queryoption.expression.Binary;
+import org.apache.olingo.server.api.uri.queryoption.expression.Expression;
+import org.apache.olingo.server.api.uri.queryoption.expression.Member;
+import org.apache.olingo.server.api.uri.queryoption.expression.Method;
+import org.apache.olingo.server.api.uri.queryoption.expression.Unary;
+import org.apache.olingo.server.core.etag.ETagHelperImpl;
+
+/**
+ * Evaluates the conditional request headers against the entity tag and the modification date
+ * of the addressed resource, as provided by an {@link ETagProvider}, before the request is dispatched.
+ */
+final class Preconditions {
+
+  private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+  private static final ETagHelper HELPER = new ETagHelperImpl();
+
+  private Preconditions() {}
+
+  /**
+   * Evaluates the preconditions of a request in the order given by RFC 7232.
+   * Successful GET requests get the current entity tag and modification date as response headers.
+   * GET requests whose response depends on related entities, through <code>$expand</code> or through
+   * navigation in <code>$filter</code> or <code>$orderby</code>, are left to the processor,
+   * because the entity tag of the addressed resource does not cover the related entities.
+   * @return whether the request has been answered with <code>304 Not Modified</code>
+   * @throws ODataHandlerException if a precondition has failed
+   */
+  static boolean evaluate(final ETagProvider provider, final ODataRequest request, final UriInfo uriInfo,
+      final ODataResponse response) throws ODataHandlerException, ODataApplicationException {
+    final boolean isRead = request.getMethod() == HttpMethod.GET;
+    final String ifMatch = getHeader(request, HttpHeader.IF_MATCH);
+    final String ifNoneMatch = getHeader(request, HttpHeader.IF_NONE_MATCH);
+    final String ifUnmodifiedSince = request.getHeader(HttpHeader.IF_UNMODIFIED_SINCE);
+    if (!isRead && ifMatch == null && ifNoneMatch == null && ifUnmodifiedSince == null) {
+      return false;
+    }
+
+    final UriResourceEntitySet resource = getEntitySetResource(uriInfo.getUriResourceParts());
+    if (resource == null || !isRead && resource.getKeyPredicates().isEmpty()
+        || isRead && dependsOnRelatedEntities(uriInfo)) {
+      return false;
+    }
+    final EdmEntitySet entitySet = resource.getEntitySet();
+    final List<UriParameter> keys = resource.getKeyPredicates();
+    final String eTag = provider.getETag(entitySet, keys);
+    final Date lastModified = isRead || ifUnmodifiedSince != null ?
+        provider.getLastModified(entitySet, keys) :
+        null;
+    if (eTag == null && lastModified == null) {
+      // Nothing known about the resource; the processor has to decide.
+      return false;
+    }
+
+    if (ifMatch != null) {
+      if (!HELPER.matches(eTag == null ? "" : eTag, ifMatch)) {
+        throw preconditionFailed(HttpHeader.IF_MATCH);
+      }
+    } else if (ifUnmodifiedSince != null && lastModified != null) {
+      final Date date = parseDate(ifUnmodifiedSince);
+      if (date != null && isAfter(lastModified, date)) {
+        throw preconditionFailed(HttpHeader.IF_UNMODIFIED_SINCE);
+      }
+    }
+
+    boolean notModified = false;
+    if (ifNoneMatch != null) {
+      if (HELPER.matches(eTag == null ? "" : eTag, ifNoneMatch)) {
+        if (!isRead) {
+          throw preconditionFailed(HttpHeader.IF_NONE_MATCH);
+        }
+        notModified = true;
+      }
+    } else if (isRead && lastModified != null) {
+      final String ifModifiedSince = request.getHeader(HttpHeader.IF_MODIFIED_SINCE);
+      final Date date = ifModifiedSince == null ? null : parseDate(ifModifiedSince);
+      notModified = date != null && !isAfter(lastModified, date);
+    }
+
+    if (isRead) {
+      if (eTag != null) {
+        response.setHeader(HttpHeader.ETAG, eTag);
+      }
+      if (lastModified != null) {
+        response.setHeader(HttpHeader.LAST_MODIFIED, formatDate(lastModified));
+      }
+    }
+    if (notModified) {
+      response.setStatusCode(HttpStatusCode.NOT_MODIFIED.getStatusCode());
+    }
+    return notModified;
+  }
+
+  /**
+   * Gets the entity-set resource whose entity tag applies to the whole resource path,
+   * i.e., the path must not navigate away from the entity or entity set.
+   */
+  private static UriResourceEntitySet getEntitySetResource(final List<UriResource> parts) {
+    if (parts.isEmpty() || !(parts.get(0) instanceof UriResourceEntitySet)) {
+      return null;
+    }
+    for (final UriResource part : parts.subList(1, parts.size())) {
+      switch (part.getKind()) {
+      case primitiveProperty:
+      case complexProperty:
+      case value:
+      case count:
+      case ref:
+        break;
+      default:
+        return null;
+      }
+    }
+    return (UriResourceEntitySet) parts.get(0);
+  }
+
+  /** Determines whether the system query options of a request refer to related entities. */
+  private static boolean dependsOnRelatedEntities(final UriInfo uriInfo) {
+    final ExpandOption expand = uriInfo.getExpandOption();
+    if (expand != null && !expand.getExpandItems().isEmpty()) {
+      return true;
+    }
+    final FilterOption filter = uriInfo.getFilterOption();
+    if (filter != null && navigates(filter.getExpression())) {
+      return true;
+    }
+    final OrderByOption orderBy = uriInfo.getOrderByOption();
+    if (orderBy != null) {
+      for (final OrderByItem item : orderBy.getOrders()) {
+        if (navigates(item.getExpression())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean navigates(final Expression expression) {
+    if (expression instanceof Member) {
+      for (final UriResource part : ((Member) expression).getResourcePath().getUriResourceParts()) {
+        if (part instanceof UriResourceNavigation
+            || part instanceof UriResourceLambdaAny && navigates(((UriResourceLambdaAny) part).getExpression())
+            || part instanceof UriResourceLambdaAll && navigates(((UriResourceLambdaAll) part).getExpression())) {
+          return true;
+        }
+      }
+    } else if (expression instanceof Binary) {
+      return navigates(((Binary) expression).getLeftOperand()) || navigates(((Binary) expression).getRightOperand());
+    } else if (expression instanceof Unary) {
+      return navigates(((Unary) expression).getOperand());
+    } else if (expression instanceof Method) {
+      for (final Expression parameter : ((Method) expression).getParameters()) {
+        if (navigates(parameter)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /** Gets all values of a list-valued header, joined with commas. */
+  private static String getHeader(final ODataRequest request, final String name) {
+    final List<String> values = request.getHeaders(name);
+    if (values == null || values.isEmpty()) {
+      return null;
+    }
+    StringBuilder result = new StringBuilder(values.get(0));
+    for (final String value : values.subList(1, values.size())) {
+      result.append(',').append(value);
+    }
+    return result.toString();
+  }
+
+  /** HTTP dates have a precision of seconds. */
+  private static boolean isAfter(final Date lastModified, final Date date) {
+    return lastModified.getTime() / 1000 > date.getTime() / 1000;
+  }
+
+  private static Date parseDate(final String value) {
+    try {
+      return createDateFormat().parse(value.trim());
+    } catch (final ParseException e) {
+      // Invalid dates must be ignored.
+      return null;
+    }
+  }
+
+  private static String formatDate(final Date date) {
+    return createDateFormat().format(date);
+  }
+
+  private static DateFormat createDateFormat() {
+    DateFormat format = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+    format.setTimeZone(TimeZone.getTimeZone("GMT"));
+    return format;
+  }
+
+  private static ODataHandlerException preconditionFailed(final String header) {
+    return new ODataHandlerException("The precondition in the " + header + " header has failed.",
+        ODataHandlerException.MessageKeys.PRECONDITION_FAILED, header);
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core;
+
+import java.util.List;
+
+import org.apache.olingo.server.api.ODataRequest;
+import org.apache.olingo.server.api.metrics.RequestEvent;
+import org.apache.olingo.server.api.metrics.RequestMetrics;
+import org.apache.olingo.server.api.metrics.RequestPhase;
+import org.apache.olingo.server.api.uri.UriInfo;
+import org.apache.olingo.server.api.uri.UriInfoKind;
+import org.apache.olingo.server.api.uri.UriResource;
+import org.apache.olingo.server.api.uri.UriResourceEntitySet;
+import org.apache.olingo.server.api.uri.UriResourceKind;
+
+/**
+ * The state of a single request handled by an {@link ODataHandler}: its URI info, once parsed.
+ * Each part of a batch request has a context of its own, so that metrics are recorded for the request
+ * they belong to.
+ * While processors are called, the context is the current one of the calling thread, so that the
+ * serializers they create record their calls for it; processors themselves are shared by all requests.
+ */
+final class RequestContext {
+
+  private static final ThreadLocal<RequestContext> CURRENT = new ThreadLocal<RequestContext>();
+
+  private final ODataRequest request;
+  private final RequestMetrics metrics;
+  private UriInfo uriInfo;
+
+  RequestContext(final ODataRequest request, final RequestMetrics metrics) {
+    this.request = request;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Returns the context of the request processed by the current thread,
+   * or <code>null</code> if there is none or no metrics are registered.
+   */
+  static RequestContext current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Makes this context the current one of the calling thread, if metrics are registered.
+   * @return the previous context, to be restored with {@link #leave(RequestContext)}
+   */
+  RequestContext enter() {
+    final RequestContext previous = CURRENT.get();
+    if (metrics != null) {
+      CURRENT.set(this);
+    }
+    return previous;
+  }
+
+  /**
+   * Restores the context of the calling thread that was current before {@link #enter()}.
+   */
+  static void leave(final RequestContext previous) {
+    if (previous == null) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(previous);
+    }
+  }
+
+  /**
+   * Returns the URI info of the request, or <code>null</code> if it has not been parsed (successfully).
+   */
+  UriInfo getUriInfo() {
+    return uriInfo;
+  }
+
+  void setUriInfo(final UriInfo uriInfo) {
+    this.uriInfo = uriInfo;
+  }
+
+  /**
+   * Returns the start time of a phase to be recorded, or 0 if no metrics are registered.
+   */
+  long startTiming() {
+    return metrics == null ? 0 : System.nanoTime();
+  }
+
+  /**
+   * Records a completed phase of the request, if metrics are registered.
+   * @param phase the phase
+   * @param start the start time from {@link #startTiming()}
+   * @param bytes the number of bytes written, or -1
+   */
+  void record(final RequestPhase phase, final long start, final long bytes) {
+    if (metrics == null) {
+      return;
+    }
+    final long duration = System.nanoTime() - start;
+    UriResourceKind resourceKind = null;
+    String entitySetName = null;
+    if (uriInfo != null && uriInfo.getKind() == UriInfoKind.resource) {
+      final List<UriResource> resourceParts = uriInfo.getUriResourceParts();
+      resourceKind = resourceParts.get(resourceParts.size() - 1).getKind();
+      if (resourceParts.get(0) instanceof UriResourceEntitySet) {
+        entitySetName = ((UriResourceEntitySet) resourceParts.get(0)).getEntitySet().getName();
+      }
+    }
+    metrics.record(new RequestEvent(phase, request == null ? null : request.getMethod(),
+        uriInfo == null ? null : uriInfo.getKind(), resourceKind, entitySetName, duration, bytes));
+  }
+}
@@ -24,6 +24,7 @@ import org.apache.olingo.commons.api.edm.provider.EdmProvider;
 import org.apache.olingo.commons.core.edm.provider.EdmProviderImpl;
 import org.apache.olingo.server.api.edmx.EdmxReference;
 import org.apache.olingo.server.api.ServiceMetadata;
+import org.apache.olingo.server.core.serializer.json.JsonTemplates;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -35,6 +36,7 @@ public class ServiceMetadataImpl implements ServiceMetadata {
 
   private final EdmProviderImpl edm;
   private final List<EdmxReference> references = new ArrayList<EdmxReference>();
+  private final JsonTemplates jsonTemplates = new JsonTemplates();
 
   public ServiceMetadataImpl(EdmProvider edmProvider, List<EdmxReference> references) {
     this.edm = new EdmProviderImpl(edmProvider);
@@ -55,4 +57,11 @@ public class ServiceMetadataImpl implements ServiceMetadata {
   public List<EdmxReference> getReferences() {
     return Collections.unmodifiableList(references);
   }
+
+  /**
+   * Gets the pre-encoded templates the JSON serializer uses for the structured types of this service.
+   */
+  public JsonTemplates getJsonTemplates() {
+    return jsonTemplates;
+  }
 }
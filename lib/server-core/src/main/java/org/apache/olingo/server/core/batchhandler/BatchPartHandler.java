@@ -64,11 +64,11 @@ public class BatchPartHandler {
     if (isChangeSet) {
       rewriter.replaceReference(request);
 
-      response = oDataHandler.process(request);
+      response = oDataHandler.awaitCompletion(request, oDataHandler.process(request));
 
       rewriter.addMapping(request, response);
     } else {
-      response = oDataHandler.process(request);
+      response = oDataHandler.awaitCompletion(request, oDataHandler.process(request));
     }
 
     // Add content id to response
@@ -29,18 +29,15 @@ import org.apache.olingo.server.api.deserializer.FixedFormatDeserializer;
 import org.apache.olingo.server.api.deserializer.batch.BatchOptions;
 import org.apache.olingo.server.api.deserializer.batch.BatchRequestPart;
 import org.apache.olingo.server.core.deserializer.batch.BatchParser;
+import org.apache.olingo.server.core.serializer.utils.BufferPool;
 
 public class FixedFormatDeserializerImpl implements FixedFormatDeserializer {
 
   @Override
   public byte[] binary(InputStream content) throws DeserializerException {
     ByteArrayOutputStream result = new ByteArrayOutputStream();
-    byte[] buffer = new byte[128];
-    int count;
     try {
-      while ((count = content.read(buffer)) > -1) {
-        result.write(buffer, 0, count);
-      }
+      BufferPool.getDefault().copy(content, result);
       result.flush();
     } catch (final IOException e) {
       throw new DeserializerException("An I/O exception occurred.", e,
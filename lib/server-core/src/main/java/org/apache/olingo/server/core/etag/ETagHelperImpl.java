@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.etag;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.server.api.etag.ETagHelper;
+
+public class ETagHelperImpl implements ETagHelper {
+
+  private static final String WEAK_PREFIX = "W/";
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  @Override
+  public String createWeakETag(final String value) {
+    return WEAK_PREFIX + '"' + value + '"';
+  }
+
+  @Override
+  public String createWeakETag(final Collection<String> memberETags) {
+    // 64-bit FNV-1a hash; the separator keeps ("ab", "c") and ("a", "bc") apart.
+    long hash = FNV_OFFSET_BASIS;
+    for (final String eTag : memberETags) {
+      final String opaque = getOpaqueTag(eTag);
+      for (int i = 0; i < opaque.length(); i++) {
+        hash = (hash ^ opaque.charAt(i)) * FNV_PRIME;
+      }
+      hash = (hash ^ ',') * FNV_PRIME;
+    }
+    return createWeakETag(memberETags.size() + "-" + Long.toHexString(hash));
+  }
+
+  @Override
+  public String createWeakETag(final EntityCollection entityCollection) {
+    List<String> eTags = new ArrayList<String>(entityCollection.getEntities().size());
+    for (final Entity entity : entityCollection.getEntities()) {
+      if (entity.getETag() == null) {
+        return null;
+      }
+      eTags.add(entity.getETag());
+    }
+    return createWeakETag(eTags);
+  }
+
+  @Override
+  public boolean matches(final String eTag, final String conditionValue) {
+    if (eTag == null || conditionValue == null) {
+      return false;
+    }
+    if ("*".equals(conditionValue.trim())) {
+      return true;
+    }
+    final String opaque = getOpaqueTag(eTag);
+    int index = 0;
+    while (index < conditionValue.length()) {
+      final char c = conditionValue.charAt(index);
+      if (c == ',' || Character.isWhitespace(c)) {
+        index++;
+        continue;
+      }
+      if (conditionValue.startsWith(WEAK_PREFIX, index)) {
+        index += WEAK_PREFIX.length();
+      }
+      int end;
+      String candidate;
+      if (index < conditionValue.length() && conditionValue.charAt(index) == '"') {
+        // Quoted entity tags may contain commas.
+        end = conditionValue.indexOf('"', index + 1);
+        if (end < 0) {
+          return false;
+        }
+        candidate = conditionValue.substring(index + 1, end);
+        end++;
+      } else {
+        // Be lenient with clients sending unquoted entity tags.
+        end = conditionValue.indexOf(',', index);
+        if (end < 0) {
+          end = conditionValue.length();
+        }
+        candidate = conditionValue.substring(index, end).trim();
+      }
+      if (opaque.equals(candidate)) {
+        return true;
+      }
+      index = end;
+    }
+    return false;
+  }
+
+  /** Gets the entity tag without weakness indicator and quotes. */
+  private static String getOpaqueTag(final String eTag) {
+    String tag = eTag.startsWith(WEAK_PREFIX) ? eTag.substring(WEAK_PREFIX.length()) : eTag;
+    if (tag.length() >= 2 && tag.charAt(0) == '"' && tag.charAt(tag.length() - 1) == '"') {
+      tag = tag.substring(1, tag.length() - 1);
+    }
+    return tag;
+  }
+}
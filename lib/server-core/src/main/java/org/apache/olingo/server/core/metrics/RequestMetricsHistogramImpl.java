@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.olingo.server.api.metrics.RequestEvent;
+import org.apache.olingo.server.api.metrics.RequestMetricsHistogram;
+import org.apache.olingo.server.api.metrics.RequestPhase;
+
+/**
+ * Keeps lock-free histograms of the phase durations.
+ * Each power of two is divided into eight buckets of the same width.
+ */
+public class RequestMetricsHistogramImpl implements RequestMetricsHistogram {
+
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = bucket(Long.MAX_VALUE) + 1;
+  private static final Histogram EMPTY = new HistogramImpl();
+
+  private volatile HistogramImpl[] phases = createHistograms();
+  private volatile ConcurrentMap<String, HistogramImpl[]> entitySets =
+      new ConcurrentHashMap<String, HistogramImpl[]>();
+
+  @Override
+  public void record(final RequestEvent event) {
+    final int phase = event.getPhase().ordinal();
+    phases[phase].record(event.getDurationNanos(), event.getBytes());
+    final String entitySetName = event.getEntitySetName();
+    if (entitySetName != null) {
+      HistogramImpl[] histograms = entitySets.get(entitySetName);
+      if (histograms == null) {
+        final HistogramImpl[] created = createHistograms();
+        histograms = entitySets.putIfAbsent(entitySetName, created);
+        if (histograms == null) {
+          histograms = created;
+        }
+      }
+      histograms[phase].record(event.getDurationNanos(), event.getBytes());
+    }
+  }
+
+  @Override
+  public Histogram getHistogram(final RequestPhase phase) {
+    return phases[phase.ordinal()];
+  }
+
+  @Override
+  public Histogram getHistogram(final RequestPhase phase, final String entitySetName) {
+    final HistogramImpl[] histograms = entitySets.get(entitySetName);
+    return histograms == null ? EMPTY : histograms[phase.ordinal()];
+  }
+
+  @Override
+  public void reset() {
+    phases = createHistograms();
+    entitySets = new ConcurrentHashMap<String, HistogramImpl[]>();
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder result = new StringBuilder();
+    for (final RequestPhase phase : RequestPhase.values()) {
+      final Histogram histogram = getHistogram(phase);
+      result.append(phase)
+          .append(": count=").append(histogram.getCount())
+          .append(", p50=").append(histogram.getPercentileNanos(50))
+          .append(" ns, p99=").append(histogram.getPercentileNanos(99))
+          .append(" ns, max=").append(histogram.getMaxNanos())
+          .append(" ns, bytes=").append(histogram.getBytes())
+          .append('\n');
+    }
+    return result.toString();
+  }
+
+  private static HistogramImpl[] createHistograms() {
+    final HistogramImpl[] histograms = new HistogramImpl[RequestPhase.values().length];
+    for (int i = 0; i < histograms.length; i++) {
+      histograms[i] = new HistogramImpl();
+    }
+    return histograms;
+  }
+
+  /** Returns the index of the bucket containing a value; values below 16 have their own buckets. */
+  static int bucket(final long value) {
+    if (value < 2 * SUB_BUCKETS) {
+      return value < 0 ? 0 : (int) value;
+    }
+    final int exponent = 63 - Long.numberOfLeadingZeros(value);
+    final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /** Returns the largest value in a bucket. */
+  static long upperBound(final int bucket) {
+    if (bucket < 2 * SUB_BUCKETS) {
+      return bucket;
+    }
+    final int shift = bucket / SUB_BUCKETS - 1;
+    final long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    return lower + ((1L << shift) - 1);
+  }
+
+  private static final class HistogramImpl implements Histogram {
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    private void record(final long nanos, final long writtenBytes) {
+      counts.incrementAndGet(bucket(nanos));
+      count.incrementAndGet();
+      totalNanos.addAndGet(nanos);
+      long max = maxNanos.get();
+      while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+        max = maxNanos.get();
+      }
+      if (writtenBytes > 0) {
+        bytes.addAndGet(writtenBytes);
+      }
+    }
+
+    @Override
+    public long getCount() {
+      return count.get();
+    }
+
+    @Override
+    public long getTotalNanos() {
+      return totalNanos.get();
+    }
+
+    @Override
+    public long getMaxNanos() {
+      return maxNanos.get();
+    }
+
+    @Override
+    public long getBytes() {
+      return bytes.get();
+    }
+
+    @Override
+    public long getPercentileNanos(final double percentile) {
+      final long total = count.get();
+      if (total == 0) {
+        return 0;
+      }
+      final long rank = Math.max(1, (long) Math.ceil(total * Math.min(Math.max(percentile, 0), 100) / 100));
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        seen += counts.get(i);
+        if (seen >= rank) {
+          return Math.min(upperBound(i), maxNanos.get());
+        }
+      }
+      return maxNanos.get();
+    }
+  }
+}
@@ -0,0 +1,306 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.paging;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.UUID;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.olingo.commons.api.ODataRuntimeException;
+import org.apache.olingo.commons.api.http.HttpHeader;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.commons.core.Decoder;
+import org.apache.olingo.commons.core.Encoder;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.ODataRequest;
+import org.apache.olingo.server.api.paging.PagingHelper;
+import org.apache.olingo.server.api.uri.queryoption.SystemQueryOptionKind;
+
+/**
+ * <p>Paging helper with binary skip tokens.</p>
+ * <p>A skip token consists of a version byte, the number of values, the values each with a type tag,
+ * and the first {@value #SIGNATURE_LENGTH} bytes of the HMAC-SHA256 of all that,
+ * encoded in the URL-safe Base64 alphabet without padding.</p>
+ */
+public class PagingHelperImpl implements PagingHelper {
+
+  private static final String ALGORITHM = "HmacSHA256";
+  private static final int SIGNATURE_LENGTH = 12;
+  private static final byte VERSION = 1;
+  private static final String SKIPTOKEN = SystemQueryOptionKind.SKIPTOKEN.toString();
+
+  private static final byte NULL = 0;
+  private static final byte FALSE = 1;
+  private static final byte TRUE = 2;
+  private static final byte BYTE = 3;
+  private static final byte SHORT = 4;
+  private static final byte INTEGER = 5;
+  private static final byte LONG = 6;
+  private static final byte FLOAT = 7;
+  private static final byte DOUBLE = 8;
+  private static final byte DECIMAL = 9;
+  private static final byte BIG_INTEGER = 10;
+  private static final byte STRING = 11;
+  private static final byte GUID = 12;
+  private static final byte CALENDAR = 13;
+  private static final byte TIMESTAMP = 14;
+  private static final byte BINARY = 15;
+
+  private final SecretKeySpec key;
+
+  public PagingHelperImpl(final byte[] secret) {
+    if (secret == null || secret.length == 0) {
+      throw new IllegalArgumentException("A secret is required to sign skip tokens.");
+    }
+    key = new SecretKeySpec(secret.clone(), ALGORITHM);
+  }
+
+  @Override
+  public Integer getPreferredMaxPageSize(final ODataRequest request) {
+    final List<String> values = request.getHeaders(HttpHeader.PREFER);
+    if (values != null) {
+      for (final String value : values) {
+        for (final String preference : value.split(",")) {
+          final String[] nameAndValue = preference.split(";", 2)[0].split("=", 2);
+          if (nameAndValue.length == 2
+              && PREFERENCE_MAX_PAGE_SIZE.equalsIgnoreCase(nameAndValue[0].trim())) {
+            try {
+              final int size = Integer.parseInt(nameAndValue[1].trim());
+              return size > 0 ? size : null;
+            } catch (final NumberFormatException e) {
+              return null;
+            }
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public String createSkipToken(final List<?> sortKey) {
+    try {
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      DataOutputStream output = new DataOutputStream(buffer);
+      output.writeByte(VERSION);
+      output.writeShort(sortKey.size());
+      for (final Object value : sortKey) {
+        write(output, value);
+      }
+      output.flush();
+      final byte[] payload = buffer.toByteArray();
+      final byte[] token = Arrays.copyOf(payload, payload.length + SIGNATURE_LENGTH);
+      System.arraycopy(sign(payload), 0, token, payload.length, SIGNATURE_LENGTH);
+      return Base64.encodeBase64URLSafeString(token);
+    } catch (final IOException e) {
+      throw new ODataRuntimeException(e);
+    }
+  }
+
+  @Override
+  public List<Object> parseSkipToken(final String skipToken) throws ODataApplicationException {
+    final byte[] token = skipToken == null ? null : Base64.decodeBase64(skipToken);
+    if (token == null || token.length <= SIGNATURE_LENGTH) {
+      throw invalid();
+    }
+    final byte[] payload = Arrays.copyOf(token, token.length - SIGNATURE_LENGTH);
+    if (!MessageDigest.isEqual(Arrays.copyOf(sign(payload), SIGNATURE_LENGTH),
+        Arrays.copyOfRange(token, payload.length, token.length))) {
+      throw invalid();
+    }
+    try {
+      DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+      if (input.readByte() != VERSION) {
+        throw invalid();
+      }
+      final int size = input.readUnsignedShort();
+      List<Object> result = new ArrayList<Object>(size);
+      for (int index = 0; index < size; index++) {
+        result.add(read(input));
+      }
+      if (input.available() > 0) {
+        throw invalid();
+      }
+      return result;
+    } catch (final IOException e) {
+      throw invalid();
+    }
+  }
+
+  @Override
+  public URI createNextLink(final ODataRequest request, final String skipToken) {
+    StringBuilder result = new StringBuilder(request.getRawBaseUri()).append(request.getRawODataPath()).append('?');
+    final String query = request.getRawQueryPath();
+    if (query != null && !query.isEmpty()) {
+      for (final String option : query.split("&")) {
+        if (!option.isEmpty() && !SKIPTOKEN.equals(decode(option.split("=", 2)[0]))) {
+          result.append(option).append('&');
+        }
+      }
+    }
+    // The token is URL-safe.
+    return URI.create(result.append(Encoder.encode(SKIPTOKEN)).append('=').append(skipToken).toString());
+  }
+
+  private static String decode(final String value) {
+    try {
+      return Decoder.decode(value);
+    } catch (final IllegalArgumentException e) {
+      return value;
+    }
+  }
+
+  private byte[] sign(final byte[] payload) {
+    try {
+      Mac mac = Mac.getInstance(ALGORITHM);
+      mac.init(key);
+      return mac.doFinal(payload);
+    } catch (final GeneralSecurityException e) {
+      throw new ODataRuntimeException(e);
+    }
+  }
+
+  private static void write(final DataOutputStream output, final Object value) throws IOException {
+    if (value == null) {
+      output.writeByte(NULL);
+    } else if (value instanceof Boolean) {
+      output.writeByte((Boolean) value ? TRUE : FALSE);
+    } else if (value instanceof Byte) {
+      output.writeByte(BYTE);
+      output.writeByte((Byte) value);
+    } else if (value instanceof Short) {
+      output.writeByte(SHORT);
+      output.writeShort((Short) value);
+    } else if (value instanceof Integer) {
+      output.writeByte(INTEGER);
+      output.writeInt((Integer) value);
+    } else if (value instanceof Long) {
+      output.writeByte(LONG);
+      output.writeLong((Long) value);
+    } else if (value instanceof Float) {
+      output.writeByte(FLOAT);
+      output.writeFloat((Float) value);
+    } else if (value instanceof Double) {
+      output.writeByte(DOUBLE);
+      output.writeDouble((Double) value);
+    } else if (value instanceof BigDecimal) {
+      output.writeByte(DECIMAL);
+      output.writeUTF(value.toString());
+    } else if (value instanceof BigInteger) {
+      output.writeByte(BIG_INTEGER);
+      output.writeUTF(value.toString());
+    } else if (value instanceof String) {
+      output.writeByte(STRING);
+      output.writeUTF((String) value);
+    } else if (value instanceof UUID) {
+      output.writeByte(GUID);
+      output.writeLong(((UUID) value).getMostSignificantBits());
+      output.writeLong(((UUID) value).getLeastSignificantBits());
+    } else if (value instanceof Calendar) {
+      output.writeByte(CALENDAR);
+      output.writeLong(((Calendar) value).getTimeInMillis());
+      output.writeUTF(((Calendar) value).getTimeZone().getID());
+    } else if (value instanceof Timestamp) {
+      output.writeByte(TIMESTAMP);
+      output.writeLong(((Timestamp) value).getTime());
+      output.writeInt(((Timestamp) value).getNanos());
+    } else if (value instanceof byte[]) {
+      output.writeByte(BINARY);
+      output.writeInt(((byte[]) value).length);
+      output.write((byte[]) value);
+    } else {
+      throw new IllegalArgumentException("Unsupported sort-key value: " + value.getClass().getName());
+    }
+  }
+
+  private Object read(final DataInputStream input) throws IOException, ODataApplicationException {
+    switch (input.readByte()) {
+    case NULL:
+      return null;
+    case FALSE:
+      return Boolean.FALSE;
+    case TRUE:
+      return Boolean.TRUE;
+    case BYTE:
+      return input.readByte();
+    case SHORT:
+      return input.readShort();
+    case INTEGER:
+      return input.readInt();
+    case LONG:
+      return input.readLong();
+    case FLOAT:
+      return input.readFloat();
+    case DOUBLE:
+      return input.readDouble();
+    case DECIMAL:
+      return new BigDecimal(input.readUTF());
+    case BIG_INTEGER:
+      return new BigInteger(input.readUTF());
+    case STRING:
+      return input.readUTF();
+    case GUID:
+      return new UUID(input.readLong(), input.readLong());
+    case CALENDAR:
+      final long millis = input.readLong();
+      Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone(input.readUTF()), Locale.ROOT);
+      calendar.clear();
+      calendar.setTimeInMillis(millis);
+      return calendar;
+    case TIMESTAMP:
+      Timestamp timestamp = new Timestamp(input.readLong());
+      timestamp.setNanos(input.readInt());
+      return timestamp;
+    case BINARY:
+      final int length = input.readInt();
+      if (length < 0 || length > input.available()) {
+        throw invalid();
+      }
+      byte[] bytes = new byte[length];
+      input.readFully(bytes);
+      return bytes;
+    default:
+      throw invalid();
+    }
+  }
+
+  private static ODataApplicationException invalid() {
+    return new ODataApplicationException("Invalid skip token", HttpStatusCode.BAD_REQUEST.getStatusCode(),
+        Locale.ROOT);
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.search;
+
+import java.util.Arrays;
+
+/**
+ * Sorted list of document IDs, kept compressed as variable-length deltas
+ * (seven bits per byte, the high bit marking continuation).
+ * Appending IDs in ascending order is cheap; other modifications re-encode the list.
+ */
+final class PostingList {
+
+  private static final int[] EMPTY = new int[0];
+
+  private byte[] data = new byte[4];
+  private int length;
+  private int size;
+  private int last = -1;
+
+  /** Adds a document ID; returns <code>false</code> if it is already contained. */
+  boolean add(final int id) {
+    if (id > last) {
+      append(id);
+      return true;
+    }
+    final int[] ids = toArray();
+    final int position = Arrays.binarySearch(ids, id);
+    if (position >= 0) {
+      return false;
+    }
+    final int insert = -position - 1;
+    final int[] result = new int[ids.length + 1];
+    System.arraycopy(ids, 0, result, 0, insert);
+    result[insert] = id;
+    System.arraycopy(ids, insert, result, insert + 1, ids.length - insert);
+    encode(result, result.length);
+    return true;
+  }
+
+  /** Removes a document ID; returns <code>false</code> if it is not contained. */
+  boolean remove(final int id) {
+    if (id > last) {
+      return false;
+    }
+    final int[] ids = toArray();
+    final int position = Arrays.binarySearch(ids, id);
+    if (position < 0) {
+      return false;
+    }
+    System.arraycopy(ids, position + 1, ids, position, ids.length - position - 1);
+    encode(ids, ids.length - 1);
+    return true;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** Returns the number of bytes used for the compressed IDs. */
+  int getEncodedLength() {
+    return length;
+  }
+
+  int[] toArray() {
+    if (size == 0) {
+      return EMPTY;
+    }
+    int[] result = new int[size];
+    int id = -1;
+    int position = 0;
+    for (int index = 0; index < size; index++) {
+      int delta = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = data[position++];
+        delta |= (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      id += delta;
+      result[index] = id;
+    }
+    return result;
+  }
+
+  private void encode(final int[] ids, final int count) {
+    length = 0;
+    size = 0;
+    last = -1;
+    for (int index = 0; index < count; index++) {
+      append(ids[index]);
+    }
+    if (data.length > 4 * Math.max(length, 4)) {
+      data = Arrays.copyOf(data, Math.max(length, 4));
+    }
+  }
+
+  private void append(final int id) {
+    int delta = id - last;
+    if (length + 5 > data.length) {
+      data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+    }
+    while ((delta & ~0x7F) != 0) {
+      data[length++] = (byte) (delta & 0x7F | 0x80);
+      delta >>>= 7;
+    }
+    data[length++] = (byte) delta;
+    last = id;
+    size++;
+  }
+
+  /** Intersects two sorted ID arrays. */
+  static int[] and(final int[] left, final int[] right) {
+    int[] result = new int[Math.min(left.length, right.length)];
+    int count = 0;
+    int i = 0;
+    int j = 0;
+    while (i < left.length && j < right.length) {
+      if (left[i] < right[j]) {
+        i++;
+      } else if (left[i] > right[j]) {
+        j++;
+      } else {
+        result[count++] = left[i];
+        i++;
+        j++;
+      }
+    }
+    return count == result.length ? result : Arrays.copyOf(result, count);
+  }
+
+  /** Unites two sorted ID arrays. */
+  static int[] or(final int[] left, final int[] right) {
+    int[] result = new int[left.length + right.length];
+    int count = 0;
+    int i = 0;
+    int j = 0;
+    while (i < left.length || j < right.length) {
+      if (j == right.length || i < left.length && left[i] < right[j]) {
+        result[count++] = left[i++];
+      } else if (i == left.length || left[i] > right[j]) {
+        result[count++] = right[j++];
+      } else {
+        result[count++] = left[i];
+        i++;
+        j++;
+      }
+    }
+    return count == result.length ? result : Arrays.copyOf(result, count);
+  }
+
+  /** Returns the IDs of the first sorted array that are not contained in the second one. */
+  static int[] andNot(final int[] left, final int[] right) {
+    int[] result = new int[left.length];
+    int count = 0;
+    int j = 0;
+    for (final int id : left) {
+      while (j < right.length && right[j] < id) {
+        j++;
+      }
+      if (j == right.length || right[j] != id) {
+        result[count++] = id;
+      }
+    }
+    return count == result.length ? result : Arrays.copyOf(result, count);
+  }
+}
@@ -0,0 +1,350 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.olingo.commons.api.ODataRuntimeException;
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.server.api.search.SearchIndex;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchBinary;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchBinaryOperatorKind;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchExpression;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchTerm;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchUnary;
+
+/**
+ * <p>Inverted index from words to the sorted, compressed IDs of the entities containing them.</p>
+ * <p>Each indexed entity gets a document ID in ascending order, so adding entities only appends to the
+ * posting lists. Updates and removals re-encode the posting lists of the affected words only, found via
+ * the words remembered per document. After many removals, the document IDs are re-assigned.</p>
+ * <p>Search expressions are evaluated by merging posting lists; <code>AND NOT</code> is evaluated as
+ * difference without building the complement. Phrases are evaluated as conjunction of their words
+ * and then checked against the current property values of the candidates.</p>
+ */
+public class SearchIndexImpl implements SearchIndex {
+
+  private static final int[] NONE = new int[0];
+  private static final int MIN_REMOVED_FOR_COMPACTION = 64;
+
+  private final List<String> propertyNames;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<String, PostingList> postings = new HashMap<String, PostingList>();
+  private final Map<Entity, Integer> ids = new IdentityHashMap<Entity, Integer>();
+  private final List<Entity> documents = new ArrayList<Entity>();
+  private final List<String[]> documentWords = new ArrayList<String[]>();
+
+  public SearchIndexImpl(final List<String> propertyNames) {
+    this.propertyNames = new ArrayList<String>(propertyNames);
+  }
+
+  @Override
+  public void index(final Entity entity) {
+    final String[] words = getWords(entity);
+    lock.writeLock().lock();
+    try {
+      final Integer id = ids.get(entity);
+      if (id == null) {
+        final int newId = documents.size();
+        ids.put(entity, newId);
+        documents.add(entity);
+        documentWords.add(words);
+        for (final String word : words) {
+          PostingList list = postings.get(word);
+          if (list == null) {
+            list = new PostingList();
+            postings.put(word, list);
+          }
+          list.add(newId);
+        }
+      } else {
+        final Set<String> oldWords = new LinkedHashSet<String>(Arrays.asList(documentWords.get(id)));
+        for (final String word : words) {
+          if (!oldWords.remove(word)) {
+            PostingList list = postings.get(word);
+            if (list == null) {
+              list = new PostingList();
+              postings.put(word, list);
+            }
+            list.add(id);
+          }
+        }
+        removePostings(id, oldWords.toArray(new String[oldWords.size()]));
+        documentWords.set(id, words);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void remove(final Entity entity) {
+    lock.writeLock().lock();
+    try {
+      final Integer id = ids.remove(entity);
+      if (id != null) {
+        removePostings(id, documentWords.get(id));
+        documents.set(id, null);
+        documentWords.set(id, null);
+        final int removed = documents.size() - ids.size();
+        if (removed >= MIN_REMOVED_FOR_COMPACTION && removed > ids.size()) {
+          compact();
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void clear() {
+    lock.writeLock().lock();
+    try {
+      postings.clear();
+      ids.clear();
+      documents.clear();
+      documentWords.clear();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return ids.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public List<Entity> search(final SearchExpression expression) {
+    lock.readLock().lock();
+    try {
+      final int[] matches = evaluate(expression);
+      List<Entity> result = new ArrayList<Entity>(matches.length);
+      for (final int id : matches) {
+        result.add(documents.get(id));
+      }
+      return result;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void filter(final EntityCollection entitySet, final SearchExpression expression) {
+    lock.readLock().lock();
+    try {
+      final BitSet matches = new BitSet(documents.size());
+      for (final int id : evaluate(expression)) {
+        matches.set(id);
+      }
+      List<Entity> result = new ArrayList<Entity>();
+      for (final Entity entity : entitySet.getEntities()) {
+        final Integer id = entity == null ? null : ids.get(entity);
+        if (id != null && matches.get(id)) {
+          result.add(entity);
+        }
+      }
+      entitySet.getEntities().clear();
+      entitySet.getEntities().addAll(result);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Returns the number of distinct indexed words. */
+  int getWordCount() {
+    lock.readLock().lock();
+    try {
+      return postings.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private int[] evaluate(final SearchExpression expression) {
+    if (expression instanceof SearchTerm) {
+      return evaluateTerm(((SearchTerm) expression).getSearchTerm());
+    } else if (expression instanceof SearchUnary) {
+      return PostingList.andNot(getAllIds(), evaluate(((SearchUnary) expression).getOperand()));
+    } else if (expression instanceof SearchBinary) {
+      final SearchBinary binary = (SearchBinary) expression;
+      final SearchExpression left = binary.getLeftOperand();
+      final SearchExpression right = binary.getRightOperand();
+      if (binary.getOperator() == SearchBinaryOperatorKind.OR) {
+        return PostingList.or(evaluate(left), evaluate(right));
+      } else if (right instanceof SearchUnary && !(left instanceof SearchUnary)) {
+        return PostingList.andNot(evaluate(left), evaluate(((SearchUnary) right).getOperand()));
+      } else if (left instanceof SearchUnary && !(right instanceof SearchUnary)) {
+        return PostingList.andNot(evaluate(right), evaluate(((SearchUnary) left).getOperand()));
+      } else {
+        final int[] leftIds = evaluate(left);
+        return leftIds.length == 0 ? leftIds : PostingList.and(leftIds, evaluate(right));
+      }
+    } else {
+      throw new ODataRuntimeException("Unsupported search expression: " + expression);
+    }
+  }
+
+  private int[] evaluateTerm(final String term) {
+    final List<String> words = tokenize(term);
+    if (words.isEmpty()) {
+      return NONE;
+    }
+    int[] result = null;
+    for (final String word : words) {
+      final PostingList list = postings.get(word);
+      if (list == null) {
+        return NONE;
+      }
+      result = result == null ? list.toArray() : PostingList.and(result, list.toArray());
+    }
+    if (words.size() > 1) {
+      int count = 0;
+      for (final int id : result) {
+        if (containsSequence(documents.get(id), words)) {
+          result[count++] = id;
+        }
+      }
+      result = Arrays.copyOf(result, count);
+    }
+    return result;
+  }
+
+  private boolean containsSequence(final Entity entity, final List<String> words) {
+    for (final String value : getValues(entity)) {
+      if (Collections.indexOfSubList(tokenize(value), words) >= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private int[] getAllIds() {
+    int[] result = new int[ids.size()];
+    int count = 0;
+    for (int id = 0; id < documents.size() && count < result.length; id++) {
+      if (documents.get(id) != null) {
+        result[count++] = id;
+      }
+    }
+    return result;
+  }
+
+  private void removePostings(final int id, final String[] words) {
+    for (final String word : words) {
+      final PostingList list = postings.get(word);
+      if (list != null) {
+        list.remove(id);
+        if (list.size() == 0) {
+          postings.remove(word);
+        }
+      }
+    }
+  }
+
+  private void compact() {
+    final List<Entity> liveDocuments = new ArrayList<Entity>(ids.size());
+    final List<String[]> liveWords = new ArrayList<String[]>(ids.size());
+    for (int id = 0; id < documents.size(); id++) {
+      if (documents.get(id) != null) {
+        liveDocuments.add(documents.get(id));
+        liveWords.add(documentWords.get(id));
+      }
+    }
+    clear();
+    for (int index = 0; index < liveDocuments.size(); index++) {
+      ids.put(liveDocuments.get(index), index);
+      documents.add(liveDocuments.get(index));
+      documentWords.add(liveWords.get(index));
+      for (final String word : liveWords.get(index)) {
+        PostingList list = postings.get(word);
+        if (list == null) {
+          list = new PostingList();
+          postings.put(word, list);
+        }
+        list.add(index);
+      }
+    }
+  }
+
+  private String[] getWords(final Entity entity) {
+    Set<String> words = new LinkedHashSet<String>();
+    for (final String value : getValues(entity)) {
+      words.addAll(tokenize(value));
+    }
+    return words.toArray(new String[words.size()]);
+  }
+
+  private List<String> getValues(final Entity entity) {
+    List<String> values = new ArrayList<String>();
+    for (final String name : propertyNames) {
+      final Property property = entity.getProperty(name);
+      if (property == null || property.getValue() == null) {
+        continue;
+      } else if (property.getValue() instanceof String) {
+        values.add((String) property.getValue());
+      } else if (property.isCollection()) {
+        for (final Object value : property.asCollection()) {
+          if (value instanceof String) {
+            values.add((String) value);
+          }
+        }
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Splits a text into lower-case words, i.e., maximal sequences of letters and digits.
+   */
+  static List<String> tokenize(final String text) {
+    List<String> words = new ArrayList<String>();
+    int start = -1;
+    for (int index = 0; index <= text.length(); index++) {
+      if (index < text.length() && Character.isLetterOrDigit(text.charAt(index))) {
+        if (start < 0) {
+          start = index;
+        }
+      } else if (start >= 0) {
+        words.add(text.substring(start, index).toLowerCase(Locale.ROOT));
+        start = -1;
+      }
+    }
+    return words;
+  }
+}
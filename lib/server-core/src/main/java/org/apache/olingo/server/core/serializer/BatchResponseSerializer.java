@@ -35,9 +35,9 @@ import org.apache.olingo.server.api.batch.exception.BatchSerializerException;
 import org.apache.olingo.server.api.batch.exception.BatchSerializerException.MessageKeys;
 import org.apache.olingo.server.api.deserializer.batch.ODataResponsePart;
 import org.apache.olingo.server.core.deserializer.batch.BatchParserCommon;
+import org.apache.olingo.server.core.serializer.utils.BufferPool;
 
 public class BatchResponseSerializer {
-  private static final int BUFFER_SIZE = 4096;
   private static final String DOUBLE_DASH = "--";
   private static final String COLON = ":";
   private static final String SP = " ";
@@ -102,16 +102,17 @@ public class BatchResponseSerializer {
     final ByteArrayOutputStream out = new ByteArrayOutputStream();
 
     if (content != null) {
-      byte[] buffer = new byte[BUFFER_SIZE];
-      int n;
-
       try {
-        while ((n = content.read(buffer, 0, buffer.length)) != -1) {
-          out.write(buffer, 0, n);
-        }
+        BufferPool.getDefault().copy(content, out);
         out.flush();
       } catch (IOException e) {
         throw new ODataRuntimeException(e);
+      } finally {
+        try {
+          content.close();
+        } catch (IOException e) {
+          // ignore
+        }
       }
 
       return out.toByteArray();
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.serializer.json;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.edm.EdmNavigationProperty;
+import org.apache.olingo.commons.api.edm.EdmProperty;
+import org.apache.olingo.commons.api.edm.EdmStructuredType;
+import org.apache.olingo.commons.api.edm.FullQualifiedName;
+import org.apache.olingo.server.api.ServiceMetadata;
+import org.apache.olingo.server.core.ServiceMetadataImpl;
+
+import com.fasterxml.jackson.core.io.SerializedString;
+
+/**
+ * <p>Pre-encoded JSON templates of the structured types of a service.</p>
+ * <p>A template holds the properties of a type in serialization order together with their names
+ * already escaped and encoded, so that serializing an entity or complex value does not need
+ * any per-row name lookups or string building.
+ * Templates are built on first use and kept for the lifetime of the service metadata.</p>
+ */
+public final class JsonTemplates {
+
+  private final ConcurrentMap<FullQualifiedName, TypeTemplate> templates =
+      new ConcurrentHashMap<FullQualifiedName, TypeTemplate>();
+
+  /**
+   * Gets the template of a structured type; if the metadata object does not keep templates,
+   * a new template is created.
+   */
+  static TypeTemplate get(final ServiceMetadata metadata, final EdmStructuredType type) {
+    return metadata instanceof ServiceMetadataImpl ?
+        ((ServiceMetadataImpl) metadata).getJsonTemplates().get(type) :
+        new TypeTemplate(type);
+  }
+
+  TypeTemplate get(final EdmStructuredType type) {
+    final FullQualifiedName name = type.getFullQualifiedName();
+    TypeTemplate template = templates.get(name);
+    if (template == null) {
+      template = new TypeTemplate(type);
+      final TypeTemplate existing = templates.putIfAbsent(name, template);
+      if (existing != null) {
+        template = existing;
+      }
+    }
+    return template;
+  }
+
+  /** Template of a structured type; immutable and shared between threads. */
+  static final class TypeTemplate {
+
+    private final EdmProperty[] properties;
+    private final SerializedString[] names;
+    private final Map<String, Integer> indexes;
+    private final EdmNavigationProperty[] navigationProperties;
+    private final SerializedString[] navigationNames;
+    private final SerializedString typeAnnotation;
+
+    private TypeTemplate(final EdmStructuredType type) {
+      final List<String> propertyNames = type.getPropertyNames();
+      properties = new EdmProperty[propertyNames.size()];
+      names = new SerializedString[propertyNames.size()];
+      indexes = new HashMap<String, Integer>(propertyNames.size() * 2);
+      for (int i = 0; i < properties.length; i++) {
+        final String name = propertyNames.get(i);
+        properties[i] = type.getStructuralProperty(name);
+        names[i] = new SerializedString(name);
+        indexes.put(name, i);
+      }
+      final List<String> navigationPropertyNames = type.getNavigationPropertyNames();
+      navigationProperties = new EdmNavigationProperty[navigationPropertyNames.size()];
+      navigationNames = new SerializedString[navigationPropertyNames.size()];
+      for (int i = 0; i < navigationProperties.length; i++) {
+        final String name = navigationPropertyNames.get(i);
+        navigationProperties[i] = type.getNavigationProperty(name);
+        navigationNames[i] = new SerializedString(name);
+      }
+      typeAnnotation = new SerializedString("#" + type.getFullQualifiedName().getFullQualifiedNameAsString());
+    }
+
+    int getPropertyCount() {
+      return properties.length;
+    }
+
+    EdmProperty getProperty(final int index) {
+      return properties[index];
+    }
+
+    SerializedString getName(final int index) {
+      return names[index];
+    }
+
+    int getNavigationPropertyCount() {
+      return navigationProperties.length;
+    }
+
+    EdmNavigationProperty getNavigationProperty(final int index) {
+      return navigationProperties[index];
+    }
+
+    SerializedString getNavigationName(final int index) {
+      return navigationNames[index];
+    }
+
+    /** Gets the value of the <code>@odata.type</code> annotation, i.e., <code>#</code> and the type name. */
+    SerializedString getTypeAnnotation() {
+      return typeAnnotation;
+    }
+
+    /**
+     * Arranges property values in the order of the template, with one pass over the values.
+     * @return the values at the indexes of their properties; <code>null</code> for missing values
+     */
+    Property[] arrange(final List<Property> values) {
+      Property[] result = new Property[properties.length];
+      for (final Property value : values) {
+        final Integer index = indexes.get(value.getName());
+        if (index != null && result[index] == null) {
+          result[index] = value;
+        }
+      }
+      return result;
+    }
+  }
+}
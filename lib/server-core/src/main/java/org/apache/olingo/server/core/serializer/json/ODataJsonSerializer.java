@@ -40,7 +40,6 @@ import org.apache.olingo.commons.api.edm.EdmPrimitiveTypeException;
 import org.apache.olingo.commons.api.edm.EdmPrimitiveTypeKind;
 import org.apache.olingo.commons.api.edm.EdmProperty;
 import org.apache.olingo.commons.api.edm.EdmStructuredType;
-import org.apache.olingo.commons.api.edm.FullQualifiedName;
 import org.apache.olingo.commons.api.format.ODataFormat;
 import org.apache.olingo.commons.core.edm.primitivetype.EdmPrimitiveTypeFactory;
 import org.apache.olingo.server.api.ODataServerError;
@@ -58,18 +57,29 @@ import org.apache.olingo.server.api.uri.queryoption.SelectOption;
 import org.apache.olingo.server.core.serializer.SerializerResultImpl;
 import org.apache.olingo.server.core.serializer.utils.CircleStreamBuffer;
 import org.apache.olingo.server.core.serializer.utils.ContextURLBuilder;
+import org.apache.olingo.server.core.serializer.utils.DerivedTypeHelper;
+import org.apache.olingo.server.core.serializer.json.JsonTemplates.TypeTemplate;
 import org.apache.olingo.server.core.serializer.utils.ExpandSelectHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
 import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 
 public class ODataJsonSerializer implements ODataSerializer {
 
   private static final Logger log = LoggerFactory.getLogger(ODataJsonSerializer.class);
 
+  private static final SerializedString ID = new SerializedString(Constants.JSON_ID);
+  private static final SerializedString TYPE = new SerializedString(Constants.JSON_TYPE);
+  private static final SerializedString ETAG = new SerializedString(Constants.JSON_ETAG);
+  private static final SerializedString MEDIA_ETAG = new SerializedString(Constants.JSON_MEDIA_ETAG);
+  private static final SerializedString MEDIA_CONTENT_TYPE = new SerializedString(Constants.JSON_MEDIA_CONTENT_TYPE);
+  private static final SerializedString MEDIA_READ_LINK = new SerializedString(Constants.JSON_MEDIA_READ_LINK);
+  private static final SerializedString MEDIA_EDIT_LINK = new SerializedString(Constants.JSON_MEDIA_EDIT_LINK);
+
   private final ODataFormat format;
 
   public ODataJsonSerializer(final ODataFormat format) {
@@ -201,7 +211,8 @@ public class ODataJsonSerializer implements ODataSerializer {
     for (final Entity entity : entitySet.getEntities()) {
       if (onlyReference) {
         json.writeStartObject();
-        json.writeStringField(Constants.JSON_ID, entity.getId().toASCIIString());
+        json.writeFieldName(ID);
+        json.writeString(entity.getId().toASCIIString());
         json.writeEndObject();
       } else {
         writeEntity(metadata, entityType, entity, null, expand, select, false, json);
@@ -220,118 +231,121 @@ public class ODataJsonSerializer implements ODataSerializer {
         json.writeStringField(Constants.JSON_CONTEXT, ContextURLBuilder.create(contextURL).toASCIIString());
       }
       if (entity.getETag() != null) {
-        json.writeStringField(Constants.JSON_ETAG, entity.getETag());
+        json.writeFieldName(ETAG);
+        json.writeString(entity.getETag());
       }
       if (entityType.hasStream()) {
         if (entity.getMediaETag() != null) {
-          json.writeStringField(Constants.JSON_MEDIA_ETAG, entity.getMediaETag());
+          json.writeFieldName(MEDIA_ETAG);
+          json.writeString(entity.getMediaETag());
         }
         if (entity.getMediaContentType() != null) {
-          json.writeStringField(Constants.JSON_MEDIA_CONTENT_TYPE, entity.getMediaContentType());
+          json.writeFieldName(MEDIA_CONTENT_TYPE);
+          json.writeString(entity.getMediaContentType());
         }
         if (entity.getMediaContentSource() != null) {
-          json.writeStringField(Constants.JSON_MEDIA_READ_LINK, entity.getMediaContentSource().toString());
+          json.writeFieldName(MEDIA_READ_LINK);
+          json.writeString(entity.getMediaContentSource().toString());
         }
         if (entity.getMediaEditLinks() != null && !entity.getMediaEditLinks().isEmpty()) {
-          json.writeStringField(Constants.JSON_MEDIA_EDIT_LINK, entity.getMediaEditLinks().get(0).getHref());
+          json.writeFieldName(MEDIA_EDIT_LINK);
+          json.writeString(entity.getMediaEditLinks().get(0).getHref());
         }
       }
     }
     if (onlyReference) {
-      json.writeStringField(Constants.JSON_ID, entity.getId().toASCIIString());
+      json.writeFieldName(ID);
+      json.writeString(entity.getId().toASCIIString());
     } else {
       EdmEntityType resolvedType = resolveEntityType(metadata, entityType, entity.getType());
+      final TypeTemplate template = JsonTemplates.get(metadata, resolvedType);
       if (!resolvedType.equals(entityType)) {
-        json.writeStringField(Constants.JSON_TYPE, "#"+entity.getType());
+        json.writeFieldName(TYPE);
+        json.writeString(template.getTypeAnnotation());
       }
-      writeProperties(resolvedType, entity.getProperties(), select, json);
-      writeNavigationProperties(metadata, resolvedType, entity, expand, json);
+      writeProperties(metadata, template, entity.getProperties(), select, json);
+      writeNavigationProperties(metadata, template, entity, expand, json);
       json.writeEndObject();
     }
   }
 
   protected EdmEntityType resolveEntityType(ServiceMetadata metadata, EdmEntityType baseType,
       String derivedTypeName) throws SerializerException {
-    if (derivedTypeName == null ||
-        baseType.getFullQualifiedName().getFullQualifiedNameAsString().equals(derivedTypeName)) {
-      return baseType;
-    }
-    EdmEntityType derivedType = metadata.getEdm().getEntityType(new FullQualifiedName(derivedTypeName));
-    if (derivedType == null) {
-      throw new SerializerException("EntityType not found",
-          SerializerException.MessageKeys.UNKNOWN_TYPE, derivedTypeName);
-    }
-    EdmEntityType type = derivedType.getBaseType();
-    while (type != null) {
-      if (type.getFullQualifiedName().getFullQualifiedNameAsString()
-          .equals(baseType.getFullQualifiedName().getFullQualifiedNameAsString())) {
-        return derivedType;
-      }
-      type = type.getBaseType();
-    }
-    throw new SerializerException("Wrong base type",
-        SerializerException.MessageKeys.WRONG_BASE_TYPE, derivedTypeName, baseType
-            .getFullQualifiedName().getFullQualifiedNameAsString());
+    return DerivedTypeHelper.resolveEntityType(metadata, baseType, derivedTypeName);
   }
 
+
   protected EdmComplexType resolveComplexType(ServiceMetadata metadata, EdmComplexType baseType,
       String derivedTypeName) throws SerializerException {
-    if (derivedTypeName == null ||
-        baseType.getFullQualifiedName().getFullQualifiedNameAsString().equals(derivedTypeName)) {
-      return baseType;
-    }
-    EdmComplexType derivedType = metadata.getEdm().getComplexType(new FullQualifiedName(derivedTypeName));
-    if (derivedType == null) {
-      throw new SerializerException("Complex Type not found",
-          SerializerException.MessageKeys.UNKNOWN_TYPE, derivedTypeName);
-    }
-    EdmComplexType type = derivedType.getBaseType();
-    while (type != null) {
-      if (type.getFullQualifiedName().getFullQualifiedNameAsString()
-          .equals(baseType.getFullQualifiedName().getFullQualifiedNameAsString())) {
-        return derivedType;
-      }
-      type = type.getBaseType();
-    }
-    throw new SerializerException("Wrong base type",
-        SerializerException.MessageKeys.WRONG_BASE_TYPE, derivedTypeName, baseType
-            .getFullQualifiedName().getFullQualifiedNameAsString());
+    return DerivedTypeHelper.resolveComplexType(metadata, baseType, derivedTypeName);
   }
 
+
+  /**
+   * @deprecated No longer called by this serializer, which writes each property through
+   * {@link #writeProperty(ServiceMetadata, EdmProperty, SerializedString, Property, Set, JsonGenerator)}.
+   */
+  @Deprecated
   protected void writeProperties(final EdmStructuredType type, final List<Property> properties,
       final SelectOption select, JsonGenerator json) throws IOException, SerializerException {
+    writeProperties(null, JsonTemplates.get(null, type), properties, select, json);
+  }
+
+  protected void writeProperties(final ServiceMetadata metadata, final TypeTemplate template,
+      final List<Property> properties, final SelectOption select, JsonGenerator json)
+      throws IOException, SerializerException {
     final boolean all = ExpandSelectHelper.isAll(select);
     final Set<String> selected = all ? null :
         ExpandSelectHelper.getSelectedPropertyNames(select.getSelectItems());
-    for (final String propertyName : type.getPropertyNames()) {
+    final Property[] values = template.arrange(properties);
+    for (int i = 0; i < values.length; i++) {
+      final EdmProperty edmProperty = template.getProperty(i);
+      final String propertyName = edmProperty.getName();
       if (all || selected.contains(propertyName)) {
-        final EdmProperty edmProperty = type.getStructuralProperty(propertyName);
-        final Property property = findProperty(propertyName, properties);
         final Set<List<String>> selectedPaths = all || edmProperty.isPrimitive() ? null :
             ExpandSelectHelper.getSelectedPaths(select.getSelectItems(), propertyName);
-        writeProperty(edmProperty, property, selectedPaths, json);
+        writeProperty(metadata, edmProperty, template.getName(i), values[i], selectedPaths, json);
       }
     }
   }
 
+  /**
+   * @deprecated No longer called by this serializer, which writes each expanded navigation property through
+   * {@link #writeExpandedNavigationProperty(ServiceMetadata, EdmNavigationProperty, SerializedString, Link,
+   * ExpandOption, SelectOption, JsonGenerator)}.
+   */
+  @Deprecated
   protected void writeNavigationProperties(final ServiceMetadata metadata,
       final EdmStructuredType type, final Linked linked, final ExpandOption expand,
       final JsonGenerator json) throws SerializerException, IOException {
+    writeNavigationProperties(metadata, JsonTemplates.get(metadata, type), linked, expand, json);
+  }
+
+  protected void writeNavigationProperties(final ServiceMetadata metadata,
+      final TypeTemplate template, final Linked linked, final ExpandOption expand,
+      final JsonGenerator json) throws SerializerException, IOException {
     if (ExpandSelectHelper.hasExpand(expand)) {
       final boolean expandAll = ExpandSelectHelper.isExpandAll(expand);
       final Set<String> expanded = expandAll ? null :
           ExpandSelectHelper.getExpandedPropertyNames(expand.getExpandItems());
-      for (final String propertyName : type.getNavigationPropertyNames()) {
+      for (int i = 0; i < template.getNavigationPropertyCount(); i++) {
+        final EdmNavigationProperty property = template.getNavigationProperty(i);
+        final String propertyName = property.getName();
         if (expandAll || expanded.contains(propertyName)) {
-          final EdmNavigationProperty property = type.getNavigationProperty(propertyName);
-          final Link navigationLink = linked.getNavigationLink(property.getName());
+          final Link navigationLink = linked.getNavigationLink(propertyName);
           final ExpandItem innerOptions = expandAll ? null :
               ExpandSelectHelper.getExpandItem(expand.getExpandItems(), propertyName);
           if (innerOptions != null && (innerOptions.isRef() || innerOptions.getLevelsOption() != null)) {
             throw new SerializerException("Expand options $ref and $levels are not supported.",
                 SerializerException.MessageKeys.NOT_IMPLEMENTED);
           }
-          writeExpandedNavigationProperty(metadata, property, navigationLink,
+          if (property.isCollection() && innerOptions != null && innerOptions.getCountOption() != null
+              && innerOptions.getCountOption().getValue()
+              && navigationLink != null && navigationLink.getInlineEntitySet() != null
+              && navigationLink.getInlineEntitySet().getCount() != null) {
+            json.writeNumberField(propertyName + Constants.JSON_COUNT, navigationLink.getInlineEntitySet().getCount());
+          }
+          writeExpandedNavigationProperty(metadata, property, template.getNavigationName(i), navigationLink,
               innerOptions == null ? null : innerOptions.getExpandOption(),
               innerOptions == null ? null : innerOptions.getSelectOption(),
               json);
@@ -340,11 +354,25 @@ public class ODataJsonSerializer implements ODataSerializer {
     }
   }
 
+  /**
+   * @deprecated No longer called by this serializer, which calls
+   * {@link #writeExpandedNavigationProperty(ServiceMetadata, EdmNavigationProperty, SerializedString, Link,
+   * ExpandOption, SelectOption, JsonGenerator)} instead.
+   */
+  @Deprecated
   protected void writeExpandedNavigationProperty(final ServiceMetadata metadata,
       final EdmNavigationProperty property, final Link navigationLink,
       final ExpandOption innerExpand, final SelectOption innerSelect, JsonGenerator json)
       throws IOException, SerializerException {
-    json.writeFieldName(property.getName());
+    writeExpandedNavigationProperty(metadata, property, new SerializedString(property.getName()), navigationLink,
+        innerExpand, innerSelect, json);
+  }
+
+  protected void writeExpandedNavigationProperty(final ServiceMetadata metadata,
+      final EdmNavigationProperty property, final SerializedString name, final Link navigationLink,
+      final ExpandOption innerExpand, final SelectOption innerSelect, JsonGenerator json)
+      throws IOException, SerializerException {
+    json.writeFieldName(name);
     if (property.isCollection()) {
       if (navigationLink == null || navigationLink.getInlineEntitySet() == null) {
         json.writeStartArray();
@@ -363,9 +391,20 @@ public class ODataJsonSerializer implements ODataSerializer {
     }
   }
 
+  /**
+   * @deprecated No longer called by this serializer, which calls
+   * {@link #writeProperty(ServiceMetadata, EdmProperty, SerializedString, Property, Set, JsonGenerator)} instead.
+   */
+  @Deprecated
   protected void writeProperty(final EdmProperty edmProperty, final Property property,
       final Set<List<String>> selectedPaths, final JsonGenerator json) throws IOException, SerializerException {
-    json.writeFieldName(edmProperty.getName());
+    writeProperty(null, edmProperty, new SerializedString(edmProperty.getName()), property, selectedPaths, json);
+  }
+
+  protected void writeProperty(final ServiceMetadata metadata, final EdmProperty edmProperty,
+      final SerializedString name, final Property property, final Set<List<String>> selectedPaths,
+      final JsonGenerator json) throws IOException, SerializerException {
+    json.writeFieldName(name);
     if (property == null || property.isNull()) {
       if (edmProperty.isNullable() == Boolean.FALSE) {
         throw new SerializerException("Non-nullable property not present!",
@@ -374,11 +413,11 @@ public class ODataJsonSerializer implements ODataSerializer {
         json.writeNull();
       }
     } else {
-      writePropertyValue(edmProperty, property, selectedPaths, json);
+      writePropertyValue(metadata, edmProperty, property, selectedPaths, json);
     }
   }
 
-  private void writePropertyValue(final EdmProperty edmProperty,
+  private void writePropertyValue(final ServiceMetadata metadata, final EdmProperty edmProperty,
       final Property property, final Set<List<String>> selectedPaths,
       final JsonGenerator json) throws IOException, SerializerException {
     try {
@@ -395,9 +434,9 @@ public class ODataJsonSerializer implements ODataSerializer {
               json);
         }
       } else if (edmProperty.isCollection()) {
-        writeComplexCollection((EdmComplexType) edmProperty.getType(), property, selectedPaths, json);
+        writeComplexCollection(metadata, (EdmComplexType) edmProperty.getType(), property, selectedPaths, json);
       } else if (property.isComplex()) {
-        writeComplexValue((EdmComplexType) edmProperty.getType(), property.asComplex().getValue(),
+        writeComplexValue(metadata, (EdmComplexType) edmProperty.getType(), property.asComplex().getValue(),
             selectedPaths, json);
       } else if (property.isEnum()) {
         writePrimitive((EdmPrimitiveType) edmProperty.getType(), property,
@@ -439,14 +478,15 @@ public class ODataJsonSerializer implements ODataSerializer {
     json.writeEndArray();
   }
 
-  private void writeComplexCollection(final EdmComplexType type, final Property property,
+  private void writeComplexCollection(final ServiceMetadata metadata, final EdmComplexType type,
+      final Property property,
       final Set<List<String>> selectedPaths, JsonGenerator json)
       throws IOException, EdmPrimitiveTypeException, SerializerException {
     json.writeStartArray();
     for (Object value : property.asCollection()) {
       switch (property.getValueType()) {
       case COLLECTION_COMPLEX:
-        writeComplexValue(type, ((ComplexValue) value).getValue(), selectedPaths, json);
+        writeComplexValue(metadata, type, ((ComplexValue) value).getValue(), selectedPaths, json);
         break;
       default:
         throw new SerializerException("Property type not yet supported!",
@@ -497,14 +537,28 @@ public class ODataJsonSerializer implements ODataSerializer {
     }
   }
 
+  /**
+   * @deprecated No longer called by this serializer, which calls
+   * {@link #writeComplexValue(ServiceMetadata, EdmComplexType, List, Set, JsonGenerator)} instead.
+   */
+  @Deprecated
   protected void writeComplexValue(final EdmComplexType type, final List<Property> properties,
       final Set<List<String>> selectedPaths, JsonGenerator json)
       throws IOException, EdmPrimitiveTypeException, SerializerException {
+    writeComplexValue(null, type, properties, selectedPaths, json);
+  }
+
+  protected void writeComplexValue(final ServiceMetadata metadata, final EdmComplexType type,
+      final List<Property> properties, final Set<List<String>> selectedPaths, JsonGenerator json)
+      throws IOException, EdmPrimitiveTypeException, SerializerException {
     json.writeStartObject();
-    for (final String propertyName : type.getPropertyNames()) {
-      final Property property = findProperty(propertyName, properties);
+    final TypeTemplate template = JsonTemplates.get(metadata, type);
+    final Property[] values = template.arrange(properties);
+    for (int i = 0; i < values.length; i++) {
+      final EdmProperty edmProperty = template.getProperty(i);
+      final String propertyName = edmProperty.getName();
       if (selectedPaths == null || ExpandSelectHelper.isSelected(selectedPaths, propertyName)) {
-        writeProperty((EdmProperty) type.getProperty(propertyName), property,
+        writeProperty(metadata, edmProperty, template.getName(i), values[i],
             selectedPaths == null ? null : ExpandSelectHelper.getReducedSelectedPaths(selectedPaths, propertyName),
             json);
       }
@@ -512,15 +566,6 @@ public class ODataJsonSerializer implements ODataSerializer {
     json.writeEndObject();
   }
 
-  private Property findProperty(final String propertyName, final List<Property> properties) {
-    for (final Property property : properties) {
-      if (propertyName.equals(property.getName())) {
-        return property;
-      }
-    }
-    return null;
-  }
-
   @Override
   public SerializerResult primitive(final EdmPrimitiveType type, final Property property,
       final PrimitiveSerializerOptions options) throws SerializerException {
@@ -567,13 +612,15 @@ public class ODataJsonSerializer implements ODataSerializer {
       }
       EdmComplexType resolvedType = resolveComplexType(metadata, type, property.getType());
       if (!resolvedType.equals(type)) {
-        json.writeStringField(Constants.JSON_TYPE, "#"+property.getType());
+        json.writeFieldName(TYPE);
+        json.writeString(JsonTemplates.get(metadata, resolvedType).getTypeAnnotation());
       }
+      final TypeTemplate template = JsonTemplates.get(metadata, type);
       final List<Property> values =
           property.isNull() ? Collections.<Property> emptyList() : property.asComplex().getValue();
-      writeProperties(type, values, options == null ? null : options.getSelect(), json);
+      writeProperties(metadata, template, values, options == null ? null : options.getSelect(), json);
       if (!property.isNull() && property.isComplex()) {
-        writeNavigationProperties(metadata, type, property.asComplex(),
+        writeNavigationProperties(metadata, template, property.asComplex(),
             options == null ? null : options.getExpand(), json);
       }
       json.writeEndObject();
@@ -626,7 +673,7 @@ public class ODataJsonSerializer implements ODataSerializer {
         json.writeStringField(Constants.JSON_CONTEXT, ContextURLBuilder.create(contextURL).toASCIIString());
       }
       json.writeFieldName(Constants.VALUE);
-      writeComplexCollection(type, property, null, json);
+      writeComplexCollection(metadata, type, property, null, json);
       json.writeEndObject();
       json.close();
     } catch (final IOException e) {
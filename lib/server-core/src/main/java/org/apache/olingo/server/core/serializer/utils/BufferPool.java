@@ -0,0 +1,315 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.serializer.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded, thread-safe pool of byte buffers in power-of-two size classes
+ * from {@value #MIN_CAPACITY} to {@value #MAX_CAPACITY} bytes.
+ * <p>Acquired buffers must be released exactly once and must not be used afterwards.
+ * Released buffers are kept for reuse as long as the pooled buffers do not exceed the configured
+ * number of bytes; larger requests than the biggest size class are served with unpooled buffers.</p>
+ * <p>With leak detection, the pool remembers where each buffer has been acquired and logs buffers
+ * that have been garbage-collected without having been released. The shared default pool
+ * detects leaks if debug logging is enabled for this class.</p>
+ */
+public final class BufferPool {
+
+  public static final int MIN_CAPACITY = 1024;
+  public static final int MAX_CAPACITY = 256 * 1024;
+  public static final long DEFAULT_MAX_POOLED_BYTES = 16L * 1024 * 1024;
+
+  private static final Logger LOG = LoggerFactory.getLogger(BufferPool.class);
+  private static final int COPY_CAPACITY = 8192;
+  private static final int MIN_CAPACITY_SHIFT = Integer.numberOfTrailingZeros(MIN_CAPACITY);
+  private static final int SIZE_CLASSES = Integer.numberOfTrailingZeros(MAX_CAPACITY) - MIN_CAPACITY_SHIFT + 1;
+
+  private static final BufferPool DEFAULT = new BufferPool(DEFAULT_MAX_POOLED_BYTES, false, LOG.isDebugEnabled());
+
+  private final long maxPooledBytes;
+  private final boolean direct;
+  private final Queue<ByteBuffer>[] pooled;
+
+  private final AtomicLong pooledBytes = new AtomicLong();
+  private final AtomicLong acquired = new AtomicLong();
+  private final AtomicLong reused = new AtomicLong();
+  private final AtomicLong released = new AtomicLong();
+  private final AtomicLong discarded = new AtomicLong();
+  private final AtomicLong leaked = new AtomicLong();
+
+  // leak detection: trackers of acquired buffers by identity hash code; guarded by the map itself
+  private final Map<Integer, List<Tracker>> trackers;
+  private final ReferenceQueue<ByteBuffer> collected;
+
+  /**
+   * Creates a buffer pool.
+   * @param maxPooledBytes maximum number of bytes kept in released buffers
+   * @param direct         whether the pool allocates direct buffers instead of heap buffers
+   * @param leakDetection  whether buffers garbage-collected without release are reported
+   */
+  @SuppressWarnings("unchecked")
+  public BufferPool(final long maxPooledBytes, final boolean direct, final boolean leakDetection) {
+    if (maxPooledBytes < 0) {
+      throw new IllegalArgumentException("The maximum number of pooled bytes must not be negative.");
+    }
+    this.maxPooledBytes = maxPooledBytes;
+    this.direct = direct;
+    pooled = new Queue[SIZE_CLASSES];
+    for (int i = 0; i < SIZE_CLASSES; i++) {
+      pooled[i] = new ConcurrentLinkedQueue<ByteBuffer>();
+    }
+    trackers = leakDetection ? new HashMap<Integer, List<Tracker>>() : null;
+    collected = leakDetection ? new ReferenceQueue<ByteBuffer>() : null;
+  }
+
+  /**
+   * Returns the pool of heap buffers shared by the server.
+   */
+  public static BufferPool getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Acquires a cleared buffer.
+   * @param minimumCapacity the minimum capacity of the buffer
+   * @return a buffer with at least the requested capacity, with its limit set to its capacity
+   */
+  public ByteBuffer acquire(final int minimumCapacity) {
+    acquired.incrementAndGet();
+    final int sizeClass = sizeClass(minimumCapacity);
+    ByteBuffer buffer = null;
+    if (sizeClass < SIZE_CLASSES) {
+      buffer = pooled[sizeClass].poll();
+      if (buffer == null) {
+        buffer = allocate(MIN_CAPACITY << sizeClass);
+      } else {
+        pooledBytes.addAndGet(-buffer.capacity());
+        reused.incrementAndGet();
+      }
+    } else {
+      buffer = allocate(minimumCapacity);
+    }
+    if (trackers != null) {
+      track(buffer);
+    }
+    return buffer;
+  }
+
+  /**
+   * Releases a buffer acquired from this pool.
+   * The buffer is kept for reuse unless the pool is full or the buffer does not fit into a size class.
+   * @param buffer the buffer; must not be used by the caller afterwards
+   */
+  public void release(final ByteBuffer buffer) {
+    released.incrementAndGet();
+    if (trackers != null && !untrack(buffer)) {
+      LOG.warn("A buffer has been released that is not in use; it is not reused.");
+      discarded.incrementAndGet();
+      return;
+    }
+    final int capacity = buffer.capacity();
+    final int sizeClass = sizeClass(capacity);
+    if (buffer.isDirect() != direct || sizeClass >= SIZE_CLASSES || MIN_CAPACITY << sizeClass != capacity) {
+      discarded.incrementAndGet();
+      return;
+    }
+    if (pooledBytes.addAndGet(capacity) > maxPooledBytes) {
+      pooledBytes.addAndGet(-capacity);
+      discarded.incrementAndGet();
+      return;
+    }
+    buffer.clear();
+    pooled[sizeClass].offer(buffer);
+  }
+
+  /**
+   * Copies the input stream to the output stream with a pooled buffer.
+   * Neither stream is closed.
+   * @return the number of bytes copied
+   */
+  public long copy(final InputStream input, final OutputStream output) throws IOException {
+    final ByteBuffer buffer = acquire(COPY_CAPACITY);
+    try {
+      long count = 0;
+      if (buffer.hasArray()) {
+        final byte[] bytes = buffer.array();
+        final int offset = buffer.arrayOffset();
+        int n;
+        while ((n = input.read(bytes, offset, buffer.capacity())) != -1) {
+          output.write(bytes, offset, n);
+          count += n;
+        }
+      } else {
+        final ReadableByteChannel source = Channels.newChannel(input);
+        final WritableByteChannel target = Channels.newChannel(output);
+        int n;
+        while ((n = source.read(buffer)) != -1) {
+          buffer.flip();
+          while (buffer.hasRemaining()) {
+            target.write(buffer);
+          }
+          buffer.clear();
+          count += n;
+        }
+      }
+      return count;
+    } finally {
+      release(buffer);
+    }
+  }
+
+  /** Returns whether the pool allocates direct buffers. */
+  public boolean isDirect() {
+    return direct;
+  }
+
+  /** Returns the number of buffers acquired so far. */
+  public long getAcquiredCount() {
+    return acquired.get();
+  }
+
+  /** Returns the number of acquisitions served with a previously released buffer. */
+  public long getReusedCount() {
+    return reused.get();
+  }
+
+  /** Returns the number of buffers released so far. */
+  public long getReleasedCount() {
+    return released.get();
+  }
+
+  /** Returns the number of released buffers that have not been kept for reuse. */
+  public long getDiscardedCount() {
+    return discarded.get();
+  }
+
+  /** Returns the number of leaked buffers detected so far; always zero without leak detection. */
+  public long getLeakedCount() {
+    if (collected != null) {
+      detectLeaks();
+    }
+    return leaked.get();
+  }
+
+  /** Returns the number of bytes currently kept in released buffers. */
+  public long getPooledBytes() {
+    return pooledBytes.get();
+  }
+
+  @Override
+  public String toString() {
+    return "BufferPool [direct=" + direct
+        + ", acquired=" + getAcquiredCount()
+        + ", reused=" + getReusedCount()
+        + ", released=" + getReleasedCount()
+        + ", discarded=" + getDiscardedCount()
+        + ", leaked=" + getLeakedCount()
+        + ", pooledBytes=" + getPooledBytes() + "]";
+  }
+
+  private static int sizeClass(final int capacity) {
+    return capacity <= MIN_CAPACITY ? 0 : 32 - Integer.numberOfLeadingZeros(capacity - 1) - MIN_CAPACITY_SHIFT;
+  }
+
+  private ByteBuffer allocate(final int capacity) {
+    return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+  }
+
+  private void track(final ByteBuffer buffer) {
+    detectLeaks();
+    final Tracker tracker = new Tracker(buffer, collected);
+    synchronized (trackers) {
+      List<Tracker> list = trackers.get(tracker.identity);
+      if (list == null) {
+        list = new ArrayList<Tracker>(1);
+        trackers.put(tracker.identity, list);
+      }
+      list.add(tracker);
+    }
+  }
+
+  private boolean untrack(final ByteBuffer buffer) {
+    final Integer identity = System.identityHashCode(buffer);
+    synchronized (trackers) {
+      final List<Tracker> list = trackers.get(identity);
+      if (list != null) {
+        for (final Iterator<Tracker> iterator = list.iterator(); iterator.hasNext();) {
+          final Tracker tracker = iterator.next();
+          if (tracker.get() == buffer) {
+            iterator.remove();
+            if (list.isEmpty()) {
+              trackers.remove(identity);
+            }
+            tracker.clear();
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  private void detectLeaks() {
+    Tracker tracker;
+    while ((tracker = (Tracker) collected.poll()) != null) {
+      synchronized (trackers) {
+        final List<Tracker> list = trackers.get(tracker.identity);
+        if (list == null || !list.remove(tracker)) {
+          continue;
+        }
+        if (list.isEmpty()) {
+          trackers.remove(tracker.identity);
+        }
+      }
+      leaked.incrementAndGet();
+      LOG.error("A buffer has been garbage-collected without having been released to the pool.", tracker.acquisition);
+    }
+  }
+
+  /** Remembers where a buffer has been acquired; enqueued when the buffer has been garbage-collected. */
+  private static final class Tracker extends WeakReference<ByteBuffer> {
+    private final Integer identity;
+    private final Throwable acquisition = new Throwable("Buffer acquisition");
+
+    private Tracker(final ByteBuffer buffer, final ReferenceQueue<ByteBuffer> queue) {
+      super(buffer, queue);
+      identity = System.identityHashCode(buffer);
+    }
+  }
+}
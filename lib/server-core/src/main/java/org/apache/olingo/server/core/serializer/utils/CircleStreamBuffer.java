@@ -28,6 +28,8 @@ import java.util.concurrent.LinkedBlockingQueue;
 /**
  * Circular stream buffer to write/read into/from one single buffer.
  * With support of {@link InputStream} and {@link OutputStream} access to buffered data.
+ * The byte buffers are taken from a {@link BufferPool} and are released to it as soon as they have been
+ * read out or the read part has been closed.
  * 
  * 
  */
@@ -38,6 +40,7 @@ public class CircleStreamBuffer {
   private static final int DEFAULT_CAPACITY = 8192;
   private static final int MAX_CAPACITY = DEFAULT_CAPACITY * 32;
 
+  private final BufferPool pool;
   private int currentAllocateCapacity = DEFAULT_CAPACITY;
 
   private boolean writeMode = true;
@@ -63,6 +66,17 @@ public class CircleStreamBuffer {
    * @param bufferSize
    */
   public CircleStreamBuffer(final int bufferSize) {
+    this(bufferSize, BufferPool.getDefault());
+  }
+
+  /**
+   * Create a {@link CircleStreamBuffer} with given buffer size in bytes and buffers from the given pool.
+   * 
+   * @param bufferSize
+   * @param pool
+   */
+  public CircleStreamBuffer(final int bufferSize, final BufferPool pool) {
+    this.pool = pool;
     currentAllocateCapacity = bufferSize;
     createNewWriteBuffer();
     inStream = new InternalInputStream(this);
@@ -106,11 +120,15 @@ public class CircleStreamBuffer {
    * After this call it is possible to write into the buffer (but can never be read out).
    */
   public void closeRead() {
+    if (readClosed) {
+      return;
+    }
     readClosed = true;
-    // clear references to byte buffers
+    // return the byte buffers to the pool
+    currentWriteBuffer = null;
     ByteBuffer buffer = bufferQueue.poll();
     while (buffer != null) {
-      buffer.clear();
+      pool.release(buffer);
       buffer = bufferQueue.poll();
     }
   }
@@ -125,7 +143,7 @@ public class CircleStreamBuffer {
 
   private int remaining() throws IOException {
     if (writeMode) {
-      return currentWriteBuffer.remaining();
+      return currentWriteBuffer == null ? 0 : currentWriteBuffer.remaining();
     } else {
       ByteBuffer toRead = getReadBuffer();
       if (toRead == null) {
@@ -154,7 +172,7 @@ public class CircleStreamBuffer {
     } else {
       tmp = bufferQueue.peek();
       if (tmp != null && !tmp.hasRemaining()) {
-        tmp = bufferQueue.poll();
+        pool.release(bufferQueue.poll());
         next = true;
       }
     }
@@ -201,13 +219,19 @@ public class CircleStreamBuffer {
 
   private void write(final byte[] data, final int off, final int len) throws IOException {
     ByteBuffer writeBuffer = getWriteBuffer(len);
-    writeBuffer.put(data, off, len);
+    if (writeBuffer != null) {
+      writeBuffer.put(data, off, len);
+    }
   }
 
   private ByteBuffer getWriteBuffer(final int size) throws IOException {
     if (writeClosed) {
       throw new IOException("Tried to write into closed stream.");
     }
+    if (readClosed) {
+      // the data could never be read out, and the buffers have already been released
+      return null;
+    }
 
     if (writeMode) {
       if (remaining() < size) {
@@ -223,7 +247,9 @@ public class CircleStreamBuffer {
 
   private void write(final int b) throws IOException {
     ByteBuffer writeBuffer = getWriteBuffer(1);
-    writeBuffer.put((byte) b);
+    if (writeBuffer != null) {
+      writeBuffer.put((byte) b);
+    }
   }
 
   private void createNewWriteBuffer() {
@@ -258,7 +284,8 @@ public class CircleStreamBuffer {
     }
     // update current
     currentAllocateCapacity = allocateCapacity;
-    return ByteBuffer.allocate(allocateCapacity);
+    // the pool serves requests bigger than the maximum capacity with unpooled buffers
+    return pool.acquire(Math.max(allocateCapacity, requestedCapacity));
   }
 
   // #############################################
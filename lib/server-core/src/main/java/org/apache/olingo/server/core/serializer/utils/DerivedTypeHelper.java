@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.serializer.utils;
+
+import org.apache.olingo.commons.api.edm.EdmComplexType;
+import org.apache.olingo.commons.api.edm.EdmEntityType;
+import org.apache.olingo.commons.api.edm.EdmStructuredType;
+import org.apache.olingo.commons.api.edm.FullQualifiedName;
+import org.apache.olingo.server.api.ServiceMetadata;
+import org.apache.olingo.server.api.serializer.SerializerException;
+
+/**
+ * Resolves the type of an entity or complex value that names a type derived from the declared one.
+ * Used by the serializers of all formats.
+ */
+public final class DerivedTypeHelper {
+
+  private DerivedTypeHelper() {}
+
+  /**
+   * Gets the entity type to serialize an entity of the given base type with.
+   * @param derivedTypeName the full-qualified name of the entity's type, or <code>null</code>
+   * @return the base type if no other type is named, or the named type derived from it
+   * @throws SerializerException if the named type does not exist or is not derived from the base type
+   */
+  public static EdmEntityType resolveEntityType(final ServiceMetadata metadata, final EdmEntityType baseType,
+      final String derivedTypeName) throws SerializerException {
+    if (isBaseType(baseType, derivedTypeName)) {
+      return baseType;
+    }
+    final EdmEntityType derivedType = metadata.getEdm().getEntityType(new FullQualifiedName(derivedTypeName));
+    if (derivedType == null) {
+      throw new SerializerException("EntityType not found",
+          SerializerException.MessageKeys.UNKNOWN_TYPE, derivedTypeName);
+    }
+    checkDerived(baseType, derivedType);
+    return derivedType;
+  }
+
+  /**
+   * Gets the complex type to serialize a complex value of the given base type with.
+   * @param derivedTypeName the full-qualified name of the value's type, or <code>null</code>
+   * @return the base type if no other type is named, or the named type derived from it
+   * @throws SerializerException if the named type does not exist or is not derived from the base type
+   */
+  public static EdmComplexType resolveComplexType(final ServiceMetadata metadata, final EdmComplexType baseType,
+      final String derivedTypeName) throws SerializerException {
+    if (isBaseType(baseType, derivedTypeName)) {
+      return baseType;
+    }
+    final EdmComplexType derivedType = metadata.getEdm().getComplexType(new FullQualifiedName(derivedTypeName));
+    if (derivedType == null) {
+      throw new SerializerException("Complex Type not found",
+          SerializerException.MessageKeys.UNKNOWN_TYPE, derivedTypeName);
+    }
+    checkDerived(baseType, derivedType);
+    return derivedType;
+  }
+
+  private static boolean isBaseType(final EdmStructuredType baseType, final String derivedTypeName) {
+    return derivedTypeName == null
+        || baseType.getFullQualifiedName().getFullQualifiedNameAsString().equals(derivedTypeName);
+  }
+
+  private static void checkDerived(final EdmStructuredType baseType, final EdmStructuredType derivedType)
+      throws SerializerException {
+    final String baseTypeName = baseType.getFullQualifiedName().getFullQualifiedNameAsString();
+    EdmStructuredType type = derivedType.getBaseType();
+    while (type != null) {
+      if (type.getFullQualifiedName().getFullQualifiedNameAsString().equals(baseTypeName)) {
+        return;
+      }
+      type = type.getBaseType();
+    }
+    throw new SerializerException("Wrong base type",
+        SerializerException.MessageKeys.WRONG_BASE_TYPE,
+        derivedType.getFullQualifiedName().getFullQualifiedNameAsString(), baseTypeName);
+  }
+}
@@ -18,17 +18,34 @@
  */
 package org.apache.olingo.server.core.serializer.xml;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
 import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 
+import org.apache.olingo.commons.api.Constants;
+import org.apache.olingo.commons.api.data.ComplexValue;
+import org.apache.olingo.commons.api.data.ContextURL;
 import org.apache.olingo.commons.api.data.Entity;
 import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.Link;
+import org.apache.olingo.commons.api.data.Linked;
 import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.domain.ODataErrorDetail;
 import org.apache.olingo.commons.api.edm.Edm;
 import org.apache.olingo.commons.api.edm.EdmComplexType;
 import org.apache.olingo.commons.api.edm.EdmEntityType;
+import org.apache.olingo.commons.api.edm.EdmNavigationProperty;
 import org.apache.olingo.commons.api.edm.EdmPrimitiveType;
+import org.apache.olingo.commons.api.edm.EdmPrimitiveTypeException;
+import org.apache.olingo.commons.api.edm.EdmProperty;
+import org.apache.olingo.commons.api.edm.EdmStructuredType;
+import org.apache.olingo.commons.api.edm.EdmType;
+import org.apache.olingo.commons.api.edm.constants.EdmTypeKind;
+import org.apache.olingo.commons.api.format.ContentType;
 import org.apache.olingo.server.api.ODataServerError;
 import org.apache.olingo.server.api.ServiceMetadata;
 import org.apache.olingo.server.api.serializer.ComplexSerializerOptions;
@@ -38,11 +55,22 @@ import org.apache.olingo.server.api.serializer.ODataSerializer;
 import org.apache.olingo.server.api.serializer.PrimitiveSerializerOptions;
 import org.apache.olingo.server.api.serializer.SerializerException;
 import org.apache.olingo.server.api.serializer.SerializerResult;
+import org.apache.olingo.server.api.uri.queryoption.ExpandItem;
+import org.apache.olingo.server.api.uri.queryoption.ExpandOption;
+import org.apache.olingo.server.api.uri.queryoption.SelectOption;
 import org.apache.olingo.server.core.serializer.SerializerResultImpl;
 import org.apache.olingo.server.core.serializer.utils.CircleStreamBuffer;
+import org.apache.olingo.server.core.serializer.utils.ContextURLBuilder;
+import org.apache.olingo.server.core.serializer.utils.DerivedTypeHelper;
+import org.apache.olingo.server.core.serializer.utils.ExpandSelectHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Serializer for the XML-based formats: the metadata document as CSDL and data as Atom.
+ * Content is written element by element through an {@link XMLStreamWriter}, without building a document tree,
+ * with the same $select and $expand semantics as the JSON serializer.
+ */
 public class ODataXmlSerializerImpl implements ODataSerializer {
 
   /** The default character set is UTF-8. */
@@ -50,6 +78,16 @@ public class ODataXmlSerializerImpl implements ODataSerializer {
 
   private static final Logger log = LoggerFactory.getLogger(ODataXmlSerializerImpl.class);
 
+  /** Factories are thread-safe once configured, and expensive to look up. */
+  private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+  private static final String ATOM = "";
+  private static final String METADATA = Constants.PREFIX_METADATA;
+  private static final String DATA = Constants.PREFIX_DATASERVICES;
+  private static final String ERROR = "error";
+  private static final String DETAIL = "detail";
+  private static final String STRING = "String";
+
   @Override
   public SerializerResultImpl serviceDocument(final Edm edm, final String serviceRoot) throws SerializerException {
     throw new SerializerException("Service Document not implemented for XML format",
@@ -63,7 +101,7 @@ public class ODataXmlSerializerImpl implements ODataSerializer {
 
     try {
       buffer = new CircleStreamBuffer();
-      xmlStreamWriter = XMLOutputFactory.newInstance().createXMLStreamWriter(buffer.getOutputStream(), DEFAULT_CHARSET);
+      xmlStreamWriter = OUTPUT_FACTORY.createXMLStreamWriter(buffer.getOutputStream(), DEFAULT_CHARSET);
       MetadataDocumentXmlSerializer serializer = new MetadataDocumentXmlSerializer(serviceMetadata);
       serializer.writeMetadataDocument(xmlStreamWriter);
       xmlStreamWriter.flush();
@@ -89,49 +127,582 @@ public class ODataXmlSerializerImpl implements ODataSerializer {
   @Override
   public SerializerResult entity(final ServiceMetadata metadata, final EdmEntityType entityType,
       final Entity entity, final EntitySerializerOptions options) throws SerializerException {
-    throw new SerializerException("Entity serialization not implemented for XML format",
-        SerializerException.MessageKeys.NOT_IMPLEMENTED);
+    final ContextURL contextURL = checkContextURL(options == null ? null : options.getContextURL());
+    CircleStreamBuffer buffer = new CircleStreamBuffer();
+    try {
+      XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(buffer.getOutputStream(), DEFAULT_CHARSET);
+      writer.writeStartDocument(DEFAULT_CHARSET, "1.0");
+      writeEntity(metadata, entityType, entity, contextURL,
+          options == null ? null : options.getExpand(),
+          options == null ? null : options.getSelect(),
+          options == null ? false : options.onlyReferences(), writer, true);
+      writer.writeEndDocument();
+      writer.close();
+    } catch (final XMLStreamException e) {
+      throw new SerializerException("An I/O exception occurred.", e,
+          SerializerException.MessageKeys.IO_EXCEPTION);
+    }
+    return SerializerResultImpl.with().content(buffer.getInputStream()).build();
   }
 
   @Override
   public SerializerResult entityCollection(final ServiceMetadata metadata,
       final EdmEntityType entityType, final EntityCollection entitySet,
       final EntityCollectionSerializerOptions options) throws SerializerException {
-    throw new SerializerException("Entityset serialization not implemented for XML format",
-        SerializerException.MessageKeys.NOT_IMPLEMENTED);
+    final ContextURL contextURL = checkContextURL(options == null ? null : options.getContextURL());
+    CircleStreamBuffer buffer = new CircleStreamBuffer();
+    try {
+      XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(buffer.getOutputStream(), DEFAULT_CHARSET);
+      writer.writeStartDocument(DEFAULT_CHARSET, "1.0");
+      writer.writeStartElement(ATOM, Constants.ATOM_ELEM_FEED, Constants.NS_ATOM);
+      writeNamespaces(writer);
+      writer.writeAttribute(METADATA, Constants.NS_METADATA, Constants.CONTEXT,
+          ContextURLBuilder.create(contextURL).toASCIIString());
+
+      if (options != null && options.getCount() != null && options.getCount().getValue()
+          && entitySet.getCount() != null) {
+        writer.writeStartElement(METADATA, Constants.ATOM_ELEM_COUNT, Constants.NS_METADATA);
+        writer.writeCharacters(String.valueOf(entitySet.getCount()));
+        writer.writeEndElement();
+      }
+      if (entitySet.getId() != null) {
+        writer.writeStartElement(ATOM, Constants.ATOM_ELEM_ID, Constants.NS_ATOM);
+        writer.writeCharacters(entitySet.getId().toASCIIString());
+        writer.writeEndElement();
+      }
+      if (options == null) {
+        writeEntitySet(metadata, entityType, entitySet, null, null, false, writer);
+      } else {
+        writeEntitySet(metadata, entityType, entitySet,
+            options.getExpand(), options.getSelect(), options.onlyReferences(), writer);
+      }
+      if (entitySet.getNext() != null) {
+        writeLink(writer, Constants.NEXT_LINK_REL, entitySet.getNext().toASCIIString(), null, null);
+        writer.writeEndElement();
+      }
+      writer.writeEndElement();
+      writer.writeEndDocument();
+      writer.close();
+    } catch (final XMLStreamException e) {
+      throw new SerializerException("An I/O exception occurred.", e,
+          SerializerException.MessageKeys.IO_EXCEPTION);
+    }
+    return SerializerResultImpl.with().content(buffer.getInputStream()).build();
+  }
+
+  private ContextURL checkContextURL(final ContextURL contextURL) throws SerializerException {
+    if (contextURL == null) {
+      throw new SerializerException("ContextURL null!", SerializerException.MessageKeys.NO_CONTEXT_URL);
+    }
+    return contextURL;
+  }
+
+  private void writeNamespaces(final XMLStreamWriter writer) throws XMLStreamException {
+    writer.writeDefaultNamespace(Constants.NS_ATOM);
+    writer.writeNamespace(METADATA, Constants.NS_METADATA);
+    writer.writeNamespace(DATA, Constants.NS_DATASERVICES);
+  }
+
+  protected void writeEntitySet(final ServiceMetadata metadata, final EdmEntityType entityType,
+      final EntityCollection entitySet, final ExpandOption expand, final SelectOption select,
+      final boolean onlyReference, final XMLStreamWriter writer) throws XMLStreamException,
+      SerializerException {
+    for (final Entity entity : entitySet.getEntities()) {
+      writeEntity(metadata, entityType, entity, null, expand, select, onlyReference, writer, false);
+    }
+  }
+
+  protected void writeEntity(final ServiceMetadata metadata, final EdmEntityType entityType,
+      final Entity entity, final ContextURL contextURL, final ExpandOption expand,
+      final SelectOption select, final boolean onlyReference, final XMLStreamWriter writer, final boolean top)
+      throws XMLStreamException, SerializerException {
+    if (onlyReference) {
+      writer.writeStartElement(METADATA, Constants.ATOM_ELEM_ENTRY_REF, Constants.NS_METADATA);
+      if (top) {
+        writer.writeNamespace(METADATA, Constants.NS_METADATA);
+        writer.writeAttribute(METADATA, Constants.NS_METADATA, Constants.CONTEXT,
+            ContextURLBuilder.create(contextURL).toASCIIString());
+      }
+      writer.writeAttribute(Constants.ATOM_ATTR_ID, entity.getId().toASCIIString());
+      writer.writeEndElement();
+      return;
+    }
+
+    writer.writeStartElement(ATOM, Constants.ATOM_ELEM_ENTRY, Constants.NS_ATOM);
+    if (top) {
+      writeNamespaces(writer);
+      if (contextURL != null) {
+        writer.writeAttribute(METADATA, Constants.NS_METADATA, Constants.CONTEXT,
+            ContextURLBuilder.create(contextURL).toASCIIString());
+      }
+    }
+    if (entity.getETag() != null) {
+      writer.writeAttribute(METADATA, Constants.NS_METADATA, Constants.ATOM_ATTR_ETAG, entity.getETag());
+    }
+
+    if (entity.getId() != null) {
+      writer.writeStartElement(ATOM, Constants.ATOM_ELEM_ID, Constants.NS_ATOM);
+      writer.writeCharacters(entity.getId().toASCIIString());
+      writer.writeEndElement();
+    }
+
+    final EdmEntityType resolvedType = DerivedTypeHelper.resolveEntityType(metadata, entityType, entity.getType());
+    writer.writeStartElement(ATOM, Constants.ATOM_ELEM_CATEGORY, Constants.NS_ATOM);
+    writer.writeAttribute(Constants.ATOM_ATTR_SCHEME, Constants.NS_SCHEME);
+    writer.writeAttribute(Constants.ATOM_ATTR_TERM,
+        "#" + resolvedType.getFullQualifiedName().getFullQualifiedNameAsString());
+    writer.writeEndElement();
+
+    if (entity.getEditLink() != null) {
+      writeLink(writer, Constants.EDIT_LINK_REL, entity.getEditLink().getHref(), null, null);
+      writer.writeEndElement();
+    }
+    if (entity.getSelfLink() != null) {
+      writeLink(writer, Constants.SELF_LINK_REL, entity.getSelfLink().getHref(), null, null);
+      writer.writeEndElement();
+    }
+
+    writeNavigationProperties(metadata, resolvedType, entity, expand, writer);
+
+    if (entityType.hasStream()) {
+      if (entity.getMediaEditLinks() != null && !entity.getMediaEditLinks().isEmpty()) {
+        writeLink(writer, Constants.EDITMEDIA_LINK_REL, entity.getMediaEditLinks().get(0).getHref(),
+            entity.getMediaContentType(), null);
+        if (entity.getMediaETag() != null) {
+          writer.writeAttribute(METADATA, Constants.NS_METADATA, Constants.ATOM_ATTR_ETAG, entity.getMediaETag());
+        }
+        writer.writeEndElement();
+      }
+      writer.writeStartElement(ATOM, Constants.ATOM_ELEM_CONTENT, Constants.NS_ATOM);
+      if (entity.getMediaContentType() != null) {
+        writer.writeAttribute(Constants.ATTR_TYPE, entity.getMediaContentType());
+      }
+      if (entity.getMediaContentSource() != null) {
+        writer.writeAttribute(Constants.ATOM_ATTR_SRC, entity.getMediaContentSource().toASCIIString());
+      }
+      writer.writeEndElement();
+      writer.writeStartElement(METADATA, Constants.PROPERTIES, Constants.NS_METADATA);
+      writeProperties(resolvedType, entity.getProperties(), select, writer);
+      writer.writeEndElement();
+    } else {
+      writer.writeStartElement(ATOM, Constants.ATOM_ELEM_CONTENT, Constants.NS_ATOM);
+      writer.writeAttribute(Constants.ATTR_TYPE, ContentType.APPLICATION_XML.toContentTypeString());
+      writer.writeStartElement(METADATA, Constants.PROPERTIES, Constants.NS_METADATA);
+      writeProperties(resolvedType, entity.getProperties(), select, writer);
+      writer.writeEndElement();
+      writer.writeEndElement();
+    }
+    writer.writeEndElement();
+  }
+
+  /** Writes the start of a link element; the caller writes the inline content and ends the element. */
+  private void writeLink(final XMLStreamWriter writer, final String rel, final String href, final String type,
+      final String title) throws XMLStreamException {
+    writer.writeStartElement(ATOM, Constants.ATOM_ELEM_LINK, Constants.NS_ATOM);
+    writer.writeAttribute(Constants.ATTR_REL, rel);
+    if (type != null) {
+      writer.writeAttribute(Constants.ATTR_TYPE, type);
+    }
+    if (title != null) {
+      writer.writeAttribute(Constants.ATTR_TITLE, title);
+    }
+    if (href != null) {
+      writer.writeAttribute(Constants.ATTR_HREF, href);
+    }
+  }
+
+  protected void writeProperties(final EdmStructuredType type, final List<Property> properties,
+      final SelectOption select, final XMLStreamWriter writer) throws XMLStreamException, SerializerException {
+    final boolean all = ExpandSelectHelper.isAll(select);
+    final Set<String> selected = all ? null :
+        ExpandSelectHelper.getSelectedPropertyNames(select.getSelectItems());
+    for (final String propertyName : type.getPropertyNames()) {
+      if (all || selected.contains(propertyName)) {
+        final EdmProperty edmProperty = type.getStructuralProperty(propertyName);
+        final Property property = findProperty(propertyName, properties);
+        final Set<List<String>> selectedPaths = all || edmProperty.isPrimitive() ? null :
+            ExpandSelectHelper.getSelectedPaths(select.getSelectItems(), propertyName);
+        writeProperty(edmProperty, property, selectedPaths, writer);
+      }
+    }
+  }
+
+  protected void writeNavigationProperties(final ServiceMetadata metadata,
+      final EdmStructuredType type, final Linked linked, final ExpandOption expand,
+      final XMLStreamWriter writer) throws SerializerException, XMLStreamException {
+    final boolean hasExpand = ExpandSelectHelper.hasExpand(expand);
+    final boolean expandAll = hasExpand && ExpandSelectHelper.isExpandAll(expand);
+    final Set<String> expanded = !hasExpand || expandAll ? null :
+        ExpandSelectHelper.getExpandedPropertyNames(expand.getExpandItems());
+    for (final String propertyName : type.getNavigationPropertyNames()) {
+      final EdmNavigationProperty property = type.getNavigationProperty(propertyName);
+      final Link navigationLink = linked.getNavigationLink(property.getName());
+      if (expandAll || expanded != null && expanded.contains(propertyName)) {
+        final ExpandItem innerOptions = expandAll ? null :
+            ExpandSelectHelper.getExpandItem(expand.getExpandItems(), propertyName);
+        if (innerOptions != null && (innerOptions.isRef() || innerOptions.getLevelsOption() != null)) {
+          throw new SerializerException("Expand options $ref and $levels are not supported.",
+              SerializerException.MessageKeys.NOT_IMPLEMENTED);
+        }
+        writeExpandedNavigationProperty(metadata, property, navigationLink,
+            innerOptions == null ? null : innerOptions.getExpandOption(),
+            innerOptions == null ? null : innerOptions.getSelectOption(),
+            writer);
+      } else if (navigationLink != null && navigationLink.getHref() != null) {
+        writeNavigationLink(property, navigationLink, writer);
+        writer.writeEndElement();
+      }
+    }
+  }
+
+  private void writeNavigationLink(final EdmNavigationProperty property, final Link navigationLink,
+      final XMLStreamWriter writer) throws XMLStreamException {
+    writeLink(writer, Constants.NS_NAVIGATION_LINK_REL + property.getName(),
+        navigationLink == null ? null : navigationLink.getHref(),
+        property.isCollection() ? ContentType.APPLICATION_ATOM_XML_FEED.toContentTypeString() :
+            ContentType.APPLICATION_ATOM_XML_ENTRY.toContentTypeString(),
+        property.getName());
+  }
+
+  protected void writeExpandedNavigationProperty(final ServiceMetadata metadata,
+      final EdmNavigationProperty property, final Link navigationLink,
+      final ExpandOption innerExpand, final SelectOption innerSelect, final XMLStreamWriter writer)
+      throws XMLStreamException, SerializerException {
+    writeNavigationLink(property, navigationLink, writer);
+    writer.writeStartElement(METADATA, Constants.ATOM_ELEM_INLINE, Constants.NS_METADATA);
+    if (property.isCollection()) {
+      writer.writeStartElement(ATOM, Constants.ATOM_ELEM_FEED, Constants.NS_ATOM);
+      if (navigationLink != null && navigationLink.getInlineEntitySet() != null) {
+        writeEntitySet(metadata, property.getType(), navigationLink.getInlineEntitySet(), innerExpand,
+            innerSelect, false, writer);
+      }
+      writer.writeEndElement();
+    } else if (navigationLink != null && navigationLink.getInlineEntity() != null) {
+      writeEntity(metadata, property.getType(), navigationLink.getInlineEntity(), null,
+          innerExpand, innerSelect, false, writer, false);
+    }
+    writer.writeEndElement();
+    writer.writeEndElement();
+  }
+
+  protected void writeProperty(final EdmProperty edmProperty, final Property property,
+      final Set<List<String>> selectedPaths, final XMLStreamWriter writer)
+      throws XMLStreamException, SerializerException {
+    writer.writeStartElement(DATA, edmProperty.getName(), Constants.NS_DATASERVICES);
+    writeTypeAttribute(edmProperty.getType(), edmProperty.isCollection(), writer);
+    if (property == null || property.isNull()) {
+      if (edmProperty.isNullable() == Boolean.FALSE) {
+        throw new SerializerException("Non-nullable property not present!",
+            SerializerException.MessageKeys.MISSING_PROPERTY, edmProperty.getName());
+      } else {
+        writer.writeAttribute(METADATA, Constants.NS_METADATA, Constants.ATTR_NULL, Boolean.TRUE.toString());
+      }
+    } else {
+      writePropertyValue(edmProperty, property, selectedPaths, writer);
+    }
+    writer.writeEndElement();
+  }
+
+  /** Writes the type attribute; it is omitted for the default type String. */
+  private void writeTypeAttribute(final EdmType type, final boolean isCollection, final XMLStreamWriter writer)
+      throws XMLStreamException {
+    final boolean isPrimitive = type.getKind() == EdmTypeKind.PRIMITIVE;
+    final String name = isPrimitive ? type.getName() : type.getFullQualifiedName().getFullQualifiedNameAsString();
+    if (isCollection) {
+      writer.writeAttribute(METADATA, Constants.NS_METADATA, Constants.ATTR_TYPE, "#Collection(" + name + ")");
+    } else if (!isPrimitive) {
+      writer.writeAttribute(METADATA, Constants.NS_METADATA, Constants.ATTR_TYPE, "#" + name);
+    } else if (!STRING.equals(name)) {
+      writer.writeAttribute(METADATA, Constants.NS_METADATA, Constants.ATTR_TYPE, name);
+    }
+  }
+
+  private void writePropertyValue(final EdmProperty edmProperty,
+      final Property property, final Set<List<String>> selectedPaths,
+      final XMLStreamWriter writer) throws XMLStreamException, SerializerException {
+    try {
+      if (edmProperty.isPrimitive()) {
+        if (edmProperty.isCollection()) {
+          writePrimitiveCollection((EdmPrimitiveType) edmProperty.getType(), property,
+              edmProperty.isNullable(), edmProperty.getMaxLength(),
+              edmProperty.getPrecision(), edmProperty.getScale(), edmProperty.isUnicode(),
+              writer);
+        } else {
+          writePrimitive((EdmPrimitiveType) edmProperty.getType(), property,
+              edmProperty.isNullable(), edmProperty.getMaxLength(),
+              edmProperty.getPrecision(), edmProperty.getScale(), edmProperty.isUnicode(),
+              writer);
+        }
+      } else if (edmProperty.isCollection()) {
+        writeComplexCollection((EdmComplexType) edmProperty.getType(), property, selectedPaths, writer);
+      } else if (property.isComplex()) {
+        writeComplexValue((EdmComplexType) edmProperty.getType(), property.asComplex().getValue(),
+            selectedPaths, writer);
+      } else if (property.isEnum()) {
+        writePrimitive((EdmPrimitiveType) edmProperty.getType(), property,
+            edmProperty.isNullable(), edmProperty.getMaxLength(),
+            edmProperty.getPrecision(), edmProperty.getScale(), edmProperty.isUnicode(),
+            writer);
+      } else {
+        throw new SerializerException("Property type not yet supported!",
+            SerializerException.MessageKeys.UNSUPPORTED_PROPERTY_TYPE, edmProperty.getName());
+      }
+    } catch (final EdmPrimitiveTypeException e) {
+      throw new SerializerException("Wrong value for property!", e,
+          SerializerException.MessageKeys.WRONG_PROPERTY_VALUE,
+          edmProperty.getName(), property.getValue().toString());
+    }
+  }
+
+  private void writePrimitiveCollection(final EdmPrimitiveType type, final Property property,
+      final Boolean isNullable, final Integer maxLength, final Integer precision, final Integer scale,
+      final Boolean isUnicode, final XMLStreamWriter writer)
+      throws XMLStreamException, EdmPrimitiveTypeException, SerializerException {
+    for (Object value : property.asCollection()) {
+      writer.writeStartElement(METADATA, Constants.ELEM_ELEMENT, Constants.NS_METADATA);
+      switch (property.getValueType()) {
+      case COLLECTION_PRIMITIVE:
+      case COLLECTION_ENUM:
+        writePrimitiveValue(type, value, isNullable, maxLength, precision, scale, isUnicode, writer);
+        break;
+      default:
+        throw new SerializerException("Property type not yet supported!",
+            SerializerException.MessageKeys.UNSUPPORTED_PROPERTY_TYPE, property.getName());
+      }
+      writer.writeEndElement();
+    }
+  }
+
+  private void writeComplexCollection(final EdmComplexType type, final Property property,
+      final Set<List<String>> selectedPaths, final XMLStreamWriter writer)
+      throws XMLStreamException, EdmPrimitiveTypeException, SerializerException {
+    for (Object value : property.asCollection()) {
+      writer.writeStartElement(METADATA, Constants.ELEM_ELEMENT, Constants.NS_METADATA);
+      switch (property.getValueType()) {
+      case COLLECTION_COMPLEX:
+        writeComplexValue(type, ((ComplexValue) value).getValue(), selectedPaths, writer);
+        break;
+      default:
+        throw new SerializerException("Property type not yet supported!",
+            SerializerException.MessageKeys.UNSUPPORTED_PROPERTY_TYPE, property.getName());
+      }
+      writer.writeEndElement();
+    }
+  }
+
+  private void writePrimitive(final EdmPrimitiveType type, final Property property,
+      final Boolean isNullable, final Integer maxLength, final Integer precision, final Integer scale,
+      final Boolean isUnicode, final XMLStreamWriter writer)
+      throws EdmPrimitiveTypeException, XMLStreamException, SerializerException {
+    if (property.isPrimitive()) {
+      writePrimitiveValue(type, property.asPrimitive(),
+          isNullable, maxLength, precision, scale, isUnicode, writer);
+    } else if (property.isGeospatial()) {
+      throw new SerializerException("Property type not yet supported!",
+          SerializerException.MessageKeys.UNSUPPORTED_PROPERTY_TYPE, property.getName());
+    } else if (property.isEnum()) {
+      writePrimitiveValue(type, property.asEnum(),
+          isNullable, maxLength, precision, scale, isUnicode, writer);
+    } else {
+      throw new SerializerException("Inconsistent property type!",
+          SerializerException.MessageKeys.INCONSISTENT_PROPERTY_TYPE, property.getName());
+    }
+  }
+
+  protected void writePrimitiveValue(final EdmPrimitiveType type, final Object primitiveValue,
+      final Boolean isNullable, final Integer maxLength, final Integer precision, final Integer scale,
+      final Boolean isUnicode, final XMLStreamWriter writer) throws EdmPrimitiveTypeException, XMLStreamException {
+    final String value = type.valueToString(primitiveValue,
+        isNullable, maxLength, precision, scale, isUnicode);
+    if (value == null) {
+      writer.writeAttribute(METADATA, Constants.NS_METADATA, Constants.ATTR_NULL, Boolean.TRUE.toString());
+    } else {
+      writer.writeCharacters(value);
+    }
+  }
+
+  protected void writeComplexValue(final EdmComplexType type, final List<Property> properties,
+      final Set<List<String>> selectedPaths, final XMLStreamWriter writer)
+      throws XMLStreamException, EdmPrimitiveTypeException, SerializerException {
+    for (final String propertyName : type.getPropertyNames()) {
+      final Property property = findProperty(propertyName, properties);
+      if (selectedPaths == null || ExpandSelectHelper.isSelected(selectedPaths, propertyName)) {
+        writeProperty((EdmProperty) type.getProperty(propertyName), property,
+            selectedPaths == null ? null : ExpandSelectHelper.getReducedSelectedPaths(selectedPaths, propertyName),
+            writer);
+      }
+    }
+  }
+
+  private Property findProperty(final String propertyName, final List<Property> properties) {
+    for (final Property property : properties) {
+      if (propertyName.equals(property.getName())) {
+        return property;
+      }
+    }
+    return null;
   }
 
   @Override
-  public SerializerResult error(ODataServerError error) throws SerializerException {
-    throw new SerializerException("error serialization not implemented for XML format",
-        SerializerException.MessageKeys.NOT_IMPLEMENTED);
+  public SerializerResult error(final ODataServerError error) throws SerializerException {
+    if (error == null) {
+      throw new SerializerException("ODataError object MUST NOT be null!",
+          SerializerException.MessageKeys.NULL_INPUT);
+    }
+    CircleStreamBuffer buffer = new CircleStreamBuffer();
+    try {
+      XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(buffer.getOutputStream(), DEFAULT_CHARSET);
+      writer.writeStartDocument(DEFAULT_CHARSET, "1.0");
+      writer.writeStartElement(METADATA, ERROR, Constants.NS_METADATA);
+      writer.writeNamespace(METADATA, Constants.NS_METADATA);
+      writeErrorDetails(error.getCode(), error.getMessage(), error.getTarget(), writer);
+      if (error.getDetails() != null) {
+        writer.writeStartElement(METADATA, Constants.ERROR_DETAILS, Constants.NS_METADATA);
+        for (final ODataErrorDetail detail : error.getDetails()) {
+          writer.writeStartElement(METADATA, DETAIL, Constants.NS_METADATA);
+          writeErrorDetails(detail.getCode(), detail.getMessage(), detail.getTarget(), writer);
+          writer.writeEndElement();
+        }
+        writer.writeEndElement();
+      }
+      writer.writeEndElement();
+      writer.writeEndDocument();
+      writer.close();
+    } catch (final XMLStreamException e) {
+      throw new SerializerException("An I/O exception occurred.", e,
+          SerializerException.MessageKeys.IO_EXCEPTION);
+    }
+    return SerializerResultImpl.with().content(buffer.getInputStream()).build();
+  }
+
+  private void writeErrorDetails(final String code, final String message, final String target,
+      final XMLStreamWriter writer) throws XMLStreamException {
+    writer.writeStartElement(METADATA, Constants.ERROR_CODE, Constants.NS_METADATA);
+    if (code != null) {
+      writer.writeCharacters(code);
+    }
+    writer.writeEndElement();
+    writer.writeStartElement(METADATA, Constants.ERROR_MESSAGE, Constants.NS_METADATA);
+    if (message != null) {
+      writer.writeCharacters(message);
+    }
+    writer.writeEndElement();
+    if (target != null) {
+      writer.writeStartElement(METADATA, Constants.ERROR_TARGET, Constants.NS_METADATA);
+      writer.writeCharacters(target);
+      writer.writeEndElement();
+    }
   }
 
   @Override
   public SerializerResult primitive(final EdmPrimitiveType type, final Property property,
       final PrimitiveSerializerOptions options) throws SerializerException {
-    throw new SerializerException("Serialization not implemented for XML format.",
-        SerializerException.MessageKeys.NOT_IMPLEMENTED);
+    final ContextURL contextURL = checkContextURL(options == null ? null : options.getContextURL());
+    if (property.isNull()) {
+      throw new SerializerException("Property value can not be null.", SerializerException.MessageKeys.NULL_INPUT);
+    }
+    CircleStreamBuffer buffer = new CircleStreamBuffer();
+    try {
+      XMLStreamWriter writer = startValueDocument(buffer, contextURL, type, false);
+      writePrimitive(type, property,
+          options.isNullable(), options.getMaxLength(), options.getPrecision(), options.getScale(),
+          options.isUnicode(),
+          writer);
+      endValueDocument(writer);
+    } catch (final XMLStreamException e) {
+      throw new SerializerException("An I/O exception occurred.", e,
+          SerializerException.MessageKeys.IO_EXCEPTION);
+    } catch (final EdmPrimitiveTypeException e) {
+      throw new SerializerException("Wrong value for property!", e,
+          SerializerException.MessageKeys.WRONG_PROPERTY_VALUE,
+          property.getName(), property.getValue().toString());
+    }
+    return SerializerResultImpl.with().content(buffer.getInputStream()).build();
   }
 
   @Override
   public SerializerResult complex(final ServiceMetadata metadata, final EdmComplexType type,
       final Property property, final ComplexSerializerOptions options) throws SerializerException {
-    throw new SerializerException("Serialization not implemented for XML format.",
-        SerializerException.MessageKeys.NOT_IMPLEMENTED);
+    final ContextURL contextURL = checkContextURL(options == null ? null : options.getContextURL());
+    CircleStreamBuffer buffer = new CircleStreamBuffer();
+    try {
+      final EdmComplexType resolvedType = DerivedTypeHelper.resolveComplexType(metadata, type, property.getType());
+      XMLStreamWriter writer = startValueDocument(buffer, contextURL, resolvedType, false);
+      final List<Property> values =
+          property.isNull() ? Collections.<Property> emptyList() : property.asComplex().getValue();
+      writeProperties(resolvedType, values, options == null ? null : options.getSelect(), writer);
+      if (!property.isNull() && property.isComplex()) {
+        writeNavigationProperties(metadata, resolvedType, property.asComplex(),
+            options == null ? null : options.getExpand(), writer);
+      }
+      endValueDocument(writer);
+    } catch (final XMLStreamException e) {
+      throw new SerializerException("An I/O exception occurred.", e,
+          SerializerException.MessageKeys.IO_EXCEPTION);
+    }
+    return SerializerResultImpl.with().content(buffer.getInputStream()).build();
   }
 
   @Override
   public SerializerResult primitiveCollection(final EdmPrimitiveType type, final Property property,
       final PrimitiveSerializerOptions options) throws SerializerException {
-    throw new SerializerException("Serialization not implemented for XML format.",
-        SerializerException.MessageKeys.NOT_IMPLEMENTED);
+    final ContextURL contextURL = checkContextURL(options == null ? null : options.getContextURL());
+    CircleStreamBuffer buffer = new CircleStreamBuffer();
+    try {
+      XMLStreamWriter writer = startValueDocument(buffer, contextURL, type, true);
+      writePrimitiveCollection(type, property,
+          options.isNullable(), options.getMaxLength(), options.getPrecision(), options.getScale(),
+          options.isUnicode(),
+          writer);
+      endValueDocument(writer);
+    } catch (final XMLStreamException e) {
+      throw new SerializerException("An I/O exception occurred.", e,
+          SerializerException.MessageKeys.IO_EXCEPTION);
+    } catch (final EdmPrimitiveTypeException e) {
+      throw new SerializerException("Wrong value for property!", e,
+          SerializerException.MessageKeys.WRONG_PROPERTY_VALUE,
+          property.getName(), property.getValue().toString());
+    }
+    return SerializerResultImpl.with().content(buffer.getInputStream()).build();
   }
 
   @Override
   public SerializerResult complexCollection(final ServiceMetadata metadata, final EdmComplexType type,
       final Property property, final ComplexSerializerOptions options) throws SerializerException {
-    throw new SerializerException("Serialization not implemented for XML format.",
-        SerializerException.MessageKeys.NOT_IMPLEMENTED);
+    final ContextURL contextURL = checkContextURL(options == null ? null : options.getContextURL());
+    CircleStreamBuffer buffer = new CircleStreamBuffer();
+    try {
+      XMLStreamWriter writer = startValueDocument(buffer, contextURL, type, true);
+      writeComplexCollection(type, property, null, writer);
+      endValueDocument(writer);
+    } catch (final XMLStreamException e) {
+      throw new SerializerException("An I/O exception occurred.", e,
+          SerializerException.MessageKeys.IO_EXCEPTION);
+    } catch (final EdmPrimitiveTypeException e) {
+      throw new SerializerException("Wrong value for property!", e,
+          SerializerException.MessageKeys.WRONG_PROPERTY_VALUE,
+          property.getName(), property.getValue().toString());
+    }
+    return SerializerResultImpl.with().content(buffer.getInputStream()).build();
+  }
+
+  /** Starts a document for an individual property, with the value element as root element. */
+  private XMLStreamWriter startValueDocument(final CircleStreamBuffer buffer, final ContextURL contextURL,
+      final EdmType type, final boolean isCollection) throws XMLStreamException {
+    XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(buffer.getOutputStream(), DEFAULT_CHARSET);
+    writer.writeStartDocument(DEFAULT_CHARSET, "1.0");
+    writer.writeStartElement(METADATA, Constants.VALUE, Constants.NS_METADATA);
+    writer.writeNamespace(METADATA, Constants.NS_METADATA);
+    writer.writeNamespace(DATA, Constants.NS_DATASERVICES);
+    writer.writeAttribute(METADATA, Constants.NS_METADATA, Constants.CONTEXT,
+        ContextURLBuilder.create(contextURL).toASCIIString());
+    writeTypeAttribute(type, isCollection, writer);
+    return writer;
+  }
+
+  private void endValueDocument(final XMLStreamWriter writer) throws XMLStreamException {
+    writer.writeEndElement();
+    writer.writeEndDocument();
+    writer.close();
   }
 }
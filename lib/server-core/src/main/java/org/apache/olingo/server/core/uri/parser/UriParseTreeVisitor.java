@@ -1378,6 +1378,9 @@ public class UriParseTreeVisitor extends UriParserBaseVisitor<Object> {
     UriInfoImpl uriInfoImplpath = new UriInfoImpl().setKind(UriInfoKind.resource);
 
     if (context.contextTypes.isEmpty()) {
+      if (context.contextUriInfo.getKind() == UriInfoKind.crossjoin && ctx.vIts == null && ctx.vPs != null) {
+        return readCrossjoinMember(ctx);
+      }
       throw wrap(new UriParserSemanticException("Expression '" + ctx.getText() + "' is not allowed as key value.",
           UriParserSemanticException.MessageKeys.INVALID_KEY_VALUE, ctx.getText()));
     }
@@ -1421,6 +1424,62 @@ public class UriParseTreeVisitor extends UriParserBaseVisitor<Object> {
     return ret;
   }
 
+  /**
+   * Reads a member expression of a $crossjoin request.
+   * Its first segment is one of the joined entity sets and stands for the entity of that entity set
+   * in a tuple of the cross join; the following segments are read relative to that single entity.
+   */
+  private MemberImpl readCrossjoinMember(final MemberExprContext ctx) {
+    final PathSegmentContext first = ctx.vPs.vlPS.get(0);
+    final String name = first.vODI.getText();
+    final EdmEntitySet edmEntitySet = edmEntityContainer.getEntitySet(name);
+    if (first.vNS != null || !first.vlNVO.isEmpty() || edmEntitySet == null
+        || !context.contextUriInfo.getEntitySetNames().contains(name)) {
+      throw wrap(new UriParserSemanticException("Expression '" + ctx.getText()
+          + "' must start with an entity set of the cross join.",
+          UriParserSemanticException.MessageKeys.RESOURCE_NOT_FOUND, name));
+    }
+
+    // save the context
+    UriInfoImpl backupUriInfoPath = context.contextUriInfo;
+
+    // read the following segments as path of a single entity
+    UriInfoImpl relativePath = new UriInfoImpl().setKind(UriInfoKind.resource);
+    context.contextUriInfo = relativePath;
+    context.contextTypes.push(new TypeInformation(edmEntitySet.getEntityType(), false));
+    for (PathSegmentContext segment : ctx.vPs.vlPS.subList(1, ctx.vPs.vlPS.size())) {
+      segment.accept(this);
+    }
+    if (ctx.vPs.vCS != null) {
+      ctx.vPs.vCS.accept(this);
+    }
+    if (ctx.vALL != null) {
+      relativePath.addResourcePart((UriResourceImpl) ctx.vALL.accept(this));
+    }
+    if (ctx.vANY != null) {
+      relativePath.addResourcePart((UriResourceImpl) ctx.vANY.accept(this));
+    }
+
+    // reset context
+    context.contextTypes.pop();
+    context.contextUriInfo = backupUriInfoPath;
+
+    UriResourceEntitySetImpl entitySetResource = new UriResourceEntitySetImpl().setEntitSet(edmEntitySet);
+    EdmType startType = removeUriResourceStartingTypeFilterImpl(relativePath);
+    if (startType != null) {
+      entitySetResource.setEntryTypeFilter(startType);
+    }
+    UriInfoImpl uriInfoImplpath = new UriInfoImpl().setKind(UriInfoKind.resource);
+    uriInfoImplpath.addResourcePart(entitySetResource);
+    for (UriResource part : relativePath.getUriResourceParts()) {
+      uriInfoImplpath.addResourcePart((UriResourceImpl) part);
+    }
+
+    MemberImpl ret = new MemberImpl();
+    ret.setResourcePath(uriInfoImplpath);
+    return ret;
+  }
+
   @Override
   public ExpressionImpl visitMinDateTimeMethodCallExpr(final MinDateTimeMethodCallExprContext ctx) {
     return new MethodImpl()
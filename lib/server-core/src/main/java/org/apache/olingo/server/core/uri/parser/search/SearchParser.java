@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.uri.parser.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.olingo.server.api.uri.queryoption.SystemQueryOptionKind;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchBinaryOperatorKind;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchExpression;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchUnaryOperatorKind;
+import org.apache.olingo.server.core.uri.parser.UriParserSyntaxException;
+import org.apache.olingo.server.core.uri.queryoption.search.SearchBinaryImpl;
+import org.apache.olingo.server.core.uri.queryoption.search.SearchTermImpl;
+import org.apache.olingo.server.core.uri.queryoption.search.SearchUnaryImpl;
+
+/**
+ * <p>Parses the (percent-decoded) value of the system query option $search into a search-expression tree.</p>
+ * <p>Terms are words or phrases in double quotes; inside phrases, the backslash escapes double quotes
+ * and backslashes. Terms can be combined with the upper-case operators <code>NOT</code>, <code>AND</code>
+ * (also implicitly by juxtaposition), and <code>OR</code>, in descending order of precedence,
+ * and grouped with parentheses.</p>
+ */
+public class SearchParser {
+
+  private enum TokenKind {
+    OPEN, CLOSE, NOT, AND, OR, WORD, PHRASE
+  }
+
+  private static class Token {
+    private final TokenKind kind;
+    private final String text;
+
+    private Token(final TokenKind kind, final String text) {
+      this.kind = kind;
+      this.text = text;
+    }
+  }
+
+  private String value;
+  private List<Token> tokens;
+  private int index;
+
+  public SearchExpression parse(final String value) throws UriParserSyntaxException {
+    this.value = value;
+    tokens = tokenize(value);
+    index = 0;
+    if (tokens.isEmpty()) {
+      throw error();
+    }
+    final SearchExpression expression = parseOr();
+    if (index < tokens.size()) {
+      throw error();
+    }
+    return expression;
+  }
+
+  private SearchExpression parseOr() throws UriParserSyntaxException {
+    SearchExpression left = parseAnd();
+    while (next(TokenKind.OR)) {
+      index++;
+      left = new SearchBinaryImpl(left, SearchBinaryOperatorKind.OR, parseAnd());
+    }
+    return left;
+  }
+
+  private SearchExpression parseAnd() throws UriParserSyntaxException {
+    SearchExpression left = parseNot();
+    while (next(TokenKind.AND) || next(TokenKind.NOT) || next(TokenKind.OPEN)
+        || next(TokenKind.WORD) || next(TokenKind.PHRASE)) {
+      if (next(TokenKind.AND)) {
+        index++;
+      }
+      left = new SearchBinaryImpl(left, SearchBinaryOperatorKind.AND, parseNot());
+    }
+    return left;
+  }
+
+  private SearchExpression parseNot() throws UriParserSyntaxException {
+    if (next(TokenKind.NOT)) {
+      index++;
+      return new SearchUnaryImpl(SearchUnaryOperatorKind.NOT, parsePrimary());
+    }
+    return parsePrimary();
+  }
+
+  private SearchExpression parsePrimary() throws UriParserSyntaxException {
+    if (next(TokenKind.OPEN)) {
+      index++;
+      final SearchExpression expression = parseOr();
+      if (!next(TokenKind.CLOSE)) {
+        throw error();
+      }
+      index++;
+      return expression;
+    } else if (next(TokenKind.WORD) || next(TokenKind.PHRASE)) {
+      return new SearchTermImpl(tokens.get(index++).text);
+    } else {
+      throw error();
+    }
+  }
+
+  private boolean next(final TokenKind kind) {
+    return index < tokens.size() && tokens.get(index).kind == kind;
+  }
+
+  private List<Token> tokenize(final String value) throws UriParserSyntaxException {
+    List<Token> result = new ArrayList<Token>();
+    int position = 0;
+    while (position < value.length()) {
+      final char c = value.charAt(position);
+      if (Character.isWhitespace(c)) {
+        position++;
+      } else if (c == '(') {
+        result.add(new Token(TokenKind.OPEN, null));
+        position++;
+      } else if (c == ')') {
+        result.add(new Token(TokenKind.CLOSE, null));
+        position++;
+      } else if (c == '"') {
+        StringBuilder phrase = new StringBuilder();
+        position++;
+        while (position < value.length() && value.charAt(position) != '"') {
+          if (value.charAt(position) == '\\' && position + 1 < value.length()) {
+            position++;
+          }
+          phrase.append(value.charAt(position++));
+        }
+        if (position == value.length() || phrase.toString().trim().isEmpty()) {
+          throw error();
+        }
+        result.add(new Token(TokenKind.PHRASE, phrase.toString()));
+        position++;
+      } else {
+        final int start = position;
+        while (position < value.length() && !Character.isWhitespace(value.charAt(position))
+            && "()\"".indexOf(value.charAt(position)) < 0) {
+          position++;
+        }
+        final String word = value.substring(start, position);
+        result.add("NOT".equals(word) ? new Token(TokenKind.NOT, word) :
+            "AND".equals(word) ? new Token(TokenKind.AND, word) :
+                "OR".equals(word) ? new Token(TokenKind.OR, word) :
+                    new Token(TokenKind.WORD, word));
+      }
+    }
+    return result;
+  }
+
+  private UriParserSyntaxException error() {
+    return new UriParserSyntaxException("Illegal value of $search option!",
+        UriParserSyntaxException.MessageKeys.WRONG_VALUE_FOR_SYSTEM_QUERY_OPTION,
+        SystemQueryOptionKind.SEARCH.toString(), value);
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.olingo.commons.api.http.HttpHeader;
+import org.apache.olingo.commons.api.http.HttpMethod;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.ODataRequest;
+import org.apache.olingo.server.api.ODataResponse;
+import org.junit.After;
+import org.junit.Test;
+
+public class AsyncRequestManagerImplTest {
+
+  private static final String BASE_URI = "http://localhost/service";
+
+  private AsyncRequestManagerImpl manager;
+
+  @After
+  public void shutdown() {
+    if (manager != null) {
+      manager.shutdown();
+    }
+  }
+
+  @Test
+  public void preference() {
+    assertTrue(AsyncRequestManagerImpl.isRespondAsyncPreferred(createRequest("respond-async")));
+    assertTrue(AsyncRequestManagerImpl.isRespondAsyncPreferred(createRequest("return=minimal, Respond-Async")));
+    assertTrue(AsyncRequestManagerImpl.isRespondAsyncPreferred(createRequest("respond-async; x=y")));
+    assertFalse(AsyncRequestManagerImpl.isRespondAsyncPreferred(createRequest("wait=10")));
+    assertFalse(AsyncRequestManagerImpl.isRespondAsyncPreferred(createRequest(null)));
+  }
+
+  @Test
+  public void synchronousWithoutPreference() throws Exception {
+    manager = new AsyncRequestManagerImpl(1, 10, 60000);
+    assertNull(manager.handle(new TestHandler(content("abc"), null), createRequest(null)));
+  }
+
+  @Test
+  public void acceptAndRetrieve() throws Exception {
+    manager = new AsyncRequestManagerImpl(2, 10, 60000);
+    final ODataResponse accepted =
+        manager.handle(new TestHandler(content("abc"), null), createRequest("respond-async"));
+    assertEquals(HttpStatusCode.ACCEPTED.getStatusCode(), accepted.getStatusCode());
+    assertEquals(AsyncRequestManagerImpl.RESPOND_ASYNC, accepted.getHeaders().get(HttpHeader.PREFERENCE_APPLIED));
+    assertNotNull(accepted.getHeaders().get(HttpHeader.RETRY_AFTER));
+    final String location = accepted.getHeaders().get(HttpHeader.LOCATION);
+    assertTrue(location.startsWith(BASE_URI + AsyncRequestManagerImpl.MONITOR_PATH));
+
+    final ODataResponse result = awaitResult(location);
+    assertEquals("application/http", result.getHeaders().get(HttpHeader.CONTENT_TYPE));
+    final String message = new String(read(result.getContent()), "UTF-8");
+    assertTrue(message.startsWith("HTTP/1.1 201 Created\r\n"));
+    assertTrue(message.contains("Content-Length: 3\r\n"));
+    assertTrue(message.endsWith("\r\n\r\nabc"));
+
+    // The result can be retrieved only once.
+    assertNotFound(location, HttpMethod.GET);
+  }
+
+  @Test
+  public void largeResult() throws Exception {
+    manager = new AsyncRequestManagerImpl(1, 10, 60000);
+    final byte[] content = new byte[3 * 1024 * 1024];
+    Arrays.fill(content, (byte) 'x');
+    final String location = manager.handle(new TestHandler(content, null), createRequest("respond-async"))
+        .getHeaders().get(HttpHeader.LOCATION);
+
+    final byte[] message = read(awaitResult(location).getContent());
+    assertTrue(message.length > content.length);
+    assertEquals('x', message[message.length - 1]);
+  }
+
+  @Test
+  public void cancel() throws Exception {
+    manager = new AsyncRequestManagerImpl(1, 10, 60000);
+    final CountDownLatch latch = new CountDownLatch(1);
+    final String location = manager.handle(new TestHandler(content("abc"), latch), createRequest("respond-async"))
+        .getHeaders().get(HttpHeader.LOCATION);
+
+    assertEquals(HttpStatusCode.ACCEPTED.getStatusCode(), monitor(location, HttpMethod.GET).getStatusCode());
+    assertEquals(1, manager.getPendingCount());
+    assertEquals(HttpStatusCode.NO_CONTENT.getStatusCode(), monitor(location, HttpMethod.DELETE).getStatusCode());
+    assertEquals(0, manager.getPendingCount());
+    assertNotFound(location, HttpMethod.GET);
+    latch.countDown();
+  }
+
+  @Test
+  public void synchronousAtCapacity() throws Exception {
+    manager = new AsyncRequestManagerImpl(1, 1, 60000);
+    final CountDownLatch latch = new CountDownLatch(1);
+    assertNotNull(manager.handle(new TestHandler(content("abc"), latch), createRequest("respond-async")));
+    assertNull(manager.handle(new TestHandler(content("abc"), null), createRequest("respond-async")));
+    latch.countDown();
+  }
+
+  @Test
+  public void expiredResult() throws Exception {
+    manager = new AsyncRequestManagerImpl(1, 10, 0);
+    final String location = manager.handle(new TestHandler(content("abc"), null), createRequest("respond-async"))
+        .getHeaders().get(HttpHeader.LOCATION);
+    while (manager.getPendingCount() > 0) {
+      Thread.sleep(10);
+    }
+    assertNotFound(location, HttpMethod.GET);
+    assertEquals(0, manager.getCompletedCount());
+  }
+
+  private ODataResponse awaitResult(final String location) throws Exception {
+    for (int i = 0; i < 500; i++) {
+      final ODataResponse response = monitor(location, HttpMethod.GET);
+      if (response.getStatusCode() != HttpStatusCode.ACCEPTED.getStatusCode()) {
+        assertEquals(HttpStatusCode.OK.getStatusCode(), response.getStatusCode());
+        return response;
+      }
+      Thread.sleep(10);
+    }
+    fail("request has not finished");
+    return null;
+  }
+
+  private void assertNotFound(final String location, final HttpMethod method) throws Exception {
+    try {
+      monitor(location, method);
+      fail("Expected exception not thrown");
+    } catch (final ODataHandlerException e) {
+      assertEquals(ODataHandlerException.MessageKeys.ASYNC_REQUEST_NOT_FOUND, e.getMessageKey());
+    }
+  }
+
+  private ODataResponse monitor(final String location, final HttpMethod method) throws Exception {
+    final ODataRequest request = new ODataRequest();
+    request.setMethod(method);
+    request.setRawBaseUri(BASE_URI);
+    request.setRawODataPath(location.substring(BASE_URI.length()));
+    return manager.handle(new TestHandler(null, null), request);
+  }
+
+  private static ODataRequest createRequest(final String prefer) {
+    final ODataRequest request = new ODataRequest();
+    request.setMethod(HttpMethod.POST);
+    request.setRawBaseUri(BASE_URI);
+    request.setRawODataPath("/ESAllPrim");
+    request.setBody(new ByteArrayInputStream(new byte[] { 1, 2, 3 }));
+    if (prefer != null) {
+      request.addHeader(HttpHeader.PREFER, Arrays.asList(prefer));
+    }
+    return request;
+  }
+
+  private static byte[] content(final String content) throws IOException {
+    return content.getBytes("UTF-8");
+  }
+
+  private static byte[] read(final InputStream input) throws IOException {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[4096];
+    int n;
+    while ((n = input.read(buffer)) != -1) {
+      output.write(buffer, 0, n);
+    }
+    input.close();
+    return output.toByteArray();
+  }
+
+  private static class TestHandler extends ODataHandler {
+    private final byte[] content;
+    private final CountDownLatch latch;
+
+    public TestHandler(final byte[] content, final CountDownLatch latch) {
+      super(null, null);
+      this.content = content;
+      this.latch = latch;
+    }
+
+    @Override
+    public ODataResponse process(final ODataRequest request) {
+      try {
+        assertEquals(3, read(request.getBody()).length);
+        if (latch != null) {
+          latch.await();
+        }
+      } catch (final IOException e) {
+        throw new RuntimeException(e);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      final ODataResponse response = new ODataResponse();
+      response.setStatusCode(HttpStatusCode.CREATED.getStatusCode());
+      response.setHeader(HttpHeader.CONTENT_TYPE, "text/plain");
+      response.setContent(new ByteArrayInputStream(content));
+      return response;
+    }
+  }
+}
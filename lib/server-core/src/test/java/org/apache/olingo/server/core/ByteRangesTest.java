@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import org.apache.olingo.commons.api.http.HttpHeader;
+import org.apache.olingo.commons.api.http.HttpMethod;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.ODataRequest;
+import org.apache.olingo.server.api.ODataResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ByteRangesTest {
+
+  private static final byte[] CONTENT = createContent();
+
+  private File file;
+
+  @Before
+  public void createFile() throws IOException {
+    file = File.createTempFile("olingo", ".bin");
+    final FileOutputStream output = new FileOutputStream(file);
+    try {
+      output.write(CONTENT);
+    } finally {
+      output.close();
+    }
+  }
+
+  @After
+  public void deleteFile() {
+    file.delete();
+  }
+
+  @Test
+  public void complete() throws Exception {
+    final ODataResponse response = createResponse();
+    ByteRanges.apply(HttpMethod.GET.name(), null, null, response);
+    assertEquals(HttpStatusCode.OK.getStatusCode(), response.getStatusCode());
+    assertEquals("bytes", response.getHeaders().get(HttpHeader.ACCEPT_RANGES));
+    assertEquals(Integer.toString(CONTENT.length), response.getHeaders().get(HttpHeader.CONTENT_LENGTH));
+    assertArrayEquals(CONTENT, transfer(response));
+  }
+
+  @Test
+  public void range() throws Exception {
+    ODataResponse response = createResponse();
+    ByteRanges.apply(HttpMethod.GET.name(), "bytes=10-19", null, response);
+    assertEquals(HttpStatusCode.PARTIAL_CONTENT.getStatusCode(), response.getStatusCode());
+    assertEquals("bytes 10-19/1000", response.getHeaders().get(HttpHeader.CONTENT_RANGE));
+    assertEquals("10", response.getHeaders().get(HttpHeader.CONTENT_LENGTH));
+    assertArrayEquals(Arrays.copyOfRange(CONTENT, 10, 20), transfer(response));
+
+    response = createResponse();
+    ByteRanges.apply(HttpMethod.GET.name(), "bytes=990-", null, response);
+    assertEquals("bytes 990-999/1000", response.getHeaders().get(HttpHeader.CONTENT_RANGE));
+    assertArrayEquals(Arrays.copyOfRange(CONTENT, 990, 1000), read(response.getContent()));
+
+    response = createResponse();
+    ByteRanges.apply(HttpMethod.GET.name(), "bytes=-5", null, response);
+    assertEquals("bytes 995-999/1000", response.getHeaders().get(HttpHeader.CONTENT_RANGE));
+    assertArrayEquals(Arrays.copyOfRange(CONTENT, 995, 1000), transfer(response));
+
+    response = createResponse();
+    ByteRanges.apply(HttpMethod.GET.name(), "bytes=500-5000", null, response);
+    assertEquals("bytes 500-999/1000", response.getHeaders().get(HttpHeader.CONTENT_RANGE));
+    assertEquals("500", response.getHeaders().get(HttpHeader.CONTENT_LENGTH));
+  }
+
+  @Test
+  public void ignoredRange() throws Exception {
+    for (final String range : new String[] { "bytes=1-2, 5-6", "bytes=5-1", "lines=1-2", "bytes=x-" }) {
+      final ODataResponse response = createResponse();
+      ByteRanges.apply(HttpMethod.GET.name(), range, null, response);
+      assertEquals(range, HttpStatusCode.OK.getStatusCode(), response.getStatusCode());
+      assertNull(range, response.getHeaders().get(HttpHeader.CONTENT_RANGE));
+      assertArrayEquals(CONTENT, transfer(response));
+    }
+
+    final ODataResponse response = createResponse();
+    ByteRanges.apply(HttpMethod.POST.name(), "bytes=0-1", null, response);
+    assertEquals(HttpStatusCode.OK.getStatusCode(), response.getStatusCode());
+  }
+
+  @Test
+  public void unsatisfiableRange() throws Exception {
+    final ODataResponse response = createResponse();
+    final FileChannel channel = response.getContentChannel();
+    ByteRanges.apply(HttpMethod.GET.name(), "bytes=1000-", null, response);
+    assertEquals(HttpStatusCode.REQUESTED_RANGE_NOT_SATISFIABLE.getStatusCode(), response.getStatusCode());
+    assertEquals("bytes */1000", response.getHeaders().get(HttpHeader.CONTENT_RANGE));
+    assertNull(response.getContent());
+    assertFalse(channel.isOpen());
+  }
+
+  @Test
+  public void ifRange() throws Exception {
+    ODataResponse response = createResponse();
+    response.setHeader(HttpHeader.ETAG, "\"1\"");
+    ByteRanges.apply(HttpMethod.GET.name(), "bytes=0-0", "\"1\"", response);
+    assertEquals(HttpStatusCode.PARTIAL_CONTENT.getStatusCode(), response.getStatusCode());
+
+    response = createResponse();
+    response.setHeader(HttpHeader.ETAG, "\"2\"");
+    ByteRanges.apply(HttpMethod.GET.name(), "bytes=0-0", "\"1\"", response);
+    assertEquals(HttpStatusCode.OK.getStatusCode(), response.getStatusCode());
+
+    response = createResponse();
+    response.setHeader(HttpHeader.ETAG, "W/\"1\"");
+    ByteRanges.apply(HttpMethod.GET.name(), "bytes=0-0", "W/\"1\"", response);
+    assertEquals(HttpStatusCode.OK.getStatusCode(), response.getStatusCode());
+
+    response = createResponse();
+    response.setHeader(HttpHeader.LAST_MODIFIED, "Sun, 06 Nov 1994 08:49:37 GMT");
+    ByteRanges.apply(HttpMethod.GET.name(), "bytes=0-0", "Sun, 06 Nov 1994 08:49:37 GMT", response);
+    assertEquals(HttpStatusCode.PARTIAL_CONTENT.getStatusCode(), response.getStatusCode());
+  }
+
+  @Test
+  public void transferBody() throws Exception {
+    final ODataRequest request = new ODataRequest();
+    request.setBody(new ByteArrayInputStream(CONTENT));
+    final RandomAccessFile target = new RandomAccessFile(file, "rw");
+    try {
+      assertEquals(CONTENT.length, request.transferBody(target.getChannel(), 10));
+      assertEquals(CONTENT.length + 10, target.length());
+      final byte[] written = new byte[CONTENT.length];
+      target.seek(10);
+      target.readFully(written);
+      assertArrayEquals(CONTENT, written);
+    } finally {
+      target.close();
+    }
+  }
+
+  private ODataResponse createResponse() throws IOException {
+    final FileChannel channel = new RandomAccessFile(file, "r").getChannel();
+    final ODataResponse response = new ODataResponse();
+    response.setStatusCode(HttpStatusCode.OK.getStatusCode());
+    response.setContent(channel, 0, channel.size());
+    return response;
+  }
+
+  private static byte[] transfer(final ODataResponse response) throws IOException {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ODataHttpHandlerImpl.transfer(response.getContentChannel(), response.getContentPosition(),
+        response.getContentLength(), output);
+    response.getContentChannel().close();
+    return output.toByteArray();
+  }
+
+  private static byte[] read(final InputStream input) throws IOException {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[64];
+    int n;
+    while ((n = input.read(buffer)) != -1) {
+      output.write(buffer, 0, n);
+    }
+    input.close();
+    return output.toByteArray();
+  }
+
+  private static byte[] createContent() {
+    final byte[] content = new byte[1000];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) (i * 31);
+    }
+    return content;
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.olingo.commons.api.format.ContentType;
+import org.apache.olingo.commons.api.http.HttpHeader;
+import org.apache.olingo.commons.api.http.HttpMethod;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.ODataRequest;
+import org.apache.olingo.server.api.ODataResponse;
+import org.junit.Test;
+
+public class ContentCompressionTest {
+
+  private static final byte[] CONTENT = createContent();
+
+  @Test
+  public void negotiate() {
+    assertNull(ContentCompression.negotiate(null));
+    assertNull(ContentCompression.negotiate(""));
+    assertNull(ContentCompression.negotiate("identity"));
+    assertNull(ContentCompression.negotiate("br"));
+    assertEquals(ContentCompression.GZIP, ContentCompression.negotiate("gzip"));
+    assertEquals(ContentCompression.GZIP, ContentCompression.negotiate("deflate, gzip"));
+    assertEquals(ContentCompression.GZIP, ContentCompression.negotiate("*"));
+    assertEquals(ContentCompression.DEFLATE, ContentCompression.negotiate("deflate"));
+    assertEquals(ContentCompression.DEFLATE, ContentCompression.negotiate("gzip;q=0.5, deflate"));
+    assertEquals(ContentCompression.DEFLATE, ContentCompression.negotiate("gzip;q=0, *"));
+    assertNull(ContentCompression.negotiate("gzip;q=0, deflate;q=0"));
+    assertNull(ContentCompression.negotiate("*;q=0"));
+  }
+
+  @Test
+  public void decode() throws Exception {
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    final GZIPOutputStream output = new GZIPOutputStream(compressed);
+    output.write(CONTENT);
+    output.close();
+
+    assertArrayEquals(CONTENT, read(ContentCompression.decode(
+        new ByteArrayInputStream(compressed.toByteArray()), "gzip")));
+    assertArrayEquals(CONTENT, read(ContentCompression.decode(new ByteArrayInputStream(CONTENT), null)));
+    assertArrayEquals(CONTENT, read(ContentCompression.decode(new ByteArrayInputStream(CONTENT), "identity")));
+    try {
+      ContentCompression.decode(new ByteArrayInputStream(CONTENT), "br");
+      fail("Expected exception not thrown.");
+    } catch (final ODataHandlerException e) {
+      assertEquals(ODataHandlerException.MessageKeys.UNSUPPORTED_CONTENT_ENCODING, e.getMessageKey());
+    }
+  }
+
+  @Test
+  public void compressGzip() throws Exception {
+    final ContentCompression compression = new ContentCompression(6, 100);
+    final ODataResponse response = createResponse(CONTENT, ContentType.APPLICATION_JSON);
+    final String encoding = compression.select("gzip, deflate", response);
+    assertEquals(ContentCompression.GZIP, encoding);
+    assertEquals(HttpHeader.ACCEPT_ENCODING, response.getHeaders().get(HttpHeader.VARY));
+
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    final OutputStream output = compression.compress(compressed, encoding);
+    ODataHttpHandlerImpl.copy(response.getContent(), output);
+    output.close();
+
+    assertTrue(compressed.size() < CONTENT.length);
+    assertArrayEquals(CONTENT, read(new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))));
+  }
+
+  @Test
+  public void compressDeflate() throws Exception {
+    final ContentCompression compression = new ContentCompression(-1, 0);
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    final OutputStream output = compression.compress(compressed, ContentCompression.DEFLATE);
+    output.write(CONTENT);
+    output.close();
+
+    assertArrayEquals(CONTENT, read(ContentCompression.decode(
+        new ByteArrayInputStream(compressed.toByteArray()), "deflate")));
+  }
+
+  @Test
+  public void belowMinimumSize() throws Exception {
+    final ContentCompression compression = new ContentCompression(6, CONTENT.length + 1);
+    final ODataResponse response = createResponse(CONTENT, ContentType.APPLICATION_XML);
+    assertNull(compression.select("gzip", response));
+    // the content read ahead is still available
+    assertArrayEquals(CONTENT, read(response.getContent()));
+  }
+
+  @Test
+  public void notCompressible() throws Exception {
+    final ContentCompression compression = new ContentCompression(6, 0);
+    final ODataResponse image = createResponse(CONTENT, ContentType.create("image/png"));
+    assertNull(compression.select("gzip", image));
+    assertNull(image.getHeaders().get(HttpHeader.VARY));
+
+    final ODataResponse encoded = createResponse(CONTENT, ContentType.APPLICATION_JSON);
+    encoded.setHeader(HttpHeader.CONTENT_ENCODING, "gzip");
+    assertNull(compression.select("gzip", encoded));
+
+    final ODataResponse noContent = new ODataResponse();
+    noContent.setStatusCode(HttpStatusCode.NO_CONTENT.getStatusCode());
+    assertNull(compression.select("gzip", noContent));
+  }
+
+  @Test
+  public void metadataVariant() throws Exception {
+    final ContentCompression compression = new ContentCompression(6, 0);
+    final ODataRequest request = createMetadataRequest("gzip");
+    assertNull(compression.getMetadataVariant(request));
+
+    final ODataResponse response = createResponse(CONTENT, ContentType.APPLICATION_XML);
+    response.setHeader(HttpHeader.CONTENT_LENGTH, Integer.toString(CONTENT.length));
+    final ODataResponse kept = compression.keepMetadataVariant(request, response);
+    assertEquals(ContentCompression.GZIP, kept.getHeaders().get(HttpHeader.CONTENT_ENCODING));
+    assertEquals(ContentType.APPLICATION_XML.toContentTypeString(), kept.getHeaders().get(HttpHeader.CONTENT_TYPE));
+    final byte[] compressed = read(kept.getContent());
+    assertEquals(Integer.toString(compressed.length), kept.getHeaders().get(HttpHeader.CONTENT_LENGTH));
+    assertArrayEquals(CONTENT, read(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+
+    final ODataResponse variant = compression.getMetadataVariant(createMetadataRequest("gzip"));
+    assertNotNull(variant);
+    assertArrayEquals(compressed, read(variant.getContent()));
+    // already compressed: written as it is
+    assertNull(compression.select("gzip", variant));
+
+    assertNull(compression.getMetadataVariant(createMetadataRequest("deflate")));
+    assertNull(compression.getMetadataVariant(createMetadataRequest(null)));
+    final ODataResponse uncompressed = createResponse(CONTENT, ContentType.APPLICATION_XML);
+    assertSame(uncompressed, compression.keepMetadataVariant(createMetadataRequest(null), uncompressed));
+  }
+
+  private static ODataRequest createMetadataRequest(final String acceptEncoding) {
+    final ODataRequest request = new ODataRequest();
+    request.setMethod(HttpMethod.GET);
+    request.setRawODataPath("/$metadata");
+    if (acceptEncoding != null) {
+      request.addHeader(HttpHeader.ACCEPT_ENCODING, Arrays.asList(acceptEncoding));
+    }
+    return request;
+  }
+
+  private static ODataResponse createResponse(final byte[] content, final ContentType contentType) {
+    final ODataResponse response = new ODataResponse();
+    response.setStatusCode(HttpStatusCode.OK.getStatusCode());
+    response.setHeader(HttpHeader.CONTENT_TYPE, contentType.toContentTypeString());
+    response.setContent(new ByteArrayInputStream(content));
+    return response;
+  }
+
+  private static byte[] read(final InputStream input) throws IOException {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ODataHttpHandlerImpl.copy(input, output);
+    return output.toByteArray();
+  }
+
+  private static byte[] createContent() {
+    final StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      content.append("{\"PropertyInt16\":").append(i).append(",\"PropertyString\":\"Test String\"},");
+    }
+    return content.toString().getBytes();
+  }
+}
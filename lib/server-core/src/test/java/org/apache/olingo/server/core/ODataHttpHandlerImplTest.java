@@ -26,8 +26,11 @@ import static org.mockito.Mockito.when;
 import javax.servlet.http.HttpServletRequest;
 
 import org.apache.olingo.commons.api.http.HttpMethod;
+import org.apache.olingo.server.api.AsyncRequestManager;
+import org.apache.olingo.server.api.OData;
 import org.apache.olingo.server.api.ODataRequest;
 import org.apache.olingo.server.api.ODataTranslatedException;
+import org.apache.olingo.server.api.ServiceMetadata;
 import org.junit.Test;
 
 public class ODataHttpHandlerImplTest {
@@ -168,4 +171,23 @@ public class ODataHttpHandlerImplTest {
       assertEquals(rawServiceResolutionUri, odr.getRawServiceResolutionUri());
     }
   }
+
+  @Test
+  public void registerAsyncRequestManager() {
+    final ODataHttpHandlerImpl handler = new ODataHttpHandlerImpl(OData.newInstance(), mock(ServiceMetadata.class));
+    final AsyncRequestManager manager = new AsyncRequestManagerImpl(1, 1, 1000);
+    try {
+      handler.register(manager);
+      handler.register((AsyncRequestManagerImpl) null);
+    } finally {
+      manager.shutdown();
+    }
+
+    try {
+      handler.register(mock(AsyncRequestManager.class));
+      fail("Expected an IllegalArgumentException");
+    } catch (final IllegalArgumentException e) {
+      // expected: only managers created by OData#createAsyncRequestManager can be registered
+    }
+  }
 }
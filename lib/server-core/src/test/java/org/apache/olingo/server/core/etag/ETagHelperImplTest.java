@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.etag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.server.api.etag.ETagHelper;
+import org.junit.Test;
+
+public class ETagHelperImplTest {
+
+  private final ETagHelper helper = new ETagHelperImpl();
+
+  @Test
+  public void weakETag() {
+    assertEquals("W/\"42\"", helper.createWeakETag("42"));
+  }
+
+  @Test
+  public void collectionETag() {
+    final String eTag = helper.createWeakETag(Arrays.asList("W/\"1\"", "\"2\""));
+    assertTrue(eTag.startsWith("W/\"2-"));
+    assertEquals(eTag, helper.createWeakETag(Arrays.asList("\"1\"", "W/\"2\"")));
+    assertNotEquals(eTag, helper.createWeakETag(Arrays.asList("\"2\"", "\"1\"")));
+    assertNotEquals(eTag, helper.createWeakETag(Arrays.asList("\"1\"", "\"3\"")));
+    assertNotEquals(helper.createWeakETag(Arrays.asList("ab", "c")), helper.createWeakETag(Arrays.asList("a", "bc")));
+
+    EntityCollection entityCollection = new EntityCollection();
+    Entity entity = new Entity();
+    entity.setETag("W/\"1\"");
+    entityCollection.getEntities().add(entity);
+    entity = new Entity();
+    entity.setETag("W/\"2\"");
+    entityCollection.getEntities().add(entity);
+    assertEquals(eTag, helper.createWeakETag(entityCollection));
+
+    entityCollection.getEntities().add(new Entity());
+    assertNull(helper.createWeakETag(entityCollection));
+  }
+
+  @Test
+  public void matches() {
+    assertTrue(helper.matches("W/\"1\"", "*"));
+    assertTrue(helper.matches("W/\"1\"", "W/\"1\""));
+    assertTrue(helper.matches("W/\"1\"", "\"1\""));
+    assertTrue(helper.matches("\"1\"", "W/\"1\""));
+    assertTrue(helper.matches("\"2\"", "\"1\", W/\"2\""));
+    assertTrue(helper.matches("\"a,b\"", "\"x\",\"a,b\""));
+    assertTrue(helper.matches("\"1\"", "1"));
+    assertFalse(helper.matches("\"1\"", "\"2\", \"3\""));
+    assertFalse(helper.matches("\"1\"", "\"10\""));
+    assertFalse(helper.matches("\"1\"", "\"1"));
+    assertFalse(helper.matches(null, "*"));
+    assertFalse(helper.matches("\"1\"", null));
+  }
+}
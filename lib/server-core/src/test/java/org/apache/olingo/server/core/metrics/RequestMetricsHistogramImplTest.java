@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.olingo.commons.api.http.HttpMethod;
+import org.apache.olingo.server.api.metrics.RequestEvent;
+import org.apache.olingo.server.api.metrics.RequestMetricsHistogram;
+import org.apache.olingo.server.api.metrics.RequestMetricsHistogram.Histogram;
+import org.apache.olingo.server.api.metrics.RequestPhase;
+import org.apache.olingo.server.api.uri.UriInfoKind;
+import org.apache.olingo.server.api.uri.UriResourceKind;
+import org.junit.Test;
+
+public class RequestMetricsHistogramImplTest {
+
+  @Test
+  public void buckets() {
+    int previous = -1;
+    for (long value = 0; value < 100000; value++) {
+      final int bucket = RequestMetricsHistogramImpl.bucket(value);
+      assertTrue(bucket == previous || bucket == previous + 1);
+      assertTrue(value <= RequestMetricsHistogramImpl.upperBound(bucket));
+      assertTrue(value > RequestMetricsHistogramImpl.upperBound(bucket - 1) || bucket == 0);
+      previous = bucket;
+    }
+    final int last = RequestMetricsHistogramImpl.bucket(Long.MAX_VALUE);
+    assertEquals(Long.MAX_VALUE, RequestMetricsHistogramImpl.upperBound(last));
+    assertEquals(last, RequestMetricsHistogramImpl.bucket(Long.MAX_VALUE - 1));
+  }
+
+  @Test
+  public void percentiles() {
+    final RequestMetricsHistogram metrics = new RequestMetricsHistogramImpl();
+    for (int i = 1; i <= 1000; i++) {
+      metrics.record(event(RequestPhase.PROCESSING, i * 1000L, "ESAllPrim"));
+    }
+    metrics.record(event(RequestPhase.OUTPUT, 10, null));
+
+    final Histogram histogram = metrics.getHistogram(RequestPhase.PROCESSING);
+    assertEquals(1000, histogram.getCount());
+    assertEquals(1000000, histogram.getMaxNanos());
+    assertEquals(500500000, histogram.getTotalNanos());
+    assertEquals(1000000, histogram.getPercentileNanos(100));
+    assertWithin(500000, histogram.getPercentileNanos(50));
+    assertWithin(990000, histogram.getPercentileNanos(99));
+    assertWithin(1000, histogram.getPercentileNanos(0));
+    assertEquals(1000, metrics.getHistogram(RequestPhase.PROCESSING, "ESAllPrim").getCount());
+    assertEquals(0, metrics.getHistogram(RequestPhase.PROCESSING, "ESTwoPrim").getCount());
+    assertEquals(0, metrics.getHistogram(RequestPhase.PROCESSING, "ESTwoPrim").getPercentileNanos(50));
+
+    assertEquals(1, metrics.getHistogram(RequestPhase.OUTPUT).getCount());
+    assertEquals(100, metrics.getHistogram(RequestPhase.OUTPUT).getBytes());
+    assertEquals(0, metrics.getHistogram(RequestPhase.SERIALIZATION).getCount());
+
+    metrics.reset();
+    assertEquals(0, metrics.getHistogram(RequestPhase.PROCESSING).getCount());
+    assertEquals(0, metrics.getHistogram(RequestPhase.PROCESSING, "ESAllPrim").getCount());
+  }
+
+  private static void assertWithin(final long expected, final long actual) {
+    assertTrue(actual >= expected);
+    assertTrue(actual <= expected + expected / 8);
+  }
+
+  private static RequestEvent event(final RequestPhase phase, final long nanos, final String entitySetName) {
+    return new RequestEvent(phase, HttpMethod.GET, UriInfoKind.resource, UriResourceKind.entitySet,
+        entitySetName, nanos, phase == RequestPhase.OUTPUT ? 100 : -1);
+  }
+}
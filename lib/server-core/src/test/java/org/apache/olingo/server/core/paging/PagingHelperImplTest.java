@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.paging;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.UUID;
+
+import org.apache.olingo.commons.api.http.HttpHeader;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.ODataRequest;
+import org.apache.olingo.server.api.paging.PagingHelper;
+import org.junit.Test;
+
+public class PagingHelperImplTest {
+
+  private final PagingHelper helper = new PagingHelperImpl("secret".getBytes());
+
+  @Test
+  public void roundTrip() throws Exception {
+    Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("GMT+01:30"));
+    calendar.setTimeInMillis(1234567890123L);
+    Timestamp timestamp = new Timestamp(1234567890000L);
+    timestamp.setNanos(123456789);
+    final UUID uuid = UUID.randomUUID();
+    final List<Object> sortKey = Arrays.<Object> asList(null, true, (byte) -1, (short) 32000, 42, Long.MIN_VALUE,
+        1.5F, -0.25, new BigDecimal("-123.4567890123456789"), new BigInteger("123456789012345678901234567890"),
+        "Ünïcödé & more", uuid, calendar, timestamp);
+
+    final List<Object> result = helper.parseSkipToken(helper.createSkipToken(sortKey));
+    assertEquals(sortKey.size(), result.size());
+    assertEquals(sortKey.subList(0, 12), result.subList(0, 12));
+    final Calendar resultCalendar = (Calendar) result.get(12);
+    assertEquals(calendar.getTimeInMillis(), resultCalendar.getTimeInMillis());
+    assertEquals(calendar.getTimeZone().getRawOffset(), resultCalendar.getTimeZone().getRawOffset());
+    assertEquals(timestamp, result.get(13));
+
+    final byte[] binary = new byte[] { 0, 1, -1 };
+    assertArrayEquals(binary,
+        (byte[]) helper.parseSkipToken(helper.createSkipToken(Collections.singletonList(binary))).get(0));
+    assertTrue(helper.parseSkipToken(helper.createSkipToken(Collections.emptyList())).isEmpty());
+  }
+
+  @Test
+  public void tokenIsUrlSafe() {
+    final String token = helper.createSkipToken(Arrays.asList("?&=/+ ", 4711));
+    assertTrue(token.matches("[A-Za-z0-9_-]+"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unsupportedValue() {
+    helper.createSkipToken(Collections.singletonList(new Object()));
+  }
+
+  @Test
+  public void invalidTokens() {
+    final String token = helper.createSkipToken(Arrays.asList("a", 1));
+    final char last = token.charAt(token.length() - 1);
+    assertInvalid(token.substring(0, token.length() - 1) + (last == 'A' ? 'B' : 'A'));
+    assertInvalid(token.substring(0, 10));
+    assertInvalid("");
+    assertInvalid("1");
+    assertInvalid(null);
+    assertInvalid(new PagingHelperImpl("other".getBytes()).createSkipToken(Arrays.asList("a", 1)));
+  }
+
+  private void assertInvalid(final String token) {
+    try {
+      helper.parseSkipToken(token);
+      fail("Expected an exception for " + token);
+    } catch (final ODataApplicationException e) {
+      assertEquals(HttpStatusCode.BAD_REQUEST.getStatusCode(), e.getStatusCode());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void missingSecret() {
+    new PagingHelperImpl(new byte[0]);
+  }
+
+  @Test
+  public void preferredMaxPageSize() {
+    assertNull(helper.getPreferredMaxPageSize(new ODataRequest()));
+    assertEquals(Integer.valueOf(5), helper.getPreferredMaxPageSize(request("odata.maxpagesize=5")));
+    assertEquals(Integer.valueOf(7),
+        helper.getPreferredMaxPageSize(request("respond-async, odata.MaxPageSize = 7; foo=bar")));
+    assertNull(helper.getPreferredMaxPageSize(request("odata.maxpagesize=abc")));
+    assertNull(helper.getPreferredMaxPageSize(request("odata.maxpagesize=0")));
+    assertNull(helper.getPreferredMaxPageSize(request("return=minimal")));
+  }
+
+  private ODataRequest request(final String prefer) {
+    ODataRequest request = new ODataRequest();
+    request.addHeader(HttpHeader.PREFER, Collections.singletonList(prefer));
+    return request;
+  }
+
+  @Test
+  public void nextLink() {
+    ODataRequest request = new ODataRequest();
+    request.setRawBaseUri("http://localhost/service.svc");
+    request.setRawODataPath("/ESServerSidePaging");
+    request.setRawQueryPath("$filter=PropertyInt16%20gt%2010&%24skiptoken=old&$count=true");
+    assertEquals("http://localhost/service.svc/ESServerSidePaging?$filter=PropertyInt16%20gt%2010&$count=true"
+        + "&%24skiptoken=abc", helper.createNextLink(request, "abc").toASCIIString());
+
+    request.setRawQueryPath(null);
+    final String link = helper.createNextLink(request, "abc").toASCIIString();
+    assertEquals("http://localhost/service.svc/ESServerSidePaging?%24skiptoken=abc", link);
+    assertFalse(link.contains("&"));
+  }
+}
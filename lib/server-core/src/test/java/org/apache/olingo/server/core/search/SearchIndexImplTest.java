@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.search;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.data.ValueType;
+import org.apache.olingo.server.api.search.SearchIndex;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchExpression;
+import org.apache.olingo.server.core.uri.parser.search.SearchParser;
+import org.junit.Test;
+
+public class SearchIndexImplTest {
+
+  @Test
+  public void tokenize() {
+    assertEquals(Arrays.asList("hello", "world", "42"), SearchIndexImpl.tokenize("Hello, World! -42-"));
+    assertEquals(Arrays.asList("über", "straße"), SearchIndexImpl.tokenize("Über Straße"));
+    assertTrue(SearchIndexImpl.tokenize(" -- ").isEmpty());
+  }
+
+  @Test
+  public void postingList() {
+    PostingList list = new PostingList();
+    assertTrue(list.add(3));
+    assertTrue(list.add(200));
+    assertTrue(list.add(100000));
+    assertTrue(list.add(1));
+    assertFalse(list.add(200));
+    assertArrayEquals(new int[] { 1, 3, 200, 100000 }, list.toArray());
+    assertEquals(7, list.getEncodedLength());
+    assertTrue(list.remove(3));
+    assertFalse(list.remove(3));
+    assertArrayEquals(new int[] { 1, 200, 100000 }, list.toArray());
+
+    final int[] left = { 1, 3, 5, 7 };
+    final int[] right = { 3, 4, 5 };
+    assertArrayEquals(new int[] { 3, 5 }, PostingList.and(left, right));
+    assertArrayEquals(new int[] { 1, 3, 4, 5, 7 }, PostingList.or(left, right));
+    assertArrayEquals(new int[] { 1, 7 }, PostingList.andNot(left, right));
+  }
+
+  @Test
+  public void search() throws Exception {
+    SearchIndex index = new SearchIndexImpl(Arrays.asList("Name", "Tags"));
+    final Entity red = entity("Red Apple", "fruit", "sweet");
+    final Entity green = entity("Green Apple", "fruit", "sour");
+    final Entity pepper = entity("Red Pepper", "vegetable");
+    index.index(red);
+    index.index(green);
+    index.index(pepper);
+    assertEquals(3, index.size());
+
+    assertSearch(index, "apple", red, green);
+    assertSearch(index, "APPLE red", red);
+    assertSearch(index, "red OR sour", red, green, pepper);
+    assertSearch(index, "red NOT apple", pepper);
+    assertSearch(index, "NOT fruit", pepper);
+    assertSearch(index, "NOT red NOT pepper", green);
+    assertSearch(index, "\"red apple\"", red);
+    assertSearch(index, "\"apple red\"");
+    assertSearch(index, "banana");
+    assertSearch(index, "banana OR pepper", pepper);
+  }
+
+  @Test
+  public void maintenance() throws Exception {
+    SearchIndexImpl index = new SearchIndexImpl(Arrays.asList("Name"));
+    final Entity first = entity("first entry");
+    final Entity second = entity("second entry");
+    index.index(first);
+    index.index(second);
+    assertEquals(3, index.getWordCount());
+
+    first.getProperty("Name").setValue(ValueType.PRIMITIVE, "changed entry");
+    index.index(first);
+    assertSearch(index, "first");
+    assertSearch(index, "changed", first);
+    assertSearch(index, "entry", first, second);
+    assertEquals(3, index.getWordCount());
+
+    index.remove(second);
+    index.remove(second);
+    assertEquals(1, index.size());
+    assertSearch(index, "entry", first);
+    assertSearch(index, "NOT changed");
+
+    for (int i = 0; i < 200; i++) {
+      final Entity entity = entity("entry " + i);
+      index.index(entity);
+      if (i % 2 == 0) {
+        index.remove(entity);
+      }
+    }
+    assertEquals(101, index.size());
+    assertEquals(1, index.search(parse("\"entry 1\"")).size());
+    assertEquals(first, index.search(parse("entry")).get(0));
+
+    index.clear();
+    assertEquals(0, index.size());
+    assertEquals(0, index.getWordCount());
+  }
+
+  @Test
+  public void filter() throws Exception {
+    SearchIndex index = new SearchIndexImpl(Arrays.asList("Name"));
+    final Entity a = entity("alpha");
+    final Entity b = entity("beta");
+    final Entity c = entity("alpha beta");
+    index.index(a);
+    index.index(b);
+    index.index(c);
+
+    EntityCollection entitySet = new EntityCollection();
+    entitySet.getEntities().addAll(Arrays.asList(c, b, entity("alpha"), a));
+    index.filter(entitySet, parse("alpha"));
+    assertEquals(Arrays.asList(c, a), entitySet.getEntities());
+  }
+
+  private void assertSearch(final SearchIndex index, final String search, final Entity... expected)
+      throws Exception {
+    final List<Entity> result = index.search(parse(search));
+    assertEquals(search, Arrays.asList(expected), result);
+  }
+
+  private SearchExpression parse(final String search) throws Exception {
+    return new SearchParser().parse(search);
+  }
+
+  private Entity entity(final String name, final String... tags) {
+    return new Entity()
+        .addProperty(new Property(null, "Name", ValueType.PRIMITIVE, name))
+        .addProperty(new Property(null, "Tags", ValueType.COLLECTION_PRIMITIVE, Arrays.asList(tags)));
+  }
+}
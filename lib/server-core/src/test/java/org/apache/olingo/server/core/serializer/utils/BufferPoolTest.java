@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.serializer.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class BufferPoolTest {
+
+  @Test
+  public void sizeClasses() {
+    final BufferPool pool = new BufferPool(BufferPool.DEFAULT_MAX_POOLED_BYTES, false, false);
+    assertEquals(BufferPool.MIN_CAPACITY, pool.acquire(1).capacity());
+    assertEquals(BufferPool.MIN_CAPACITY, pool.acquire(BufferPool.MIN_CAPACITY).capacity());
+    assertEquals(2 * BufferPool.MIN_CAPACITY, pool.acquire(BufferPool.MIN_CAPACITY + 1).capacity());
+    assertEquals(8192, pool.acquire(5000).capacity());
+    assertEquals(BufferPool.MAX_CAPACITY, pool.acquire(BufferPool.MAX_CAPACITY).capacity());
+    assertEquals(BufferPool.MAX_CAPACITY + 1, pool.acquire(BufferPool.MAX_CAPACITY + 1).capacity());
+  }
+
+  @Test
+  public void reuse() {
+    final BufferPool pool = new BufferPool(BufferPool.DEFAULT_MAX_POOLED_BYTES, false, false);
+    final ByteBuffer buffer = pool.acquire(4000);
+    buffer.put((byte) 1);
+    pool.release(buffer);
+    assertEquals(4096, pool.getPooledBytes());
+
+    final ByteBuffer reused = pool.acquire(3000);
+    assertSame(buffer, reused);
+    assertEquals(0, reused.position());
+    assertEquals(reused.capacity(), reused.limit());
+    assertNotSame(buffer, pool.acquire(3000));
+    assertEquals(0, pool.getPooledBytes());
+
+    assertEquals(3, pool.getAcquiredCount());
+    assertEquals(1, pool.getReusedCount());
+    assertEquals(1, pool.getReleasedCount());
+    assertEquals(0, pool.getDiscardedCount());
+  }
+
+  @Test
+  public void bounded() {
+    final BufferPool pool = new BufferPool(2048, false, false);
+    final ByteBuffer first = pool.acquire(1024);
+    final ByteBuffer second = pool.acquire(1024);
+    final ByteBuffer third = pool.acquire(1024);
+    pool.release(first);
+    pool.release(second);
+    pool.release(third);
+    assertEquals(2048, pool.getPooledBytes());
+    assertEquals(1, pool.getDiscardedCount());
+
+    // buffers not fitting into a size class or of the wrong kind are not kept
+    pool.release(pool.acquire(BufferPool.MAX_CAPACITY + 1));
+    pool.release(ByteBuffer.allocate(1000));
+    pool.release(ByteBuffer.allocateDirect(1024));
+    assertEquals(4, pool.getDiscardedCount());
+    assertEquals(2048, pool.getPooledBytes());
+  }
+
+  @Test
+  public void direct() {
+    final BufferPool pool = new BufferPool(BufferPool.DEFAULT_MAX_POOLED_BYTES, true, false);
+    assertTrue(pool.isDirect());
+    final ByteBuffer buffer = pool.acquire(100);
+    assertTrue(buffer.isDirect());
+    pool.release(buffer);
+    assertSame(buffer, pool.acquire(100));
+  }
+
+  @Test
+  public void copy() throws Exception {
+    final byte[] content = new byte[20000];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) i;
+    }
+    for (final boolean direct : new boolean[] { false, true }) {
+      final BufferPool pool = new BufferPool(BufferPool.DEFAULT_MAX_POOLED_BYTES, direct, false);
+      final ByteArrayOutputStream output = new ByteArrayOutputStream();
+      assertEquals(content.length, pool.copy(new ByteArrayInputStream(content), output));
+      assertArrayEquals(content, output.toByteArray());
+      assertEquals(1, pool.getReleasedCount());
+    }
+  }
+
+  @Test
+  public void releaseTwice() {
+    final BufferPool pool = new BufferPool(BufferPool.DEFAULT_MAX_POOLED_BYTES, false, true);
+    final ByteBuffer buffer = pool.acquire(1024);
+    pool.release(buffer);
+    pool.release(buffer);
+    assertEquals(1, pool.getDiscardedCount());
+    assertEquals(1024, pool.getPooledBytes());
+    assertEquals(0, pool.getLeakedCount());
+  }
+
+  @Test
+  public void circleStreamBuffer() throws Exception {
+    final BufferPool pool = new BufferPool(BufferPool.DEFAULT_MAX_POOLED_BYTES, false, true);
+    final CircleStreamBuffer buffer = new CircleStreamBuffer(1024, pool);
+    final OutputStream output = buffer.getOutputStream();
+    final byte[] content = new byte[5000];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) i;
+    }
+    output.write(content, 0, 1000);
+    output.write(content, 1000, 4000);
+    output.close();
+
+    final InputStream input = buffer.getInputStream();
+    final byte[] read = new byte[content.length];
+    int offset = 0;
+    int n;
+    while ((n = input.read(read, offset, read.length - offset)) > 0) {
+      offset += n;
+    }
+    assertArrayEquals(content, read);
+    assertEquals(-1, input.read());
+    input.close();
+
+    assertEquals(pool.getAcquiredCount(), pool.getReleasedCount());
+    assertEquals(0, pool.getDiscardedCount());
+    assertEquals(0, pool.getLeakedCount());
+  }
+
+  @Test
+  public void circleStreamBufferClosedEarly() throws Exception {
+    final BufferPool pool = new BufferPool(BufferPool.DEFAULT_MAX_POOLED_BYTES, false, true);
+    final CircleStreamBuffer buffer = new CircleStreamBuffer(1024, pool);
+    buffer.getOutputStream().write(new byte[3000]);
+    buffer.closeRead();
+    buffer.closeRead();
+    // the data can never be read out, so it is not kept
+    buffer.getOutputStream().write(new byte[3000]);
+    assertEquals(pool.getAcquiredCount(), pool.getReleasedCount());
+    assertEquals(0, pool.getDiscardedCount());
+    assertFalse(pool.getPooledBytes() == 0);
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.uri.parser.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.apache.olingo.server.core.uri.parser.UriParserSyntaxException;
+import org.junit.Test;
+
+public class SearchParserTest {
+
+  @Test
+  public void terms() throws Exception {
+    assertParsed("'abc'", "abc");
+    assertParsed("'abc'", "  abc ");
+    assertParsed("'abc def'", "\"abc def\"");
+    assertParsed("'say \"hi\"'", "\"say \\\"hi\\\"\"");
+    assertParsed("'and'", "and");
+    assertParsed("'a-b'", "a-b");
+  }
+
+  @Test
+  public void operators() throws Exception {
+    assertParsed("{NOT 'abc'}", "NOT abc");
+    assertParsed("{'abc' AND 'def'}", "abc AND def");
+    assertParsed("{'abc' AND 'def'}", "abc    def");
+    assertParsed("{'abc' OR 'def'}", "abc OR def");
+    assertParsed("{{'abc' AND 'def'} AND 'ghi'}", "abc def ghi");
+    assertParsed("{{'abc' AND 'def'} OR 'ghi'}", "abc AND def OR ghi");
+    assertParsed("{'abc' OR {'def' AND 'ghi'}}", "abc OR def ghi");
+    assertParsed("{{{NOT 'abc'} AND {NOT 'def'}} OR {NOT 'ghi'}}", "NOT abc NOT def OR NOT ghi");
+  }
+
+  @Test
+  public void parentheses() throws Exception {
+    assertParsed("'abc'", "(abc)");
+    assertParsed("{{'abc' AND 'def'} OR 'ghi'}", " (abc AND def) OR ghi ");
+    assertParsed("{'abc' AND {'def' OR 'ghi'}}", "abc (def OR ghi)");
+    assertParsed("{NOT {'abc' OR 'def'}}", "NOT(abc OR def)");
+  }
+
+  @Test
+  public void errors() {
+    assertError("");
+    assertError("   ");
+    assertError("AND abc");
+    assertError("abc OR");
+    assertError("NOT");
+    assertError("(abc");
+    assertError("abc)");
+    assertError("()");
+    assertError("\"abc");
+    assertError("\"  \"");
+  }
+
+  private void assertParsed(final String expected, final String value) throws UriParserSyntaxException {
+    assertEquals(expected, new SearchParser().parse(value).toString());
+  }
+
+  private void assertError(final String value) {
+    try {
+      new SearchParser().parse(value);
+      fail("Expected exception for '" + value + "'");
+    } catch (final UriParserSyntaxException e) {
+      assertEquals(UriParserSyntaxException.MessageKeys.WRONG_VALUE_FOR_SYSTEM_QUERY_OPTION, e.getMessageKey());
+    }
+  }
+}
@@ -18,10 +18,15 @@
  */
 package org.apache.olingo.server.tecsvc;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -35,9 +40,11 @@ import org.apache.olingo.server.api.ServiceMetadata;
 import org.apache.olingo.server.api.edmx.EdmxReference;
 import org.apache.olingo.server.api.edmx.EdmxReferenceInclude;
 import org.apache.olingo.server.tecsvc.data.DataProvider;
+import org.apache.olingo.server.tecsvc.data.DataStore;
 import org.apache.olingo.server.tecsvc.processor.TechnicalBatchProcessor;
 import org.apache.olingo.server.tecsvc.processor.TechnicalEntityProcessor;
 import org.apache.olingo.server.tecsvc.processor.TechnicalPrimitiveComplexProcessor;
+import org.apache.olingo.server.tecsvc.processor.queryoptions.options.ParallelQueryHandler;
 import org.apache.olingo.server.tecsvc.provider.EdmTechProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,6 +54,75 @@ public class TechnicalServlet extends HttpServlet {
   private static final long serialVersionUID = 1L;
   private static final Logger LOG = LoggerFactory.getLogger(TechnicalServlet.class);
 
+  /** Init parameter with the minimum number of entities for parallel query processing. */
+  public static final String PARALLEL_QUERY_THRESHOLD = "parallelQueryThreshold";
+  /**
+   * Init parameter with the directory where the data is stored.
+   * If it is set, all sessions share one data provider whose changes survive restarts;
+   * otherwise each session gets its own data, created from scratch.
+   */
+  public static final String DATA_DIRECTORY = "dataDirectory";
+  /** Init parameter with the number of commits after which a new snapshot of the stored data is written. */
+  public static final String SNAPSHOT_INTERVAL = "snapshotInterval";
+
+  private ExecutorService queryExecutor;
+  private ParallelQueryHandler parallelQueryHandler;
+  private DataProvider sharedDataProvider;
+
+  @Override
+  public void init() throws ServletException {
+    final String threshold = getInitParameter(PARALLEL_QUERY_THRESHOLD);
+    final int parallelism = Runtime.getRuntime().availableProcessors();
+    queryExecutor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public Thread newThread(final Runnable runnable) {
+        Thread thread = new Thread(runnable, "tecsvc-query-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    try {
+      parallelQueryHandler = new ParallelQueryHandler(queryExecutor, parallelism,
+          threshold == null ? ParallelQueryHandler.DEFAULT_THRESHOLD : Integer.parseInt(threshold.trim()));
+    } catch (final NumberFormatException e) {
+      queryExecutor.shutdown();
+      throw new ServletException("Invalid value of init parameter " + PARALLEL_QUERY_THRESHOLD, e);
+    }
+
+    final String dataDirectory = getInitParameter(DATA_DIRECTORY);
+    if (dataDirectory != null) {
+      final String snapshotInterval = getInitParameter(SNAPSHOT_INTERVAL);
+      try {
+        sharedDataProvider = new DataProvider(new DataStore(new File(dataDirectory.trim()),
+            snapshotInterval == null ? DataStore.DEFAULT_SNAPSHOT_INTERVAL :
+                Integer.parseInt(snapshotInterval.trim())));
+      } catch (final NumberFormatException e) {
+        queryExecutor.shutdown();
+        throw new ServletException("Invalid value of init parameter " + SNAPSHOT_INTERVAL, e);
+      } catch (final IOException e) {
+        queryExecutor.shutdown();
+        throw new ServletException("Cannot read the data in " + dataDirectory, e);
+      }
+      LOG.info("Created data provider stored in {}.", dataDirectory);
+    }
+  }
+
+  @Override
+  public void destroy() {
+    if (queryExecutor != null) {
+      queryExecutor.shutdownNow();
+    }
+    if (sharedDataProvider != null) {
+      try {
+        sharedDataProvider.close();
+      } catch (final IOException e) {
+        LOG.error("Cannot write the final snapshot of the data.", e);
+      }
+    }
+  }
+
   @Override
   protected void service(final HttpServletRequest req, final HttpServletResponse resp)
           throws ServletException, IOException {
@@ -57,16 +133,13 @@ public class TechnicalServlet extends HttpServlet {
       final List<EdmxReference> references = Arrays.asList(reference);
       final ServiceMetadata serviceMetadata = odata.createServiceMetadata(new EdmTechProvider(references), references);
 
-      HttpSession session = req.getSession(true);
-      DataProvider dataProvider = (DataProvider) session.getAttribute(DataProvider.class.getName());
+      DataProvider dataProvider = sharedDataProvider;
       if (dataProvider == null) {
-        dataProvider = new DataProvider();
-        session.setAttribute(DataProvider.class.getName(), dataProvider);
-        LOG.info("Created new data provider.");
+        dataProvider = getSessionDataProvider(req);
       }
 
       ODataHttpHandler handler = odata.createHandler(serviceMetadata);
-      handler.register(new TechnicalEntityProcessor(dataProvider, serviceMetadata));
+      handler.register(new TechnicalEntityProcessor(dataProvider, serviceMetadata, parallelQueryHandler));
       handler.register(new TechnicalPrimitiveComplexProcessor(dataProvider, serviceMetadata));
       handler.register(new TechnicalBatchProcessor(dataProvider));
       handler.process(req, resp);
@@ -75,4 +148,15 @@ public class TechnicalServlet extends HttpServlet {
       throw new ServletException(e);
     }
   }
+
+  private DataProvider getSessionDataProvider(final HttpServletRequest req) {
+    HttpSession session = req.getSession(true);
+    DataProvider dataProvider = (DataProvider) session.getAttribute(DataProvider.class.getName());
+    if (dataProvider == null) {
+      dataProvider = new DataProvider();
+      session.setAttribute(DataProvider.class.getName(), dataProvider);
+      LOG.info("Created new data provider.");
+    }
+    return dataProvider;
+  }
 }
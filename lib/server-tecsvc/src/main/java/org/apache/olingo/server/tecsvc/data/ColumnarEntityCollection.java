@@ -0,0 +1,640 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.tecsvc.data;
+
+import java.math.BigDecimal;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.Link;
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.data.ValueType;
+import org.apache.olingo.server.api.uri.queryoption.expression.BinaryOperatorKind;
+
+/**
+ * Entity collection for large sets of read-mostly data that stores the values of the primitive properties
+ * column by column: integral numbers in <code>long</code> arrays, floating-point numbers in <code>double</code>
+ * arrays, strings dictionary-encoded, and date and time values as milliseconds since the epoch.
+ * <p>The entities are views on one row each; they are created on first access and stay the same objects
+ * afterwards. Their properties are created on each access and write changed values back to the columns.
+ * A value that does not fit into its column turns the column into one of plain objects.
+ * The number of entities is fixed; the list of entities cannot be modified.</p>
+ * <p>Comparisons of a property with a value can be evaluated on the columns, without creating any entity,
+ * with the semantics of the lookups in a {@link SecondaryIndex}.</p>
+ */
+public class ColumnarEntityCollection extends EntityCollection {
+
+  private final int size;
+  private final String entityType;
+  private final Map<String, Integer> columnIndexes = new HashMap<String, Integer>();
+  private volatile Column[] columns;
+  private final AtomicReferenceArray<Row> rows;
+  private final List<Entity> entities;
+
+  /**
+   * Returns whether the entities of an entity collection can be stored column by column:
+   * all entities must be of the same type, without navigation links or media content,
+   * and must have the same primitive properties in the same order.
+   */
+  public static boolean canStore(final EntityCollection entityCollection) {
+    final List<Entity> entities = entityCollection.getEntities();
+    if (entities.isEmpty()) {
+      return false;
+    }
+    final Entity first = entities.get(0);
+    for (final Entity entity : entities) {
+      if (entity.getClass() != Entity.class || !equals(first.getType(), entity.getType())
+          || entity.getMediaContentType() != null || entity.getProperties().size() != first.getProperties().size()) {
+        return false;
+      }
+      for (final Link link : entity.getNavigationLinks()) {
+        if (link.getInlineEntity() != null || link.getInlineEntitySet() != null) {
+          return false;
+        }
+      }
+      for (int i = 0; i < first.getProperties().size(); i++) {
+        final Property property = entity.getProperties().get(i);
+        final Property firstProperty = first.getProperties().get(i);
+        if (property.getValueType() != ValueType.PRIMITIVE || !property.getName().equals(firstProperty.getName())
+            || !equals(property.getType(), firstProperty.getType())) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static boolean equals(final String value1, final String value2) {
+    return value1 == null ? value2 == null : value1.equals(value2);
+  }
+
+  /**
+   * Stores the entities of an entity collection column by column.
+   * @throws IllegalArgumentException if {@link #canStore(EntityCollection)} is not fulfilled
+   */
+  public ColumnarEntityCollection(final EntityCollection entityCollection) {
+    if (!canStore(entityCollection)) {
+      throw new IllegalArgumentException("The entities cannot be stored column by column.");
+    }
+    final List<Entity> source = entityCollection.getEntities();
+    size = source.size();
+    entityType = source.get(0).getType();
+    final List<Property> firstProperties = source.get(0).getProperties();
+    columns = new Column[firstProperties.size()];
+    for (int column = 0; column < columns.length; column++) {
+      List<Object> values = new ArrayList<Object>(size);
+      for (final Entity entity : source) {
+        values.add(entity.getProperties().get(column).getValue());
+      }
+      final Property property = firstProperties.get(column);
+      columns[column] = createColumn(property.getName(), property.getType(), values);
+      columnIndexes.put(property.getName(), column);
+    }
+    setCount(entityCollection.getCount());
+    setNext(entityCollection.getNext());
+    setDeltaLink(entityCollection.getDeltaLink());
+
+    rows = new AtomicReferenceArray<Row>(size);
+    entities = Collections.unmodifiableList(new AbstractList<Entity>() {
+      @Override
+      public Entity get(final int index) {
+        return getRow(index);
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    });
+  }
+
+  private static Column createColumn(final String name, final String type, final List<Object> values) {
+    Class<?> valueClass = null;
+    for (final Object value : values) {
+      if (value != null) {
+        if (valueClass == null) {
+          valueClass = value.getClass();
+        } else if (valueClass != value.getClass()) {
+          return new ObjectColumn(name, type, values);
+        }
+      }
+    }
+    Column column = valueClass == Byte.class || valueClass == Short.class || valueClass == Integer.class
+        || valueClass == Long.class ? new LongColumn(name, type, valueClass, values.size()) :
+        valueClass == Float.class || valueClass == Double.class ?
+            new DoubleColumn(name, type, valueClass, values.size()) :
+        valueClass == String.class ? new StringColumn(name, type, values.size()) :
+        valueClass != null && Calendar.class.isAssignableFrom(valueClass) ?
+            new CalendarColumn(name, type, valueClass, getTimeZone(values), values.size()) :
+        null;
+    for (int row = 0; column != null && row < values.size(); row++) {
+      if (!column.set(row, values.get(row))) {
+        column = null;
+      }
+    }
+    return column == null ? new ObjectColumn(name, type, values) : column;
+  }
+
+  private static TimeZone getTimeZone(final List<Object> values) {
+    for (final Object value : values) {
+      if (value != null) {
+        return ((Calendar) value).getTimeZone();
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public List<Entity> getEntities() {
+    return entities;
+  }
+
+  private Row getRow(final int index) {
+    Row row = rows.get(index);
+    if (row == null) {
+      row = new Row(index);
+      if (!rows.compareAndSet(index, null, row)) {
+        row = rows.get(index);
+      }
+    }
+    return row;
+  }
+
+  /**
+   * Selects the entities with a property value that compares to the given value as requested.
+   * The result may contain entities that do not fulfill the condition but it always contains all entities that do.
+   * @param operator <code>eq</code>, <code>lt</code>, <code>le</code>, <code>gt</code>, or <code>ge</code>
+   * @return the entities or <code>null</code> if the property or the comparison is not supported
+   */
+  public Set<Entity> select(final String propertyName, final BinaryOperatorKind operator, final Object value) {
+    final Integer column = columnIndexes.get(propertyName);
+    final Object normalizedValue = SecondaryIndex.normalize(value);
+    if (column == null || normalizedValue == null || !isComparison(operator)) {
+      return null;
+    }
+    return getEntities(columns[column].select(operator, normalizedValue, size));
+  }
+
+  /**
+   * Selects the entities with a string property value that starts with the given prefix.
+   * @return the entities or <code>null</code> if the property is not a dictionary-encoded string property
+   */
+  public Set<Entity> selectPrefix(final String propertyName, final String prefix) {
+    final Integer column = columnIndexes.get(propertyName);
+    final Column stringColumn = column == null ? null : columns[column];
+    return stringColumn instanceof StringColumn ?
+        getEntities(((StringColumn) stringColumn).selectPrefix(prefix, size)) :
+        null;
+  }
+
+  private static boolean isComparison(final BinaryOperatorKind operator) {
+    return operator == BinaryOperatorKind.EQ
+        || operator == BinaryOperatorKind.LT || operator == BinaryOperatorKind.LE
+        || operator == BinaryOperatorKind.GT || operator == BinaryOperatorKind.GE;
+  }
+
+  private Set<Entity> getEntities(final BitSet selectedRows) {
+    Set<Entity> result = Collections.newSetFromMap(new IdentityHashMap<Entity, Boolean>());
+    for (int row = selectedRows.nextSetBit(0); row >= 0; row = selectedRows.nextSetBit(row + 1)) {
+      result.add(getRow(row));
+    }
+    return result;
+  }
+
+  private synchronized void set(final int column, final int row, final Object value) {
+    if (!columns[column].set(row, value)) {
+      Column[] newColumns = columns.clone();
+      newColumns[column] = new ObjectColumn(columns[column], size);
+      newColumns[column].set(row, value);
+      columns = newColumns;
+    }
+  }
+
+  /** Entity showing one row of the columns. */
+  private final class Row extends Entity {
+    private final int row;
+
+    private Row(final int row) {
+      this.row = row;
+      setType(entityType);
+    }
+
+    @Override
+    public Property getProperty(final String name) {
+      final Integer column = columnIndexes.get(name);
+      return column == null ? null : new ColumnProperty(column, row);
+    }
+
+    @Override
+    public List<Property> getProperties() {
+      List<Property> properties = new ArrayList<Property>(columns.length);
+      for (int column = 0; column < columns.length; column++) {
+        properties.add(new ColumnProperty(column, row));
+      }
+      return Collections.unmodifiableList(properties);
+    }
+
+    @Override
+    public Entity addProperty(final Property property) {
+      throw new UnsupportedOperationException("Entities of a columnar entity set have a fixed set of properties.");
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      return this == obj;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(this);
+    }
+
+    @Override
+    public String toString() {
+      return "Entity " + getProperties();
+    }
+  }
+
+  /** Property showing one cell of a column. */
+  private final class ColumnProperty extends Property {
+    private final int column;
+    private final int row;
+
+    private ColumnProperty(final int column, final int row) {
+      super(columns[column].type, columns[column].name);
+      super.setValue(ValueType.PRIMITIVE, null);
+      this.column = column;
+      this.row = row;
+    }
+
+    @Override
+    public Object getValue() {
+      return columns[column].get(row);
+    }
+
+    @Override
+    public Object asPrimitive() {
+      return getValue();
+    }
+
+    @Override
+    public void setValue(final ValueType valueType, final Object value) {
+      if (valueType != ValueType.PRIMITIVE) {
+        throw new UnsupportedOperationException("Entities of a columnar entity set have only primitive properties.");
+      }
+      set(column, row, value);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      return obj instanceof ColumnProperty && getCollection() == ((ColumnProperty) obj).getCollection()
+          && column == ((ColumnProperty) obj).column && row == ((ColumnProperty) obj).row;
+    }
+
+    @Override
+    public int hashCode() {
+      return row * 31 + column;
+    }
+
+    @Override
+    public String toString() {
+      return getName() + '=' + getValue();
+    }
+
+    private ColumnarEntityCollection getCollection() {
+      return ColumnarEntityCollection.this;
+    }
+  }
+
+  private abstract static class Column {
+    final String name;
+    final String type;
+
+    Column(final String name, final String type) {
+      this.name = name;
+      this.type = type;
+    }
+
+    abstract Object get(int row);
+
+    /** Sets the value of a row; returns <code>false</code> if the value cannot be stored in this column. */
+    abstract boolean set(int row, Object value);
+
+    /**
+     * Selects the rows with a value that compares to a normalized value as requested.
+     * Rows without value are never selected; rows with values that cannot be compared are always selected.
+     */
+    BitSet select(final BinaryOperatorKind operator, final Object value, final int size) {
+      BitSet result = new BitSet(size);
+      for (int row = 0; row < size; row++) {
+        final Object rowValue = get(row);
+        if (rowValue != null) {
+          final Object normalizedRowValue = SecondaryIndex.normalize(rowValue);
+          if (normalizedRowValue == null || normalizedRowValue.getClass() != value.getClass()
+              || matches(operator, compare(normalizedRowValue, value))) {
+            result.set(row);
+          }
+        }
+      }
+      return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compare(final Object value1, final Object value2) {
+      return ((Comparable<Object>) value1).compareTo(value2);
+    }
+
+    static boolean matches(final BinaryOperatorKind operator, final int comparison) {
+      return operator == BinaryOperatorKind.EQ ? comparison == 0 :
+          operator == BinaryOperatorKind.LT ? comparison < 0 :
+          operator == BinaryOperatorKind.LE ? comparison <= 0 :
+          operator == BinaryOperatorKind.GT ? comparison > 0 :
+          comparison >= 0;
+    }
+  }
+
+  private static class ObjectColumn extends Column {
+    private final Object[] values;
+
+    ObjectColumn(final String name, final String type, final List<Object> values) {
+      super(name, type);
+      this.values = values.toArray();
+    }
+
+    ObjectColumn(final Column column, final int size) {
+      super(column.name, column.type);
+      values = new Object[size];
+      for (int row = 0; row < size; row++) {
+        values[row] = column.get(row);
+      }
+    }
+
+    @Override
+    Object get(final int row) {
+      return values[row];
+    }
+
+    @Override
+    boolean set(final int row, final Object value) {
+      values[row] = value;
+      return true;
+    }
+  }
+
+  private static class LongColumn extends Column {
+    private static final BigDecimal MIN = BigDecimal.valueOf(Long.MIN_VALUE);
+    private static final BigDecimal MAX = BigDecimal.valueOf(Long.MAX_VALUE);
+
+    private final Class<?> valueClass;
+    private final long[] values;
+    private final BitSet nulls;
+
+    LongColumn(final String name, final String type, final Class<?> valueClass, final int size) {
+      super(name, type);
+      this.valueClass = valueClass;
+      values = new long[size];
+      nulls = new BitSet(size);
+    }
+
+    @Override
+    Object get(final int row) {
+      if (nulls.get(row)) {
+        return null;
+      }
+      final long value = values[row];
+      return valueClass == Long.class ? Long.valueOf(value) :
+          valueClass == Integer.class ? Integer.valueOf((int) value) :
+          valueClass == Short.class ? Short.valueOf((short) value) :
+          (Object) Byte.valueOf((byte) value);
+    }
+
+    @Override
+    boolean set(final int row, final Object value) {
+      if (value == null) {
+        nulls.set(row);
+        return true;
+      }
+      if (!(value instanceof Byte || value instanceof Short || value instanceof Integer || value instanceof Long)) {
+        return false;
+      }
+      final long longValue = ((Number) value).longValue();
+      final boolean fits = valueClass == Long.class
+          || valueClass == Integer.class && longValue == (int) longValue
+          || valueClass == Short.class && longValue == (short) longValue
+          || valueClass == Byte.class && longValue == (byte) longValue;
+      if (fits) {
+        values[row] = longValue;
+        nulls.clear(row);
+      }
+      return fits;
+    }
+
+    @Override
+    BitSet select(final BinaryOperatorKind operator, final Object value, final int size) {
+      final BigDecimal decimal = (BigDecimal) (value instanceof BigDecimal ? value : null);
+      if (decimal == null || decimal.scale() > 0 || decimal.compareTo(MIN) < 0 || decimal.compareTo(MAX) > 0) {
+        return super.select(operator, value, size);
+      }
+      final long longValue = decimal.longValue();
+      BitSet result = new BitSet(size);
+      for (int row = 0; row < size; row++) {
+        if (!nulls.get(row)
+            && matches(operator, values[row] < longValue ? -1 : values[row] == longValue ? 0 : 1)) {
+          result.set(row);
+        }
+      }
+      return result;
+    }
+  }
+
+  private static class DoubleColumn extends Column {
+    private final Class<?> valueClass;
+    private final double[] values;
+    private final BitSet nulls;
+
+    DoubleColumn(final String name, final String type, final Class<?> valueClass, final int size) {
+      super(name, type);
+      this.valueClass = valueClass;
+      values = new double[size];
+      nulls = new BitSet(size);
+    }
+
+    @Override
+    Object get(final int row) {
+      return nulls.get(row) ? null :
+          valueClass == Double.class ? Double.valueOf(values[row]) : (Object) Float.valueOf((float) values[row]);
+    }
+
+    @Override
+    boolean set(final int row, final Object value) {
+      if (value == null) {
+        nulls.set(row);
+        return true;
+      } else if (value.getClass() == valueClass) {
+        values[row] = ((Number) value).doubleValue();
+        nulls.clear(row);
+        return true;
+      } else {
+        return false;
+      }
+    }
+  }
+
+  private static class StringColumn extends Column {
+    private final int[] codes;
+    private final Map<String, Integer> dictionaryCodes = new HashMap<String, Integer>();
+    private volatile String[] dictionary = new String[0];
+
+    StringColumn(final String name, final String type, final int size) {
+      super(name, type);
+      codes = new int[size];
+    }
+
+    @Override
+    Object get(final int row) {
+      final int code = codes[row];
+      return code < 0 ? null : dictionary[code];
+    }
+
+    @Override
+    boolean set(final int row, final Object value) {
+      if (value == null) {
+        codes[row] = -1;
+        return true;
+      } else if (value instanceof String) {
+        Integer code = dictionaryCodes.get(value);
+        if (code == null) {
+          code = dictionary.length;
+          String[] newDictionary = new String[code + 1];
+          System.arraycopy(dictionary, 0, newDictionary, 0, code);
+          newDictionary[code] = (String) value;
+          dictionary = newDictionary;
+          dictionaryCodes.put((String) value, code);
+        }
+        codes[row] = code;
+        return true;
+      } else {
+        return false;
+      }
+    }
+
+    @Override
+    BitSet select(final BinaryOperatorKind operator, final Object value, final int size) {
+      if (!(value instanceof String)) {
+        return super.select(operator, value, size);
+      }
+      final String[] currentDictionary = dictionary;
+      boolean[] matchingCodes = new boolean[currentDictionary.length];
+      for (int code = 0; code < currentDictionary.length; code++) {
+        matchingCodes[code] = matches(operator, currentDictionary[code].compareTo((String) value));
+      }
+      return select(matchingCodes, size);
+    }
+
+    BitSet selectPrefix(final String prefix, final int size) {
+      final String[] currentDictionary = dictionary;
+      boolean[] matchingCodes = new boolean[currentDictionary.length];
+      for (int code = 0; code < currentDictionary.length; code++) {
+        matchingCodes[code] = currentDictionary[code].startsWith(prefix);
+      }
+      return select(matchingCodes, size);
+    }
+
+    private BitSet select(final boolean[] matchingCodes, final int size) {
+      BitSet result = new BitSet(size);
+      for (int row = 0; row < size; row++) {
+        final int code = codes[row];
+        // Codes added after the dictionary has been evaluated belong to new values; they are selected.
+        if (code >= matchingCodes.length || code >= 0 && matchingCodes[code]) {
+          result.set(row);
+        }
+      }
+      return result;
+    }
+  }
+
+  private static class CalendarColumn extends Column {
+    private final Class<?> valueClass;
+    private final TimeZone timeZone;
+    private final long[] values;
+    private final BitSet nulls;
+
+    CalendarColumn(final String name, final String type, final Class<?> valueClass, final TimeZone timeZone,
+        final int size) {
+      super(name, type);
+      this.valueClass = valueClass;
+      this.timeZone = timeZone;
+      values = new long[size];
+      nulls = new BitSet(size);
+    }
+
+    @Override
+    Object get(final int row) {
+      if (nulls.get(row)) {
+        return null;
+      }
+      Calendar calendar = Calendar.getInstance(timeZone);
+      calendar.clear();
+      calendar.setTimeInMillis(values[row]);
+      return calendar;
+    }
+
+    @Override
+    boolean set(final int row, final Object value) {
+      if (value == null) {
+        nulls.set(row);
+        return true;
+      } else if (value.getClass() == valueClass && ((Calendar) value).getTimeZone().equals(timeZone)
+          && Calendar.getInstance(timeZone).getClass() == valueClass) {
+        values[row] = ((Calendar) value).getTimeInMillis();
+        nulls.clear(row);
+        return true;
+      } else {
+        return false;
+      }
+    }
+
+    @Override
+    BitSet select(final BinaryOperatorKind operator, final Object value, final int size) {
+      if (!(value instanceof Long)) {
+        return super.select(operator, value, size);
+      }
+      final long millis = (Long) value;
+      BitSet result = new BitSet(size);
+      for (int row = 0; row < size; row++) {
+        if (!nulls.get(row) && matches(operator, values[row] < millis ? -1 : values[row] == millis ? 0 : 1)) {
+          result.set(row);
+        }
+      }
+      return result;
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.tecsvc.data;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache for the number of entities of an entity set that match a query (the texts of $filter and $search).
+ * The cached counts of an entity set are dropped whenever one of its entities is changed.
+ * A count is only stored if the entity set has not been changed while it was computed;
+ * so callers must get the version of the entity set before they start counting.
+ */
+public class CountCache {
+
+  private static final int MAX_ENTRIES = 1000;
+
+  private final Map<String, Long> versions = new HashMap<String, Long>();
+  private final Map<Key, Integer> counts = new LinkedHashMap<Key, Integer>(16, 0.75F, true) {
+    private static final long serialVersionUID = -2409437513616237469L;
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<Key, Integer> eldest) {
+      return size() > MAX_ENTRIES;
+    }
+  };
+
+  public synchronized long getVersion(final String entitySetName) {
+    final Long version = versions.get(entitySetName);
+    return version == null ? 0 : version;
+  }
+
+  public synchronized Integer get(final String entitySetName, final String query) {
+    return counts.get(new Key(entitySetName, query));
+  }
+
+  public synchronized void put(final String entitySetName, final String query, final int count,
+      final long version) {
+    if (version == getVersion(entitySetName)) {
+      counts.put(new Key(entitySetName, query), count);
+    }
+  }
+
+  public synchronized void invalidate(final String entitySetName) {
+    versions.put(entitySetName, getVersion(entitySetName) + 1);
+    for (Iterator<Key> iterator = counts.keySet().iterator(); iterator.hasNext();) {
+      if (iterator.next().entitySetName.equals(entitySetName)) {
+        iterator.remove();
+      }
+    }
+  }
+
+  public synchronized int size() {
+    return counts.size();
+  }
+
+  private static class Key {
+    private final String entitySetName;
+    private final String query;
+
+    private Key(final String entitySetName, final String query) {
+      this.entitySetName = entitySetName;
+      this.query = query;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      return obj instanceof Key
+          && entitySetName.equals(((Key) obj).entitySetName)
+          && query.equals(((Key) obj).query);
+    }
+
+    @Override
+    public int hashCode() {
+      return entitySetName.hashCode() * 31 + query.hashCode();
+    }
+  }
+}
@@ -18,23 +18,34 @@
  */
 package org.apache.olingo.server.tecsvc.data;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
+import org.apache.olingo.commons.api.ODataRuntimeException;
 import org.apache.olingo.commons.api.data.ComplexValue;
 import org.apache.olingo.commons.api.data.Entity;
 import org.apache.olingo.commons.api.data.EntityCollection;
 import org.apache.olingo.commons.api.data.Link;
 import org.apache.olingo.commons.api.data.Parameter;
 import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.data.ValueType;
+import org.apache.olingo.commons.api.domain.ODataLinkType;
 import org.apache.olingo.commons.api.edm.Edm;
+import org.apache.olingo.commons.api.edm.EdmBindingTarget;
 import org.apache.olingo.commons.api.edm.EdmComplexType;
+import org.apache.olingo.commons.api.edm.EdmEntityContainer;
 import org.apache.olingo.commons.api.edm.EdmEntitySet;
 import org.apache.olingo.commons.api.edm.EdmEntityType;
 import org.apache.olingo.commons.api.edm.EdmFunction;
@@ -50,18 +61,85 @@ import org.apache.olingo.commons.api.http.HttpStatusCode;
 import org.apache.olingo.server.api.OData;
 import org.apache.olingo.server.api.ODataApplicationException;
 import org.apache.olingo.server.api.deserializer.DeserializerException;
+import org.apache.olingo.server.api.search.SearchIndex;
 import org.apache.olingo.server.api.uri.UriParameter;
-
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory data of the technical service.
+ * <p>Entity sets and the entity collections of navigation links are kept as copy-on-write snapshots,
+ * so readers never block and always iterate over a consistent set of entities.
+ * All modifications are serialized by a single write lock; they replace values instead of changing
+ * the structure of lists other threads may be iterating over, so that readers never fail.</p>
+ * <p>The snapshots cover only which entities belong to an entity set or a navigation link.
+ * The property values, the media content, and the navigation links of an entity are changed in place,
+ * so a reader sees such changes as soon as they are made, also for an entity it has already read,
+ * and may see an update of several properties partly applied.</p>
+ * <p>Optionally the data is kept in a {@link DataStore}; the changes made while holding the write lock
+ * are then written to its log as one commit when the lock is released. Snapshots of the store are written
+ * from the copy-on-write lists captured with the lock held, so they do not block writers.</p>
+ */
 public class DataProvider {
 
   protected static final String MEDIA_PROPERTY_NAME = "$value";
 
+  private static final Logger LOG = LoggerFactory.getLogger(DataProvider.class);
+
   final private Map<String, EntityCollection> data;
+  private final ReentrantLock writeLock = new ReentrantLock();
+  private volatile boolean navigationLinksCreated = false;
+  private final DataStore store;
+  /** Entities changed while the write lock is held, with the names of their entity sets */
+  private final Map<Entity, String> changedEntities = new IdentityHashMap<Entity, String>();
+  private final List<EntityCodec.Reference> deletedEntities = new ArrayList<EntityCodec.Reference>();
+  private final Map<String, SearchIndex> searchIndexes = new HashMap<String, SearchIndex>();
+  private final CountCache countCache = new CountCache();
+  private final Map<String, Map<String, SecondaryIndex>> secondaryIndexes =
+      new HashMap<String, Map<String, SecondaryIndex>>();
   private Edm edm;
   private OData odata;
 
   public DataProvider() {
-    data = new DataCreator().getData();
+    this(new DataCreator().getData(), null);
+  }
+
+  /**
+   * Creates a data provider with the data recovered from a data store.
+   * All changes are written to the store.
+   */
+  public DataProvider(final DataStore store) throws IOException {
+    this(recover(store), store);
+  }
+
+  private DataProvider(final Map<String, EntityCollection> initialData, final DataStore store) {
+    data = createSnapshots(initialData);
+    this.store = store;
+    storeColumnar("ESServerSidePaging");
+    createIndex("ESAllPrim", "PropertyString", SecondaryIndex.Kind.SORTED);
+    createIndex("ESServerSidePaging", "PropertyInt16", SecondaryIndex.Kind.SORTED);
+    createIndex("ESTwoKeyNav", "PropertyString", SecondaryIndex.Kind.HASH);
+  }
+
+  private static Map<String, EntityCollection> recover(final DataStore store) throws IOException {
+    Map<String, EntityCollection> data = new DataCreator().getData();
+    store.recover(data);
+    return data;
+  }
+
+  private static Map<String, EntityCollection> createSnapshots(final Map<String, EntityCollection> entitySets) {
+    Map<String, EntityCollection> snapshots = new ConcurrentHashMap<String, EntityCollection>();
+    for (final Map.Entry<String, EntityCollection> entry : entitySets.entrySet()) {
+      snapshots.put(entry.getKey(), new SnapshotEntityCollection(entry.getValue()));
+      for (final Entity entity : entry.getValue().getEntities()) {
+        for (final Link link : entity.getNavigationLinks()) {
+          if (link.getInlineEntitySet() != null) {
+            link.setInlineEntitySet(new SnapshotEntityCollection(link.getInlineEntitySet()));
+          }
+        }
+      }
+    }
+    return snapshots;
   }
 
   public EntityCollection readAll(final EdmEntitySet edmEntitySet) throws DataProviderException {
@@ -76,6 +154,9 @@ public class DataProvider {
   public Entity
       read(final EdmEntityType edmEntityType, final EntityCollection entitySet, final List<UriParameter> keys)
           throws DataProviderException {
+    if (entitySet == null) {
+      return null;
+    }
     try {
       for (final Entity entity : entitySet.getEntities()) {
         boolean found = true;
@@ -103,47 +184,172 @@ public class DataProvider {
   }
 
   public void delete(final EdmEntitySet edmEntitySet, final Entity entity) throws DataProviderException {
-    deleteLinksTo(entity);
-    readAll(edmEntitySet).getEntities().remove(entity);
+    beginWrite();
+    try {
+      deleteLinksTo(entity);
+      getModifiableEntities(edmEntitySet).remove(entity);
+      if (store != null) {
+        changedEntities.remove(entity);
+        deletedEntities.add(createReference(edmEntitySet, entity));
+      }
+      final SearchIndex searchIndex = getExistingSearchIndex(edmEntitySet);
+      if (searchIndex != null) {
+        searchIndex.remove(entity);
+      }
+      for (final SecondaryIndex index : getIndexes(edmEntitySet).values()) {
+        index.remove(entity);
+      }
+      countCache.invalidate(edmEntitySet.getName());
+    } finally {
+      endWrite();
+    }
   }
 
   public void deleteLinksTo(final Entity to) throws DataProviderException {
-    for (final String entitySetName : data.keySet()) {
-      for (final Entity entity : data.get(entitySetName).getEntities()) {
-        for (Iterator<Link> linkIterator = entity.getNavigationLinks().iterator(); linkIterator.hasNext();) {
-          final Link link = linkIterator.next();
-          if (to.equals(link.getInlineEntity())) {
-            linkIterator.remove();
-          } else if (link.getInlineEntitySet() != null) {
-            for (Iterator<Entity> iterator = link.getInlineEntitySet().getEntities().iterator(); iterator.hasNext();) {
-              if (to.equals(iterator.next())) {
-                iterator.remove();
+    beginWrite();
+    try {
+      for (final String entitySetName : data.keySet()) {
+        for (final Entity entity : data.get(entitySetName).getEntities()) {
+          // Links are emptied instead of removed; concurrent readers may iterate over the links of the entity.
+          for (final Link link : entity.getNavigationLinks()) {
+            if (to.equals(link.getInlineEntity())) {
+              link.setInlineEntity(null);
+              markChanged(entitySetName, entity);
+            } else if (link.getInlineEntitySet() != null
+                && link.getInlineEntitySet().getEntities().removeAll(Collections.singleton(to))) {
+              if (link.getInlineEntitySet().getEntities().isEmpty()) {
+                link.setInlineEntitySet(null);
               }
-            }
-            if (link.getInlineEntitySet().getEntities().isEmpty()) {
-              linkIterator.remove();
+              markChanged(entitySetName, entity);
             }
           }
         }
       }
+    } finally {
+      endWrite();
     }
   }
 
   public Entity create(final EdmEntitySet edmEntitySet) throws DataProviderException {
-    final EdmEntityType edmEntityType = edmEntitySet.getEntityType();
-    final EntityCollection entitySet = readAll(edmEntitySet);
-    final List<Entity> entities = entitySet.getEntities();
-    final Map<String, Object> newKey = findFreeComposedKey(entities, edmEntitySet.getEntityType());
-    final Entity newEntity = new Entity();
-    newEntity.setType(edmEntityType.getFullQualifiedName().getFullQualifiedNameAsString());
-    for (final String keyName : edmEntityType.getKeyPredicateNames()) {
-      newEntity.addProperty(DataCreator.createPrimitive(keyName, newKey.get(keyName)));
+    beginWrite();
+    try {
+      final EdmEntityType edmEntityType = edmEntitySet.getEntityType();
+      final List<Entity> entities = getModifiableEntities(edmEntitySet);
+      final Map<String, Object> newKey = findFreeComposedKey(entities, edmEntitySet.getEntityType());
+      final Entity newEntity = new Entity();
+      newEntity.setType(edmEntityType.getFullQualifiedName().getFullQualifiedNameAsString());
+      for (final String keyName : edmEntityType.getKeyPredicateNames()) {
+        newEntity.addProperty(DataCreator.createPrimitive(keyName, newKey.get(keyName)));
+      }
+
+      createProperties(edmEntityType, newEntity.getProperties());
+      if (edmEntityType.hasStream()) {
+        newEntity.addProperty(DataCreator.createPrimitive(MEDIA_PROPERTY_NAME, null));
+      }
+      createNavigationLinks(edmEntityType, newEntity);
+      entities.add(newEntity);
+      entityChanged(edmEntitySet, newEntity);
+
+      return newEntity;
+    } finally {
+      endWrite();
     }
+  }
 
-    createProperties(edmEntityType, newEntity.getProperties());
-    entities.add(newEntity);
+  /**
+   * Gets the list of entities of an entity set for adding or removing entities.
+   * An entity set stored column by column is converted back into a snapshot of the same entities.
+   */
+  private List<Entity> getModifiableEntities(final EdmEntitySet edmEntitySet) throws DataProviderException {
+    EntityCollection entitySet = readAll(edmEntitySet);
+    if (entitySet instanceof ColumnarEntityCollection) {
+      entitySet = new SnapshotEntityCollection(entitySet);
+      data.put(edmEntitySet.getName(), entitySet);
+    }
+    return entitySet.getEntities();
+  }
 
-    return newEntity;
+  /**
+   * Stores the primitive property values of the entities of an entity set column by column,
+   * see {@link ColumnarEntityCollection}. The entity set stays columnar until an entity is created or deleted.
+   * Entity sets with entities that cannot be stored that way or that are the targets of navigation links
+   * are left unchanged.
+   * @return whether the entity set is stored column by column
+   */
+  public boolean storeColumnar(final String entitySetName) {
+    writeLock.lock();
+    try {
+      final EntityCollection entitySet = data.get(entitySetName);
+      if (entitySet instanceof ColumnarEntityCollection) {
+        return true;
+      } else if (entitySet == null || !ColumnarEntityCollection.canStore(entitySet) || isLinkTarget(entitySet)) {
+        return false;
+      }
+      data.put(entitySetName, new ColumnarEntityCollection(entitySet));
+      // The entities have been replaced, so all indexes are rebuilt.
+      synchronized (searchIndexes) {
+        searchIndexes.remove(entitySetName);
+      }
+      final Map<String, SecondaryIndex> indexes;
+      synchronized (secondaryIndexes) {
+        indexes = secondaryIndexes.get(entitySetName);
+      }
+      if (indexes != null) {
+        for (final SecondaryIndex index : new ArrayList<SecondaryIndex>(indexes.values())) {
+          createIndex(entitySetName, index.getPropertyName(), index.getKind());
+        }
+      }
+      countCache.invalidate(entitySetName);
+      return true;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  private boolean isLinkTarget(final EntityCollection entitySet) {
+    Set<Entity> entities = Collections.newSetFromMap(new IdentityHashMap<Entity, Boolean>());
+    entities.addAll(entitySet.getEntities());
+    for (final EntityCollection otherEntitySet : data.values()) {
+      for (final Entity entity : otherEntitySet.getEntities()) {
+        for (final Link link : entity.getNavigationLinks()) {
+          if (entities.contains(link.getInlineEntity())) {
+            return true;
+          }
+          if (link.getInlineEntitySet() != null) {
+            for (final Entity target : link.getInlineEntitySet().getEntities()) {
+              if (entities.contains(target)) {
+                return true;
+              }
+            }
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Adds an empty navigation link for every navigation property of the entity type that has none.
+   * Navigation links are only filled and emptied later, so the list of links of an entity
+   * does not change anymore once the entity is visible to other threads.
+   */
+  private void createNavigationLinks(final EdmEntityType edmEntityType, Entity entity) {
+    for (final String navigationPropertyName : edmEntityType.getNavigationPropertyNames()) {
+      getNavigationLink(entity, edmEntityType.getNavigationProperty(navigationPropertyName));
+    }
+  }
+
+  private Link getNavigationLink(Entity entity, final EdmNavigationProperty navigationProperty) {
+    Link link = entity.getNavigationLink(navigationProperty.getName());
+    if (link == null) {
+      link = new Link();
+      link.setType(navigationProperty.isCollection() ?
+          ODataLinkType.ENTITY_SET_NAVIGATION.toString() :
+          ODataLinkType.ENTITY_NAVIGATION.toString());
+      link.setTitle(navigationProperty.getName());
+      entity.getNavigationLinks().add(link);
+    }
+    return link;
   }
 
   private Map<String, Object> findFreeComposedKey(final List<Entity> entities, final EdmEntityType entityType)
@@ -226,8 +432,22 @@ public class DataProvider {
     return newProperty;
   }
 
+  /**
+   * Updates the properties and navigation links of a stored entity in place;
+   * concurrent readers of the entity may see the update partly applied.
+   */
   public void update(final String rawBaseUri, final EdmEntitySet edmEntitySet, Entity entity,
       final Entity changedEntity, final boolean patch, final boolean isInsert) throws DataProviderException {
+    beginWrite();
+    try {
+      updateEntity(rawBaseUri, edmEntitySet, entity, changedEntity, patch, isInsert);
+    } finally {
+      endWrite();
+    }
+  }
+
+  private void updateEntity(final String rawBaseUri, final EdmEntitySet edmEntitySet, Entity entity,
+      final Entity changedEntity, final boolean patch, final boolean isInsert) throws DataProviderException {
 
     final EdmEntityType entityType = edmEntitySet.getEntityType();
     final List<String> keyNames = entityType.getKeyPredicateNames();
@@ -241,6 +461,7 @@ public class DataProvider {
             patch);
       }
     }
+    entityChanged(edmEntitySet, entity);
 
     // For insert operations collection navigation property bind operations and deep insert operations can be combined.
     // In this case, the bind operations MUST appear before the deep insert operations in the payload.
@@ -269,13 +490,15 @@ public class DataProvider {
       if (!navigationProperty.isCollection() && navigationLink != null && navigationLink.getInlineEntity() == null) {
 
         // Check if partner is available
-        if (navigationProperty.getPartner() != null && entity.getNavigationLink(navPropertyName) != null) {
+        if (navigationProperty.getPartner() != null && entity.getNavigationLink(navPropertyName) != null
+            && entity.getNavigationLink(navPropertyName).getInlineEntity() != null) {
           Entity partnerEntity = entity.getNavigationLink(navPropertyName).getInlineEntity();
-          removeLink(navigationProperty.getPartner(), partnerEntity);
+          removeLink((EdmEntitySet) edmEntitySet.getRelatedBindingTarget(navPropertyName),
+              navigationProperty.getPartner(), partnerEntity);
         }
 
         // Remove link
-        removeLink(navigationProperty, entity);
+        removeLink(edmEntitySet, navigationProperty, entity);
       }
     }
   }
@@ -291,12 +514,12 @@ public class DataProvider {
       if (edmNavProperty.isCollection()) {
         for (final String bindingLink : link.getBindingLinks()) {
           final Entity destEntity = getEntityByURI(rawBaseUri, edmTargetEntitySet, bindingLink);
-          createLink(edmNavProperty, entity, destEntity);
+          createLink(edmEntitySet, edmNavProperty, entity, destEntity);
         }
       } else {
         final String bindingLink = link.getBindingLink();
         final Entity destEntity = getEntityByURI(rawBaseUri, edmTargetEntitySet, bindingLink);
-        createLink(edmNavProperty, entity, destEntity);
+        createLink(edmEntitySet, edmNavProperty, entity, destEntity);
       }
     }
   }
@@ -333,20 +556,23 @@ public class DataProvider {
               createInlineEntities(rawBaseUri, target, navigationLink.getInlineEntitySet());
 
           for (final Entity inlineEntity : entities) {
-            createLink(navigationProperty, entity, inlineEntity);
+            createLink(edmEntitySet, navigationProperty, entity, inlineEntity);
           }
         } else if (!navigationProperty.isCollection() && navigationLink.getInlineEntity() != null) {
           final Entity inlineEntity = createInlineEntity(rawBaseUri, target, navigationLink.getInlineEntity());
-          createLink(navigationProperty, entity, inlineEntity);
+          createLink(edmEntitySet, navigationProperty, entity, inlineEntity);
         }
       }
     }
   }
 
-  private void removeLink(EdmNavigationProperty navigationProperty, Entity entity) {
+  private void removeLink(final EdmEntitySet edmEntitySet, final EdmNavigationProperty navigationProperty,
+      Entity entity) {
     final Link link = entity.getNavigationLink(navigationProperty.getName());
     if (link != null) {
-      entity.getNavigationLinks().remove(link);
+      link.setInlineEntity(null);
+      link.setInlineEntitySet(null);
+      markChanged(edmEntitySet.getName(), entity);
     }
   }
 
@@ -365,40 +591,59 @@ public class DataProvider {
       final Entity changedEntity) throws DataProviderException {
 
     final Entity inlineEntity = create(targetEntitySet);
-    update(rawBaseUri, targetEntitySet, inlineEntity, changedEntity, false, true);
+    updateEntity(rawBaseUri, targetEntitySet, inlineEntity, changedEntity, false, true);
 
     return inlineEntity;
   }
 
-  private void createLink(final EdmNavigationProperty navigationProperty, final Entity srcEntity,
-      final Entity destEntity) {
-    setLink(navigationProperty, srcEntity, destEntity);
+  private void createLink(final EdmEntitySet srcEntitySet, final EdmNavigationProperty navigationProperty,
+      final Entity srcEntity, final Entity destEntity) {
+    setLink(srcEntitySet, navigationProperty, srcEntity, destEntity);
 
     final EdmNavigationProperty partnerNavigationProperty = navigationProperty.getPartner();
     if (partnerNavigationProperty != null) {
-      setLink(partnerNavigationProperty, destEntity, srcEntity);
+      setLink((EdmEntitySet) srcEntitySet.getRelatedBindingTarget(navigationProperty.getName()),
+          partnerNavigationProperty, destEntity, srcEntity);
     }
   }
 
-  private void setLink(final EdmNavigationProperty navigationProperty, Entity srcEntity, final Entity targetEntity) {
+  private void setLink(final EdmEntitySet srcEntitySet, final EdmNavigationProperty navigationProperty,
+      Entity srcEntity, final Entity targetEntity) {
+    final Link link = getNavigationLink(srcEntity, navigationProperty);
     if (navigationProperty.isCollection()) {
-      DataCreator.setLinks(srcEntity, navigationProperty.getName(), targetEntity);
+      if (link.getInlineEntitySet() == null) {
+        link.setInlineEntitySet(new SnapshotEntityCollection());
+      }
+      link.getInlineEntitySet().getEntities().add(targetEntity);
     } else {
-      DataCreator.setLink(srcEntity, navigationProperty.getName(), targetEntity);
+      link.setInlineEntity(targetEntity);
     }
+    markChanged(srcEntitySet.getName(), srcEntity);
   }
 
-  @SuppressWarnings({ "unchecked" })
+  /** Updates a property of a stored entity in place; collection values are replaced as a whole. */
   public void updateProperty(final EdmProperty edmProperty, Property property, final Property newProperty,
       final boolean patch) throws DataProviderException {
+    beginWrite();
+    try {
+      updatePropertyValue(edmProperty, property, newProperty, patch);
+    } finally {
+      endWrite();
+    }
+  }
+
+  @SuppressWarnings({ "unchecked" })
+  private void updatePropertyValue(final EdmProperty edmProperty, Property property, final Property newProperty,
+      final boolean patch) throws DataProviderException {
     if (edmProperty.isPrimitive()) {
       if (newProperty != null || !patch) {
         final Object value = newProperty == null ? null : newProperty.getValue();
         property.setValue(property.getValueType(), value);
       }
     } else if (edmProperty.isCollection()) {
-      // Updating collection properties mean replacing all entites with the given ones
-      property.asCollection().clear();
+      // Updating collection properties mean replacing all entites with the given ones.
+      // The new values are collected in a new list; concurrent readers may iterate over the old one.
+      List<Object> values = new ArrayList<Object>();
 
       if (newProperty != null) {
         if (edmProperty.getType().getKind() == EdmTypeKind.COMPLEX) {
@@ -407,20 +652,20 @@ public class DataProvider {
 
           // Create each complex value
           for (final ComplexValue complexValue : complexValues) {
-            ((List<ComplexValue>) property.asCollection()).add(createComplexValue(edmProperty, complexValue, patch));
+            values.add(createComplexValue(edmProperty, complexValue, patch));
           }
         } else {
           // Primitive type
-          final List<Object> values = (List<Object>) newProperty.asCollection();
-          ((List<Object>) property.asCollection()).addAll(values);
+          values.addAll(newProperty.asCollection());
         }
       }
+      property.setValue(property.getValueType(), values);
     } else {
       final EdmComplexType type = (EdmComplexType) edmProperty.getType();
       for (final String propertyName : type.getPropertyNames()) {
         final List<Property> newProperties = newProperty == null || newProperty.asComplex() == null ? null :
             newProperty.asComplex().getValue();
-        updateProperty(type.getStructuralProperty(propertyName),
+        updatePropertyValue(type.getStructuralProperty(propertyName),
             findProperty(propertyName, property.asComplex().getValue()),
             newProperties == null ? null : findProperty(propertyName, newProperties),
             patch);
@@ -465,14 +710,280 @@ public class DataProvider {
     return null;
   }
 
+  /**
+   * Gets the full-text index over the string properties of the entities of an entity set.
+   * The index is built when it is requested for the first time
+   * and maintained by all methods of this data provider that modify entities afterwards.
+   */
+  public SearchIndex getSearchIndex(final EdmEntitySet edmEntitySet) throws DataProviderException {
+    final SearchIndex existingIndex = getExistingSearchIndex(edmEntitySet);
+    if (existingIndex != null) {
+      return existingIndex;
+    }
+    // The index is built with writers excluded so that it misses no modification.
+    writeLock.lock();
+    try {
+      return createSearchIndex(edmEntitySet);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  private SearchIndex createSearchIndex(final EdmEntitySet edmEntitySet) throws DataProviderException {
+    synchronized (searchIndexes) {
+      SearchIndex searchIndex = searchIndexes.get(edmEntitySet.getName());
+      if (searchIndex == null) {
+        final EdmEntityType entityType = edmEntitySet.getEntityType();
+        final EdmPrimitiveType stringType = odata.createPrimitiveTypeInstance(EdmPrimitiveTypeKind.String);
+        List<String> propertyNames = new ArrayList<String>();
+        for (final String propertyName : entityType.getPropertyNames()) {
+          if (entityType.getStructuralProperty(propertyName).getType() == stringType) {
+            propertyNames.add(propertyName);
+          }
+        }
+        searchIndex = odata.createSearchIndex(propertyNames);
+        for (final Entity entity : readAll(edmEntitySet).getEntities()) {
+          searchIndex.index(entity);
+        }
+        searchIndexes.put(edmEntitySet.getName(), searchIndex);
+      }
+      return searchIndex;
+    }
+  }
+
+  /**
+   * Updates the entries of an entity in the full-text index and the secondary indexes of its entity set
+   * and drops the cached counts of the entity set.
+   * To be called after the properties of the entity have been changed directly.
+   */
+  public void entityChanged(final EdmEntitySet edmEntitySet, final Entity entity) {
+    beginWrite();
+    try {
+      final SearchIndex searchIndex = getExistingSearchIndex(edmEntitySet);
+      if (searchIndex != null) {
+        searchIndex.index(entity);
+      }
+      for (final SecondaryIndex index : getIndexes(edmEntitySet).values()) {
+        index.index(entity);
+      }
+      countCache.invalidate(edmEntitySet.getName());
+      markChanged(edmEntitySet.getName(), entity);
+    } finally {
+      endWrite();
+    }
+  }
+
+  /**
+   * Declares a secondary index on a primitive property of the entities of an entity set.
+   * The index is built immediately and maintained by all methods of this data provider that modify entities.
+   */
+  public void createIndex(final String entitySetName, final String propertyName, final SecondaryIndex.Kind kind) {
+    writeLock.lock();
+    try {
+      SecondaryIndex index = new SecondaryIndex(propertyName, kind);
+      for (final Entity entity : data.get(entitySetName).getEntities()) {
+        index.index(entity);
+      }
+      synchronized (secondaryIndexes) {
+        Map<String, SecondaryIndex> indexes = secondaryIndexes.get(entitySetName);
+        if (indexes == null) {
+          indexes = new HashMap<String, SecondaryIndex>();
+          secondaryIndexes.put(entitySetName, indexes);
+        }
+        indexes.put(propertyName, index);
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Gets the secondary indexes of an entity set by their property names.
+   * The indexes are not snapshots; they reflect all changes made so far.
+   */
+  public Map<String, SecondaryIndex> getIndexes(final EdmEntitySet edmEntitySet) {
+    synchronized (secondaryIndexes) {
+      final Map<String, SecondaryIndex> indexes = secondaryIndexes.get(edmEntitySet.getName());
+      return indexes == null ? Collections.<String, SecondaryIndex> emptyMap() :
+          new HashMap<String, SecondaryIndex>(indexes);
+    }
+  }
+
+  /** Gets the cache for the results of count requests. */
+  public CountCache getCountCache() {
+    return countCache;
+  }
+
+  private SearchIndex getExistingSearchIndex(final EdmEntitySet edmEntitySet) {
+    synchronized (searchIndexes) {
+      return searchIndexes.get(edmEntitySet.getName());
+    }
+  }
+
   public byte[] readMedia(final Entity entity) {
     return (byte[]) entity.getProperty(MEDIA_PROPERTY_NAME).asPrimitive();
   }
 
-  public void setMedia(Entity entity, byte[] media, String type) {
-    entity.getProperties().remove(entity.getProperty(MEDIA_PROPERTY_NAME));
-    entity.addProperty(DataCreator.createPrimitive(MEDIA_PROPERTY_NAME, media));
-    entity.setMediaContentType(type);
+  /**
+   * Sets the media content of a stored entity in place.
+   * Entities of media entity sets have the media property from their creation on, so that the property list
+   * of a visible entity is never changed structurally.
+   */
+  public void setMedia(final EdmEntitySet edmEntitySet, Entity entity, final byte[] media, final String type) {
+    beginWrite();
+    try {
+      entity.getProperty(MEDIA_PROPERTY_NAME).setValue(ValueType.PRIMITIVE, media);
+      entity.setMediaContentType(type);
+      markChanged(edmEntitySet.getName(), entity);
+    } finally {
+      endWrite();
+    }
+  }
+
+  /**
+   * Starts a transaction of the current thread.
+   * All changes until {@link #commitTransaction()} are made with the write lock held
+   * and are written to the data store as one commit.
+   */
+  public void beginTransaction() {
+    beginWrite();
+  }
+
+  /** Ends a transaction started with {@link #beginTransaction()}. */
+  public void commitTransaction() {
+    endWrite();
+  }
+
+  private void beginWrite() {
+    writeLock.lock();
+  }
+
+  /**
+   * Releases the write lock.
+   * The outermost release writes the changes made meanwhile to the data store
+   * and waits until they are durable, without holding the lock.
+   * If a snapshot is due, the data is captured with the lock held and written after releasing it.
+   */
+  private void endWrite() {
+    final boolean outermost = writeLock.getHoldCount() == 1;
+    long position = -1;
+    DataStore.Snapshot snapshot = null;
+    try {
+      if (store != null && outermost && !(changedEntities.isEmpty() && deletedEntities.isEmpty())) {
+        position = storeChanges();
+        if (store.isSnapshotDue()) {
+          snapshot = store.startSnapshot(data);
+        }
+      }
+    } catch (final IOException e) {
+      throw new ODataRuntimeException("Storing the changes failed.", e);
+    } finally {
+      if (outermost) {
+        changedEntities.clear();
+        deletedEntities.clear();
+      }
+      writeLock.unlock();
+    }
+    if (position >= 0) {
+      try {
+        store.sync(position);
+      } catch (final IOException e) {
+        throw new ODataRuntimeException("Storing the changes failed.", e);
+      }
+    }
+    if (snapshot != null) {
+      try {
+        store.writeSnapshot(snapshot, createCodec());
+      } catch (final IOException e) {
+        // The changes are durable in the log; the next snapshot will cover them.
+        LOG.error("Writing a snapshot failed.", e);
+      }
+    }
+  }
+
+  private void markChanged(final String entitySetName, final Entity entity) {
+    if (store != null) {
+      changedEntities.put(entity, entitySetName);
+    }
+  }
+
+  private long storeChanges() throws IOException {
+    final EntityCodec codec = createCodec();
+    Map<EntityCodec.Reference, Entity> changes = new IdentityHashMap<EntityCodec.Reference, Entity>();
+    for (final Map.Entry<Entity, String> change : changedEntities.entrySet()) {
+      final EntityCodec.Reference reference = codec.getReference(change.getValue(), change.getKey());
+      if (reference != null) {
+        changes.put(reference, change.getKey());
+      }
+    }
+
+    // Deletions are written first; a key of a deleted entity can only be used again by an entity created later.
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(buffer);
+    out.writeInt(deletedEntities.size() + changes.size());
+    for (final EntityCodec.Reference reference : deletedEntities) {
+      EntityCodec.writeDeleteRecord(out, reference);
+    }
+    for (final Map.Entry<EntityCodec.Reference, Entity> change : changes.entrySet()) {
+      codec.writeEntityRecord(out, change.getKey(), change.getValue());
+    }
+    out.flush();
+
+    return store.append(buffer.toByteArray());
+  }
+
+  /**
+   * Creates the codec for the entities from the EDM alone;
+   * the entity sets of the targets of navigation links are given by the navigation-property bindings.
+   */
+  private EntityCodec createCodec() throws IOException {
+    if (edm == null) {
+      throw new IOException("The data provider has no EDM.");
+    }
+    Map<String, List<String>> keyNames = new HashMap<String, List<String>>();
+    Map<String, Map<String, String>> linkTargets = new HashMap<String, Map<String, String>>();
+    for (final EdmEntitySet edmEntitySet : edm.getEntityContainer().getEntitySets()) {
+      final EdmEntityType entityType = edmEntitySet.getEntityType();
+      keyNames.put(edmEntitySet.getName(), entityType.getKeyPredicateNames());
+      Map<String, String> targets = new HashMap<String, String>();
+      for (final String navigationPropertyName : entityType.getNavigationPropertyNames()) {
+        final EdmBindingTarget target = edmEntitySet.getRelatedBindingTarget(navigationPropertyName);
+        if (target instanceof EdmEntitySet) {
+          targets.put(navigationPropertyName, target.getName());
+        }
+      }
+      linkTargets.put(edmEntitySet.getName(), targets);
+    }
+    return new EntityCodec(keyNames, linkTargets);
+  }
+
+  private EntityCodec.Reference createReference(final EdmEntitySet edmEntitySet, final Entity entity) {
+    final List<String> keyNames = edmEntitySet.getEntityType().getKeyPredicateNames();
+    List<Object> keyValues = new ArrayList<Object>(keyNames.size());
+    for (final String keyName : keyNames) {
+      keyValues.add(entity.getProperty(keyName).getValue());
+    }
+    return new EntityCodec.Reference(edmEntitySet.getName(), keyNames, keyValues);
+  }
+
+  /** Writes a final snapshot to the data store, if there is one, and closes it. */
+  public void close() throws IOException {
+    if (store != null) {
+      try {
+        if (edm != null) {
+          DataStore.Snapshot snapshot;
+          writeLock.lock();
+          try {
+            snapshot = store.startSnapshot(data);
+          } finally {
+            writeLock.unlock();
+          }
+          store.writeSnapshot(snapshot, createCodec());
+        }
+      } finally {
+        store.close();
+      }
+    }
   }
 
   public EntityCollection readFunctionEntitySet(final EdmFunction function, final List<UriParameter> parameters)
@@ -522,6 +1033,28 @@ public class DataProvider {
 
   public void setEdm(final Edm edm) {
     this.edm = edm;
+    if (!navigationLinksCreated) {
+      writeLock.lock();
+      try {
+        if (!navigationLinksCreated) {
+          createNavigationLinks(edm.getEntityContainer());
+          navigationLinksCreated = true;
+        }
+      } finally {
+        writeLock.unlock();
+      }
+    }
+  }
+
+  private void createNavigationLinks(final EdmEntityContainer entityContainer) {
+    for (final EdmEntitySet edmEntitySet : entityContainer.getEntitySets()) {
+      final EntityCollection entitySet = data.get(edmEntitySet.getName());
+      if (entitySet != null) {
+        for (Entity entity : entitySet.getEntities()) {
+          createNavigationLinks(edmEntitySet.getEntityType(), entity);
+        }
+      }
+    }
   }
 
   public void setOData(final OData odata) {
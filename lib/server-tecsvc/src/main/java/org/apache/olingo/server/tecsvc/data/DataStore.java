@@ -0,0 +1,565 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.tecsvc.data;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.Link;
+import org.apache.olingo.server.tecsvc.data.EntityCodec.LinkState;
+import org.apache.olingo.server.tecsvc.data.EntityCodec.Reference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Durable storage of the data of a {@link DataProvider} in a directory.
+ * <p>Every commit of the data provider is appended to a write-ahead log as one frame with a checksum.
+ * Commits are made durable by {@link #sync(long)}; concurrent commits share a single file-system sync.
+ * Each frame contains the complete state of all entities changed by the commit, so replaying it is idempotent.</p>
+ * <p>The log consists of numbered generations. After a configurable number of commits a new generation
+ * is started and the entity sets are captured; the captured data is then written to a snapshot with the
+ * number of the new generation, without blocking further commits. Once the snapshot is durable,
+ * the older generations of the log and older snapshots are deleted. Files are never replaced.</p>
+ * <p>At startup the latest snapshot is read, and the log generations written after it are replayed;
+ * a frame torn by a crash at the end of the log is discarded, together with anything after it.</p>
+ */
+public class DataStore {
+
+  public static final int DEFAULT_SNAPSHOT_INTERVAL = 1000;
+
+  private static final Logger LOG = LoggerFactory.getLogger(DataStore.class);
+
+  private static final String SNAPSHOT_PREFIX = "data.snapshot.";
+  private static final String LOG_PREFIX = "data.log.";
+  private static final String TEMPORARY_SUFFIX = ".tmp";
+  private static final int SNAPSHOT_MAGIC = 0x4F444453;
+  private static final int FRAME_HEADER_LENGTH = 8;
+
+  private final File directory;
+  private final int snapshotInterval;
+  /** The generation commits are appended to; guarded by this store */
+  private LogGeneration log;
+  /** Generations that have been replaced by a newer one but may not be durable yet; guarded by this store */
+  private final List<LogGeneration> rolledLogs = new ArrayList<LogGeneration>();
+  private int commitsSinceSnapshot = 0;
+  private boolean snapshotInProgress = false;
+  private final Object syncLock = new Object();
+  /** The position in the sequence of all log generations up to which the log is durable; guarded by syncLock */
+  private long syncedPosition = 0;
+
+  /**
+   * Opens the store in a directory, which is created if necessary.
+   * The data must be restored with {@link #recover(Map)} before any commit is appended.
+   * @param directory the directory of the log and the snapshots
+   * @param snapshotInterval the number of commits after which a new snapshot is written
+   */
+  public DataStore(final File directory, final int snapshotInterval) throws IOException {
+    if (snapshotInterval <= 0) {
+      throw new IllegalArgumentException("The snapshot interval must be positive.");
+    }
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create directory " + directory);
+    }
+    this.directory = directory;
+    this.snapshotInterval = snapshotInterval;
+  }
+
+  /**
+   * Restores the stored data: the entity sets of the latest snapshot replace the given ones,
+   * and the changes of the log are applied on top.
+   * @param data the entity sets by name; modified in place
+   */
+  synchronized void recover(final Map<String, EntityCollection> data) throws IOException {
+    final long start = System.currentTimeMillis();
+    final SortedMap<Long, File> snapshots = listFiles(SNAPSHOT_PREFIX);
+    final SortedMap<Long, File> logs = listFiles(LOG_PREFIX);
+    Recovery recovery = new Recovery(data);
+    long generation = 0;
+    if (!snapshots.isEmpty()) {
+      generation = snapshots.lastKey();
+      readSnapshot(snapshots.get(generation), recovery);
+    }
+    // Files from before the snapshot are left over if the store has been stopped while cleaning up.
+    deleteFiles(snapshots.headMap(generation));
+    deleteFiles(logs.headMap(generation));
+
+    long position = 0;
+    boolean torn = false;
+    for (final Map.Entry<Long, File> entry : logs.tailMap(generation).entrySet()) {
+      if (torn) {
+        // Commits after a torn frame have never been reported as durable.
+        deleteFile(entry.getValue());
+        continue;
+      }
+      if (log != null) {
+        log.file.close();
+      }
+      generation = entry.getKey();
+      log = new LogGeneration(generation, position, new RandomAccessFile(entry.getValue(), "rw"));
+      torn = !replayLog(log, recovery);
+      position = log.start + log.file.length();
+    }
+    if (log == null) {
+      log = new LogGeneration(generation, 0, new RandomAccessFile(getFile(LOG_PREFIX, generation), "rw"));
+    }
+    log.file.seek(log.file.length());
+    recovery.resolveLinks();
+    commitsSinceSnapshot = recovery.commits;
+    LOG.info("Recovered data from {} with {} commits replayed in {} ms.",
+        new Object[] { directory, recovery.commits, System.currentTimeMillis() - start });
+  }
+
+  private SortedMap<Long, File> listFiles(final String prefix) {
+    SortedMap<Long, File> files = new TreeMap<Long, File>();
+    final File[] directoryFiles = directory.listFiles();
+    for (final File file : directoryFiles == null ? new File[0] : directoryFiles) {
+      final String name = file.getName();
+      if (name.startsWith(prefix) && name.endsWith(TEMPORARY_SUFFIX)) {
+        // A snapshot that has not been completed
+        deleteFile(file);
+      } else if (name.startsWith(prefix)) {
+        try {
+          files.put(Long.valueOf(name.substring(prefix.length())), file);
+        } catch (final NumberFormatException e) {
+          LOG.warn("Ignoring unknown file {}.", file);
+        }
+      }
+    }
+    return files;
+  }
+
+  private void deleteFiles(final Map<Long, File> files) {
+    for (final File file : files.values()) {
+      deleteFile(file);
+    }
+  }
+
+  private void deleteFile(final File file) {
+    if (file.exists() && !file.delete()) {
+      LOG.warn("Cannot delete {}.", file);
+    }
+  }
+
+  private File getFile(final String prefix, final long generation) {
+    return new File(directory, prefix + generation);
+  }
+
+  private void readSnapshot(final File snapshot, final Recovery recovery) throws IOException {
+    // The content is copied out of the file; a mapped buffer would keep the file open until it is collected.
+    final byte[] bytes;
+    RandomAccessFile file = new RandomAccessFile(snapshot, "r");
+    try {
+      if (file.length() > Integer.MAX_VALUE) {
+        throw new IOException("Snapshot " + snapshot + " is too large.");
+      }
+      bytes = new byte[(int) file.length()];
+      file.readFully(bytes);
+    } finally {
+      file.close();
+    }
+    final int contentLength = bytes.length - 8;
+    if (contentLength < 4 || ByteBuffer.wrap(bytes).getLong(contentLength) != checksum(bytes, contentLength)) {
+      throw new IOException("Snapshot " + snapshot + " is corrupt.");
+    }
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, contentLength));
+    if (in.readInt() != SNAPSHOT_MAGIC) {
+      throw new IOException("File " + snapshot + " is not a snapshot.");
+    }
+    final int entitySetCount = in.readInt();
+    for (int i = 0; i < entitySetCount; i++) {
+      final String entitySetName = EntityCodec.readString(in);
+      final int entityCount = in.readInt();
+      List<Entity> entities = new ArrayList<Entity>(entityCount);
+      for (int j = 0; j < entityCount; j++) {
+        List<LinkState> links = new ArrayList<LinkState>();
+        final Entity entity = EntityCodec.readEntity(in, links);
+        recovery.links.put(entity, links);
+        entities.add(entity);
+      }
+      recovery.replaceEntitySet(entitySetName, entities);
+    }
+  }
+
+  private static long checksum(final byte[] bytes, final int length) {
+    CRC32 crc = new CRC32();
+    crc.update(bytes, 0, length);
+    return crc.getValue();
+  }
+
+  /**
+   * Applies the commits of a log generation.
+   * @return whether the generation is complete; a frame torn by a crash at its end is truncated
+   */
+  private boolean replayLog(final LogGeneration log, final Recovery recovery) throws IOException {
+    final long size = log.channel.size();
+    long position = 0;
+    log.file.seek(0);
+    while (position + FRAME_HEADER_LENGTH <= size) {
+      final int length = log.file.readInt();
+      final int checksum = log.file.readInt();
+      if (length < 0 || position + FRAME_HEADER_LENGTH + length > size) {
+        break;
+      }
+      byte[] payload = new byte[length];
+      log.file.readFully(payload);
+      CRC32 crc = new CRC32();
+      crc.update(payload);
+      if ((int) crc.getValue() != checksum) {
+        break;
+      }
+      recovery.apply(new DataInputStream(new ByteArrayInputStream(payload)));
+      position += FRAME_HEADER_LENGTH + length;
+    }
+    if (position < size) {
+      LOG.warn("Discarding {} bytes of incomplete commits at the end of {}.",
+          size - position, getFile(LOG_PREFIX, log.generation));
+      log.channel.truncate(position);
+      log.channel.force(true);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Appends a commit to the log without waiting for it to become durable.
+   * @return the position in the log to pass to {@link #sync(long)}
+   */
+  synchronized long append(final byte[] payload) throws IOException {
+    CRC32 crc = new CRC32();
+    crc.update(payload);
+    ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_LENGTH + payload.length);
+    frame.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+    frame.flip();
+    while (frame.hasRemaining()) {
+      log.channel.write(frame);
+    }
+    commitsSinceSnapshot++;
+    return log.start + log.channel.position();
+  }
+
+  /**
+   * Waits until the log is durable up to the given position.
+   * A thread arriving while another one syncs the log is served by the next sync,
+   * which covers all commits appended in the meantime, also to generations started meanwhile.
+   */
+  void sync(final long position) throws IOException {
+    synchronized (syncLock) {
+      if (syncedPosition < position) {
+        final List<LogGeneration> rolled;
+        final LogGeneration current;
+        final long end;
+        synchronized (this) {
+          rolled = new ArrayList<LogGeneration>(rolledLogs);
+          current = log;
+          end = current.start + current.channel.size();
+        }
+        for (final LogGeneration generation : rolled) {
+          generation.channel.force(false);
+        }
+        current.channel.force(false);
+        synchronized (this) {
+          rolledLogs.removeAll(rolled);
+        }
+        for (final LogGeneration generation : rolled) {
+          generation.file.close();
+        }
+        syncedPosition = end;
+      }
+    }
+  }
+
+  synchronized boolean isSnapshotDue() {
+    return !snapshotInProgress && commitsSinceSnapshot >= snapshotInterval;
+  }
+
+  /**
+   * Starts a new log generation and captures the entity sets for a snapshot at its start.
+   * The caller must make sure that the data is not modified meanwhile, so that the captured data
+   * contains exactly the commits of the older generations; the snapshot is then written with
+   * {@link #writeSnapshot(Snapshot, EntityCodec)} while further commits are appended.
+   * A snapshot still being written is waited for.
+   */
+  synchronized Snapshot startSnapshot(final Map<String, EntityCollection> data) throws IOException {
+    while (snapshotInProgress) {
+      try {
+        wait();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for the previous snapshot.");
+      }
+    }
+    final long generation = log.generation + 1;
+    final long start = log.start + log.channel.size();
+    final LogGeneration next =
+        new LogGeneration(generation, start, new RandomAccessFile(getFile(LOG_PREFIX, generation), "rw"));
+    rolledLogs.add(log);
+    log = next;
+    commitsSinceSnapshot = 0;
+    snapshotInProgress = true;
+
+    // The entity sets are copy-on-write lists, so copying them is cheap and the copies do not change.
+    Map<String, List<Entity>> entitySets = new LinkedHashMap<String, List<Entity>>();
+    for (final Map.Entry<String, EntityCollection> entry : data.entrySet()) {
+      entitySets.put(entry.getKey(), new ArrayList<Entity>(entry.getValue().getEntities()));
+    }
+    return new Snapshot(generation, start, entitySets);
+  }
+
+  /**
+   * Writes a snapshot started with {@link #startSnapshot(Map)} to a new file
+   * and deletes the log generations and snapshots it supersedes.
+   * Entities changed after the start are written with their current state;
+   * replaying the newer log generations after the snapshot restores their state at the end of the log.
+   */
+  void writeSnapshot(final Snapshot snapshot, final EntityCodec codec) throws IOException {
+    try {
+      final File temporaryFile = new File(directory, SNAPSHOT_PREFIX + snapshot.generation + TEMPORARY_SUFFIX);
+      FileOutputStream fileOut = new FileOutputStream(temporaryFile);
+      try {
+        CheckedOutputStream checkedOut = new CheckedOutputStream(new BufferedOutputStream(fileOut), new CRC32());
+        DataOutputStream out = new DataOutputStream(checkedOut);
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeInt(snapshot.entitySets.size());
+        for (final Map.Entry<String, List<Entity>> entry : snapshot.entitySets.entrySet()) {
+          EntityCodec.writeString(out, entry.getKey());
+          out.writeInt(entry.getValue().size());
+          for (final Entity entity : entry.getValue()) {
+            codec.writeEntity(out, entry.getKey(), entity);
+          }
+        }
+        out.writeLong(checkedOut.getChecksum().getValue());
+        out.flush();
+        fileOut.getFD().sync();
+      } finally {
+        fileOut.close();
+      }
+      final File file = getFile(SNAPSHOT_PREFIX, snapshot.generation);
+      if (!temporaryFile.renameTo(file)) {
+        throw new IOException("Cannot create snapshot " + file);
+      }
+      deleteSupersededFiles(snapshot);
+    } finally {
+      synchronized (this) {
+        snapshotInProgress = false;
+        notifyAll();
+      }
+    }
+  }
+
+  /** Deletes the log generations and snapshots older than a durable snapshot. */
+  private void deleteSupersededFiles(final Snapshot snapshot) throws IOException {
+    synchronized (syncLock) {
+      synchronized (this) {
+        for (Iterator<LogGeneration> iterator = rolledLogs.iterator(); iterator.hasNext();) {
+          final LogGeneration rolled = iterator.next();
+          if (rolled.generation < snapshot.generation) {
+            rolled.file.close();
+            iterator.remove();
+          }
+        }
+      }
+      // The snapshot contains all commits of the older generations, whether they have been synced or not.
+      syncedPosition = Math.max(syncedPosition, snapshot.start);
+    }
+    deleteFiles(listFiles(LOG_PREFIX).headMap(snapshot.generation));
+    deleteFiles(listFiles(SNAPSHOT_PREFIX).headMap(snapshot.generation));
+  }
+
+  /** Closes the log; the store cannot be used afterwards. */
+  public void close() throws IOException {
+    synchronized (syncLock) {
+      synchronized (this) {
+        for (final LogGeneration rolled : rolledLogs) {
+          rolled.file.close();
+        }
+        rolledLogs.clear();
+        if (log != null) {
+          log.file.close();
+        }
+      }
+    }
+  }
+
+  /** The entity sets captured for a snapshot at the start of a log generation */
+  static class Snapshot {
+    private final long generation;
+    private final long start;
+    private final Map<String, List<Entity>> entitySets;
+
+    private Snapshot(final long generation, final long start, final Map<String, List<Entity>> entitySets) {
+      this.generation = generation;
+      this.start = start;
+      this.entitySets = entitySets;
+    }
+  }
+
+  /** A file of the log, with the position of its start in the sequence of all generations */
+  private static class LogGeneration {
+    private final long generation;
+    private final long start;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+
+    LogGeneration(final long generation, final long start, final RandomAccessFile file) {
+      this.generation = generation;
+      this.start = start;
+      this.file = file;
+      channel = file.getChannel();
+    }
+  }
+
+  /** Applies snapshot contents and log records to the data and collects the navigation links to resolve. */
+  private static class Recovery {
+    private final Map<String, EntityCollection> data;
+    private final Map<String, Map<List<Object>, Entity>> keys = new HashMap<String, Map<List<Object>, Entity>>();
+    private final Map<Entity, List<LinkState>> links = new IdentityHashMap<Entity, List<LinkState>>();
+    private int commits = 0;
+
+    Recovery(final Map<String, EntityCollection> data) {
+      this.data = data;
+    }
+
+    void replaceEntitySet(final String entitySetName, final List<Entity> entities) {
+      EntityCollection entitySet = new EntityCollection();
+      entitySet.getEntities().addAll(entities);
+      data.put(entitySetName, entitySet);
+      keys.remove(entitySetName);
+    }
+
+    void apply(final DataInput in) throws IOException {
+      final int recordCount = in.readInt();
+      for (int i = 0; i < recordCount; i++) {
+        final byte type = in.readByte();
+        final Reference reference = EntityCodec.readReference(in);
+        final Entity existing = find(reference);
+        if (type == EntityCodec.ENTITY_RECORD) {
+          List<LinkState> entityLinks = new ArrayList<LinkState>();
+          final Entity entity = EntityCodec.readEntity(in, entityLinks);
+          if (existing == null) {
+            getEntitySet(reference.entitySetName).getEntities().add(entity);
+            getKeys(reference).put(reference.keyValues, entity);
+            links.put(entity, entityLinks);
+          } else {
+            existing.setType(entity.getType());
+            existing.setMediaContentType(entity.getMediaContentType());
+            existing.getProperties().clear();
+            existing.getProperties().addAll(entity.getProperties());
+            links.put(existing, entityLinks);
+          }
+        } else if (type == EntityCodec.DELETE_RECORD) {
+          if (existing != null) {
+            getEntitySet(reference.entitySetName).getEntities().remove(existing);
+            getKeys(reference).remove(reference.keyValues);
+            links.remove(existing);
+          }
+        } else {
+          throw new IOException("Unknown log record type " + type);
+        }
+      }
+      commits++;
+    }
+
+    /** Sets the navigation links of all read entities; links to entities that do not exist anymore are dropped. */
+    void resolveLinks() {
+      for (final Map.Entry<Entity, List<LinkState>> entry : links.entrySet()) {
+        final Entity entity = entry.getKey();
+        for (final Link link : entity.getNavigationLinks()) {
+          link.setInlineEntity(null);
+          link.setInlineEntitySet(null);
+        }
+        for (final LinkState state : entry.getValue()) {
+          Link link = entity.getNavigationLink(state.title);
+          if (link == null) {
+            link = new Link();
+            link.setTitle(state.title);
+            entity.getNavigationLinks().add(link);
+          }
+          link.setType(state.type);
+          List<Entity> targets = new ArrayList<Entity>();
+          for (final Reference reference : state.targets) {
+            final Entity target = find(reference);
+            if (target != null) {
+              targets.add(target);
+            }
+          }
+          if (state.collection && !targets.isEmpty()) {
+            EntityCollection inlineEntitySet = new EntityCollection();
+            inlineEntitySet.getEntities().addAll(targets);
+            link.setInlineEntitySet(inlineEntitySet);
+          } else if (!state.collection && !targets.isEmpty()) {
+            link.setInlineEntity(targets.get(0));
+          }
+        }
+      }
+      links.clear();
+    }
+
+    private Entity find(final Reference reference) {
+      return data.containsKey(reference.entitySetName) ? getKeys(reference).get(reference.keyValues) : null;
+    }
+
+    private EntityCollection getEntitySet(final String entitySetName) {
+      EntityCollection entitySet = data.get(entitySetName);
+      if (entitySet == null) {
+        entitySet = new EntityCollection();
+        data.put(entitySetName, entitySet);
+      }
+      return entitySet;
+    }
+
+    private Map<List<Object>, Entity> getKeys(final Reference reference) {
+      Map<List<Object>, Entity> entitySetKeys = keys.get(reference.entitySetName);
+      if (entitySetKeys == null) {
+        entitySetKeys = new HashMap<List<Object>, Entity>();
+        for (final Entity entity : getEntitySet(reference.entitySetName).getEntities()) {
+          List<Object> key = new ArrayList<Object>(reference.keyNames.size());
+          for (final String keyName : reference.keyNames) {
+            key.add(entity.getProperty(keyName) == null ? null : entity.getProperty(keyName).getValue());
+          }
+          entitySetKeys.put(key, entity);
+        }
+        keys.put(reference.entitySetName, entitySetKeys);
+      }
+      return entitySetKeys;
+    }
+  }
+}
@@ -0,0 +1,429 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.tecsvc.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.UUID;
+
+import org.apache.olingo.commons.api.data.ComplexValue;
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.Link;
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.data.ValueType;
+
+/**
+ * Binary encoding of entities for the log and the snapshots of the {@link DataStore}.
+ * <p>Navigation links are written as references to their target entities, consisting of the name of the entity set
+ * and the key of the target entity, and are resolved after all entities have been read.</p>
+ */
+final class EntityCodec {
+
+  static final byte ENTITY_RECORD = 1;
+  static final byte DELETE_RECORD = 2;
+
+  private static final byte LINK_EMPTY = 0;
+  private static final byte LINK_ENTITY = 1;
+  private static final byte LINK_ENTITY_SET = 2;
+
+  private static final byte NULL = 0;
+  private static final byte BOOLEAN = 1;
+  private static final byte BYTE = 2;
+  private static final byte SHORT = 3;
+  private static final byte INTEGER = 4;
+  private static final byte LONG = 5;
+  private static final byte FLOAT = 6;
+  private static final byte DOUBLE = 7;
+  private static final byte DECIMAL = 8;
+  private static final byte BIG_INTEGER = 9;
+  private static final byte STRING = 10;
+  private static final byte BINARY = 11;
+  private static final byte GUID = 12;
+  private static final byte CALENDAR = 13;
+  private static final byte TIMESTAMP = 14;
+  private static final byte DATE = 15;
+  private static final byte COMPLEX = 16;
+  private static final byte COLLECTION = 17;
+  private static final byte SERIALIZED = 18;
+
+  private static final String UTF_8 = "UTF-8";
+
+  /** Reference to an entity by the name of its entity set and its key. */
+  static final class Reference {
+    final String entitySetName;
+    final List<String> keyNames;
+    final List<Object> keyValues;
+
+    Reference(final String entitySetName, final List<String> keyNames, final List<Object> keyValues) {
+      this.entitySetName = entitySetName;
+      this.keyNames = keyNames;
+      this.keyValues = keyValues;
+    }
+  }
+
+  /** Navigation link of an entity as read, with unresolved references to its targets. */
+  static final class LinkState {
+    final String title;
+    final String type;
+    final boolean collection;
+    final List<Reference> targets;
+
+    LinkState(final String title, final String type, final boolean collection, final List<Reference> targets) {
+      this.title = title;
+      this.type = type;
+      this.collection = collection;
+      this.targets = targets;
+    }
+  }
+
+  private final Map<String, List<String>> keyNames;
+  private final Map<String, Map<String, String>> linkTargets;
+
+  /**
+   * @param keyNames names of the key properties by entity-set name
+   * @param linkTargets names of the entity sets of the link targets by navigation-property name,
+   *                    by entity-set name
+   */
+  EntityCodec(final Map<String, List<String>> keyNames, final Map<String, Map<String, String>> linkTargets) {
+    this.keyNames = keyNames;
+    this.linkTargets = linkTargets;
+  }
+
+  /** Gets the reference to an entity of an entity set, or <code>null</code> if the entity set is unknown. */
+  Reference getReference(final String entitySetName, final Entity entity) {
+    final List<String> names = entitySetName == null ? null : keyNames.get(entitySetName);
+    if (names == null) {
+      return null;
+    }
+    List<Object> values = new ArrayList<Object>(names.size());
+    for (final String name : names) {
+      values.add(entity.getProperty(name).getValue());
+    }
+    return new Reference(entitySetName, names, values);
+  }
+
+  /** Writes the complete state of an entity together with its reference. */
+  void writeEntityRecord(final DataOutput out, final Reference reference, final Entity entity) throws IOException {
+    out.writeByte(ENTITY_RECORD);
+    writeReference(out, reference);
+    writeEntity(out, reference.entitySetName, entity);
+  }
+
+  static void writeDeleteRecord(final DataOutput out, final Reference reference) throws IOException {
+    out.writeByte(DELETE_RECORD);
+    writeReference(out, reference);
+  }
+
+  /** Writes an entity of an entity set; the links are written as references into the bound entity sets. */
+  void writeEntity(final DataOutput out, final String entitySetName, final Entity entity) throws IOException {
+    writeString(out, entity.getType());
+    writeString(out, entity.getMediaContentType());
+    writeProperties(out, entity.getProperties());
+
+    final Map<String, String> targetEntitySetNames = linkTargets.get(entitySetName);
+    final List<Link> links = entity.getNavigationLinks();
+    out.writeInt(links.size());
+    for (final Link link : links) {
+      writeString(out, link.getTitle());
+      writeString(out, link.getType());
+      final String targetEntitySetName = targetEntitySetNames == null ? null :
+          targetEntitySetNames.get(link.getTitle());
+      // A snapshot is written while links may be changed; the link is read only once to get a consistent state.
+      final EntityCollection inlineEntitySet = link.getInlineEntitySet();
+      final Entity inlineEntity = link.getInlineEntity();
+      if (inlineEntitySet != null) {
+        List<Reference> targets = new ArrayList<Reference>();
+        for (final Entity target : inlineEntitySet.getEntities()) {
+          final Reference reference = getReference(targetEntitySetName, target);
+          if (reference != null) {
+            targets.add(reference);
+          }
+        }
+        out.writeByte(LINK_ENTITY_SET);
+        out.writeInt(targets.size());
+        for (final Reference target : targets) {
+          writeReference(out, target);
+        }
+      } else {
+        final Reference target = inlineEntity == null ? null : getReference(targetEntitySetName, inlineEntity);
+        if (target == null) {
+          out.writeByte(LINK_EMPTY);
+        } else {
+          out.writeByte(LINK_ENTITY);
+          writeReference(out, target);
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads an entity written by {@link #writeEntity(DataOutput, String, Entity)}.
+   * @param links receives the navigation links of the entity
+   */
+  static Entity readEntity(final DataInput in, final List<LinkState> links) throws IOException {
+    Entity entity = new Entity();
+    entity.setType(readString(in));
+    entity.setMediaContentType(readString(in));
+    entity.getProperties().addAll(readProperties(in));
+
+    final int linkCount = in.readInt();
+    for (int i = 0; i < linkCount; i++) {
+      final String title = readString(in);
+      final String type = readString(in);
+      final byte kind = in.readByte();
+      List<Reference> targets = new ArrayList<Reference>();
+      if (kind == LINK_ENTITY) {
+        targets.add(readReference(in));
+      } else if (kind == LINK_ENTITY_SET) {
+        final int targetCount = in.readInt();
+        for (int j = 0; j < targetCount; j++) {
+          targets.add(readReference(in));
+        }
+      }
+      links.add(new LinkState(title, type, kind == LINK_ENTITY_SET, targets));
+    }
+    return entity;
+  }
+
+  static void writeReference(final DataOutput out, final Reference reference) throws IOException {
+    writeString(out, reference.entitySetName);
+    out.writeInt(reference.keyNames.size());
+    for (int i = 0; i < reference.keyNames.size(); i++) {
+      writeString(out, reference.keyNames.get(i));
+      writeValue(out, reference.keyValues.get(i));
+    }
+  }
+
+  static Reference readReference(final DataInput in) throws IOException {
+    final String entitySetName = readString(in);
+    final int size = in.readInt();
+    List<String> names = new ArrayList<String>(size);
+    List<Object> values = new ArrayList<Object>(size);
+    for (int i = 0; i < size; i++) {
+      names.add(readString(in));
+      values.add(readValue(in));
+    }
+    return new Reference(entitySetName, names, values);
+  }
+
+  private static void writeProperties(final DataOutput out, final List<Property> properties) throws IOException {
+    out.writeInt(properties.size());
+    for (final Property property : properties) {
+      writeString(out, property.getName());
+      writeString(out, property.getType());
+      writeString(out, property.getValueType() == null ? null : property.getValueType().name());
+      writeValue(out, property.getValue());
+    }
+  }
+
+  private static List<Property> readProperties(final DataInput in) throws IOException {
+    final int size = in.readInt();
+    List<Property> properties = new ArrayList<Property>(size);
+    for (int i = 0; i < size; i++) {
+      final String name = readString(in);
+      final String type = readString(in);
+      final String valueType = readString(in);
+      properties.add(new Property(type, name, valueType == null ? null : ValueType.valueOf(valueType), readValue(in)));
+    }
+    return properties;
+  }
+
+  private static void writeValue(final DataOutput out, final Object value) throws IOException {
+    if (value == null) {
+      out.writeByte(NULL);
+    } else if (value instanceof Boolean) {
+      out.writeByte(BOOLEAN);
+      out.writeBoolean((Boolean) value);
+    } else if (value instanceof Byte) {
+      out.writeByte(BYTE);
+      out.writeByte((Byte) value);
+    } else if (value instanceof Short) {
+      out.writeByte(SHORT);
+      out.writeShort((Short) value);
+    } else if (value instanceof Integer) {
+      out.writeByte(INTEGER);
+      out.writeInt((Integer) value);
+    } else if (value instanceof Long) {
+      out.writeByte(LONG);
+      out.writeLong((Long) value);
+    } else if (value instanceof Float) {
+      out.writeByte(FLOAT);
+      out.writeFloat((Float) value);
+    } else if (value instanceof Double) {
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double) value);
+    } else if (value instanceof BigDecimal) {
+      out.writeByte(DECIMAL);
+      writeBytes(out, ((BigDecimal) value).unscaledValue().toByteArray());
+      out.writeInt(((BigDecimal) value).scale());
+    } else if (value instanceof BigInteger) {
+      out.writeByte(BIG_INTEGER);
+      writeBytes(out, ((BigInteger) value).toByteArray());
+    } else if (value instanceof String) {
+      out.writeByte(STRING);
+      writeString(out, (String) value);
+    } else if (value instanceof byte[]) {
+      out.writeByte(BINARY);
+      writeBytes(out, (byte[]) value);
+    } else if (value instanceof UUID) {
+      out.writeByte(GUID);
+      out.writeLong(((UUID) value).getMostSignificantBits());
+      out.writeLong(((UUID) value).getLeastSignificantBits());
+    } else if (value instanceof Calendar) {
+      out.writeByte(CALENDAR);
+      out.writeLong(((Calendar) value).getTimeInMillis());
+      writeString(out, ((Calendar) value).getTimeZone().getID());
+    } else if (value instanceof Timestamp) {
+      out.writeByte(TIMESTAMP);
+      out.writeLong(((Timestamp) value).getTime());
+      out.writeInt(((Timestamp) value).getNanos());
+    } else if (value instanceof Date) {
+      out.writeByte(DATE);
+      out.writeLong(((Date) value).getTime());
+    } else if (value instanceof ComplexValue) {
+      out.writeByte(COMPLEX);
+      writeProperties(out, ((ComplexValue) value).getValue());
+    } else if (value instanceof Collection) {
+      out.writeByte(COLLECTION);
+      out.writeInt(((Collection<?>) value).size());
+      for (final Object item : (Collection<?>) value) {
+        writeValue(out, item);
+      }
+    } else if (value instanceof Serializable) {
+      out.writeByte(SERIALIZED);
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream objectOut = new ObjectOutputStream(bytes);
+      objectOut.writeObject(value);
+      objectOut.close();
+      writeBytes(out, bytes.toByteArray());
+    } else {
+      throw new IOException("Values of type " + value.getClass().getName() + " cannot be stored.");
+    }
+  }
+
+  private static Object readValue(final DataInput in) throws IOException {
+    final byte tag = in.readByte();
+    switch (tag) {
+    case NULL:
+      return null;
+    case BOOLEAN:
+      return in.readBoolean();
+    case BYTE:
+      return in.readByte();
+    case SHORT:
+      return in.readShort();
+    case INTEGER:
+      return in.readInt();
+    case LONG:
+      return in.readLong();
+    case FLOAT:
+      return in.readFloat();
+    case DOUBLE:
+      return in.readDouble();
+    case DECIMAL:
+      final BigInteger unscaledValue = new BigInteger(readBytes(in));
+      return new BigDecimal(unscaledValue, in.readInt());
+    case BIG_INTEGER:
+      return new BigInteger(readBytes(in));
+    case STRING:
+      return readString(in);
+    case BINARY:
+      return readBytes(in);
+    case GUID:
+      final long mostSignificantBits = in.readLong();
+      return new UUID(mostSignificantBits, in.readLong());
+    case CALENDAR:
+      final long millis = in.readLong();
+      Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone(readString(in)));
+      calendar.clear();
+      calendar.setTimeInMillis(millis);
+      return calendar;
+    case TIMESTAMP:
+      Timestamp timestamp = new Timestamp(in.readLong());
+      timestamp.setNanos(in.readInt());
+      return timestamp;
+    case DATE:
+      return new Date(in.readLong());
+    case COMPLEX:
+      ComplexValue complexValue = new ComplexValue();
+      complexValue.getValue().addAll(readProperties(in));
+      return complexValue;
+    case COLLECTION:
+      final int size = in.readInt();
+      List<Object> values = new ArrayList<Object>(size);
+      for (int i = 0; i < size; i++) {
+        values.add(readValue(in));
+      }
+      return values;
+    case SERIALIZED:
+      try {
+        return new ObjectInputStream(new ByteArrayInputStream(readBytes(in))).readObject();
+      } catch (final ClassNotFoundException e) {
+        throw new IOException("Stored value of unknown type: " + e.getMessage());
+      }
+    default:
+      throw new IOException("Unknown value tag " + tag);
+    }
+  }
+
+  static void writeString(final DataOutput out, final String value) throws IOException {
+    writeBytes(out, value == null ? null : value.getBytes(UTF_8));
+  }
+
+  static String readString(final DataInput in) throws IOException {
+    final byte[] bytes = readBytes(in);
+    return bytes == null ? null : new String(bytes, UTF_8);
+  }
+
+  private static void writeBytes(final DataOutput out, final byte[] value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+    } else {
+      out.writeInt(value.length);
+      out.write(value);
+    }
+  }
+
+  private static byte[] readBytes(final DataInput in) throws IOException {
+    final int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return bytes;
+  }
+}
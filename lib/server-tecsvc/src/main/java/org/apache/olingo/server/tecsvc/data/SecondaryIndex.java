@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.tecsvc.data;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.server.api.uri.queryoption.expression.BinaryOperatorKind;
+
+/**
+ * Secondary index over the values of a primitive property of the entities of an entity set.
+ * A hash index supports lookups for equality; a sorted index supports also range lookups and,
+ * for string properties, prefix lookups.
+ * Values are normalized before indexing, so that numbers of different Java types can be compared.
+ * Entities with values that cannot be normalized are returned by all lookups;
+ * entities without value are returned by none.
+ * A lookup result may therefore contain entities that do not fulfill the condition
+ * but it always contains all entities that do.
+ */
+public class SecondaryIndex {
+
+  public enum Kind {
+    HASH, SORTED
+  }
+
+  private final String propertyName;
+  private final Kind kind;
+  private final Map<Object, Set<Entity>> entries;
+  private final Map<Entity, Object> keys = new IdentityHashMap<Entity, Object>();
+  private final Set<Entity> unindexed = newEntitySet();
+
+  public SecondaryIndex(final String propertyName, final Kind kind) {
+    this.propertyName = propertyName;
+    this.kind = kind;
+    entries = kind == Kind.HASH ? new HashMap<Object, Set<Entity>>() : new TreeMap<Object, Set<Entity>>();
+  }
+
+  public String getPropertyName() {
+    return propertyName;
+  }
+
+  public Kind getKind() {
+    return kind;
+  }
+
+  public boolean supports(final BinaryOperatorKind operator) {
+    return operator == BinaryOperatorKind.EQ
+        || kind == Kind.SORTED && (operator == BinaryOperatorKind.GT || operator == BinaryOperatorKind.GE
+            || operator == BinaryOperatorKind.LT || operator == BinaryOperatorKind.LE);
+  }
+
+  public boolean supportsPrefix() {
+    return kind == Kind.SORTED;
+  }
+
+  /** Adds the entity to the index or updates its entry. */
+  public synchronized void index(final Entity entity) {
+    remove(entity);
+    final Property property = entity.getProperty(propertyName);
+    final Object value = property == null ? null : property.getValue();
+    if (value != null) {
+      final Object key = normalize(value);
+      if (key == null) {
+        unindexed.add(entity);
+      } else {
+        try {
+          Set<Entity> entities = entries.get(key);
+          if (entities == null) {
+            entities = newEntitySet();
+            entries.put(key, entities);
+          }
+          entities.add(entity);
+          keys.put(entity, key);
+        } catch (final ClassCastException e) {
+          // The value is not comparable with the values indexed before.
+          unindexed.add(entity);
+        }
+      }
+    }
+  }
+
+  public synchronized void remove(final Entity entity) {
+    unindexed.remove(entity);
+    final Object key = keys.remove(entity);
+    if (key != null) {
+      final Set<Entity> entities = entries.get(key);
+      entities.remove(entity);
+      if (entities.isEmpty()) {
+        entries.remove(key);
+      }
+    }
+  }
+
+  /** Gets the number of indexed entities with a value. */
+  public synchronized int size() {
+    return keys.size() + unindexed.size();
+  }
+
+  /**
+   * Looks up the entities whose values fulfill the comparison with the given value.
+   * @return the candidate entities, or <code>null</code> if the index cannot be used for this comparison
+   */
+  public synchronized Set<Entity> lookup(final BinaryOperatorKind operator, final Object value) {
+    final Object key = value == null ? null : normalize(value);
+    if (key == null || !supports(operator)) {
+      return null;
+    }
+    try {
+      if (operator == BinaryOperatorKind.EQ) {
+        final Set<Entity> entities = entries.get(key);
+        return collect(entities == null ? Collections.<Set<Entity>> emptySet() : Collections.singleton(entities));
+      }
+      final NavigableMap<Object, Set<Entity>> sorted = (NavigableMap<Object, Set<Entity>>) entries;
+      return collect((operator == BinaryOperatorKind.GT ? sorted.tailMap(key, false) :
+          operator == BinaryOperatorKind.GE ? sorted.tailMap(key, true) :
+          operator == BinaryOperatorKind.LT ? sorted.headMap(key, false) :
+          sorted.headMap(key, true)).values());
+    } catch (final ClassCastException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Looks up the entities whose string values start with the given prefix.
+   * @return the candidate entities, or <code>null</code> if the index cannot be used
+   */
+  public synchronized Set<Entity> lookupPrefix(final String prefix) {
+    if (!supportsPrefix() || prefix == null) {
+      return null;
+    }
+    try {
+      final NavigableMap<Object, Set<Entity>> sorted = (NavigableMap<Object, Set<Entity>>) entries;
+      // All strings with the prefix are sorted between the prefix and the prefix followed by the largest character.
+      return collect(sorted.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values());
+    } catch (final ClassCastException e) {
+      return null;
+    }
+  }
+
+  private Set<Entity> collect(final Collection<Set<Entity>> sets) {
+    Set<Entity> result = newEntitySet();
+    for (final Set<Entity> entities : sets) {
+      result.addAll(entities);
+    }
+    result.addAll(unindexed);
+    return result;
+  }
+
+  /**
+   * Normalizes a value: numbers are converted to decimals without trailing zeros,
+   * dates and times to their milliseconds.
+   * @return the normalized value, or <code>null</code> if the value cannot be indexed
+   */
+  static Object normalize(final Object value) {
+    if (value instanceof Number) {
+      BigDecimal decimal;
+      if (value instanceof BigDecimal) {
+        decimal = (BigDecimal) value;
+      } else if (value instanceof BigInteger) {
+        decimal = new BigDecimal((BigInteger) value);
+      } else if (value instanceof Double || value instanceof Float) {
+        final double doubleValue = ((Number) value).doubleValue();
+        if (Double.isNaN(doubleValue) || Double.isInfinite(doubleValue)) {
+          return null;
+        }
+        decimal = new BigDecimal(Double.toString(doubleValue));
+      } else if (value instanceof Byte || value instanceof Short || value instanceof Integer
+          || value instanceof Long) {
+        decimal = BigDecimal.valueOf(((Number) value).longValue());
+      } else {
+        return null;
+      }
+      return decimal.signum() == 0 ? BigDecimal.ZERO : decimal.stripTrailingZeros();
+    } else if (value instanceof Calendar) {
+      return ((Calendar) value).getTimeInMillis();
+    } else if (value instanceof Timestamp) {
+      return null;
+    } else if (value instanceof Date) {
+      return ((Date) value).getTime();
+    } else if (value instanceof String || value instanceof Boolean) {
+      return value;
+    } else {
+      return null;
+    }
+  }
+
+  private static Set<Entity> newEntitySet() {
+    return Collections.newSetFromMap(new IdentityHashMap<Entity, Boolean>());
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.tecsvc.data;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+
+/**
+ * Entity collection whose list of entities is copied on every modification.
+ * Any number of threads can iterate over the entities without locking while another thread modifies them;
+ * each iteration sees the entities as they were when it started.
+ */
+class SnapshotEntityCollection extends EntityCollection {
+
+  private final List<Entity> entities = new CopyOnWriteArrayList<Entity>();
+
+  public SnapshotEntityCollection() {}
+
+  public SnapshotEntityCollection(final EntityCollection entityCollection) {
+    setCount(entityCollection.getCount());
+    setNext(entityCollection.getNext());
+    setDeltaLink(entityCollection.getDeltaLink());
+    entities.addAll(entityCollection.getEntities());
+  }
+
+  @Override
+  public List<Entity> getEntities() {
+    return entities;
+  }
+}
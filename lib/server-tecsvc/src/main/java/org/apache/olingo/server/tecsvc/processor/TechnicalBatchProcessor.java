@@ -95,6 +95,17 @@ public class TechnicalBatchProcessor extends TechnicalProcessor implements Batch
   @Override
   public ODataResponsePart processChangeSet(BatchFacade facade, List<ODataRequest> requests)
           throws BatchDeserializerException {
+    // All changes of the change set are stored with a single commit.
+    dataProvider.beginTransaction();
+    try {
+      return handleChangeSet(facade, requests);
+    } finally {
+      dataProvider.commitTransaction();
+    }
+  }
+
+  private ODataResponsePart handleChangeSet(BatchFacade facade, List<ODataRequest> requests)
+      throws BatchDeserializerException {
     List<ODataResponse> responses = new ArrayList<ODataResponse>();
 
     for (ODataRequest request : requests) {
@@ -18,6 +18,8 @@
  */
 package org.apache.olingo.server.tecsvc.processor;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
 
 import org.apache.olingo.commons.api.data.ContextURL;
@@ -48,26 +50,37 @@ import org.apache.olingo.server.api.processor.CountEntityCollectionProcessor;
 import org.apache.olingo.server.api.processor.EntityCollectionProcessor;
 import org.apache.olingo.server.api.processor.EntityProcessor;
 import org.apache.olingo.server.api.processor.MediaEntityProcessor;
+import org.apache.olingo.server.api.search.SearchIndex;
 import org.apache.olingo.server.api.serializer.EntityCollectionSerializerOptions;
 import org.apache.olingo.server.api.serializer.EntitySerializerOptions;
 import org.apache.olingo.server.api.serializer.ODataSerializer;
 import org.apache.olingo.server.api.serializer.SerializerException;
 import org.apache.olingo.server.api.serializer.SerializerResult;
 import org.apache.olingo.server.api.uri.UriInfo;
+import org.apache.olingo.server.api.uri.UriResource;
 import org.apache.olingo.server.api.uri.UriResourceAction;
 import org.apache.olingo.server.api.uri.UriResourceEntitySet;
 import org.apache.olingo.server.api.uri.UriResourceFunction;
+import org.apache.olingo.server.api.uri.UriResourceNavigation;
 import org.apache.olingo.server.api.uri.queryoption.ExpandOption;
+import org.apache.olingo.server.api.uri.queryoption.FilterOption;
+import org.apache.olingo.server.api.uri.queryoption.SearchOption;
 import org.apache.olingo.server.api.uri.queryoption.SelectOption;
+import org.apache.olingo.server.tecsvc.data.CountCache;
 import org.apache.olingo.server.tecsvc.data.DataProvider;
 import org.apache.olingo.server.tecsvc.data.EntityActionResult;
 import org.apache.olingo.server.tecsvc.data.RequestValidator;
+import org.apache.olingo.server.tecsvc.data.SecondaryIndex;
 import org.apache.olingo.server.tecsvc.processor.queryoptions.ExpandSystemQueryOptionHandler;
 import org.apache.olingo.server.tecsvc.processor.queryoptions.options.CountHandler;
 import org.apache.olingo.server.tecsvc.processor.queryoptions.options.FilterHandler;
+import org.apache.olingo.server.tecsvc.processor.queryoptions.options.FilterPlan;
 import org.apache.olingo.server.tecsvc.processor.queryoptions.options.OrderByHandler;
+import org.apache.olingo.server.tecsvc.processor.queryoptions.options.ParallelQueryHandler;
+import org.apache.olingo.server.tecsvc.processor.queryoptions.options.SearchHandler;
 import org.apache.olingo.server.tecsvc.processor.queryoptions.options.ServerSidePagingHandler;
 import org.apache.olingo.server.tecsvc.processor.queryoptions.options.SkipHandler;
+import org.apache.olingo.server.tecsvc.processor.queryoptions.options.SystemQueryOptionsRuntimeException;
 import org.apache.olingo.server.tecsvc.processor.queryoptions.options.TopHandler;
 
 /**
@@ -78,14 +91,27 @@ public class TechnicalEntityProcessor extends TechnicalProcessor
     EntityProcessor, ActionEntityProcessor, MediaEntityProcessor,
     ActionVoidProcessor {
 
+  private final ParallelQueryHandler parallelQueryHandler;
+
   public TechnicalEntityProcessor(final DataProvider dataProvider, ServiceMetadata serviceMetadata) {
+    this(dataProvider, serviceMetadata, null);
+  }
+
+  /**
+   * Creates an entity processor that applies $filter, $count, and $orderby with the given handler.
+   * @param parallelQueryHandler handler for large entity collections, or <code>null</code> to process
+   *                             all requests sequentially
+   */
+  public TechnicalEntityProcessor(final DataProvider dataProvider, final ServiceMetadata serviceMetadata,
+      final ParallelQueryHandler parallelQueryHandler) {
     super(dataProvider, serviceMetadata);
+    this.parallelQueryHandler = parallelQueryHandler;
   }
 
   @Override
   public void readEntityCollection(final ODataRequest request, ODataResponse response, final UriInfo uriInfo,
       final ContentType requestedContentType) throws ODataApplicationException, SerializerException {
-    validateOptions(uriInfo.asUriInfoResource());
+    validateOptions(uriInfo.asUriInfoResource(), true);
 
     final EdmEntitySet edmEntitySet = getEdmEntitySet(uriInfo.asUriInfoResource());
     final EdmEntityType edmEntityType = edmEntitySet == null ?
@@ -98,21 +124,32 @@ public class TechnicalEntityProcessor extends TechnicalProcessor
       throw new ODataApplicationException("Nothing found.", HttpStatusCode.NOT_FOUND.getStatusCode(), Locale.ROOT);
     } else {
       // Modifying the original entitySet means modifying the "database", so we have to make a shallow
-      // copy of the entity set (new EntitySet, but exactly the same data)
+      // copy of the entity set (new EntitySet, but exactly the same data).
+      // If the filter can use secondary indexes, only the candidates found in the indexes are copied.
       EntityCollection entitySet = new EntityCollection();
-      entitySet.getEntities().addAll(entitySetInitial.getEntities());
+      entitySet.getEntities().addAll(
+          getFilterPlan(uriInfo, edmEntitySet, entitySetInitial).getCandidates(entitySetInitial.getEntities()));
 
       // Apply system query options
-      FilterHandler.applyFilterSystemQuery(uriInfo.getFilterOption(), entitySet, edmEntitySet);
-      CountHandler.applyCountSystemQueryOption(uriInfo.getCountOption(), entitySet);
-      OrderByHandler.applyOrderByOption(uriInfo.getOrderByOption(), entitySet, edmEntitySet);
+      SearchHandler.applySearchSystemQueryOption(uriInfo.getSearchOption(), entitySet,
+          edmEntitySet == null ? null : dataProvider.getSearchIndex(edmEntitySet));
+      if (parallelQueryHandler == null) {
+        FilterHandler.applyFilterSystemQuery(uriInfo.getFilterOption(), entitySet, edmEntitySet);
+        CountHandler.applyCountSystemQueryOption(uriInfo.getCountOption(), entitySet);
+        OrderByHandler.applyOrderByOption(uriInfo.getOrderByOption(), entitySet, edmEntitySet);
+      } else {
+        parallelQueryHandler.applyFilterCountOrderBy(uriInfo.getFilterOption(), uriInfo.getCountOption(),
+            uriInfo.getOrderByOption(), uriInfo.getSkipOption(), uriInfo.getTopOption(), entitySet, edmEntitySet);
+      }
       SkipHandler.applySkipSystemQueryHandler(uriInfo.getSkipOption(), entitySet);
       TopHandler.applyTopSystemQueryOption(uriInfo.getTopOption(), entitySet);
 
       ServerSidePagingHandler.applyServerSidePaging(uriInfo.getSkipTokenOption(),
+          uriInfo.getOrderByOption(),
           entitySet,
           edmEntitySet,
-          request.getRawRequestUri());
+          request,
+          response);
 
       // Apply expand system query option
       final ODataFormat format = ODataFormat.fromContentType(requestedContentType);
@@ -120,26 +157,28 @@ public class TechnicalEntityProcessor extends TechnicalProcessor
       final ExpandOption expand = uriInfo.getExpandOption();
       final SelectOption select = uriInfo.getSelectOption();
 
-      // Transform the entity graph to a tree. The construction is controlled by the expand tree.
-      // Apply all expand system query options to the tree.So the expanded navigation properties can be modified
-      // for serialization,without affecting the data stored in the database.
+      // The expanded navigation properties are not copied; if they have nested system query options,
+      // the entities are replaced by views that apply these options while being serialized.
+      // So the data stored in the database are not affected.
       final ExpandSystemQueryOptionHandler expandHandler = new ExpandSystemQueryOptionHandler();
-      final EntityCollection entitySetSerialization = expandHandler.transformEntitySetGraphToTree(entitySet,
-          edmEntitySet,
-          expand);
-      expandHandler.applyExpandQueryOptions(entitySetSerialization, edmEntitySet, expand);
+      expandHandler.applyExpandQueryOptions(entitySet, edmEntitySet, expand);
 
       // Serialize
-      response.setContent(serializer.entityCollection(
-          this.serviceMetadata,
-          edmEntityType,
-          entitySetSerialization,
-          EntityCollectionSerializerOptions.with()
-              .contextURL(format == ODataFormat.JSON_NO_METADATA ? null :
-                  getContextUrl(edmEntitySet, edmEntityType, false, expand, select))
-              .count(uriInfo.getCountOption())
-              .expand(expand).select(select)
-              .build()).getContent());
+      try {
+        response.setContent(serializer.entityCollection(
+            this.serviceMetadata,
+            edmEntityType,
+            entitySet,
+            EntityCollectionSerializerOptions.with()
+                .contextURL(format == ODataFormat.JSON_NO_METADATA ? null :
+                    getContextUrl(edmEntitySet, edmEntityType, false, expand, select))
+                .count(uriInfo.getCountOption())
+                .expand(expand).select(select)
+                .build()).getContent());
+      } catch (final SystemQueryOptionsRuntimeException e) {
+        // Throw the nested exception, to send the correct HTTP status code in the HTTP response
+        throw (ODataApplicationException) e.getCause();
+      }
       response.setStatusCode(HttpStatusCode.OK.getStatusCode());
       response.setHeader(HttpHeader.CONTENT_TYPE, requestedContentType.toContentTypeString());
     }
@@ -180,14 +219,17 @@ public class TechnicalEntityProcessor extends TechnicalProcessor
   @Override
   public void countEntityCollection(final ODataRequest request, ODataResponse response, final UriInfo uriInfo)
       throws ODataApplicationException, SerializerException {
-    validateOptions(uriInfo.asUriInfoResource());
-    getEdmEntitySet(uriInfo); // including checks
-    EntityCollection entitySet = readEntityCollection(uriInfo);
+    validateOptions(uriInfo.asUriInfoResource(), true);
+    final EdmEntitySet edmEntitySet = getEdmEntitySet(uriInfo); // including checks
+    // The version is taken before the data are read so that a count of outdated data is never cached.
+    final long countVersion = edmEntitySet == null ? 0 :
+        dataProvider.getCountCache().getVersion(edmEntitySet.getName());
+    final EntityCollection entitySet = readEntityCollection(uriInfo);
     if (entitySet == null) {
       throw new ODataApplicationException("Nothing found.", HttpStatusCode.NOT_FOUND.getStatusCode(), Locale.ROOT);
     } else {
-      setCount(entitySet);
-      response.setContent(odata.createFixedFormatSerializer().count(entitySet.getCount()));
+      response.setContent(odata.createFixedFormatSerializer().count(
+          count(uriInfo, entitySet, edmEntitySet, countVersion)));
       response.setStatusCode(HttpStatusCode.OK.getStatusCode());
       response.setHeader(HttpHeader.CONTENT_TYPE, HttpContentType.TEXT_PLAIN);
     }
@@ -211,18 +253,22 @@ public class TechnicalEntityProcessor extends TechnicalProcessor
     final SelectOption select = uriInfo.getSelectOption();
 
     final ExpandSystemQueryOptionHandler expandHandler = new ExpandSystemQueryOptionHandler();
-    final Entity entitySerialization = expandHandler.transformEntityGraphToTree(entity, edmEntitySet, expand);
-    expandHandler.applyExpandQueryOptions(entitySerialization, edmEntitySet, expand);
+    final Entity entitySerialization = expandHandler.applyExpandQueryOptions(entity, edmEntitySet, expand);
 
-    response.setContent(serializer.entity(
-        this.serviceMetadata,
-        edmEntitySet.getEntityType(),
-        entitySerialization,
-        EntitySerializerOptions.with()
-            .contextURL(format == ODataFormat.JSON_NO_METADATA ? null :
-                getContextUrl(edmEntitySet, edmEntityType, true, expand, select))
-            .expand(expand).select(select)
-            .build()).getContent());
+    try {
+      response.setContent(serializer.entity(
+          this.serviceMetadata,
+          edmEntitySet.getEntityType(),
+          entitySerialization,
+          EntitySerializerOptions.with()
+              .contextURL(format == ODataFormat.JSON_NO_METADATA ? null :
+                  getContextUrl(edmEntitySet, edmEntityType, true, expand, select))
+              .expand(expand).select(select)
+              .build()).getContent());
+    } catch (final SystemQueryOptionsRuntimeException e) {
+      // Throw the nested exception, to send the correct HTTP status code in the HTTP response
+      throw (ODataApplicationException) e.getCause();
+    }
     response.setStatusCode(HttpStatusCode.OK.getStatusCode());
     response.setHeader(HttpHeader.CONTENT_TYPE, requestedContentType.toContentTypeString());
   }
@@ -261,7 +307,7 @@ public class TechnicalEntityProcessor extends TechnicalProcessor
     ExpandOption expand = null;
     if (edmEntityType.hasStream()) { // called from createMediaEntity(...), not directly
       entity = dataProvider.create(edmEntitySet);
-      dataProvider.setMedia(entity, odata.createFixedFormatDeserializer().binary(request.getBody()),
+      dataProvider.setMedia(edmEntitySet, entity, odata.createFixedFormatDeserializer().binary(request.getBody()),
           requestFormat.toContentTypeString());
     } else {
       final DeserializerResult deserializerResult =
@@ -329,10 +375,10 @@ public class TechnicalEntityProcessor extends TechnicalProcessor
   public void updateMediaEntity(final ODataRequest request, ODataResponse response, final UriInfo uriInfo,
       final ContentType requestFormat, final ContentType responseFormat)
       throws ODataApplicationException, DeserializerException, SerializerException {
-    getEdmEntitySet(uriInfo); // including checks
+    final EdmEntitySet edmEntitySet = getEdmEntitySet(uriInfo); // including checks
     Entity entity = readEntity(uriInfo);
     checkRequestFormat(requestFormat);
-    dataProvider.setMedia(entity, odata.createFixedFormatDeserializer().binary(request.getBody()),
+    dataProvider.setMedia(edmEntitySet, entity, odata.createFixedFormatDeserializer().binary(request.getBody()),
         requestFormat.toContentTypeString());
     response.setStatusCode(HttpStatusCode.NO_CONTENT.getStatusCode());
   }
@@ -396,10 +442,67 @@ public class TechnicalEntityProcessor extends TechnicalProcessor
     response.setStatusCode(HttpStatusCode.NO_CONTENT.getStatusCode());
   }
 
-  private void setCount(EntityCollection entitySet) {
-    if (entitySet.getCount() == null) {
-      entitySet.setCount(entitySet.getEntities().size());
+  /**
+   * Counts the entities matching the $search and $filter options without building a filtered collection.
+   * The counts for entity sets are cached by the data provider until the entity set is modified.
+   * @param countVersion the version of the count cache for the entity set, taken before the entities were read
+   */
+  private int count(final UriInfo uriInfo, final EntityCollection entitySet, final EdmEntitySet edmEntitySet,
+      final long countVersion) throws ODataApplicationException {
+    final SearchOption searchOption = uriInfo.getSearchOption();
+    final FilterOption filterOption = uriInfo.getFilterOption();
+    if (searchOption == null && filterOption == null) {
+      return entitySet.getCount() == null ? entitySet.getEntities().size() : entitySet.getCount();
     }
+    if (!isEntitySet(uriInfo)
+        || searchOption != null && searchOption.getText() == null
+        || filterOption != null && filterOption.getText() == null) {
+      return countMatches(uriInfo, entitySet, edmEntitySet);
+    }
+
+    final String query = (searchOption == null ? "" : searchOption.getText()) + '\n'
+        + (filterOption == null ? "" : filterOption.getText());
+    final CountCache countCache = dataProvider.getCountCache();
+    Integer count = countCache.get(edmEntitySet.getName(), query);
+    if (count == null) {
+      count = countMatches(uriInfo, entitySet, edmEntitySet);
+      countCache.put(edmEntitySet.getName(), query, count, countVersion);
+    }
+    return count;
+  }
+
+  private int countMatches(final UriInfo uriInfo, final EntityCollection entitySet, final EdmEntitySet edmEntitySet)
+      throws ODataApplicationException {
+    final SearchOption searchOption = uriInfo.getSearchOption();
+    final SearchIndex searchIndex = searchOption == null || edmEntitySet == null ? null :
+        dataProvider.getSearchIndex(edmEntitySet);
+    return CountHandler.count(searchOption, uriInfo.getFilterOption(),
+        getFilterPlan(uriInfo, edmEntitySet, entitySet).getCandidates(entitySet.getEntities()),
+        searchIndex, edmEntitySet);
+  }
+
+  /**
+   * Plans the evaluation of the filter, using the secondary indexes and the columns of the stored entity set
+   * if the resource path is an entity set.
+   * <p>The indexes are not versioned with the snapshot of the entity set that has been read:
+   * entities created since are dropped by {@link FilterPlan#getCandidates(List)}, and since entities are
+   * changed in place and the complete filter is evaluated for all candidates, the result is the same
+   * as without index. Only an entity that is being changed concurrently may be missing although
+   * its new value matches, if the index has not been updated yet.</p>
+   */
+  private FilterPlan getFilterPlan(final UriInfo uriInfo, final EdmEntitySet edmEntitySet,
+      final EntityCollection entitySet) {
+    final boolean isEntitySet = isEntitySet(uriInfo);
+    return FilterPlan.create(uriInfo.getFilterOption(), isEntitySet ?
+        dataProvider.getIndexes(edmEntitySet) :
+        Collections.<String, SecondaryIndex> emptyMap(),
+        isEntitySet ? entitySet : null);
+  }
+
+  private boolean isEntitySet(final UriInfo uriInfo) {
+    final List<UriResource> resourceParts = uriInfo.getUriResourceParts();
+    return resourceParts.get(0) instanceof UriResourceEntitySet
+        && (resourceParts.size() == 1 || !(resourceParts.get(1) instanceof UriResourceNavigation));
   }
 
   private void checkRequestFormat(final ContentType requestFormat) throws ODataApplicationException {
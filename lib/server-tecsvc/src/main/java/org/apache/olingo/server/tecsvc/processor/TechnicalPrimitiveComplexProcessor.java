@@ -378,18 +378,20 @@ public class TechnicalPrimitiveComplexProcessor extends TechnicalProcessor
   private void deleteProperty(final ODataResponse response, final UriInfo uriInfo) throws ODataApplicationException {
     final UriInfoResource resource = uriInfo.asUriInfoResource();
     validatePath(resource);
-    getEdmEntitySet(uriInfo); // including checks
+    final EdmEntitySet edmEntitySet = getEdmEntitySet(uriInfo); // including checks
 
     final List<UriResource> resourceParts = resource.getUriResourceParts();
     final List<String> path = getPropertyPath(resourceParts, 0);
 
-    final Property property = getPropertyData(readEntity(uriInfo), path);
+    final Entity entity = readEntity(uriInfo);
+    final Property property = getPropertyData(entity, path);
 
     final EdmProperty edmProperty = ((UriResourceProperty) resourceParts.get(resourceParts.size() - 1))
         .getProperty();
 
     if (edmProperty.isNullable()) {
       property.setValue(property.getValueType(), edmProperty.isCollection() ? Collections.emptyList() : null);
+      dataProvider.entityChanged(edmEntitySet, entity);
       response.setStatusCode(HttpStatusCode.NO_CONTENT.getStatusCode());
     } else {
       throw new ODataApplicationException("Not nullable.", HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ROOT);
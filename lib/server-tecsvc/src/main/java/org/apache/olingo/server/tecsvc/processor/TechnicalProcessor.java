@@ -209,8 +209,13 @@ public abstract class TechnicalProcessor implements Processor {
   }
 
   protected void validateOptions(final UriInfoResource uriInfo) throws ODataApplicationException {
+    validateOptions(uriInfo, false);
+  }
+
+  protected void validateOptions(final UriInfoResource uriInfo, final boolean isSearchSupported)
+      throws ODataApplicationException {
     if (uriInfo.getIdOption() != null
-        || uriInfo.getSearchOption() != null) {
+        || uriInfo.getSearchOption() != null && !isSearchSupported) {
       throw new ODataApplicationException("Not all of the specified options are supported.",
           HttpStatusCode.NOT_IMPLEMENTED.getStatusCode(), Locale.ROOT);
     }
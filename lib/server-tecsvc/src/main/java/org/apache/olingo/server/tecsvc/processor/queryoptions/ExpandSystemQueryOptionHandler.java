@@ -18,227 +18,149 @@
  */
 package org.apache.olingo.server.tecsvc.processor.queryoptions;
 
-import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
-import java.util.Set;
 
 import org.apache.olingo.commons.api.data.Entity;
 import org.apache.olingo.commons.api.data.EntityCollection;
-import org.apache.olingo.commons.api.data.Link;
 import org.apache.olingo.commons.api.edm.EdmBindingTarget;
-import org.apache.olingo.commons.api.edm.EdmEntitySet;
-import org.apache.olingo.commons.api.edm.EdmEntityType;
-import org.apache.olingo.commons.api.edm.EdmNavigationProperty;
 import org.apache.olingo.commons.api.http.HttpStatusCode;
 import org.apache.olingo.server.api.ODataApplicationException;
 import org.apache.olingo.server.api.uri.UriResource;
 import org.apache.olingo.server.api.uri.UriResourceNavigation;
-import org.apache.olingo.server.api.uri.queryoption.CountOption;
 import org.apache.olingo.server.api.uri.queryoption.ExpandItem;
 import org.apache.olingo.server.api.uri.queryoption.ExpandOption;
-import org.apache.olingo.server.api.uri.queryoption.FilterOption;
-import org.apache.olingo.server.api.uri.queryoption.OrderByOption;
-import org.apache.olingo.server.api.uri.queryoption.SkipOption;
-import org.apache.olingo.server.api.uri.queryoption.TopOption;
+import org.apache.olingo.server.tecsvc.processor.queryoptions.options.CountHandler;
 import org.apache.olingo.server.tecsvc.processor.queryoptions.options.FilterHandler;
 import org.apache.olingo.server.tecsvc.processor.queryoptions.options.OrderByHandler;
 import org.apache.olingo.server.tecsvc.processor.queryoptions.options.SkipHandler;
+import org.apache.olingo.server.tecsvc.processor.queryoptions.options.SystemQueryOptionsRuntimeException;
 import org.apache.olingo.server.tecsvc.processor.queryoptions.options.TopHandler;
 
+/**
+ * Applies the system query options nested in an expand system query option.
+ * <p>The serializers already follow the expand tree, so the entity graph is serialized as it is stored
+ * as long as no expanded navigation property has nested system query options.
+ * Otherwise, the entities on the way to these navigation properties are replaced by read-only views;
+ * the views apply the nested system query options to the inline entity collections while the serializer
+ * reads them. The stored data are neither copied nor modified.</p>
+ * <p>Since the nested system query options are evaluated during serialization, evaluation errors are
+ * thrown wrapped in a {@link SystemQueryOptionsRuntimeException}.</p>
+ */
 public class ExpandSystemQueryOptionHandler {
 
-  public void applyExpandQueryOptions(final EntityCollection entitySet, final EdmEntitySet edmEntitySet,
+  /**
+   * Replaces the entities of the entity collection by views that apply the nested system query options.
+   * The entity collection must not be the stored one.
+   */
+  public void applyExpandQueryOptions(final EntityCollection entitySet, final EdmBindingTarget edmBindingTarget,
       final ExpandOption expandOption) throws ODataApplicationException {
-    if (expandOption == null) {
-      return;
-    }
-
-    for (final Entity entity : entitySet.getEntities()) {
-      applyExpandOptionToEntity(entity, edmEntitySet, expandOption);
-    }
-  }
-
-  public void applyExpandQueryOptions(Entity entity, EdmEntitySet edmEntitySet, ExpandOption expandOption)
-      throws ODataApplicationException {
-    if (expandOption == null) {
-      return;
+    validate(expandOption);
+    if (hasNestedOptions(expandOption)) {
+      applyViews(entitySet.getEntities(), edmBindingTarget, expandOption);
     }
-
-    applyExpandOptionToEntity(entity, edmEntitySet, expandOption);
   }
 
-  private void applyExpandOptionToEntity(final Entity entity, final EdmBindingTarget edmBindingTarget,
+  /**
+   * Returns a view of the entity that applies the nested system query options,
+   * or the entity itself if there are none.
+   */
+  public Entity applyExpandQueryOptions(final Entity entity, final EdmBindingTarget edmBindingTarget,
       final ExpandOption expandOption) throws ODataApplicationException {
-    final EdmEntityType entityType = edmBindingTarget.getEntityType();
-
-    for (ExpandItem item : expandOption.getExpandItems()) {
-      final List<UriResource> uriResourceParts = item.getResourcePath().getUriResourceParts();
-      if (uriResourceParts.size() == 1 && uriResourceParts.get(0) instanceof UriResourceNavigation) {
-        final String navPropertyName = ((UriResourceNavigation) uriResourceParts.get(0)).getProperty().getName();
-        final EdmBindingTarget targetEdmEntitySet = edmBindingTarget.getRelatedBindingTarget(navPropertyName);
-
-        final Link link = entity.getNavigationLink(navPropertyName);
-        if (link != null && entityType.getNavigationProperty(navPropertyName).isCollection()) {
-          applyOptionsToEntityCollection(link.getInlineEntitySet(),
-              targetEdmEntitySet,
-              item.getFilterOption(),
-              item.getOrderByOption(),
-              item.getCountOption(),
-              item.getSkipOption(),
-              item.getTopOption(),
-              item.getExpandOption());
-        }
-      } else {
-        throw new ODataApplicationException("Not supported resource part in expand system query option",
-            HttpStatusCode.NOT_IMPLEMENTED.getStatusCode(), Locale.ROOT);
-      }
-    }
+    validate(expandOption);
+    return entity != null && hasNestedOptions(expandOption) ?
+        new ExpandedEntityView(entity, edmBindingTarget, expandOption) :
+        entity;
   }
 
-  private void applyOptionsToEntityCollection(final EntityCollection entitySet,
-      final EdmBindingTarget edmBindingTarget,
-      final FilterOption filterOption, final OrderByOption orderByOption, final CountOption countOption,
-      final SkipOption skipOption, final TopOption topOption, final ExpandOption expandOption)
-      throws ODataApplicationException {
-
-    FilterHandler.applyFilterSystemQuery(filterOption, entitySet, edmBindingTarget);
-    OrderByHandler.applyOrderByOption(orderByOption, entitySet, edmBindingTarget);
-    // TODO Add CountHandler
-    SkipHandler.applySkipSystemQueryHandler(skipOption, entitySet);
-    TopHandler.applyTopSystemQueryOption(topOption, entitySet);
-
-    // Apply nested expand system query options to remaining entities
-    if (expandOption != null) {
-      for (final Entity entity : entitySet.getEntities()) {
-        applyExpandOptionToEntity(entity, edmBindingTarget, expandOption);
+  /**
+   * Determines whether any expand item in the (validated) expand tree has system query options
+   * that modify or count the expanded data.
+   */
+  static boolean hasNestedOptions(final ExpandOption expandOption) {
+    if (expandOption != null && expandOption.getExpandItems() != null) {
+      for (final ExpandItem item : expandOption.getExpandItems()) {
+        if (!item.isStar() && (hasOptions(item) || hasNestedOptions(item.getExpandOption()))) {
+          return true;
+        }
       }
     }
+    return false;
   }
 
-  public EntityCollection transformEntitySetGraphToTree(final EntityCollection entitySet,
-      final EdmBindingTarget edmBindingTarget, final ExpandOption expand) throws ODataApplicationException {
-
-    final EntityCollection newEntitySet = newEntitySet(entitySet);
-
-    for (final Entity entity : entitySet.getEntities()) {
-      newEntitySet.getEntities().add(transformEntityGraphToTree(entity, edmBindingTarget, expand));
-    }
-
-    return newEntitySet;
+  static boolean hasOptions(final ExpandItem item) {
+    return item.getFilterOption() != null || item.getOrderByOption() != null
+        || item.getSkipOption() != null || item.getTopOption() != null
+        || item.getCountOption() != null && item.getCountOption().getValue();
   }
 
-  public Entity transformEntityGraphToTree(final Entity entity, EdmBindingTarget edmEntitySet,
-      final ExpandOption expand) throws ODataApplicationException {
-    final Entity newEntity = newEntity(entity);
-    if (hasExpandItems(expand)) {
-      final boolean expandAll = expandAll(expand);
-      final Set<String> expanded = expandAll ? null : getExpandedPropertyNames(expand.getExpandItems());
-      final EdmEntityType edmType = edmEntitySet.getEntityType();
-
-      for (final Link link : entity.getNavigationLinks()) {
-        final String propertyName = link.getTitle();
-
-        if (expandAll || expanded.contains(propertyName)) {
-          final EdmNavigationProperty edmNavigationProperty = edmType.getNavigationProperty(propertyName);
-          final EdmBindingTarget edmBindingTarget = edmEntitySet.getRelatedBindingTarget(propertyName);
-          final Link newLink = newLink(link);
-          newEntity.getNavigationLinks().add(newLink);
-          final ExpandOption innerExpandOption = getInnerExpandOption(expand, propertyName);
-
-          if (edmNavigationProperty.isCollection()) {
-            newLink.setInlineEntitySet(transformEntitySetGraphToTree(link.getInlineEntitySet(),
-                edmBindingTarget,
-                innerExpandOption));
-          } else {
-            newLink.setInlineEntity(transformEntityGraphToTree(link.getInlineEntity(),
-                edmBindingTarget,
-                innerExpandOption));
-          }
+  static ExpandItem getExpandItem(final ExpandOption expandOption, final String navigationPropertyName) {
+    for (final ExpandItem item : expandOption.getExpandItems()) {
+      if (!item.isStar()) {
+        final UriResource resource = item.getResourcePath().getUriResourceParts().get(0);
+        if (navigationPropertyName.equals(((UriResourceNavigation) resource).getProperty().getName())) {
+          return item;
         }
       }
-
     }
-    return newEntity;
-  }
-
-  public EntityCollection newEntitySet(final EntityCollection entitySet) {
-    final EntityCollection newEntitySet = new EntityCollection();
-    newEntitySet.setCount(entitySet.getCount());
-    newEntitySet.setDeltaLink(entitySet.getDeltaLink());
-    newEntitySet.setNext(entitySet.getNext());
-
-    return newEntitySet;
-  }
-
-  private Entity newEntity(final Entity entity) {
-    final Entity newEntity = new Entity();
-
-    newEntity.getProperties().addAll(entity.getProperties());
-    newEntity.getAnnotations().addAll(entity.getAnnotations());
-    newEntity.getAssociationLinks().addAll(entity.getAssociationLinks());
-    newEntity.setEditLink(entity.getEditLink());
-    newEntity.setId(entity.getId());
-    newEntity.setMediaContentSource(entity.getMediaContentSource());
-    newEntity.setMediaContentType(entity.getMediaContentType());
-    newEntity.setMediaETag(entity.getMediaETag());
-    newEntity.getOperations().addAll(entity.getOperations());
-    newEntity.setSelfLink(entity.getSelfLink());
-    newEntity.setType(entity.getType());
-    newEntity.getNavigationBindings().addAll(entity.getNavigationBindings());
-
-    return newEntity;
-  }
-
-  private Link newLink(Link link) {
-    final Link newLink = new Link();
-    newLink.setMediaETag(link.getMediaETag());
-    newLink.setTitle(link.getTitle());
-    newLink.setType(link.getType());
-    newLink.setRel(link.getRel());
-
-    return newLink;
+    return null;
   }
 
-  private boolean hasExpandItems(ExpandOption expand) {
-    return expand != null && expand.getExpandItems() != null && !expand.getExpandItems().isEmpty();
-  }
+  /**
+   * Applies the system query options of the expand item to a new entity collection
+   * with the same entities as the given one.
+   * Evaluation errors are thrown wrapped, since this is called while serializing.
+   */
+  static EntityCollection applyOptions(final EntityCollection entitySet, final EdmBindingTarget edmBindingTarget,
+      final ExpandItem item) {
+    final EntityCollection result = new EntityCollection();
+    result.setCount(entitySet.getCount());
+    result.setDeltaLink(entitySet.getDeltaLink());
+    result.setNext(entitySet.getNext());
+    result.getEntities().addAll(entitySet.getEntities());
+
+    try {
+      FilterHandler.applyFilterSystemQuery(item.getFilterOption(), result, edmBindingTarget);
+      OrderByHandler.applyOrderByOption(item.getOrderByOption(), result, edmBindingTarget);
+      CountHandler.applyCountSystemQueryOption(item.getCountOption(), result);
+      SkipHandler.applySkipSystemQueryHandler(item.getSkipOption(), result);
+      TopHandler.applyTopSystemQueryOption(item.getTopOption(), result);
+    } catch (final ODataApplicationException e) {
+      throw new SystemQueryOptionsRuntimeException(e);
+    }
 
-  private boolean expandAll(ExpandOption expand) {
-    for (final ExpandItem item : expand.getExpandItems()) {
-      if (item.isStar()) {
-        return true;
-      }
+    if (hasNestedOptions(item.getExpandOption())) {
+      applyViews(result.getEntities(), edmBindingTarget, item.getExpandOption());
     }
-    return false;
+    return result;
   }
 
-  private Set<String> getExpandedPropertyNames(List<ExpandItem> expandItems) throws ODataApplicationException {
-    Set<String> expanded = new HashSet<String>();
-    for (final ExpandItem item : expandItems) {
-      final List<UriResource> resourceParts = item.getResourcePath().getUriResourceParts();
-      if (resourceParts.size() == 1) {
-        final UriResource resource = resourceParts.get(0);
-        if (resource instanceof UriResourceNavigation) {
-          expanded.add(((UriResourceNavigation) resource).getProperty().getName());
-        }
-      } else {
-        throw new ODataApplicationException("Expand is not supported within complex properties.",
-            HttpStatusCode.NOT_IMPLEMENTED.getStatusCode(), Locale.ROOT);
+  private static void applyViews(final List<Entity> entities, final EdmBindingTarget edmBindingTarget,
+      final ExpandOption expandOption) {
+    for (int index = 0; index < entities.size(); index++) {
+      final Entity entity = entities.get(index);
+      if (entity != null) {
+        entities.set(index, new ExpandedEntityView(entity, edmBindingTarget, expandOption));
       }
     }
-    return expanded;
   }
 
-  private ExpandOption getInnerExpandOption(final ExpandOption expand, final String propertyName) {
-    for (final ExpandItem item : expand.getExpandItems()) {
-      final UriResource resource = item.getResourcePath().getUriResourceParts().get(0);
-      if (resource instanceof UriResourceNavigation
-          && propertyName.equals(((UriResourceNavigation) resource).getProperty().getName())) {
-        return item.getExpandOption();
+  private void validate(final ExpandOption expandOption) throws ODataApplicationException {
+    if (expandOption == null || expandOption.getExpandItems() == null) {
+      return;
+    }
+    for (final ExpandItem item : expandOption.getExpandItems()) {
+      if (!item.isStar()) {
+        final List<UriResource> resourceParts = item.getResourcePath().getUriResourceParts();
+        if (resourceParts.size() != 1) {
+          throw new ODataApplicationException("Expand is not supported within complex properties.",
+              HttpStatusCode.NOT_IMPLEMENTED.getStatusCode(), Locale.ROOT);
+        } else if (!(resourceParts.get(0) instanceof UriResourceNavigation)) {
+          throw new ODataApplicationException("Not supported resource part in expand system query option",
+              HttpStatusCode.NOT_IMPLEMENTED.getStatusCode(), Locale.ROOT);
+        }
+        validate(item.getExpandOption());
       }
     }
-
-    return null;
   }
 }
@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.tecsvc.processor.queryoptions;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.olingo.commons.api.data.Annotation;
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.Link;
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.domain.ODataOperation;
+import org.apache.olingo.commons.api.edm.EdmBindingTarget;
+import org.apache.olingo.server.api.uri.queryoption.ExpandItem;
+import org.apache.olingo.server.api.uri.queryoption.ExpandOption;
+
+/**
+ * Read-only view of an entity whose expanded navigation properties have nested system query options.
+ * All data are read from the viewed entity; only the navigation links with nested system query options
+ * are replaced by {@link ExpandedLinkView}s.
+ */
+class ExpandedEntityView extends Entity {
+
+  private final Entity entity;
+  private final EdmBindingTarget edmBindingTarget;
+  private final ExpandOption expandOption;
+  private Map<String, Link> views;
+
+  ExpandedEntityView(final Entity entity, final EdmBindingTarget edmBindingTarget, final ExpandOption expandOption) {
+    this.entity = entity;
+    this.edmBindingTarget = edmBindingTarget;
+    this.expandOption = expandOption;
+  }
+
+  @Override
+  public Link getNavigationLink(final String name) {
+    final Link link = entity.getNavigationLink(name);
+    if (link == null) {
+      return null;
+    }
+    Link view = views == null ? null : views.get(name);
+    if (view == null) {
+      final ExpandItem item = ExpandSystemQueryOptionHandler.getExpandItem(expandOption, name);
+      if (item == null
+          || !ExpandSystemQueryOptionHandler.hasOptions(item)
+          && !ExpandSystemQueryOptionHandler.hasNestedOptions(item.getExpandOption())) {
+        return link;
+      }
+      view = new ExpandedLinkView(link, edmBindingTarget.getRelatedBindingTarget(name), item);
+      if (views == null) {
+        views = new HashMap<String, Link>();
+      }
+      views.put(name, view);
+    }
+    return view;
+  }
+
+  @Override
+  public List<Link> getNavigationLinks() {
+    final List<Link> links = new ArrayList<Link>();
+    for (final Link link : entity.getNavigationLinks()) {
+      links.add(link.getTitle() == null ? link : getNavigationLink(link.getTitle()));
+    }
+    return Collections.unmodifiableList(links);
+  }
+
+  @Override
+  public Link getAssociationLink(final String name) {
+    return entity.getAssociationLink(name);
+  }
+
+  @Override
+  public List<Link> getAssociationLinks() {
+    return Collections.unmodifiableList(entity.getAssociationLinks());
+  }
+
+  @Override
+  public Link getNavigationBinding(final String name) {
+    return entity.getNavigationBinding(name);
+  }
+
+  @Override
+  public List<Link> getNavigationBindings() {
+    return Collections.unmodifiableList(entity.getNavigationBindings());
+  }
+
+  @Override
+  public String getETag() {
+    return entity.getETag();
+  }
+
+  @Override
+  public String getType() {
+    return entity.getType();
+  }
+
+  @Override
+  public Link getSelfLink() {
+    return entity.getSelfLink();
+  }
+
+  @Override
+  public Link getEditLink() {
+    return entity.getEditLink();
+  }
+
+  @Override
+  public List<Link> getMediaEditLinks() {
+    return Collections.unmodifiableList(entity.getMediaEditLinks());
+  }
+
+  @Override
+  public List<ODataOperation> getOperations() {
+    return Collections.unmodifiableList(entity.getOperations());
+  }
+
+  @Override
+  public List<Property> getProperties() {
+    return Collections.unmodifiableList(entity.getProperties());
+  }
+
+  @Override
+  public Property getProperty(final String name) {
+    return entity.getProperty(name);
+  }
+
+  @Override
+  public String getMediaContentType() {
+    return entity.getMediaContentType();
+  }
+
+  @Override
+  public URI getMediaContentSource() {
+    return entity.getMediaContentSource();
+  }
+
+  @Override
+  public String getMediaETag() {
+    return entity.getMediaETag();
+  }
+
+  @Override
+  public boolean isMediaEntity() {
+    return entity.isMediaEntity();
+  }
+
+  @Override
+  public URI getBaseURI() {
+    return entity.getBaseURI();
+  }
+
+  @Override
+  public URI getId() {
+    return entity.getId();
+  }
+
+  @Override
+  public String getTitle() {
+    return entity.getTitle();
+  }
+
+  @Override
+  public List<Annotation> getAnnotations() {
+    return Collections.unmodifiableList(entity.getAnnotations());
+  }
+
+  @Override
+  public Entity addProperty(final Property property) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setETag(final String eTag) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setType(final String type) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setSelfLink(final Link selfLink) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setEditLink(final Link editLink) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setMediaContentType(final String mediaContentType) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setMediaContentSource(final URI mediaContentSource) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setMediaETag(final String eTag) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setBaseURI(final String baseURI) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setId(final URI id) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setCommonProperty(final String key, final String value) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    return this == obj || obj instanceof ExpandedEntityView && entity.equals(((ExpandedEntityView) obj).entity);
+  }
+
+  @Override
+  public int hashCode() {
+    return entity.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return entity.toString();
+  }
+}
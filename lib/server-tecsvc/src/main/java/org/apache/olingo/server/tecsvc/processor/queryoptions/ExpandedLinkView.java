@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.tecsvc.processor.queryoptions;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.olingo.commons.api.data.Annotation;
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.Link;
+import org.apache.olingo.commons.api.edm.EdmBindingTarget;
+import org.apache.olingo.server.api.uri.queryoption.ExpandItem;
+
+/**
+ * Read-only view of a navigation link whose expand item has (nested) system query options.
+ * The system query options are applied to the inline entity collection when it is read for the first time;
+ * the result only references the entities of the viewed link.
+ */
+class ExpandedLinkView extends Link {
+
+  private final Link link;
+  private final EdmBindingTarget edmBindingTarget;
+  private final ExpandItem item;
+  private EntityCollection inlineEntitySet;
+  private Entity inlineEntity;
+
+  ExpandedLinkView(final Link link, final EdmBindingTarget edmBindingTarget, final ExpandItem item) {
+    this.link = link;
+    this.edmBindingTarget = edmBindingTarget;
+    this.item = item;
+  }
+
+  @Override
+  public EntityCollection getInlineEntitySet() {
+    if (inlineEntitySet == null && link.getInlineEntitySet() != null) {
+      inlineEntitySet = ExpandSystemQueryOptionHandler.applyOptions(link.getInlineEntitySet(), edmBindingTarget,
+          item);
+    }
+    return inlineEntitySet;
+  }
+
+  @Override
+  public Entity getInlineEntity() {
+    if (inlineEntity == null && link.getInlineEntity() != null) {
+      inlineEntity = ExpandSystemQueryOptionHandler.hasNestedOptions(item.getExpandOption()) ?
+          new ExpandedEntityView(link.getInlineEntity(), edmBindingTarget, item.getExpandOption()) :
+          link.getInlineEntity();
+    }
+    return inlineEntity;
+  }
+
+  @Override
+  public String getTitle() {
+    return link.getTitle();
+  }
+
+  @Override
+  public String getRel() {
+    return link.getRel();
+  }
+
+  @Override
+  public String getHref() {
+    return link.getHref();
+  }
+
+  @Override
+  public String getType() {
+    return link.getType();
+  }
+
+  @Override
+  public String getMediaETag() {
+    return link.getMediaETag();
+  }
+
+  @Override
+  public String getBindingLink() {
+    return link.getBindingLink();
+  }
+
+  @Override
+  public List<String> getBindingLinks() {
+    return Collections.unmodifiableList(link.getBindingLinks());
+  }
+
+  @Override
+  public List<Annotation> getAnnotations() {
+    return Collections.unmodifiableList(link.getAnnotations());
+  }
+
+  @Override
+  public void setTitle(final String title) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setRel(final String rel) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setHref(final String href) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setType(final String type) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setMediaETag(final String mediaETag) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setInlineEntity(final Entity entity) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setInlineEntitySet(final EntityCollection entitySet) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setBindingLink(final String bindingLink) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setBindingLinks(final List<String> bindingLinks) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    return this == obj || obj instanceof ExpandedLinkView && link.equals(((ExpandedLinkView) obj).link);
+  }
+
+  @Override
+  public int hashCode() {
+    return link.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return link.toString();
+  }
+}
@@ -18,8 +18,21 @@
  */
 package org.apache.olingo.server.tecsvc.processor.queryoptions.options;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.olingo.commons.api.data.Entity;
 import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.edm.EdmBindingTarget;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.search.SearchIndex;
 import org.apache.olingo.server.api.uri.queryoption.CountOption;
+import org.apache.olingo.server.api.uri.queryoption.FilterOption;
+import org.apache.olingo.server.api.uri.queryoption.SearchOption;
 
 public class CountHandler {
   public static void applyCountSystemQueryOption(final CountOption countOption, final EntityCollection entitySet) {
@@ -27,4 +40,34 @@ public class CountHandler {
       entitySet.setCount(entitySet.getEntities().size());
     }
   }
+
+  /**
+   * Counts the given entities that match the search and filter options.
+   * In contrast to applying these options to an entity collection, no result lists are built
+   * besides the search hits; the filter is evaluated entity by entity.
+   */
+  public static int count(final SearchOption searchOption, final FilterOption filterOption,
+      final List<Entity> entities, final SearchIndex searchIndex, final EdmBindingTarget edmEntitySet)
+      throws ODataApplicationException {
+
+    Set<Entity> hits = null;
+    if (searchOption != null) {
+      if (searchIndex == null) {
+        throw new ODataApplicationException("Search is only supported for entity sets.",
+            HttpStatusCode.NOT_IMPLEMENTED.getStatusCode(), Locale.ROOT);
+      }
+      final List<Entity> searchResult = searchIndex.search(searchOption.getSearchExpression());
+      hits = Collections.newSetFromMap(new IdentityHashMap<Entity, Boolean>(searchResult.size() * 2));
+      hits.addAll(searchResult);
+    }
+
+    int count = 0;
+    for (final Entity entity : entities) {
+      if ((hits == null || hits.contains(entity))
+          && (filterOption == null || FilterHandler.matches(filterOption.getExpression(), entity, edmEntitySet))) {
+        count++;
+      }
+    }
+    return count;
+  }
 }
@@ -18,7 +18,8 @@
  */
 package org.apache.olingo.server.tecsvc.processor.queryoptions.options;
 
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 
 import org.apache.olingo.commons.api.data.Entity;
@@ -30,6 +31,7 @@ import org.apache.olingo.commons.api.http.HttpStatusCode;
 import org.apache.olingo.server.api.OData;
 import org.apache.olingo.server.api.ODataApplicationException;
 import org.apache.olingo.server.api.uri.queryoption.FilterOption;
+import org.apache.olingo.server.api.uri.queryoption.expression.Expression;
 import org.apache.olingo.server.api.uri.queryoption.expression.ExpressionVisitException;
 import org.apache.olingo.server.tecsvc.processor.queryoptions.expression.ExpressionVisitorImpl;
 import org.apache.olingo.server.tecsvc.processor.queryoptions.expression.operand.TypedOperand;
@@ -52,19 +54,25 @@ public class FilterHandler {
       return;
     }
 
-    try {
-      final Iterator<Entity> iter = entitySet.getEntities().iterator();
+    // Removing entities one by one from an array list would take quadratic time.
+    List<Entity> result = new ArrayList<Entity>();
+    for (final Entity entity : entitySet.getEntities()) {
+      if (matches(filterOption.getExpression(), entity, edmEntitySet)) {
+        result.add(entity);
+      }
+    }
+    entitySet.getEntities().clear();
+    entitySet.getEntities().addAll(result);
+  }
 
-      while (iter.hasNext()) {
-        final VisitorOperand operand = filterOption.getExpression()
-            .accept(new ExpressionVisitorImpl(iter.next(), edmEntitySet));
-        final TypedOperand typedOperand = operand.asTypedOperand();
+  static boolean matches(final Expression expression, final Entity entity, final EdmBindingTarget edmEntitySet)
+      throws ODataApplicationException {
+    try {
+      final VisitorOperand operand = expression.accept(new ExpressionVisitorImpl(entity, edmEntitySet));
+      final TypedOperand typedOperand = operand.asTypedOperand();
 
-        if (!(typedOperand.is(primBoolean)
-        && Boolean.TRUE.equals(typedOperand.getTypedValue(Boolean.class)))) {
-          iter.remove();
-        }
-      }
+      return typedOperand.is(primBoolean)
+          && Boolean.TRUE.equals(typedOperand.getTypedValue(Boolean.class));
 
     } catch (ExpressionVisitException e) {
       throw new ODataApplicationException("Exception in filter evaluation",
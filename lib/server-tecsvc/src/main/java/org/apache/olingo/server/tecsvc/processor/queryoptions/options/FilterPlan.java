@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.tecsvc.processor.queryoptions.options;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.edm.EdmPrimitiveType;
+import org.apache.olingo.commons.api.edm.EdmPrimitiveTypeException;
+import org.apache.olingo.commons.api.edm.EdmProperty;
+import org.apache.olingo.server.api.uri.UriResource;
+import org.apache.olingo.server.api.uri.UriResourcePrimitiveProperty;
+import org.apache.olingo.server.api.uri.queryoption.FilterOption;
+import org.apache.olingo.server.api.uri.queryoption.expression.Binary;
+import org.apache.olingo.server.api.uri.queryoption.expression.BinaryOperatorKind;
+import org.apache.olingo.server.api.uri.queryoption.expression.Expression;
+import org.apache.olingo.server.api.uri.queryoption.expression.Literal;
+import org.apache.olingo.server.api.uri.queryoption.expression.Member;
+import org.apache.olingo.server.api.uri.queryoption.expression.Method;
+import org.apache.olingo.server.api.uri.queryoption.expression.MethodKind;
+import org.apache.olingo.server.tecsvc.data.ColumnarEntityCollection;
+import org.apache.olingo.server.tecsvc.data.SecondaryIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Execution plan for a filter on an entity set with secondary indexes.
+ * The conjuncts of the filter expression (the operands of top-level <code>and</code> operators) of the form
+ * <code>property op literal</code> (with <code>eq</code>, <code>lt</code>, <code>le</code>, <code>gt</code>,
+ * <code>ge</code>) or <code>startswith(property, literal)</code> are looked up in the indexes of the properties.
+ * The candidate sets are intersected, starting with the most selective one;
+ * the complete filter is then evaluated only for the remaining candidates.
+ * Conjuncts without index are evaluated directly on the columns if the entity set is stored column by column
+ * (see {@link ColumnarEntityCollection}).
+ * The plan is logged with debug level and is available through {@link #toString()}.
+ */
+public class FilterPlan {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FilterPlan.class);
+
+  private final Set<Entity> candidates;
+  private final List<IndexLookup> lookups;
+
+  private FilterPlan(final Set<Entity> candidates, final List<IndexLookup> lookups) {
+    this.candidates = candidates;
+    this.lookups = lookups;
+  }
+
+  /**
+   * Creates the plan for a filter.
+   * @param filterOption the filter option or <code>null</code>
+   * @param indexes      the secondary indexes of the entity set by property name
+   * @param entitySet    the stored entity set or <code>null</code>
+   */
+  public static FilterPlan create(final FilterOption filterOption, final Map<String, SecondaryIndex> indexes,
+      final EntityCollection entitySet) {
+    final ColumnarEntityCollection columns = entitySet instanceof ColumnarEntityCollection ?
+        (ColumnarEntityCollection) entitySet : null;
+    List<IndexLookup> lookups = new ArrayList<IndexLookup>();
+    if (filterOption != null && (!indexes.isEmpty() || columns != null)) {
+      List<Expression> conjuncts = new ArrayList<Expression>();
+      collectConjuncts(filterOption.getExpression(), conjuncts);
+      for (final Expression conjunct : conjuncts) {
+        final IndexLookup lookup = lookup(conjunct, indexes, columns);
+        if (lookup != null) {
+          lookups.add(lookup);
+        }
+      }
+    }
+
+    Set<Entity> candidates = null;
+    if (!lookups.isEmpty()) {
+      Collections.sort(lookups, new Comparator<IndexLookup>() {
+        @Override
+        public int compare(final IndexLookup lookup1, final IndexLookup lookup2) {
+          return lookup1.result.size() - lookup2.result.size();
+        }
+      });
+      for (final IndexLookup lookup : lookups) {
+        if (candidates == null) {
+          candidates = Collections.newSetFromMap(new IdentityHashMap<Entity, Boolean>());
+          candidates.addAll(lookup.result);
+        } else {
+          candidates.retainAll(lookup.result);
+        }
+      }
+    }
+
+    final FilterPlan plan = new FilterPlan(candidates, lookups);
+    if (filterOption != null) {
+      LOG.debug("Filter plan: {}", plan);
+    }
+    return plan;
+  }
+
+  /** Returns whether an index is used. */
+  public boolean isIndexUsed() {
+    return candidates != null;
+  }
+
+  /**
+   * Gets the entities that have to be evaluated by the filter, in their original order.
+   * Without index, these are all the given entities.
+   */
+  public List<Entity> getCandidates(final List<Entity> entities) {
+    if (candidates == null) {
+      return entities;
+    }
+    List<Entity> result = new ArrayList<Entity>(Math.min(candidates.size(), entities.size()));
+    for (final Entity entity : entities) {
+      if (candidates.contains(entity)) {
+        result.add(entity);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    if (candidates == null) {
+      return "full scan";
+    }
+    StringBuilder result = new StringBuilder();
+    for (final IndexLookup lookup : lookups) {
+      result.append(result.length() == 0 ? "" : ", ")
+          .append(lookup.description).append(": ").append(lookup.result.size()).append(" candidate(s)");
+    }
+    return result.append("; residual filter on ").append(candidates.size()).append(" candidate(s)").toString();
+  }
+
+  private static void collectConjuncts(final Expression expression, final List<Expression> conjuncts) {
+    if (expression instanceof Binary && ((Binary) expression).getOperator() == BinaryOperatorKind.AND) {
+      collectConjuncts(((Binary) expression).getLeftOperand(), conjuncts);
+      collectConjuncts(((Binary) expression).getRightOperand(), conjuncts);
+    } else {
+      conjuncts.add(expression);
+    }
+  }
+
+  private static IndexLookup lookup(final Expression conjunct, final Map<String, SecondaryIndex> indexes,
+      final ColumnarEntityCollection columns) {
+    if (conjunct instanceof Binary) {
+      final Binary binary = (Binary) conjunct;
+      if (binary.getLeftOperand() instanceof Member && binary.getRightOperand() instanceof Literal) {
+        return lookup((Member) binary.getLeftOperand(), binary.getOperator(), (Literal) binary.getRightOperand(),
+            indexes, columns);
+      } else if (binary.getLeftOperand() instanceof Literal && binary.getRightOperand() instanceof Member) {
+        return lookup((Member) binary.getRightOperand(), mirror(binary.getOperator()),
+            (Literal) binary.getLeftOperand(), indexes, columns);
+      }
+    } else if (conjunct instanceof Method && ((Method) conjunct).getMethod() == MethodKind.STARTSWITH) {
+      final List<Expression> parameters = ((Method) conjunct).getParameters();
+      if (parameters.size() == 2 && parameters.get(0) instanceof Member && parameters.get(1) instanceof Literal) {
+        return lookup((Member) parameters.get(0), null, (Literal) parameters.get(1), indexes, columns);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Looks up a comparison in the index of the property, if there is one,
+   * or else evaluates it on the column of the property.
+   * @param operator the comparison operator, or <code>null</code> for a prefix comparison
+   * @param columns  the entity set stored column by column or <code>null</code>
+   */
+  private static IndexLookup lookup(final Member member, final BinaryOperatorKind operator, final Literal literal,
+      final Map<String, SecondaryIndex> indexes, final ColumnarEntityCollection columns) {
+    final EdmProperty edmProperty = getProperty(member);
+    if (edmProperty == null) {
+      return null;
+    }
+    final Object value = parseLiteral(literal, edmProperty);
+    if (value == null) {
+      return null;
+    }
+    final String condition = edmProperty.getName() + " for "
+        + (operator == null ? "startswith " : operator + " ") + literal.getText();
+    final SecondaryIndex index = indexes.get(edmProperty.getName());
+    if (index != null && (operator == null ? index.supportsPrefix() : index.supports(operator))) {
+      final Set<Entity> result = operator == null ?
+          value instanceof String ? index.lookupPrefix((String) value) : null :
+          index.lookup(operator, value);
+      if (result != null) {
+        return new IndexLookup(index.getKind() + " index on " + condition, result);
+      }
+    }
+    if (columns != null) {
+      final Set<Entity> result = operator == null ?
+          value instanceof String ? columns.selectPrefix(edmProperty.getName(), (String) value) : null :
+          columns.select(edmProperty.getName(), operator, value);
+      if (result != null) {
+        return new IndexLookup("column scan on " + condition, result);
+      }
+    }
+    return null;
+  }
+
+  private static EdmProperty getProperty(final Member member) {
+    if (member.getStartTypeFilter() != null || member.isCollection()) {
+      return null;
+    }
+    final List<UriResource> parts = member.getResourcePath().getUriResourceParts();
+    return parts.size() == 1 && parts.get(0) instanceof UriResourcePrimitiveProperty ?
+        ((UriResourcePrimitiveProperty) parts.get(0)).getProperty() :
+        null;
+  }
+
+  /** Converts the literal into a value of the type of the property; returns <code>null</code> if impossible. */
+  private static Object parseLiteral(final Literal literal, final EdmProperty edmProperty) {
+    if (!(edmProperty.getType() instanceof EdmPrimitiveType) || edmProperty.isCollection()) {
+      return null;
+    }
+    final EdmPrimitiveType type = (EdmPrimitiveType) edmProperty.getType();
+    try {
+      return type.valueOfString(type.fromUriLiteral(literal.getText()),
+          edmProperty.isNullable(), edmProperty.getMaxLength(), edmProperty.getPrecision(), edmProperty.getScale(),
+          edmProperty.isUnicode(), type.getDefaultType());
+    } catch (final EdmPrimitiveTypeException e) {
+      return null;
+    }
+  }
+
+  private static BinaryOperatorKind mirror(final BinaryOperatorKind operator) {
+    return operator == BinaryOperatorKind.LT ? BinaryOperatorKind.GT :
+        operator == BinaryOperatorKind.LE ? BinaryOperatorKind.GE :
+        operator == BinaryOperatorKind.GT ? BinaryOperatorKind.LT :
+        operator == BinaryOperatorKind.GE ? BinaryOperatorKind.LE :
+        operator;
+  }
+
+  private static class IndexLookup {
+    private final String description;
+    private final Set<Entity> result;
+
+    private IndexLookup(final String description, final Set<Entity> result) {
+      this.description = description;
+      this.result = result;
+    }
+  }
+}
@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.tecsvc.processor.queryoptions.options;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.edm.EdmBindingTarget;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.queryoption.CountOption;
+import org.apache.olingo.server.api.uri.queryoption.FilterOption;
+import org.apache.olingo.server.api.uri.queryoption.OrderByOption;
+import org.apache.olingo.server.api.uri.queryoption.SkipOption;
+import org.apache.olingo.server.api.uri.queryoption.TopOption;
+import org.apache.olingo.server.tecsvc.processor.queryoptions.options.SortKeys.SortedEntity;
+import org.apache.olingo.server.tecsvc.processor.queryoptions.options.SortKeys.SortedEntityComparator;
+
+/**
+ * Applies $filter, $count, and $orderby to large entity collections in parallel.
+ * The collection is split into partitions which are filtered and sorted by the threads of an executor;
+ * the sorted runs are merged afterwards.
+ * If $top is given, only the first $skip + $top entities of each run and of the merged result are kept;
+ * $skip and $top themselves are applied afterwards by the {@link SkipHandler} and the {@link TopHandler}.
+ * Collections with fewer entities than the threshold are processed sequentially.
+ */
+public class ParallelQueryHandler {
+
+  /** Default minimum number of entities for parallel processing. */
+  public static final int DEFAULT_THRESHOLD = 10000;
+
+  private final ExecutorService executor;
+  private final int parallelism;
+  private final int threshold;
+
+  /**
+   * @param executor    executor to run the partitions; it is not shut down by this handler
+   * @param parallelism number of partitions
+   * @param threshold   minimum number of entities for parallel processing
+   */
+  public ParallelQueryHandler(final ExecutorService executor, final int parallelism, final int threshold) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("The parallelism must be positive.");
+    }
+    this.executor = executor;
+    this.parallelism = parallelism;
+    this.threshold = threshold;
+  }
+
+  public void applyFilterCountOrderBy(final FilterOption filterOption, final CountOption countOption,
+      final OrderByOption orderByOption, final SkipOption skipOption, final TopOption topOption,
+      final EntityCollection entitySet, final EdmBindingTarget edmBindingTarget) throws ODataApplicationException {
+
+    final List<Entity> entities = entitySet.getEntities();
+    if (entities.size() < threshold || parallelism == 1) {
+      FilterHandler.applyFilterSystemQuery(filterOption, entitySet, edmBindingTarget);
+      CountHandler.applyCountSystemQueryOption(countOption, entitySet);
+      OrderByHandler.applyOrderByOption(orderByOption, entitySet, edmBindingTarget);
+      return;
+    }
+
+    final int limit = getLimit(skipOption, topOption);
+    final List<Run> runs = evaluatePartitions(filterOption, orderByOption, limit, entities, edmBindingTarget);
+
+    int count = 0;
+    for (final Run run : runs) {
+      count += run.count;
+    }
+    final List<Entity> result = orderByOption == null ? concatenate(runs, limit) :
+        merge(runs, limit, SortKeys.getComparator(orderByOption, 0));
+
+    entities.clear();
+    entities.addAll(result);
+    if (countOption != null && countOption.getValue()) {
+      entitySet.setCount(count);
+    }
+  }
+
+  /** Gets the number of entities needed for $skip and $top, or {@link Integer#MAX_VALUE} without limit. */
+  private static int getLimit(final SkipOption skipOption, final TopOption topOption) {
+    if (topOption == null || topOption.getValue() < 0
+        || skipOption != null && skipOption.getValue() < 0) {
+      // Invalid values are reported by the skip and top handlers.
+      return Integer.MAX_VALUE;
+    }
+    final long limit = (long) topOption.getValue() + (skipOption == null ? 0 : skipOption.getValue());
+    return (int) Math.min(limit, Integer.MAX_VALUE);
+  }
+
+  private List<Run> evaluatePartitions(final FilterOption filterOption, final OrderByOption orderByOption,
+      final int limit, final List<Entity> entities, final EdmBindingTarget edmBindingTarget)
+      throws ODataApplicationException {
+    final int partitionSize = (entities.size() + parallelism - 1) / parallelism;
+    List<Future<Run>> futures = new ArrayList<Future<Run>>(parallelism);
+    try {
+      for (int start = 0; start < entities.size(); start += partitionSize) {
+        final List<Entity> partition = entities.subList(start, Math.min(start + partitionSize, entities.size()));
+        futures.add(executor.submit(new Callable<Run>() {
+          @Override
+          public Run call() throws ODataApplicationException {
+            return evaluatePartition(filterOption, orderByOption, limit, partition, edmBindingTarget);
+          }
+        }));
+      }
+      List<Run> runs = new ArrayList<Run>(futures.size());
+      for (final Future<Run> future : futures) {
+        runs.add(future.get());
+      }
+      return runs;
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ODataApplicationException("Query evaluation has been interrupted.",
+          HttpStatusCode.SERVICE_UNAVAILABLE.getStatusCode(), Locale.ROOT);
+    } catch (final ExecutionException e) {
+      if (e.getCause() instanceof ODataApplicationException) {
+        throw (ODataApplicationException) e.getCause();
+      } else if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      } else {
+        throw new ODataApplicationException("Exception in query evaluation",
+            HttpStatusCode.INTERNAL_SERVER_ERROR.getStatusCode(), Locale.ROOT);
+      }
+    } finally {
+      // No-op for finished partitions; stops the remaining ones after an error.
+      for (final Future<Run> future : futures) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  private static Run evaluatePartition(final FilterOption filterOption, final OrderByOption orderByOption,
+      final int limit, final List<Entity> partition, final EdmBindingTarget edmBindingTarget)
+      throws ODataApplicationException {
+    List<Entity> matches = new ArrayList<Entity>();
+    for (final Entity entity : partition) {
+      if (Thread.interrupted()) {
+        throw new ODataApplicationException("Query evaluation has been interrupted.",
+            HttpStatusCode.SERVICE_UNAVAILABLE.getStatusCode(), Locale.ROOT);
+      }
+      if (filterOption == null || FilterHandler.matches(filterOption.getExpression(), entity, edmBindingTarget)) {
+        matches.add(entity);
+      }
+    }
+    final int size = Math.min(matches.size(), limit);
+    return orderByOption == null ?
+        new Run(matches.size(), matches.subList(0, size), null) :
+        new Run(matches.size(), null, SortKeys.sort(matches, orderByOption, edmBindingTarget).subList(0, size));
+  }
+
+  private static List<Entity> concatenate(final List<Run> runs, final int limit) {
+    List<Entity> result = new ArrayList<Entity>();
+    for (final Run run : runs) {
+      for (final Entity entity : run.entities) {
+        if (result.size() == limit) {
+          return result;
+        }
+        result.add(entity);
+      }
+    }
+    return result;
+  }
+
+  /** Merges the sorted runs; entities with equal sort keys keep the order of their partitions. */
+  private static List<Entity> merge(final List<Run> runs, final int limit, final Comparator<Object[]> comparator) {
+    final SortedEntityComparator entityComparator = new SortedEntityComparator(comparator);
+    PriorityQueue<RunCursor> queue = new PriorityQueue<RunCursor>(runs.size(), new Comparator<RunCursor>() {
+      @Override
+      public int compare(final RunCursor c1, final RunCursor c2) {
+        final int result = entityComparator.compare(c1.current(), c2.current());
+        return result == 0 ? c1.runIndex - c2.runIndex : result;
+      }
+    });
+    for (int index = 0; index < runs.size(); index++) {
+      if (!runs.get(index).sorted.isEmpty()) {
+        queue.add(new RunCursor(runs.get(index).sorted, index));
+      }
+    }
+
+    List<Entity> result = new ArrayList<Entity>();
+    while (!queue.isEmpty() && result.size() < limit) {
+      final RunCursor cursor = queue.poll();
+      result.add(cursor.current().entity);
+      if (cursor.advance()) {
+        queue.add(cursor);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Result of a partition: the number of matching entities and the first matching entities,
+   * either in their original order or sorted.
+   */
+  private static class Run {
+    private final int count;
+    private final List<Entity> entities;
+    private final List<SortedEntity> sorted;
+
+    private Run(final int count, final List<Entity> entities, final List<SortedEntity> sorted) {
+      this.count = count;
+      this.entities = entities;
+      this.sorted = sorted;
+    }
+  }
+
+  private static class RunCursor {
+    private final List<SortedEntity> run;
+    private final int runIndex;
+    private int position;
+
+    private RunCursor(final List<SortedEntity> run, final int runIndex) {
+      this.run = run;
+      this.runIndex = runIndex;
+    }
+
+    private SortedEntity current() {
+      return run.get(position);
+    }
+
+    private boolean advance() {
+      return ++position < run.size();
+    }
+  }
+}
@@ -18,84 +18,93 @@
  */
 package org.apache.olingo.server.tecsvc.processor.queryoptions.options;
 
-import java.net.URI;
-import java.net.URISyntaxException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Locale;
+import java.util.PriorityQueue;
 
+import org.apache.olingo.commons.api.data.Entity;
 import org.apache.olingo.commons.api.data.EntityCollection;
 import org.apache.olingo.commons.api.edm.EdmEntitySet;
+import org.apache.olingo.commons.api.http.HttpHeader;
 import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.OData;
 import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.ODataRequest;
+import org.apache.olingo.server.api.ODataResponse;
+import org.apache.olingo.server.api.paging.PagingHelper;
+import org.apache.olingo.server.api.uri.queryoption.OrderByOption;
 import org.apache.olingo.server.api.uri.queryoption.SkipTokenOption;
-import org.apache.olingo.server.api.uri.queryoption.SystemQueryOptionKind;
-import org.apache.olingo.server.tecsvc.Encoder;
-
+import org.apache.olingo.server.tecsvc.processor.queryoptions.options.SortKeys.SortedEntity;
+import org.apache.olingo.server.tecsvc.processor.queryoptions.options.SortKeys.SortedEntityComparator;
+
+/**
+ * Server-driven paging with keyset skip tokens.
+ * The skip token contains the sort key (order-by values and key values) of the last entity of the previous page;
+ * the next page consists of the smallest entities with a greater sort key, selected with a bounded heap
+ * instead of skipping all previous pages.
+ */
 public class ServerSidePagingHandler {
   private static final int MAX_PAGE_SIZE = 10;
   private static final String ES_SERVER_SIDE_PAGING = "ESServerSidePaging";
+  private static final PagingHelper pagingHelper;
 
-  public static void applyServerSidePaging(final SkipTokenOption skipTokenOption, final EntityCollection entitySet,
-      final EdmEntitySet edmEntitySet, final String rawRequestUri) throws ODataApplicationException {
-
-    if (edmEntitySet != null && shouldApplyServerSidePaging(edmEntitySet)) {
-      final int maxPageSize = getMaxPageSize();
-      final int page = getPage(skipTokenOption);
-      final int itemsToSkip = maxPageSize * page;
+  static {
+    final byte[] secret = new byte[32];
+    new SecureRandom().nextBytes(secret);
+    pagingHelper = OData.newInstance().createPagingHelper(secret);
+  }
 
-      if (itemsToSkip <= entitySet.getEntities().size()) {
-        SkipHandler.popAtMost(entitySet, itemsToSkip);
-        final int remainingItems = entitySet.getEntities().size();
-        TopHandler.reduceToSize(entitySet, maxPageSize);
+  public static void applyServerSidePaging(final SkipTokenOption skipTokenOption, final OrderByOption orderByOption,
+      final EntityCollection entitySet, final EdmEntitySet edmEntitySet, final ODataRequest request,
+      final ODataResponse response) throws ODataApplicationException {
 
-        // Determine if a new next Link has to be provided
-        if (remainingItems > maxPageSize) {
-          entitySet.setNext(createNextLink(rawRequestUri, page + 1));
+    if (edmEntitySet != null && shouldApplyServerSidePaging(edmEntitySet)) {
+      final int maxPageSize = getMaxPageSize(request, response);
+      final List<String> keyNames = edmEntitySet.getEntityType().getKeyPredicateNames();
+      final int sortKeyLength = (orderByOption == null ? 0 : orderByOption.getOrders().size()) + keyNames.size();
+      final Object[] lastSortKey = skipTokenOption == null ? null :
+          pagingHelper.parseSkipToken(skipTokenOption.getValue()).toArray();
+      if (lastSortKey != null && lastSortKey.length != sortKeyLength) {
+        throw new ODataApplicationException("Invalid skip token", HttpStatusCode.BAD_REQUEST.getStatusCode(),
+            Locale.ROOT);
+      }
+      final Comparator<Object[]> comparator = SortKeys.getComparator(orderByOption, keyNames.size());
+
+      // Keep the maxPageSize + 1 smallest entities after the last sort key; the largest one is on top.
+      PriorityQueue<SortedEntity> heap = new PriorityQueue<SortedEntity>(maxPageSize + 1,
+          Collections.reverseOrder(new SortedEntityComparator(comparator)));
+      for (final Entity entity : entitySet.getEntities()) {
+        final Object[] sortKey = SortKeys.evaluate(entity, orderByOption, edmEntitySet, keyNames);
+        if (lastSortKey == null || comparator.compare(sortKey, lastSortKey) > 0) {
+          if (heap.size() <= maxPageSize) {
+            heap.add(new SortedEntity(entity, sortKey));
+          } else if (comparator.compare(sortKey, heap.peek().sortKey) < 0) {
+            heap.poll();
+            heap.add(new SortedEntity(entity, sortKey));
+          }
         }
-      } else {
-        throw new ODataApplicationException("Nothing found.", HttpStatusCode.NOT_FOUND.getStatusCode(), Locale.ROOT);
       }
-    }
-  }
 
-  private static URI createNextLink(final String rawRequestUri, final Integer page)
-      throws ODataApplicationException {
-
-    try {
-      // Remove skip token
-      String nextlink = rawRequestUri;
-
-      // Remove a may existing skiptoken, make sure that the query part is not empty
-      if (rawRequestUri.contains("?")) {
-        nextlink = rawRequestUri.replaceAll("(\\$|%24)skiptoken=.+&?", "").replaceAll("(\\?|&)$", "");
+      List<SortedEntity> page = new ArrayList<SortedEntity>(heap);
+      Collections.sort(page, Collections.reverseOrder(heap.comparator()));
+      final boolean hasNext = page.size() > maxPageSize;
+      if (hasNext) {
+        page = page.subList(0, maxPageSize);
       }
 
-      // Add a question mark or an ampersand, depending of the current query part
-      if (!nextlink.contains("?")) {
-        nextlink = nextlink + "?";
-      } else {
-        nextlink = nextlink + "&";
+      entitySet.getEntities().clear();
+      for (final SortedEntity sortedEntity : page) {
+        entitySet.getEntities().add(sortedEntity.entity);
       }
-
-      // Append the new nextlink
-      return new URI(nextlink + Encoder.encode(SystemQueryOptionKind.SKIPTOKEN.toString()) + "="
-          + Encoder.encode(page.toString()));
-
-    } catch (URISyntaxException e) {
-      throw new ODataApplicationException("Exception while constructing next link",
-          HttpStatusCode.INTERNAL_SERVER_ERROR.getStatusCode(), Locale.ROOT);
-    }
-  }
-
-  private static int getPage(SkipTokenOption skipTokenOption) throws ODataApplicationException {
-    if (skipTokenOption != null) {
-      try {
-        return Integer.parseInt(skipTokenOption.getValue());
-      } catch (NumberFormatException e) {
-        throw new ODataApplicationException("Invalid skip token", HttpStatusCode.BAD_REQUEST.getStatusCode(),
-            Locale.ROOT);
+      if (hasNext) {
+        final String skipToken = pagingHelper.createSkipToken(Arrays.asList(page.get(page.size() - 1).sortKey));
+        entitySet.setNext(pagingHelper.createNextLink(request, skipToken));
       }
-    } else {
-      return 0;
     }
   }
 
@@ -103,8 +112,13 @@ public class ServerSidePagingHandler {
     return ES_SERVER_SIDE_PAGING.equals(edmEntitySet.getName());
   }
 
-  private static int getMaxPageSize() {
-    // TODO Consider odata.maxpagesize preference?
+  private static int getMaxPageSize(final ODataRequest request, final ODataResponse response) {
+    final Integer preferredMaxPageSize = pagingHelper.getPreferredMaxPageSize(request);
+    if (preferredMaxPageSize != null && preferredMaxPageSize < MAX_PAGE_SIZE) {
+      response.setHeader(HttpHeader.PREFERENCE_APPLIED,
+          PagingHelper.PREFERENCE_MAX_PAGE_SIZE + '=' + preferredMaxPageSize);
+      return preferredMaxPageSize;
+    }
     return MAX_PAGE_SIZE;
   }
 }
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.tecsvc.processor.queryoptions.options;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.edm.EdmBindingTarget;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.queryoption.OrderByItem;
+import org.apache.olingo.server.api.uri.queryoption.OrderByOption;
+import org.apache.olingo.server.api.uri.queryoption.expression.ExpressionVisitException;
+import org.apache.olingo.server.tecsvc.processor.queryoptions.expression.ExpressionVisitorImpl;
+import org.apache.olingo.server.tecsvc.processor.queryoptions.expression.operand.TypedOperand;
+
+/**
+ * Sort keys of entities: the values of the order-by expressions, optionally followed by key-property values.
+ * The expressions are evaluated once per entity instead of twice per comparison.
+ */
+class SortKeys {
+
+  private SortKeys() {}
+
+  static Object[] evaluate(final Entity entity, final OrderByOption orderByOption,
+      final EdmBindingTarget edmBindingTarget, final List<String> keyNames) throws ODataApplicationException {
+    final List<OrderByItem> orders = getOrders(orderByOption);
+    Object[] sortKey = new Object[orders.size() + keyNames.size()];
+    int index = 0;
+    for (final OrderByItem item : orders) {
+      try {
+        final TypedOperand operand =
+            item.getExpression().accept(new ExpressionVisitorImpl(entity, edmBindingTarget)).asTypedOperand();
+        sortKey[index++] = operand.isNull() ? null : operand.getValue();
+      } catch (final ExpressionVisitException e) {
+        throw new ODataApplicationException("Exception in orderBy evaluation",
+            HttpStatusCode.INTERNAL_SERVER_ERROR.getStatusCode(), Locale.ROOT);
+      }
+    }
+    for (final String keyName : keyNames) {
+      sortKey[index++] = entity.getProperty(keyName).getValue();
+    }
+    return sortKey;
+  }
+
+  /** Gets the comparator for sort keys; key-property values are always sorted ascending. */
+  static Comparator<Object[]> getComparator(final OrderByOption orderByOption, final int keyCount) {
+    final List<OrderByItem> orders = getOrders(orderByOption);
+    boolean[] descending = new boolean[orders.size() + keyCount];
+    for (int index = 0; index < orders.size(); index++) {
+      descending[index] = orders.get(index).isDescending();
+    }
+    return new SortKeyComparator(descending);
+  }
+
+  /** Sorts the entities stably by their order-by values. */
+  static List<SortedEntity> sort(final List<Entity> entities, final OrderByOption orderByOption,
+      final EdmBindingTarget edmBindingTarget) throws ODataApplicationException {
+    List<SortedEntity> result = new ArrayList<SortedEntity>(entities.size());
+    for (final Entity entity : entities) {
+      result.add(new SortedEntity(entity,
+          evaluate(entity, orderByOption, edmBindingTarget, Collections.<String> emptyList())));
+    }
+    Collections.sort(result, new SortedEntityComparator(getComparator(orderByOption, 0)));
+    return result;
+  }
+
+  private static List<OrderByItem> getOrders(final OrderByOption orderByOption) {
+    return orderByOption == null ? Collections.<OrderByItem> emptyList() : orderByOption.getOrders();
+  }
+
+  static class SortedEntity {
+    final Entity entity;
+    final Object[] sortKey;
+
+    SortedEntity(final Entity entity, final Object[] sortKey) {
+      this.entity = entity;
+      this.sortKey = sortKey;
+    }
+  }
+
+  static class SortedEntityComparator implements Comparator<SortedEntity> {
+    private final Comparator<Object[]> comparator;
+
+    SortedEntityComparator(final Comparator<Object[]> comparator) {
+      this.comparator = comparator;
+    }
+
+    @Override
+    public int compare(final SortedEntity e1, final SortedEntity e2) {
+      return comparator.compare(e1.sortKey, e2.sortKey);
+    }
+  }
+
+  /**
+   * Compares sort keys value by value: null is smaller than all other values,
+   * values of different types are treated as equal.
+   */
+  private static class SortKeyComparator implements Comparator<Object[]> {
+    private final boolean[] descending;
+
+    private SortKeyComparator(final boolean[] descending) {
+      this.descending = descending;
+    }
+
+    @Override
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public int compare(final Object[] key1, final Object[] key2) {
+      int result = 0;
+      for (int index = 0; index < descending.length && result == 0; index++) {
+        final Object o1 = key1[index];
+        final Object o2 = key2[index];
+        if (o1 == null || o2 == null) {
+          result = o1 == null ? o2 == null ? 0 : -1 : 1;
+        } else if (o1.getClass() == o2.getClass() && o1 instanceof Comparable) {
+          result = ((Comparable) o1).compareTo(o2);
+        }
+        result = descending[index] ? result * -1 : result;
+      }
+      return result;
+    }
+  }
+}
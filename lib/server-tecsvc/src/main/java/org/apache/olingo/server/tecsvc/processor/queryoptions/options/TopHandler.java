@@ -18,8 +18,10 @@
  */
 package org.apache.olingo.server.tecsvc.processor.queryoptions.options;
 
+import java.util.List;
 import java.util.Locale;
 
+import org.apache.olingo.commons.api.data.Entity;
 import org.apache.olingo.commons.api.data.EntityCollection;
 import org.apache.olingo.commons.api.http.HttpStatusCode;
 import org.apache.olingo.server.api.ODataApplicationException;
@@ -40,8 +42,9 @@ public class TopHandler {
   }
 
   static void reduceToSize(final EntityCollection entitySet, final int n) {
-    while (entitySet.getEntities().size() > n) {
-      entitySet.getEntities().remove(entitySet.getEntities().size() - 1);
+    final List<Entity> entities = entitySet.getEntities();
+    if (entities.size() > n) {
+      entities.subList(n, entities.size()).clear();
     }
   }
 }
@@ -18,21 +18,32 @@
  */
 package org.apache.olingo.server.tecsvc.data;
 
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.olingo.commons.api.data.ComplexValue;
 import org.apache.olingo.commons.api.data.Entity;
 import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.Link;
 import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.data.ValueType;
 import org.apache.olingo.commons.api.edm.Edm;
 import org.apache.olingo.commons.api.edm.EdmEntityContainer;
 import org.apache.olingo.commons.api.edm.EdmEntitySet;
+import org.apache.olingo.commons.api.edm.EdmProperty;
 import org.apache.olingo.commons.api.edm.FullQualifiedName;
 import org.apache.olingo.server.api.OData;
 import org.apache.olingo.server.api.edmx.EdmxReference;
+import org.apache.olingo.server.api.search.SearchIndex;
 import org.apache.olingo.server.api.uri.UriParameter;
+import org.apache.olingo.server.api.uri.queryoption.expression.BinaryOperatorKind;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchTerm;
 import org.apache.olingo.server.tecsvc.provider.EdmTechProvider;
 import org.junit.Assert;
 import org.junit.Test;
@@ -52,6 +63,7 @@ public class DataProviderTest {
   private final EdmEntitySet esCollAllPrim = entityContainer.getEntitySet("ESCollAllPrim");
   private final EdmEntitySet esMixPrimCollComp = entityContainer.getEntitySet("ESMixPrimCollComp");
   private final EdmEntitySet esMedia = entityContainer.getEntitySet("ESMedia");
+  private final EdmEntitySet esServerSidePaging = entityContainer.getEntitySet("ESServerSidePaging");
 
   @Test
   public void esAllPrimEntity() throws Exception {
@@ -163,15 +175,289 @@ public class DataProviderTest {
     Assert.assertEquals(3, dataProvider.readAll(esMedia).getEntities().size());
     entity = dataProvider.create(esMedia);
     Assert.assertEquals(3, entity.getProperty("PropertyInt16").getValue());
-    dataProvider.setMedia(entity, new byte[] { 1, 2, 3, 4 }, "x/y");
+    final int propertyCount = entity.getProperties().size();
+    dataProvider.setMedia(esMedia, entity, new byte[] { 1, 2, 3, 4 }, "x/y");
     Assert.assertArrayEquals(new byte[] { 1, 2, 3, 4 }, dataProvider.readMedia(entity));
+    Assert.assertEquals(propertyCount, entity.getProperties().size());
     Assert.assertEquals("x/y", entity.getMediaContentType());
   }
 
+  @Test
+  public void searchIndex() throws Exception {
+    DataProvider dataProvider = new DataProvider();
+    dataProvider.setOData(OData.newInstance());
+    final SearchTerm resource = Mockito.mock(SearchTerm.class);
+    Mockito.when(resource.getSearchTerm()).thenReturn("resource");
+    final SearchIndex searchIndex = dataProvider.getSearchIndex(esAllPrim);
+    Assert.assertSame(searchIndex, dataProvider.getSearchIndex(esAllPrim));
+    Assert.assertEquals(dataProvider.readAll(esAllPrim).getEntities().size(), searchIndex.size());
+    Assert.assertEquals(2, searchIndex.search(resource).size());
+
+    final Entity entity = dataProvider.create(esAllPrim);
+    Assert.assertEquals(2, searchIndex.search(resource).size());
+    dataProvider.update(null, esAllPrim, entity,
+        new Entity().addProperty(DataCreator.createPrimitive("PropertyString", "Third Resource")), true, false);
+    Assert.assertEquals(3, searchIndex.search(resource).size());
+
+    dataProvider.delete(esAllPrim, entity);
+    Assert.assertEquals(2, searchIndex.search(resource).size());
+    Assert.assertEquals(dataProvider.readAll(esAllPrim).getEntities().size(), searchIndex.size());
+  }
+
+  @Test
+  public void countCache() throws Exception {
+    DataProvider dataProvider = new DataProvider();
+    final CountCache countCache = dataProvider.getCountCache();
+    final long version = countCache.getVersion(esAllPrim.getName());
+    countCache.put(esAllPrim.getName(), "query", 2, version);
+    Assert.assertEquals(Integer.valueOf(2), countCache.get(esAllPrim.getName(), "query"));
+    Assert.assertNull(countCache.get(esAllPrim.getName(), "other"));
+
+    final Entity entity = dataProvider.create(esAllPrim);
+    Assert.assertNull(countCache.get(esAllPrim.getName(), "query"));
+    countCache.put(esAllPrim.getName(), "query", 3, version);
+    Assert.assertNull(countCache.get(esAllPrim.getName(), "query"));
+
+    countCache.put(esAllPrim.getName(), "query", 3, countCache.getVersion(esAllPrim.getName()));
+    Assert.assertEquals(Integer.valueOf(3), countCache.get(esAllPrim.getName(), "query"));
+    dataProvider.delete(esAllPrim, entity);
+    Assert.assertEquals(0, countCache.size());
+  }
+
+  @Test
+  public void secondaryIndex() throws Exception {
+    DataProvider dataProvider = new DataProvider();
+    final SecondaryIndex index = dataProvider.getIndexes(esServerSidePaging).get("PropertyInt16");
+    Assert.assertEquals(SecondaryIndex.Kind.SORTED, index.getKind());
+    Assert.assertEquals(503, index.size());
+    Assert.assertEquals(1, index.lookup(BinaryOperatorKind.EQ, (short) 7).size());
+    Assert.assertEquals(4, index.lookup(BinaryOperatorKind.LT, 5L).size());
+    Assert.assertEquals(4, index.lookup(BinaryOperatorKind.GE, new BigDecimal("500.0")).size());
+    Assert.assertTrue(index.lookup(BinaryOperatorKind.GT, 503).isEmpty());
+    Assert.assertNull(index.lookup(BinaryOperatorKind.NE, 1));
+    Assert.assertNull(index.lookupPrefix("1"));
+
+    final Entity entity = dataProvider.create(esServerSidePaging);
+    Assert.assertEquals(504, index.size());
+    Assert.assertTrue(index.lookup(BinaryOperatorKind.GT, 503).contains(entity));
+    dataProvider.delete(esServerSidePaging, entity);
+    Assert.assertEquals(503, index.size());
+    Assert.assertTrue(index.lookup(BinaryOperatorKind.GT, 503).isEmpty());
+
+    final SecondaryIndex stringIndex = dataProvider.getIndexes(esAllPrim).get("PropertyString");
+    Assert.assertEquals(1, stringIndex.lookupPrefix("First").size());
+    Assert.assertEquals(0, stringIndex.lookupPrefix("first").size());
+    Assert.assertTrue(dataProvider.getIndexes(esMedia).isEmpty());
+  }
+
+  @Test
+  public void columnarStorage() throws Exception {
+    DataProvider dataProvider = new DataProvider();
+    final EntityCollection entitySet = dataProvider.readAll(esServerSidePaging);
+    Assert.assertTrue(entitySet instanceof ColumnarEntityCollection);
+    final ColumnarEntityCollection columns = (ColumnarEntityCollection) entitySet;
+    Assert.assertEquals(503, columns.getEntities().size());
+    final Entity entity = columns.getEntities().get(6);
+    Assert.assertSame(entity, columns.getEntities().get(6));
+    Assert.assertEquals(7, entity.getProperty("PropertyInt16").getValue());
+    Assert.assertEquals("Number:7", entity.getProperty("PropertyString").getValue());
+    Assert.assertNull(entity.getProperty("PropertyDecimal"));
+    Assert.assertSame(entity, dataProvider.read(esServerSidePaging,
+        Arrays.asList(mockParameter("PropertyInt16", "7"))));
+
+    Assert.assertEquals(1, columns.select("PropertyInt16", BinaryOperatorKind.EQ, (short) 7).size());
+    Assert.assertEquals(4, columns.select("PropertyInt16", BinaryOperatorKind.LT, 5L).size());
+    Assert.assertEquals(4, columns.select("PropertyInt16", BinaryOperatorKind.GE, new BigDecimal("500.0")).size());
+    Assert.assertEquals(1, columns.select("PropertyString", BinaryOperatorKind.EQ, "Number:7").size());
+    Assert.assertEquals(111, columns.selectPrefix("PropertyString", "Number:1").size());
+    Assert.assertNull(columns.select("PropertyInt16", BinaryOperatorKind.NE, 7));
+    Assert.assertNull(columns.selectPrefix("PropertyInt16", "7"));
+
+    dataProvider.updateProperty((EdmProperty) esServerSidePaging.getEntityType().getProperty("PropertyString"),
+        entity.getProperty("PropertyString"), new Property(null, "PropertyString", ValueType.PRIMITIVE, "Seven"),
+        false);
+    Assert.assertEquals("Seven", entity.getProperty("PropertyString").getValue());
+    Assert.assertTrue(columns.select("PropertyString", BinaryOperatorKind.EQ, "Seven").contains(entity));
+    entity.getProperty("PropertyInt16").setValue(ValueType.PRIMITIVE, Long.MAX_VALUE);
+    Assert.assertEquals(Long.MAX_VALUE, entity.getProperty("PropertyInt16").getValue());
+    Assert.assertEquals(502, columns.select("PropertyInt16", BinaryOperatorKind.LT, 1000).size());
+    Assert.assertEquals(8, columns.getEntities().get(7).getProperty("PropertyInt16").getValue());
+
+    final Entity created = dataProvider.create(esServerSidePaging);
+    final EntityCollection thawed = dataProvider.readAll(esServerSidePaging);
+    Assert.assertFalse(thawed instanceof ColumnarEntityCollection);
+    Assert.assertEquals(504, thawed.getEntities().size());
+    Assert.assertSame(entity, thawed.getEntities().get(6));
+    Assert.assertSame(created, thawed.getEntities().get(503));
+    Assert.assertEquals(503, columns.getEntities().size());
+
+    Assert.assertFalse(dataProvider.storeColumnar("ESMedia"));
+    Assert.assertFalse(dataProvider.readAll(esMedia) instanceof ColumnarEntityCollection);
+  }
+
   private static UriParameter mockParameter(final String name, final String text) {
     UriParameter parameter = Mockito.mock(UriParameter.class);
     Mockito.when(parameter.getName()).thenReturn(name);
     Mockito.when(parameter.getText()).thenReturn(text);
     return parameter;
   }
+
+  @Test
+  public void readSnapshot() throws Exception {
+    final DataProvider data = new DataProvider();
+    data.setEdm(edm);
+    final List<Entity> entities = data.readAll(esAllPrim).getEntities();
+    final Iterator<Entity> iterator = entities.iterator();
+
+    final Entity created = data.create(esAllPrim);
+    Assert.assertEquals(esAllPrim.getEntityType().getNavigationPropertyNames().size(),
+        created.getNavigationLinks().size());
+    final Entity first = entities.get(0);
+    data.delete(esAllPrim, first);
+
+    int count = 0;
+    while (iterator.hasNext()) {
+      iterator.next();
+      count++;
+    }
+    Assert.assertEquals(3, count);
+    Assert.assertEquals(3, entities.size());
+    Assert.assertFalse(entities.contains(first));
+    Assert.assertTrue(entities.contains(created));
+  }
+
+  @Test
+  public void concurrentReadAndWrite() throws Exception {
+    final DataProvider data = new DataProvider();
+    data.setEdm(edm);
+    final EdmEntitySet esTwoPrim = entityContainer.getEntitySet("ESTwoPrim");
+    final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+    final AtomicBoolean writing = new AtomicBoolean(true);
+
+    List<Thread> readers = new ArrayList<Thread>();
+    for (int i = 0; i < 4; i++) {
+      readers.add(new Thread() {
+        @Override
+        public void run() {
+          try {
+            do {
+              for (final Entity entity : data.readAll(esAllPrim).getEntities()) {
+                for (final Link link : entity.getNavigationLinks()) {
+                  if (link.getInlineEntitySet() != null) {
+                    for (final Entity target : link.getInlineEntitySet().getEntities()) {
+                      Assert.assertNotNull(target.getProperty("PropertyInt16"));
+                    }
+                  }
+                }
+              }
+              Assert.assertFalse(data.readAll(esTwoPrim).getEntities().isEmpty());
+            } while (writing.get());
+          } catch (final Throwable e) {
+            failures.add(e);
+          }
+        }
+      });
+    }
+    for (final Thread reader : readers) {
+      reader.start();
+    }
+    try {
+      for (int i = 0; i < 200; i++) {
+        final Entity entity = data.create(esTwoPrim);
+        data.readAll(esAllPrim).getEntities().get(0).getNavigationLink("NavPropertyETTwoPrimMany")
+            .getInlineEntitySet().getEntities().add(entity);
+        data.delete(esTwoPrim, entity);
+      }
+    } finally {
+      writing.set(false);
+      for (final Thread reader : readers) {
+        reader.join();
+      }
+    }
+    Assert.assertEquals(Collections.emptyList(), failures);
+    Assert.assertEquals(4, data.readAll(esTwoPrim).getEntities().size());
+  }
+
+  @Test
+  public void dataStore() throws Exception {
+    File directory = File.createTempFile("tecsvc", "");
+    Assert.assertTrue(directory.delete());
+    try {
+      DataProvider data = new DataProvider(new DataStore(directory, 100));
+      storeData(data);
+
+      // Recovery from the log
+      data = new DataProvider(new DataStore(directory, 100));
+      checkStoredData(data);
+
+      // Recovery from the snapshot written when closing
+      data.setEdm(edm);
+      data.close();
+      Assert.assertEquals(Arrays.asList("data.log.1", "data.snapshot.1"), getSortedFileNames(directory));
+      Assert.assertEquals(0, new File(directory, "data.log.1").length());
+      data = new DataProvider(new DataStore(directory, 100));
+      checkStoredData(data);
+      data.close();
+    } finally {
+      for (final File file : directory.listFiles()) {
+        file.delete();
+      }
+      directory.delete();
+    }
+  }
+
+  @Test
+  public void dataStoreWithSnapshotBeforeEndOfLog() throws Exception {
+    File directory = File.createTempFile("tecsvc", "");
+    Assert.assertTrue(directory.delete());
+    try {
+      // The third commit starts a snapshot; the fourth one is only in the newer log generation.
+      DataProvider data = new DataProvider(new DataStore(directory, 3));
+      storeData(data);
+      Assert.assertEquals(Arrays.asList("data.log.1", "data.snapshot.1"), getSortedFileNames(directory));
+      Assert.assertTrue(new File(directory, "data.log.1").length() > 0);
+
+      DataProvider recovered = new DataProvider(new DataStore(directory, 3));
+      checkStoredData(recovered);
+      data.close();
+    } finally {
+      for (final File file : directory.listFiles()) {
+        file.delete();
+      }
+      directory.delete();
+    }
+  }
+
+  private void storeData(final DataProvider data) throws Exception {
+    data.setEdm(edm);
+    final Entity created = data.create(esAllPrim);
+    created.getProperty("PropertyString").setValue(created.getProperty("PropertyString").getValueType(), "Stored");
+    data.entityChanged(esAllPrim, created);
+    data.delete(esAllPrim, data.readAll(esAllPrim).getEntities().get(1));
+    data.delete(entityContainer.getEntitySet("ESTwoPrim"),
+        data.readAll(entityContainer.getEntitySet("ESTwoPrim")).getEntities().get(0));
+  }
+
+  private List<String> getSortedFileNames(final File directory) {
+    List<String> names = new ArrayList<String>(Arrays.asList(directory.list()));
+    Collections.sort(names);
+    return names;
+  }
+
+  private void checkStoredData(final DataProvider data) throws Exception {
+    final List<Entity> entities = data.readAll(esAllPrim).getEntities();
+    Assert.assertEquals(3, entities.size());
+    Assert.assertEquals(Short.MAX_VALUE, entities.get(0).getProperty("PropertyInt16").getValue());
+    Assert.assertEquals((short) 0, entities.get(1).getProperty("PropertyInt16").getValue());
+    Assert.assertEquals("Stored", entities.get(2).getProperty("PropertyString").getValue());
+    Assert.assertEquals(34, entities.get(0).getProperty("PropertyDecimal").getValue());
+    Assert.assertEquals(
+        new DataProvider().readAll(esAllPrim).getEntities().get(0).getProperty("PropertyDate").getValue(),
+        entities.get(0).getProperty("PropertyDate").getValue());
+
+    final List<Entity> targets = data.readAll(entityContainer.getEntitySet("ESTwoPrim")).getEntities();
+    Assert.assertEquals(3, targets.size());
+    Assert.assertSame(targets.get(0),
+        entities.get(0).getNavigationLink("NavPropertyETTwoPrimMany").getInlineEntitySet().getEntities().get(0));
+  }
 }
@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.tecsvc.processor.queryoptions.options;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.data.ValueType;
+import org.apache.olingo.commons.api.edm.EdmEntitySet;
+import org.apache.olingo.commons.api.edm.FullQualifiedName;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.OData;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.edmx.EdmxReference;
+import org.apache.olingo.server.api.uri.UriInfoResource;
+import org.apache.olingo.server.api.uri.UriResource;
+import org.apache.olingo.server.api.uri.UriResourcePrimitiveProperty;
+import org.apache.olingo.server.api.uri.queryoption.CountOption;
+import org.apache.olingo.server.api.uri.queryoption.FilterOption;
+import org.apache.olingo.server.api.uri.queryoption.OrderByItem;
+import org.apache.olingo.server.api.uri.queryoption.OrderByOption;
+import org.apache.olingo.server.api.uri.queryoption.SkipOption;
+import org.apache.olingo.server.api.uri.queryoption.TopOption;
+import org.apache.olingo.server.api.uri.queryoption.expression.BinaryOperatorKind;
+import org.apache.olingo.server.api.uri.queryoption.expression.Expression;
+import org.apache.olingo.server.api.uri.queryoption.expression.ExpressionVisitException;
+import org.apache.olingo.server.api.uri.queryoption.expression.ExpressionVisitor;
+import org.apache.olingo.server.tecsvc.provider.EdmTechProvider;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class ParallelQueryHandlerTest {
+
+  private static final int SIZE = 1000;
+  private static final int PARALLELISM = 4;
+
+  private final EdmEntitySet esAllPrim = OData.newInstance().createServiceMetadata(new EdmTechProvider(
+      Collections.<EdmxReference> emptyList()), Collections.<EdmxReference> emptyList())
+      .getEdm().getEntityContainer(new FullQualifiedName("olingo.odata.test1", "Container"))
+      .getEntitySet("ESAllPrim");
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(PARALLELISM);
+  private final ParallelQueryHandler handler = new ParallelQueryHandler(executor, PARALLELISM, 0);
+
+  @After
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void orderByWithEqualSortKeys() throws Exception {
+    final OrderByOption orderBy = mockOrderBy(false);
+    final List<String> expected = applySequentially(null, null, orderBy, null, null);
+    Assert.assertEquals(expected, applyInParallel(null, null, orderBy, null, null));
+
+    // Entities with equal sort keys keep their original order, also across partitions.
+    Assert.assertEquals("Number:0", expected.get(0));
+    Assert.assertEquals("Number:10", expected.get(1));
+    Assert.assertEquals("Number:990", expected.get(SIZE / 10 - 1));
+    Assert.assertEquals("Number:1", expected.get(SIZE / 10));
+
+    final OrderByOption orderByDescending = mockOrderBy(true);
+    Assert.assertEquals(applySequentially(null, null, orderByDescending, null, null),
+        applyInParallel(null, null, orderByDescending, null, null));
+  }
+
+  @Test
+  public void filterOrderBySkipTop() throws Exception {
+    final FilterOption filter = mockFilter(BinaryOperatorKind.GT, "3");
+    final OrderByOption orderBy = mockOrderBy(true);
+    final SkipOption skip = Mockito.mock(SkipOption.class);
+    Mockito.when(skip.getValue()).thenReturn(7);
+    final TopOption top = Mockito.mock(TopOption.class);
+    Mockito.when(top.getValue()).thenReturn(150);
+
+    final List<String> expected = applySequentially(filter, null, orderBy, skip, top);
+    Assert.assertEquals(150, expected.size());
+    Assert.assertEquals("Number:79", expected.get(0));
+    Assert.assertEquals(expected, applyInParallel(filter, null, orderBy, skip, top));
+
+    // A partition with fewer matches than $skip + $top
+    Mockito.when(skip.getValue()).thenReturn(SIZE / 2);
+    Assert.assertEquals(applySequentially(filter, null, orderBy, skip, top),
+        applyInParallel(filter, null, orderBy, skip, top));
+  }
+
+  @Test
+  public void filterTopWithoutOrderBy() throws Exception {
+    final FilterOption filter = mockFilter(BinaryOperatorKind.EQ, "5");
+    final TopOption top = Mockito.mock(TopOption.class);
+    Mockito.when(top.getValue()).thenReturn(60);
+
+    final List<String> expected = applySequentially(filter, null, null, null, top);
+    Assert.assertEquals(60, expected.size());
+    Assert.assertEquals(expected, applyInParallel(filter, null, null, null, top));
+  }
+
+  @Test
+  public void count() throws Exception {
+    final FilterOption filter = mockFilter(BinaryOperatorKind.LT, "2");
+    final CountOption count = Mockito.mock(CountOption.class);
+    Mockito.when(count.getValue()).thenReturn(true);
+    final TopOption top = Mockito.mock(TopOption.class);
+    Mockito.when(top.getValue()).thenReturn(5);
+
+    EntityCollection sequential = createEntitySet();
+    FilterHandler.applyFilterSystemQuery(filter, sequential, esAllPrim);
+    CountHandler.applyCountSystemQueryOption(count, sequential);
+    EntityCollection parallel = createEntitySet();
+    handler.applyFilterCountOrderBy(filter, count, mockOrderBy(false), null, top, parallel, esAllPrim);
+
+    // The count covers all matching entities, not only those kept for $top.
+    Assert.assertEquals(Integer.valueOf(SIZE / 5), sequential.getCount());
+    Assert.assertEquals(sequential.getCount(), parallel.getCount());
+    Assert.assertEquals(5, parallel.getEntities().size());
+  }
+
+  @Test
+  public void filterException() throws Exception {
+    FilterOption filter = Mockito.mock(FilterOption.class);
+    Mockito.when(filter.getExpression()).thenReturn(new Expression() {
+      @Override
+      public <T> T accept(final ExpressionVisitor<T> visitor) throws ODataApplicationException {
+        throw new ODataApplicationException("Invalid filter",
+            HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ROOT);
+      }
+    });
+
+    try {
+      applySequentially(filter, null, null, null, null);
+      Assert.fail("Expected an ODataApplicationException");
+    } catch (final ODataApplicationException e) {
+      Assert.assertEquals(HttpStatusCode.BAD_REQUEST.getStatusCode(), e.getStatusCode());
+    }
+    try {
+      applyInParallel(filter, null, null, null, null);
+      Assert.fail("Expected an ODataApplicationException");
+    } catch (final ODataApplicationException e) {
+      Assert.assertEquals(HttpStatusCode.BAD_REQUEST.getStatusCode(), e.getStatusCode());
+    }
+  }
+
+  private List<String> applySequentially(final FilterOption filter, final CountOption count,
+      final OrderByOption orderBy, final SkipOption skip, final TopOption top) throws ODataApplicationException {
+    EntityCollection entitySet = createEntitySet();
+    FilterHandler.applyFilterSystemQuery(filter, entitySet, esAllPrim);
+    CountHandler.applyCountSystemQueryOption(count, entitySet);
+    OrderByHandler.applyOrderByOption(orderBy, entitySet, esAllPrim);
+    SkipHandler.applySkipSystemQueryHandler(skip, entitySet);
+    TopHandler.applyTopSystemQueryOption(top, entitySet);
+    return getNames(entitySet);
+  }
+
+  private List<String> applyInParallel(final FilterOption filter, final CountOption count,
+      final OrderByOption orderBy, final SkipOption skip, final TopOption top) throws ODataApplicationException {
+    EntityCollection entitySet = createEntitySet();
+    handler.applyFilterCountOrderBy(filter, count, orderBy, skip, top, entitySet, esAllPrim);
+    SkipHandler.applySkipSystemQueryHandler(skip, entitySet);
+    TopHandler.applyTopSystemQueryOption(top, entitySet);
+    return getNames(entitySet);
+  }
+
+  /** Creates entities whose values of PropertyInt16 repeat every ten entities. */
+  private static EntityCollection createEntitySet() {
+    EntityCollection entitySet = new EntityCollection();
+    for (int i = 0; i < SIZE; i++) {
+      entitySet.getEntities().add(new Entity()
+          .addProperty(new Property(null, "PropertyInt16", ValueType.PRIMITIVE, (short) (i % 10)))
+          .addProperty(new Property(null, "PropertyString", ValueType.PRIMITIVE, "Number:" + i)));
+    }
+    return entitySet;
+  }
+
+  private static List<String> getNames(final EntityCollection entitySet) {
+    List<String> names = new ArrayList<String>();
+    for (final Entity entity : entitySet.getEntities()) {
+      names.add((String) entity.getProperty("PropertyString").getValue());
+    }
+    return names;
+  }
+
+  private FilterOption mockFilter(final BinaryOperatorKind operator, final String literal) {
+    final Expression property = mockPropertyInt16();
+    FilterOption filter = Mockito.mock(FilterOption.class);
+    Mockito.when(filter.getExpression()).thenReturn(new Expression() {
+      @Override
+      public <T> T accept(final ExpressionVisitor<T> visitor)
+          throws ExpressionVisitException, ODataApplicationException {
+        return visitor.visitBinaryOperator(operator, property.accept(visitor), visitor.visitLiteral(literal));
+      }
+    });
+    return filter;
+  }
+
+  private OrderByOption mockOrderBy(final boolean descending) {
+    OrderByItem item = Mockito.mock(OrderByItem.class);
+    final Expression property = mockPropertyInt16();
+    Mockito.when(item.getExpression()).thenReturn(property);
+    Mockito.when(item.isDescending()).thenReturn(descending);
+    OrderByOption orderBy = Mockito.mock(OrderByOption.class);
+    Mockito.when(orderBy.getOrders()).thenReturn(Arrays.asList(item));
+    return orderBy;
+  }
+
+  private Expression mockPropertyInt16() {
+    UriResourcePrimitiveProperty resource = Mockito.mock(UriResourcePrimitiveProperty.class);
+    Mockito.when(resource.getProperty()).thenReturn(
+        esAllPrim.getEntityType().getStructuralProperty("PropertyInt16"));
+    final UriInfoResource member = Mockito.mock(UriInfoResource.class);
+    Mockito.when(member.getUriResourceParts()).thenReturn(Arrays.<UriResource> asList(resource));
+    return new Expression() {
+      @Override
+      public <T> T accept(final ExpressionVisitor<T> visitor)
+          throws ExpressionVisitException, ODataApplicationException {
+        return visitor.visitMember(member);
+      }
+    };
+  }
+}
@@ -21,22 +21,37 @@ package org.apache.olingo.server.core;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.olingo.commons.api.ODataException;
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.Link;
+import org.apache.olingo.commons.api.edm.EdmEntitySet;
 import org.apache.olingo.commons.api.edm.FullQualifiedName;
 import org.apache.olingo.commons.api.edm.constants.ODataServiceVersion;
 import org.apache.olingo.commons.api.edm.provider.AbstractEdmProvider;
@@ -54,6 +69,11 @@ import org.apache.olingo.server.api.ODataResponse;
 import org.apache.olingo.server.api.ODataServerError;
 import org.apache.olingo.server.api.ServiceMetadata;
 import org.apache.olingo.server.api.edmx.EdmxReference;
+import org.apache.olingo.server.api.etag.ETagProvider;
+import org.apache.olingo.server.api.metrics.RequestEvent;
+import org.apache.olingo.server.api.metrics.RequestMetrics;
+import org.apache.olingo.server.api.metrics.RequestMetricsHistogram;
+import org.apache.olingo.server.api.metrics.RequestPhase;
 import org.apache.olingo.server.api.processor.ActionComplexCollectionProcessor;
 import org.apache.olingo.server.api.processor.ActionComplexProcessor;
 import org.apache.olingo.server.api.processor.ActionEntityCollectionProcessor;
@@ -79,7 +99,13 @@ import org.apache.olingo.server.api.processor.Processor;
 import org.apache.olingo.server.api.processor.ReferenceCollectionProcessor;
 import org.apache.olingo.server.api.processor.ReferenceProcessor;
 import org.apache.olingo.server.api.processor.ServiceDocumentProcessor;
+import org.apache.olingo.server.api.serializer.SerializerException;
 import org.apache.olingo.server.api.uri.UriInfo;
+import org.apache.olingo.server.api.uri.UriInfoKind;
+import org.apache.olingo.server.api.uri.UriParameter;
+import org.apache.olingo.server.tecsvc.data.DataProvider;
+import org.apache.olingo.server.tecsvc.processor.TechnicalBatchProcessor;
+import org.apache.olingo.server.tecsvc.processor.TechnicalEntityProcessor;
 import org.apache.olingo.server.tecsvc.provider.ContainerProvider;
 import org.apache.olingo.server.tecsvc.provider.EdmTechProvider;
 import org.junit.Test;
@@ -696,6 +722,271 @@ public class ODataHandlerTest {
         any(ContentType.class));
   }
 
+  @Test
+  public void conditionalRequests() throws Exception {
+    final String uri = "ESAllPrim(0)";
+    final ETagProvider eTagProvider = mock(ETagProvider.class);
+    when(eTagProvider.getETag(any(EdmEntitySet.class), anyListOf(UriParameter.class))).thenReturn("W/\"0\"");
+    final EntityProcessor processor = mock(EntityProcessor.class);
+
+    ODataResponse response = dispatchConditional(HttpMethod.GET, uri, HttpHeader.IF_NONE_MATCH, "W/\"0\"",
+        eTagProvider, processor);
+    assertEquals(HttpStatusCode.NOT_MODIFIED.getStatusCode(), response.getStatusCode());
+    assertEquals("W/\"0\"", response.getHeaders().get(HttpHeader.ETAG));
+
+    response = dispatchConditional(HttpMethod.DELETE, uri, HttpHeader.IF_MATCH, "W/\"1\"", eTagProvider, processor);
+    assertEquals(HttpStatusCode.PRECONDITION_FAILED.getStatusCode(), response.getStatusCode());
+
+    response = dispatchConditional(HttpMethod.GET, "ESAllPrim", HttpHeader.IF_NONE_MATCH, "*",
+        eTagProvider, processor);
+    assertEquals(HttpStatusCode.NOT_MODIFIED.getStatusCode(), response.getStatusCode());
+    verifyZeroInteractions(processor);
+
+    dispatchConditional(HttpMethod.GET, uri, HttpHeader.IF_NONE_MATCH, "W/\"1\"", eTagProvider, processor);
+    verify(processor).readEntity(any(ODataRequest.class), any(ODataResponse.class), any(UriInfo.class),
+        any(ContentType.class));
+
+    dispatchConditional(HttpMethod.DELETE, uri, HttpHeader.IF_MATCH, "W/\"0\"", eTagProvider, processor);
+    verify(processor).deleteEntity(any(ODataRequest.class), any(ODataResponse.class), any(UriInfo.class));
+  }
+
+  @Test
+  public void conditionalRequestsWithRelatedEntities() throws Exception {
+    final ETagProvider eTagProvider = mock(ETagProvider.class);
+    when(eTagProvider.getETag(any(EdmEntitySet.class), anyListOf(UriParameter.class))).thenReturn("W/\"0\"");
+    final EntityProcessor entityProcessor = mock(EntityProcessor.class);
+    final EntityCollectionProcessor collectionProcessor = mock(EntityCollectionProcessor.class);
+
+    ODataResponse response = dispatchConditional(HttpMethod.GET, "ESAllPrim(0)", "$expand=NavPropertyETTwoPrimOne",
+        HttpHeader.IF_NONE_MATCH, "W/\"0\"", eTagProvider, entityProcessor);
+    assertNull(response.getHeaders().get(HttpHeader.ETAG));
+    verify(entityProcessor).readEntity(any(ODataRequest.class), any(ODataResponse.class), any(UriInfo.class),
+        any(ContentType.class));
+
+    dispatchConditional(HttpMethod.GET, "ESAllPrim", "$filter=NavPropertyETTwoPrimOne/PropertyInt16 eq 1",
+        HttpHeader.IF_NONE_MATCH, "W/\"0\"", eTagProvider, collectionProcessor);
+    dispatchConditional(HttpMethod.GET, "ESAllPrim", "$orderby=NavPropertyETTwoPrimOne/PropertyString",
+        HttpHeader.IF_NONE_MATCH, "W/\"0\"", eTagProvider, collectionProcessor);
+    verify(collectionProcessor, times(2)).readEntityCollection(any(ODataRequest.class), any(ODataResponse.class),
+        any(UriInfo.class), any(ContentType.class));
+
+    response = dispatchConditional(HttpMethod.GET, "ESAllPrim", "$filter=PropertyInt16 eq 1",
+        HttpHeader.IF_NONE_MATCH, "W/\"0\"", eTagProvider, collectionProcessor);
+    assertEquals(HttpStatusCode.NOT_MODIFIED.getStatusCode(), response.getStatusCode());
+  }
+
+  @Test
+  public void requestMetrics() throws Exception {
+    final OData odata = OData.newInstance();
+    final RequestMetricsHistogram metrics = odata.createRequestMetricsHistogram();
+    final ODataHandler handler = new ODataHandler(odata,
+        odata.createServiceMetadata(new EdmTechProvider(), Collections.<EdmxReference> emptyList()));
+    handler.register(mock(EntityCollectionProcessor.class));
+    handler.register(metrics);
+
+    ODataRequest request = new ODataRequest();
+    request.setMethod(HttpMethod.GET);
+    request.setRawBaseUri(BASE_URI);
+    request.setRawODataPath("$metadata");
+    assertEquals(HttpStatusCode.OK.getStatusCode(), handler.process(request).getStatusCode());
+    assertEquals(1, metrics.getHistogram(RequestPhase.URI_PARSING).getCount());
+    assertEquals(1, metrics.getHistogram(RequestPhase.URI_VALIDATION).getCount());
+    assertEquals(1, metrics.getHistogram(RequestPhase.CONTENT_NEGOTIATION).getCount());
+    assertEquals(1, metrics.getHistogram(RequestPhase.PROCESSING).getCount());
+    assertEquals(1, metrics.getHistogram(RequestPhase.SERIALIZATION).getCount());
+    assertEquals(0, metrics.getHistogram(RequestPhase.OUTPUT).getCount());
+
+    request = new ODataRequest();
+    request.setMethod(HttpMethod.GET);
+    request.setRawBaseUri(BASE_URI);
+    request.setRawODataPath("ESAllPrim");
+    handler.process(request);
+    assertEquals(2, metrics.getHistogram(RequestPhase.PROCESSING).getCount());
+    assertEquals(1, metrics.getHistogram(RequestPhase.PROCESSING, "ESAllPrim").getCount());
+    assertEquals(0, metrics.getHistogram(RequestPhase.PROCESSING, "ESTwoPrim").getCount());
+  }
+
+  @Test
+  public void requestMetricsOfBatchParts() throws Exception {
+    final OData odata = OData.newInstance();
+    final List<RequestEvent> events = new ArrayList<RequestEvent>();
+    final ODataHandler handler = new ODataHandler(odata,
+        odata.createServiceMetadata(new EdmTechProvider(), Collections.<EdmxReference> emptyList()));
+    handler.register(new TechnicalBatchProcessor(new DataProvider()));
+    handler.register(mock(EntityCollectionProcessor.class));
+    handler.register(new RequestMetrics() {
+      @Override
+      public void record(final RequestEvent event) {
+        events.add(event);
+      }
+    });
+
+    ODataRequest request = new ODataRequest();
+    request.setMethod(HttpMethod.POST);
+    request.setRawBaseUri(BASE_URI);
+    request.setRawODataPath("$batch");
+    request.addHeader(HttpHeader.CONTENT_TYPE, Collections.singletonList("multipart/mixed;boundary=batch_12345"));
+    request.setBody(IOUtils.toInputStream("--batch_12345\r\n"
+        + "Content-Type: application/http\r\n"
+        + "Content-Transfer-Encoding: binary\r\n"
+        + "\r\n"
+        + "GET ESAllPrim HTTP/1.1\r\n"
+        + "\r\n"
+        + "\r\n"
+        + "--batch_12345--\r\n"));
+    assertEquals(HttpStatusCode.ACCEPTED.getStatusCode(), handler.process(request).getStatusCode());
+
+    List<RequestEvent> processing = new ArrayList<RequestEvent>();
+    for (final RequestEvent event : events) {
+      if (event.getPhase() == RequestPhase.PROCESSING) {
+        processing.add(event);
+      }
+    }
+    assertEquals(2, processing.size());
+    assertEquals(HttpMethod.GET, processing.get(0).getMethod());
+    assertEquals(UriInfoKind.resource, processing.get(0).getKind());
+    assertEquals("ESAllPrim", processing.get(0).getEntitySetName());
+    // the batch request itself must not be attributed to its last part
+    assertEquals(HttpMethod.POST, processing.get(1).getMethod());
+    assertEquals(UriInfoKind.batch, processing.get(1).getKind());
+    assertNull(processing.get(1).getEntitySetName());
+  }
+
+  @Test
+  public void requestMetricsOfConcurrentRequests() throws Exception {
+    final OData odata = OData.newInstance();
+    final ServiceMetadata metadata =
+        odata.createServiceMetadata(new EdmTechProvider(), Collections.<EdmxReference> emptyList());
+    final ODataHandler handler = new ODataHandler(odata, metadata);
+    final int requestCount = 4;
+    final CyclicBarrier barrier = new CyclicBarrier(requestCount);
+    final List<OData> initialized = Collections.synchronizedList(new ArrayList<OData>());
+    handler.register(new EntityCollectionProcessor() {
+      private OData processorOData;
+
+      @Override
+      public void init(final OData odata, final ServiceMetadata serviceMetadata) {
+        processorOData = odata;
+        initialized.add(odata);
+      }
+
+      @Override
+      public void readEntityCollection(final ODataRequest request, final ODataResponse response,
+          final UriInfo uriInfo, final ContentType responseFormat)
+          throws ODataApplicationException, SerializerException {
+        try {
+          // all requests are being processed before any of them serializes
+          barrier.await(10, TimeUnit.SECONDS);
+        } catch (final Exception e) {
+          throw new ODataApplicationException(e.getMessage(),
+              HttpStatusCode.INTERNAL_SERVER_ERROR.getStatusCode(), Locale.ROOT);
+        }
+        response.setContent(processorOData.createSerializer(ODataFormat.JSON)
+            .serviceDocument(metadata.getEdm(), BASE_URI).getContent());
+        response.setStatusCode(HttpStatusCode.OK.getStatusCode());
+      }
+    });
+    final List<RequestEvent> events = Collections.synchronizedList(new ArrayList<RequestEvent>());
+    handler.register(new RequestMetrics() {
+      @Override
+      public void record(final RequestEvent event) {
+        events.add(event);
+      }
+    });
+
+    final ExecutorService executor = Executors.newFixedThreadPool(requestCount);
+    try {
+      final List<Future<Integer>> statusCodes = new ArrayList<Future<Integer>>();
+      for (int i = 0; i < requestCount; i++) {
+        final String path = i % 2 == 0 ? "ESAllPrim" : "ESTwoPrim";
+        statusCodes.add(executor.submit(new Callable<Integer>() {
+          @Override
+          public Integer call() {
+            final ODataRequest request = new ODataRequest();
+            request.setMethod(HttpMethod.GET);
+            request.setRawBaseUri(BASE_URI);
+            request.setRawODataPath(path);
+            return handler.process(request).getStatusCode();
+          }
+        }));
+      }
+      for (final Future<Integer> statusCode : statusCodes) {
+        assertEquals(HttpStatusCode.OK.getStatusCode(), statusCode.get(20, TimeUnit.SECONDS).intValue());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // the processor is shared by all requests and keeps the application's OData instance
+    assertEquals(1, initialized.size());
+    assertSame(odata, initialized.get(0));
+    int allPrim = 0;
+    int twoPrim = 0;
+    for (final RequestEvent event : events) {
+      if (event.getPhase() == RequestPhase.SERIALIZATION) {
+        if ("ESAllPrim".equals(event.getEntitySetName())) {
+          allPrim++;
+        } else if ("ESTwoPrim".equals(event.getEntitySetName())) {
+          twoPrim++;
+        }
+      }
+    }
+    assertEquals(requestCount / 2, allPrim);
+    assertEquals(requestCount / 2, twoPrim);
+  }
+
+  @Test
+  public void expandWithNestedSystemQueryOptions() throws Exception {
+    final OData odata = OData.newInstance();
+    final ServiceMetadata metadata = odata.createServiceMetadata(
+        new EdmTechProvider(), Collections.<EdmxReference> emptyList());
+    final DataProvider dataProvider = new DataProvider();
+    final ODataHandler handler = new ODataHandler(odata, metadata);
+    handler.register(new TechnicalEntityProcessor(dataProvider, metadata));
+    final EdmEntitySet entitySet = metadata.getEdm().getEntityContainer(null).getEntitySet("ESTwoKeyNav");
+    final List<List<Entity>> stored = getInlineEntities(dataProvider.readAll(entitySet));
+
+    String content = readExpanded(handler,
+        "NavPropertyETTwoKeyNavMany($filter=PropertyString eq '2';$count=true)");
+    assertThat(content, containsString("\"NavPropertyETTwoKeyNavMany@odata.count\":1,"
+        + "\"NavPropertyETTwoKeyNavMany\":[{\"PropertyInt16\":1,\"PropertyString\":\"2\""));
+    assertThat(content, containsString("\"NavPropertyETTwoKeyNavMany@odata.count\":0,"
+        + "\"NavPropertyETTwoKeyNavMany\":[]"));
+
+    content = readExpanded(handler, "NavPropertyETTwoKeyNavMany($orderby=PropertyString desc)");
+    assertThat(content, containsString(
+        "\"NavPropertyETTwoKeyNavMany\":[{\"PropertyInt16\":1,\"PropertyString\":\"2\""));
+
+    content = readExpanded(handler, "NavPropertyETTwoKeyNavMany($top=1;$count=true)");
+    assertThat(content, containsString("\"NavPropertyETTwoKeyNavMany@odata.count\":2,"
+        + "\"NavPropertyETTwoKeyNavMany\":[{\"PropertyInt16\":1,\"PropertyString\":\"1\""));
+
+    // The nested system query options must not have changed the stored entity graph.
+    assertEquals(stored, getInlineEntities(dataProvider.readAll(entitySet)));
+  }
+
+  private String readExpanded(final ODataHandler handler, final String expand) throws Exception {
+    ODataRequest request = new ODataRequest();
+    request.setMethod(HttpMethod.GET);
+    request.setRawBaseUri(BASE_URI);
+    request.setRawODataPath("ESTwoKeyNav");
+    request.setRawQueryPath("$expand=" + expand);
+    final ODataResponse response = handler.process(request);
+    assertEquals(HttpStatusCode.OK.getStatusCode(), response.getStatusCode());
+    return IOUtils.toString(response.getContent());
+  }
+
+  private List<List<Entity>> getInlineEntities(final EntityCollection entitySet) {
+    List<List<Entity>> result = new ArrayList<List<Entity>>();
+    for (final Entity entity : entitySet.getEntities()) {
+      final Link link = entity.getNavigationLink("NavPropertyETTwoKeyNavMany");
+      result.add(link == null || link.getInlineEntitySet() == null ?
+          Collections.<Entity> emptyList() :
+          new ArrayList<Entity>(link.getInlineEntitySet().getEntities()));
+    }
+    return result;
+  }
+
   private ODataResponse dispatch(final HttpMethod method, final String path, final String query,
       final String headerName, final String headerValue, final Processor processor) {
     Map<String, List<String>> headers = null;
@@ -709,8 +1000,25 @@ public class ODataHandlerTest {
     return dispatch(method, path, query, headers, processors);
   }
 
+  private ODataResponse dispatchConditional(final HttpMethod method, final String path,
+      final String headerName, final String headerValue, final ETagProvider eTagProvider, final Processor processor) {
+    return dispatchConditional(method, path, null, headerName, headerValue, eTagProvider, processor);
+  }
+
+  private ODataResponse dispatchConditional(final HttpMethod method, final String path, final String query,
+      final String headerName, final String headerValue, final ETagProvider eTagProvider, final Processor processor) {
+    return dispatch(method, path, query,
+        Collections.singletonMap(headerName, Collections.singletonList(headerValue)),
+        Collections.singletonList(processor), eTagProvider);
+  }
+
   private ODataResponse dispatch(final HttpMethod method, final String path, final String query,
       final Map<String, List<String>> headers, final List<Processor> processors) {
+    return dispatch(method, path, query, headers, processors, null);
+  }
+
+  private ODataResponse dispatch(final HttpMethod method, final String path, final String query,
+      final Map<String, List<String>> headers, final List<Processor> processors, final ETagProvider eTagProvider) {
     ODataRequest request = new ODataRequest();
     request.setMethod(method);
     request.setRawBaseUri(BASE_URI);
@@ -743,6 +1051,9 @@ public class ODataHandlerTest {
         handler.register(p);
       }
     }
+    if (eTagProvider != null) {
+      handler.register(eTagProvider);
+    }
 
     final ODataResponse response = handler.process(request);
     assertNotNull(response);
@@ -18,10 +18,13 @@
  */
 package org.apache.olingo.server.core.serializer.json;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.olingo.commons.api.data.ContextURL;
@@ -54,6 +57,7 @@ import org.apache.olingo.server.api.uri.queryoption.ExpandItem;
 import org.apache.olingo.server.api.uri.queryoption.ExpandOption;
 import org.apache.olingo.server.api.uri.queryoption.SelectItem;
 import org.apache.olingo.server.api.uri.queryoption.SelectOption;
+import org.apache.olingo.server.core.ServiceMetadataImpl;
 import org.apache.olingo.server.core.serializer.ExpandSelectMock;
 import org.apache.olingo.server.core.uri.UriHelperImpl;
 import org.apache.olingo.server.tecsvc.data.DataProvider;
@@ -63,6 +67,9 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+
 public class ODataJsonSerializerTest {
   private static final ServiceMetadata metadata = OData.newInstance().createServiceMetadata(
       new EdmTechProvider(), Collections.<EdmxReference> emptyList());
@@ -104,6 +111,49 @@ public class ODataJsonSerializerTest {
     Assert.assertEquals(expectedResult, resultString);
   }
 
+  @Test
+  public void entityWithOverriddenWriteProperty() throws Exception {
+    final ODataSerializer serializer = new ODataJsonSerializer(ODataFormat.JSON) {
+      @Override
+      protected void writeProperty(final ServiceMetadata metadata, final EdmProperty edmProperty,
+          final SerializedString name, final Property property, final Set<List<String>> selectedPaths,
+          final JsonGenerator json) throws IOException, SerializerException {
+        if (!edmProperty.getName().startsWith("PropertyInt")) {
+          super.writeProperty(metadata, edmProperty, name, property, selectedPaths, json);
+        }
+      }
+    };
+    final EdmEntitySet edmEntitySet = entityContainer.getEntitySet("ESCompAllPrim");
+    final Entity entity = data.readAll(edmEntitySet).getEntities().get(0);
+    final String resultString = IOUtils.toString(serializer.entity(metadata, edmEntitySet.getEntityType(), entity,
+        EntitySerializerOptions.with()
+            .contextURL(ContextURL.with().entitySet(edmEntitySet).suffix(Suffix.ENTITY).build())
+            .select(ExpandSelectMock.mockSelectOption(Arrays.asList(
+                ExpandSelectMock.mockSelectItem(edmEntitySet, "PropertyInt16"),
+                ExpandSelectMock.mockSelectItem(edmEntitySet, "PropertyComp", "PropertyInt32"),
+                ExpandSelectMock.mockSelectItem(edmEntitySet, "PropertyComp", "PropertyString"))))
+            .build()).getContent());
+    // properties of entities and of their complex values are written through the overridden method
+    Assert.assertEquals("{\"@odata.context\":\"$metadata#ESCompAllPrim/$entity\","
+        + "\"PropertyComp\":{\"PropertyString\":\"First Resource - first\"}}",
+        resultString);
+  }
+
+  @Test
+  public void templatesKeptPerService() throws Exception {
+    final EdmEntityType entityType = entityContainer.getEntitySet("ESAllPrim").getEntityType();
+    final JsonTemplates templates = ((ServiceMetadataImpl) metadata).getJsonTemplates();
+    final JsonTemplates.TypeTemplate template = templates.get(entityType);
+    Assert.assertSame(template, templates.get(entityType));
+    Assert.assertEquals(entityType.getPropertyNames().size(), template.getPropertyCount());
+    Assert.assertEquals("PropertyString", template.getName(1).getValue());
+    Assert.assertEquals("#olingo.odata.test1.ETAllPrim", template.getTypeAnnotation().getValue());
+
+    final Entity entity = data.readAll(entityContainer.getEntitySet("ESAllPrim")).getEntities().get(0);
+    final Property[] values = template.arrange(entity.getProperties());
+    Assert.assertSame(entity.getProperty("PropertyString"), values[1]);
+  }
+
   @Test
   public void entityAllPrimAllNull() throws Exception {
     final EdmEntitySet edmEntitySet = entityContainer.getEntitySet("ESAllPrim");
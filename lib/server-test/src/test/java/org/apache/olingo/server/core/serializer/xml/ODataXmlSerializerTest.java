@@ -0,0 +1,296 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.serializer.xml;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.olingo.commons.api.data.ContextURL;
+import org.apache.olingo.commons.api.data.ContextURL.Suffix;
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.data.ValueType;
+import org.apache.olingo.commons.api.edm.Edm;
+import org.apache.olingo.commons.api.edm.EdmComplexType;
+import org.apache.olingo.commons.api.edm.EdmEntityContainer;
+import org.apache.olingo.commons.api.edm.EdmEntitySet;
+import org.apache.olingo.commons.api.edm.EdmEntityType;
+import org.apache.olingo.commons.api.edm.EdmPrimitiveType;
+import org.apache.olingo.commons.api.edm.EdmProperty;
+import org.apache.olingo.commons.api.edm.FullQualifiedName;
+import org.apache.olingo.server.api.OData;
+import org.apache.olingo.server.api.ODataServerError;
+import org.apache.olingo.server.api.ServiceMetadata;
+import org.apache.olingo.server.api.edmx.EdmxReference;
+import org.apache.olingo.server.api.serializer.ComplexSerializerOptions;
+import org.apache.olingo.server.api.serializer.EntityCollectionSerializerOptions;
+import org.apache.olingo.server.api.serializer.EntitySerializerOptions;
+import org.apache.olingo.server.api.serializer.ODataSerializer;
+import org.apache.olingo.server.api.serializer.PrimitiveSerializerOptions;
+import org.apache.olingo.server.api.serializer.SerializerException;
+import org.apache.olingo.server.api.uri.UriHelper;
+import org.apache.olingo.server.api.uri.queryoption.CountOption;
+import org.apache.olingo.server.api.uri.queryoption.ExpandOption;
+import org.apache.olingo.server.api.uri.queryoption.SelectOption;
+import org.apache.olingo.server.core.serializer.ExpandSelectMock;
+import org.apache.olingo.server.core.uri.UriHelperImpl;
+import org.apache.olingo.server.tecsvc.data.DataProvider;
+import org.apache.olingo.server.tecsvc.provider.EdmTechProvider;
+import org.hamcrest.CoreMatchers;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class ODataXmlSerializerTest {
+  private static final ServiceMetadata metadata = OData.newInstance().createServiceMetadata(
+      new EdmTechProvider(), Collections.<EdmxReference> emptyList());
+  private static final Edm edm = metadata.getEdm();
+  private static final EdmEntityContainer entityContainer = edm.getEntityContainer(
+      new FullQualifiedName("olingo.odata.test1", "Container"));
+  private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+  private static final String NAMESPACES = "xmlns=\"http://www.w3.org/2005/Atom\" "
+      + "xmlns:m=\"http://docs.oasis-open.org/odata/ns/metadata\" "
+      + "xmlns:d=\"http://docs.oasis-open.org/odata/ns/data\"";
+  private final DataProvider data = new DataProvider();
+  private final ODataSerializer serializer = new ODataXmlSerializerImpl();
+  private final UriHelper helper = new UriHelperImpl();
+
+  @Test
+  public void entitySimple() throws Exception {
+    final EdmEntitySet edmEntitySet = entityContainer.getEntitySet("ESTwoPrim");
+    final Entity entity = data.readAll(edmEntitySet).getEntities().get(0);
+    final String resultString = IOUtils.toString(serializer.entity(metadata, edmEntitySet.getEntityType(), entity,
+        EntitySerializerOptions.with()
+            .contextURL(ContextURL.with().entitySet(edmEntitySet).suffix(Suffix.ENTITY).build())
+            .build()).getContent());
+    Assert.assertEquals(HEADER
+        + "<entry " + NAMESPACES + " m:context=\"$metadata#ESTwoPrim/$entity\">"
+        + "<category scheme=\"http://docs.oasis-open.org/odata/ns/scheme\" term=\"#olingo.odata.test1.ETTwoPrim\">"
+        + "</category>"
+        + "<content type=\"application/xml\"><m:properties>"
+        + "<d:PropertyInt16 m:type=\"Int16\">32766</d:PropertyInt16>"
+        + "<d:PropertyString>Test String1</d:PropertyString>"
+        + "</m:properties></content></entry>",
+        resultString);
+  }
+
+  @Test
+  public void entityAllPrimAllNull() throws Exception {
+    final EdmEntitySet edmEntitySet = entityContainer.getEntitySet("ESAllPrim");
+    Entity entity = data.readAll(edmEntitySet).getEntities().get(0);
+    entity.getProperties().retainAll(Arrays.asList(entity.getProperties().get(0)));
+    final String resultString = IOUtils.toString(serializer.entity(metadata, edmEntitySet.getEntityType(), entity,
+        EntitySerializerOptions.with()
+            .contextURL(ContextURL.with().entitySet(edmEntitySet).suffix(Suffix.ENTITY).build())
+            .build()).getContent());
+    Assert.assertThat(resultString, CoreMatchers.containsString(
+        "<d:PropertyInt16 m:type=\"Int16\">32767</d:PropertyInt16>"
+        + "<d:PropertyString m:null=\"true\"></d:PropertyString>"
+        + "<d:PropertyBoolean m:type=\"Boolean\" m:null=\"true\"></d:PropertyBoolean>"));
+  }
+
+  @Test(expected = SerializerException.class)
+  public void entityAllPrimKeyNull() throws Exception {
+    final EdmEntitySet edmEntitySet = entityContainer.getEntitySet("ESAllPrim");
+    Entity entity = data.readAll(edmEntitySet).getEntities().get(0);
+    entity.getProperties().clear();
+    serializer.entity(metadata, edmEntitySet.getEntityType(), entity,
+        EntitySerializerOptions.with()
+            .contextURL(ContextURL.with().entitySet(edmEntitySet).suffix(Suffix.ENTITY).build())
+            .build());
+  }
+
+  @Test(expected = SerializerException.class)
+  public void entityWithoutContextURL() throws Exception {
+    final EdmEntitySet edmEntitySet = entityContainer.getEntitySet("ESAllPrim");
+    serializer.entity(metadata, edmEntitySet.getEntityType(), data.readAll(edmEntitySet).getEntities().get(0),
+        EntitySerializerOptions.with().build());
+  }
+
+  @Test
+  public void entitySetAllPrim() throws Exception {
+    final EdmEntitySet edmEntitySet = entityContainer.getEntitySet("ESAllPrim");
+    EntityCollection entitySet = data.readAll(edmEntitySet);
+    entitySet.setCount(entitySet.getEntities().size());
+    entitySet.setNext(URI.create("/next"));
+    CountOption countOption = Mockito.mock(CountOption.class);
+    Mockito.when(countOption.getValue()).thenReturn(true);
+    final String resultString = IOUtils.toString(serializer.entityCollection(metadata,
+        edmEntitySet.getEntityType(), entitySet,
+        EntityCollectionSerializerOptions.with()
+            .contextURL(ContextURL.with().entitySet(edmEntitySet).build())
+            .count(countOption)
+            .build()).getContent());
+    Assert.assertThat(resultString, CoreMatchers.startsWith(HEADER
+        + "<feed " + NAMESPACES + " m:context=\"$metadata#ESAllPrim\"><m:count>3</m:count><entry>"));
+    Assert.assertThat(resultString, CoreMatchers.endsWith("</entry><link rel=\"next\" href=\"/next\"></link></feed>"));
+    Assert.assertEquals(3, resultString.split("<entry>", -1).length - 1);
+  }
+
+  @Test
+  public void entityMixPrimCollComp() throws Exception {
+    final EdmEntitySet edmEntitySet = entityContainer.getEntitySet("ESMixPrimCollComp");
+    final Entity entity = data.readAll(edmEntitySet).getEntities().get(0);
+    final String resultString = IOUtils.toString(serializer.entity(metadata, edmEntitySet.getEntityType(), entity,
+        EntitySerializerOptions.with()
+            .contextURL(ContextURL.with().entitySet(edmEntitySet).suffix(Suffix.ENTITY).build())
+            .build()).getContent());
+    Assert.assertThat(resultString, CoreMatchers.containsString(
+        "<d:CollPropertyString m:type=\"#Collection(String)\">"
+        + "<m:element>Employee1@company.example</m:element>"
+        + "<m:element>Employee2@company.example</m:element>"
+        + "<m:element>Employee3@company.example</m:element>"
+        + "</d:CollPropertyString>"
+        + "<d:PropertyComp m:type=\"#olingo.odata.test1.CTTwoPrim\">"
+        + "<d:PropertyInt16 m:type=\"Int16\">111</d:PropertyInt16>"
+        + "<d:PropertyString>TEST A</d:PropertyString>"
+        + "</d:PropertyComp>"
+        + "<d:CollPropertyComp m:type=\"#Collection(olingo.odata.test1.CTTwoPrim)\">"
+        + "<m:element><d:PropertyInt16 m:type=\"Int16\">123</d:PropertyInt16>"
+        + "<d:PropertyString>TEST 1</d:PropertyString></m:element>"));
+  }
+
+  @Test
+  public void entityMedia() throws Exception {
+    final EdmEntitySet edmEntitySet = entityContainer.getEntitySet("ESMedia");
+    final Entity entity = data.readAll(edmEntitySet).getEntities().get(0);
+    final String resultString = IOUtils.toString(serializer.entity(metadata, edmEntitySet.getEntityType(), entity,
+        EntitySerializerOptions.with()
+            .contextURL(ContextURL.with().entitySet(edmEntitySet).suffix(Suffix.ENTITY).build())
+            .build()).getContent());
+    Assert.assertThat(resultString, CoreMatchers.containsString("<content type=\"image/svg+xml\"></content>"
+        + "<m:properties><d:PropertyInt16 m:type=\"Int16\">1</d:PropertyInt16></m:properties></entry>"));
+  }
+
+  @Test
+  public void select() throws Exception {
+    final EdmEntitySet edmEntitySet = entityContainer.getEntitySet("ESAllPrim");
+    final EdmEntityType entityType = edmEntitySet.getEntityType();
+    final Entity entity = data.readAll(edmEntitySet).getEntities().get(0);
+    final SelectOption select = ExpandSelectMock.mockSelectOption(Arrays.asList(
+        ExpandSelectMock.mockSelectItem(edmEntitySet, "PropertyDate"),
+        ExpandSelectMock.mockSelectItem(edmEntitySet, "PropertyBoolean")));
+    final String resultString = IOUtils.toString(serializer.entity(metadata, entityType, entity,
+        EntitySerializerOptions.with()
+            .contextURL(ContextURL.with().entitySet(edmEntitySet)
+                .selectList(helper.buildContextURLSelectList(entityType, null, select))
+                .suffix(Suffix.ENTITY).build())
+            .select(select)
+            .build()).getContent());
+    Assert.assertThat(resultString, CoreMatchers.containsString(
+        "m:context=\"$metadata#ESAllPrim(PropertyBoolean,PropertyDate)/$entity\""));
+    Assert.assertThat(resultString, CoreMatchers.containsString("<m:properties>"
+        + "<d:PropertyBoolean m:type=\"Boolean\">true</d:PropertyBoolean>"
+        + "<d:PropertyDate m:type=\"Date\">2012-12-03</d:PropertyDate>"
+        + "</m:properties>"));
+  }
+
+  @Test
+  public void expand() throws Exception {
+    final EdmEntitySet edmEntitySet = entityContainer.getEntitySet("ESTwoPrim");
+    final Entity entity = data.readAll(edmEntitySet).getEntities().get(3);
+    final ExpandOption expand = ExpandSelectMock.mockExpandOption(Arrays.asList(
+        ExpandSelectMock.mockExpandItem(edmEntitySet, "NavPropertyETAllPrimOne")));
+    final String resultString = IOUtils.toString(serializer.entity(metadata, edmEntitySet.getEntityType(), entity,
+        EntitySerializerOptions.with()
+            .contextURL(ContextURL.with().entitySet(edmEntitySet).suffix(Suffix.ENTITY).build())
+            .expand(expand)
+            .build()).getContent());
+    Assert.assertThat(resultString, CoreMatchers.containsString(
+        "<link rel=\"http://docs.oasis-open.org/odata/ns/related/NavPropertyETAllPrimOne\""
+        + " type=\"application/atom+xml;type=entry\" title=\"NavPropertyETAllPrimOne\">"
+        + "<m:inline><entry>"
+        + "<category scheme=\"http://docs.oasis-open.org/odata/ns/scheme\" term=\"#olingo.odata.test1.ETAllPrim\">"
+        + "</category><content type=\"application/xml\"><m:properties>"
+        + "<d:PropertyInt16 m:type=\"Int16\">32767</d:PropertyInt16>"));
+    Assert.assertThat(resultString, CoreMatchers.containsString("</entry></m:inline></link>"));
+  }
+
+  @Test
+  public void primitiveProperty() throws Exception {
+    final EdmEntitySet edmEntitySet = entityContainer.getEntitySet("ESAllPrim");
+    final EdmProperty edmProperty = (EdmProperty) edmEntitySet.getEntityType().getProperty("PropertyInt16");
+    final Property property = data.readAll(edmEntitySet).getEntities().get(0).getProperty("PropertyInt16");
+    final String resultString = IOUtils.toString(serializer.primitive((EdmPrimitiveType) edmProperty.getType(),
+        property,
+        PrimitiveSerializerOptions.with()
+            .contextURL(ContextURL.with().entitySet(edmEntitySet).keyPath("32767")
+                .navOrPropertyPath(property.getName()).build())
+            .build()).getContent());
+    Assert.assertEquals(HEADER
+        + "<m:value xmlns:m=\"http://docs.oasis-open.org/odata/ns/metadata\""
+        + " xmlns:d=\"http://docs.oasis-open.org/odata/ns/data\""
+        + " m:context=\"$metadata#ESAllPrim(32767)/PropertyInt16\" m:type=\"Int16\">32767</m:value>",
+        resultString);
+  }
+
+  @Test
+  public void complexProperty() throws Exception {
+    final EdmEntitySet edmEntitySet = entityContainer.getEntitySet("ESMixPrimCollComp");
+    final EdmProperty edmProperty = (EdmProperty) edmEntitySet.getEntityType().getProperty("PropertyComp");
+    final Property property = data.readAll(edmEntitySet).getEntities().get(0).getProperty("PropertyComp");
+    final String resultString = IOUtils.toString(serializer.complex(metadata,
+        (EdmComplexType) edmProperty.getType(), property,
+        ComplexSerializerOptions.with()
+            .contextURL(ContextURL.with().entitySet(edmEntitySet).keyPath("32767")
+                .navOrPropertyPath(property.getName()).build())
+            .build()).getContent());
+    Assert.assertThat(resultString, CoreMatchers.endsWith(
+        " m:context=\"$metadata#ESMixPrimCollComp(32767)/PropertyComp\""
+        + " m:type=\"#olingo.odata.test1.CTTwoPrim\">"
+        + "<d:PropertyInt16 m:type=\"Int16\">111</d:PropertyInt16>"
+        + "<d:PropertyString>TEST A</d:PropertyString></m:value>"));
+  }
+
+  @Test
+  public void complexPropertyWithDerivedType() throws Exception {
+    final EdmEntitySet edmEntitySet = entityContainer.getEntitySet("ESMixPrimCollComp");
+    final EdmProperty edmProperty = (EdmProperty) edmEntitySet.getEntityType().getProperty("PropertyComp");
+    final Property property = data.readAll(edmEntitySet).getEntities().get(0).getProperty("PropertyComp");
+    property.setType("olingo.odata.test1.CTBase");
+    property.asComplex().getValue().add(
+        new Property(null, "AdditionalPropString", ValueType.PRIMITIVE, "Additional"));
+    final String resultString = IOUtils.toString(serializer.complex(metadata,
+        (EdmComplexType) edmProperty.getType(), property,
+        ComplexSerializerOptions.with()
+            .contextURL(ContextURL.with().entitySet(edmEntitySet).keyPath("32767")
+                .navOrPropertyPath(property.getName()).build())
+            .build()).getContent());
+    Assert.assertThat(resultString, CoreMatchers.endsWith(
+        " m:context=\"$metadata#ESMixPrimCollComp(32767)/PropertyComp\""
+        + " m:type=\"#olingo.odata.test1.CTBase\">"
+        + "<d:PropertyInt16 m:type=\"Int16\">111</d:PropertyInt16>"
+        + "<d:PropertyString>TEST A</d:PropertyString>"
+        + "<d:AdditionalPropString>Additional</d:AdditionalPropString></m:value>"));
+  }
+
+  @Test
+  public void error() throws Exception {
+    final ODataServerError error = new ODataServerError().setCode("Code").setMessage("Message <&>")
+        .setTarget("Target");
+    Assert.assertEquals(HEADER
+        + "<m:error xmlns:m=\"http://docs.oasis-open.org/odata/ns/metadata\">"
+        + "<m:code>Code</m:code><m:message>Message &lt;&amp;&gt;</m:message><m:target>Target</m:target>"
+        + "</m:error>",
+        IOUtils.toString(serializer.error(error).getContent()));
+  }
+}
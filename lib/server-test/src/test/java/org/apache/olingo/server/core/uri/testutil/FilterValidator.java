@@ -183,8 +183,8 @@ public class FilterValidator implements TestValidator {
 
     uriInfo = parser.parseUri(path, query, null, edm);
 
-    if (uriInfo.getKind() != UriInfoKind.resource) {
-      fail("Filtervalidator can only be used on resourcePaths");
+    if (uriInfo.getKind() != UriInfoKind.resource && uriInfo.getKind() != UriInfoKind.crossjoin) {
+      fail("Filtervalidator can only be used on resourcePaths and cross joins");
     }
 
     setFilter((FilterOptionImpl) uriInfo.getFilterOption());